@@ -0,0 +1,76 @@
+// This Source Code is in the Public Domain per: http://unlicense.org
+package org.litesoft.whereclause;
+
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseAssociativeList;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseColumnIsIn;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseColumnReference;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseWrapper;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Utility class to collect the <b>SimpleColumnDefinition</b>s referenced by a <i>WhereClause</i> <i>tree</i>.<p>
+ * <a href="../../Licence.txt">Licence</a><br>
+ */
+public class WhereClauseColumns {
+    private WhereClauseColumns() {
+    }
+
+    /**
+     * Collect the Column Definitions referenced directly by the tree (i.e. of the table
+     * being filtered), NOT those of the IS_IN <b>SingleColumnSelect</b>s.<p>
+     *
+     * @param pWhereClause the tree (!null).
+     *
+     * @return the referenced Column Definitions, in the order first encountered.
+     */
+    public static Set<SimpleColumnDefinition> of( WhereClause pWhereClause ) {
+        Set<SimpleColumnDefinition> zColumns = new LinkedHashSet<>();
+        collect( zColumns, pWhereClause, false );
+        return zColumns;
+    }
+
+    /**
+     * Collect all the Column Definitions referenced by the tree, including (recursively)
+     * those selected by, and referenced by the WhereClause of, each IS_IN
+     * <b>SingleColumnSelect</b>.<p>
+     *
+     * @param pWhereClause the tree (!null).
+     *
+     * @return the referenced Column Definitions, in the order first encountered.
+     */
+    public static Set<SimpleColumnDefinition> allOf( WhereClause pWhereClause ) {
+        Set<SimpleColumnDefinition> zColumns = new LinkedHashSet<>();
+        collect( zColumns, pWhereClause, true );
+        return zColumns;
+    }
+
+    private static void collect( Set<SimpleColumnDefinition> pColumns, WhereClause pWhereClause, boolean pIncludeSubSelects ) {
+        switch ( pWhereClause.getType() ) {
+            case AND:
+            case OR:
+                for ( WhereClause zChild : ((AbstractWhereClauseAssociativeList) pWhereClause).getWhereClauseList() ) {
+                    collect( pColumns, zChild, pIncludeSubSelects );
+                }
+                return;
+            case NOT:
+                collect( pColumns, ((AbstractWhereClauseWrapper) pWhereClause).getWrappedWhereClause(), pIncludeSubSelects );
+                return;
+            case IS_IN:
+                pColumns.add( ((AbstractWhereClauseColumnReference) pWhereClause).getColumnDefinition() );
+                if ( pIncludeSubSelects ) {
+                    SingleColumnSelect zSelect = ((AbstractWhereClauseColumnIsIn) pWhereClause).getSingleColumnSelect();
+                    pColumns.add( zSelect.getColumnDefinition() );
+                    if ( zSelect.getWhereClause() != null ) {
+                        collect( pColumns, zSelect.getWhereClause(), true );
+                    }
+                }
+                return;
+            default:
+                if ( pWhereClause instanceof AbstractWhereClauseColumnReference ) {
+                    pColumns.add( ((AbstractWhereClauseColumnReference) pWhereClause).getColumnDefinition() );
+                }
+        }
+    }
+}
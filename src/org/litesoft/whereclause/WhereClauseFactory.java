@@ -9,6 +9,7 @@ import org.litesoft.whereclause.nonpublic.AbstractWhereClauseColumnAndTypeTo;
 import org.litesoft.whereclause.nonpublic.AbstractWhereClauseColumnAndValue;
 import org.litesoft.whereclause.nonpublic.AbstractWhereClauseColumnAnd_N_Values;
 import org.litesoft.whereclause.nonpublic.AbstractWhereClauseColumnIsIn;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseColumnReference;
 import org.litesoft.whereclause.nonpublic.AbstractWhereClauseTF;
 import org.litesoft.whereclause.nonpublic.AbstractWhereClauseWrapper;
 import org.litesoft.whereclause.nonpublic.IllegalArgument;
@@ -97,6 +98,136 @@ public class WhereClauseFactory {
         return wc;
     }
 
+    /**
+     * Return an <b>OR</b> SQL <i>WHERE</i> clause of a list of other <i>WHERE</i> clauses.<p>
+     * <p/>
+     * Note: An empty list is <i>alwaysFalse</i>, and a list of one is simply that
+     * <b>WhereClause</b>.  Otherwise, as with <b>or(...)</b>, nested <i>OR</i>
+     * <b>WhereClause</b>s are <i>merged</i>.<p>
+     *
+     * @param pWhereClauses the <i>WHERE</i> clauses (!null & entries !null).<p>
+     *
+     * @return <b>OR</b> merged <b>WhereClause</b>s.
+     *
+     * @see #or(WhereClause, WhereClause, WhereClause[])
+     */
+    public WhereClause or( List<WhereClause> pWhereClauses ) {
+        IllegalArgument.ifNull( "WhereClauses", pWhereClauses );
+        WhereClause wc = WC_FALSE.INSTANCE;
+        for ( WhereClause clause : pWhereClauses ) {
+            wc = WC_OR.create( wc, clause );
+        }
+        return wc;
+    }
+
+    /**
+     * Return an <b>AND</b> SQL <i>WHERE</i> clause of a list of other <i>WHERE</i> clauses.<p>
+     * <p/>
+     * Note: An empty list is <i>alwaysTrue</i>, and a list of one is simply that
+     * <b>WhereClause</b>.  Otherwise, as with <b>and(...)</b>, nested <i>AND</i>
+     * <b>WhereClause</b>s are <i>merged</i>.<p>
+     *
+     * @param pWhereClauses the <i>WHERE</i> clauses (!null & entries !null).<p>
+     *
+     * @return <b>AND</b> merged <b>WhereClause</b>s.
+     *
+     * @see #and(WhereClause, WhereClause, WhereClause[])
+     */
+    public WhereClause and( List<WhereClause> pWhereClauses ) {
+        IllegalArgument.ifNull( "WhereClauses", pWhereClauses );
+        WhereClause wc = WC_TRUE.INSTANCE;
+        for ( WhereClause clause : pWhereClauses ) {
+            wc = WC_AND.create( wc, clause );
+        }
+        return wc;
+    }
+
+    /**
+     * Return a <b>NOT</b><i>ed</i> SQL <i>WHERE</i> clause, WITHOUT modifying the
+     * WhereClause passed in.<p>
+     * <p/>
+     * Note: <b>not()</b> toggles the NOT mode of a <i>Notable</i> WhereClause in
+     * place, which is a problem for a WhereClause that is shared (e.g. by a rewrite
+     * of a tree), this method toggles a copy instead.<p>
+     *
+     * @param pWhereClause The WhereClause that is to be <b>NOT</b><i>ed</i> (!null).<p>
+     *
+     * @return <b>NOT</b><i>ed</i> WhereClause.
+     *
+     * @see #not(WhereClause)
+     * @see #copyOf(WhereClause)
+     */
+    public WhereClause negationOf( WhereClause pWhereClause ) {
+        verifyNotNull( pWhereClause );
+        if ( pWhereClause.getType() == WhereClauseType.NOT ) {
+            return ((AbstractWhereClauseWrapper) pWhereClause).getWrappedWhereClause();
+        }
+        return not( copyOf( pWhereClause ) );
+    }
+
+    /**
+     * Return a copy of a <i>Notable</i> (Column Reference) WhereClause, with the
+     * same NOT mode, so that the copy's NOT mode may be toggled independently of
+     * the original.<p>
+     * <p/>
+     * Note: All the other WhereClauses are immutable, and are simply returned.<p>
+     *
+     * @param pWhereClause The WhereClause to copy (!null).<p>
+     *
+     * @return the copy (or pWhereClause if it is NOT <i>Notable</i>).
+     */
+    public WhereClause copyOf( WhereClause pWhereClause ) {
+        verifyNotNull( pWhereClause );
+        if ( !(pWhereClause instanceof AbstractWhereClauseColumnReference) ) {
+            return pWhereClause;
+        }
+        AbstractWhereClauseColumnReference zReference = (AbstractWhereClauseColumnReference) pWhereClause;
+        SimpleColumnDefinition zColumn = zReference.getColumnDefinition();
+        WhereClause zCopy;
+        switch ( pWhereClause.getType() ) {
+            case IS_NULL:
+                zCopy = new WC_IS_NULL( zColumn );
+                break;
+            case EQUALS:
+                zCopy = new WC_EQUALS( zColumn, ((AbstractWhereClauseColumnAndValue) pWhereClause).getValue() );
+                break;
+            case LESSTHAN:
+                zCopy = new WC_LESSTHAN( zColumn, ((AbstractWhereClauseColumnAndValue) pWhereClause).getValue() );
+                break;
+            case GREATERTHAN:
+                zCopy = new WC_GREATERTHAN( zColumn, ((AbstractWhereClauseColumnAndValue) pWhereClause).getValue() );
+                break;
+            case BETWEEN:
+                AbstractWhereClauseColumnAndTwoValues zBetween = (AbstractWhereClauseColumnAndTwoValues) pWhereClause;
+                zCopy = new WC_BETWEEN( zColumn, zBetween.getLeftValue(), zBetween.getRightValue() );
+                break;
+            case IS_ANY_OF:
+                zCopy = new WC_IS_ANY_OF( zColumn, ((AbstractWhereClauseColumnAnd_N_Values) pWhereClause).getValues().clone() );
+                break;
+            case CONTAINS:
+                zCopy = new WC_CONTAINS( zColumn, ((AbstractWhereClauseColumnAndLikeValue) pWhereClause).getValue() );
+                break;
+            case STARTS_WITH:
+                zCopy = new WC_STARTS_WITH( zColumn, ((AbstractWhereClauseColumnAndLikeValue) pWhereClause).getValue() );
+                break;
+            case ENDS_WITH:
+                zCopy = new WC_ENDS_WITH( zColumn, ((AbstractWhereClauseColumnAndLikeValue) pWhereClause).getValue() );
+                break;
+            case LIKE:
+                zCopy = new WC_LIKE( zColumn, ((AbstractWhereClauseColumnAndLikeValues) pWhereClause).getValues().clone() );
+                break;
+            case IS_IN:
+                zCopy = new WC_IS_IN( zColumn, ((AbstractWhereClauseColumnIsIn) pWhereClause).getSingleColumnSelect() );
+                break;
+            default:
+                throw new IllegalStateException( "Unexpected Column Reference Type: " + pWhereClause.getType() );
+        }
+        if ( zReference.isNot() ) {
+            ((WhereClauseNotable) zCopy).switchNot();
+        }
+        return zCopy;
+    }
+
     /**
      * Return a <b>NOT</b><i>ed</i> SQL <i>WHERE</i> clause.<p>
      *
@@ -0,0 +1,201 @@
+// This Source Code is in the Public Domain per: http://unlicense.org
+package org.litesoft.whereclause;
+
+import org.litesoft.whereclause.nonpublic.WhereClauseToSQLable;
+
+/**
+ * Utility class with a number of methods to help with the interpretation (rather
+ * than the formatting) of the values of <i>WhereClause</i>s.<p>
+ * <a href="../../Licence.txt">Licence</a><br>
+ * <p/>
+ * The values are normalized the way <b>WhereClauseColumnSupport.makeSqlValue()</b>
+ * formats them for the SQL (unwrapping of <b>WhereClauseToSQLable</b> and
+ * <b>SQLvalueable</b>, and lower casing for a Search Column), so that an interpretation
+ * compares what the database would compare.<p>
+ * <p/>
+ * See <a href="WhereClauseColumnSupport.html">WhereClauseColumnSupport</a><p>
+ */
+public class WhereClauseValueSupport {
+    private static final long EXACT_DOUBLE_MAGNITUDE = 1L << 53;
+
+    private WhereClauseValueSupport() {
+    }
+
+    /**
+     * Normalize a WhereClause value as it would be rendered for the SQL.<p>
+     *
+     * @param pColumnDefinition Column Definition (!null).
+     * @param pValue            the value (null OK).
+     *
+     * @return the normalized value.
+     */
+    public static Object normalizeValue( SimpleColumnDefinition pColumnDefinition, Object pValue ) {
+        if ( isPlainValue( pValue ) ) { // Avoid the (relatively expensive) failing interface checks below
+            return normalizeColumnValue( pColumnDefinition, pValue );
+        }
+        if ( pValue instanceof WhereClauseToSQLable ) {
+            pValue = ((WhereClauseToSQLable) pValue).toSqlValueForEquals();
+        } else if ( pValue instanceof SQLvalueable ) {
+            pValue = ((SQLvalueable) pValue).toSQLvalue();
+        }
+        return normalizeColumnValue( pColumnDefinition, pValue );
+    }
+
+    /**
+     * Normalize a column (row) value as the database would compare it, i.e. lower cased
+     * if the column has a Search Column.<p>
+     *
+     * @param pColumnDefinition Column Definition (!null).
+     * @param pValue            the value (null OK).
+     *
+     * @return the normalized value.
+     */
+    public static Object normalizeColumnValue( SimpleColumnDefinition pColumnDefinition, Object pValue ) {
+        if ( (pValue instanceof String) && pColumnDefinition.hasSearchColumn() ) {
+            return ((String) pValue).toLowerCase();
+        }
+        return pValue;
+    }
+
+    /**
+     * Compare two (!null, normalized) values: Numbers numerically (longs exactly, and
+     * otherwise per <b>compareDoubles()</b>), <b>java.util.Date</b>s by time, Comparables
+     * of compatible classes naturally, and otherwise (as the SQL would be compared as
+     * text) by their toString().<p>
+     *
+     * @param pValue1 the first value (!null).
+     * @param pValue2 the second value (!null).
+     *
+     * @return negative, zero or positive as pValue1 is less than, equal to, or greater than pValue2.
+     */
+    @SuppressWarnings("unchecked")
+    public static int compare( Object pValue1, Object pValue2 ) {
+        if ( (pValue1 instanceof Number) && (pValue2 instanceof Number) ) {
+            return compareNumbers( (Number) pValue1, (Number) pValue2 );
+        }
+        if ( (pValue1 instanceof java.util.Date) && (pValue2 instanceof java.util.Date) ) {
+            return Long.compare( ((java.util.Date) pValue1).getTime(), ((java.util.Date) pValue2).getTime() );
+        }
+        if ( (pValue1 instanceof Comparable) && pValue1.getClass().isInstance( pValue2 ) ) {
+            return ((Comparable<Object>) pValue1).compareTo( pValue2 );
+        }
+        if ( (pValue2 instanceof Comparable) && pValue2.getClass().isInstance( pValue1 ) ) {
+            return -((Comparable<Object>) pValue2).compareTo( pValue1 );
+        }
+        if ( (pValue1 instanceof Number) && (pValue2 instanceof String) ) {
+            Number zNumber2 = parseNumber( (String) pValue2 );
+            if ( zNumber2 != null ) {
+                return compareNumbers( (Number) pValue1, zNumber2 );
+            }
+        } else if ( (pValue1 instanceof String) && (pValue2 instanceof Number) ) {
+            Number zNumber1 = parseNumber( (String) pValue1 );
+            if ( zNumber1 != null ) {
+                return compareNumbers( zNumber1, (Number) pValue2 );
+            }
+        }
+        return pValue1.toString().compareTo( pValue2.toString() );
+    }
+
+    /**
+     * Compare two doubles as the SQL would: -0.0 is equal to 0.0, and (as in PostgreSQL)
+     * a NaN is equal only to a NaN, and greater than every other number, so the order
+     * is total (unlike the IEEE compares, which are all false for a NaN).<p>
+     *
+     * @return negative, zero or positive as pValue1 is less than, equal to, or greater than pValue2.
+     */
+    public static int compareDoubles( double pValue1, double pValue2 ) {
+        if ( pValue1 < pValue2 ) {
+            return -1;
+        }
+        if ( pValue1 > pValue2 ) {
+            return 1;
+        }
+        if ( pValue1 == pValue2 ) {
+            return 0;
+        }
+        return Double.isNaN( pValue1 ) ? (Double.isNaN( pValue2 ) ? 0 : 1) : -1;
+    }
+
+    /**
+     * Return if two (!null, normalized) values are equal per <b>compare()</b>.<p>
+     */
+    public static boolean areEqual( Object pValue1, Object pValue2 ) {
+        return pValue1.equals( pValue2 ) || (compare( pValue1, pValue2 ) == 0);
+    }
+
+    /**
+     * Return if the value is an integral Number (one that fits in a long exactly).<p>
+     */
+    public static boolean isIntegral( Object pValue ) {
+        return (pValue instanceof Long) || (pValue instanceof Integer) || (pValue instanceof Short) || (pValue instanceof Byte);
+    }
+
+    /**
+     * Return if an integral value is exactly representable as a double (its magnitude is
+     * at most 2^53), so <b>compare()</b> orders it consistently with the NON-integral
+     * Numbers (which it compares as doubles).<p>
+     */
+    public static boolean isExactAsDouble( long pValue ) {
+        return (-EXACT_DOUBLE_MAGNITUDE <= pValue) && (pValue <= EXACT_DOUBLE_MAGNITUDE);
+    }
+
+    /**
+     * Return the family of a (normalized) value: the values that <b>compare()</b> orders
+     * consistently with it, i.e. Number for the Numbers (except a NaN, and the integrals
+     * NOT exact as doubles, see <b>isExactAsDouble()</b>), <b>java.util.Date</b> for the
+     * Dates, and otherwise its class.<p>
+     *
+     * @return the family, or null if the value is null or NOT consistently ordered with any others.
+     */
+    public static Class<?> familyOf( Object pValue ) {
+        if ( pValue instanceof Number ) {
+            if ( isIntegral( pValue ) ) {
+                return isExactAsDouble( ((Number) pValue).longValue() ) ? Number.class : null;
+            }
+            return Double.isNaN( ((Number) pValue).doubleValue() ) ? null : Number.class;
+        }
+        if ( pValue instanceof java.util.Date ) {
+            return java.util.Date.class;
+        }
+        return (pValue == null) ? null : pValue.getClass();
+    }
+
+    /**
+     * Convert a value to a double for interpolation, Numbers and <b>java.util.Date</b>s
+     * (as time) are supported.<p>
+     *
+     * @return the double or NaN if not supported.
+     */
+    public static double toDouble( Object pValue ) {
+        if ( pValue instanceof Number ) {
+            return ((Number) pValue).doubleValue();
+        }
+        if ( pValue instanceof java.util.Date ) {
+            return ((java.util.Date) pValue).getTime();
+        }
+        return Double.NaN;
+    }
+
+    /**
+     * @return true for the common (final, so neither WhereClauseToSQLable nor SQLvalueable) value classes.
+     */
+    private static boolean isPlainValue( Object pValue ) {
+        return (pValue instanceof String) || (pValue instanceof Integer) || (pValue instanceof Long) || (pValue instanceof Double);
+    }
+
+    private static int compareNumbers( Number pNumber1, Number pNumber2 ) {
+        if ( isIntegral( pNumber1 ) && isIntegral( pNumber2 ) ) {
+            return Long.compare( pNumber1.longValue(), pNumber2.longValue() );
+        }
+        return compareDoubles( pNumber1.doubleValue(), pNumber2.doubleValue() );
+    }
+
+    private static Number parseNumber( String pString ) {
+        try {
+            return Double.valueOf( pString.trim() );
+        }
+        catch ( NumberFormatException e ) {
+            return null;
+        }
+    }
+}
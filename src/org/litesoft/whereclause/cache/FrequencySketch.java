@@ -0,0 +1,95 @@
+// This Source Code is in the Public Domain per: http://unlicense.org
+package org.litesoft.whereclause.cache;
+
+/**
+ * A Count-Min sketch of the (recent) frequencies of keys, with 4 bit counters (so
+ * saturating at 15), for the TinyLFU admission of the <b>QueryResultCache</b>.<p>
+ * <a href="../../../Licence.txt">Licence</a><br>
+ * <p/>
+ * Each key has a counter for each of DEPTH (independent) hashes, in a table of longs
+ * (of 16 counters each), its frequency being the least of them; an increment only
+ * increments those counters that are the least (conservative update), which limits
+ * the over counting of the collisions.  Once the number of increments reaches the sample size (10 times
+ * the maximum size of the cache), every counter is halved, so the frequencies age
+ * (older accesses count for less).<p>
+ */
+final class FrequencySketch {
+    static final int DEPTH = 4;
+    static final int MAXIMUM = 15;
+
+    private static final long[] SEEDS = {0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+    private static final long HALVE_MASK = 0x7777777777777777L;
+
+    private final long[] mTable;
+    private final int mLongMask;
+    private final int mSampleSize;
+    private int mIncrements;
+    private int mResets;
+
+    /**
+     * @param pMaximumSize the maximum size of the cache (at least 1).
+     */
+    FrequencySketch( int pMaximumSize ) {
+        int zLongs = Integer.highestOneBit( Math.max( 16, Math.min( pMaximumSize, 1 << 26 ) ) - 1 ) << 1; // a power of two >= the maximum
+        mTable = new long[zLongs];
+        mLongMask = zLongs - 1;
+        mSampleSize = (int) Math.min( Integer.MAX_VALUE, 10L * Math.max( 1, pMaximumSize ) );
+    }
+
+    int frequency( int pHash ) {
+        int zFrequency = MAXIMUM;
+        for ( int i = 0; i < DEPTH; i++ ) {
+            zFrequency = Math.min( zFrequency, counter( pHash, i ) );
+        }
+        return zFrequency;
+    }
+
+    void increment( int pHash ) {
+        int zFrequency = frequency( pHash );
+        if ( zFrequency == MAXIMUM ) {
+            return;
+        }
+        for ( int i = 0; i < DEPTH; i++ ) {
+            if ( counter( pHash, i ) == zFrequency ) {
+                int zIndex = index( pHash, i );
+                mTable[zIndex >>> 4] += 1L << shift( zIndex );
+            }
+        }
+        if ( ++mIncrements == mSampleSize ) {
+            reset();
+        }
+    }
+
+    /**
+     * @return the number of times the counters have been halved.
+     */
+    int getResets() {
+        return mResets;
+    }
+
+    private void reset() {
+        for ( int i = 0; i < mTable.length; i++ ) {
+            mTable[i] = (mTable[i] >>> 1) & HALVE_MASK;
+        }
+        mIncrements /= 2;
+        mResets++;
+    }
+
+    private int counter( int pHash, int pDepth ) {
+        int zIndex = index( pHash, pDepth );
+        return (int) (mTable[zIndex >>> 4] >>> shift( zIndex )) & MAXIMUM;
+    }
+
+    /**
+     * @return the index of the key's counter for the depth: the long (index >>> 4), and the counter in it (index &amp; 15).
+     */
+    private int index( int pHash, int pDepth ) {
+        long zHash = (pHash + SEEDS[pDepth]) * SEEDS[pDepth];
+        zHash ^= zHash >>> 32;
+        return ((((int) zHash) & mLongMask) << 4) | (((int) (zHash >>> 28) & 15) ^ (pDepth << 2));
+    }
+
+    private static int shift( int pIndex ) {
+        return (pIndex & 15) << 2;
+    }
+}
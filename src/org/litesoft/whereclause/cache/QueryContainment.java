@@ -0,0 +1,557 @@
+// This Source Code is in the Public Domain per: http://unlicense.org
+package org.litesoft.whereclause.cache;
+
+import org.litesoft.whereclause.SimpleColumnDefinition;
+import org.litesoft.whereclause.WhereClause;
+import org.litesoft.whereclause.WhereClauseType;
+import org.litesoft.whereclause.WhereClauseValueSupport;
+import org.litesoft.whereclause.evaluation.LikeMatcher;
+import org.litesoft.whereclause.evaluation.TriState;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseAssociativeList;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseColumnAndLikeValue;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseColumnAndLikeValues;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseColumnAndTwoValues;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseColumnAndValue;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseColumnAnd_N_Values;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseColumnReference;
+import org.litesoft.whereclause.nonpublic.IllegalArgument;
+import org.litesoft.whereclause.transform.NormalForm;
+import org.litesoft.whereclause.transform.NormalFormConverter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Query containment: whether every row that a (narrow) <b>WhereClause</b> selects is
+ * also selected by another (broad) one, so that the broad one's results, filtered by
+ * the narrow one, are the narrow one's results.<p>
+ * <a href="../../../Licence.txt">Licence</a><br>
+ * <p/>
+ * <b>implies()</b> is sound but NOT complete: true means the narrow one implies the
+ * broad one; false means it could NOT be shown.  The narrow one is converted to its
+ * Disjunctive, and the broad one to its Conjunctive, <b>NormalForm</b>, and each of
+ * the narrow one's conjunctions must imply (at least one literal of) each of the broad
+ * one's clauses (an opaque literal's AND needing all, and its OR any, of its
+ * children).  A conjunction implies a literal that it has (structurally, see
+ * <b>QueryKey</b>), and otherwise its literals of the literal's column are combined into
+ * what the column's value can be (see <b>ColumnConstraint</b>): NULL, NOT NULL, one of
+ * a set of values (EQUALS and IS_ANY_OF), within a range (LESSTHAN, GREATERTHAN and
+ * BETWEEN, in either mode), and starting with a prefix (STARTS_WITH, and the first
+ * segment of a LIKE).  A conjunction that can NOT be satisfied (e.g. "a &lt; 1 AND a &gt; 2")
+ * implies anything.<p>
+ * <p/>
+ * The values are compared as the <b>WhereClauseEvaluator</b> compares them (see
+ * <b>WhereClauseValueSupport</b>), but only values of the same family (Numbers, Dates,
+ * or values of the same class, e.g. Strings, see <b>WhereClauseValueSupport.familyOf()</b>);
+ * a NaN value, and integral values beyond 2^53 (NOT exact as doubles), are NOT compared
+ * at all.  A NaN column (row)
+ * value needs no exception, as it is ordered (see <b>compareDoubles()</b>) above every
+ * number, so it is within a range exactly when the range's total order says so.  The
+ * column's values are assumed to be of the same family as the WhereClauses' values for
+ * it (e.g. numbers in a numeric column), as the database's would be.<p>
+ */
+public class QueryContainment {
+    public static final QueryContainment INSTANCE = new QueryContainment( NormalFormConverter.INSTANCE );
+
+    private final NormalFormConverter mConverter;
+
+    /**
+     * Constructor.<p>
+     *
+     * @param pConverter converts the WhereClauses to their normal forms (!null).
+     */
+    public QueryContainment( NormalFormConverter pConverter ) {
+        IllegalArgument.ifNull( "Converter", mConverter = pConverter );
+    }
+
+    /**
+     * @param pNarrow the WhereClause that may be narrower (!null).
+     * @param pBroad  the WhereClause that may be broader (!null).
+     *
+     * @return true if every row that pNarrow selects (is TRUE for) pBroad selects too; false if NOT, or if it could NOT be shown.
+     */
+    public boolean implies( WhereClause pNarrow, WhereClause pBroad ) {
+        IllegalArgument.ifNull( "Narrow", pNarrow );
+        IllegalArgument.ifNull( "Broad", pBroad );
+        NormalForm zBroad = mConverter.toCNF( pBroad );
+        for ( List<WhereClause> zConjunction : mConverter.toDNF( pNarrow ).getClauses() ) {
+            Conjunction zNarrow = new Conjunction( zConjunction );
+            if ( !zNarrow.isUnsatisfiable() ) {
+                for ( List<WhereClause> zClause : zBroad.getClauses() ) {
+                    if ( !zNarrow.impliesAnyOf( zClause ) ) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The literals of a conjunction of the narrow WhereClause, by structure, and combined by column.
+     */
+    private static class Conjunction {
+        private final Set<List<Object>> mStructures = new HashSet<>();
+        private final Map<SimpleColumnDefinition, ColumnConstraint> mColumns = new HashMap<>();
+        private boolean mUnsatisfiable;
+
+        Conjunction( List<WhereClause> pLiterals ) {
+            for ( WhereClause zLiteral : pLiterals ) {
+                mStructures.add( QueryKey.structureOf( zLiteral ) );
+                switch ( zLiteral.getType() ) {
+                    case FALSE:
+                        mUnsatisfiable = true;
+                        break;
+                    case AND:
+                    case OR:
+                    case NOT:
+                    case TRUE:
+                        break;
+                    default:
+                        SimpleColumnDefinition zColumn = ((AbstractWhereClauseColumnReference) zLiteral).getColumnDefinition();
+                        ColumnConstraint zConstraint = mColumns.get( zColumn );
+                        if ( zConstraint == null ) {
+                            mColumns.put( zColumn, zConstraint = new ColumnConstraint( zColumn ) );
+                        }
+                        zConstraint.add( (AbstractWhereClauseColumnReference) zLiteral );
+                }
+            }
+            for ( ColumnConstraint zConstraint : mColumns.values() ) {
+                zConstraint.prune();
+                mUnsatisfiable |= zConstraint.isUnsatisfiable();
+            }
+        }
+
+        boolean isUnsatisfiable() {
+            return mUnsatisfiable;
+        }
+
+        boolean impliesAnyOf( List<WhereClause> pClause ) {
+            for ( WhereClause zLiteral : pClause ) {
+                if ( implies( zLiteral ) ) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        boolean implies( WhereClause pWhereClause ) {
+            switch ( pWhereClause.getType() ) {
+                case TRUE:
+                    return true;
+                case FALSE:
+                    return false;
+                case AND:
+                    for ( WhereClause zChild : ((AbstractWhereClauseAssociativeList) pWhereClause).getWhereClauseList() ) {
+                        if ( !implies( zChild ) ) {
+                            return false;
+                        }
+                    }
+                    return true;
+                case OR:
+                    return impliesAnyOf( ((AbstractWhereClauseAssociativeList) pWhereClause).getWhereClauseList() );
+                default:
+                    if ( mStructures.contains( QueryKey.structureOf( pWhereClause ) ) ) {
+                        return true;
+                    }
+                    if ( !(pWhereClause instanceof AbstractWhereClauseColumnReference) ) { // NOT
+                        return false;
+                    }
+                    AbstractWhereClauseColumnReference zLeaf = (AbstractWhereClauseColumnReference) pWhereClause;
+                    ColumnConstraint zConstraint = mColumns.get( zLeaf.getColumnDefinition() );
+                    return (zConstraint != null) && zConstraint.implies( zLeaf );
+            }
+        }
+    }
+
+    /**
+     * What a column's (normalized) value can be, per a conjunction's literals of the column
+     * (each literal that is NOT understood is just left out, which only widens it).
+     */
+    private static class ColumnConstraint {
+        private final SimpleColumnDefinition mColumn;
+        private boolean mNull, mNotNull;
+        private List<Object> mValues; // null if any
+        private Class<?> mFamily; // of the bounds
+        private Object mLow, mHigh; // null if unbounded
+        private boolean mLowInclusive, mHighInclusive;
+        private String mPrefix; // null if none
+        private boolean mPrefixConflict;
+
+        ColumnConstraint( SimpleColumnDefinition pColumn ) {
+            mColumn = pColumn;
+        }
+
+        void add( AbstractWhereClauseColumnReference pLeaf ) {
+            boolean zNot = pLeaf.isNot();
+            switch ( pLeaf.getType() ) {
+                case IS_NULL:
+                    if ( zNot ) {
+                        mNotNull = true;
+                    } else {
+                        mNull = true;
+                    }
+                    return;
+                case EQUALS:
+                    if ( zNot ) {
+                        return; // null inclusive
+                    }
+                    values( Collections.singletonList( ((AbstractWhereClauseColumnAndValue) pLeaf).getValue() ) );
+                    break;
+                case IS_ANY_OF:
+                    if ( !zNot ) {
+                        values( valuesOf( pLeaf ) );
+                    }
+                    break;
+                case LESSTHAN:
+                    bound( ((AbstractWhereClauseColumnAndValue) pLeaf).getValue(), zNot, zNot );
+                    break;
+                case GREATERTHAN:
+                    bound( ((AbstractWhereClauseColumnAndValue) pLeaf).getValue(), !zNot, zNot );
+                    break;
+                case BETWEEN:
+                    if ( !zNot ) {
+                        bound( ((AbstractWhereClauseColumnAndTwoValues) pLeaf).getLeftValue(), true, true );
+                        bound( ((AbstractWhereClauseColumnAndTwoValues) pLeaf).getRightValue(), false, true );
+                    }
+                    break;
+                case STARTS_WITH:
+                    if ( !zNot ) {
+                        prefix( ((AbstractWhereClauseColumnAndLikeValue) pLeaf).getValue() );
+                    }
+                    break;
+                case LIKE:
+                    if ( !zNot ) {
+                        prefix( ((AbstractWhereClauseColumnAndLikeValues) pLeaf).getValues()[0] );
+                    }
+                    break;
+                case IS_IN:
+                    return;
+                default:
+                    break;
+            }
+            mNotNull = true; // a NULL is UNKNOWN for all the others (in either mode)
+        }
+
+        /**
+         * Drop the values that the bounds or the prefix exclude (e.g. "a IN (1, 5) AND a < 3" is "a = 1").
+         */
+        void prune() {
+            if ( mValues == null ) {
+                return;
+            }
+            List<Object> zKept = new ArrayList<>();
+            for ( Object zValue : mValues ) {
+                if ( !isOutOfRange( zValue ) && !((mPrefix != null) && (zValue instanceof String) && !((String) zValue).startsWith( mPrefix )) ) {
+                    zKept.add( zValue );
+                }
+            }
+            mValues = zKept;
+        }
+
+        boolean isUnsatisfiable() {
+            if ( (mNull && mNotNull) || mPrefixConflict || ((mValues != null) && mValues.isEmpty()) ) {
+                return true;
+            }
+            if ( (mLow == null) || (mHigh == null) ) {
+                return false;
+            }
+            int zCompare = WhereClauseValueSupport.compare( mLow, mHigh );
+            return (zCompare > 0) || ((zCompare == 0) && !(mLowInclusive && mHighInclusive));
+        }
+
+        boolean implies( AbstractWhereClauseColumnReference pLeaf ) {
+            if ( mNull ) {
+                return isTrueFor( pLeaf, null );
+            }
+            if ( (mValues != null) && impliedByValues( pLeaf ) ) {
+                return true;
+            }
+            if ( (pLeaf.getType() == WhereClauseType.IS_NULL) && pLeaf.isNot() ) {
+                return mNotNull;
+            }
+            return impliedByRange( pLeaf ) || impliedByPrefix( pLeaf );
+        }
+
+        private void values( List<Object> pValues ) {
+            List<Object> zValues = new ArrayList<>();
+            for ( Object zValue : pValues ) {
+                if ( zValue != null ) {
+                    zValues.add( normalize( zValue ) );
+                }
+            }
+            if ( mValues == null ) {
+                mValues = zValues;
+                return;
+            }
+            List<Object> zKept = new ArrayList<>();
+            for ( Object zValue : mValues ) {
+                for ( Object zOther : zValues ) {
+                    if ( !comparable( zValue, zOther ) || WhereClauseValueSupport.areEqual( zValue, zOther ) ) { // kept unless surely NOT equal
+                        zKept.add( zValue );
+                        break;
+                    }
+                }
+            }
+            mValues = zKept;
+        }
+
+        private void bound( Object pValue, boolean pLow, boolean pInclusive ) {
+            Object zValue = normalize( pValue );
+            Class<?> zFamily = WhereClauseValueSupport.familyOf( zValue );
+            if ( (zFamily == null) || ((mFamily != null) && !mFamily.equals( zFamily )) ) {
+                return;
+            }
+            mFamily = zFamily;
+            if ( pLow ) {
+                int zCompare = (mLow == null) ? 1 : WhereClauseValueSupport.compare( zValue, mLow );
+                if ( (zCompare > 0) || ((zCompare == 0) && !pInclusive) ) {
+                    mLow = zValue;
+                    mLowInclusive = pInclusive;
+                }
+            } else {
+                int zCompare = (mHigh == null) ? -1 : WhereClauseValueSupport.compare( zValue, mHigh );
+                if ( (zCompare < 0) || ((zCompare == 0) && !pInclusive) ) {
+                    mHigh = zValue;
+                    mHighInclusive = pInclusive;
+                }
+            }
+        }
+
+        private void prefix( String pPrefix ) {
+            if ( (pPrefix == null) || pPrefix.isEmpty() ) {
+                return;
+            }
+            String zPrefix = (String) normalize( pPrefix );
+            if ( (mPrefix == null) || zPrefix.startsWith( mPrefix ) ) {
+                mPrefix = zPrefix;
+            } else if ( !mPrefix.startsWith( zPrefix ) ) {
+                mPrefixConflict = true;
+            }
+        }
+
+        /**
+         * Each of the values (which are all that the column's value can be equal to) is one
+         * that the leaf is TRUE for (as is any value equal to it, as it is of the same family).
+         */
+        private boolean impliedByValues( AbstractWhereClauseColumnReference pLeaf ) {
+            WhereClauseType zType = pLeaf.getType();
+            if ( zType == WhereClauseType.IS_IN ) {
+                return false;
+            }
+            boolean zText = (zType == WhereClauseType.CONTAINS) || (zType == WhereClauseType.STARTS_WITH) || //
+                            (zType == WhereClauseType.ENDS_WITH) || (zType == WhereClauseType.LIKE);
+            List<Object> zLeafValues = valuesOf( pLeaf );
+            for ( Object zValue : mValues ) {
+                if ( zText ? !(zValue instanceof String) : !comparable( zValue, zLeafValues ) ) {
+                    return false;
+                }
+                if ( !isTrueFor( pLeaf, zValue ) ) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean impliedByRange( AbstractWhereClauseColumnReference pLeaf ) {
+            if ( (mFamily == null) || !comparable( mFamily, valuesOf( pLeaf ) ) ) {
+                return false;
+            }
+            boolean zNot = pLeaf.isNot();
+            switch ( pLeaf.getType() ) {
+                case EQUALS: {
+                    Object zValue = normalize( ((AbstractWhereClauseColumnAndValue) pLeaf).getValue() );
+                    return zNot ? excludes( zValue ) : isPoint( zValue );
+                }
+                case IS_ANY_OF:
+                    for ( Object zValue : valuesOf( pLeaf ) ) {
+                        if ( zNot ? !excludes( zValue ) : isPoint( zValue ) ) {
+                            return !zNot;
+                        }
+                    }
+                    return zNot;
+                case LESSTHAN: // < v, or (NOT) >= v
+                    return zNot ? isAtLeast( ((AbstractWhereClauseColumnAndValue) pLeaf).getValue(), true ) : //
+                           isAtMost( ((AbstractWhereClauseColumnAndValue) pLeaf).getValue(), false );
+                case GREATERTHAN: // > v, or (NOT) <= v
+                    return zNot ? isAtMost( ((AbstractWhereClauseColumnAndValue) pLeaf).getValue(), true ) : //
+                           isAtLeast( ((AbstractWhereClauseColumnAndValue) pLeaf).getValue(), false );
+                case BETWEEN: {
+                    Object zLeft = ((AbstractWhereClauseColumnAndTwoValues) pLeaf).getLeftValue();
+                    Object zRight = ((AbstractWhereClauseColumnAndTwoValues) pLeaf).getRightValue();
+                    return zNot ? (isAtMost( zLeft, false ) || isAtLeast( zRight, false )) : //
+                           (isAtLeast( zLeft, true ) && isAtMost( zRight, true ));
+                }
+                default:
+                    return false;
+            }
+        }
+
+        private boolean impliedByPrefix( AbstractWhereClauseColumnReference pLeaf ) {
+            if ( mPrefix == null ) {
+                return false;
+            }
+            switch ( pLeaf.getType() ) {
+                case STARTS_WITH: {
+                    String zPrefix = (String) normalize( ((AbstractWhereClauseColumnAndLikeValue) pLeaf).getValue() );
+                    return pLeaf.isNot() ? !(mPrefix.startsWith( zPrefix ) || zPrefix.startsWith( mPrefix )) : mPrefix.startsWith( zPrefix );
+                }
+                case CONTAINS:
+                    return !pLeaf.isNot() && mPrefix.contains( (String) normalize( ((AbstractWhereClauseColumnAndLikeValue) pLeaf).getValue() ) );
+                default:
+                    return false;
+            }
+        }
+
+        /**
+         * @return true if every value of the range is at least (or, if NOT pInclusive, greater than) the value.
+         */
+        private boolean isAtLeast( Object pValue, boolean pInclusive ) {
+            if ( mLow == null ) {
+                return false;
+            }
+            int zCompare = WhereClauseValueSupport.compare( mLow, normalize( pValue ) );
+            return (zCompare > 0) || ((zCompare == 0) && (pInclusive || !mLowInclusive));
+        }
+
+        /**
+         * @return true if every value of the range is at most (or, if NOT pInclusive, less than) the value.
+         */
+        private boolean isAtMost( Object pValue, boolean pInclusive ) {
+            if ( mHigh == null ) {
+                return false;
+            }
+            int zCompare = WhereClauseValueSupport.compare( mHigh, normalize( pValue ) );
+            return (zCompare < 0) || ((zCompare == 0) && (pInclusive || !mHighInclusive));
+        }
+
+        /**
+         * @return true if the (normalized) value is of the family of the bounds, and outside them.
+         */
+        private boolean isOutOfRange( Object pValue ) {
+            if ( (mFamily == null) || !mFamily.equals( WhereClauseValueSupport.familyOf( pValue ) ) ) {
+                return false;
+            }
+            int zCompare = (mLow == null) ? 1 : WhereClauseValueSupport.compare( pValue, mLow );
+            if ( (zCompare < 0) || ((zCompare == 0) && !mLowInclusive) ) {
+                return true;
+            }
+            zCompare = (mHigh == null) ? -1 : WhereClauseValueSupport.compare( pValue, mHigh );
+            return (zCompare > 0) || ((zCompare == 0) && !mHighInclusive);
+        }
+
+        private boolean isPoint( Object pValue ) {
+            return isAtLeast( pValue, true ) && isAtMost( pValue, true );
+        }
+
+        private boolean excludes( Object pValue ) {
+            return isAtLeast( pValue, false ) || isAtMost( pValue, false );
+        }
+
+        /**
+         * @param pValue the (normalized) column value (null OK).
+         *
+         * @return true if the leaf is TRUE for the value, as the <b>WhereClauseEvaluator</b> would evaluate it.
+         */
+        private boolean isTrueFor( AbstractWhereClauseColumnReference pLeaf, Object pValue ) {
+            boolean zNot = pLeaf.isNot();
+            if ( pValue == null ) {
+                switch ( pLeaf.getType() ) {
+                    case IS_NULL:
+                        return !zNot;
+                    case EQUALS:
+                        return zNot; // null inclusive
+                    default:
+                        return false; // UNKNOWN
+                }
+            }
+            boolean zMatches;
+            switch ( pLeaf.getType() ) {
+                case IS_NULL:
+                    zMatches = false;
+                    break;
+                case EQUALS:
+                    zMatches = WhereClauseValueSupport.areEqual( pValue, normalize( ((AbstractWhereClauseColumnAndValue) pLeaf).getValue() ) );
+                    break;
+                case LESSTHAN:
+                    zMatches = WhereClauseValueSupport.compare( pValue, normalize( ((AbstractWhereClauseColumnAndValue) pLeaf).getValue() ) ) < 0;
+                    break;
+                case GREATERTHAN:
+                    zMatches = WhereClauseValueSupport.compare( pValue, normalize( ((AbstractWhereClauseColumnAndValue) pLeaf).getValue() ) ) > 0;
+                    break;
+                case BETWEEN: {
+                    AbstractWhereClauseColumnAndTwoValues zBetween = (AbstractWhereClauseColumnAndTwoValues) pLeaf;
+                    zMatches = (WhereClauseValueSupport.compare( normalize( zBetween.getLeftValue() ), pValue ) <= 0) && //
+                               (WhereClauseValueSupport.compare( pValue, normalize( zBetween.getRightValue() ) ) <= 0);
+                    break;
+                }
+                case IS_ANY_OF:
+                    zMatches = false;
+                    for ( Object zValue : valuesOf( pLeaf ) ) {
+                        if ( (zValue != null) && WhereClauseValueSupport.areEqual( pValue, zValue ) ) {
+                            zMatches = true;
+                            break;
+                        }
+                    }
+                    break;
+                case CONTAINS:
+                case STARTS_WITH:
+                case ENDS_WITH:
+                case LIKE:
+                    return LikeMatcher.compile( pLeaf ).evaluate( pValue ) == TriState.TRUE; // in the leaf's mode
+                default: // IS_IN
+                    return false;
+            }
+            return zMatches != zNot;
+        }
+
+        private Object normalize( Object pValue ) {
+            return WhereClauseValueSupport.normalizeValue( mColumn, pValue );
+        }
+
+        /**
+         * @return the (normalized) values of the leaf (empty if none).
+         */
+        private List<Object> valuesOf( AbstractWhereClauseColumnReference pLeaf ) {
+            List<Object> zValues = new ArrayList<>();
+            if ( pLeaf instanceof AbstractWhereClauseColumnAndValue ) {
+                zValues.add( ((AbstractWhereClauseColumnAndValue) pLeaf).getValue() );
+            } else if ( pLeaf instanceof AbstractWhereClauseColumnAndTwoValues ) {
+                zValues.add( ((AbstractWhereClauseColumnAndTwoValues) pLeaf).getLeftValue() );
+                zValues.add( ((AbstractWhereClauseColumnAndTwoValues) pLeaf).getRightValue() );
+            } else if ( pLeaf instanceof AbstractWhereClauseColumnAnd_N_Values ) {
+                Collections.addAll( zValues, ((AbstractWhereClauseColumnAnd_N_Values) pLeaf).getValues() );
+            }
+            for ( int i = 0; i < zValues.size(); i++ ) {
+                zValues.set( i, normalize( zValues.get( i ) ) );
+            }
+            return zValues;
+        }
+
+        /**
+         * @return true if (the family of) pValue (or a family) and each of the values are of the same family.
+         */
+        private static boolean comparable( Object pValue, List<Object> pValues ) {
+            Object zFamily = (pValue instanceof Class) ? pValue : WhereClauseValueSupport.familyOf( pValue );
+            if ( zFamily == null ) {
+                return false;
+            }
+            for ( Object zValue : pValues ) {
+                if ( !zFamily.equals( WhereClauseValueSupport.familyOf( zValue ) ) ) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static boolean comparable( Object pValue1, Object pValue2 ) {
+            Object zFamily = WhereClauseValueSupport.familyOf( pValue1 );
+            return (zFamily != null) && zFamily.equals( WhereClauseValueSupport.familyOf( pValue2 ) );
+        }
+    }
+}
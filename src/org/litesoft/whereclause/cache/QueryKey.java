@@ -0,0 +1,175 @@
+// This Source Code is in the Public Domain per: http://unlicense.org
+package org.litesoft.whereclause.cache;
+
+import org.litesoft.whereclause.SimpleColumnDefinition;
+import org.litesoft.whereclause.SimpleFromIdentifier;
+import org.litesoft.whereclause.SingleColumnSelect;
+import org.litesoft.whereclause.WhereClause;
+import org.litesoft.whereclause.WhereClauseColumns;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseAssociativeList;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseColumnAndLikeValue;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseColumnAndLikeValues;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseColumnAndTwoValues;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseColumnAndValue;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseColumnAnd_N_Values;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseColumnIsIn;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseColumnReference;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseWrapper;
+import org.litesoft.whereclause.nonpublic.IllegalArgument;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The (immutable) key of a query: the table name of its <b>SimpleFromIdentifier</b>,
+ * and the structure of its (normalized) <b>WhereClause</b>, with the tables and the
+ * <b>SimpleColumnDefinition</b>s that its results depend on.<p>
+ * <a href="../../../Licence.txt">Licence</a><br>
+ * <p/>
+ * WhereClauses do NOT implement equals(), and their SQL is NOT an exact key (e.g. a
+ * Date may render without its milliseconds), so the key is the tree itself: the type,
+ * NOT mode, column and values of each node (integral values as Longs, as 3 and 3L
+ * select the same rows), in the tree's order (so normalize it first, e.g. with the
+ * <b>WhereClauseCanonicalizer</b>, for "a = ? AND b = ?" and "b = ? AND a = ?" to be
+ * the same key).<p>
+ * <p/>
+ * The tables are the query's, and those of its IS_IN <b>SingleColumnSelect</b>s; the
+ * columns are all those referenced (see <b>WhereClauseColumns.allOf()</b>).<p>
+ */
+public final class QueryKey {
+    private final String mTableName;
+    private final WhereClause mWhereClause;
+    private final List<Object> mStructure = new ArrayList<>();
+    private final Set<String> mTables = new LinkedHashSet<>();
+    private final Set<SimpleColumnDefinition> mColumns;
+    private final int mHashCode;
+
+    /**
+     * Constructor.<p>
+     *
+     * @param pFromIdentifier the table queried (!null).
+     * @param pWhereClause    the (normalized) WhereClause (!null).
+     */
+    public QueryKey( SimpleFromIdentifier pFromIdentifier, WhereClause pWhereClause ) {
+        IllegalArgument.ifNull( "FromIdentifier", pFromIdentifier );
+        IllegalArgument.ifNull( "WhereClause", mWhereClause = pWhereClause );
+        mTables.add( mTableName = pFromIdentifier.getTableName() );
+        structure( pWhereClause, mStructure, mTables );
+        mColumns = WhereClauseColumns.allOf( pWhereClause );
+        mHashCode = mTableName.hashCode() * 31 + mStructure.hashCode();
+    }
+
+    public String getTableName() {
+        return mTableName;
+    }
+
+    public WhereClause getWhereClause() {
+        return mWhereClause;
+    }
+
+    /**
+     * @return the tables the results depend on (the query's first).
+     */
+    public Set<String> getTables() {
+        return Collections.unmodifiableSet( mTables );
+    }
+
+    /**
+     * @return the columns the results depend on.
+     */
+    public Set<SimpleColumnDefinition> getColumns() {
+        return Collections.unmodifiableSet( mColumns );
+    }
+
+    /**
+     * @return the structure of the tree (equal for equal trees).
+     */
+    static List<Object> structureOf( WhereClause pWhereClause ) {
+        List<Object> zStructure = new ArrayList<>();
+        structure( pWhereClause, zStructure, new LinkedHashSet<String>() );
+        return zStructure;
+    }
+
+    private static void structure( WhereClause pWhereClause, List<Object> pStructure, Set<String> pTables ) {
+        pStructure.add( pWhereClause.getType() );
+        if ( pWhereClause instanceof AbstractWhereClauseAssociativeList ) {
+            List<WhereClause> zChildren = ((AbstractWhereClauseAssociativeList) pWhereClause).getWhereClauseList();
+            pStructure.add( zChildren.size() );
+            for ( WhereClause zChild : zChildren ) {
+                structure( zChild, pStructure, pTables );
+            }
+            return;
+        }
+        if ( pWhereClause instanceof AbstractWhereClauseWrapper ) {
+            structure( ((AbstractWhereClauseWrapper) pWhereClause).getWrappedWhereClause(), pStructure, pTables );
+            return;
+        }
+        if ( !(pWhereClause instanceof AbstractWhereClauseColumnReference) ) { // TRUE or FALSE
+            return;
+        }
+        AbstractWhereClauseColumnReference zLeaf = (AbstractWhereClauseColumnReference) pWhereClause;
+        pStructure.add( zLeaf.getColumnDefinition() );
+        pStructure.add( zLeaf.isNot() );
+        if ( zLeaf instanceof AbstractWhereClauseColumnAndValue ) {
+            pStructure.add( value( ((AbstractWhereClauseColumnAndValue) zLeaf).getValue() ) );
+        } else if ( zLeaf instanceof AbstractWhereClauseColumnAndTwoValues ) {
+            pStructure.add( value( ((AbstractWhereClauseColumnAndTwoValues) zLeaf).getLeftValue() ) );
+            pStructure.add( value( ((AbstractWhereClauseColumnAndTwoValues) zLeaf).getRightValue() ) );
+        } else if ( zLeaf instanceof AbstractWhereClauseColumnAnd_N_Values ) {
+            values( ((AbstractWhereClauseColumnAnd_N_Values) zLeaf).getValues(), pStructure );
+        } else if ( zLeaf instanceof AbstractWhereClauseColumnAndLikeValue ) {
+            pStructure.add( ((AbstractWhereClauseColumnAndLikeValue) zLeaf).getValue() );
+        } else if ( zLeaf instanceof AbstractWhereClauseColumnAndLikeValues ) {
+            values( ((AbstractWhereClauseColumnAndLikeValues) zLeaf).getValues(), pStructure );
+        } else if ( zLeaf instanceof AbstractWhereClauseColumnIsIn ) {
+            SingleColumnSelect zSelect = ((AbstractWhereClauseColumnIsIn) zLeaf).getSingleColumnSelect();
+            pStructure.add( zSelect.getColumnDefinition() );
+            pTables.add( zSelect.getFromIdentifier().getTableName() );
+            pStructure.add( zSelect.getFromIdentifier().getTableName() );
+            if ( zSelect.getWhereClause() == null ) {
+                pStructure.add( null );
+            } else {
+                structure( zSelect.getWhereClause(), pStructure, pTables );
+            }
+        }
+    }
+
+    private static void values( Object[] pValues, List<Object> pStructure ) {
+        pStructure.add( pValues.length );
+        for ( Object zValue : pValues ) {
+            pStructure.add( value( zValue ) );
+        }
+    }
+
+    private static Object value( Object pValue ) {
+        if ( (pValue instanceof Integer) || (pValue instanceof Short) || (pValue instanceof Byte) ) {
+            return ((Number) pValue).longValue();
+        }
+        return pValue;
+    }
+
+    @Override
+    public boolean equals( Object them ) {
+        if ( this == them ) {
+            return true;
+        }
+        if ( !(them instanceof QueryKey) ) {
+            return false;
+        }
+        QueryKey zThem = (QueryKey) them;
+        return (mHashCode == zThem.mHashCode) && mTableName.equals( zThem.mTableName ) && mStructure.equals( zThem.mStructure );
+    }
+
+    @Override
+    public int hashCode() {
+        return mHashCode;
+    }
+
+    @Override
+    public String toString() {
+        return mTableName + ": " + mWhereClause;
+    }
+}
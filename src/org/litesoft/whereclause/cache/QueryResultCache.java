@@ -0,0 +1,476 @@
+// This Source Code is in the Public Domain per: http://unlicense.org
+package org.litesoft.whereclause.cache;
+
+import org.litesoft.whereclause.SimpleColumnDefinition;
+import org.litesoft.whereclause.SimpleFromIdentifier;
+import org.litesoft.whereclause.WhereClause;
+import org.litesoft.whereclause.nonpublic.IllegalArgument;
+import org.litesoft.whereclause.transform.WhereClauseCanonicalizer;
+import org.litesoft.whereclause.transform.WhereClauseTransform;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A bounded cache of the results (e.g. the rows, or just their IDs) of queries, keyed by
+ * their <b>SimpleFromIdentifier</b> and normalized <b>WhereClause</b> (see
+ * <b>QueryKey</b>), that is told of the changes to the tables and columns, and
+ * invalidates only the results that depend on them.<p>
+ * <a href="../../../Licence.txt">Licence</a><br>
+ * <p/>
+ * The WhereClauses are normalized (by default with the <b>WhereClauseCanonicalizer</b>)
+ * so that the same query, written differently, is the same key.<p>
+ * <p/>
+ * Eviction is W-TinyLFU: a new result enters a small (1%) LRU window; a result leaving
+ * the window is a candidate for the main space (a segmented LRU: a probation segment,
+ * and a protected segment (80%) of the results accessed while on probation), and is
+ * admitted only if its (recent) frequency, per a <b>FrequencySketch</b> of the gets and
+ * puts, is greater than that of the main space's victim (the LRU on probation),
+ * otherwise it is the one evicted.  So a burst of one off queries cannot flush the
+ * results that are queried often, while the window still gives a new query the time
+ * to build up its frequency.<p>
+ * <p/>
+ * A result depends on the tables of its query (including those of any IS_IN
+ * sub-selects), and the columns its WhereClause references:<p>
+ * <ul>
+ * <b>tableChanged()</b> (rows inserted or deleted) invalidates the results of the queries of the table, and<br>
+ * <b>columnsChanged()</b> (columns of rows updated) invalidates the results of the queries that reference any of the columns.
+ * </ul><p>
+ * A column change does NOT change which rows a query selects unless the query
+ * references the column, so the results that hold just the IDs of the rows (or only
+ * their referenced columns) remain valid; if the cached rows hold the changed columns,
+ * notify a table change instead.<p>
+ * <p/>
+ * The results are shared (NOT copied), so should be immutable.  A QueryResultCache is
+ * thread safe (each method holds the cache's lock, except while a <b>Loader</b>
+ * loads).<p>
+ *
+ * @param <V> the type of the results.
+ */
+public class QueryResultCache<V> {
+    /**
+     * Loads (e.g. from the database) the results of a query that is NOT cached.<p>
+     *
+     * @param <V> the type of the results.
+     */
+    public interface Loader<V> {
+        /**
+         * @return the results (null if none, and NOT to be cached).
+         */
+        V load( SimpleFromIdentifier pFromIdentifier, WhereClause pWhereClause );
+    }
+
+    private static final int WINDOW = 0, PROBATION = 1, PROTECTED = 2;
+
+    private final WhereClauseTransform mNormalizer;
+    private final int mMaximumSize, mWindowMaximum, mProtectedMaximum;
+    private final FrequencySketch mSketch;
+    private final Map<QueryKey, Entry<V>> mEntries = new HashMap<>();
+    private final Map<String, Set<Entry<V>>> mByTable = new HashMap<>();
+    private final Map<SimpleColumnDefinition, Set<Entry<V>>> mByColumn = new HashMap<>();
+    private final EntryQueue<V> mWindow = new EntryQueue<>(), mProbation = new EntryQueue<>(), mProtected = new EntryQueue<>();
+    private long mHits, mMisses, mEvictions, mInvalidations, mChanges;
+
+    /**
+     * Constructor.<p>
+     *
+     * @param pMaximumSize the maximum number of results (at least 1).
+     * @param pNormalizer  normalizes the WhereClauses of the keys (!null).
+     */
+    public QueryResultCache( int pMaximumSize, WhereClauseTransform pNormalizer ) {
+        if ( pMaximumSize < 1 ) {
+            throw IllegalArgument.exception( "MaximumSize", "must be at least 1, but was: " + pMaximumSize );
+        }
+        IllegalArgument.ifNull( "Normalizer", mNormalizer = pNormalizer );
+        mMaximumSize = pMaximumSize;
+        mWindowMaximum = Math.max( 1, pMaximumSize / 100 );
+        mProtectedMaximum = (int) ((pMaximumSize - mWindowMaximum) * 0.8);
+        mSketch = new FrequencySketch( pMaximumSize );
+    }
+
+    public QueryResultCache( int pMaximumSize ) {
+        this( pMaximumSize, WhereClauseCanonicalizer.INSTANCE );
+    }
+
+    /**
+     * @return the key of the query, with its WhereClause normalized.
+     */
+    public QueryKey keyOf( SimpleFromIdentifier pFromIdentifier, WhereClause pWhereClause ) {
+        IllegalArgument.ifNull( "WhereClause", pWhereClause );
+        return new QueryKey( pFromIdentifier, mNormalizer.transform( pWhereClause ) );
+    }
+
+    /**
+     * @return the cached results of the query, or null if NOT cached (a miss).
+     */
+    public V get( SimpleFromIdentifier pFromIdentifier, WhereClause pWhereClause ) {
+        return get( keyOf( pFromIdentifier, pWhereClause ) );
+    }
+
+    public V get( QueryKey pKey ) {
+        return get( pKey, true );
+    }
+
+    /**
+     * @param pCountMiss false if a miss is NOT (yet) to be counted (see <b>missed()</b>), as
+     *                   the caller may still answer the query otherwise.
+     *
+     * @return the cached results of the query (counting a hit, and an access), or null if NOT cached.
+     */
+    synchronized V get( QueryKey pKey, boolean pCountMiss ) {
+        IllegalArgument.ifNull( "Key", pKey );
+        mSketch.increment( pKey.hashCode() );
+        Entry<V> zEntry = mEntries.get( pKey );
+        if ( zEntry == null ) {
+            if ( pCountMiss ) {
+                mMisses++;
+            }
+            return null;
+        }
+        mHits++;
+        accessed( zEntry );
+        return zEntry.mValue;
+    }
+
+    /**
+     * Count a miss (of a <b>get( pKey, false )</b> that could NOT be answered otherwise).<p>
+     */
+    synchronized void missed() {
+        mMisses++;
+    }
+
+    /**
+     * Get the cached results of the query, or load (and cache) them on a miss.<p>
+     * <p/>
+     * The loader is called without the cache's lock, and the loaded results are NOT cached
+     * if a change was notified while loading (as they may be of before it).<p>
+     *
+     * @return the results (null only if the loader returned null).
+     */
+    public V get( SimpleFromIdentifier pFromIdentifier, WhereClause pWhereClause, Loader<V> pLoader ) {
+        IllegalArgument.ifNull( "Loader", pLoader );
+        QueryKey zKey = keyOf( pFromIdentifier, pWhereClause );
+        long zChanges;
+        synchronized ( this ) {
+            V zValue = get( zKey );
+            if ( zValue != null ) {
+                return zValue;
+            }
+            zChanges = mChanges;
+        }
+        return load( zKey, pFromIdentifier, pWhereClause, pLoader, zChanges );
+    }
+
+    /**
+     * Load (without the cache's lock), and cache unless a change was notified since pChanges.
+     */
+    V load( QueryKey pKey, SimpleFromIdentifier pFromIdentifier, WhereClause pWhereClause, Loader<V> pLoader, long pChanges ) {
+        V zValue = pLoader.load( pFromIdentifier, pWhereClause );
+        if ( zValue != null ) {
+            synchronized ( this ) {
+                if ( pChanges == mChanges ) {
+                    put( pKey, zValue );
+                }
+            }
+        }
+        return zValue;
+    }
+
+    public void put( SimpleFromIdentifier pFromIdentifier, WhereClause pWhereClause, V pValue ) {
+        put( keyOf( pFromIdentifier, pWhereClause ), pValue );
+    }
+
+    /**
+     * Cache (or replace) the results of the query, which may evict others (or, if its
+     * frequency is too low, eventually itself).<p>
+     */
+    public synchronized void put( QueryKey pKey, V pValue ) {
+        IllegalArgument.ifNull( "Key", pKey );
+        IllegalArgument.ifNull( "Value", pValue );
+        mSketch.increment( pKey.hashCode() );
+        Entry<V> zEntry = mEntries.get( pKey );
+        if ( zEntry != null ) { // Same key, so same dependencies
+            zEntry.mValue = pValue;
+            accessed( zEntry );
+            return;
+        }
+        mEntries.put( pKey, zEntry = new Entry<>( pKey, pValue ) );
+        for ( String zTable : pKey.getTables() ) {
+            dependents( mByTable, zTable ).add( zEntry );
+        }
+        for ( SimpleColumnDefinition zColumn : pKey.getColumns() ) {
+            dependents( mByColumn, zColumn ).add( zEntry );
+        }
+        mWindow.addLast( zEntry );
+        evict();
+    }
+
+    /**
+     * Rows of the table were inserted or deleted (or otherwise changed).<p>
+     *
+     * @return the number of results invalidated.
+     */
+    public int tableChanged( SimpleFromIdentifier pFromIdentifier ) {
+        IllegalArgument.ifNull( "FromIdentifier", pFromIdentifier );
+        return tableChanged( pFromIdentifier.getTableName() );
+    }
+
+    public synchronized int tableChanged( String pTableName ) {
+        IllegalArgument.ifNull( "TableName", pTableName );
+        mChanges++;
+        Set<Entry<V>> zDependents = mByTable.get( pTableName );
+        return (zDependents == null) ? 0 : invalidate( new ArrayList<>( zDependents ) );
+    }
+
+    /**
+     * The columns of (some) rows were updated.<p>
+     *
+     * @return the number of results invalidated.
+     */
+    public synchronized int columnsChanged( SimpleColumnDefinition... pColumnDefinitions ) {
+        IllegalArgument.ifNull( "ColumnDefinitions", pColumnDefinitions );
+        mChanges++;
+        Set<Entry<V>> zDependents = new LinkedHashSet<>();
+        for ( SimpleColumnDefinition zColumn : pColumnDefinitions ) {
+            IllegalArgument.ifNull( "ColumnDefinition", zColumn );
+            Set<Entry<V>> zColumnDependents = mByColumn.get( zColumn );
+            if ( zColumnDependents != null ) {
+                zDependents.addAll( zColumnDependents );
+            }
+        }
+        return invalidate( zDependents );
+    }
+
+    /**
+     * Invalidate all the results.<p>
+     */
+    public synchronized void clear() {
+        mChanges++;
+        invalidate( new ArrayList<>( mEntries.values() ) );
+    }
+
+    /**
+     * @return the number of changes notified (to detect one while loading).
+     */
+    synchronized long getChanges() {
+        return mChanges;
+    }
+
+    /**
+     * @return the keys of the cached results of the queries of the table.
+     */
+    synchronized List<QueryKey> keysOf( String pTableName ) {
+        List<QueryKey> zKeys = new ArrayList<>();
+        Set<Entry<V>> zDependents = mByTable.get( pTableName );
+        if ( zDependents != null ) {
+            for ( Entry<V> zEntry : zDependents ) {
+                if ( pTableName.equals( zEntry.mKey.getTableName() ) ) {
+                    zKeys.add( zEntry.mKey );
+                }
+            }
+        }
+        return zKeys;
+    }
+
+    /**
+     * @return the cached results (without counting a hit or a miss, or an access), or null if NOT cached.
+     */
+    synchronized V peek( QueryKey pKey ) {
+        Entry<V> zEntry = mEntries.get( pKey );
+        return (zEntry == null) ? null : zEntry.mValue;
+    }
+
+    public synchronized int size() {
+        return mEntries.size();
+    }
+
+    public int getMaximumSize() {
+        return mMaximumSize;
+    }
+
+    public synchronized long getHits() {
+        return mHits;
+    }
+
+    public synchronized long getMisses() {
+        return mMisses;
+    }
+
+    /**
+     * @return the number of results evicted (or NOT admitted) for the size.
+     */
+    public synchronized long getEvictions() {
+        return mEvictions;
+    }
+
+    /**
+     * @return the number of results invalidated by the changes.
+     */
+    public synchronized long getInvalidations() {
+        return mInvalidations;
+    }
+
+    /**
+     * @return the hits / (hits + misses), 0 if neither.
+     */
+    public synchronized double getHitRate() {
+        long zRequests = mHits + mMisses;
+        return (zRequests == 0) ? 0.0 : (double) mHits / zRequests;
+    }
+
+    private void accessed( Entry<V> pEntry ) {
+        switch ( pEntry.mQueue ) {
+            case WINDOW:
+                mWindow.moveToLast( pEntry );
+                return;
+            case PROTECTED:
+                mProtected.moveToLast( pEntry );
+                return;
+            default: // PROBATION, so promote it
+                mProbation.remove( pEntry );
+                pEntry.mQueue = PROTECTED;
+                mProtected.addLast( pEntry );
+                while ( mProtected.mSize > mProtectedMaximum ) { // demote the LRU
+                    Entry<V> zDemoted = mProtected.mFirst;
+                    mProtected.remove( zDemoted );
+                    zDemoted.mQueue = PROBATION;
+                    mProbation.addLast( zDemoted );
+                }
+        }
+    }
+
+    /**
+     * Move the window's overflow to probation (as candidates), then, while over the
+     * maximum size, evict the lower frequency of the first candidate and the victim (the
+     * LRU on probation).<p>
+     */
+    private void evict() {
+        Entry<V> zCandidate = null;
+        while ( mWindow.mSize > mWindowMaximum ) {
+            Entry<V> zEntry = mWindow.mFirst;
+            mWindow.remove( zEntry );
+            zEntry.mQueue = PROBATION;
+            mProbation.addLast( zEntry );
+            if ( zCandidate == null ) {
+                zCandidate = zEntry;
+            }
+        }
+        while ( mEntries.size() > mMaximumSize ) {
+            Entry<V> zVictim = (mProbation.mFirst != null) ? mProbation.mFirst : (mProtected.mFirst != null) ? mProtected.mFirst : mWindow.mFirst;
+            if ( (zCandidate == null) || (zVictim.mQueue != PROBATION) ) {
+                remove( zVictim );
+            } else if ( zCandidate == zVictim ) { // only candidates left on probation
+                zCandidate = zCandidate.mNext;
+                remove( zVictim );
+            } else if ( mSketch.frequency( zCandidate.mKey.hashCode() ) > mSketch.frequency( zVictim.mKey.hashCode() ) ) {
+                remove( zVictim );
+            } else {
+                Entry<V> zNext = zCandidate.mNext;
+                remove( zCandidate );
+                zCandidate = zNext;
+            }
+            mEvictions++;
+        }
+    }
+
+    private int invalidate( Iterable<Entry<V>> pEntries ) {
+        int zInvalidated = 0;
+        for ( Entry<V> zEntry : pEntries ) {
+            remove( zEntry );
+            zInvalidated++;
+        }
+        mInvalidations += zInvalidated;
+        return zInvalidated;
+    }
+
+    private void remove( Entry<V> pEntry ) {
+        mEntries.remove( pEntry.mKey );
+        ((pEntry.mQueue == WINDOW) ? mWindow : (pEntry.mQueue == PROBATION) ? mProbation : mProtected).remove( pEntry );
+        for ( String zTable : pEntry.mKey.getTables() ) {
+            undepend( mByTable, zTable, pEntry );
+        }
+        for ( SimpleColumnDefinition zColumn : pEntry.mKey.getColumns() ) {
+            undepend( mByColumn, zColumn, pEntry );
+        }
+    }
+
+    private static <K, V> Set<Entry<V>> dependents( Map<K, Set<Entry<V>>> pDependents, K pOn ) {
+        Set<Entry<V>> zDependents = pDependents.get( pOn );
+        if ( zDependents == null ) {
+            pDependents.put( pOn, zDependents = new HashSet<>() );
+        }
+        return zDependents;
+    }
+
+    private static <K, V> void undepend( Map<K, Set<Entry<V>>> pDependents, K pOn, Entry<V> pEntry ) {
+        Set<Entry<V>> zDependents = pDependents.get( pOn );
+        if ( (zDependents != null) && zDependents.remove( pEntry ) && zDependents.isEmpty() ) {
+            pDependents.remove( pOn );
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "QueryResultCache(" + mEntries.size() + "/" + mMaximumSize + " results, " + mHits + " hits, " + mMisses + " misses, " + //
+               mEvictions + " evictions, " + mInvalidations + " invalidations)";
+    }
+
+    private static final class Entry<V> {
+        private final QueryKey mKey;
+        private V mValue;
+        private int mQueue = WINDOW;
+        private Entry<V> mPrevious, mNext;
+
+        Entry( QueryKey pKey, V pValue ) {
+            mKey = pKey;
+            mValue = pValue;
+        }
+    }
+
+    /**
+     * A doubly linked (through the entries) LRU queue: the first is the least recently used.
+     */
+    private static final class EntryQueue<V> {
+        private Entry<V> mFirst, mLast;
+        private int mSize;
+
+        void addLast( Entry<V> pEntry ) {
+            pEntry.mPrevious = mLast;
+            pEntry.mNext = null;
+            if ( mLast == null ) {
+                mFirst = pEntry;
+            } else {
+                mLast.mNext = pEntry;
+            }
+            mLast = pEntry;
+            mSize++;
+        }
+
+        void remove( Entry<V> pEntry ) {
+            if ( pEntry.mPrevious == null ) {
+                mFirst = pEntry.mNext;
+            } else {
+                pEntry.mPrevious.mNext = pEntry.mNext;
+            }
+            if ( pEntry.mNext == null ) {
+                mLast = pEntry.mPrevious;
+            } else {
+                pEntry.mNext.mPrevious = pEntry.mPrevious;
+            }
+            pEntry.mPrevious = pEntry.mNext = null;
+            mSize--;
+        }
+
+        void moveToLast( Entry<V> pEntry ) {
+            if ( pEntry != mLast ) {
+                remove( pEntry );
+                addLast( pEntry );
+            }
+        }
+    }
+}
@@ -0,0 +1,167 @@
+// This Source Code is in the Public Domain per: http://unlicense.org
+package org.litesoft.whereclause.cache;
+
+import org.litesoft.whereclause.SimpleFromIdentifier;
+import org.litesoft.whereclause.WhereClause;
+import org.litesoft.whereclause.evaluation.ColumnAccessor;
+import org.litesoft.whereclause.evaluation.WhereClauseEvaluator;
+import org.litesoft.whereclause.nonpublic.IllegalArgument;
+
+import java.util.List;
+
+/**
+ * A semantic cache of the rows of queries: a query that is NOT cached is answered, where
+ * it can be, by filtering (in memory, with the <b>WhereClauseEvaluator</b>) the cached
+ * rows of a broader query of the same table, i.e. one that it implies (see
+ * <b>QueryContainment</b>), instead of going back to the database.<p>
+ * <a href="../../../Licence.txt">Licence</a><br>
+ * <p/>
+ * The rows are held by a <b>QueryResultCache</b> (so bounded, and W-TinyLFU evicted);
+ * when several cached queries are broader, the one with the fewest rows is filtered.
+ * The filtered rows are NOT themselves cached (the broader rows answer them again).
+ * Each query is counted once in the QueryResultCache's statistics: an exact or a
+ * contained hit as a hit, and anything else as a miss.<p>
+ * <p/>
+ * As the rows themselves are cached, any change to them (including an update of a column
+ * that the WhereClauses do NOT reference) is a <b>tableChanged()</b>.  The cached rows
+ * must hold (at least) the columns of the WhereClauses that they are to answer, and a
+ * narrower WhereClause with an IS_IN (sub-select) is only answered if its table is in
+ * memory for the evaluator (see <b>InMemoryTables</b>).<p>
+ * <p/>
+ * A SemanticResultCache is thread safe (as is its QueryResultCache).<p>
+ *
+ * @param <R> the type of the rows.
+ */
+public class SemanticResultCache<R> {
+    private final QueryResultCache<List<R>> mCache;
+    private final WhereClauseEvaluator<R> mEvaluator;
+    private final QueryContainment mContainment;
+    private long mExactHits, mContainedHits, mMisses;
+
+    /**
+     * Constructor.<p>
+     *
+     * @param pCache       holds the rows of the queries (!null).
+     * @param pEvaluator   filters the rows of the broader queries (!null).
+     * @param pContainment decides which queries are broader (!null).
+     */
+    public SemanticResultCache( QueryResultCache<List<R>> pCache, WhereClauseEvaluator<R> pEvaluator, QueryContainment pContainment ) {
+        IllegalArgument.ifNull( "Cache", mCache = pCache );
+        IllegalArgument.ifNull( "Evaluator", mEvaluator = pEvaluator );
+        IllegalArgument.ifNull( "Containment", mContainment = pContainment );
+    }
+
+    public SemanticResultCache( int pMaximumSize, ColumnAccessor<R> pAccessor ) {
+        this( new QueryResultCache<List<R>>( pMaximumSize ), new WhereClauseEvaluator<>( pAccessor ), QueryContainment.INSTANCE );
+    }
+
+    public QueryResultCache<List<R>> getCache() {
+        return mCache;
+    }
+
+    /**
+     * @return the cached rows of the query, or those of a broader query filtered by it, or null if neither (a miss).
+     */
+    public List<R> get( SimpleFromIdentifier pFromIdentifier, WhereClause pWhereClause ) {
+        return answer( mCache.keyOf( pFromIdentifier, pWhereClause ) );
+    }
+
+    /**
+     * Get the rows of the query (see <b>get()</b>), or on a miss load (and cache) them (see <b>QueryResultCache.get()</b>).<p>
+     *
+     * @return the rows (null only if the loader returned null).
+     */
+    public List<R> get( SimpleFromIdentifier pFromIdentifier, WhereClause pWhereClause, QueryResultCache.Loader<List<R>> pLoader ) {
+        IllegalArgument.ifNull( "Loader", pLoader );
+        QueryKey zKey = mCache.keyOf( pFromIdentifier, pWhereClause );
+        long zChanges = mCache.getChanges();
+        List<R> zRows = answer( zKey );
+        return (zRows != null) ? zRows : mCache.load( zKey, pFromIdentifier, pWhereClause, pLoader, zChanges );
+    }
+
+    /**
+     * Cache the rows of the query (shared, NOT copied, so they should NOT be changed).<p>
+     */
+    public void put( SimpleFromIdentifier pFromIdentifier, WhereClause pWhereClause, List<R> pRows ) {
+        mCache.put( pFromIdentifier, pWhereClause, pRows );
+    }
+
+    /**
+     * Rows of the table were inserted, deleted or updated.<p>
+     *
+     * @return the number of (cached) queries invalidated.
+     */
+    public int tableChanged( SimpleFromIdentifier pFromIdentifier ) {
+        return mCache.tableChanged( pFromIdentifier );
+    }
+
+    public int tableChanged( String pTableName ) {
+        return mCache.tableChanged( pTableName );
+    }
+
+    public void clear() {
+        mCache.clear();
+    }
+
+    /**
+     * @return the number of queries answered by their own cached rows.
+     */
+    public synchronized long getExactHits() {
+        return mExactHits;
+    }
+
+    /**
+     * @return the number of queries answered by filtering the rows of a broader query.
+     */
+    public synchronized long getContainedHits() {
+        return mContainedHits;
+    }
+
+    public synchronized long getMisses() {
+        return mMisses;
+    }
+
+    private List<R> answer( QueryKey pKey ) {
+        List<R> zRows = mCache.get( pKey, false ); // each query is counted (by the QueryResultCache) only once
+        if ( zRows != null ) {
+            counted( true, false );
+            return zRows;
+        }
+        QueryKey zBroader = null;
+        List<R> zBroaderRows = null;
+        if ( mEvaluator.canEvaluate( pKey.getWhereClause() ) ) { // NOT with an IS_IN whose table is NOT in memory
+            for ( QueryKey zCandidate : mCache.keysOf( pKey.getTableName() ) ) {
+                List<R> zCandidateRows = mCache.peek( zCandidate );
+                if ( (zCandidateRows != null) && ((zBroaderRows == null) || (zCandidateRows.size() < zBroaderRows.size())) && //
+                     mContainment.implies( pKey.getWhereClause(), zCandidate.getWhereClause() ) ) {
+                    zBroader = zCandidate;
+                    zBroaderRows = zCandidateRows;
+                }
+            }
+        }
+        if ( zBroader != null ) {
+            zRows = mEvaluator.filter( pKey.getWhereClause(), zBroaderRows );
+            mCache.get( zBroader, false ); // a hit (and an access) of the broader rows
+            counted( false, true );
+            return zRows;
+        }
+        mCache.missed();
+        counted( false, false );
+        return null;
+    }
+
+    private synchronized void counted( boolean pExact, boolean pContained ) {
+        if ( pExact ) {
+            mExactHits++;
+        } else if ( pContained ) {
+            mContainedHits++;
+        } else {
+            mMisses++;
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "SemanticResultCache(" + mExactHits + " exact hits, " + mContainedHits + " contained hits, " + mMisses + " misses: " + mCache + ")";
+    }
+}
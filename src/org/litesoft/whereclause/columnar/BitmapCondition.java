@@ -0,0 +1,14 @@
+// This Source Code is in the Public Domain per: http://unlicense.org
+package org.litesoft.whereclause.columnar;
+
+/**
+ * A compiled node of a <b>WhereClause</b> tree, evaluated for a whole <b>ColumnarBatch</b>
+ * at a time into two bitmaps: the TRUE rows and the UNKNOWN rows (the rest are FALSE).<p>
+ * <a href="../../../Licence.txt">Licence</a><br>
+ */
+abstract class BitmapCondition {
+    /**
+     * Evaluate (overwriting all the words of pTrue and pUnknown, which are Bitmaps.wordsFor( pBatch.size() ) long).
+     */
+    abstract void evaluate( ColumnarBatch pBatch, long[] pTrue, long[] pUnknown );
+}
@@ -0,0 +1,173 @@
+// This Source Code is in the Public Domain per: http://unlicense.org
+package org.litesoft.whereclause.columnar;
+
+import org.litesoft.whereclause.evaluation.LongSet;
+
+import java.util.Arrays;
+
+/**
+ * The (scalar, branch free) loops that compare a primitive column against constants,
+ * building the match bitmap a 64 row word at a time (from its last row down, so each
+ * row's bit is shifted in; the integral ranges are computed arithmetically, as compare
+ * results, especially when combined, tend to be compiled into branches, which mispredict).<p>
+ * <a href="../../../Licence.txt">Licence</a><br>
+ * <p/>
+ * The double compares are written to give exactly the results of
+ * <b>WhereClauseValueSupport.compareDoubles()</b> against (NOT NaN) constants, i.e. a
+ * NaN (row value) is greater than every constant.<p>
+ */
+final class BitmapKernels {
+    /**
+     * A small IS_ANY_OF is tested by a chain of equals rather than its <b>LongSet</b>.
+     */
+    private static final int LINEAR_ANY_OF = 8;
+
+    private BitmapKernels() {
+    }
+
+    static void intRange( int[] pValues, int pSize, int pLo, int pHi, long[] pMatches ) {
+        for ( int zWord = 0, zFrom = 0; zFrom < pSize; zWord++, zFrom += 64 ) {
+            int zTo = Math.min( zFrom + 64, pSize );
+            long zBits = 0;
+            for ( int i = zTo - 1; i >= zFrom; i-- ) {
+                int zValue = pValues[i];
+                zBits = (zBits << 1) | inRange( zValue, pLo, pHi );
+            }
+            pMatches[zWord] = zBits;
+        }
+    }
+
+    /**
+     * As an unsigned compare of the offset from pLo against the width of the range (so, a single compare).
+     */
+    static void longRange( long[] pValues, int pSize, long pLo, long pHi, long[] pMatches ) {
+        if ( pLo > pHi ) {
+            Arrays.fill( pMatches, 0, Bitmaps.wordsFor( pSize ), 0L );
+            return;
+        }
+        long zWidth = (pHi - pLo) + Long.MIN_VALUE;
+        for ( int zWord = 0, zFrom = 0; zFrom < pSize; zWord++, zFrom += 64 ) {
+            int zTo = Math.min( zFrom + 64, pSize );
+            long zBits = 0;
+            for ( int i = zTo - 1; i >= zFrom; i-- ) {
+                zBits = (zBits << 1) | ((((pValues[i] - pLo) + Long.MIN_VALUE) <= zWidth) ? 1L : 0L);
+            }
+            pMatches[zWord] = zBits;
+        }
+    }
+
+    static void intAnyOf( int[] pValues, int pSize, int[] pSorted, LongSet pSet, long[] pMatches ) {
+        boolean zLinear = (pSorted.length <= LINEAR_ANY_OF);
+        for ( int zWord = 0, zFrom = 0; zFrom < pSize; zWord++, zFrom += 64 ) {
+            int zTo = Math.min( zFrom + 64, pSize );
+            long zBits = 0;
+            if ( zLinear ) {
+                for ( int i = zTo - 1; i >= zFrom; i-- ) {
+                    int zValue = pValues[i];
+                    boolean zMatch = false;
+                    for ( int zConstant : pSorted ) {
+                        zMatch |= (zValue == zConstant);
+                    }
+                    zBits = (zBits << 1) | (zMatch ? 1L : 0L);
+                }
+            } else {
+                for ( int i = zTo - 1; i >= zFrom; i-- ) {
+                    zBits = (zBits << 1) | (pSet.contains( pValues[i] ) ? 1L : 0L);
+                }
+            }
+            pMatches[zWord] = zBits;
+        }
+    }
+
+    static void longAnyOf( long[] pValues, int pSize, long[] pSorted, LongSet pSet, long[] pMatches ) {
+        boolean zLinear = (pSorted.length <= LINEAR_ANY_OF);
+        for ( int zWord = 0, zFrom = 0; zFrom < pSize; zWord++, zFrom += 64 ) {
+            int zTo = Math.min( zFrom + 64, pSize );
+            long zBits = 0;
+            if ( zLinear ) {
+                for ( int i = zTo - 1; i >= zFrom; i-- ) {
+                    long zValue = pValues[i];
+                    boolean zMatch = false;
+                    for ( long zConstant : pSorted ) {
+                        zMatch |= (zValue == zConstant);
+                    }
+                    zBits = (zBits << 1) | (zMatch ? 1L : 0L);
+                }
+            } else {
+                for ( int i = zTo - 1; i >= zFrom; i-- ) {
+                    zBits = (zBits << 1) | (pSet.contains( pValues[i] ) ? 1L : 0L);
+                }
+            }
+            pMatches[zWord] = zBits;
+        }
+    }
+
+    /**
+     * pLess: "value < pLimit", otherwise "value > pLimit" (as "NOT (value <= pLimit)", so a NaN is greater).
+     */
+    static void doubleOpen( double[] pValues, int pSize, boolean pLess, double pLimit, long[] pMatches ) {
+        for ( int zWord = 0, zFrom = 0; zFrom < pSize; zWord++, zFrom += 64 ) {
+            int zTo = Math.min( zFrom + 64, pSize );
+            long zBits = 0;
+            if ( pLess ) {
+                for ( int i = zTo - 1; i >= zFrom; i-- ) {
+                    zBits = (zBits << 1) | ((pValues[i] < pLimit) ? 1L : 0L);
+                }
+            } else {
+                for ( int i = zTo - 1; i >= zFrom; i-- ) {
+                    zBits = (zBits << 1) | (!(pValues[i] <= pLimit) ? 1L : 0L);
+                }
+            }
+            pMatches[zWord] = zBits;
+        }
+    }
+
+    /**
+     * "(pLo <= value) AND (value <= pHi)", i.e. EQUALS (pLo == pHi) and BETWEEN (so a NaN is never in).
+     */
+    static void doubleClosed( double[] pValues, int pSize, double pLo, double pHi, long[] pMatches ) {
+        for ( int zWord = 0, zFrom = 0; zFrom < pSize; zWord++, zFrom += 64 ) {
+            int zTo = Math.min( zFrom + 64, pSize );
+            long zBits = 0;
+            for ( int i = zTo - 1; i >= zFrom; i-- ) {
+                double zValue = pValues[i];
+                zBits = (zBits << 1) | (((pLo <= zValue) & (zValue <= pHi)) ? 1L : 0L);
+            }
+            pMatches[zWord] = zBits;
+        }
+    }
+
+    static void doubleAnyOf( double[] pValues, int pSize, double[] pConstants, long[] pMatches ) {
+        for ( int zWord = 0, zFrom = 0; zFrom < pSize; zWord++, zFrom += 64 ) {
+            int zTo = Math.min( zFrom + 64, pSize );
+            long zBits = 0;
+            for ( int i = zTo - 1; i >= zFrom; i-- ) {
+                double zValue = pValues[i];
+                boolean zMatch = false;
+                for ( double zConstant : pConstants ) {
+                    zMatch |= (zValue == zConstant);
+                }
+                zBits = (zBits << 1) | (zMatch ? 1L : 0L);
+            }
+            pMatches[zWord] = zBits;
+        }
+    }
+
+    /**
+     * The doubles of the int column (exact), for compares with non-integral constants.
+     */
+    static double[] toDoubles( int[] pValues, int pSize ) {
+        double[] zDoubles = new double[pSize];
+        for ( int i = 0; i < pSize; i++ ) {
+            zDoubles[i] = pValues[i];
+        }
+        return zDoubles;
+    }
+
+    /**
+     * @return 1 if pLo <= pValue <= pHi, otherwise 0.
+     */
+    private static long inRange( int pValue, int pLo, int pHi ) {
+        return ~(((long) pValue - pLo) | ((long) pHi - pValue)) >>> 63;
+    }
+}
@@ -0,0 +1,56 @@
+// This Source Code is in the Public Domain per: http://unlicense.org
+package org.litesoft.whereclause.columnar;
+
+/**
+ * Utility class for the bitmaps (<b>long[]</b>s of 64 row words, with row <i>i</i> at bit
+ * <i>i % 64</i> of word <i>i / 64</i>) used for the NULLs of a <b>ColumnVector</b> and
+ * for the selections of a <b>ColumnarFilter</b>.<p>
+ * <a href="../../../Licence.txt">Licence</a><br>
+ * <p/>
+ * The bits beyond the size (in the last word) are always clear.<p>
+ */
+public class Bitmaps {
+    private Bitmaps() {
+    }
+
+    /**
+     * @return the number of words for pSize rows.
+     */
+    public static int wordsFor( int pSize ) {
+        return (pSize + 63) >>> 6;
+    }
+
+    /**
+     * @return a (clear) bitmap for pSize rows.
+     */
+    public static long[] create( int pSize ) {
+        return new long[wordsFor( pSize )];
+    }
+
+    /**
+     * @return the mask of the valid bits of the (last) word starting at row pFrom.
+     */
+    public static long validMask( int pSize, int pFrom ) {
+        int zRows = pSize - pFrom;
+        return (zRows >= 64) ? -1L : ((1L << zRows) - 1);
+    }
+
+    public static boolean get( long[] pBitmap, int pRow ) {
+        return (pBitmap[pRow >>> 6] & (1L << pRow)) != 0;
+    }
+
+    public static void set( long[] pBitmap, int pRow ) {
+        pBitmap[pRow >>> 6] |= (1L << pRow);
+    }
+
+    /**
+     * @return the number of set bits (e.g. selected rows).
+     */
+    public static int cardinality( long[] pBitmap ) {
+        int zCount = 0;
+        for ( long zWord : pBitmap ) {
+            zCount += Long.bitCount( zWord );
+        }
+        return zCount;
+    }
+}
@@ -0,0 +1,58 @@
+// This Source Code is in the Public Domain per: http://unlicense.org
+package org.litesoft.whereclause.columnar;
+
+import org.litesoft.whereclause.nonpublic.IllegalArgument;
+
+import java.lang.reflect.Array;
+
+/**
+ * The values of one column of a <b>ColumnarBatch</b>, with an (optional) NULLs bitmap
+ * (see <b>Bitmaps</b>: a set bit is a NULL).<p>
+ * <a href="../../../Licence.txt">Licence</a><br>
+ * <p/>
+ * The value of a NULL row (in the primitive array) is ignored.<p>
+ */
+public abstract class ColumnVector {
+    private final int mSize;
+    private final long[] mNulls;
+
+    protected ColumnVector( int pSize, long[] pNulls ) {
+        mSize = pSize;
+        if ( (pNulls != null) && (pNulls.length < Bitmaps.wordsFor( pSize )) ) {
+            throw IllegalArgument.exception( "Nulls", "too short (" + pNulls.length + " words) for " + pSize + " rows" );
+        }
+        mNulls = pNulls;
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * @return the NULLs bitmap, or null if there are NO NULLs.
+     */
+    public long[] getNulls() {
+        return mNulls;
+    }
+
+    public boolean isNull( int pRow ) {
+        return (mNulls != null) && Bitmaps.get( mNulls, pRow );
+    }
+
+    /**
+     * @return the (boxed) value of the row, or null for a NULL.
+     */
+    public final Object getValue( int pRow ) {
+        return isNull( pRow ) ? null : getNonNullValue( pRow );
+    }
+
+    abstract protected Object getNonNullValue( int pRow );
+
+    /**
+     * @return the length of the (!null) values array.
+     */
+    protected static int lengthOf( Object pValues ) {
+        IllegalArgument.ifNull( "Values", pValues );
+        return Array.getLength( pValues );
+    }
+}
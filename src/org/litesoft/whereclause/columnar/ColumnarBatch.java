@@ -0,0 +1,55 @@
+// This Source Code is in the Public Domain per: http://unlicense.org
+package org.litesoft.whereclause.columnar;
+
+import org.litesoft.whereclause.SimpleColumnDefinition;
+import org.litesoft.whereclause.nonpublic.IllegalArgument;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A batch of rows held column wise: a <b>ColumnVector</b> (of the same size) per
+ * <b>SimpleColumnDefinition</b>.<p>
+ * <a href="../../../Licence.txt">Licence</a><br>
+ */
+public class ColumnarBatch {
+    private final int mSize;
+    private final Map<SimpleColumnDefinition, ColumnVector> mColumns = new HashMap<>();
+
+    public ColumnarBatch( int pSize ) {
+        if ( pSize < 0 ) {
+            throw IllegalArgument.exception( "Size", "negative: " + pSize );
+        }
+        mSize = pSize;
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * Add (or replace) a column.<p>
+     *
+     * @return this (for chaining).
+     */
+    public ColumnarBatch add( SimpleColumnDefinition pColumnDefinition, ColumnVector pVector ) {
+        IllegalArgument.ifNull( "ColumnDefinition", pColumnDefinition );
+        IllegalArgument.ifNull( "Vector", pVector );
+        if ( pVector.size() != mSize ) {
+            throw IllegalArgument.exception( "Vector", "size " + pVector.size() + " NOT the batch's: " + mSize );
+        }
+        mColumns.put( pColumnDefinition, pVector );
+        return this;
+    }
+
+    /**
+     * @return the column (!null).
+     */
+    public ColumnVector getColumn( SimpleColumnDefinition pColumnDefinition ) {
+        ColumnVector zVector = mColumns.get( pColumnDefinition );
+        if ( zVector == null ) {
+            throw IllegalArgument.exception( "ColumnDefinition", "NOT in the batch: " + pColumnDefinition.getColumnName() );
+        }
+        return zVector;
+    }
+}
@@ -0,0 +1,495 @@
+// This Source Code is in the Public Domain per: http://unlicense.org
+package org.litesoft.whereclause.columnar;
+
+import org.litesoft.whereclause.SimpleColumnDefinition;
+import org.litesoft.whereclause.WhereClause;
+import org.litesoft.whereclause.WhereClauseType;
+import org.litesoft.whereclause.WhereClauseValueSupport;
+import org.litesoft.whereclause.evaluation.ColumnAccessor;
+import org.litesoft.whereclause.evaluation.LongSet;
+import org.litesoft.whereclause.evaluation.RowFilter;
+import org.litesoft.whereclause.evaluation.TriState;
+import org.litesoft.whereclause.evaluation.WhereClauseEvaluator;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseAssociativeList;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseColumnAndTwoValues;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseColumnAndValue;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseColumnAnd_N_Values;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseColumnReference;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseWrapper;
+import org.litesoft.whereclause.nonpublic.IllegalArgument;
+import org.litesoft.whereclause.transform.WhereClauseTransform;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Evaluates <b>WhereClause</b>s against a <b>ColumnarBatch</b> (rows held column wise),
+ * producing selection bitmaps (see <b>Bitmaps</b>) instead of a result per row.<p>
+ * <a href="../../../Licence.txt">Licence</a><br>
+ * <p/>
+ * Each node is evaluated for the whole batch into a TRUE and an UNKNOWN bitmap, so the
+ * AND, OR, and NOT (of SQL's three-valued logic) are bitwise operations over 64 row
+ * words, and the NULLs of a leaf are applied from the column's NULLs bitmap.  The
+ * EQUALS, LESSTHAN, GREATERTHAN, BETWEEN and IS_ANY_OF of Int, Long and Double columns
+ * (with numeric values) are tight loops over the primitive arrays; the leaves of a
+ * Dictionary column are evaluated once per dictionary entry; and anything else is
+ * evaluated row by row.  Either way the results are exactly those of the
+ * <b>WhereClauseEvaluator</b>.<p>
+ * <p/>
+ * An AND (OR) stops evaluating its children once no row of the batch can still be TRUE
+ * (FALSE).<p>
+ */
+public class ColumnarEvaluator {
+    private static final ColumnAccessor<Object> VALUE_ACCESSOR = new ColumnAccessor<Object>() {
+        @Override
+        public Object getValue( Object pValue, SimpleColumnDefinition pColumnDefinition ) {
+            return pValue; // The "row" is the column's value
+        }
+    };
+
+    private final WhereClauseEvaluator<Object> mLeafEvaluator = new WhereClauseEvaluator<>( VALUE_ACCESSOR );
+    private final WhereClauseTransform mTransform;
+
+    /**
+     * Constructor.<p>
+     *
+     * @param pTransform applied to each WhereClause before compiling (!null, WhereClauseTransform.NONE for none).
+     */
+    public ColumnarEvaluator( WhereClauseTransform pTransform ) {
+        IllegalArgument.ifNull( "Transform", mTransform = pTransform );
+    }
+
+    /**
+     * Constructor (without a transform).<p>
+     */
+    public ColumnarEvaluator() {
+        this( WhereClauseTransform.NONE );
+    }
+
+    /**
+     * @param pWhereClause the tree (!null, no IS_IN).
+     */
+    public ColumnarFilter compile( WhereClause pWhereClause ) {
+        IllegalArgument.ifNull( "WhereClause", pWhereClause );
+        WhereClause zWhereClause = mTransform.transform( pWhereClause );
+        return new ColumnarFilter( zWhereClause, compileNode( zWhereClause ) );
+    }
+
+    /**
+     * Select the rows of a batch (prefer <b>compile()</b> for repeated use).<p>
+     *
+     * @return the selection bitmap of the rows for which the WhereClause is TRUE.
+     */
+    public long[] select( WhereClause pWhereClause, ColumnarBatch pBatch ) {
+        return compile( pWhereClause ).select( pBatch );
+    }
+
+    private BitmapCondition compileNode( WhereClause pWhereClause ) {
+        switch ( pWhereClause.getType() ) {
+            case TRUE:
+                return new Constant( true );
+            case FALSE:
+                return new Constant( false );
+            case AND:
+                return new Junction( true, compileAll( ((AbstractWhereClauseAssociativeList) pWhereClause).getWhereClauseList() ) );
+            case OR:
+                return new Junction( false, compileAll( ((AbstractWhereClauseAssociativeList) pWhereClause).getWhereClauseList() ) );
+            case NOT:
+                return new Not( compileNode( ((AbstractWhereClauseWrapper) pWhereClause).getWrappedWhereClause() ) );
+            default:
+                return new Leaf( (AbstractWhereClauseColumnReference) pWhereClause, mLeafEvaluator.compile( pWhereClause ) );
+        }
+    }
+
+    private BitmapCondition[] compileAll( List<WhereClause> pWhereClauses ) {
+        BitmapCondition[] zConditions = new BitmapCondition[pWhereClauses.size()];
+        for ( int i = 0; i < zConditions.length; i++ ) {
+            zConditions[i] = compileNode( pWhereClauses.get( i ) );
+        }
+        return zConditions;
+    }
+
+    private static class Constant extends BitmapCondition {
+        private final boolean mValue;
+
+        Constant( boolean pValue ) {
+            mValue = pValue;
+        }
+
+        @Override
+        void evaluate( ColumnarBatch pBatch, long[] pTrue, long[] pUnknown ) {
+            int zSize = pBatch.size();
+            for ( int zWord = 0, zFrom = 0; zFrom < zSize; zWord++, zFrom += 64 ) {
+                pTrue[zWord] = mValue ? Bitmaps.validMask( zSize, zFrom ) : 0L;
+                pUnknown[zWord] = 0L;
+            }
+        }
+    }
+
+    private static class Not extends BitmapCondition {
+        private final BitmapCondition mCondition;
+
+        Not( BitmapCondition pCondition ) {
+            mCondition = pCondition;
+        }
+
+        @Override
+        void evaluate( ColumnarBatch pBatch, long[] pTrue, long[] pUnknown ) {
+            mCondition.evaluate( pBatch, pTrue, pUnknown );
+            int zSize = pBatch.size();
+            for ( int zWord = 0, zFrom = 0; zFrom < zSize; zWord++, zFrom += 64 ) {
+                pTrue[zWord] = ~(pTrue[zWord] | pUnknown[zWord]) & Bitmaps.validMask( zSize, zFrom );
+            }
+        }
+    }
+
+    /**
+     * An AND:
+     * <pre>
+     *      TRUE = T1 & T2,  UNKNOWN = (T1 | U1) & (T2 | U2) & ~TRUE
+     * </pre>
+     * or an OR:
+     * <pre>
+     *      TRUE = T1 | T2,  UNKNOWN = (U1 | U2) & ~TRUE
+     * </pre>
+     */
+    private static class Junction extends BitmapCondition {
+        private final boolean mAnd;
+        private final BitmapCondition[] mConditions;
+
+        Junction( boolean pAnd, BitmapCondition[] pConditions ) {
+            mAnd = pAnd;
+            mConditions = pConditions;
+        }
+
+        @Override
+        void evaluate( ColumnarBatch pBatch, long[] pTrue, long[] pUnknown ) {
+            mConditions[0].evaluate( pBatch, pTrue, pUnknown );
+            int zSize = pBatch.size();
+            long[] zTrue = null;
+            long[] zUnknown = null;
+            for ( int i = 1; (i < mConditions.length) && isUndecided( zSize, pTrue, pUnknown ); i++ ) {
+                if ( zTrue == null ) {
+                    zTrue = Bitmaps.create( zSize );
+                    zUnknown = Bitmaps.create( zSize );
+                }
+                mConditions[i].evaluate( pBatch, zTrue, zUnknown );
+                int zWords = Bitmaps.wordsFor( zSize );
+                if ( mAnd ) {
+                    for ( int w = 0; w < zWords; w++ ) {
+                        long zResultTrue = pTrue[w] & zTrue[w];
+                        pUnknown[w] = (pTrue[w] | pUnknown[w]) & (zTrue[w] | zUnknown[w]) & ~zResultTrue;
+                        pTrue[w] = zResultTrue;
+                    }
+                } else {
+                    for ( int w = 0; w < zWords; w++ ) {
+                        long zResultTrue = pTrue[w] | zTrue[w];
+                        pUnknown[w] = (pUnknown[w] | zUnknown[w]) & ~zResultTrue;
+                        pTrue[w] = zResultTrue;
+                    }
+                }
+            }
+        }
+
+        /**
+         * @return true if any row could still change: for an AND any TRUE or UNKNOWN, for an OR any NOT TRUE.
+         */
+        private boolean isUndecided( int pSize, long[] pTrue, long[] pUnknown ) {
+            for ( int zWord = 0, zFrom = 0; zFrom < pSize; zWord++, zFrom += 64 ) {
+                if ( mAnd ? ((pTrue[zWord] | pUnknown[zWord]) != 0) : (pTrue[zWord] != Bitmaps.validMask( pSize, zFrom )) ) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * A Column Reference (leaf).  The "fast" forms compute the (regular mode) matches of
+     * the non-NULL rows, to which the NOT mode and the NULL result are then applied.
+     */
+    private static class Leaf extends BitmapCondition {
+        private static final int NO_DOUBLES = 0;
+        private static final int DOUBLE_LESS = 1;
+        private static final int DOUBLE_GREATER = 2;
+        private static final int DOUBLE_CLOSED = 3;
+        private static final int DOUBLE_ANY_OF = 4;
+
+        private final SimpleColumnDefinition mColumnDefinition;
+        private final boolean mNot;
+        private final RowFilter<Object> mFilter;
+        private final TriState mNullResult;
+        private final boolean mNeverMatches;
+
+        private boolean mIntegral;
+        private long mLo = 1, mHi = 0; // Empty range
+        private long[] mLongAnyOf;
+        private int[] mIntAnyOf;
+        private LongSet mAnyOfSet;
+
+        private int mDoubleForm = NO_DOUBLES;
+        private double mDoubleLo, mDoubleHi;
+        private double[] mDoubleAnyOf;
+
+        Leaf( AbstractWhereClauseColumnReference pLeaf, RowFilter<Object> pFilter ) {
+            mColumnDefinition = pLeaf.getColumnDefinition();
+            mNot = pLeaf.isNot();
+            mFilter = pFilter;
+            mNullResult = pFilter.evaluate( null );
+            mNeverMatches = (pLeaf.getType() == WhereClauseType.IS_NULL);
+            Object[] zValues = constants( pLeaf );
+            if ( zValues != null ) {
+                planIntegral( pLeaf.getType(), zValues );
+                planDoubles( pLeaf.getType(), zValues );
+            }
+        }
+
+        private Object[] constants( AbstractWhereClauseColumnReference pLeaf ) {
+            Object[] zValues;
+            switch ( pLeaf.getType() ) {
+                case EQUALS:
+                case LESSTHAN:
+                case GREATERTHAN:
+                    zValues = new Object[]{((AbstractWhereClauseColumnAndValue) pLeaf).getValue()};
+                    break;
+                case BETWEEN:
+                    AbstractWhereClauseColumnAndTwoValues zBetween = (AbstractWhereClauseColumnAndTwoValues) pLeaf;
+                    zValues = new Object[]{zBetween.getLeftValue(), zBetween.getRightValue()};
+                    break;
+                case IS_ANY_OF:
+                    zValues = ((AbstractWhereClauseColumnAnd_N_Values) pLeaf).getValues().clone();
+                    break;
+                default:
+                    return null;
+            }
+            for ( int i = 0; i < zValues.length; i++ ) {
+                zValues[i] = WhereClauseValueSupport.normalizeValue( mColumnDefinition, zValues[i] );
+            }
+            return zValues;
+        }
+
+        private void planIntegral( WhereClauseType pType, Object[] pValues ) {
+            for ( Object zValue : pValues ) {
+                if ( !WhereClauseValueSupport.isIntegral( zValue ) ) {
+                    return;
+                }
+            }
+            mIntegral = true;
+            long zFirst = ((Number) pValues[0]).longValue();
+            switch ( pType ) {
+                case EQUALS:
+                    mLo = mHi = zFirst;
+                    break;
+                case LESSTHAN:
+                    if ( zFirst != Long.MIN_VALUE ) {
+                        mLo = Long.MIN_VALUE;
+                        mHi = zFirst - 1;
+                    }
+                    break;
+                case GREATERTHAN:
+                    if ( zFirst != Long.MAX_VALUE ) {
+                        mLo = zFirst + 1;
+                        mHi = Long.MAX_VALUE;
+                    }
+                    break;
+                case BETWEEN:
+                    mLo = zFirst;
+                    mHi = ((Number) pValues[1]).longValue();
+                    break;
+                default: // IS_ANY_OF
+                    TreeSet<Long> zLongs = new TreeSet<>();
+                    TreeSet<Integer> zInts = new TreeSet<>();
+                    for ( Object zValue : pValues ) {
+                        long zLong = ((Number) zValue).longValue();
+                        zLongs.add( zLong );
+                        if ( zLong == (int) zLong ) {
+                            zInts.add( (int) zLong );
+                        }
+                    }
+                    mLongAnyOf = new long[zLongs.size()];
+                    int i = 0;
+                    for ( Long zLong : zLongs ) {
+                        mLongAnyOf[i++] = zLong;
+                    }
+                    mIntAnyOf = new int[zInts.size()];
+                    i = 0;
+                    for ( Integer zInt : zInts ) {
+                        mIntAnyOf[i++] = zInt;
+                    }
+                    mAnyOfSet = LongSet.of( mLongAnyOf );
+                    break;
+            }
+        }
+
+        private void planDoubles( WhereClauseType pType, Object[] pValues ) {
+            double[] zDoubles = new double[pValues.length];
+            for ( int i = 0; i < pValues.length; i++ ) {
+                if ( !(pValues[i] instanceof Number) || Double.isNaN( zDoubles[i] = ((Number) pValues[i]).doubleValue() ) ) {
+                    return;
+                }
+            }
+            switch ( pType ) {
+                case EQUALS:
+                    mDoubleForm = DOUBLE_CLOSED;
+                    mDoubleLo = mDoubleHi = zDoubles[0];
+                    break;
+                case LESSTHAN:
+                    mDoubleForm = DOUBLE_LESS;
+                    mDoubleHi = zDoubles[0];
+                    break;
+                case GREATERTHAN:
+                    mDoubleForm = DOUBLE_GREATER;
+                    mDoubleLo = zDoubles[0];
+                    break;
+                case BETWEEN:
+                    mDoubleForm = DOUBLE_CLOSED;
+                    mDoubleLo = zDoubles[0];
+                    mDoubleHi = zDoubles[1];
+                    break;
+                default: // IS_ANY_OF
+                    mDoubleForm = DOUBLE_ANY_OF;
+                    mDoubleAnyOf = zDoubles;
+                    break;
+            }
+        }
+
+        @Override
+        void evaluate( ColumnarBatch pBatch, long[] pTrue, long[] pUnknown ) {
+            ColumnVector zVector = pBatch.getColumn( mColumnDefinition );
+            int zSize = pBatch.size();
+            if ( zVector instanceof DictionaryColumnVector ) {
+                evaluateDictionary( (DictionaryColumnVector) zVector, zSize, pTrue, pUnknown );
+            } else if ( matches( zVector, zSize, pTrue ) ) {
+                applyModeAndNulls( zVector.getNulls(), zSize, pTrue, pUnknown );
+            } else {
+                evaluateRowByRow( zVector, zSize, pTrue, pUnknown );
+            }
+        }
+
+        /**
+         * @return false if there is no fast form for the vector.
+         */
+        private boolean matches( ColumnVector pVector, int pSize, long[] pMatches ) {
+            if ( mNeverMatches ) {
+                Arrays.fill( pMatches, 0, Bitmaps.wordsFor( pSize ), 0L );
+                return true;
+            }
+            if ( pVector instanceof IntColumnVector ) {
+                int[] zValues = ((IntColumnVector) pVector).getValues();
+                if ( mIntegral ) {
+                    if ( mIntAnyOf != null ) {
+                        BitmapKernels.intAnyOf( zValues, pSize, mIntAnyOf, mAnyOfSet, pMatches );
+                    } else if ( (mLo > mHi) || (mLo > Integer.MAX_VALUE) || (mHi < Integer.MIN_VALUE) ) {
+                        BitmapKernels.intRange( zValues, pSize, 1, 0, pMatches );
+                    } else {
+                        BitmapKernels.intRange( zValues, pSize, (int) Math.max( mLo, Integer.MIN_VALUE ), (int) Math.min( mHi, Integer.MAX_VALUE ), pMatches );
+                    }
+                    return true;
+                }
+                return (mDoubleForm != NO_DOUBLES) && matchDoubles( BitmapKernels.toDoubles( zValues, pSize ), pSize, pMatches );
+            }
+            if ( pVector instanceof LongColumnVector ) {
+                if ( mIntegral ) {
+                    long[] zValues = ((LongColumnVector) pVector).getValues();
+                    if ( mLongAnyOf != null ) {
+                        BitmapKernels.longAnyOf( zValues, pSize, mLongAnyOf, mAnyOfSet, pMatches );
+                    } else {
+                        BitmapKernels.longRange( zValues, pSize, mLo, mHi, pMatches );
+                    }
+                    return true;
+                }
+                return false;
+            }
+            if ( pVector instanceof DoubleColumnVector ) {
+                return (mDoubleForm != NO_DOUBLES) && matchDoubles( ((DoubleColumnVector) pVector).getValues(), pSize, pMatches );
+            }
+            return false;
+        }
+
+        private boolean matchDoubles( double[] pValues, int pSize, long[] pMatches ) {
+            switch ( mDoubleForm ) {
+                case DOUBLE_LESS:
+                    BitmapKernels.doubleOpen( pValues, pSize, true, mDoubleHi, pMatches );
+                    break;
+                case DOUBLE_GREATER:
+                    BitmapKernels.doubleOpen( pValues, pSize, false, mDoubleLo, pMatches );
+                    break;
+                case DOUBLE_CLOSED:
+                    BitmapKernels.doubleClosed( pValues, pSize, mDoubleLo, mDoubleHi, pMatches );
+                    break;
+                default: // DOUBLE_ANY_OF
+                    BitmapKernels.doubleAnyOf( pValues, pSize, mDoubleAnyOf, pMatches );
+                    break;
+            }
+            return true;
+        }
+
+        /**
+         * Turn the (regular mode) matches in pTrue into the results, i.e. apply the NOT mode and the NULLs.
+         */
+        private void applyModeAndNulls( long[] pNulls, int pSize, long[] pTrue, long[] pUnknown ) {
+            long zNot = mNot ? -1L : 0L;
+            boolean zNullsTrue = (mNullResult == TriState.TRUE);
+            boolean zNullsUnknown = (mNullResult == TriState.UNKNOWN);
+            for ( int zWord = 0, zFrom = 0; zFrom < pSize; zWord++, zFrom += 64 ) {
+                long zValid = Bitmaps.validMask( pSize, zFrom );
+                long zNulls = (pNulls == null) ? 0L : (pNulls[zWord] & zValid);
+                long zMatches = (pTrue[zWord] ^ zNot) & zValid & ~zNulls;
+                pTrue[zWord] = zNullsTrue ? (zMatches | zNulls) : zMatches;
+                pUnknown[zWord] = zNullsUnknown ? zNulls : 0L;
+            }
+        }
+
+        private void evaluateDictionary( DictionaryColumnVector pVector, int pSize, long[] pTrue, long[] pUnknown ) {
+            Object[] zDictionary = pVector.getDictionary();
+            byte[] zEntryResults = new byte[zDictionary.length]; // bit 0: TRUE, bit 1: UNKNOWN
+            for ( int i = 0; i < zDictionary.length; i++ ) {
+                zEntryResults[i] = toBits( mFilter.evaluate( zDictionary[i] ) );
+            }
+            int zNullResult = toBits( mNullResult );
+            int[] zCodes = pVector.getCodes();
+            long[] zNulls = pVector.getNulls();
+            for ( int zWord = 0, zFrom = 0; zFrom < pSize; zWord++, zFrom += 64 ) {
+                int zTo = Math.min( zFrom + 64, pSize );
+                long zTrue = 0;
+                long zUnknown = 0;
+                long zNullWord = (zNulls == null) ? 0L : zNulls[zWord];
+                if ( zNullWord == 0 ) {
+                    for ( int i = zTo - 1; i >= zFrom; i-- ) {
+                        int zResult = zEntryResults[zCodes[i]];
+                        zTrue = (zTrue << 1) | (zResult & 1);
+                        zUnknown = (zUnknown << 1) | (zResult >>> 1);
+                    }
+                } else { // The code of a NULL row may NOT be valid
+                    for ( int i = zTo - 1; i >= zFrom; i-- ) {
+                        int zResult = ((zNullWord & (1L << i)) != 0) ? zNullResult : zEntryResults[zCodes[i]];
+                        zTrue = (zTrue << 1) | (zResult & 1);
+                        zUnknown = (zUnknown << 1) | (zResult >>> 1);
+                    }
+                }
+                pTrue[zWord] = zTrue;
+                pUnknown[zWord] = zUnknown;
+            }
+        }
+
+        private static byte toBits( TriState pResult ) {
+            return (byte) ((pResult == TriState.TRUE) ? 1 : (pResult == TriState.UNKNOWN) ? 2 : 0);
+        }
+
+        private void evaluateRowByRow( ColumnVector pVector, int pSize, long[] pTrue, long[] pUnknown ) {
+            for ( int zWord = 0, zFrom = 0; zFrom < pSize; zWord++, zFrom += 64 ) {
+                int zTo = Math.min( zFrom + 64, pSize );
+                long zTrue = 0;
+                long zUnknown = 0;
+                for ( int i = zFrom; i < zTo; i++ ) {
+                    TriState zResult = mFilter.evaluate( pVector.getValue( i ) );
+                    zTrue |= ((zResult == TriState.TRUE) ? 1L : 0L) << i;
+                    zUnknown |= ((zResult == TriState.UNKNOWN) ? 1L : 0L) << i;
+                }
+                pTrue[zWord] = zTrue;
+                pUnknown[zWord] = zUnknown;
+            }
+        }
+    }
+}
@@ -0,0 +1,58 @@
+// This Source Code is in the Public Domain per: http://unlicense.org
+package org.litesoft.whereclause.columnar;
+
+import org.litesoft.whereclause.WhereClause;
+import org.litesoft.whereclause.nonpublic.IllegalArgument;
+
+/**
+ * A <b>WhereClause</b> compiled (by a <b>ColumnarEvaluator</b>) for columnar evaluation.<p>
+ * <a href="../../../Licence.txt">Licence</a><br>
+ * <p/>
+ * Immutable, and so may be shared by threads (each evaluating its own batches).<p>
+ */
+public final class ColumnarFilter {
+    private final WhereClause mWhereClause;
+    private final BitmapCondition mCondition;
+
+    ColumnarFilter( WhereClause pWhereClause, BitmapCondition pCondition ) {
+        mWhereClause = pWhereClause;
+        mCondition = pCondition;
+    }
+
+    public WhereClause getWhereClause() {
+        return mWhereClause;
+    }
+
+    /**
+     * @return the selection bitmap (see <b>Bitmaps</b>) of the rows for which the WhereClause is TRUE.
+     */
+    public long[] select( ColumnarBatch pBatch ) {
+        IllegalArgument.ifNull( "Batch", pBatch );
+        long[] zTrue = Bitmaps.create( pBatch.size() );
+        mCondition.evaluate( pBatch, zTrue, Bitmaps.create( pBatch.size() ) );
+        return zTrue;
+    }
+
+    /**
+     * Evaluate into the TRUE and UNKNOWN bitmaps (the rows in neither are FALSE).<p>
+     *
+     * @param pTrue    (!null) at least Bitmaps.wordsFor( pBatch.size() ) long, overwritten.
+     * @param pUnknown (!null) at least Bitmaps.wordsFor( pBatch.size() ) long, overwritten.
+     */
+    public void evaluate( ColumnarBatch pBatch, long[] pTrue, long[] pUnknown ) {
+        IllegalArgument.ifNull( "Batch", pBatch );
+        int zWords = Bitmaps.wordsFor( pBatch.size() );
+        if ( (pTrue == null) || (pTrue.length < zWords) ) {
+            throw IllegalArgument.exception( "True", "missing or shorter than " + zWords );
+        }
+        if ( (pUnknown == null) || (pUnknown.length < zWords) ) {
+            throw IllegalArgument.exception( "Unknown", "missing or shorter than " + zWords );
+        }
+        mCondition.evaluate( pBatch, pTrue, pUnknown );
+    }
+
+    @Override
+    public String toString() {
+        return "ColumnarFilter: " + mWhereClause;
+    }
+}
@@ -0,0 +1,40 @@
+// This Source Code is in the Public Domain per: http://unlicense.org
+package org.litesoft.whereclause.columnar;
+
+import org.litesoft.whereclause.nonpublic.IllegalArgument;
+
+/**
+ * A dictionary encoded <b>ColumnVector</b> (typically of Strings): each row is a code,
+ * an index into the dictionary of the distinct values.<p>
+ * <a href="../../../Licence.txt">Licence</a><br>
+ * <p/>
+ * A <b>ColumnarFilter</b> evaluates a leaf once per dictionary entry (NOT per row).<p>
+ */
+public class DictionaryColumnVector extends ColumnVector {
+    private final int[] mCodes;
+    private final Object[] mDictionary;
+
+    /**
+     * @param pCodes      the codes (!null, each a valid index into pDictionary, NOT copied).
+     * @param pDictionary the distinct values (!null, NOT copied).
+     * @param pNulls      the NULLs bitmap (null for NO NULLs, NOT copied).
+     */
+    public DictionaryColumnVector( int[] pCodes, Object[] pDictionary, long[] pNulls ) {
+        super( lengthOf( pCodes ), pNulls );
+        IllegalArgument.ifNull( "Dictionary", mDictionary = pDictionary );
+        mCodes = pCodes;
+    }
+
+    public int[] getCodes() {
+        return mCodes;
+    }
+
+    public Object[] getDictionary() {
+        return mDictionary;
+    }
+
+    @Override
+    protected Object getNonNullValue( int pRow ) {
+        return mDictionary[mCodes[pRow]];
+    }
+}
@@ -0,0 +1,28 @@
+// This Source Code is in the Public Domain per: http://unlicense.org
+package org.litesoft.whereclause.columnar;
+
+/**
+ * A <b>ColumnVector</b> of doubles.<p>
+ * <a href="../../../Licence.txt">Licence</a><br>
+ */
+public class DoubleColumnVector extends ColumnVector {
+    private final double[] mValues;
+
+    /**
+     * @param pValues the values (!null, NOT copied).
+     * @param pNulls  the NULLs bitmap (null for NO NULLs, NOT copied).
+     */
+    public DoubleColumnVector( double[] pValues, long[] pNulls ) {
+        super( lengthOf( pValues ), pNulls );
+        mValues = pValues;
+    }
+
+    public double[] getValues() {
+        return mValues;
+    }
+
+    @Override
+    protected Object getNonNullValue( int pRow ) {
+        return mValues[pRow];
+    }
+}
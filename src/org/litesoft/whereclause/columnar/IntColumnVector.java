@@ -0,0 +1,28 @@
+// This Source Code is in the Public Domain per: http://unlicense.org
+package org.litesoft.whereclause.columnar;
+
+/**
+ * A <b>ColumnVector</b> of ints.<p>
+ * <a href="../../../Licence.txt">Licence</a><br>
+ */
+public class IntColumnVector extends ColumnVector {
+    private final int[] mValues;
+
+    /**
+     * @param pValues the values (!null, NOT copied).
+     * @param pNulls  the NULLs bitmap (null for NO NULLs, NOT copied).
+     */
+    public IntColumnVector( int[] pValues, long[] pNulls ) {
+        super( lengthOf( pValues ), pNulls );
+        mValues = pValues;
+    }
+
+    public int[] getValues() {
+        return mValues;
+    }
+
+    @Override
+    protected Object getNonNullValue( int pRow ) {
+        return mValues[pRow];
+    }
+}
@@ -0,0 +1,28 @@
+// This Source Code is in the Public Domain per: http://unlicense.org
+package org.litesoft.whereclause.columnar;
+
+/**
+ * A <b>ColumnVector</b> of longs.<p>
+ * <a href="../../../Licence.txt">Licence</a><br>
+ */
+public class LongColumnVector extends ColumnVector {
+    private final long[] mValues;
+
+    /**
+     * @param pValues the values (!null, NOT copied).
+     * @param pNulls  the NULLs bitmap (null for NO NULLs, NOT copied).
+     */
+    public LongColumnVector( long[] pValues, long[] pNulls ) {
+        super( lengthOf( pValues ), pNulls );
+        mValues = pValues;
+    }
+
+    public long[] getValues() {
+        return mValues;
+    }
+
+    @Override
+    protected Object getNonNullValue( int pRow ) {
+        return mValues[pRow];
+    }
+}
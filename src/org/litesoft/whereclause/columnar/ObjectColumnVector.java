@@ -0,0 +1,33 @@
+// This Source Code is in the Public Domain per: http://unlicense.org
+package org.litesoft.whereclause.columnar;
+
+/**
+ * A <b>ColumnVector</b> of (boxed) Objects, where a null is a NULL; evaluated row by row.<p>
+ * <a href="../../../Licence.txt">Licence</a><br>
+ */
+public class ObjectColumnVector extends ColumnVector {
+    private final Object[] mValues;
+
+    /**
+     * @param pValues the values (!null, null entries are NULLs, NOT copied).
+     */
+    public ObjectColumnVector( Object[] pValues ) {
+        super( lengthOf( pValues ), nullsOf( pValues ) );
+        mValues = pValues;
+    }
+
+    private static long[] nullsOf( Object[] pValues ) {
+        long[] zNulls = Bitmaps.create( pValues.length );
+        for ( int i = 0; i < pValues.length; i++ ) {
+            if ( pValues[i] == null ) {
+                Bitmaps.set( zNulls, i );
+            }
+        }
+        return zNulls;
+    }
+
+    @Override
+    protected Object getNonNullValue( int pRow ) {
+        return mValues[pRow];
+    }
+}
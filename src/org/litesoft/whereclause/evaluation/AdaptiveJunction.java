@@ -0,0 +1,156 @@
+// This Source Code is in the Public Domain per: http://unlicense.org
+package org.litesoft.whereclause.evaluation;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An AND or OR (<b>Condition</b>) that reorders its children, at run time, by their
+ * measured (rather than estimated, see <b>CostBasedOrderer</b>) decisiveness per nanosecond.<p>
+ * <a href="../../../Licence.txt">Licence</a><br>
+ * <p/>
+ * About one evaluation in SAMPLE_INTERVAL (chosen at random per thread) is a sample, in
+ * which ALL the children are evaluated (in their declared order, so each is measured
+ * against the same rows) and timed, into striped counters (<b>LongAdder</b>s).  Every
+ * REORDER_SAMPLES samples, the counts are decayed (by DECAY) into the running totals,
+ * and the children are (stably) sorted descending on:<p>
+ * <pre>
+ *      AND: FALSEs / nanoseconds     the rejections per nanosecond
+ *      OR:  TRUEs / nanoseconds      the acceptances per nanosecond
+ * </pre>
+ * and the new order published (as an immutable array, in a volatile field), so the
+ * evaluations never lock, and at most one thread (the one that took the sample) reorders.<p>
+ * <p/>
+ * As AND and OR are commutative (in three-valued logic too), the order never changes the result.<p>
+ *
+ * @param <R> the type of the rows.
+ */
+final class AdaptiveJunction<R> extends Condition<R> {
+    static final int SAMPLE_INTERVAL = 64; // a power of 2
+    static final int REORDER_SAMPLES = 256;
+    static final double DECAY = 0.5;
+
+    private final boolean mAnd;
+    private final TriState mDecisive, mUndecided;
+    private final Condition<R>[] mConditions;
+    private final LongAdder[] mDecided, mNanos;
+    private final AtomicInteger mSamples = new AtomicInteger();
+    private final AtomicBoolean mReordering = new AtomicBoolean();
+    private final double[] mDecayedDecided, mDecayedNanos; // only touched while reordering
+    private volatile Condition<R>[] mOrder; // Immutable (replaced, never changed)
+
+    AdaptiveJunction( boolean pAnd, Condition<R>[] pConditions ) {
+        mAnd = pAnd;
+        mDecisive = pAnd ? TriState.FALSE : TriState.TRUE;
+        mUndecided = pAnd ? TriState.TRUE : TriState.FALSE;
+        mConditions = pConditions;
+        mDecided = new LongAdder[pConditions.length];
+        mNanos = new LongAdder[pConditions.length];
+        for ( int i = 0; i < pConditions.length; i++ ) {
+            mDecided[i] = new LongAdder();
+            mNanos[i] = new LongAdder();
+        }
+        mDecayedDecided = new double[pConditions.length];
+        mDecayedNanos = new double[pConditions.length];
+        mOrder = pConditions.clone();
+    }
+
+    @Override
+    TriState evaluate( R pRow ) {
+        if ( (ThreadLocalRandom.current().nextInt() & (SAMPLE_INTERVAL - 1)) == 0 ) {
+            return sample( pRow );
+        }
+        TriState zResult = mUndecided;
+        for ( Condition<R> zCondition : mOrder ) {
+            TriState zState = zCondition.evaluate( pRow );
+            if ( zState == mDecisive ) {
+                return zState;
+            }
+            if ( zState == TriState.UNKNOWN ) {
+                zResult = zState;
+            }
+        }
+        return zResult;
+    }
+
+    private TriState sample( R pRow ) {
+        TriState zResult = mUndecided;
+        for ( int i = 0; i < mConditions.length; i++ ) {
+            long zStarted = System.nanoTime();
+            TriState zState = mConditions[i].evaluate( pRow );
+            mNanos[i].add( System.nanoTime() - zStarted );
+            if ( zState == mDecisive ) {
+                mDecided[i].increment();
+                zResult = zState;
+            } else if ( (zState == TriState.UNKNOWN) && (zResult != mDecisive) ) {
+                zResult = zState;
+            }
+        }
+        if ( (mSamples.incrementAndGet() % REORDER_SAMPLES) == 0 ) {
+            reorder();
+        }
+        return zResult;
+    }
+
+    private void reorder() {
+        if ( !mReordering.compareAndSet( false, true ) ) {
+            return; // the previous reorder is still running
+        }
+        try {
+            int zCount = mConditions.length;
+            double[] zRates = new double[zCount];
+            int[] zIndexes = new int[zCount];
+            for ( int i = 0; i < zCount; i++ ) {
+                mDecayedDecided[i] = (mDecayedDecided[i] * DECAY) + mDecided[i].sumThenReset();
+                mDecayedNanos[i] = (mDecayedNanos[i] * DECAY) + mNanos[i].sumThenReset();
+                zRates[i] = mDecayedDecided[i] / Math.max( 1.0, mDecayedNanos[i] );
+                zIndexes[i] = i;
+            }
+            for ( int i = 1; i < zCount; i++ ) { // Stable insertion sort, descending on the rate
+                int zIndex = zIndexes[i];
+                int j = i;
+                for ( ; (j > 0) && (zRates[zIndexes[j - 1]] < zRates[zIndex]); j-- ) {
+                    zIndexes[j] = zIndexes[j - 1];
+                }
+                zIndexes[j] = zIndex;
+            }
+            Condition<R>[] zOrder = mConditions.clone();
+            for ( int i = 0; i < zCount; i++ ) {
+                zOrder[i] = mConditions[zIndexes[i]];
+            }
+            mOrder = zOrder;
+        }
+        finally {
+            mReordering.set( false );
+        }
+    }
+
+    /**
+     * @return the (current) order of evaluation, as the indexes of the (declared) children.
+     */
+    int[] getOrder() {
+        Condition<R>[] zOrder = mOrder;
+        int[] zIndexes = new int[zOrder.length];
+        for ( int i = 0; i < zOrder.length; i++ ) {
+            for ( int j = 0; j < mConditions.length; j++ ) {
+                if ( mConditions[j] == zOrder[i] ) {
+                    zIndexes[i] = j;
+                }
+            }
+        }
+        return zIndexes;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder zSB = new StringBuilder( mAnd ? "AdaptiveAnd" : "AdaptiveOr" );
+        char zSeparator = '[';
+        for ( int zIndex : getOrder() ) {
+            zSB.append( zSeparator ).append( zIndex );
+            zSeparator = ',';
+        }
+        return zSB.append( ']' ).toString();
+    }
+}
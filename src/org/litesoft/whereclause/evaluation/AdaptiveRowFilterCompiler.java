@@ -0,0 +1,64 @@
+// This Source Code is in the Public Domain per: http://unlicense.org
+package org.litesoft.whereclause.evaluation;
+
+import org.litesoft.whereclause.WhereClause;
+import org.litesoft.whereclause.nonpublic.IllegalArgument;
+import org.litesoft.whereclause.transform.WhereClauseTransform;
+
+/**
+ * Compiles <b>WhereClause</b>s (as the <b>WhereClauseEvaluator</b> does) into
+ * <b>RowFilter</b>s whose ANDs and ORs reorder their children at run time (see
+ * <b>AdaptiveJunction</b>), for long lived filters over rows whose selectivity shifts
+ * (e.g. events through the day).<p>
+ * <a href="../../../Licence.txt">Licence</a><br>
+ * <p/>
+ * The measured order replaces the static one (of the WhereClause, or of the optional
+ * <b>WhereClauseTransform</b>, e.g. a <b>CostBasedOrderer</b>) once enough rows have
+ * been sampled; the results are those of the WhereClauseEvaluator.<p>
+ *
+ * @param <R> the type of the rows.
+ */
+public class AdaptiveRowFilterCompiler<R> implements RowFilterCompiler<R> {
+    private final ColumnAccessor<R> mAccessor;
+    private final WhereClauseTransform mTransform;
+    private final InMemoryTables mTables;
+
+    /**
+     * Constructor.<p>
+     *
+     * @param pAccessor  reads the column values of the rows (!null).
+     * @param pTransform applied to each WhereClause before compiling (!null, WhereClauseTransform.NONE for none).
+     * @param pTables    the tables (null OK, for none) that the IS_INs (sub-selects) are evaluated against (see <b>InMemoryTables</b>).
+     */
+    public AdaptiveRowFilterCompiler( ColumnAccessor<R> pAccessor, WhereClauseTransform pTransform, InMemoryTables pTables ) {
+        IllegalArgument.ifNull( "Accessor", mAccessor = pAccessor );
+        IllegalArgument.ifNull( "Transform", mTransform = pTransform );
+        mTables = pTables;
+    }
+
+    /**
+     * Constructor (without any tables in memory).<p>
+     *
+     * @param pAccessor  reads the column values of the rows (!null).
+     * @param pTransform applied to each WhereClause before compiling (!null, WhereClauseTransform.NONE for none).
+     */
+    public AdaptiveRowFilterCompiler( ColumnAccessor<R> pAccessor, WhereClauseTransform pTransform ) {
+        this( pAccessor, pTransform, null );
+    }
+
+    /**
+     * Constructor (without a transform).<p>
+     *
+     * @param pAccessor reads the column values of the rows (!null).
+     */
+    public AdaptiveRowFilterCompiler( ColumnAccessor<R> pAccessor ) {
+        this( pAccessor, WhereClauseTransform.NONE );
+    }
+
+    @Override
+    public RowFilter<R> compile( WhereClause pWhereClause ) {
+        IllegalArgument.ifNull( "WhereClause", pWhereClause );
+        WhereClause zWhereClause = mTransform.transform( pWhereClause );
+        return new CompiledRowFilter<>( zWhereClause, new ConditionCompiler<>( mAccessor, mTables, true ).compile( zWhereClause ) );
+    }
+}
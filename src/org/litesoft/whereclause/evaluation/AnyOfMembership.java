@@ -0,0 +1,169 @@
+// This Source Code is in the Public Domain per: http://unlicense.org
+package org.litesoft.whereclause.evaluation;
+
+import org.litesoft.whereclause.WhereClauseValueSupport;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseColumnAnd_N_Values;
+import org.litesoft.whereclause.nonpublic.IllegalArgument;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * The membership test of an IS_ANY_OF's (normalized) values, built once per
+ * <b>WhereClause</b> node (and cached, weakly, by the node), so that a value is
+ * checked against thousands of values in (about) constant time, and without boxing.<p>
+ * <a href="../../../Licence.txt">Licence</a><br>
+ * <p/>
+ * The results are exactly those of checking each value with
+ * <b>WhereClauseValueSupport.areEqual()</b>: the integral values (Long, Integer, Short
+ * and Byte) are held in a <b>LongSet</b> (compared exactly), the numbers compared as
+ * doubles in LongSets of their bits (with -0.0 as 0.0, and a single NaN, as a NaN is
+ * equal only to a NaN), the Strings in a <b>HashSet</b>, and any values of another type
+ * (e.g. the Strings of a Number value, or a Date) are checked one at a time.<p>
+ * <p/>
+ * A membership is immutable (so thread safe).<p>
+ */
+public final class AnyOfMembership {
+    private static final Map<AbstractWhereClauseColumnAnd_N_Values, AnyOfMembership> CACHE = //
+            Collections.synchronizedMap( new WeakHashMap<AbstractWhereClauseColumnAnd_N_Values, AnyOfMembership>() );
+
+    private final LongSet mIntegrals;
+    private final LongSet mNonIntegralDoubles; // the doubles compared with an integral value
+    private final LongSet mDoubles; // the doubles compared with a NON-integral Number
+    private final Set<String> mStrings;
+    private final Object[] mValues, mNonNumbers, mNonStrings;
+
+    /**
+     * @param pIsAnyOf an IS_ANY_OF (either mode, !null).
+     *
+     * @return the (cached) membership of the node's values.
+     */
+    public static AnyOfMembership of( AbstractWhereClauseColumnAnd_N_Values pIsAnyOf ) {
+        IllegalArgument.ifNull( "IsAnyOf", pIsAnyOf );
+        AnyOfMembership zMembership = CACHE.get( pIsAnyOf );
+        if ( zMembership == null ) {
+            Object[] zValues = pIsAnyOf.getValues().clone();
+            for ( int i = 0; i < zValues.length; i++ ) {
+                zValues[i] = WhereClauseValueSupport.normalizeValue( pIsAnyOf.getColumnDefinition(), zValues[i] );
+            }
+            CACHE.put( pIsAnyOf, zMembership = new AnyOfMembership( zValues ) );
+        }
+        return zMembership;
+    }
+
+    /**
+     * @param pValues the (normalized, !null) values.
+     */
+    AnyOfMembership( Object... pValues ) {
+        List<Long> zIntegrals = new ArrayList<>();
+        List<Long> zNonIntegralDoubles = new ArrayList<>();
+        List<Long> zDoubles = new ArrayList<>();
+        Set<String> zStrings = new HashSet<>();
+        List<Object> zNonNumbers = new ArrayList<>();
+        List<Object> zNonStrings = new ArrayList<>();
+        for ( Object zValue : pValues ) {
+            if ( zValue instanceof Number ) {
+                double zDouble = ((Number) zValue).doubleValue();
+                if ( WhereClauseValueSupport.isIntegral( zValue ) ) {
+                    zIntegrals.add( ((Number) zValue).longValue() );
+                } else {
+                    zNonIntegralDoubles.add( bits( zDouble ) );
+                }
+                zDoubles.add( bits( zDouble ) );
+            } else {
+                zNonNumbers.add( zValue );
+            }
+            if ( zValue instanceof String ) {
+                zStrings.add( (String) zValue );
+            } else {
+                zNonStrings.add( zValue );
+            }
+        }
+        mIntegrals = LongSet.of( toLongs( zIntegrals ) );
+        mNonIntegralDoubles = LongSet.of( toLongs( zNonIntegralDoubles ) );
+        mDoubles = LongSet.of( toLongs( zDoubles ) );
+        mStrings = zStrings;
+        mValues = pValues.clone();
+        mNonNumbers = zNonNumbers.toArray();
+        mNonStrings = zNonStrings.toArray();
+    }
+
+    private static long[] toLongs( List<Long> pLongs ) {
+        long[] zLongs = new long[pLongs.size()];
+        for ( int i = 0; i < zLongs.length; i++ ) {
+            zLongs[i] = pLongs.get( i );
+        }
+        return zLongs;
+    }
+
+    /**
+     * @return the bits of the double, with -0.0 as 0.0 (so equal doubles, including the NaNs, have equal bits).
+     */
+    private static long bits( double pValue ) {
+        return Double.doubleToLongBits( pValue + 0.0 );
+    }
+
+    /**
+     * @param pValue the (normalized, !null) value.
+     *
+     * @return true if the value is equal (see <b>WhereClauseValueSupport.areEqual()</b>) to any of the values.
+     */
+    public boolean contains( Object pValue ) {
+        Object[] zOthers;
+        if ( pValue instanceof Number ) {
+            if ( WhereClauseValueSupport.isIntegral( pValue ) ? containsIntegral( ((Number) pValue).longValue() ) : //
+                 containsDouble( ((Number) pValue).doubleValue() ) ) {
+                return true;
+            }
+            zOthers = mNonNumbers;
+        } else if ( pValue instanceof String ) {
+            if ( mStrings.contains( pValue ) ) {
+                return true;
+            }
+            zOthers = mNonStrings;
+        } else {
+            zOthers = mValues;
+        }
+        return anyEqual( pValue, zOthers );
+    }
+
+    private static boolean anyEqual( Object pValue, Object[] pValues ) {
+        for ( Object zValue : pValues ) {
+            if ( WhereClauseValueSupport.areEqual( pValue, zValue ) ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return true if an integral (row) value is equal to any of the (Number) values.
+     */
+    boolean containsIntegral( long pValue ) {
+        return mIntegrals.contains( pValue ) || mNonIntegralDoubles.contains( bits( (double) pValue ) );
+    }
+
+    /**
+     * @return true if a NON-integral (row) value is equal to any of the (Number) values.
+     */
+    boolean containsDouble( double pValue ) {
+        return mDoubles.contains( bits( pValue ) );
+    }
+
+    /**
+     * @return true if all the values are Numbers (so <b>containsIntegral()</b> and <b>containsDouble()</b> are complete).
+     */
+    boolean isAllNumbers() {
+        return mNonNumbers.length == 0;
+    }
+
+    @Override
+    public String toString() {
+        return "AnyOf(integrals: " + mIntegrals + ", doubles: " + mDoubles + ", strings: " + mStrings.size() + ")";
+    }
+}
@@ -0,0 +1,861 @@
+// This Source Code is in the Public Domain per: http://unlicense.org
+package org.litesoft.whereclause.evaluation;
+
+import org.litesoft.whereclause.SimpleColumnDefinition;
+import org.litesoft.whereclause.WhereClause;
+import org.litesoft.whereclause.WhereClauseType;
+import org.litesoft.whereclause.WhereClauseValueSupport;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseAssociativeList;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseColumnAndTwoValues;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseColumnAndValue;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseColumnReference;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseWrapper;
+import org.litesoft.whereclause.nonpublic.IllegalArgument;
+import org.litesoft.whereclause.transform.WhereClauseTransform;
+
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * A <b>RowFilterCompiler</b> that generates (byte code for) a class per <b>WhereClause</b>
+ * <i>shape</i>, so that the JIT sees a single straight line method instead of a tree of
+ * (megamorphic) virtual calls.<p>
+ * <a href="../../../Licence.txt">Licence</a><br>
+ * <p/>
+ * The generated <b>test()</b> inlines the AND, OR, and NOT as branches, the IS NULLs as
+ * null checks, and the EQUALS, LESSTHAN, GREATERTHAN and BETWEEN of Integer, Long, Float
+ * and Double columns with numeric values as primitive compares (long or double) against
+ * the instance's constants.  Any other leaf (or a row value that is not of the column's
+ * type, or a NaN) is delegated to the interpreter's leaf, as is each of an OR's
+ * <b>MultiLikeMatcher</b>s (see <b>ConditionCompiler</b>), so the results are always
+ * those of the <b>WhereClauseEvaluator</b>.<p>
+ * <p/>
+ * The leaves of the columns with primitive getters (see <b>TypedColumnAccessor</b>) call
+ * the column's null check and getter directly (no boxing), and then compare inline (as
+ * planned by the <b>PrimitiveConditionCompiler</b>): integral ranges with <b>lcmp</b>,
+ * doubles with <b>dcmpg</b> (a NaN value is greater than every constant, as per
+ * <b>WhereClauseValueSupport.compareDoubles()</b>; a NaN constant is delegated), and
+ * IS_ANY_OFs against the leaf's membership.<p>
+ * <p/>
+ * The generated classes are cached by shape (the structure, the NOT modes, the column
+ * <i>slots</i>, and which leaves were inlined, but NOT the constants), so WhereClauses
+ * that only differ in their values share a class.  The cache lives as long as the
+ * compiler.  A WhereClause too large for a single method is interpreted instead.<p>
+ *
+ * @param <R> the type of the rows.
+ */
+public class BytecodeRowFilterCompiler<R> implements RowFilterCompiler<R> {
+    private static final String BASE = "org/litesoft/whereclause/evaluation/GeneratedRowFilter";
+    private static final String SETUP = "L" + BASE + "$Setup;";
+    private static final String ACCESSOR = "org/litesoft/whereclause/evaluation/ColumnAccessor";
+    private static final String COLUMN = "Lorg/litesoft/whereclause/SimpleColumnDefinition;";
+    private static final String IS_NULL = "java/util/function/Predicate";
+    private static final String INT_GETTER = "java/util/function/ToIntFunction";
+    private static final String LONG_GETTER = "java/util/function/ToLongFunction";
+    private static final String DOUBLE_GETTER = "java/util/function/ToDoubleFunction";
+    private static final String GENERATED_PREFIX = "org.litesoft.whereclause.evaluation.GeneratedRowFilter_";
+
+    private static final int LOCAL_ROW = 1;
+    private static final int LOCAL_INT = 2;
+    private static final int LOCAL_VALUE = 3;
+    private static final int LOCAL_WIDE = 4;
+    private static final int LOCAL_FLAGS = 6;
+
+    private final ColumnAccessor<R> mAccessor;
+    private final WhereClauseTransform mTransform;
+    private final InMemoryTables mTables;
+    private final ConcurrentMap<String, Constructor<?>> mShapes = new ConcurrentHashMap<>();
+    private final DefiningClassLoader mClassLoader = new DefiningClassLoader( GeneratedRowFilter.class.getClassLoader() );
+    private final AtomicInteger mClassCount = new AtomicInteger();
+
+    /**
+     * Constructor.<p>
+     *
+     * @param pAccessor  reads the column values of the rows (!null).
+     * @param pTransform applied to each WhereClause before compiling (!null, WhereClauseTransform.NONE for none).
+     * @param pTables    the tables (null OK, for none) that the IS_INs (sub-selects) are evaluated against (see <b>InMemoryTables</b>).
+     */
+    public BytecodeRowFilterCompiler( ColumnAccessor<R> pAccessor, WhereClauseTransform pTransform, InMemoryTables pTables ) {
+        IllegalArgument.ifNull( "Accessor", mAccessor = pAccessor );
+        IllegalArgument.ifNull( "Transform", mTransform = pTransform );
+        mTables = pTables;
+    }
+
+    /**
+     * Constructor (without any tables in memory).<p>
+     *
+     * @param pAccessor  reads the column values of the rows (!null).
+     * @param pTransform applied to each WhereClause before compiling (!null, WhereClauseTransform.NONE for none).
+     */
+    public BytecodeRowFilterCompiler( ColumnAccessor<R> pAccessor, WhereClauseTransform pTransform ) {
+        this( pAccessor, pTransform, null );
+    }
+
+    /**
+     * Constructor (without a transform).<p>
+     *
+     * @param pAccessor reads the column values of the rows (!null).
+     */
+    public BytecodeRowFilterCompiler( ColumnAccessor<R> pAccessor ) {
+        this( pAccessor, WhereClauseTransform.NONE );
+    }
+
+    /**
+     * @return the number of shapes (generated classes) cached.
+     */
+    public int getCachedShapeCount() {
+        return mShapes.size();
+    }
+
+    @Override
+    public RowFilter<R> compile( WhereClause pWhereClause ) {
+        IllegalArgument.ifNull( "WhereClause", pWhereClause );
+        WhereClause zWhereClause = mTransform.transform( pWhereClause );
+        ConditionCompiler<R> zCompiler = new ConditionCompiler<>( mAccessor, mTables );
+        Condition<R> zCondition = zCompiler.compile( zWhereClause );
+
+        Planner<R> zPlanner = new Planner<>( zCompiler );
+        Node zRoot = zPlanner.plan( zWhereClause );
+        String zShape = zRoot.toString();
+        Constructor<?> zConstructor = mShapes.get( zShape );
+        if ( zConstructor == null ) {
+            try {
+                zConstructor = generate( zRoot, zPlanner.mFlags );
+            }
+            catch ( IllegalStateException e ) { // "Method too large" or "Too many locals"
+                return new CompiledRowFilter<>( zWhereClause, zCondition );
+            }
+            Constructor<?> zExisting = mShapes.putIfAbsent( zShape, zConstructor );
+            if ( zExisting != null ) {
+                zConstructor = zExisting;
+            }
+        }
+        GeneratedRowFilter.Setup<R> zSetup = new GeneratedRowFilter.Setup<>( mAccessor, //
+                                                                             zPlanner.mColumns.toArray( new SimpleColumnDefinition[zPlanner.mColumns.size()] ), //
+                                                                             toLongs( zPlanner.mLongs ), toDoubles( zPlanner.mDoubles ), //
+                                                                             zPlanner.isNulls(), zPlanner.intGetters(), zPlanner.longGetters(), zPlanner.doubleGetters(), //
+                                                                             zPlanner.mMemberships.toArray( new AnyOfMembership[zPlanner.mMemberships.size()] ), //
+                                                                             zPlanner.leaves(), zCondition, zWhereClause );
+        try {
+            @SuppressWarnings("unchecked")
+            RowFilter<R> zFilter = (RowFilter<R>) zConstructor.newInstance( zSetup );
+            return zFilter;
+        }
+        catch ( ReflectiveOperationException e ) {
+            throw new IllegalStateException( "Unable to instantiate generated RowFilter for: " + zShape, e );
+        }
+    }
+
+    private Constructor<?> generate( Node pRoot, int pFlags ) {
+        String zClassName = GENERATED_PREFIX + mClassCount.incrementAndGet();
+        ClassFileWriter zWriter = new ClassFileWriter( zClassName.replace( '.', '/' ), BASE );
+
+        ClassFileWriter.Code zInit = zWriter.method( ClassFileWriter.ACC_PUBLIC, "<init>", "(" + SETUP + ")V", 2, 2 );
+        zInit.local( ClassFileWriter.Code.ALOAD, 0 );
+        zInit.local( ClassFileWriter.Code.ALOAD, 1 );
+        zInit.invokeSpecial( BASE, "<init>", "(" + SETUP + ")V" );
+        zInit.op( ClassFileWriter.Code.RETURN );
+
+        ClassFileWriter.Code zTest = zWriter.method( ClassFileWriter.ACC_PUBLIC | ClassFileWriter.ACC_FINAL, //
+                                                     "test", "(Ljava/lang/Object;)Z", 8, LOCAL_FLAGS + pFlags );
+        ClassFileWriter.Label zTrue = zTest.label();
+        ClassFileWriter.Label zFalse = zTest.label();
+        pRoot.generate( zTest, zTrue, zFalse, zFalse );
+        zTest.place( zTrue );
+        zTest.op( ClassFileWriter.Code.ICONST_1 );
+        zTest.op( ClassFileWriter.Code.IRETURN );
+        zTest.place( zFalse );
+        zTest.op( ClassFileWriter.Code.ICONST_0 );
+        zTest.op( ClassFileWriter.Code.IRETURN );
+
+        byte[] zBytes = zWriter.toByteArray();
+        try {
+            return mClassLoader.define( zClassName, zBytes ).getConstructor( GeneratedRowFilter.Setup.class );
+        }
+        catch ( NoSuchMethodException e ) {
+            throw new Error( e ); // Not Possible - generated above
+        }
+    }
+
+    private static long[] toLongs( List<Long> pValues ) {
+        long[] zValues = new long[pValues.size()];
+        for ( int i = 0; i < zValues.length; i++ ) {
+            zValues[i] = pValues.get( i );
+        }
+        return zValues;
+    }
+
+    private static double[] toDoubles( List<Double> pValues ) {
+        double[] zValues = new double[pValues.size()];
+        for ( int i = 0; i < zValues.length; i++ ) {
+            zValues[i] = pValues.get( i );
+        }
+        return zValues;
+    }
+
+    private static class DefiningClassLoader extends ClassLoader {
+        DefiningClassLoader( ClassLoader pParent ) {
+            super( pParent );
+        }
+
+        Class<?> define( String pClassName, byte[] pBytes ) {
+            return defineClass( pClassName, pBytes, 0, pBytes.length );
+        }
+    }
+
+    /**
+     * Walks a WhereClause tree, collecting its columns (and their primitive getters),
+     * constants, memberships, and (interpreted) leaves, and building the Node tree (whose
+     * toString() is the shape).
+     */
+    private static class Planner<R> {
+        private final ConditionCompiler<R> mCompiler;
+        private final List<SimpleColumnDefinition> mColumns = new ArrayList<>();
+        private final List<TypedColumnAccessor.Getter<R>> mGetters = new ArrayList<>(); // Parallel to mColumns
+        private final List<AnyOfMembership> mMemberships = new ArrayList<>();
+        private final List<Long> mLongs = new ArrayList<>();
+        private final List<Double> mDoubles = new ArrayList<>();
+        private final List<Condition<R>> mLeaves = new ArrayList<>();
+        private int mFlags;
+
+        Planner( ConditionCompiler<R> pCompiler ) {
+            mCompiler = pCompiler;
+        }
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        Condition<R>[] leaves() {
+            return mLeaves.toArray( new Condition[mLeaves.size()] );
+        }
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        Predicate<R>[] isNulls() {
+            Predicate<R>[] zIsNulls = new Predicate[mGetters.size()];
+            for ( int i = 0; i < zIsNulls.length; i++ ) {
+                zIsNulls[i] = (mGetters.get( i ) == null) ? null : mGetters.get( i ).getIsNull();
+            }
+            return zIsNulls;
+        }
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        ToIntFunction<R>[] intGetters() {
+            ToIntFunction<R>[] zGetters = new ToIntFunction[mGetters.size()];
+            for ( int i = 0; i < zGetters.length; i++ ) {
+                zGetters[i] = (mGetters.get( i ) == null) ? null : mGetters.get( i ).getIntGetter();
+            }
+            return zGetters;
+        }
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        ToLongFunction<R>[] longGetters() {
+            ToLongFunction<R>[] zGetters = new ToLongFunction[mGetters.size()];
+            for ( int i = 0; i < zGetters.length; i++ ) {
+                zGetters[i] = (mGetters.get( i ) == null) ? null : mGetters.get( i ).getLongGetter();
+            }
+            return zGetters;
+        }
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        ToDoubleFunction<R>[] doubleGetters() {
+            ToDoubleFunction<R>[] zGetters = new ToDoubleFunction[mGetters.size()];
+            for ( int i = 0; i < zGetters.length; i++ ) {
+                zGetters[i] = (mGetters.get( i ) == null) ? null : mGetters.get( i ).getDoubleGetter();
+            }
+            return zGetters;
+        }
+
+        Node plan( WhereClause pWhereClause ) {
+            switch ( pWhereClause.getType() ) {
+                case TRUE:
+                case FALSE:
+                    return new Constant( pWhereClause.getType() == WhereClauseType.TRUE );
+                case NOT:
+                    return new Not( plan( ((AbstractWhereClauseWrapper) pWhereClause).getWrappedWhereClause() ) );
+                case AND:
+                case OR:
+                    List<WhereClause> zChildren = ((AbstractWhereClauseAssociativeList) pWhereClause).getWhereClauseList();
+                    List<MultiLikeMatcher> zMatchers = Collections.emptyList();
+                    if ( pWhereClause.getType() == WhereClauseType.OR ) {
+                        List<WhereClause> zRemaining = new ArrayList<>();
+                        zMatchers = ConditionCompiler.groupMultiLikes( zChildren, zRemaining );
+                        zChildren = zRemaining;
+                    }
+                    Node[] zNodes = new Node[zChildren.size() + zMatchers.size()];
+                    int zAt = 0;
+                    for ( WhereClause zChild : zChildren ) {
+                        zNodes[zAt++] = plan( zChild );
+                    }
+                    for ( MultiLikeMatcher zMatcher : zMatchers ) {
+                        mLeaves.add( mCompiler.compile( zMatcher ) );
+                        zNodes[zAt++] = new Interpreted( mLeaves.size() - 1 );
+                    }
+                    return new Junction( pWhereClause.getType() == WhereClauseType.AND, zNodes, LOCAL_FLAGS + mFlags++ );
+                default:
+                    return planLeaf( (AbstractWhereClauseColumnReference) pWhereClause );
+            }
+        }
+
+        private Node planLeaf( AbstractWhereClauseColumnReference pLeaf ) {
+            int zLeaf = mLeaves.size();
+            mLeaves.add( mCompiler.compile( pLeaf ) );
+            Condition<R> zTyped = mCompiler.compilePrimitive( pLeaf );
+            if ( zTyped != null ) {
+                return planTyped( (PrimitiveConditionCompiler.PrimitiveCondition<R>) zTyped, pLeaf, zLeaf );
+            }
+            int zColumn = columnSlot( pLeaf.getColumnDefinition() );
+            WhereClauseType zType = pLeaf.getType();
+            if ( zType == WhereClauseType.IS_NULL ) {
+                return new IsNull( zColumn, pLeaf.isNot() );
+            }
+            Primitive zPrimitive = Primitive.of( pLeaf.getColumnDefinition().getColumnType() );
+            if ( zPrimitive != null ) {
+                Object[] zValues = null;
+                if ( (zType == WhereClauseType.EQUALS) || (zType == WhereClauseType.LESSTHAN) || (zType == WhereClauseType.GREATERTHAN) ) {
+                    zValues = new Object[]{((AbstractWhereClauseColumnAndValue) pLeaf).getValue()};
+                } else if ( zType == WhereClauseType.BETWEEN ) {
+                    AbstractWhereClauseColumnAndTwoValues zBetween = (AbstractWhereClauseColumnAndTwoValues) pLeaf;
+                    zValues = new Object[]{zBetween.getLeftValue(), zBetween.getRightValue()};
+                }
+                int zSlot = (zValues != null) ? constantSlots( pLeaf.getColumnDefinition(), zPrimitive, zValues ) : -1;
+                if ( zSlot != -1 ) {
+                    return new Compare( zType, zColumn, pLeaf.isNot(), zLeaf, zPrimitive, zSlot );
+                }
+            }
+            return new Interpreted( zLeaf );
+        }
+
+        /**
+         * A leaf of a column with a primitive getter, from the parts of its (boxing free) Condition.
+         */
+        private Node planTyped( PrimitiveConditionCompiler.PrimitiveCondition<R> pCondition, AbstractWhereClauseColumnReference pLeaf, int pIndex ) {
+            int zColumn = columnSlot( pLeaf.getColumnDefinition() );
+            TypedColumnAccessor.Getter<R> zGetter = pCondition.getGetter();
+            mGetters.set( zColumn, zGetter );
+            boolean zNullable = (zGetter.getIsNull() != null);
+            if ( pCondition instanceof PrimitiveConditionCompiler.IsNull ) {
+                return new TypedIsNull( zColumn, zNullable, pCondition.isNot() );
+            }
+            boolean zNullIsTrue = (pCondition.getWhenNull() == TriState.TRUE);
+            if ( pCondition instanceof PrimitiveConditionCompiler.LongRange ) {
+                PrimitiveConditionCompiler.LongRange<R> zRange = (PrimitiveConditionCompiler.LongRange<R>) pCondition;
+                int zSlot = mLongs.size();
+                mLongs.add( zRange.getLow() );
+                mLongs.add( zRange.getHigh() );
+                return new TypedCompare( WhereClauseType.BETWEEN, zColumn, zNullable, zNullIsTrue, pCondition.isNot(), zGetter.getKind(), true, zSlot ); // Inclusive
+            }
+            if ( pCondition instanceof PrimitiveConditionCompiler.DoubleCompare ) {
+                PrimitiveConditionCompiler.DoubleCompare<R> zCompare = (PrimitiveConditionCompiler.DoubleCompare<R>) pCondition;
+                if ( Double.isNaN( zCompare.getLow() ) || Double.isNaN( zCompare.getHigh() ) ) { // Only equal to a NaN, which dcmpg does NOT do
+                    return new Interpreted( pIndex );
+                }
+                int zSlot = mDoubles.size();
+                mDoubles.add( zCompare.getLow() );
+                mDoubles.add( zCompare.getHigh() );
+                return new TypedCompare( zCompare.getType(), zColumn, zNullable, zNullIsTrue, pCondition.isNot(), zGetter.getKind(), false, zSlot );
+            }
+            mMemberships.add( ((PrimitiveConditionCompiler.IsAnyOf<R>) pCondition).getMembership() );
+            return new TypedIsAnyOf( zColumn, zNullable, pCondition.isNot(), zGetter.getKind(), mMemberships.size() - 1 );
+        }
+
+        private int columnSlot( SimpleColumnDefinition pColumnDefinition ) {
+            int zSlot = mColumns.indexOf( pColumnDefinition );
+            if ( zSlot == -1 ) {
+                mColumns.add( pColumnDefinition );
+                mGetters.add( null );
+                zSlot = mColumns.size() - 1;
+            }
+            return zSlot;
+        }
+
+        /**
+         * @return the first constant slot, or -1 if the values can NOT be compared as primitives.
+         */
+        private int constantSlots( SimpleColumnDefinition pColumnDefinition, Primitive pPrimitive, Object[] pValues ) {
+            Object[] zValues = new Object[pValues.length];
+            for ( int i = 0; i < pValues.length; i++ ) {
+                zValues[i] = WhereClauseValueSupport.normalizeValue( pColumnDefinition, pValues[i] );
+                if ( pPrimitive.mWide ? Double.isNaN( WhereClauseValueSupport.toDouble( zValues[i] ) ) || !(zValues[i] instanceof Number) : //
+                     !WhereClauseValueSupport.isIntegral( zValues[i] ) ) {
+                    return -1;
+                }
+            }
+            int zSlot;
+            if ( pPrimitive.mWide ) {
+                zSlot = mDoubles.size();
+                for ( Object zValue : zValues ) {
+                    mDoubles.add( ((Number) zValue).doubleValue() );
+                }
+            } else {
+                zSlot = mLongs.size();
+                for ( Object zValue : zValues ) {
+                    mLongs.add( ((Number) zValue).longValue() );
+                }
+            }
+            return zSlot;
+        }
+    }
+
+    /**
+     * The boxed column types compared as primitives (mWide means as a double, otherwise as a long).
+     */
+    private enum Primitive {
+        INTEGER( "java/lang/Integer", "intValue", "()I", false ),
+        LONG( "java/lang/Long", "longValue", "()J", false ),
+        FLOAT( "java/lang/Float", "floatValue", "()F", true ),
+        DOUBLE( "java/lang/Double", "doubleValue", "()D", true );
+
+        private final String mBox;
+        private final String mUnbox;
+        private final String mUnboxDescriptor;
+        private final boolean mWide;
+
+        Primitive( String pBox, String pUnbox, String pUnboxDescriptor, boolean pWide ) {
+            mBox = pBox;
+            mUnbox = pUnbox;
+            mUnboxDescriptor = pUnboxDescriptor;
+            mWide = pWide;
+        }
+
+        static Primitive of( Class<?> pColumnType ) {
+            for ( Primitive zPrimitive : values() ) {
+                if ( zPrimitive.mBox.replace( '/', '.' ).equals( (pColumnType == null) ? null : pColumnType.getName() ) ) {
+                    return zPrimitive;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * A node of the planned tree, which generates code that jumps to one of the three labels.
+     */
+    private static abstract class Node {
+        abstract void generate( ClassFileWriter.Code pCode, ClassFileWriter.Label pTrue, ClassFileWriter.Label pFalse, ClassFileWriter.Label pUnknown );
+
+        /**
+         * Generate: LOCAL_VALUE = mAccessor.getValue( row, mColumns[pColumn] )
+         */
+        static void loadValue( ClassFileWriter.Code pCode, int pColumn ) {
+            pCode.local( ClassFileWriter.Code.ALOAD, 0 );
+            pCode.getField( BASE, "mAccessor", "L" + ACCESSOR + ";" );
+            pCode.local( ClassFileWriter.Code.ALOAD, LOCAL_ROW );
+            pCode.local( ClassFileWriter.Code.ALOAD, 0 );
+            pCode.getField( BASE, "mColumns", "[" + COLUMN );
+            pCode.pushInt( pColumn );
+            pCode.op( ClassFileWriter.Code.AALOAD );
+            pCode.invokeInterface( ACCESSOR, "getValue", "(Ljava/lang/Object;" + COLUMN + ")Ljava/lang/Object;", 2 );
+            pCode.local( ClassFileWriter.Code.ASTORE, LOCAL_VALUE );
+        }
+
+        /**
+         * Generate: if ( mIsNulls[pColumn].test( row ) ) goto pNull (only for a nullable column).
+         */
+        static void ifTypedNull( ClassFileWriter.Code pCode, int pColumn, ClassFileWriter.Label pNull ) {
+            pCode.local( ClassFileWriter.Code.ALOAD, 0 );
+            pCode.getField( BASE, "mIsNulls", "[L" + IS_NULL + ";" );
+            pCode.pushInt( pColumn );
+            pCode.op( ClassFileWriter.Code.AALOAD );
+            pCode.local( ClassFileWriter.Code.ALOAD, LOCAL_ROW );
+            pCode.invokeInterface( IS_NULL, "test", "(Ljava/lang/Object;)Z", 1 );
+            pCode.jump( ClassFileWriter.Code.IFNE, pNull );
+        }
+
+        /**
+         * Generate: push the value of the registered getter (mIntGetters[pColumn].applyAsInt( row ) for
+         * an INT, mLongGetters[...] for a LONG, or mDoubleGetters[...] for a DOUBLE) as a long, or as a
+         * double if NOT integral or pAsDouble.
+         */
+        static void loadTyped( ClassFileWriter.Code pCode, int pColumn, TypedColumnAccessor.Kind pKind, boolean pAsDouble ) {
+            String zGetter = (pKind == TypedColumnAccessor.Kind.INT) ? INT_GETTER : (pKind == TypedColumnAccessor.Kind.LONG) ? LONG_GETTER : DOUBLE_GETTER;
+            pCode.local( ClassFileWriter.Code.ALOAD, 0 );
+            pCode.getField( BASE, (pKind == TypedColumnAccessor.Kind.INT) ? "mIntGetters" : (pKind == TypedColumnAccessor.Kind.LONG) ? "mLongGetters" : "mDoubleGetters", //
+                            "[L" + zGetter + ";" );
+            pCode.pushInt( pColumn );
+            pCode.op( ClassFileWriter.Code.AALOAD );
+            pCode.local( ClassFileWriter.Code.ALOAD, LOCAL_ROW );
+            if ( pKind == TypedColumnAccessor.Kind.DOUBLE ) {
+                pCode.invokeInterface( zGetter, "applyAsDouble", "(Ljava/lang/Object;)D", 1 );
+                return;
+            }
+            if ( pKind == TypedColumnAccessor.Kind.INT ) {
+                pCode.invokeInterface( zGetter, "applyAsInt", "(Ljava/lang/Object;)I", 1 );
+                pCode.op( ClassFileWriter.Code.I2L );
+            } else {
+                pCode.invokeInterface( zGetter, "applyAsLong", "(Ljava/lang/Object;)J", 1 );
+            }
+            if ( pAsDouble ) {
+                pCode.op( ClassFileWriter.Code.L2D );
+            }
+        }
+
+        /**
+         * Generate: compare( LOCAL_WIDE, constant[pSlot] ) with pCompareOp (LCMP, DCMPL, or DCMPG) leaving -1, 0, or 1 on the stack.
+         */
+        static void compareTo( ClassFileWriter.Code pCode, int pSlot, int pCompareOp ) {
+            boolean zWide = (pCompareOp != ClassFileWriter.Code.LCMP);
+            pCode.local( zWide ? ClassFileWriter.Code.DLOAD : ClassFileWriter.Code.LLOAD, LOCAL_WIDE );
+            pCode.local( ClassFileWriter.Code.ALOAD, 0 );
+            pCode.getField( BASE, zWide ? "mDoubles" : "mLongs", zWide ? "[D" : "[J" );
+            pCode.pushInt( pSlot );
+            pCode.op( zWide ? ClassFileWriter.Code.DALOAD : ClassFileWriter.Code.LALOAD );
+            pCode.op( pCompareOp );
+        }
+
+        /**
+         * Generate: jump to pIn or pOut on the result of comparing LOCAL_WIDE with the constant(s) at pSlot,
+         * with pCompareOp (LCMP, DCMPL, or DCMPG), for an EQUALS, LESSTHAN, GREATERTHAN, or (inclusive) BETWEEN.
+         */
+        static void compare( ClassFileWriter.Code pCode, WhereClauseType pType, int pSlot, int pCompareOp, //
+                             ClassFileWriter.Label pIn, ClassFileWriter.Label pOut ) {
+            compareTo( pCode, pSlot, pCompareOp );
+            switch ( pType ) {
+                case EQUALS:
+                    pCode.jump( ClassFileWriter.Code.IFEQ, pIn );
+                    break;
+                case LESSTHAN:
+                    pCode.jump( ClassFileWriter.Code.IFLT, pIn );
+                    break;
+                case GREATERTHAN:
+                    pCode.jump( ClassFileWriter.Code.IFGT, pIn );
+                    break;
+                default: // BETWEEN
+                    pCode.jump( ClassFileWriter.Code.IFLT, pOut );
+                    compareTo( pCode, pSlot + 1, pCompareOp );
+                    pCode.jump( ClassFileWriter.Code.IFLE, pIn );
+                    break;
+            }
+            pCode.jump( ClassFileWriter.Code.GOTO, pOut );
+        }
+
+        /**
+         * Generate: the interpreted leaf, and jump on its result.
+         */
+        static void interpret( ClassFileWriter.Code pCode, int pLeaf, //
+                               ClassFileWriter.Label pTrue, ClassFileWriter.Label pFalse, ClassFileWriter.Label pUnknown ) {
+            pCode.local( ClassFileWriter.Code.ALOAD, 0 );
+            pCode.pushInt( pLeaf );
+            pCode.local( ClassFileWriter.Code.ALOAD, LOCAL_ROW );
+            pCode.invokeVirtual( BASE, "leaf", "(ILjava/lang/Object;)I" );
+            pCode.local( ClassFileWriter.Code.ISTORE, LOCAL_INT );
+            pCode.local( ClassFileWriter.Code.ILOAD, LOCAL_INT );
+            pCode.jump( ClassFileWriter.Code.IFGT, pTrue );
+            pCode.local( ClassFileWriter.Code.ILOAD, LOCAL_INT );
+            pCode.jump( ClassFileWriter.Code.IFEQ, pFalse );
+            pCode.jump( ClassFileWriter.Code.GOTO, pUnknown );
+        }
+    }
+
+    private static class Constant extends Node {
+        private final boolean mValue;
+
+        Constant( boolean pValue ) {
+            mValue = pValue;
+        }
+
+        @Override
+        void generate( ClassFileWriter.Code pCode, ClassFileWriter.Label pTrue, ClassFileWriter.Label pFalse, ClassFileWriter.Label pUnknown ) {
+            pCode.jump( ClassFileWriter.Code.GOTO, mValue ? pTrue : pFalse );
+        }
+
+        @Override
+        public String toString() {
+            return mValue ? "T" : "F";
+        }
+    }
+
+    private static class Not extends Node {
+        private final Node mNode;
+
+        Not( Node pNode ) {
+            mNode = pNode;
+        }
+
+        @Override
+        void generate( ClassFileWriter.Code pCode, ClassFileWriter.Label pTrue, ClassFileWriter.Label pFalse, ClassFileWriter.Label pUnknown ) {
+            mNode.generate( pCode, pFalse, pTrue, pUnknown );
+        }
+
+        @Override
+        public String toString() {
+            return "!(" + mNode + ")";
+        }
+    }
+
+    /**
+     * An AND or OR.  When UNKNOWN goes to the same place as the short circuit's "other"
+     * result (e.g. an AND whose UNKNOWN and FALSE both mean "not selected") it is
+     * treated as that result, otherwise a flag (local) records that an UNKNOWN was seen.
+     */
+    private static class Junction extends Node {
+        private final boolean mAnd;
+        private final Node[] mNodes;
+        private final int mFlag;
+
+        Junction( boolean pAnd, Node[] pNodes, int pFlag ) {
+            mAnd = pAnd;
+            mNodes = pNodes;
+            mFlag = pFlag;
+        }
+
+        @Override
+        void generate( ClassFileWriter.Code pCode, ClassFileWriter.Label pTrue, ClassFileWriter.Label pFalse, ClassFileWriter.Label pUnknown ) {
+            ClassFileWriter.Label zShortCircuit = mAnd ? pFalse : pTrue;
+            ClassFileWriter.Label zOther = mAnd ? pTrue : pFalse;
+            boolean zFlagged = (pUnknown != zOther) && (pUnknown != zShortCircuit);
+            if ( zFlagged ) {
+                pCode.op( ClassFileWriter.Code.ICONST_0 );
+                pCode.local( ClassFileWriter.Code.ISTORE, mFlag );
+            }
+            for ( Node zNode : mNodes ) {
+                ClassFileWriter.Label zNext = pCode.label();
+                ClassFileWriter.Label zUnknown = zFlagged ? pCode.label() : (pUnknown == zShortCircuit) ? zShortCircuit : zNext;
+                if ( mAnd ) {
+                    zNode.generate( pCode, zNext, pFalse, zUnknown );
+                } else {
+                    zNode.generate( pCode, pTrue, zNext, zUnknown );
+                }
+                if ( zFlagged ) {
+                    pCode.place( zUnknown );
+                    pCode.op( ClassFileWriter.Code.ICONST_1 );
+                    pCode.local( ClassFileWriter.Code.ISTORE, mFlag );
+                }
+                pCode.place( zNext );
+            }
+            if ( zFlagged ) {
+                pCode.local( ClassFileWriter.Code.ILOAD, mFlag );
+                pCode.jump( ClassFileWriter.Code.IFNE, pUnknown );
+            }
+            pCode.jump( ClassFileWriter.Code.GOTO, zOther );
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder( mAnd ? "AND(" : "OR(" );
+            for ( int i = 0; i < mNodes.length; i++ ) {
+                sb.append( (i == 0) ? "" : "," ).append( mNodes[i] );
+            }
+            return sb.append( ')' ).toString();
+        }
+    }
+
+    private static class Interpreted extends Node {
+        private final int mLeaf;
+
+        Interpreted( int pLeaf ) {
+            mLeaf = pLeaf;
+        }
+
+        @Override
+        void generate( ClassFileWriter.Code pCode, ClassFileWriter.Label pTrue, ClassFileWriter.Label pFalse, ClassFileWriter.Label pUnknown ) {
+            interpret( pCode, mLeaf, pTrue, pFalse, pUnknown );
+        }
+
+        @Override
+        public String toString() {
+            return "L" + mLeaf;
+        }
+    }
+
+    private static class IsNull extends Node {
+        private final int mColumn;
+        private final boolean mNot;
+
+        IsNull( int pColumn, boolean pNot ) {
+            mColumn = pColumn;
+            mNot = pNot;
+        }
+
+        @Override
+        void generate( ClassFileWriter.Code pCode, ClassFileWriter.Label pTrue, ClassFileWriter.Label pFalse, ClassFileWriter.Label pUnknown ) {
+            loadValue( pCode, mColumn );
+            pCode.local( ClassFileWriter.Code.ALOAD, LOCAL_VALUE );
+            pCode.jump( ClassFileWriter.Code.IFNULL, mNot ? pFalse : pTrue );
+            pCode.jump( ClassFileWriter.Code.GOTO, mNot ? pTrue : pFalse );
+        }
+
+        @Override
+        public String toString() {
+            return (mNot ? "!NULL[c" : "NULL[c") + mColumn + "]";
+        }
+    }
+
+    /**
+     * An EQUALS, LESSTHAN, GREATERTHAN, or BETWEEN compared as primitives.
+     */
+    private static class Compare extends Node {
+        private final WhereClauseType mType;
+        private final int mColumn;
+        private final boolean mNot;
+        private final int mLeaf;
+        private final Primitive mPrimitive;
+        private final int mSlot;
+
+        Compare( WhereClauseType pType, int pColumn, boolean pNot, int pLeaf, Primitive pPrimitive, int pSlot ) {
+            mType = pType;
+            mColumn = pColumn;
+            mNot = pNot;
+            mLeaf = pLeaf;
+            mPrimitive = pPrimitive;
+            mSlot = pSlot;
+        }
+
+        @Override
+        void generate( ClassFileWriter.Code pCode, ClassFileWriter.Label pTrue, ClassFileWriter.Label pFalse, ClassFileWriter.Label pUnknown ) {
+            ClassFileWriter.Label zIn = mNot ? pFalse : pTrue;
+            ClassFileWriter.Label zOut = mNot ? pTrue : pFalse;
+            ClassFileWriter.Label zSlow = pCode.label();
+
+            loadValue( pCode, mColumn );
+            pCode.local( ClassFileWriter.Code.ALOAD, LOCAL_VALUE );
+            pCode.jump( ClassFileWriter.Code.IFNULL, ((mType == WhereClauseType.EQUALS) && mNot) ? pTrue : pUnknown );
+            pCode.local( ClassFileWriter.Code.ALOAD, LOCAL_VALUE );
+            pCode.typeOp( ClassFileWriter.Code.INSTANCEOF, mPrimitive.mBox );
+            pCode.jump( ClassFileWriter.Code.IFEQ, zSlow );
+            pCode.local( ClassFileWriter.Code.ALOAD, LOCAL_VALUE );
+            pCode.typeOp( ClassFileWriter.Code.CHECKCAST, mPrimitive.mBox );
+            pCode.invokeVirtual( mPrimitive.mBox, mPrimitive.mUnbox, mPrimitive.mUnboxDescriptor );
+            if ( mPrimitive == Primitive.INTEGER ) {
+                pCode.op( ClassFileWriter.Code.I2L );
+            } else if ( mPrimitive == Primitive.FLOAT ) {
+                pCode.op( ClassFileWriter.Code.F2D );
+            }
+            pCode.local( mPrimitive.mWide ? ClassFileWriter.Code.DSTORE : ClassFileWriter.Code.LSTORE, LOCAL_WIDE );
+            if ( mPrimitive.mWide ) { // NaN: only equal to itself when NOT a NaN
+                pCode.local( ClassFileWriter.Code.DLOAD, LOCAL_WIDE );
+                pCode.local( ClassFileWriter.Code.DLOAD, LOCAL_WIDE );
+                pCode.op( ClassFileWriter.Code.DCMPL );
+                pCode.jump( ClassFileWriter.Code.IFNE, zSlow );
+            }
+            compare( pCode, mType, mSlot, mPrimitive.mWide ? ClassFileWriter.Code.DCMPL : ClassFileWriter.Code.LCMP, zIn, zOut );
+            pCode.place( zSlow );
+            interpret( pCode, mLeaf, pTrue, pFalse, pUnknown );
+        }
+
+        @Override
+        public String toString() {
+            return (mNot ? "!" : "") + mType + "[c" + mColumn + "," + mPrimitive + ",k" + mSlot + ",L" + mLeaf + "]";
+        }
+    }
+
+    /**
+     * An IS_NULL of a column with a primitive getter (never NULL if NOT nullable).
+     */
+    private static class TypedIsNull extends Node {
+        private final int mColumn;
+        private final boolean mNullable;
+        private final boolean mNot;
+
+        TypedIsNull( int pColumn, boolean pNullable, boolean pNot ) {
+            mColumn = pColumn;
+            mNullable = pNullable;
+            mNot = pNot;
+        }
+
+        @Override
+        void generate( ClassFileWriter.Code pCode, ClassFileWriter.Label pTrue, ClassFileWriter.Label pFalse, ClassFileWriter.Label pUnknown ) {
+            if ( mNullable ) {
+                ifTypedNull( pCode, mColumn, mNot ? pFalse : pTrue );
+            }
+            pCode.jump( ClassFileWriter.Code.GOTO, mNot ? pTrue : pFalse );
+        }
+
+        @Override
+        public String toString() {
+            return (mNot ? "!TNULL[c" : "TNULL[c") + mColumn + (mNullable ? ",n]" : "]");
+        }
+    }
+
+    /**
+     * An EQUALS, LESSTHAN, GREATERTHAN, or BETWEEN of a column with a primitive getter,
+     * compared as longs (an inclusive range, always a BETWEEN), or as doubles (with
+     * <b>dcmpg</b>, so that a NaN value is greater than the (NOT NaN) constants).
+     */
+    private static class TypedCompare extends Node {
+        private final WhereClauseType mType;
+        private final int mColumn;
+        private final boolean mNullable;
+        private final boolean mNullIsTrue;
+        private final boolean mNot;
+        private final TypedColumnAccessor.Kind mKind;
+        private final boolean mLongs;
+        private final int mSlot;
+
+        /**
+         * @param pLongs compared as longs (otherwise as doubles).
+         */
+        TypedCompare( WhereClauseType pType, int pColumn, boolean pNullable, boolean pNullIsTrue, boolean pNot, //
+                      TypedColumnAccessor.Kind pKind, boolean pLongs, int pSlot ) {
+            mType = pType;
+            mColumn = pColumn;
+            mNullable = pNullable;
+            mNullIsTrue = pNullIsTrue;
+            mNot = pNot;
+            mKind = pKind;
+            mLongs = pLongs;
+            mSlot = pSlot;
+        }
+
+        @Override
+        void generate( ClassFileWriter.Code pCode, ClassFileWriter.Label pTrue, ClassFileWriter.Label pFalse, ClassFileWriter.Label pUnknown ) {
+            ClassFileWriter.Label zIn = mNot ? pFalse : pTrue;
+            ClassFileWriter.Label zOut = mNot ? pTrue : pFalse;
+            if ( mNullable ) {
+                ifTypedNull( pCode, mColumn, mNullIsTrue ? pTrue : pUnknown );
+            }
+            loadTyped( pCode, mColumn, mKind, !mLongs );
+            pCode.local( mLongs ? ClassFileWriter.Code.LSTORE : ClassFileWriter.Code.DSTORE, LOCAL_WIDE );
+            compare( pCode, mType, mSlot, mLongs ? ClassFileWriter.Code.LCMP : ClassFileWriter.Code.DCMPG, zIn, zOut );
+        }
+
+        @Override
+        public String toString() {
+            return (mNot ? "!T" : "T") + mType + "[c" + mColumn + (mNullable ? ",n" : "") + (mNullIsTrue ? ",t" : "") + //
+                   "," + mKind + (mLongs ? ",J" : ",D") + ",k" + mSlot + "]";
+        }
+    }
+
+    /**
+     * An IS_ANY_OF of a column with a primitive getter, against the leaf's membership.
+     */
+    private static class TypedIsAnyOf extends Node {
+        private final int mColumn;
+        private final boolean mNullable;
+        private final boolean mNot;
+        private final TypedColumnAccessor.Kind mKind;
+        private final int mMembership;
+
+        TypedIsAnyOf( int pColumn, boolean pNullable, boolean pNot, TypedColumnAccessor.Kind pKind, int pMembership ) {
+            mColumn = pColumn;
+            mNullable = pNullable;
+            mNot = pNot;
+            mKind = pKind;
+            mMembership = pMembership;
+        }
+
+        @Override
+        void generate( ClassFileWriter.Code pCode, ClassFileWriter.Label pTrue, ClassFileWriter.Label pFalse, ClassFileWriter.Label pUnknown ) {
+            if ( mNullable ) {
+                ifTypedNull( pCode, mColumn, pUnknown );
+            }
+            pCode.local( ClassFileWriter.Code.ALOAD, 0 );
+            pCode.pushInt( mMembership );
+            loadTyped( pCode, mColumn, mKind, false );
+            pCode.invokeVirtual( BASE, "anyOf", (mKind == TypedColumnAccessor.Kind.DOUBLE) ? "(ID)Z" : "(IJ)Z" );
+            pCode.jump( ClassFileWriter.Code.IFNE, mNot ? pFalse : pTrue );
+            pCode.jump( ClassFileWriter.Code.GOTO, mNot ? pTrue : pFalse );
+        }
+
+        @Override
+        public String toString() {
+            return (mNot ? "!TIN[c" : "TIN[c") + mColumn + (mNullable ? ",n" : "") + "," + mKind + ",m" + mMembership + "]";
+        }
+    }
+}
@@ -0,0 +1,354 @@
+// This Source Code is in the Public Domain per: http://unlicense.org
+package org.litesoft.whereclause.evaluation;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A minimal writer of (version 49, Java 5) class files, just enough for the
+ * <b>BytecodeRowFilterCompiler</b> to generate a class with a constructor and methods.<p>
+ * <a href="../../../Licence.txt">Licence</a><br>
+ * <p/>
+ * Version 49 class files are verified by type inference, so no StackMapTable is
+ * needed for the branches.<p>
+ */
+final class ClassFileWriter {
+    static final int ACC_PUBLIC = 0x0001;
+    static final int ACC_FINAL = 0x0010;
+    static final int ACC_SUPER = 0x0020;
+
+    private static final int VERSION_49 = 49;
+
+    private final ByteArrayOutputStream mPoolBytes = new ByteArrayOutputStream();
+    private final DataOutputStream mPool = new DataOutputStream( mPoolBytes );
+    private final Map<String, Integer> mPoolIndexes = new HashMap<>();
+    private int mPoolCount = 1;
+    private final int mThisClass;
+    private final int mSuperClass;
+    private final List<Code> mMethods = new ArrayList<>();
+
+    /**
+     * @param pClassName the internal ('/' separated) name of the class.
+     * @param pSuperName the internal name of the super class.
+     */
+    ClassFileWriter( String pClassName, String pSuperName ) {
+        mThisClass = classRef( pClassName );
+        mSuperClass = classRef( pSuperName );
+    }
+
+    int classRef( String pInternalName ) {
+        int zName = utf8( pInternalName );
+        return entry( "C:" + pInternalName, 7, zName, -1 );
+    }
+
+    int fieldRef( String pOwner, String pName, String pDescriptor ) {
+        return memberRef( 9, pOwner, pName, pDescriptor );
+    }
+
+    int methodRef( String pOwner, String pName, String pDescriptor ) {
+        return memberRef( 10, pOwner, pName, pDescriptor );
+    }
+
+    int interfaceMethodRef( String pOwner, String pName, String pDescriptor ) {
+        return memberRef( 11, pOwner, pName, pDescriptor );
+    }
+
+    int intConstant( int pValue ) {
+        String zKey = "I:" + pValue;
+        Integer zIndex = mPoolIndexes.get( zKey );
+        if ( zIndex == null ) {
+            write( 3 );
+            writeInt( pValue );
+            mPoolIndexes.put( zKey, zIndex = mPoolCount++ );
+        }
+        return zIndex;
+    }
+
+    /**
+     * Add a method, whose code is then emitted to the returned Code.
+     */
+    Code method( int pAccess, String pName, String pDescriptor, int pMaxStack, int pMaxLocals ) {
+        Code zCode = new Code( this, pAccess, utf8( pName ), utf8( pDescriptor ), pMaxStack, pMaxLocals );
+        mMethods.add( zCode );
+        return zCode;
+    }
+
+    byte[] toByteArray() {
+        int zCodeName = utf8( "Code" );
+        try {
+            ByteArrayOutputStream zBytes = new ByteArrayOutputStream();
+            DataOutputStream zOut = new DataOutputStream( zBytes );
+            zOut.writeInt( 0xCAFEBABE );
+            zOut.writeShort( 0 );
+            zOut.writeShort( VERSION_49 );
+            zOut.writeShort( mPoolCount );
+            mPool.flush();
+            zOut.write( mPoolBytes.toByteArray() );
+            zOut.writeShort( ACC_PUBLIC | ACC_FINAL | ACC_SUPER );
+            zOut.writeShort( mThisClass );
+            zOut.writeShort( mSuperClass );
+            zOut.writeShort( 0 ); // Interfaces
+            zOut.writeShort( 0 ); // Fields
+            zOut.writeShort( mMethods.size() );
+            for ( Code zMethod : mMethods ) {
+                zMethod.writeTo( zOut, zCodeName );
+            }
+            zOut.writeShort( 0 ); // Attributes
+            zOut.flush();
+            return zBytes.toByteArray();
+        }
+        catch ( IOException e ) {
+            throw new IllegalStateException( e ); // Not Possible - in memory
+        }
+    }
+
+    private int memberRef( int pTag, String pOwner, String pName, String pDescriptor ) {
+        int zClass = classRef( pOwner );
+        int zNameAndType = entry( "N:" + pName + ':' + pDescriptor, 12, utf8( pName ), utf8( pDescriptor ) );
+        return entry( pTag + ":" + pOwner + '.' + pName + ':' + pDescriptor, pTag, zClass, zNameAndType );
+    }
+
+    private int utf8( String pValue ) {
+        String zKey = "U:" + pValue;
+        Integer zIndex = mPoolIndexes.get( zKey );
+        if ( zIndex == null ) {
+            write( 1 );
+            try {
+                mPool.writeUTF( pValue );
+            }
+            catch ( IOException e ) {
+                throw new IllegalStateException( e ); // Not Possible - in memory
+            }
+            mPoolIndexes.put( zKey, zIndex = mPoolCount++ );
+        }
+        return zIndex;
+    }
+
+    private int entry( String pKey, int pTag, int pIndex1, int pIndex2 ) {
+        Integer zIndex = mPoolIndexes.get( pKey );
+        if ( zIndex == null ) {
+            write( pTag );
+            writeShort( pIndex1 );
+            if ( pIndex2 != -1 ) {
+                writeShort( pIndex2 );
+            }
+            mPoolIndexes.put( pKey, zIndex = mPoolCount++ );
+        }
+        return zIndex;
+    }
+
+    private void write( int pByte ) {
+        try {
+            mPool.writeByte( pByte );
+        }
+        catch ( IOException e ) {
+            throw new IllegalStateException( e ); // Not Possible - in memory
+        }
+    }
+
+    private void writeShort( int pShort ) {
+        try {
+            mPool.writeShort( pShort );
+        }
+        catch ( IOException e ) {
+            throw new IllegalStateException( e ); // Not Possible - in memory
+        }
+    }
+
+    private void writeInt( int pInt ) {
+        try {
+            mPool.writeInt( pInt );
+        }
+        catch ( IOException e ) {
+            throw new IllegalStateException( e ); // Not Possible - in memory
+        }
+    }
+
+    /**
+     * A branch target within a method's Code.
+     */
+    static final class Label {
+        private int mPosition = -1;
+        private final List<int[]> mFixups = new ArrayList<>(); // {opcode position, offset position}
+    }
+
+    /**
+     * The byte code of a method.
+     */
+    static final class Code {
+        static final int ACONST_NULL = 0x01;
+        static final int ICONST_0 = 0x03;
+        static final int ICONST_1 = 0x04;
+        static final int BIPUSH = 0x10;
+        static final int SIPUSH = 0x11;
+        static final int LDC_W = 0x13;
+        static final int ILOAD = 0x15;
+        static final int LLOAD = 0x16;
+        static final int DLOAD = 0x18;
+        static final int ALOAD = 0x19;
+        static final int LALOAD = 0x2F;
+        static final int DALOAD = 0x31;
+        static final int AALOAD = 0x32;
+        static final int ISTORE = 0x36;
+        static final int LSTORE = 0x37;
+        static final int DSTORE = 0x39;
+        static final int ASTORE = 0x3A;
+        static final int POP = 0x57;
+        static final int I2L = 0x85;
+        static final int L2D = 0x8A;
+        static final int F2D = 0x8D;
+        static final int LCMP = 0x94;
+        static final int DCMPL = 0x97;
+        static final int DCMPG = 0x98;
+        static final int IFEQ = 0x99;
+        static final int IFNE = 0x9A;
+        static final int IFLT = 0x9B;
+        static final int IFGE = 0x9C;
+        static final int IFGT = 0x9D;
+        static final int IFLE = 0x9E;
+        static final int GOTO = 0xA7;
+        static final int IRETURN = 0xAC;
+        static final int ARETURN = 0xB0;
+        static final int RETURN = 0xB1;
+        static final int GETFIELD = 0xB4;
+        static final int INVOKEVIRTUAL = 0xB6;
+        static final int INVOKESPECIAL = 0xB7;
+        static final int INVOKEINTERFACE = 0xB9;
+        static final int CHECKCAST = 0xC0;
+        static final int INSTANCEOF = 0xC1;
+        static final int IFNULL = 0xC6;
+        static final int IFNONNULL = 0xC7;
+
+        private final ClassFileWriter mWriter;
+        private final int mAccess;
+        private final int mName;
+        private final int mDescriptor;
+        private final int mMaxStack;
+        private final int mMaxLocals;
+        private final ByteArrayOutputStream mBytes = new ByteArrayOutputStream();
+        private final List<Label> mLabels = new ArrayList<>();
+
+        private Code( ClassFileWriter pWriter, int pAccess, int pName, int pDescriptor, int pMaxStack, int pMaxLocals ) {
+            mWriter = pWriter;
+            mAccess = pAccess;
+            mName = pName;
+            mDescriptor = pDescriptor;
+            mMaxStack = pMaxStack;
+            mMaxLocals = pMaxLocals;
+        }
+
+        Label label() {
+            Label zLabel = new Label();
+            mLabels.add( zLabel );
+            return zLabel;
+        }
+
+        void place( Label pLabel ) {
+            pLabel.mPosition = mBytes.size();
+        }
+
+        void op( int pOpcode ) {
+            mBytes.write( pOpcode );
+        }
+
+        void op( int pOpcode, int pByte ) {
+            mBytes.write( pOpcode );
+            mBytes.write( pByte );
+        }
+
+        void opShort( int pOpcode, int pShort ) {
+            mBytes.write( pOpcode );
+            u2( pShort );
+        }
+
+        void local( int pOpcode, int pLocal ) {
+            if ( pLocal > 255 ) {
+                throw new IllegalStateException( "Too many locals" );
+            }
+            op( pOpcode, pLocal );
+        }
+
+        void pushInt( int pValue ) {
+            if ( (-1 <= pValue) && (pValue <= 5) ) {
+                op( ICONST_0 + pValue );
+            } else if ( (Byte.MIN_VALUE <= pValue) && (pValue <= Byte.MAX_VALUE) ) {
+                op( BIPUSH, pValue & 0xFF );
+            } else if ( (Short.MIN_VALUE <= pValue) && (pValue <= Short.MAX_VALUE) ) {
+                opShort( SIPUSH, pValue & 0xFFFF );
+            } else {
+                opShort( LDC_W, mWriter.intConstant( pValue ) );
+            }
+        }
+
+        void getField( String pOwner, String pName, String pDescriptor ) {
+            opShort( GETFIELD, mWriter.fieldRef( pOwner, pName, pDescriptor ) );
+        }
+
+        void invokeVirtual( String pOwner, String pName, String pDescriptor ) {
+            opShort( INVOKEVIRTUAL, mWriter.methodRef( pOwner, pName, pDescriptor ) );
+        }
+
+        void invokeSpecial( String pOwner, String pName, String pDescriptor ) {
+            opShort( INVOKESPECIAL, mWriter.methodRef( pOwner, pName, pDescriptor ) );
+        }
+
+        void invokeInterface( String pOwner, String pName, String pDescriptor, int pArgumentSlots ) {
+            opShort( INVOKEINTERFACE, mWriter.interfaceMethodRef( pOwner, pName, pDescriptor ) );
+            mBytes.write( pArgumentSlots + 1 );
+            mBytes.write( 0 );
+        }
+
+        void typeOp( int pOpcode, String pInternalName ) {
+            opShort( pOpcode, mWriter.classRef( pInternalName ) );
+        }
+
+        void jump( int pOpcode, Label pLabel ) {
+            pLabel.mFixups.add( new int[]{mBytes.size(), mBytes.size() + 1} );
+            op( pOpcode );
+            u2( 0 );
+        }
+
+        private void u2( int pShort ) {
+            mBytes.write( (pShort >> 8) & 0xFF );
+            mBytes.write( pShort & 0xFF );
+        }
+
+        private void writeTo( DataOutputStream pOut, int pCodeName )
+                throws IOException {
+            byte[] zCode = mBytes.toByteArray();
+            if ( zCode.length > 65535 ) {
+                throw new IllegalStateException( "Method too large" );
+            }
+            for ( Label zLabel : mLabels ) {
+                for ( int[] zFixup : zLabel.mFixups ) {
+                    if ( zLabel.mPosition == -1 ) {
+                        throw new IllegalStateException( "Label never placed" );
+                    }
+                    int zOffset = zLabel.mPosition - zFixup[0];
+                    if ( (zOffset < Short.MIN_VALUE) || (Short.MAX_VALUE < zOffset) ) {
+                        throw new IllegalStateException( "Method too large" );
+                    }
+                    zCode[zFixup[1]] = (byte) (zOffset >> 8);
+                    zCode[zFixup[1] + 1] = (byte) zOffset;
+                }
+            }
+            pOut.writeShort( mAccess );
+            pOut.writeShort( mName );
+            pOut.writeShort( mDescriptor );
+            pOut.writeShort( 1 ); // Attributes: Code
+            pOut.writeShort( pCodeName );
+            pOut.writeInt( 12 + zCode.length );
+            pOut.writeShort( mMaxStack );
+            pOut.writeShort( mMaxLocals );
+            pOut.writeInt( zCode.length );
+            pOut.write( zCode );
+            pOut.writeShort( 0 ); // Exception Table
+            pOut.writeShort( 0 ); // Attributes
+        }
+    }
+}
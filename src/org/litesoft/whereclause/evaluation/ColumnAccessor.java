@@ -0,0 +1,25 @@
+// This Source Code is in the Public Domain per: http://unlicense.org
+package org.litesoft.whereclause.evaluation;
+
+import org.litesoft.whereclause.SimpleColumnDefinition;
+
+/**
+ * An interface for reading the value of a column from a row (of type R), so that a
+ * <b>WhereClause</b> can be evaluated in memory (see <b>WhereClauseEvaluator</b>).<p>
+ * <a href="../../../Licence.txt">Licence</a><br>
+ * <p/>
+ * The value returned should be the value of the (regular) column, as it is (or would
+ * be) stored in the database, i.e. NOT lower cased for a Search Column (the evaluation
+ * does that).<p>
+ *
+ * @param <R> the type of the rows.
+ */
+public interface ColumnAccessor<R> {
+    /**
+     * @param pRow              the row (!null).
+     * @param pColumnDefinition the column (!null).
+     *
+     * @return the column's value for the row, or null for SQL's NULL.
+     */
+    Object getValue( R pRow, SimpleColumnDefinition pColumnDefinition );
+}
@@ -0,0 +1,39 @@
+// This Source Code is in the Public Domain per: http://unlicense.org
+package org.litesoft.whereclause.evaluation;
+
+import org.litesoft.whereclause.WhereClause;
+
+/**
+ * The <b>RowFilter</b> for a compiled <b>Condition</b> <i>tree</i>.<p>
+ * <a href="../../../Licence.txt">Licence</a><br>
+ *
+ * @param <R> the type of the rows.
+ */
+class CompiledRowFilter<R> implements RowFilter<R> {
+    private final WhereClause mWhereClause;
+    private final Condition<R> mCondition;
+
+    CompiledRowFilter( WhereClause pWhereClause, Condition<R> pCondition ) {
+        mWhereClause = pWhereClause;
+        mCondition = pCondition;
+    }
+
+    Condition<R> getCondition() {
+        return mCondition;
+    }
+
+    @Override
+    public TriState evaluate( R pRow ) {
+        return mCondition.evaluate( pRow );
+    }
+
+    @Override
+    public boolean test( R pRow ) {
+        return mCondition.evaluate( pRow ) == TriState.TRUE;
+    }
+
+    @Override
+    public String toString() {
+        return "RowFilter: " + mWhereClause;
+    }
+}
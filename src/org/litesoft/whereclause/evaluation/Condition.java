@@ -0,0 +1,17 @@
+// This Source Code is in the Public Domain per: http://unlicense.org
+package org.litesoft.whereclause.evaluation;
+
+/**
+ * A node of a compiled <b>WhereClause</b> <i>tree</i>.<p>
+ * <a href="../../../Licence.txt">Licence</a><br>
+ *
+ * @param <R> the type of the rows.
+ */
+abstract class Condition<R> {
+    /**
+     * @param pRow the row (!null).
+     *
+     * @return the SQL (three-valued) result for the row.
+     */
+    abstract TriState evaluate( R pRow );
+}
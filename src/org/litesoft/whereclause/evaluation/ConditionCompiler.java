@@ -0,0 +1,494 @@
+// This Source Code is in the Public Domain per: http://unlicense.org
+package org.litesoft.whereclause.evaluation;
+
+import org.litesoft.whereclause.SimpleColumnDefinition;
+import org.litesoft.whereclause.SingleColumnSelect;
+import org.litesoft.whereclause.WhereClause;
+import org.litesoft.whereclause.WhereClauseValueSupport;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseAssociativeList;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseColumnAndTwoValues;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseColumnAndValue;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseColumnAnd_N_Values;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseColumnIsIn;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseColumnReference;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseWrapper;
+import org.litesoft.whereclause.nonpublic.IllegalArgument;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compiles a <b>WhereClause</b> <i>tree</i> into a <b>Condition</b> <i>tree</i>,
+ * following SQL's NULL semantics exactly as the rendered SQL would:<p>
+ * <ul>
+ * IS NULL / IS NOT NULL: never UNKNOWN,<br>
+ * EQUALS: UNKNOWN for a NULL, but its NOT mode is null inclusive ("(col <> v) OR (col IS NULL)"),<br>
+ * LESSTHAN, GREATERTHAN, BETWEEN, IS_ANY_OF (IN), and the LIKEs: UNKNOWN for a NULL in both modes.
+ * </ul><p>
+ * <p/>
+ * The values (of both the WhereClause and the rows) are normalized by
+ * <b>WhereClauseValueSupport</b>, so a column with a Search Column is compared lower
+ * cased, and the LIKE's values are literal (just as the SQL escapes any '%' or '_'
+ * with <b>WhereClauseColumnSupport.Like</b>) and precompiled (see <b>LikeMatcher</b>).
+ * An IS_ANY_OF's values are checked with (a hashed or bitmap) <b>AnyOfMembership</b>.<p>
+ * <p/>
+ * The leaves of the columns with primitive getters (see <b>TypedColumnAccessor</b>)
+ * are compiled (where possible) by the <b>PrimitiveConditionCompiler</b>.<p>
+ * <p/>
+ * An OR's (regular mode) CONTAINS, STARTS_WITH, and ENDS_WITH of the same column, when
+ * there are enough of them (see MULTI_LIKE_MINIMUM), are compiled together into a single
+ * <b>MultiLikeMatcher</b> (evaluated after the OR's other children).<p>
+ * <p/>
+ * When adaptive, the ANDs and ORs are compiled into <b>AdaptiveJunction</b>s, which
+ * reorder their children by their measured decisiveness.<p>
+ * <p/>
+ * An IS_IN (sub-select) can only be compiled if its table is in memory (see
+ * <b>InMemoryTables</b>), and is then evaluated as a (hashed) semi-join.<p>
+ *
+ * @param <R> the type of the rows.
+ */
+class ConditionCompiler<R> {
+    /**
+     * The minimum number of an OR's LIKEs (of a column) to compile into a <b>MultiLikeMatcher</b>; fewer (plain) LIKEs are faster with the (intrinsic) <b>String.indexOf()</b>.
+     */
+    static final int MULTI_LIKE_MINIMUM = 8;
+    static final int MULTI_LIKE_MINIMUM_CASE_FOLDING = 4;
+
+    private final ColumnAccessor<R> mAccessor;
+    private final PrimitiveConditionCompiler<R> mPrimitives;
+    private final InMemoryTables mTables;
+    private final boolean mAdaptive;
+
+    ConditionCompiler( ColumnAccessor<R> pAccessor ) {
+        this( pAccessor, null );
+    }
+
+    ConditionCompiler( ColumnAccessor<R> pAccessor, InMemoryTables pTables ) {
+        this( pAccessor, pTables, false );
+    }
+
+    /**
+     * @param pTables   the tables (null OK, for none) to evaluate the IS_INs against.
+     * @param pAdaptive true to compile the ANDs & ORs into <b>AdaptiveJunction</b>s.
+     */
+    ConditionCompiler( ColumnAccessor<R> pAccessor, InMemoryTables pTables, boolean pAdaptive ) {
+        mAccessor = pAccessor;
+        mTables = pTables;
+        mAdaptive = pAdaptive;
+        mPrimitives = (pAccessor instanceof TypedColumnAccessor) ? new PrimitiveConditionCompiler<>( (TypedColumnAccessor<R>) pAccessor ) : null;
+    }
+
+    /**
+     * @return the (boxing free) Condition for a leaf of a column with a primitive getter (see <b>TypedColumnAccessor</b>), or null if none.
+     */
+    Condition<R> compilePrimitive( AbstractWhereClauseColumnReference pLeaf ) {
+        return (mPrimitives == null) ? null : mPrimitives.compile( pLeaf );
+    }
+
+    /**
+     * Group an OR's children (see <b>MultiLikeMatcher.isTerm()</b>) by column; the columns with enough terms are each compiled into a <b>MultiLikeMatcher</b>.
+     *
+     * @param pOrChildren the children of an OR.
+     * @param pRemaining  collects (in order) the children NOT in a MultiLikeMatcher.
+     *
+     * @return the MultiLikeMatchers (in the order of their columns' first term).
+     */
+    static List<MultiLikeMatcher> groupMultiLikes( List<WhereClause> pOrChildren, List<WhereClause> pRemaining ) {
+        Map<SimpleColumnDefinition, List<WhereClause>> zTermsByColumn = new LinkedHashMap<>();
+        for ( WhereClause zChild : pOrChildren ) {
+            if ( MultiLikeMatcher.isTerm( zChild ) ) {
+                SimpleColumnDefinition zColumnDefinition = ((AbstractWhereClauseColumnReference) zChild).getColumnDefinition();
+                List<WhereClause> zTerms = zTermsByColumn.get( zColumnDefinition );
+                if ( zTerms == null ) {
+                    zTermsByColumn.put( zColumnDefinition, zTerms = new ArrayList<>() );
+                }
+                zTerms.add( zChild );
+            }
+        }
+        List<MultiLikeMatcher> zMatchers = new ArrayList<>();
+        for ( List<WhereClause> zTerms : zTermsByColumn.values() ) {
+            if ( isMultiLike( zTerms ) ) {
+                zMatchers.add( MultiLikeMatcher.compile( zTerms ) );
+            }
+        }
+        for ( WhereClause zChild : pOrChildren ) {
+            if ( !MultiLikeMatcher.isTerm( zChild ) || //
+                 !isMultiLike( zTermsByColumn.get( ((AbstractWhereClauseColumnReference) zChild).getColumnDefinition() ) ) ) {
+                pRemaining.add( zChild );
+            }
+        }
+        return zMatchers;
+    }
+
+    private static boolean isMultiLike( List<WhereClause> pTerms ) {
+        boolean zCaseFolding = ((AbstractWhereClauseColumnReference) pTerms.get( 0 )).getColumnDefinition().hasSearchColumn();
+        return pTerms.size() >= (zCaseFolding ? MULTI_LIKE_MINIMUM_CASE_FOLDING : MULTI_LIKE_MINIMUM);
+    }
+
+    /**
+     * @return the Condition of a (grouped) OR of LIKEs, see <b>groupMultiLikes()</b>.
+     */
+    Condition<R> compile( MultiLikeMatcher pMatcher ) {
+        return new MultiLike<>( mAccessor, pMatcher );
+    }
+
+    Condition<R> compile( WhereClause pWhereClause ) {
+        if ( pWhereClause instanceof AbstractWhereClauseColumnReference ) {
+            Condition<R> zPrimitive = compilePrimitive( (AbstractWhereClauseColumnReference) pWhereClause );
+            if ( zPrimitive != null ) {
+                return zPrimitive;
+            }
+        }
+        switch ( pWhereClause.getType() ) {
+            case TRUE:
+                return new Constant<>( TriState.TRUE );
+            case FALSE:
+                return new Constant<>( TriState.FALSE );
+            case AND:
+                Condition<R>[] zAnds = compileAll( ((AbstractWhereClauseAssociativeList) pWhereClause).getWhereClauseList() );
+                return mAdaptive ? new AdaptiveJunction<>( true, zAnds ) : new And<>( zAnds );
+            case OR:
+                Condition<R>[] zOrs = compileOr( ((AbstractWhereClauseAssociativeList) pWhereClause).getWhereClauseList() );
+                return mAdaptive ? new AdaptiveJunction<>( false, zOrs ) : new Or<>( zOrs );
+            case NOT:
+                return new Not<>( compile( ((AbstractWhereClauseWrapper) pWhereClause).getWrappedWhereClause() ) );
+            case IS_NULL:
+                return new IsNull<>( mAccessor, (AbstractWhereClauseColumnReference) pWhereClause );
+            case EQUALS:
+                return new Equals<>( mAccessor, (AbstractWhereClauseColumnAndValue) pWhereClause );
+            case LESSTHAN:
+                return new LessThan<>( mAccessor, (AbstractWhereClauseColumnAndValue) pWhereClause );
+            case GREATERTHAN:
+                return new GreaterThan<>( mAccessor, (AbstractWhereClauseColumnAndValue) pWhereClause );
+            case BETWEEN:
+                return new Between<>( mAccessor, (AbstractWhereClauseColumnAndTwoValues) pWhereClause );
+            case IS_ANY_OF:
+                return new IsAnyOf<>( mAccessor, (AbstractWhereClauseColumnAnd_N_Values) pWhereClause );
+            case CONTAINS:
+            case STARTS_WITH:
+            case ENDS_WITH:
+            case LIKE:
+                return new Like<>( mAccessor, (AbstractWhereClauseColumnReference) pWhereClause );
+            case IS_IN:
+                AbstractWhereClauseColumnIsIn zIsIn = (AbstractWhereClauseColumnIsIn) pWhereClause;
+                if ( (mTables == null) || (mTables.getTable( zIsIn.getSingleColumnSelect().getFromIdentifier() ) == null) ) {
+                    throw IllegalArgument.exception( "WhereClause", "IS_IN (sub-select) can NOT be evaluated in memory: " + pWhereClause );
+                }
+                return new IsIn<>( mAccessor, mTables, zIsIn );
+            default:
+                throw new IllegalStateException( "Unexpected WhereClause Type: " + pWhereClause.getType() );
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private Condition<R>[] compileAll( List<WhereClause> pWhereClauses ) {
+        Condition<R>[] zConditions = new Condition[pWhereClauses.size()];
+        for ( int i = 0; i < zConditions.length; i++ ) {
+            zConditions[i] = compile( pWhereClauses.get( i ) );
+        }
+        return zConditions;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private Condition<R>[] compileOr( List<WhereClause> pWhereClauses ) {
+        List<WhereClause> zRemaining = new ArrayList<>();
+        List<MultiLikeMatcher> zMatchers = groupMultiLikes( pWhereClauses, zRemaining );
+        if ( zMatchers.isEmpty() ) {
+            return compileAll( pWhereClauses );
+        }
+        Condition<R>[] zConditions = new Condition[zRemaining.size() + zMatchers.size()];
+        int zAt = 0;
+        for ( WhereClause zRemainder : zRemaining ) {
+            zConditions[zAt++] = compile( zRemainder );
+        }
+        for ( MultiLikeMatcher zMatcher : zMatchers ) {
+            zConditions[zAt++] = compile( zMatcher );
+        }
+        return zConditions;
+    }
+
+    private static class Constant<R> extends Condition<R> {
+        private final TriState mResult;
+
+        Constant( TriState pResult ) {
+            mResult = pResult;
+        }
+
+        @Override
+        TriState evaluate( R pRow ) {
+            return mResult;
+        }
+    }
+
+    private static class And<R> extends Condition<R> {
+        private final Condition<R>[] mConditions;
+
+        And( Condition<R>[] pConditions ) {
+            mConditions = pConditions;
+        }
+
+        @Override
+        TriState evaluate( R pRow ) {
+            TriState zResult = TriState.TRUE;
+            for ( Condition<R> zCondition : mConditions ) {
+                TriState zState = zCondition.evaluate( pRow );
+                if ( zState == TriState.FALSE ) {
+                    return zState;
+                }
+                if ( zState == TriState.UNKNOWN ) {
+                    zResult = zState;
+                }
+            }
+            return zResult;
+        }
+    }
+
+    private static class Or<R> extends Condition<R> {
+        private final Condition<R>[] mConditions;
+
+        Or( Condition<R>[] pConditions ) {
+            mConditions = pConditions;
+        }
+
+        @Override
+        TriState evaluate( R pRow ) {
+            TriState zResult = TriState.FALSE;
+            for ( Condition<R> zCondition : mConditions ) {
+                TriState zState = zCondition.evaluate( pRow );
+                if ( zState == TriState.TRUE ) {
+                    return zState;
+                }
+                if ( zState == TriState.UNKNOWN ) {
+                    zResult = zState;
+                }
+            }
+            return zResult;
+        }
+    }
+
+    private static class Not<R> extends Condition<R> {
+        private final Condition<R> mCondition;
+
+        Not( Condition<R> pCondition ) {
+            mCondition = pCondition;
+        }
+
+        @Override
+        TriState evaluate( R pRow ) {
+            return mCondition.evaluate( pRow ).not();
+        }
+    }
+
+    /**
+     * A Column Reference (leaf), in either its regular or NOT mode.
+     */
+    private static abstract class ColumnCondition<R> extends Condition<R> {
+        protected final ColumnAccessor<R> mAccessor;
+        protected final SimpleColumnDefinition mColumnDefinition;
+        protected final boolean mNot;
+
+        ColumnCondition( ColumnAccessor<R> pAccessor, AbstractWhereClauseColumnReference pWhereClause ) {
+            mAccessor = pAccessor;
+            mColumnDefinition = pWhereClause.getColumnDefinition();
+            mNot = pWhereClause.isNot();
+        }
+
+        @Override
+        TriState evaluate( R pRow ) {
+            Object zValue = WhereClauseValueSupport.normalizeValue( mColumnDefinition, mAccessor.getValue( pRow, mColumnDefinition ) );
+            if ( zValue == null ) {
+                return whenNull();
+            }
+            return (matches( zValue ) != mNot) ? TriState.TRUE : TriState.FALSE;
+        }
+
+        protected Object normalize( Object pValue ) {
+            return WhereClauseValueSupport.normalizeValue( mColumnDefinition, pValue );
+        }
+
+        /**
+         * @return the result (in the current mode) for a NULL column value.
+         */
+        protected TriState whenNull() {
+            return TriState.UNKNOWN;
+        }
+
+        /**
+         * @return true if the (!null, normalized) column value matches in the regular mode.
+         */
+        abstract protected boolean matches( Object pValue );
+    }
+
+    private static class IsNull<R> extends ColumnCondition<R> {
+        IsNull( ColumnAccessor<R> pAccessor, AbstractWhereClauseColumnReference pWhereClause ) {
+            super( pAccessor, pWhereClause );
+        }
+
+        @Override
+        protected TriState whenNull() {
+            return mNot ? TriState.FALSE : TriState.TRUE;
+        }
+
+        @Override
+        protected boolean matches( Object pValue ) {
+            return false;
+        }
+    }
+
+    private static class Equals<R> extends ColumnCondition<R> {
+        private final Object mValue;
+
+        Equals( ColumnAccessor<R> pAccessor, AbstractWhereClauseColumnAndValue pWhereClause ) {
+            super( pAccessor, pWhereClause );
+            mValue = normalize( pWhereClause.getValue() );
+        }
+
+        @Override
+        protected TriState whenNull() {
+            return mNot ? TriState.TRUE : TriState.UNKNOWN; // NOT is: "(col <> v) OR (col IS NULL)"
+        }
+
+        @Override
+        protected boolean matches( Object pValue ) {
+            return WhereClauseValueSupport.areEqual( pValue, mValue );
+        }
+    }
+
+    private static class LessThan<R> extends ColumnCondition<R> {
+        private final Object mValue;
+
+        LessThan( ColumnAccessor<R> pAccessor, AbstractWhereClauseColumnAndValue pWhereClause ) {
+            super( pAccessor, pWhereClause );
+            mValue = normalize( pWhereClause.getValue() );
+        }
+
+        @Override
+        protected boolean matches( Object pValue ) {
+            return WhereClauseValueSupport.compare( pValue, mValue ) < 0;
+        }
+    }
+
+    private static class GreaterThan<R> extends ColumnCondition<R> {
+        private final Object mValue;
+
+        GreaterThan( ColumnAccessor<R> pAccessor, AbstractWhereClauseColumnAndValue pWhereClause ) {
+            super( pAccessor, pWhereClause );
+            mValue = normalize( pWhereClause.getValue() );
+        }
+
+        @Override
+        protected boolean matches( Object pValue ) {
+            return WhereClauseValueSupport.compare( pValue, mValue ) > 0;
+        }
+    }
+
+    private static class Between<R> extends ColumnCondition<R> {
+        private final Object mLeftValue;
+        private final Object mRightValue;
+
+        Between( ColumnAccessor<R> pAccessor, AbstractWhereClauseColumnAndTwoValues pWhereClause ) {
+            super( pAccessor, pWhereClause );
+            mLeftValue = normalize( pWhereClause.getLeftValue() );
+            mRightValue = normalize( pWhereClause.getRightValue() );
+        }
+
+        @Override
+        protected boolean matches( Object pValue ) {
+            return (WhereClauseValueSupport.compare( mLeftValue, pValue ) <= 0) && (WhereClauseValueSupport.compare( pValue, mRightValue ) <= 0);
+        }
+    }
+
+    /**
+     * The membership of the values is built (see <b>AnyOfMembership</b>) on the first evaluation.
+     */
+    private static class IsAnyOf<R> extends ColumnCondition<R> {
+        private final AbstractWhereClauseColumnAnd_N_Values mWhereClause;
+        private AnyOfMembership mMembership; // Lazy, racy but immutable
+
+        IsAnyOf( ColumnAccessor<R> pAccessor, AbstractWhereClauseColumnAnd_N_Values pWhereClause ) {
+            super( pAccessor, pWhereClause );
+            mWhereClause = pWhereClause;
+        }
+
+        @Override
+        protected boolean matches( Object pValue ) {
+            AnyOfMembership zMembership = mMembership;
+            if ( zMembership == null ) {
+                mMembership = zMembership = AnyOfMembership.of( mWhereClause );
+            }
+            return zMembership.contains( pValue );
+        }
+    }
+
+    /**
+     * The sub-select is materialized (see <b>InMemoryTable</b>) on the first evaluation, and again whenever it is NOT current (a table was invalidated).
+     */
+    private static class IsIn<R> extends Condition<R> {
+        private final ColumnAccessor<R> mAccessor;
+        private final SimpleColumnDefinition mColumnDefinition;
+        private final boolean mNot;
+        private final InMemoryTables mTables;
+        private final SingleColumnSelect mSelect;
+        private InMemoryTable.SemiJoin mSemiJoin; // Lazy, racy but immutable
+
+        IsIn( ColumnAccessor<R> pAccessor, InMemoryTables pTables, AbstractWhereClauseColumnIsIn pWhereClause ) {
+            mAccessor = pAccessor;
+            mColumnDefinition = pWhereClause.getColumnDefinition();
+            mNot = pWhereClause.isNot();
+            mTables = pTables;
+            mSelect = pWhereClause.getSingleColumnSelect();
+        }
+
+        @Override
+        TriState evaluate( R pRow ) {
+            InMemoryTable.SemiJoin zSemiJoin = mSemiJoin;
+            if ( (zSemiJoin == null) || !zSemiJoin.isCurrent() ) {
+                mSemiJoin = zSemiJoin = mTables.semiJoin( mSelect );
+            }
+            TriState zResult = zSemiJoin.isIn( WhereClauseValueSupport.normalizeValue( mColumnDefinition, mAccessor.getValue( pRow, mColumnDefinition ) ) );
+            return mNot ? zResult.not() : zResult;
+        }
+    }
+
+    /**
+     * The LIKE family, matched (without normalizing the row value) by a <b>LikeMatcher</b>.
+     */
+    private static class Like<R> extends Condition<R> {
+        private final ColumnAccessor<R> mAccessor;
+        private final SimpleColumnDefinition mColumnDefinition;
+        private final LikeMatcher mMatcher;
+
+        Like( ColumnAccessor<R> pAccessor, AbstractWhereClauseColumnReference pWhereClause ) {
+            mAccessor = pAccessor;
+            mColumnDefinition = pWhereClause.getColumnDefinition();
+            mMatcher = LikeMatcher.compile( pWhereClause );
+        }
+
+        @Override
+        TriState evaluate( R pRow ) {
+            return mMatcher.evaluate( mAccessor.getValue( pRow, mColumnDefinition ) );
+        }
+    }
+
+    /**
+     * A (grouped) OR of LIKEs, matched (in a single scan) by a <b>MultiLikeMatcher</b>.
+     */
+    private static class MultiLike<R> extends Condition<R> {
+        private final ColumnAccessor<R> mAccessor;
+        private final SimpleColumnDefinition mColumnDefinition;
+        private final MultiLikeMatcher mMatcher;
+
+        MultiLike( ColumnAccessor<R> pAccessor, MultiLikeMatcher pMatcher ) {
+            mAccessor = pAccessor;
+            mColumnDefinition = pMatcher.getColumnDefinition();
+            mMatcher = pMatcher;
+        }
+
+        @Override
+        TriState evaluate( R pRow ) {
+            return mMatcher.evaluate( mAccessor.getValue( pRow, mColumnDefinition ) );
+        }
+    }
+}
@@ -0,0 +1,126 @@
+// This Source Code is in the Public Domain per: http://unlicense.org
+package org.litesoft.whereclause.evaluation;
+
+import org.litesoft.whereclause.SimpleColumnDefinition;
+import org.litesoft.whereclause.WhereClause;
+
+import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * The super class of the <b>RowFilter</b>s generated by the <b>BytecodeRowFilterCompiler</b>.<p>
+ * <a href="../../../Licence.txt">Licence</a><br>
+ * <p/>
+ * A generated class implements <b>test()</b> for a tree <i>shape</i>, and is shared by
+ * all the WhereClauses of that shape; the columns and constants of each WhereClause
+ * are in the (protected) fields of its instance, as are the primitive getters (and null
+ * checks) of the columns registered with a <b>TypedColumnAccessor</b> (by column slot,
+ * null for the others).  The <b>evaluate()</b> (returning a <b>TriState</b>) is
+ * interpreted.<p>
+ * <p/>
+ * Note: The protected members are for the generated sub-classes only.<p>
+ *
+ * @param <R> the type of the rows.
+ */
+public abstract class GeneratedRowFilter<R> implements RowFilter<R> {
+    protected final ColumnAccessor<R> mAccessor;
+    protected final SimpleColumnDefinition[] mColumns;
+    protected final long[] mLongs;
+    protected final double[] mDoubles;
+    protected final Predicate<R>[] mIsNulls;
+    protected final ToIntFunction<R>[] mIntGetters;
+    protected final ToLongFunction<R>[] mLongGetters;
+    protected final ToDoubleFunction<R>[] mDoubleGetters;
+    private final AnyOfMembership[] mMemberships;
+    private final Condition<R>[] mLeaves;
+    private final Condition<R> mCondition;
+    private final WhereClause mWhereClause;
+
+    protected GeneratedRowFilter( Setup<R> pSetup ) {
+        mAccessor = pSetup.mAccessor;
+        mColumns = pSetup.mColumns;
+        mLongs = pSetup.mLongs;
+        mDoubles = pSetup.mDoubles;
+        mIsNulls = pSetup.mIsNulls;
+        mIntGetters = pSetup.mIntGetters;
+        mLongGetters = pSetup.mLongGetters;
+        mDoubleGetters = pSetup.mDoubleGetters;
+        mMemberships = pSetup.mMemberships;
+        mLeaves = pSetup.mLeaves;
+        mCondition = pSetup.mCondition;
+        mWhereClause = pSetup.mWhereClause;
+    }
+
+    /**
+     * Interpret the (pIndex) leaf that the generated code did not inline.<p>
+     *
+     * @return 1 for TRUE, 0 for FALSE, and -1 for UNKNOWN.
+     */
+    @SuppressWarnings("unchecked")
+    protected final int leaf( int pIndex, Object pRow ) {
+        TriState zResult = mLeaves[pIndex].evaluate( (R) pRow );
+        return (zResult == TriState.TRUE) ? 1 : (zResult == TriState.FALSE) ? 0 : -1;
+    }
+
+    /**
+     * @return true if the (pIndex) IS_ANY_OF membership contains the integral (primitive column) value.
+     */
+    protected final boolean anyOf( int pIndex, long pValue ) {
+        return mMemberships[pIndex].containsIntegral( pValue );
+    }
+
+    /**
+     * @return true if the (pIndex) IS_ANY_OF membership contains the (primitive column) value.
+     */
+    protected final boolean anyOf( int pIndex, double pValue ) {
+        return mMemberships[pIndex].containsDouble( pValue );
+    }
+
+    @Override
+    public TriState evaluate( R pRow ) {
+        return mCondition.evaluate( pRow );
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + ": " + mWhereClause;
+    }
+
+    /**
+     * The (opaque) state of a generated RowFilter instance.
+     */
+    public static final class Setup<R> {
+        private final ColumnAccessor<R> mAccessor;
+        private final SimpleColumnDefinition[] mColumns;
+        private final long[] mLongs;
+        private final double[] mDoubles;
+        private final Predicate<R>[] mIsNulls;
+        private final ToIntFunction<R>[] mIntGetters;
+        private final ToLongFunction<R>[] mLongGetters;
+        private final ToDoubleFunction<R>[] mDoubleGetters;
+        private final AnyOfMembership[] mMemberships;
+        private final Condition<R>[] mLeaves;
+        private final Condition<R> mCondition;
+        private final WhereClause mWhereClause;
+
+        Setup( ColumnAccessor<R> pAccessor, SimpleColumnDefinition[] pColumns, long[] pLongs, double[] pDoubles, //
+               Predicate<R>[] pIsNulls, ToIntFunction<R>[] pIntGetters, ToLongFunction<R>[] pLongGetters, ToDoubleFunction<R>[] pDoubleGetters, //
+               AnyOfMembership[] pMemberships, //
+               Condition<R>[] pLeaves, Condition<R> pCondition, WhereClause pWhereClause ) {
+            mAccessor = pAccessor;
+            mColumns = pColumns;
+            mLongs = pLongs;
+            mDoubles = pDoubles;
+            mIsNulls = pIsNulls;
+            mIntGetters = pIntGetters;
+            mLongGetters = pLongGetters;
+            mDoubleGetters = pDoubleGetters;
+            mMemberships = pMemberships;
+            mLeaves = pLeaves;
+            mCondition = pCondition;
+            mWhereClause = pWhereClause;
+        }
+    }
+}
@@ -0,0 +1,166 @@
+// This Source Code is in the Public Domain per: http://unlicense.org
+package org.litesoft.whereclause.evaluation;
+
+import org.litesoft.whereclause.SimpleFromIdentifier;
+import org.litesoft.whereclause.SingleColumnSelect;
+import org.litesoft.whereclause.WhereClauseValueSupport;
+import org.litesoft.whereclause.nonpublic.IllegalArgument;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The rows of a table (identified by a <b>SimpleFromIdentifier</b>) cached in memory,
+ * so that the <b>SingleColumnSelect</b>s of the IS_INs against it can be run in memory
+ * (see <b>InMemoryTables</b>).<p>
+ * <a href="../../../Licence.txt">Licence</a><br>
+ * <p/>
+ * Each SingleColumnSelect is materialized (its WhereClause applied, and its column's
+ * values collected into an <b>AnyOfMembership</b>) on first use, and cached until the
+ * table (or any table its WhereClause sub-selects from) is invalidated; so call
+ * <b>invalidate()</b> (or <b>InMemoryTables.invalidate()</b>) whenever the rows change.
+ * The rows must NOT be changed while they are being iterated.<p>
+ *
+ * @param <T> the type of the rows.
+ */
+public class InMemoryTable<T> {
+    private final SimpleFromIdentifier mFromIdentifier;
+    private final ColumnAccessor<T> mAccessor;
+    private final Iterable<T> mRows;
+    private final AtomicInteger mVersion = new AtomicInteger();
+    private final Map<SingleColumnSelect, SemiJoin> mSemiJoins = Collections.synchronizedMap( new WeakHashMap<SingleColumnSelect, SemiJoin>() );
+
+    /**
+     * Constructor.<p>
+     *
+     * @param pFromIdentifier identifies the table (!null), by its table name.
+     * @param pAccessor       reads the column values of the rows (!null).
+     * @param pRows           the (live) rows (!null, no null entries).
+     */
+    public InMemoryTable( SimpleFromIdentifier pFromIdentifier, ColumnAccessor<T> pAccessor, Iterable<T> pRows ) {
+        IllegalArgument.ifNull( "FromIdentifier", mFromIdentifier = pFromIdentifier );
+        IllegalArgument.ifNull( "Accessor", mAccessor = pAccessor );
+        IllegalArgument.ifNull( "Rows", mRows = pRows );
+    }
+
+    public SimpleFromIdentifier getFromIdentifier() {
+        return mFromIdentifier;
+    }
+
+    public ColumnAccessor<T> getAccessor() {
+        return mAccessor;
+    }
+
+    public Iterable<T> getRows() {
+        return mRows;
+    }
+
+    /**
+     * @return the number of invalidations.
+     */
+    public int getVersion() {
+        return mVersion.get();
+    }
+
+    /**
+     * The invalidation hook: discards the materialized SingleColumnSelects (of this table, and of those that sub-select from it).<p>
+     */
+    public void invalidate() {
+        mVersion.incrementAndGet();
+        mSemiJoins.clear();
+    }
+
+    /**
+     * @return the (cached, current) materialization of the select (against this table).
+     */
+    SemiJoin semiJoin( SingleColumnSelect pSelect, InMemoryTables pTables ) {
+        SemiJoin zSemiJoin = mSemiJoins.get( pSelect );
+        if ( (zSemiJoin == null) || !zSemiJoin.isCurrent() ) {
+            mSemiJoins.put( pSelect, zSemiJoin = materialize( pSelect, pTables ) );
+        }
+        return zSemiJoin;
+    }
+
+    /**
+     * The versions are taken before the rows are read, so an invalidation while materializing leaves it NOT current.
+     */
+    private SemiJoin materialize( SingleColumnSelect pSelect, InMemoryTables pTables ) {
+        List<InMemoryTable<?>> zTables = pTables.dependencies( pSelect );
+        int[] zVersions = new int[zTables.size()];
+        for ( int i = 0; i < zVersions.length; i++ ) {
+            zVersions[i] = zTables.get( i ).getVersion();
+        }
+        Condition<T> zWhere = (pSelect.getWhereClause() == null) ? null : //
+                              new ConditionCompiler<>( mAccessor, pTables ).compile( pSelect.getWhereClause() );
+        List<Object> zValues = new ArrayList<>();
+        boolean zHasNull = false;
+        for ( T zRow : mRows ) {
+            if ( (zWhere == null) || (zWhere.evaluate( zRow ) == TriState.TRUE) ) {
+                Object zValue = WhereClauseValueSupport.normalizeValue( pSelect.getColumnDefinition(), //
+                                                                        mAccessor.getValue( zRow, pSelect.getColumnDefinition() ) );
+                if ( zValue == null ) {
+                    zHasNull = true;
+                } else {
+                    zValues.add( zValue );
+                }
+            }
+        }
+        return new SemiJoin( new AnyOfMembership( zValues.toArray() ), zValues.isEmpty() && !zHasNull, zHasNull, //
+                             zTables.toArray( new InMemoryTable<?>[zTables.size()] ), zVersions );
+    }
+
+    @Override
+    public String toString() {
+        return "InMemoryTable(" + mFromIdentifier.getTableName() + " v" + getVersion() + ")";
+    }
+
+    /**
+     * A materialized SingleColumnSelect, with the versions of the tables it was read from.
+     */
+    static final class SemiJoin {
+        private final AnyOfMembership mValues;
+        private final boolean mEmpty, mHasNull;
+        private final InMemoryTable<?>[] mTables;
+        private final int[] mVersions;
+
+        SemiJoin( AnyOfMembership pValues, boolean pEmpty, boolean pHasNull, InMemoryTable<?>[] pTables, int[] pVersions ) {
+            mValues = pValues;
+            mEmpty = pEmpty;
+            mHasNull = pHasNull;
+            mTables = pTables;
+            mVersions = pVersions;
+        }
+
+        boolean isCurrent() {
+            for ( int i = 0; i < mTables.length; i++ ) {
+                if ( mTables[i].getVersion() != mVersions[i] ) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * SQL's "value IN (SELECT ...)": FALSE if NO rows were selected (even for a NULL value), UNKNOWN for a NULL value,
+         * TRUE if selected, and otherwise UNKNOWN if a NULL was selected, or FALSE (a NOT IN is the NOT of this).
+         *
+         * @param pValue the (normalized) value (null OK).
+         */
+        TriState isIn( Object pValue ) {
+            if ( mEmpty ) {
+                return TriState.FALSE;
+            }
+            if ( pValue == null ) {
+                return TriState.UNKNOWN;
+            }
+            if ( mValues.contains( pValue ) ) {
+                return TriState.TRUE;
+            }
+            return mHasNull ? TriState.UNKNOWN : TriState.FALSE;
+        }
+    }
+}
@@ -0,0 +1,143 @@
+// This Source Code is in the Public Domain per: http://unlicense.org
+package org.litesoft.whereclause.evaluation;
+
+import org.litesoft.whereclause.SimpleFromIdentifier;
+import org.litesoft.whereclause.SingleColumnSelect;
+import org.litesoft.whereclause.WhereClause;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseAssociativeList;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseColumnIsIn;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseWrapper;
+import org.litesoft.whereclause.nonpublic.IllegalArgument;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The tables cached in memory (by table name), against which the IS_IN sub-selects
+ * are evaluated as (hashed) semi-joins, when given to a <b>WhereClauseEvaluator</b>
+ * (or a <b>BytecodeRowFilterCompiler</b> or <b>MethodHandleRowFilterCompiler</b>).<p>
+ * <a href="../../../Licence.txt">Licence</a><br>
+ * <p/>
+ * An IS_IN's SingleColumnSelect is materialized once (see <b>InMemoryTable</b>), and
+ * each probe is then (about) constant time, with SQL's NULL semantics: NO selected
+ * rows is FALSE (so a NOT IN is TRUE), even for a NULL; a NULL is otherwise UNKNOWN;
+ * and a value that is NOT selected is UNKNOWN (NOT FALSE) if a NULL was selected, so a
+ * NOT IN against a column with a NULL never selects.<p>
+ * <p/>
+ * Call <b>invalidate()</b> whenever a table's rows change; replacing a table (with
+ * <b>add()</b>) invalidates the replaced one.<p>
+ */
+public class InMemoryTables {
+    private final ConcurrentMap<String, InMemoryTable<?>> mTables = new ConcurrentHashMap<>();
+
+    /**
+     * @param pTable the table (!null), replacing any with the same table name.
+     */
+    public InMemoryTables add( InMemoryTable<?> pTable ) {
+        IllegalArgument.ifNull( "Table", pTable );
+        InMemoryTable<?> zReplaced = mTables.put( pTable.getFromIdentifier().getTableName(), pTable );
+        if ( zReplaced != null ) {
+            zReplaced.invalidate();
+        }
+        return this;
+    }
+
+    /**
+     * @return the table or null if NOT in memory.
+     */
+    public InMemoryTable<?> getTable( SimpleFromIdentifier pFromIdentifier ) {
+        IllegalArgument.ifNull( "FromIdentifier", pFromIdentifier );
+        return mTables.get( pFromIdentifier.getTableName() );
+    }
+
+    /**
+     * The invalidation hook (see <b>InMemoryTable.invalidate()</b>), ignored if the table is NOT in memory.<p>
+     */
+    public void invalidate( SimpleFromIdentifier pFromIdentifier ) {
+        InMemoryTable<?> zTable = getTable( pFromIdentifier );
+        if ( zTable != null ) {
+            zTable.invalidate();
+        }
+    }
+
+    public void invalidateAll() {
+        for ( InMemoryTable<?> zTable : mTables.values() ) {
+            zTable.invalidate();
+        }
+    }
+
+    /**
+     * @return true if the table of each IS_IN (sub-select) of the WhereClause (and of
+     * their WhereClauses, recursively) is in memory, so it can be evaluated (true if none).
+     */
+    public boolean isInMemory( WhereClause pWhereClause ) {
+        IllegalArgument.ifNull( "WhereClause", pWhereClause );
+        if ( pWhereClause instanceof AbstractWhereClauseAssociativeList ) {
+            for ( WhereClause zChild : ((AbstractWhereClauseAssociativeList) pWhereClause).getWhereClauseList() ) {
+                if ( !isInMemory( zChild ) ) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        if ( pWhereClause instanceof AbstractWhereClauseWrapper ) {
+            return isInMemory( ((AbstractWhereClauseWrapper) pWhereClause).getWrappedWhereClause() );
+        }
+        if ( pWhereClause instanceof AbstractWhereClauseColumnIsIn ) {
+            SingleColumnSelect zSelect = ((AbstractWhereClauseColumnIsIn) pWhereClause).getSingleColumnSelect();
+            return (getTable( zSelect.getFromIdentifier() ) != null) && isInMemory( zSelect.getWhereClause() );
+        }
+        return true;
+    }
+
+    /**
+     * @return the (current) materialization of the select.
+     *
+     * @throws IllegalArgumentException if the select's table (or any it sub-selects from) is NOT in memory.
+     */
+    InMemoryTable.SemiJoin semiJoin( SingleColumnSelect pSelect ) {
+        return required( pSelect ).semiJoin( pSelect, this );
+    }
+
+    /**
+     * @return the select's table, and the tables of the IS_INs of its WhereClause (recursively).
+     */
+    List<InMemoryTable<?>> dependencies( SingleColumnSelect pSelect ) {
+        List<InMemoryTable<?>> zTables = new ArrayList<>();
+        addDependencies( pSelect, zTables );
+        return zTables;
+    }
+
+    private void addDependencies( SingleColumnSelect pSelect, List<InMemoryTable<?>> pTables ) {
+        InMemoryTable<?> zTable = required( pSelect );
+        if ( !pTables.contains( zTable ) ) {
+            pTables.add( zTable );
+        }
+        addDependencies( pSelect.getWhereClause(), pTables );
+    }
+
+    private void addDependencies( WhereClause pWhereClause, List<InMemoryTable<?>> pTables ) {
+        if ( pWhereClause instanceof AbstractWhereClauseAssociativeList ) {
+            for ( WhereClause zChild : ((AbstractWhereClauseAssociativeList) pWhereClause).getWhereClauseList() ) {
+                addDependencies( zChild, pTables );
+            }
+        } else if ( pWhereClause instanceof AbstractWhereClauseWrapper ) {
+            addDependencies( ((AbstractWhereClauseWrapper) pWhereClause).getWrappedWhereClause(), pTables );
+        } else if ( pWhereClause instanceof AbstractWhereClauseColumnIsIn ) {
+            addDependencies( ((AbstractWhereClauseColumnIsIn) pWhereClause).getSingleColumnSelect(), pTables );
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException if the select's table is NOT in memory.
+     */
+    InMemoryTable<?> required( SingleColumnSelect pSelect ) {
+        InMemoryTable<?> zTable = getTable( pSelect.getFromIdentifier() );
+        if ( zTable == null ) {
+            throw IllegalArgument.exception( "SingleColumnSelect", "table NOT in memory: " + pSelect );
+        }
+        return zTable;
+    }
+}
@@ -0,0 +1,365 @@
+// This Source Code is in the Public Domain per: http://unlicense.org
+package org.litesoft.whereclause.evaluation;
+
+import org.litesoft.whereclause.SimpleColumnDefinition;
+import org.litesoft.whereclause.WhereClause;
+import org.litesoft.whereclause.WhereClauseValueSupport;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseColumnAndLikeValue;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseColumnAndLikeValues;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseColumnReference;
+import org.litesoft.whereclause.nonpublic.IllegalArgument;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A LIKE (CONTAINS, STARTS_WITH, ENDS_WITH, or multi-segment LIKE) compiled once for
+ * matching many values in memory, without any per value parsing (or regular expressions).<p>
+ * <a href="../../../Licence.txt">Licence</a><br>
+ * <p/>
+ * The segments are the literal text between the '%'s of the SQL LIKE (the first is
+ * anchored at the front, the last at the end, and none may overlap), just as
+ * <b>WhereClauseColumnSupport.Like</b> escapes them for the SQL.  The anchored segments
+ * are checked first (including the length needed), and then the middle segments are
+ * searched for in order with <b>String.indexOf()</b> (a vectorized intrinsic on most
+ * JVMs, and faster than Boyer-Moore-Horspool even for long segments); except when case
+ * folding, where the short segments are found by (intrinsic) searches for both cases of
+ * their first character, and the longer ones with Boyer-Moore-Horspool.<p>
+ * <p/>
+ * The case folding variant (used for a column with a Search Column) matches values as
+ * if they were lower cased (as the Search Column is) without lower casing them: ASCII
+ * values are folded character by character, and any other value (or any value when
+ * the default Locale, when the matcher was created, lower cases ASCII specially, e.g.
+ * Turkish) is lower cased with <b>String.toLowerCase()</b>, so the results are always
+ * exactly those of lower casing.<p>
+ * <p/>
+ * A matcher is immutable (so thread safe), and matches in its NOT mode if the LIKE was a NOT.<p>
+ */
+public abstract class LikeMatcher {
+    /**
+     * The (smallest) length of a middle segment searched for with Boyer-Moore-Horspool when case folding.
+     */
+    static final int HORSPOOL_LENGTH = 16;
+
+    private final boolean mNot;
+    private final boolean mCaseFolding;
+    private final boolean mAsciiFolds; // as the default Locale (when created) lower cases ASCII
+    private final SimpleColumnDefinition mColumnDefinition;
+
+    LikeMatcher( boolean pNot, boolean pCaseFolding, SimpleColumnDefinition pColumnDefinition ) {
+        mNot = pNot;
+        mCaseFolding = pCaseFolding;
+        mAsciiFolds = pCaseFolding && "ABCDEFGHIJKLMNOPQRSTUVWXYZ".toLowerCase().equals( "abcdefghijklmnopqrstuvwxyz" );
+        mColumnDefinition = pColumnDefinition;
+    }
+
+    /**
+     * Compile a CONTAINS, STARTS_WITH, ENDS_WITH, or LIKE WhereClause (in either mode), case
+     * folding if its column has a Search Column.<p>
+     *
+     * @param pLike the LIKE (!null).
+     *
+     * @return the matcher (!null).
+     */
+    public static LikeMatcher compile( WhereClause pLike ) {
+        IllegalArgument.ifNull( "Like", pLike );
+        String[] zSegments;
+        switch ( pLike.getType() ) {
+            case CONTAINS:
+                zSegments = new String[]{"", ((AbstractWhereClauseColumnAndLikeValue) pLike).getValue(), ""};
+                break;
+            case STARTS_WITH:
+                zSegments = new String[]{((AbstractWhereClauseColumnAndLikeValue) pLike).getValue(), ""};
+                break;
+            case ENDS_WITH:
+                zSegments = new String[]{"", ((AbstractWhereClauseColumnAndLikeValue) pLike).getValue()};
+                break;
+            case LIKE:
+                zSegments = ((AbstractWhereClauseColumnAndLikeValues) pLike).getValues();
+                break;
+            default:
+                throw IllegalArgument.exception( "Like", "NOT a CONTAINS, STARTS_WITH, ENDS_WITH, or LIKE: " + pLike );
+        }
+        AbstractWhereClauseColumnReference zLike = (AbstractWhereClauseColumnReference) pLike;
+        return create( zLike.isNot(), zLike.getColumnDefinition().hasSearchColumn(), zLike.getColumnDefinition(), zSegments );
+    }
+
+    /**
+     * Create a matcher (in the regular mode) for the segments between the '%'s.<p>
+     *
+     * @param pCaseFolding true to match as if the values (and segments) were lower cased.
+     * @param pSegments    the (literal) segments, at least two (null entries are treated as empty).
+     *
+     * @return the matcher (!null).
+     */
+    public static LikeMatcher of( boolean pCaseFolding, String... pSegments ) {
+        if ( (pSegments == null) || (pSegments.length < 2) ) {
+            throw IllegalArgument.exception( "Segments", "At least two required" );
+        }
+        return create( false, pCaseFolding, null, pSegments );
+    }
+
+    private static LikeMatcher create( boolean pNot, boolean pCaseFolding, SimpleColumnDefinition pColumnDefinition, String[] pSegments ) {
+        String zFirst = segment( pCaseFolding, pSegments[0] );
+        String zLast = segment( pCaseFolding, pSegments[pSegments.length - 1] );
+        List<Searcher> zMiddles = new ArrayList<>();
+        for ( int i = 1; i < (pSegments.length - 1); i++ ) {
+            String zMiddle = segment( pCaseFolding, pSegments[i] );
+            if ( zMiddle.length() != 0 ) { // "%%" is just "%"
+                zMiddles.add( new Searcher( zMiddle, pCaseFolding ) );
+            }
+        }
+        if ( zMiddles.isEmpty() ) {
+            if ( zLast.length() == 0 ) {
+                return new Prefix( pNot, pCaseFolding, pColumnDefinition, zFirst );
+            }
+            if ( zFirst.length() == 0 ) {
+                return new Suffix( pNot, pCaseFolding, pColumnDefinition, zLast );
+            }
+        } else if ( (zMiddles.size() == 1) && (zFirst.length() == 0) && (zLast.length() == 0) ) {
+            return new Contains( pNot, pCaseFolding, pColumnDefinition, zMiddles.get( 0 ) );
+        }
+        return new Segments( pNot, pCaseFolding, pColumnDefinition, zFirst, zMiddles.toArray( new Searcher[zMiddles.size()] ), zLast );
+    }
+
+    private static String segment( boolean pCaseFolding, String pSegment ) {
+        return (pSegment == null) ? "" : pCaseFolding ? pSegment.toLowerCase() : pSegment;
+    }
+
+    public boolean isNot() {
+        return mNot;
+    }
+
+    public boolean isCaseFolding() {
+        return mCaseFolding;
+    }
+
+    /**
+     * @param pValue the value (!null).
+     *
+     * @return true if the value matches (in the current mode).
+     */
+    public final boolean matches( String pValue ) {
+        boolean zMatches;
+        if ( !mCaseFolding ) {
+            zMatches = matches( pValue, false );
+        } else if ( mAsciiFolds && isAscii( pValue ) ) {
+            zMatches = matches( pValue, true );
+        } else {
+            zMatches = matches( pValue.toLowerCase(), false );
+        }
+        return zMatches != mNot;
+    }
+
+    /**
+     * Evaluate a (row's) column value, with SQL's NULL semantics (UNKNOWN in both modes).<p>
+     *
+     * @param pValue the value (null OK), a non-String is matched as its (normalized) toString().
+     *
+     * @return the SQL (three-valued) result.
+     */
+    public final TriState evaluate( Object pValue ) {
+        if ( (pValue != null) && !(pValue instanceof String) ) {
+            pValue = (mColumnDefinition == null) ? pValue : WhereClauseValueSupport.normalizeValue( mColumnDefinition, pValue );
+        }
+        if ( pValue == null ) {
+            return TriState.UNKNOWN;
+        }
+        return matches( pValue.toString() ) ? TriState.TRUE : TriState.FALSE;
+    }
+
+    /**
+     * @param pValue the value (!null).
+     * @param pFold  true to fold the (ASCII) value's upper case letters to lower case.
+     *
+     * @return true if the value matches (in the regular mode).
+     */
+    abstract boolean matches( String pValue, boolean pFold );
+
+    private static boolean isAscii( String pValue ) {
+        int zBits = 0;
+        for ( int i = 0; i < pValue.length(); i++ ) {
+            zBits |= pValue.charAt( i );
+        }
+        return zBits < 0x80;
+    }
+
+    private static char fold( char pChar ) {
+        return ((pChar >= 'A') && (pChar <= 'Z')) ? (char) (pChar + ('a' - 'A')) : pChar;
+    }
+
+    /**
+     * @return true if the segment is at pOffset of the value (which has room for it).
+     */
+    private static boolean regionMatches( String pValue, int pOffset, String pSegment, boolean pFold ) {
+        if ( !pFold ) {
+            return pValue.startsWith( pSegment, pOffset );
+        }
+        for ( int i = 0; i < pSegment.length(); i++ ) {
+            if ( fold( pValue.charAt( pOffset + i ) ) != pSegment.charAt( i ) ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * A middle segment, with its Boyer-Moore-Horspool shifts (indexed by the low byte of
+     * the character, keeping the smallest shift of the characters that share it), if used.
+     */
+    private static final class Searcher {
+        private final String mSegment;
+        private final char mFirstChar, mFirstCharUpper; // Upper: the same if NOT a (lower case) ASCII letter
+        private final char mLastChar;
+        private final int[] mShifts;
+
+        Searcher( String pSegment, boolean pCaseFolding ) {
+            mSegment = pSegment;
+            mFirstChar = pSegment.charAt( 0 );
+            mFirstCharUpper = ((mFirstChar >= 'a') && (mFirstChar <= 'z')) ? (char) (mFirstChar - ('a' - 'A')) : mFirstChar;
+            mLastChar = pSegment.charAt( pSegment.length() - 1 );
+            if ( !pCaseFolding || (pSegment.length() < HORSPOOL_LENGTH) ) {
+                mShifts = null;
+            } else {
+                int zLength = pSegment.length();
+                mShifts = new int[256];
+                Arrays.fill( mShifts, zLength );
+                for ( int i = 0; i < (zLength - 1); i++ ) {
+                    mShifts[pSegment.charAt( i ) & 0xFF] = zLength - 1 - i;
+                }
+            }
+        }
+
+        int length() {
+            return mSegment.length();
+        }
+
+        /**
+         * @return the index of the segment in the value at or after pFrom, or -1.
+         */
+        int indexOf( String pValue, int pFrom, boolean pFold ) {
+            if ( mShifts != null ) {
+                return horspool( pValue, pFrom, pFold );
+            }
+            if ( !pFold ) {
+                return pValue.indexOf( mSegment, pFrom );
+            }
+            int zLimit = pValue.length() - mSegment.length();
+            int zLower = pValue.indexOf( mFirstChar, pFrom );
+            int zUpper = (mFirstCharUpper == mFirstChar) ? -1 : pValue.indexOf( mFirstCharUpper, pFrom );
+            while ( true ) {
+                int zAt = (zLower == -1) ? zUpper : (zUpper == -1) ? zLower : Math.min( zLower, zUpper );
+                if ( (zAt == -1) || (zAt > zLimit) ) {
+                    return -1;
+                }
+                if ( regionMatches( pValue, zAt, mSegment, true ) ) {
+                    return zAt;
+                }
+                if ( zAt == zLower ) {
+                    zLower = pValue.indexOf( mFirstChar, zAt + 1 );
+                } else {
+                    zUpper = pValue.indexOf( mFirstCharUpper, zAt + 1 );
+                }
+            }
+        }
+
+        private int horspool( String pValue, int pFrom, boolean pFold ) {
+            int zLast = mSegment.length() - 1;
+            int zLimit = pValue.length() - zLast;
+            for ( int i = pFrom; i < zLimit; ) {
+                char c = pValue.charAt( i + zLast );
+                if ( pFold ) {
+                    c = fold( c );
+                }
+                if ( (c == mLastChar) && regionMatches( pValue, i, mSegment, pFold ) ) {
+                    return i;
+                }
+                i += mShifts[c & 0xFF];
+            }
+            return -1;
+        }
+    }
+
+    private static final class Prefix extends LikeMatcher {
+        private final String mFirst;
+
+        Prefix( boolean pNot, boolean pCaseFolding, SimpleColumnDefinition pColumnDefinition, String pFirst ) {
+            super( pNot, pCaseFolding, pColumnDefinition );
+            mFirst = pFirst;
+        }
+
+        @Override
+        boolean matches( String pValue, boolean pFold ) {
+            return (pValue.length() >= mFirst.length()) && regionMatches( pValue, 0, mFirst, pFold );
+        }
+    }
+
+    private static final class Suffix extends LikeMatcher {
+        private final String mLast;
+
+        Suffix( boolean pNot, boolean pCaseFolding, SimpleColumnDefinition pColumnDefinition, String pLast ) {
+            super( pNot, pCaseFolding, pColumnDefinition );
+            mLast = pLast;
+        }
+
+        @Override
+        boolean matches( String pValue, boolean pFold ) {
+            int zOffset = pValue.length() - mLast.length();
+            return (zOffset >= 0) && regionMatches( pValue, zOffset, mLast, pFold );
+        }
+    }
+
+    private static final class Contains extends LikeMatcher {
+        private final Searcher mMiddle;
+
+        Contains( boolean pNot, boolean pCaseFolding, SimpleColumnDefinition pColumnDefinition, Searcher pMiddle ) {
+            super( pNot, pCaseFolding, pColumnDefinition );
+            mMiddle = pMiddle;
+        }
+
+        @Override
+        boolean matches( String pValue, boolean pFold ) {
+            return mMiddle.indexOf( pValue, 0, pFold ) != -1;
+        }
+    }
+
+    /**
+     * The general form: anchored first and last segments, with the middle segments in
+     * order between them (and none overlapping).
+     */
+    private static final class Segments extends LikeMatcher {
+        private final String mFirst;
+        private final Searcher[] mMiddles;
+        private final String mLast;
+        private final int mMinimumLength;
+
+        Segments( boolean pNot, boolean pCaseFolding, SimpleColumnDefinition pColumnDefinition, String pFirst, Searcher[] pMiddles, String pLast ) {
+            super( pNot, pCaseFolding, pColumnDefinition );
+            mFirst = pFirst;
+            mMiddles = pMiddles;
+            mLast = pLast;
+            int zMinimumLength = pFirst.length() + pLast.length();
+            for ( Searcher zMiddle : pMiddles ) {
+                zMinimumLength += zMiddle.length();
+            }
+            mMinimumLength = zMinimumLength;
+        }
+
+        @Override
+        boolean matches( String pValue, boolean pFold ) {
+            int zEnd = pValue.length() - mLast.length();
+            if ( (pValue.length() < mMinimumLength) || !regionMatches( pValue, 0, mFirst, pFold ) || !regionMatches( pValue, zEnd, mLast, pFold ) ) {
+                return false;
+            }
+            int zFrom = mFirst.length();
+            for ( Searcher zMiddle : mMiddles ) {
+                int zAt = zMiddle.indexOf( pValue, zFrom, pFold );
+                if ( (zAt == -1) || ((zFrom = zAt + zMiddle.length()) > zEnd) ) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
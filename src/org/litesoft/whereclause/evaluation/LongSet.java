@@ -0,0 +1,252 @@
+// This Source Code is in the Public Domain per: http://unlicense.org
+package org.litesoft.whereclause.evaluation;
+
+import java.util.Arrays;
+
+/**
+ * An immutable set of longs (NO boxing), whose representation is chosen by the
+ * cardinality and the density of the values.<p>
+ * <a href="../../../Licence.txt">Licence</a><br>
+ * <p/>
+ * Dense values (a range of no more than BITMAP_BITS_PER_VALUE bits per value) are a
+ * bitmap (as a <b>BitSet</b>, but offset by the minimum), a few (no more than
+ * SORTED_MAXIMUM) a sorted array searched with a branch free binary search, and any
+ * others an open addressing (linear probing) hash table, of ints if all the values fit
+ * in an int (halving the table's size), otherwise of longs.<p>
+ * <p/>
+ * A LongSet is immutable (so thread safe).<p>
+ */
+public abstract class LongSet {
+    public static final int BITMAP_BITS_PER_VALUE = 64;
+    public static final int SORTED_MAXIMUM = 128;
+
+    private final int mSize;
+
+    LongSet( int pSize ) {
+        mSize = pSize;
+    }
+
+    /**
+     * @param pValues the values (!null, duplicates OK), NOT retained.
+     */
+    public static LongSet of( long... pValues ) {
+        long[] zSorted = unique( pValues );
+        int zSize = zSorted.length;
+        if ( zSize != 0 ) {
+            long zRange = zSorted[zSize - 1] - zSorted[0] + 1; // Unsigned, 0 if ALL the longs
+            if ( (0 < zRange) && (zRange <= (long) zSize * BITMAP_BITS_PER_VALUE) ) {
+                return new Bitmap( zSorted, zRange );
+            }
+        }
+        if ( zSize <= SORTED_MAXIMUM ) {
+            return new Sorted( zSorted );
+        }
+        if ( (Integer.MIN_VALUE <= zSorted[0]) && (zSorted[zSize - 1] <= Integer.MAX_VALUE) ) {
+            return new IntHash( zSorted );
+        }
+        return new LongHash( zSorted );
+    }
+
+    private static long[] unique( long[] pValues ) {
+        long[] zSorted = pValues.clone();
+        Arrays.sort( zSorted );
+        int zSize = 0;
+        for ( int i = 0; i < zSorted.length; i++ ) {
+            if ( (i == 0) || (zSorted[i] != zSorted[zSize - 1]) ) {
+                zSorted[zSize++] = zSorted[i];
+            }
+        }
+        return (zSize == zSorted.length) ? zSorted : Arrays.copyOf( zSorted, zSize );
+    }
+
+    /**
+     * @return the number of (unique) values.
+     */
+    public final int size() {
+        return mSize;
+    }
+
+    public abstract boolean contains( long pValue );
+
+    /**
+     * A hash table's capacity (a power of 2) of at least twice the size (so at most half full).
+     */
+    private static int capacityBits( int pSize ) {
+        return Math.max( 1, 33 - Integer.numberOfLeadingZeros( pSize - 1 ) );
+    }
+
+    /**
+     * Fibonacci hashing: the top bits of the product with 2^64 / the Golden Ratio.
+     */
+    private static int slot( long pValue, int pShift ) {
+        return (int) ((pValue * 0x9E3779B97F4A7C15L) >>> pShift);
+    }
+
+    private static final class Bitmap extends LongSet {
+        private final long mMin, mRange;
+        private final long[] mWords;
+
+        Bitmap( long[] pSorted, long pRange ) {
+            super( pSorted.length );
+            mMin = pSorted[0];
+            mRange = pRange;
+            mWords = new long[(int) ((pRange + 63) >>> 6)];
+            for ( long zValue : pSorted ) {
+                long zBit = zValue - mMin;
+                mWords[(int) (zBit >>> 6)] |= 1L << zBit;
+            }
+        }
+
+        @Override
+        public boolean contains( long pValue ) {
+            long zBit = pValue - mMin; // in range if "unsigned" less than the range
+            return ((zBit + Long.MIN_VALUE) < (mRange + Long.MIN_VALUE)) && ((mWords[(int) (zBit >>> 6)] & (1L << zBit)) != 0);
+        }
+
+        @Override
+        public String toString() {
+            return "Bitmap(" + size() + " of " + mMin + ".." + (mMin + mRange - 1) + ")";
+        }
+    }
+
+    private static final class Sorted extends LongSet {
+        private final long[] mSorted;
+
+        Sorted( long[] pSorted ) {
+            super( pSorted.length );
+            mSorted = pSorted;
+        }
+
+        /**
+         * Halves the (remaining) length a fixed number of times, with a conditional move (NOT a branch) per step.
+         */
+        @Override
+        public boolean contains( long pValue ) {
+            long[] zSorted = mSorted;
+            int zLength = zSorted.length;
+            if ( zLength == 0 ) {
+                return false;
+            }
+            int zBase = 0;
+            while ( zLength > 1 ) {
+                int zHalf = zLength >>> 1;
+                zBase = (zSorted[zBase + zHalf] <= pValue) ? zBase + zHalf : zBase;
+                zLength -= zHalf;
+            }
+            return zSorted[zBase] == pValue;
+        }
+
+        @Override
+        public String toString() {
+            return "Sorted(" + size() + ")";
+        }
+    }
+
+    /**
+     * Open addressing, where 0 marks an empty slot (so the value 0 is tracked separately).
+     */
+    private static final class IntHash extends LongSet {
+        private final int[] mTable;
+        private final int mShift, mMask;
+        private final boolean mHasZero;
+
+        IntHash( long[] pSorted ) {
+            super( pSorted.length );
+            int zBits = capacityBits( pSorted.length );
+            mTable = new int[1 << zBits];
+            mShift = 64 - zBits;
+            mMask = mTable.length - 1;
+            boolean zHasZero = false;
+            for ( long zValue : pSorted ) {
+                if ( zValue == 0 ) {
+                    zHasZero = true;
+                    continue;
+                }
+                int zSlot = slot( zValue, mShift );
+                while ( mTable[zSlot] != 0 ) {
+                    zSlot = (zSlot + 1) & mMask;
+                }
+                mTable[zSlot] = (int) zValue;
+            }
+            mHasZero = zHasZero;
+        }
+
+        @Override
+        public boolean contains( long pValue ) {
+            int zValue = (int) pValue;
+            if ( zValue != pValue ) {
+                return false;
+            }
+            if ( zValue == 0 ) {
+                return mHasZero;
+            }
+            int[] zTable = mTable;
+            for ( int zSlot = slot( zValue, mShift ); true; zSlot = (zSlot + 1) & mMask ) {
+                int zEntry = zTable[zSlot];
+                if ( zEntry == zValue ) {
+                    return true;
+                }
+                if ( zEntry == 0 ) {
+                    return false;
+                }
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "IntHash(" + size() + " in " + mTable.length + ")";
+        }
+    }
+
+    /**
+     * Open addressing, where 0 marks an empty slot (so the value 0 is tracked separately).
+     */
+    private static final class LongHash extends LongSet {
+        private final long[] mTable;
+        private final int mShift, mMask;
+        private final boolean mHasZero;
+
+        LongHash( long[] pSorted ) {
+            super( pSorted.length );
+            int zBits = capacityBits( pSorted.length );
+            mTable = new long[1 << zBits];
+            mShift = 64 - zBits;
+            mMask = mTable.length - 1;
+            boolean zHasZero = false;
+            for ( long zValue : pSorted ) {
+                if ( zValue == 0 ) {
+                    zHasZero = true;
+                    continue;
+                }
+                int zSlot = slot( zValue, mShift );
+                while ( mTable[zSlot] != 0 ) {
+                    zSlot = (zSlot + 1) & mMask;
+                }
+                mTable[zSlot] = zValue;
+            }
+            mHasZero = zHasZero;
+        }
+
+        @Override
+        public boolean contains( long pValue ) {
+            if ( pValue == 0 ) {
+                return mHasZero;
+            }
+            long[] zTable = mTable;
+            for ( int zSlot = slot( pValue, mShift ); true; zSlot = (zSlot + 1) & mMask ) {
+                long zEntry = zTable[zSlot];
+                if ( zEntry == pValue ) {
+                    return true;
+                }
+                if ( zEntry == 0 ) {
+                    return false;
+                }
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "LongHash(" + size() + " in " + mTable.length + ")";
+        }
+    }
+}
@@ -0,0 +1,20 @@
+// This Source Code is in the Public Domain per: http://unlicense.org
+package org.litesoft.whereclause.evaluation;
+
+import org.litesoft.whereclause.SimpleColumnDefinition;
+
+import java.util.Map;
+
+/**
+ * A <b>ColumnAccessor</b> for rows that are Maps keyed by <b>SimpleColumnDefinition</b>
+ * (a missing key is a NULL).<p>
+ * <a href="../../../Licence.txt">Licence</a><br>
+ */
+public class MapColumnAccessor implements ColumnAccessor<Map<SimpleColumnDefinition, Object>> {
+    public static final MapColumnAccessor INSTANCE = new MapColumnAccessor();
+
+    @Override
+    public Object getValue( Map<SimpleColumnDefinition, Object> pRow, SimpleColumnDefinition pColumnDefinition ) {
+        return pRow.get( pColumnDefinition );
+    }
+}
@@ -0,0 +1,493 @@
+// This Source Code is in the Public Domain per: http://unlicense.org
+package org.litesoft.whereclause.evaluation;
+
+import org.litesoft.whereclause.SimpleColumnDefinition;
+import org.litesoft.whereclause.WhereClause;
+import org.litesoft.whereclause.WhereClauseValueSupport;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseAssociativeList;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseColumnAndTwoValues;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseColumnAndValue;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseColumnAnd_N_Values;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseColumnReference;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseWrapper;
+import org.litesoft.whereclause.nonpublic.IllegalArgument;
+import org.litesoft.whereclause.transform.WhereClauseTransform;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * A <b>RowFilterCompiler</b> that combines <b>MethodHandle</b>s (instead of defining
+ * classes) into a single handle per <b>WhereClause</b>, for environments where class
+ * definition is restricted.<p>
+ * <a href="../../../Licence.txt">Licence</a><br>
+ * <p/>
+ * The AND and OR are (balanced) folds (<b>foldArguments</b>) that short circuit with
+ * <b>guardWithTest</b>, the NOT a <b>filterReturnValue</b>, and each leaf reads and
+ * normalizes its column value with <b>filterArguments</b> and guards the NULL before
+ * the comparison, into which the (normalized) values are bound as constants; so the
+ * results are exactly those of the <b>WhereClauseEvaluator</b>.  The IS_ANY_OF is bound
+ * to its node's <b>AnyOfMembership</b>, the LIKE family to its (precompiled) <b>LikeMatcher</b> (or an OR's grouped LIKEs to their
+ * <b>MultiLikeMatcher</b>, see <b>ConditionCompiler</b>).<p>
+ * <p/>
+ * The leaves of the columns with primitive getters (see <b>TypedColumnAccessor</b>)
+ * filter the row through the getter's handle (no boxing) into a primitive comparison
+ * (as planned by the <b>PrimitiveConditionCompiler</b>), guarded by the column's null
+ * check.<p>
+ * <p/>
+ * The JIT only inlines the whole tree when the handle is a constant, i.e. held in a
+ * static final field or a (constant) call site; so for the best performance, use
+ * <b>compileHandle()</b> and keep the handle that way.  The RowFilters returned by
+ * <b>compile()</b> hold their handles in (final) instance fields.<p>
+ *
+ * @param <R> the type of the rows.
+ */
+public class MethodHandleRowFilterCompiler<R> implements RowFilterCompiler<R> {
+    /**
+     * The type of the handles returned by <b>compileHandle()</b>.
+     */
+    public static final MethodType TEST_TYPE = MethodType.methodType( boolean.class, Object.class );
+
+    private static final MethodHandle GET_VALUE;
+    private static final MethodHandle NORMALIZE;
+    private static final MethodHandle IS_NULL;
+    private static final MethodHandle IS_TRUE;
+    private static final MethodHandle IS_FALSE;
+    private static final MethodHandle OF;
+    private static final MethodHandle NOT;
+    private static final MethodHandle AND;
+    private static final MethodHandle OR;
+    private static final MethodHandle EQUALS;
+    private static final MethodHandle LESS_THAN;
+    private static final MethodHandle GREATER_THAN;
+    private static final MethodHandle BETWEEN;
+    private static final MethodHandle IS_ANY_OF;
+    private static final MethodHandle LIKE;
+    private static final MethodHandle EVALUATE;
+    private static final MethodHandle TYPED_IS_NULL;
+    private static final MethodHandle GET_INT;
+    private static final MethodHandle GET_LONG;
+    private static final MethodHandle GET_DOUBLE;
+    private static final MethodHandle IN_RANGE;
+    private static final MethodHandle DOUBLE_EQUALS;
+    private static final MethodHandle DOUBLE_LESS_THAN;
+    private static final MethodHandle DOUBLE_GREATER_THAN;
+    private static final MethodHandle DOUBLE_BETWEEN;
+    private static final MethodHandle IS_ANY_OF_INTEGRAL;
+    private static final MethodHandle IS_ANY_OF_DOUBLE;
+
+    static {
+        MethodHandles.Lookup zLookup = MethodHandles.lookup();
+        try {
+            GET_VALUE = zLookup.findVirtual( ColumnAccessor.class, "getValue", //
+                                             MethodType.methodType( Object.class, Object.class, SimpleColumnDefinition.class ) );
+            NORMALIZE = zLookup.findStatic( WhereClauseValueSupport.class, "normalizeValue", //
+                                            MethodType.methodType( Object.class, SimpleColumnDefinition.class, Object.class ) );
+            IS_NULL = zLookup.findStatic( MethodHandleRowFilterCompiler.class, "isNull", //
+                                          MethodType.methodType( boolean.class, Object.class ) );
+            IS_TRUE = zLookup.findVirtual( TriState.class, "isTrue", MethodType.methodType( boolean.class ) );
+            IS_FALSE = zLookup.findStatic( MethodHandleRowFilterCompiler.class, "isFalse", //
+                                           MethodType.methodType( boolean.class, TriState.class ) );
+            OF = zLookup.findStatic( TriState.class, "of", MethodType.methodType( TriState.class, boolean.class ) );
+            NOT = zLookup.findVirtual( TriState.class, "not", MethodType.methodType( TriState.class ) );
+            AND = zLookup.findVirtual( TriState.class, "and", MethodType.methodType( TriState.class, TriState.class ) );
+            OR = zLookup.findVirtual( TriState.class, "or", MethodType.methodType( TriState.class, TriState.class ) );
+            EQUALS = zLookup.findStatic( WhereClauseValueSupport.class, "areEqual", //
+                                         MethodType.methodType( boolean.class, Object.class, Object.class ) );
+            LESS_THAN = zLookup.findStatic( MethodHandleRowFilterCompiler.class, "isLessThan", //
+                                            MethodType.methodType( boolean.class, Object.class, Object.class ) );
+            GREATER_THAN = zLookup.findStatic( MethodHandleRowFilterCompiler.class, "isGreaterThan", //
+                                               MethodType.methodType( boolean.class, Object.class, Object.class ) );
+            BETWEEN = zLookup.findStatic( MethodHandleRowFilterCompiler.class, "isBetween", //
+                                          MethodType.methodType( boolean.class, Object.class, Object.class, Object.class ) );
+            IS_ANY_OF = zLookup.findVirtual( AnyOfMembership.class, "contains", MethodType.methodType( boolean.class, Object.class ) );
+            LIKE = zLookup.findVirtual( LikeMatcher.class, "evaluate", MethodType.methodType( TriState.class, Object.class ) );
+            EVALUATE = zLookup.findVirtual( Condition.class, "evaluate", MethodType.methodType( TriState.class, Object.class ) );
+            TYPED_IS_NULL = zLookup.findVirtual( Predicate.class, "test", MethodType.methodType( boolean.class, Object.class ) );
+            GET_INT = zLookup.findVirtual( ToIntFunction.class, "applyAsInt", MethodType.methodType( int.class, Object.class ) );
+            GET_LONG = zLookup.findVirtual( ToLongFunction.class, "applyAsLong", MethodType.methodType( long.class, Object.class ) );
+            GET_DOUBLE = zLookup.findVirtual( ToDoubleFunction.class, "applyAsDouble", MethodType.methodType( double.class, Object.class ) );
+            IN_RANGE = zLookup.findStatic( MethodHandleRowFilterCompiler.class, "isInRange", //
+                                           MethodType.methodType( boolean.class, long.class, long.class, long.class ) );
+            DOUBLE_EQUALS = zLookup.findStatic( MethodHandleRowFilterCompiler.class, "isEqual", //
+                                                MethodType.methodType( boolean.class, double.class, double.class ) );
+            DOUBLE_LESS_THAN = zLookup.findStatic( MethodHandleRowFilterCompiler.class, "isLessThan", //
+                                                   MethodType.methodType( boolean.class, double.class, double.class ) );
+            DOUBLE_GREATER_THAN = zLookup.findStatic( MethodHandleRowFilterCompiler.class, "isGreaterThan", //
+                                                      MethodType.methodType( boolean.class, double.class, double.class ) );
+            DOUBLE_BETWEEN = zLookup.findStatic( MethodHandleRowFilterCompiler.class, "isBetween", //
+                                                 MethodType.methodType( boolean.class, double.class, double.class, double.class ) );
+            IS_ANY_OF_INTEGRAL = zLookup.findVirtual( AnyOfMembership.class, "containsIntegral", MethodType.methodType( boolean.class, long.class ) );
+            IS_ANY_OF_DOUBLE = zLookup.findVirtual( AnyOfMembership.class, "containsDouble", MethodType.methodType( boolean.class, double.class ) );
+        }
+        catch ( ReflectiveOperationException e ) {
+            throw new ExceptionInInitializerError( e );
+        }
+    }
+
+    private final ColumnAccessor<R> mAccessor;
+    private final WhereClauseTransform mTransform;
+    private final ConditionCompiler<R> mConditionCompiler;
+
+    /**
+     * Constructor.<p>
+     *
+     * @param pAccessor  reads the column values of the rows (!null).
+     * @param pTransform applied to each WhereClause before compiling (!null, WhereClauseTransform.NONE for none).
+     * @param pTables    the tables (null OK, for none) that the IS_INs (sub-selects) are evaluated against (see <b>InMemoryTables</b>).
+     */
+    public MethodHandleRowFilterCompiler( ColumnAccessor<R> pAccessor, WhereClauseTransform pTransform, InMemoryTables pTables ) {
+        IllegalArgument.ifNull( "Accessor", mAccessor = pAccessor );
+        IllegalArgument.ifNull( "Transform", mTransform = pTransform );
+        mConditionCompiler = new ConditionCompiler<>( pAccessor, pTables );
+    }
+
+    /**
+     * Constructor (without any tables in memory).<p>
+     *
+     * @param pAccessor  reads the column values of the rows (!null).
+     * @param pTransform applied to each WhereClause before compiling (!null, WhereClauseTransform.NONE for none).
+     */
+    public MethodHandleRowFilterCompiler( ColumnAccessor<R> pAccessor, WhereClauseTransform pTransform ) {
+        this( pAccessor, pTransform, null );
+    }
+
+    /**
+     * Constructor (without a transform).<p>
+     *
+     * @param pAccessor reads the column values of the rows (!null).
+     */
+    public MethodHandleRowFilterCompiler( ColumnAccessor<R> pAccessor ) {
+        this( pAccessor, WhereClauseTransform.NONE );
+    }
+
+    @Override
+    public RowFilter<R> compile( WhereClause pWhereClause ) {
+        IllegalArgument.ifNull( "WhereClause", pWhereClause );
+        WhereClause zWhereClause = mTransform.transform( pWhereClause );
+        MethodHandle zEvaluate = build( zWhereClause );
+        return new MethodHandleRowFilter<>( zWhereClause, zEvaluate, MethodHandles.filterReturnValue( zEvaluate, IS_TRUE ) );
+    }
+
+    /**
+     * Compile a WhereClause into a single handle (of type TEST_TYPE: "(Object)boolean")
+     * that returns true if the row (the Object) is selected.<p>
+     * <p/>
+     * Keep the handle in a static final field (or a constant call site) so that the JIT
+     * can inline it.<p>
+     *
+     * @param pWhereClause the tree (!null, IS_INs only against the tables in memory).
+     *
+     * @return the handle (!null).
+     */
+    public MethodHandle compileHandle( WhereClause pWhereClause ) {
+        IllegalArgument.ifNull( "WhereClause", pWhereClause );
+        return MethodHandles.filterReturnValue( build( mTransform.transform( pWhereClause ) ), IS_TRUE );
+    }
+
+    /**
+     * @return a "(Object row)TriState".
+     */
+    private MethodHandle build( WhereClause pWhereClause ) {
+        if ( pWhereClause instanceof AbstractWhereClauseColumnReference ) {
+            Condition<R> zPrimitive = mConditionCompiler.compilePrimitive( (AbstractWhereClauseColumnReference) pWhereClause );
+            if ( zPrimitive != null ) { // Boxing free
+                return typedLeaf( (PrimitiveConditionCompiler.PrimitiveCondition<R>) zPrimitive );
+            }
+        }
+        switch ( pWhereClause.getType() ) {
+            case TRUE:
+                return constant( TriState.TRUE );
+            case FALSE:
+                return constant( TriState.FALSE );
+            case AND:
+                return junction( buildAll( ((AbstractWhereClauseAssociativeList) pWhereClause).getWhereClauseList() ), IS_FALSE, TriState.FALSE, AND );
+            case OR:
+                return junction( buildOr( ((AbstractWhereClauseAssociativeList) pWhereClause).getWhereClauseList() ), IS_TRUE, TriState.TRUE, OR );
+            case NOT:
+                return MethodHandles.filterReturnValue( build( ((AbstractWhereClauseWrapper) pWhereClause).getWrappedWhereClause() ), NOT );
+            case IS_NULL:
+                AbstractWhereClauseColumnReference zIsNull = (AbstractWhereClauseColumnReference) pWhereClause;
+                return leaf( zIsNull, zIsNull.isNot() ? TriState.FALSE : TriState.TRUE, //
+                             constant( zIsNull.isNot() ? TriState.TRUE : TriState.FALSE ) );
+            case EQUALS:
+                AbstractWhereClauseColumnAndValue zEquals = (AbstractWhereClauseColumnAndValue) pWhereClause;
+                return leaf( zEquals, zEquals.isNot() ? TriState.TRUE : TriState.UNKNOWN, // NOT is: "(col <> v) OR (col IS NULL)"
+                             matches( zEquals, EQUALS, normalize( zEquals, zEquals.getValue() ) ) );
+            case LESSTHAN:
+                AbstractWhereClauseColumnAndValue zLessThan = (AbstractWhereClauseColumnAndValue) pWhereClause;
+                return leaf( zLessThan, TriState.UNKNOWN, matches( zLessThan, LESS_THAN, normalize( zLessThan, zLessThan.getValue() ) ) );
+            case GREATERTHAN:
+                AbstractWhereClauseColumnAndValue zGreaterThan = (AbstractWhereClauseColumnAndValue) pWhereClause;
+                return leaf( zGreaterThan, TriState.UNKNOWN, matches( zGreaterThan, GREATER_THAN, normalize( zGreaterThan, zGreaterThan.getValue() ) ) );
+            case BETWEEN:
+                AbstractWhereClauseColumnAndTwoValues zBetween = (AbstractWhereClauseColumnAndTwoValues) pWhereClause;
+                return leaf( zBetween, TriState.UNKNOWN, matches( zBetween, BETWEEN, normalize( zBetween, zBetween.getLeftValue() ), //
+                                                                  normalize( zBetween, zBetween.getRightValue() ) ) );
+            case IS_ANY_OF:
+                AbstractWhereClauseColumnAnd_N_Values zIsAnyOf = (AbstractWhereClauseColumnAnd_N_Values) pWhereClause;
+                return leaf( zIsAnyOf, TriState.UNKNOWN, matches( zIsAnyOf, IS_ANY_OF, AnyOfMembership.of( zIsAnyOf ) ) );
+            case CONTAINS:
+            case STARTS_WITH:
+            case ENDS_WITH:
+            case LIKE:
+                return like( (AbstractWhereClauseColumnReference) pWhereClause );
+            case IS_IN:
+                return EVALUATE.bindTo( mConditionCompiler.compile( pWhereClause ) );
+            default:
+                throw new IllegalStateException( "Unexpected WhereClause Type: " + pWhereClause.getType() );
+        }
+    }
+
+    private List<MethodHandle> buildAll( List<WhereClause> pChildren ) {
+        List<MethodHandle> zHandles = new ArrayList<>( pChildren.size() );
+        for ( WhereClause zChild : pChildren ) {
+            zHandles.add( build( zChild ) );
+        }
+        return zHandles;
+    }
+
+    /**
+     * The children NOT grouped into a <b>MultiLikeMatcher</b> (see <b>ConditionCompiler</b>), followed by the (bound) MultiLikeMatchers.
+     */
+    private List<MethodHandle> buildOr( List<WhereClause> pChildren ) {
+        List<WhereClause> zRemaining = new ArrayList<>();
+        List<MultiLikeMatcher> zMatchers = ConditionCompiler.groupMultiLikes( pChildren, zRemaining );
+        List<MethodHandle> zHandles = buildAll( zRemaining );
+        for ( MultiLikeMatcher zMatcher : zMatchers ) {
+            zHandles.add( EVALUATE.bindTo( mConditionCompiler.compile( zMatcher ) ) );
+        }
+        return zHandles;
+    }
+
+    /**
+     * Combine the children, in order, as: "first short circuits ? its result : first.combine( rest )";
+     * halving (rather than folding one at a time), so that the depth of the handles (and the stack)
+     * only grows logarithmically with the number of children.
+     */
+    private MethodHandle junction( List<MethodHandle> pChildren, MethodHandle pShortCircuits, TriState pShortCircuitResult, MethodHandle pCombine ) {
+        if ( pChildren.size() == 1 ) {
+            return pChildren.get( 0 );
+        }
+        int zHalf = pChildren.size() / 2;
+        MethodHandle zFirst = junction( pChildren.subList( 0, zHalf ), pShortCircuits, pShortCircuitResult, pCombine );
+        MethodHandle zRest = junction( pChildren.subList( zHalf, pChildren.size() ), pShortCircuits, pShortCircuitResult, pCombine );
+        MethodHandle zTarget = MethodHandles.guardWithTest( MethodHandles.dropArguments( pShortCircuits, 1, Object.class ), //
+                                                            MethodHandles.dropArguments( constant( pShortCircuitResult ), 0, TriState.class ), //
+                                                            MethodHandles.filterArguments( pCombine, 1, zRest ) );
+        return MethodHandles.foldArguments( zTarget, zFirst );
+    }
+
+    /**
+     * @param pWhenNull the result for a NULL column value.
+     * @param pMatches  "(Object)TriState", the result for a (!null, normalized) column value.
+     *
+     * @return "(Object row)TriState".
+     */
+    private MethodHandle leaf( AbstractWhereClauseColumnReference pLeaf, TriState pWhenNull, MethodHandle pMatches ) {
+        SimpleColumnDefinition zColumnDefinition = pLeaf.getColumnDefinition();
+        MethodHandle zGetValue = MethodHandles.insertArguments( GET_VALUE.bindTo( mAccessor ), 1, zColumnDefinition );
+        zGetValue = MethodHandles.filterReturnValue( zGetValue, MethodHandles.insertArguments( NORMALIZE, 0, zColumnDefinition ) );
+        return MethodHandles.filterArguments( MethodHandles.guardWithTest( IS_NULL, constant( pWhenNull ), pMatches ), 0, zGetValue );
+    }
+
+    /**
+     * A leaf of a column with a primitive getter, from the parts of its (boxing free) Condition.
+     *
+     * @return "(Object row)TriState".
+     */
+    private MethodHandle typedLeaf( PrimitiveConditionCompiler.PrimitiveCondition<R> pCondition ) {
+        TypedColumnAccessor.Getter<R> zGetter = pCondition.getGetter();
+        MethodHandle zValue;
+        if ( pCondition instanceof PrimitiveConditionCompiler.IsNull ) {
+            zValue = constant( pCondition.isNot() ? TriState.TRUE : TriState.FALSE );
+        } else if ( pCondition instanceof PrimitiveConditionCompiler.LongRange ) {
+            PrimitiveConditionCompiler.LongRange<R> zRange = (PrimitiveConditionCompiler.LongRange<R>) pCondition;
+            zValue = MethodHandles.filterArguments( matches( pCondition.isNot(), IN_RANGE, zRange.getLow(), zRange.getHigh() ), 0, getter( zGetter, long.class ) );
+        } else if ( pCondition instanceof PrimitiveConditionCompiler.DoubleCompare ) {
+            PrimitiveConditionCompiler.DoubleCompare<R> zCompare = (PrimitiveConditionCompiler.DoubleCompare<R>) pCondition;
+            MethodHandle zMatches;
+            switch ( zCompare.getType() ) {
+                case EQUALS:
+                    zMatches = matches( pCondition.isNot(), DOUBLE_EQUALS, zCompare.getLow() );
+                    break;
+                case LESSTHAN:
+                    zMatches = matches( pCondition.isNot(), DOUBLE_LESS_THAN, zCompare.getHigh() );
+                    break;
+                case GREATERTHAN:
+                    zMatches = matches( pCondition.isNot(), DOUBLE_GREATER_THAN, zCompare.getLow() );
+                    break;
+                default: // BETWEEN
+                    zMatches = matches( pCondition.isNot(), DOUBLE_BETWEEN, zCompare.getLow(), zCompare.getHigh() );
+                    break;
+            }
+            zValue = MethodHandles.filterArguments( zMatches, 0, getter( zGetter, double.class ) );
+        } else { // IsAnyOf
+            AnyOfMembership zMembership = ((PrimitiveConditionCompiler.IsAnyOf<R>) pCondition).getMembership();
+            zValue = zGetter.isIntegral() ? //
+                     MethodHandles.filterArguments( matches( pCondition.isNot(), IS_ANY_OF_INTEGRAL, zMembership ), 0, getter( zGetter, long.class ) ) : //
+                     MethodHandles.filterArguments( matches( pCondition.isNot(), IS_ANY_OF_DOUBLE, zMembership ), 0, getter( zGetter, double.class ) );
+        }
+        if ( zGetter.getIsNull() == null ) { // Never NULL
+            return zValue;
+        }
+        return MethodHandles.guardWithTest( TYPED_IS_NULL.bindTo( zGetter.getIsNull() ), constant( pCondition.getWhenNull() ), zValue );
+    }
+
+    /**
+     * @param pType long (only for an integral Kind) or double.
+     *
+     * @return "(Object row)pType", the registered getter (an int or long widened as needed).
+     */
+    private static MethodHandle getter( TypedColumnAccessor.Getter<?> pGetter, Class<?> pType ) {
+        MethodHandle zGetter;
+        switch ( pGetter.getKind() ) {
+            case INT:
+                zGetter = GET_INT.bindTo( pGetter.getIntGetter() );
+                break;
+            case LONG:
+                zGetter = GET_LONG.bindTo( pGetter.getLongGetter() );
+                break;
+            default: // DOUBLE
+                zGetter = GET_DOUBLE.bindTo( pGetter.getDoubleGetter() );
+                break;
+        }
+        return zGetter.asType( MethodType.methodType( pType, Object.class ) );
+    }
+
+    /**
+     * @param pPredicate a "(constants..., Object value)boolean".
+     *
+     * @return "(Object value)TriState", with the predicate's result inverted in the NOT mode.
+     */
+    private static MethodHandle matches( AbstractWhereClauseColumnReference pLeaf, MethodHandle pPredicate, Object... pConstants ) {
+        return matches( pLeaf.isNot(), pPredicate, pConstants );
+    }
+
+    /**
+     * @param pPredicate a "(constants..., value)boolean" (the value may be a primitive).
+     *
+     * @return "(value)TriState", with the predicate's result inverted in the NOT mode.
+     */
+    private static MethodHandle matches( boolean pNot, MethodHandle pPredicate, Object... pConstants ) {
+        MethodHandle zMatches = MethodHandles.filterReturnValue( MethodHandles.insertArguments( pPredicate, 0, pConstants ), OF );
+        if ( pNot ) {
+            zMatches = MethodHandles.filterReturnValue( zMatches, NOT );
+        }
+        return zMatches;
+    }
+
+    /**
+     * The LIKE family reads the (NOT normalized) column value directly into its (precompiled) <b>LikeMatcher</b>.
+     *
+     * @return "(Object row)TriState".
+     */
+    private MethodHandle like( AbstractWhereClauseColumnReference pLeaf ) {
+        MethodHandle zGetValue = MethodHandles.insertArguments( GET_VALUE.bindTo( mAccessor ), 1, pLeaf.getColumnDefinition() );
+        return MethodHandles.filterArguments( LIKE.bindTo( LikeMatcher.compile( pLeaf ) ), 0, zGetValue );
+    }
+
+    private static Object normalize( AbstractWhereClauseColumnReference pLeaf, Object pValue ) {
+        return WhereClauseValueSupport.normalizeValue( pLeaf.getColumnDefinition(), pValue );
+    }
+
+    /**
+     * @return "(Object)TriState" always returning pResult.
+     */
+    private static MethodHandle constant( TriState pResult ) {
+        return MethodHandles.dropArguments( MethodHandles.constant( TriState.class, pResult ), 0, Object.class );
+    }
+
+    private static boolean isNull( Object pValue ) {
+        return (pValue == null);
+    }
+
+    private static boolean isFalse( TriState pValue ) {
+        return (pValue == TriState.FALSE);
+    }
+
+    private static boolean isLessThan( Object pConstant, Object pValue ) {
+        return WhereClauseValueSupport.compare( pValue, pConstant ) < 0;
+    }
+
+    private static boolean isGreaterThan( Object pConstant, Object pValue ) {
+        return WhereClauseValueSupport.compare( pValue, pConstant ) > 0;
+    }
+
+    private static boolean isBetween( Object pLeftValue, Object pRightValue, Object pValue ) {
+        return (WhereClauseValueSupport.compare( pLeftValue, pValue ) <= 0) && (WhereClauseValueSupport.compare( pValue, pRightValue ) <= 0);
+    }
+
+    /**
+     * An inclusive range (empty if pLow is greater than pHigh).
+     */
+    private static boolean isInRange( long pLow, long pHigh, long pValue ) {
+        return (pLow <= pValue) && (pValue <= pHigh);
+    }
+
+    private static boolean isEqual( double pConstant, double pValue ) {
+        return WhereClauseValueSupport.compareDoubles( pValue, pConstant ) == 0;
+    }
+
+    private static boolean isLessThan( double pConstant, double pValue ) {
+        return WhereClauseValueSupport.compareDoubles( pValue, pConstant ) < 0;
+    }
+
+    private static boolean isGreaterThan( double pConstant, double pValue ) {
+        return WhereClauseValueSupport.compareDoubles( pValue, pConstant ) > 0;
+    }
+
+    private static boolean isBetween( double pLeftValue, double pRightValue, double pValue ) {
+        return (WhereClauseValueSupport.compareDoubles( pLeftValue, pValue ) <= 0) && (WhereClauseValueSupport.compareDoubles( pValue, pRightValue ) <= 0);
+    }
+
+    private static class MethodHandleRowFilter<R> implements RowFilter<R> {
+        private final WhereClause mWhereClause;
+        private final MethodHandle mEvaluate;
+        private final MethodHandle mTest;
+
+        MethodHandleRowFilter( WhereClause pWhereClause, MethodHandle pEvaluate, MethodHandle pTest ) {
+            mWhereClause = pWhereClause;
+            mEvaluate = pEvaluate;
+            mTest = pTest;
+        }
+
+        @Override
+        public TriState evaluate( R pRow ) {
+            try {
+                return (TriState) mEvaluate.invokeExact( (Object) pRow );
+            }
+            catch ( RuntimeException | Error e ) {
+                throw e;
+            }
+            catch ( Throwable e ) {
+                throw new IllegalStateException( e ); // Not Possible - no checked exceptions
+            }
+        }
+
+        @Override
+        public boolean test( R pRow ) {
+            try {
+                return (boolean) mTest.invokeExact( (Object) pRow );
+            }
+            catch ( RuntimeException | Error e ) {
+                throw e;
+            }
+            catch ( Throwable e ) {
+                throw new IllegalStateException( e ); // Not Possible - no checked exceptions
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "MethodHandleRowFilter: " + mWhereClause;
+        }
+    }
+}
@@ -0,0 +1,311 @@
+// This Source Code is in the Public Domain per: http://unlicense.org
+package org.litesoft.whereclause.evaluation;
+
+import org.litesoft.whereclause.SimpleColumnDefinition;
+import org.litesoft.whereclause.WhereClause;
+import org.litesoft.whereclause.WhereClauseType;
+import org.litesoft.whereclause.WhereClauseValueSupport;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseColumnAndLikeValue;
+import org.litesoft.whereclause.nonpublic.IllegalArgument;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * An OR of (regular mode) CONTAINS, STARTS_WITH, and ENDS_WITH of the same column, compiled
+ * into a single Aho-Corasick automaton, so that each value is scanned once (instead of
+ * once per term).<p>
+ * <a href="../../../Licence.txt">Licence</a><br>
+ * <p/>
+ * The value is scanned as if it were wrapped in (virtual) start and end symbols, so a
+ * STARTS_WITH is the pattern "start symbol + term", an ENDS_WITH "term + end symbol",
+ * and a CONTAINS just the term.  The automaton is a complete transition table (an int
+ * array, indexed by state and character class, with the accepting states negated), so
+ * each character costs a class lookup and a single array load; the scan stops at the
+ * first match.<p>
+ * <p/>
+ * For a column with a Search Column the terms are lower cased and the upper case ASCII
+ * letters share the classes of their lower case letters; a value is lower cased with
+ * <b>String.toLowerCase()</b> (and rescanned) only if a non-ASCII character is reached
+ * before a match (or the default Locale lower cases ASCII specially, e.g. Turkish).<p>
+ * <p/>
+ * A matcher is immutable (so thread safe).<p>
+ */
+public final class MultiLikeMatcher {
+    private static final int OTHER = 0;
+
+    private final SimpleColumnDefinition mColumnDefinition;
+    private final boolean mCaseFolding;
+    private final boolean mAsciiFolds;
+    private final boolean mAlways;
+    private final int mTermCount;
+    private final short[] mLatin1Classes;
+    private final char[] mOtherChars; // sorted
+    private final short[] mOtherClasses;
+    private final int mStartSymbol, mEndSymbol;
+    private final int mAfterStart; // the (signed) state after the start symbol
+    private final int[] mTransitions; // [state * symbols + symbol] = next state * symbols, negated (~) if accepting
+    private final int mStateCount;
+
+    /**
+     * Can the WhereClause be a term of a MultiLikeMatcher, i.e. is it a regular mode CONTAINS, STARTS_WITH, or ENDS_WITH?<p>
+     */
+    public static boolean isTerm( WhereClause pWhereClause ) {
+        switch ( pWhereClause.getType() ) {
+            case CONTAINS:
+            case STARTS_WITH:
+            case ENDS_WITH:
+                return !((AbstractWhereClauseColumnAndLikeValue) pWhereClause).isNot();
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Compile the terms (of an OR).<p>
+     *
+     * @param pTerms the terms (!null, at least one, each <b>isTerm()</b>, and all of the same column).
+     *
+     * @return the matcher (!null).
+     */
+    public static MultiLikeMatcher compile( List<? extends WhereClause> pTerms ) {
+        if ( (pTerms == null) || pTerms.isEmpty() ) {
+            throw IllegalArgument.exception( "Terms", "At least one required" );
+        }
+        SimpleColumnDefinition zColumnDefinition = null;
+        for ( WhereClause zTerm : pTerms ) {
+            IllegalArgument.ifNull( "Term", zTerm );
+            if ( !isTerm( zTerm ) ) {
+                throw IllegalArgument.exception( "Term", "NOT a regular mode CONTAINS, STARTS_WITH, or ENDS_WITH: " + zTerm );
+            }
+            SimpleColumnDefinition zColumn = ((AbstractWhereClauseColumnAndLikeValue) zTerm).getColumnDefinition();
+            if ( zColumnDefinition == null ) {
+                zColumnDefinition = zColumn;
+            } else if ( !zColumnDefinition.equals( zColumn ) ) {
+                throw IllegalArgument.exception( "Term", "NOT of column '" + zColumnDefinition + "': " + zTerm );
+            }
+        }
+        return new MultiLikeMatcher( zColumnDefinition, pTerms );
+    }
+
+    private MultiLikeMatcher( SimpleColumnDefinition pColumnDefinition, List<? extends WhereClause> pTerms ) {
+        mColumnDefinition = pColumnDefinition;
+        mCaseFolding = pColumnDefinition.hasSearchColumn();
+        mAsciiFolds = mCaseFolding && "ABCDEFGHIJKLMNOPQRSTUVWXYZ".toLowerCase().equals( "abcdefghijklmnopqrstuvwxyz" );
+        mTermCount = pTerms.size();
+
+        // The terms (lower cased if folding), and the classes of their characters (0 is every other character)
+        List<String> zTerms = new ArrayList<>();
+        TreeSet<Character> zChars = new TreeSet<>();
+        boolean zAlways = false;
+        for ( WhereClause zTerm : pTerms ) {
+            String zValue = ((AbstractWhereClauseColumnAndLikeValue) zTerm).getValue();
+            zValue = (zValue == null) ? "" : mCaseFolding ? zValue.toLowerCase() : zValue;
+            zAlways |= (zValue.length() == 0);
+            zTerms.add( zValue );
+            for ( int i = 0; i < zValue.length(); i++ ) {
+                zChars.add( zValue.charAt( i ) );
+            }
+        }
+        mAlways = zAlways;
+        mLatin1Classes = new short[256];
+        int zOtherCount = zChars.tailSet( (char) 256 ).size();
+        mOtherChars = new char[zOtherCount];
+        mOtherClasses = new short[zOtherCount];
+        short zClass = OTHER;
+        int zOthers = 0;
+        for ( Character zChar : zChars ) { // ascending, so the others are sorted
+            zClass++;
+            if ( zChar < 256 ) {
+                mLatin1Classes[zChar] = zClass;
+            } else {
+                mOtherChars[zOthers] = zChar;
+                mOtherClasses[zOthers++] = zClass;
+            }
+        }
+        if ( mCaseFolding ) {
+            for ( char c = 'A'; c <= 'Z'; c++ ) {
+                mLatin1Classes[c] = mLatin1Classes[c + ('a' - 'A')];
+            }
+        }
+        mStartSymbol = zClass + 1;
+        mEndSymbol = zClass + 2;
+        int zSymbols = zClass + 3;
+
+        // The trie (goto function), with the START and END symbols for the anchored terms
+        List<int[]> zGoto = new ArrayList<>();
+        List<Boolean> zAccepting = new ArrayList<>();
+        zGoto.add( newRow( zSymbols ) );
+        zAccepting.add( false );
+        for ( int t = 0; t < zTerms.size(); t++ ) {
+            WhereClause zTerm = pTerms.get( t );
+            String zValue = zTerms.get( t );
+            int zState = 0;
+            if ( zTerm.getType() == WhereClauseType.STARTS_WITH ) {
+                zState = step( zGoto, zAccepting, zState, mStartSymbol, zSymbols );
+            }
+            for ( int i = 0; i < zValue.length(); i++ ) {
+                zState = step( zGoto, zAccepting, zState, classOf( zValue.charAt( i ) ), zSymbols );
+            }
+            if ( zTerm.getType() == WhereClauseType.ENDS_WITH ) {
+                zState = step( zGoto, zAccepting, zState, mEndSymbol, zSymbols );
+            }
+            zAccepting.set( zState, true );
+        }
+        mStateCount = zGoto.size();
+
+        // Breadth first: the failure links, completing the transitions (and the accepting states) into a DFA
+        int[] zFailure = new int[mStateCount];
+        int[] zQueue = new int[mStateCount];
+        int zHead = 0, zTail = 0;
+        int[] zRoot = zGoto.get( 0 );
+        for ( int s = 0; s < zSymbols; s++ ) {
+            if ( zRoot[s] == -1 ) {
+                zRoot[s] = 0;
+            } else {
+                zFailure[zRoot[s]] = 0;
+                zQueue[zTail++] = zRoot[s];
+            }
+        }
+        while ( zHead < zTail ) {
+            int zState = zQueue[zHead++];
+            int[] zRow = zGoto.get( zState );
+            if ( zAccepting.get( zFailure[zState] ) ) {
+                zAccepting.set( zState, true );
+            }
+            for ( int s = 0; s < zSymbols; s++ ) {
+                int zFailureNext = zGoto.get( zFailure[zState] )[s];
+                if ( zRow[s] == -1 ) {
+                    zRow[s] = zFailureNext;
+                } else {
+                    zFailure[zRow[s]] = zFailureNext;
+                    zQueue[zTail++] = zRow[s];
+                }
+            }
+        }
+        mTransitions = new int[mStateCount * zSymbols];
+        for ( int zState = 0; zState < mStateCount; zState++ ) {
+            int[] zRow = zGoto.get( zState );
+            for ( int s = 0; s < zSymbols; s++ ) {
+                int zNext = zRow[s] * zSymbols;
+                mTransitions[zState * zSymbols + s] = zAccepting.get( zRow[s] ) ? ~zNext : zNext;
+            }
+        }
+        mAfterStart = mTransitions[mStartSymbol];
+    }
+
+    private static int[] newRow( int pSymbols ) {
+        int[] zRow = new int[pSymbols];
+        Arrays.fill( zRow, -1 );
+        return zRow;
+    }
+
+    private static int step( List<int[]> pGoto, List<Boolean> pAccepting, int pState, int pSymbol, int pSymbols ) {
+        int[] zRow = pGoto.get( pState );
+        if ( zRow[pSymbol] == -1 ) {
+            zRow[pSymbol] = pGoto.size();
+            pGoto.add( newRow( pSymbols ) );
+            pAccepting.add( false );
+        }
+        return zRow[pSymbol];
+    }
+
+    private int classOf( char pChar ) {
+        if ( pChar < 256 ) {
+            return mLatin1Classes[pChar];
+        }
+        int zAt = Arrays.binarySearch( mOtherChars, pChar );
+        return (zAt < 0) ? OTHER : mOtherClasses[zAt];
+    }
+
+    public SimpleColumnDefinition getColumnDefinition() {
+        return mColumnDefinition;
+    }
+
+    public boolean isCaseFolding() {
+        return mCaseFolding;
+    }
+
+    public int getTermCount() {
+        return mTermCount;
+    }
+
+    /**
+     * @return the number of states of the automaton.
+     */
+    public int getStateCount() {
+        return mStateCount;
+    }
+
+    /**
+     * @param pValue the value (!null).
+     *
+     * @return true if any of the terms match.
+     */
+    public boolean matchesAny( String pValue ) {
+        if ( mAlways ) {
+            return true;
+        }
+        if ( !mCaseFolding || mAsciiFolds ) {
+            int zResult = scan( pValue, mCaseFolding );
+            if ( zResult != NON_ASCII ) {
+                return zResult == MATCHED;
+            }
+        }
+        return scan( pValue.toLowerCase(), false ) == MATCHED;
+    }
+
+    /**
+     * Evaluate a (row's) column value, with SQL's NULL semantics.<p>
+     *
+     * @param pValue the value (null OK), a non-String is matched as its (normalized) toString().
+     *
+     * @return the SQL (three-valued) result.
+     */
+    public TriState evaluate( Object pValue ) {
+        if ( (pValue != null) && !(pValue instanceof String) ) {
+            pValue = WhereClauseValueSupport.normalizeValue( mColumnDefinition, pValue );
+        }
+        if ( pValue == null ) {
+            return TriState.UNKNOWN;
+        }
+        return matchesAny( pValue.toString() ) ? TriState.TRUE : TriState.FALSE;
+    }
+
+    private static final int NOT_MATCHED = 0;
+    private static final int MATCHED = 1;
+    private static final int NON_ASCII = 2;
+
+    /**
+     * @param pStopOnNonAscii true (when folding) to stop at the first non-ASCII character (before a match).
+     */
+    private int scan( String pValue, boolean pStopOnNonAscii ) {
+        int[] zTransitions = mTransitions;
+        int zState = mAfterStart;
+        if ( zState < 0 ) {
+            return MATCHED;
+        }
+        for ( int i = 0; i < pValue.length(); i++ ) {
+            char c = pValue.charAt( i );
+            int zClass;
+            if ( c < 256 ) {
+                if ( pStopOnNonAscii && (c >= 0x80) ) {
+                    return NON_ASCII;
+                }
+                zClass = mLatin1Classes[c];
+            } else {
+                if ( pStopOnNonAscii ) {
+                    return NON_ASCII;
+                }
+                int zAt = Arrays.binarySearch( mOtherChars, c );
+                zClass = (zAt < 0) ? OTHER : mOtherClasses[zAt];
+            }
+            if ( (zState = zTransitions[zState + zClass]) < 0 ) {
+                return MATCHED;
+            }
+        }
+        return (zTransitions[zState + mEndSymbol] < 0) ? MATCHED : NOT_MATCHED;
+    }
+}
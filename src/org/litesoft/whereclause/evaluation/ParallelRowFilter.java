@@ -0,0 +1,358 @@
+// This Source Code is in the Public Domain per: http://unlicense.org
+package org.litesoft.whereclause.evaluation;
+
+import org.litesoft.whereclause.nonpublic.IllegalArgument;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.RandomAccess;
+import java.util.Spliterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Consumer;
+
+/**
+ * Filters (or counts) large Lists, arrays, and Spliterators (e.g. of a Stream) with a
+ * <b>RowFilter</b>, in parallel on a <b>ForkJoinPool</b>.<p>
+ * <a href="../../../Licence.txt">Licence</a><br>
+ * <p/>
+ * The rows are split (recursively) into chunks of at least the minimum chunk size, and
+ * each chunk is filtered by a single task into its own (thread confined) buffer, so the
+ * only shared state is the (immutable) RowFilter.  The chunks are then concatenated, in
+ * the original order if requested (otherwise in the order they completed), or just
+ * counted.<p>
+ * <p/>
+ * A Spliterator is split with <b>trySplit()</b> (so its prefix / suffix order is kept
+ * if it is ORDERED), as are Lists that are NOT RandomAccess.<p>
+ *
+ * @param <R> the type of the rows.
+ */
+public class ParallelRowFilter<R> {
+    public static final int DEFAULT_MIN_CHUNK_SIZE = 4096;
+
+    private final RowFilter<R> mFilter;
+    private final ForkJoinPool mPool;
+    private final int mMinChunkSize;
+
+    /**
+     * Constructor.<p>
+     *
+     * @param pFilter       the (thread safe, as all compiled RowFilters are) filter (!null).
+     * @param pPool         the pool to run on (!null).
+     * @param pMinChunkSize the smallest number of rows to split off as a task (at least 1).
+     */
+    public ParallelRowFilter( RowFilter<R> pFilter, ForkJoinPool pPool, int pMinChunkSize ) {
+        IllegalArgument.ifNull( "Filter", mFilter = pFilter );
+        IllegalArgument.ifNull( "Pool", mPool = pPool );
+        if ( pMinChunkSize < 1 ) {
+            throw IllegalArgument.exception( "MinChunkSize", "less than 1: " + pMinChunkSize );
+        }
+        mMinChunkSize = pMinChunkSize;
+    }
+
+    /**
+     * Constructor (with the DEFAULT_MIN_CHUNK_SIZE).<p>
+     */
+    public ParallelRowFilter( RowFilter<R> pFilter, ForkJoinPool pPool ) {
+        this( pFilter, pPool, DEFAULT_MIN_CHUNK_SIZE );
+    }
+
+    /**
+     * Constructor (on the common pool, with the DEFAULT_MIN_CHUNK_SIZE).<p>
+     */
+    public ParallelRowFilter( RowFilter<R> pFilter ) {
+        this( pFilter, ForkJoinPool.commonPool() );
+    }
+
+    public RowFilter<R> getFilter() {
+        return mFilter;
+    }
+
+    public ForkJoinPool getPool() {
+        return mPool;
+    }
+
+    public int getMinChunkSize() {
+        return mMinChunkSize;
+    }
+
+    /**
+     * @param pRows          the rows (!null, no null entries).
+     * @param pPreserveOrder true to return the selected rows in their original order.
+     *
+     * @return the selected rows (!null).
+     */
+    public List<R> filter( List<? extends R> pRows, boolean pPreserveOrder ) {
+        IllegalArgument.ifNull( "Rows", pRows );
+        if ( !(pRows instanceof RandomAccess) ) {
+            return filter( pRows.spliterator(), pPreserveOrder );
+        }
+        Queue<List<R>> zUnordered = pPreserveOrder ? null : new ConcurrentLinkedQueue<List<R>>();
+        return concatenate( mPool.invoke( new RangeFilterTask<R>( this, pRows, 0, pRows.size(), zUnordered ) ), zUnordered );
+    }
+
+    /**
+     * @param pRows          the rows (!null, no null entries).
+     * @param pPreserveOrder true to return the selected rows in their original order.
+     *
+     * @return the selected rows (!null).
+     */
+    public List<R> filter( R[] pRows, boolean pPreserveOrder ) {
+        IllegalArgument.ifNull( "Rows", pRows );
+        return filter( Arrays.asList( pRows ), pPreserveOrder );
+    }
+
+    /**
+     * @param pRows          the rows (!null, no null entries), consumed.
+     * @param pPreserveOrder true to return the selected rows in their encounter order (if ORDERED).
+     *
+     * @return the selected rows (!null).
+     */
+    public List<R> filter( Spliterator<? extends R> pRows, boolean pPreserveOrder ) {
+        IllegalArgument.ifNull( "Rows", pRows );
+        Queue<List<R>> zUnordered = pPreserveOrder ? null : new ConcurrentLinkedQueue<List<R>>();
+        return concatenate( mPool.invoke( new SpliteratorFilterTask<R>( this, pRows, splitThreshold( pRows ), zUnordered ) ), zUnordered );
+    }
+
+    /**
+     * @return the number of rows selected.
+     */
+    public long count( List<? extends R> pRows ) {
+        IllegalArgument.ifNull( "Rows", pRows );
+        if ( !(pRows instanceof RandomAccess) ) {
+            return count( pRows.spliterator() );
+        }
+        return mPool.invoke( new RangeCountTask<R>( this, pRows, 0, pRows.size() ) );
+    }
+
+    /**
+     * @return the number of rows selected.
+     */
+    public long count( R[] pRows ) {
+        IllegalArgument.ifNull( "Rows", pRows );
+        return count( Arrays.asList( pRows ) );
+    }
+
+    /**
+     * @return the number of rows selected (the Spliterator is consumed).
+     */
+    public long count( Spliterator<? extends R> pRows ) {
+        IllegalArgument.ifNull( "Rows", pRows );
+        return mPool.invoke( new SpliteratorCountTask<R>( this, pRows, splitThreshold( pRows ) ) );
+    }
+
+    /**
+     * Split down to about 4 tasks per worker (as the Streams do), but NOT below the minimum chunk size.
+     */
+    private long splitThreshold( Spliterator<?> pRows ) {
+        long zEstimate = pRows.estimateSize();
+        if ( zEstimate == Long.MAX_VALUE ) {
+            return mMinChunkSize;
+        }
+        return Math.max( mMinChunkSize, zEstimate / (4L * mPool.getParallelism()) );
+    }
+
+    private void select( List<? extends R> pRows, int pFrom, int pTo, List<R> pSelected ) {
+        for ( int i = pFrom; i < pTo; i++ ) {
+            R zRow = pRows.get( i );
+            if ( mFilter.test( zRow ) ) {
+                pSelected.add( zRow );
+            }
+        }
+    }
+
+    private long count( List<? extends R> pRows, int pFrom, int pTo ) {
+        long zCount = 0;
+        for ( int i = pFrom; i < pTo; i++ ) {
+            if ( mFilter.test( pRows.get( i ) ) ) {
+                zCount++;
+            }
+        }
+        return zCount;
+    }
+
+    /**
+     * @param pChunks    the (ordered) chunks, or null if pUnordered.
+     * @param pUnordered the chunks in completion order, or null if ordered.
+     */
+    private static <R> List<R> concatenate( Chunks<R> pChunks, Queue<List<R>> pUnordered ) {
+        Iterable<List<R>> zChunks = (pUnordered != null) ? pUnordered : (pChunks != null) ? pChunks.mLists : Collections.<List<R>>emptyList();
+        int zSize = 0;
+        for ( List<R> zChunk : zChunks ) {
+            zSize += zChunk.size();
+        }
+        List<R> zSelected = new ArrayList<>( zSize );
+        for ( List<R> zChunk : zChunks ) {
+            zSelected.addAll( zChunk );
+        }
+        return zSelected;
+    }
+
+    /**
+     * The (non-empty) selected chunks of a task, in order (only the List of chunks is
+     * combined by the joins, NOT the rows).
+     */
+    private static class Chunks<R> {
+        private final List<List<R>> mLists = new ArrayList<>();
+
+        static <R> Chunks<R> combine( Chunks<R> pFirst, Chunks<R> pSecond ) {
+            if ( pFirst == null ) {
+                return pSecond;
+            }
+            if ( pSecond != null ) {
+                pFirst.mLists.addAll( pSecond.mLists );
+            }
+            return pFirst;
+        }
+
+        /**
+         * @return the chunk (if ordered, otherwise added to pUnordered), or null if none selected or unordered.
+         */
+        static <R> Chunks<R> of( List<R> pSelected, Queue<List<R>> pUnordered ) {
+            if ( pSelected.isEmpty() ) {
+                return null;
+            }
+            if ( pUnordered != null ) {
+                pUnordered.add( pSelected );
+                return null;
+            }
+            Chunks<R> zChunks = new Chunks<>();
+            zChunks.mLists.add( pSelected );
+            return zChunks;
+        }
+    }
+
+    @SuppressWarnings("serial") // a task is never serialized
+    private static class RangeFilterTask<R> extends RecursiveTask<Chunks<R>> {
+        private final ParallelRowFilter<R> mOwner;
+        private final List<? extends R> mRows;
+        private final int mFrom, mTo;
+        private final Queue<List<R>> mUnordered;
+
+        RangeFilterTask( ParallelRowFilter<R> pOwner, List<? extends R> pRows, int pFrom, int pTo, Queue<List<R>> pUnordered ) {
+            mOwner = pOwner;
+            mRows = pRows;
+            mFrom = pFrom;
+            mTo = pTo;
+            mUnordered = pUnordered;
+        }
+
+        @Override
+        protected Chunks<R> compute() {
+            int zSize = mTo - mFrom;
+            if ( zSize < (2 * mOwner.mMinChunkSize) ) {
+                List<R> zSelected = new ArrayList<>();
+                mOwner.select( mRows, mFrom, mTo, zSelected );
+                return Chunks.of( zSelected, mUnordered );
+            }
+            int zMiddle = mFrom + (zSize >>> 1);
+            RangeFilterTask<R> zSecond = new RangeFilterTask<>( mOwner, mRows, zMiddle, mTo, mUnordered );
+            zSecond.fork();
+            Chunks<R> zFirst = new RangeFilterTask<>( mOwner, mRows, mFrom, zMiddle, mUnordered ).compute();
+            return Chunks.combine( zFirst, zSecond.join() );
+        }
+    }
+
+    @SuppressWarnings("serial") // a task is never serialized
+    private static class RangeCountTask<R> extends RecursiveTask<Long> {
+        private final ParallelRowFilter<R> mOwner;
+        private final List<? extends R> mRows;
+        private final int mFrom, mTo;
+
+        RangeCountTask( ParallelRowFilter<R> pOwner, List<? extends R> pRows, int pFrom, int pTo ) {
+            mOwner = pOwner;
+            mRows = pRows;
+            mFrom = pFrom;
+            mTo = pTo;
+        }
+
+        @Override
+        protected Long compute() {
+            int zSize = mTo - mFrom;
+            if ( zSize < (2 * mOwner.mMinChunkSize) ) {
+                return mOwner.count( mRows, mFrom, mTo );
+            }
+            int zMiddle = mFrom + (zSize >>> 1);
+            RangeCountTask<R> zSecond = new RangeCountTask<>( mOwner, mRows, zMiddle, mTo );
+            zSecond.fork();
+            long zFirst = new RangeCountTask<>( mOwner, mRows, mFrom, zMiddle ).compute();
+            return zFirst + zSecond.join();
+        }
+    }
+
+    @SuppressWarnings("serial") // a task is never serialized
+    private static class SpliteratorFilterTask<R> extends RecursiveTask<Chunks<R>> {
+        private final ParallelRowFilter<R> mOwner;
+        private final Spliterator<? extends R> mRows;
+        private final long mThreshold;
+        private final Queue<List<R>> mUnordered;
+
+        SpliteratorFilterTask( ParallelRowFilter<R> pOwner, Spliterator<? extends R> pRows, long pThreshold, Queue<List<R>> pUnordered ) {
+            mOwner = pOwner;
+            mRows = pRows;
+            mThreshold = pThreshold;
+            mUnordered = pUnordered;
+        }
+
+        @Override
+        protected Chunks<R> compute() {
+            Spliterator<? extends R> zPrefix;
+            if ( (mRows.estimateSize() > mThreshold) && ((zPrefix = mRows.trySplit()) != null) ) {
+                SpliteratorFilterTask<R> zSuffix = new SpliteratorFilterTask<>( mOwner, mRows, mThreshold, mUnordered );
+                zSuffix.fork();
+                Chunks<R> zFirst = new SpliteratorFilterTask<R>( mOwner, zPrefix, mThreshold, mUnordered ).compute();
+                return Chunks.combine( zFirst, zSuffix.join() );
+            }
+            final RowFilter<R> zFilter = mOwner.mFilter;
+            final List<R> zSelected = new ArrayList<>();
+            mRows.forEachRemaining( new Consumer<R>() {
+                @Override
+                public void accept( R pRow ) {
+                    if ( zFilter.test( pRow ) ) {
+                        zSelected.add( pRow );
+                    }
+                }
+            } );
+            return Chunks.of( zSelected, mUnordered );
+        }
+    }
+
+    @SuppressWarnings("serial") // a task is never serialized
+    private static class SpliteratorCountTask<R> extends RecursiveTask<Long> {
+        private final ParallelRowFilter<R> mOwner;
+        private final Spliterator<? extends R> mRows;
+        private final long mThreshold;
+
+        SpliteratorCountTask( ParallelRowFilter<R> pOwner, Spliterator<? extends R> pRows, long pThreshold ) {
+            mOwner = pOwner;
+            mRows = pRows;
+            mThreshold = pThreshold;
+        }
+
+        @Override
+        protected Long compute() {
+            Spliterator<? extends R> zPrefix;
+            if ( (mRows.estimateSize() > mThreshold) && ((zPrefix = mRows.trySplit()) != null) ) {
+                SpliteratorCountTask<R> zSuffix = new SpliteratorCountTask<>( mOwner, mRows, mThreshold );
+                zSuffix.fork();
+                long zFirst = new SpliteratorCountTask<R>( mOwner, zPrefix, mThreshold ).compute();
+                return zFirst + zSuffix.join();
+            }
+            final RowFilter<R> zFilter = mOwner.mFilter;
+            final long[] zCount = {0};
+            mRows.forEachRemaining( new Consumer<R>() {
+                @Override
+                public void accept( R pRow ) {
+                    if ( zFilter.test( pRow ) ) {
+                        zCount[0]++;
+                    }
+                }
+            } );
+            return zCount[0];
+        }
+    }
+}
@@ -0,0 +1,281 @@
+// This Source Code is in the Public Domain per: http://unlicense.org
+package org.litesoft.whereclause.evaluation;
+
+import org.litesoft.whereclause.WhereClauseType;
+import org.litesoft.whereclause.WhereClauseValueSupport;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseColumnAndTwoValues;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseColumnAndValue;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseColumnAnd_N_Values;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseColumnReference;
+
+
+/**
+ * Compiles the leaves of the columns with primitive getters (registered with a
+ * <b>TypedColumnAccessor</b>) into <b>Condition</b>s that do NOT box the row values.<p>
+ * <a href="../../../Licence.txt">Licence</a><br>
+ * <p/>
+ * Only the IS NULLs, and the EQUALS, LESSTHAN, GREATERTHAN, BETWEEN and IS_ANY_OF with
+ * (only) Number values, are compiled; the results are exactly those of comparing the
+ * boxed values with <b>WhereClauseValueSupport.compare()</b>: integral values as longs,
+ * and otherwise as doubles (see <b>WhereClauseValueSupport.compareDoubles()</b>).<p>
+ * <p/>
+ * The compiled backends (<b>BytecodeRowFilterCompiler</b> and
+ * <b>MethodHandleRowFilterCompiler</b>) generate (or combine) their code from the parts
+ * of these Conditions (the getter, the null result, the mode, and the range, compare,
+ * or membership), so all three evaluate the same comparisons.<p>
+ *
+ * @param <R> the type of the rows.
+ */
+class PrimitiveConditionCompiler<R> {
+    private final TypedColumnAccessor<R> mAccessor;
+
+    PrimitiveConditionCompiler( TypedColumnAccessor<R> pAccessor ) {
+        mAccessor = pAccessor;
+    }
+
+    /**
+     * @return the (boxing free) Condition, or null if the leaf is NOT one of a primitive column, or can NOT be compared as primitives.
+     */
+    Condition<R> compile( AbstractWhereClauseColumnReference pLeaf ) {
+        TypedColumnAccessor.Getter<R> zGetter = mAccessor.getGetter( pLeaf.getColumnDefinition() );
+        if ( zGetter == null ) {
+            return null;
+        }
+        switch ( pLeaf.getType() ) {
+            case IS_NULL:
+                return new IsNull<>( zGetter, pLeaf.isNot() );
+            case EQUALS:
+            case LESSTHAN:
+            case GREATERTHAN:
+                if ( zGetter.getKind() != TypedColumnAccessor.Kind.BOOLEAN ) {
+                    Number zValue = number( pLeaf, ((AbstractWhereClauseColumnAndValue) pLeaf).getValue() );
+                    if ( zValue != null ) {
+                        return compare( zGetter, pLeaf, zValue, zValue );
+                    }
+                }
+                return null;
+            case BETWEEN:
+                if ( zGetter.getKind() != TypedColumnAccessor.Kind.BOOLEAN ) {
+                    AbstractWhereClauseColumnAndTwoValues zBetween = (AbstractWhereClauseColumnAndTwoValues) pLeaf;
+                    Number zLeft = number( pLeaf, zBetween.getLeftValue() );
+                    Number zRight = number( pLeaf, zBetween.getRightValue() );
+                    if ( (zLeft != null) && (zRight != null) && //
+                         (WhereClauseValueSupport.isIntegral( zLeft ) == WhereClauseValueSupport.isIntegral( zRight )) ) {
+                        return compare( zGetter, pLeaf, zLeft, zRight );
+                    }
+                }
+                return null;
+            case IS_ANY_OF:
+                if ( zGetter.getKind() != TypedColumnAccessor.Kind.BOOLEAN ) {
+                    return isAnyOf( zGetter, pLeaf, ((AbstractWhereClauseColumnAnd_N_Values) pLeaf).getValues() );
+                }
+                return null;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * @param pLow  the value (or the left value of the BETWEEN).
+     * @param pHigh the value (or the right value of the BETWEEN), both integral or both NOT.
+     */
+    private Condition<R> compare( TypedColumnAccessor.Getter<R> pGetter, AbstractWhereClauseColumnReference pLeaf, Number pLow, Number pHigh ) {
+        if ( !pGetter.isIntegral() || !WhereClauseValueSupport.isIntegral( pLow ) ) {
+            return new DoubleCompare<>( pGetter, pLeaf, pLow.doubleValue(), pHigh.doubleValue() );
+        }
+        long zLow = pLow.longValue();
+        long zHigh = pHigh.longValue();
+        switch ( pLeaf.getType() ) {
+            case LESSTHAN:
+                return (zHigh == Long.MIN_VALUE) ? new LongRange<>( pGetter, pLeaf, 1, 0 ) : new LongRange<>( pGetter, pLeaf, Long.MIN_VALUE, zHigh - 1 );
+            case GREATERTHAN:
+                return (zLow == Long.MAX_VALUE) ? new LongRange<>( pGetter, pLeaf, 1, 0 ) : new LongRange<>( pGetter, pLeaf, zLow + 1, Long.MAX_VALUE );
+            default: // EQUALS & BETWEEN
+                return new LongRange<>( pGetter, pLeaf, zLow, zHigh );
+        }
+    }
+
+    private Condition<R> isAnyOf( TypedColumnAccessor.Getter<R> pGetter, AbstractWhereClauseColumnReference pLeaf, Object[] pValues ) {
+        for ( Object zValue : pValues ) {
+            if ( number( pLeaf, zValue ) == null ) {
+                return null;
+            }
+        }
+        return new IsAnyOf<>( pGetter, (AbstractWhereClauseColumnAnd_N_Values) pLeaf );
+    }
+
+    /**
+     * @return the normalized value if it is a Number, otherwise null.
+     */
+    private static Number number( AbstractWhereClauseColumnReference pLeaf, Object pValue ) {
+        Object zValue = WhereClauseValueSupport.normalizeValue( pLeaf.getColumnDefinition(), pValue );
+        return (zValue instanceof Number) ? (Number) zValue : null;
+    }
+
+    /**
+     * A primitive leaf, in either its regular or NOT mode.
+     */
+    static abstract class PrimitiveCondition<R> extends Condition<R> {
+        protected final TypedColumnAccessor.Getter<R> mGetter;
+        protected final boolean mNot;
+        private final TriState mWhenNull;
+
+        PrimitiveCondition( TypedColumnAccessor.Getter<R> pGetter, boolean pNot, TriState pWhenNull ) {
+            mGetter = pGetter;
+            mNot = pNot;
+            mWhenNull = pWhenNull;
+        }
+
+        /**
+         * UNKNOWN for a NULL, except for the NOT mode of EQUALS: "(col <> v) OR (col IS NULL)".
+         */
+        PrimitiveCondition( TypedColumnAccessor.Getter<R> pGetter, AbstractWhereClauseColumnReference pLeaf ) {
+            this( pGetter, pLeaf.isNot(), //
+                  (pLeaf.isNot() && (pLeaf.getType() == WhereClauseType.EQUALS)) ? TriState.TRUE : TriState.UNKNOWN );
+        }
+
+        TypedColumnAccessor.Getter<R> getGetter() {
+            return mGetter;
+        }
+
+        boolean isNot() {
+            return mNot;
+        }
+
+        /**
+         * @return the result (in the current mode) for a NULL column value.
+         */
+        TriState getWhenNull() {
+            return mWhenNull;
+        }
+
+        @Override
+        TriState evaluate( R pRow ) {
+            if ( mGetter.isNull( pRow ) ) {
+                return mWhenNull;
+            }
+            return (matches( pRow ) != mNot) ? TriState.TRUE : TriState.FALSE;
+        }
+
+        /**
+         * @return true if the (!null) column value of the row matches in the regular mode.
+         */
+        abstract protected boolean matches( R pRow );
+    }
+
+    static class IsNull<R> extends PrimitiveCondition<R> {
+        IsNull( TypedColumnAccessor.Getter<R> pGetter, boolean pNot ) {
+            super( pGetter, pNot, pNot ? TriState.FALSE : TriState.TRUE );
+        }
+
+        @Override
+        protected boolean matches( R pRow ) {
+            return false;
+        }
+    }
+
+    /**
+     * An integral column compared with integral values: EQUALS, LESSTHAN, GREATERTHAN and BETWEEN as an inclusive range.
+     */
+    static class LongRange<R> extends PrimitiveCondition<R> {
+        private final long mLow, mHigh;
+
+        LongRange( TypedColumnAccessor.Getter<R> pGetter, AbstractWhereClauseColumnReference pLeaf, long pLow, long pHigh ) {
+            super( pGetter, pLeaf );
+            mLow = pLow;
+            mHigh = pHigh;
+        }
+
+        /**
+         * @return the inclusive low (greater than the high if the range is empty).
+         */
+        long getLow() {
+            return mLow;
+        }
+
+        long getHigh() {
+            return mHigh;
+        }
+
+        @Override
+        protected boolean matches( R pRow ) {
+            long zValue = mGetter.getLong( pRow );
+            return (mLow <= zValue) && (zValue <= mHigh);
+        }
+    }
+
+    static class DoubleCompare<R> extends PrimitiveCondition<R> {
+        private final WhereClauseType mType;
+        private final double mLow, mHigh;
+
+        DoubleCompare( TypedColumnAccessor.Getter<R> pGetter, AbstractWhereClauseColumnReference pLeaf, double pLow, double pHigh ) {
+            super( pGetter, pLeaf );
+            mType = pLeaf.getType();
+            mLow = pLow;
+            mHigh = pHigh;
+        }
+
+        /**
+         * @return EQUALS, LESSTHAN, GREATERTHAN, or BETWEEN.
+         */
+        WhereClauseType getType() {
+            return mType;
+        }
+
+        /**
+         * @return the value (or the left value of the BETWEEN).
+         */
+        double getLow() {
+            return mLow;
+        }
+
+        /**
+         * @return the value (or the right value of the BETWEEN).
+         */
+        double getHigh() {
+            return mHigh;
+        }
+
+        @Override
+        protected boolean matches( R pRow ) {
+            double zValue = mGetter.getDouble( pRow );
+            switch ( mType ) {
+                case EQUALS:
+                    return WhereClauseValueSupport.compareDoubles( zValue, mLow ) == 0;
+                case LESSTHAN:
+                    return WhereClauseValueSupport.compareDoubles( zValue, mHigh ) < 0;
+                case GREATERTHAN:
+                    return WhereClauseValueSupport.compareDoubles( zValue, mLow ) > 0;
+                default: // BETWEEN
+                    return (WhereClauseValueSupport.compareDoubles( mLow, zValue ) <= 0) && (WhereClauseValueSupport.compareDoubles( zValue, mHigh ) <= 0);
+            }
+        }
+    }
+
+    /**
+     * The membership of the values is built (see <b>AnyOfMembership</b>) on the first evaluation.
+     */
+    static class IsAnyOf<R> extends PrimitiveCondition<R> {
+        private final AbstractWhereClauseColumnAnd_N_Values mLeaf;
+        private AnyOfMembership mMembership; // Lazy, racy but immutable
+
+        IsAnyOf( TypedColumnAccessor.Getter<R> pGetter, AbstractWhereClauseColumnAnd_N_Values pLeaf ) {
+            super( pGetter, pLeaf );
+            mLeaf = pLeaf;
+        }
+
+        AnyOfMembership getMembership() {
+            AnyOfMembership zMembership = mMembership;
+            if ( zMembership == null ) {
+                mMembership = zMembership = AnyOfMembership.of( mLeaf );
+            }
+            return zMembership;
+        }
+
+        @Override
+        protected boolean matches( R pRow ) {
+            AnyOfMembership zMembership = getMembership();
+            return mGetter.isIntegral() ? zMembership.containsIntegral( mGetter.getLong( pRow ) ) : zMembership.containsDouble( mGetter.getDouble( pRow ) );
+        }
+    }
+}
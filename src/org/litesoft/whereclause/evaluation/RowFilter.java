@@ -0,0 +1,23 @@
+// This Source Code is in the Public Domain per: http://unlicense.org
+package org.litesoft.whereclause.evaluation;
+
+import java.util.function.Predicate;
+
+/**
+ * A <b>WhereClause</b> compiled (by a <b>WhereClauseEvaluator</b>) for evaluation
+ * against rows in memory.<p>
+ * <a href="../../../Licence.txt">Licence</a><br>
+ * <p/>
+ * As a <b>Predicate</b>, <b>test()</b> is true only if <b>evaluate()</b> is
+ * <b>TriState.TRUE</b>, i.e. it selects exactly the rows the SQL would.<p>
+ *
+ * @param <R> the type of the rows.
+ */
+public interface RowFilter<R> extends Predicate<R> {
+    /**
+     * @param pRow the row (!null).
+     *
+     * @return the SQL (three-valued) result of the WhereClause for the row.
+     */
+    TriState evaluate( R pRow );
+}
@@ -0,0 +1,22 @@
+// This Source Code is in the Public Domain per: http://unlicense.org
+package org.litesoft.whereclause.evaluation;
+
+import org.litesoft.whereclause.WhereClause;
+
+/**
+ * An interface for the different ways of compiling a <b>WhereClause</b> into a
+ * <b>RowFilter</b>, all of which select exactly the rows the SQL would.<p>
+ * <a href="../../../Licence.txt">Licence</a><br>
+ *
+ * @param <R> the type of the rows.
+ */
+public interface RowFilterCompiler<R> {
+    /**
+     * Compile a WhereClause for (repeated) evaluation.<p>
+     *
+     * @param pWhereClause the tree (!null).
+     *
+     * @return the compiled filter (thread safe).
+     */
+    RowFilter<R> compile( WhereClause pWhereClause );
+}
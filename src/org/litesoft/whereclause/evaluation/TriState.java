@@ -0,0 +1,38 @@
+// This Source Code is in the Public Domain per: http://unlicense.org
+package org.litesoft.whereclause.evaluation;
+
+/**
+ * The three truth values of SQL's (three-valued) logic.<p>
+ * <a href="../../../Licence.txt">Licence</a><br>
+ * <p/>
+ * A comparison with a NULL is <b>UNKNOWN</b>, which the AND, OR and NOT propagate:<p>
+ * <pre>
+ *      AND: FALSE if any FALSE, otherwise UNKNOWN if any UNKNOWN, otherwise TRUE
+ *      OR:  TRUE if any TRUE, otherwise UNKNOWN if any UNKNOWN, otherwise FALSE
+ *      NOT: UNKNOWN stays UNKNOWN
+ * </pre>
+ * A WHERE clause selects a row only if it is <b>TRUE</b>.<p>
+ */
+public enum TriState {
+    TRUE, FALSE, UNKNOWN;
+
+    public static TriState of( boolean pValue ) {
+        return pValue ? TRUE : FALSE;
+    }
+
+    public boolean isTrue() {
+        return (this == TRUE);
+    }
+
+    public TriState not() {
+        return (this == TRUE) ? FALSE : (this == FALSE) ? TRUE : UNKNOWN;
+    }
+
+    public TriState and( TriState them ) {
+        return ((this == FALSE) || (them == FALSE)) ? FALSE : ((this == UNKNOWN) || (them == UNKNOWN)) ? UNKNOWN : TRUE;
+    }
+
+    public TriState or( TriState them ) {
+        return ((this == TRUE) || (them == TRUE)) ? TRUE : ((this == UNKNOWN) || (them == UNKNOWN)) ? UNKNOWN : FALSE;
+    }
+}
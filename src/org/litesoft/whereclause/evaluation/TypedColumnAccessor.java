@@ -0,0 +1,249 @@
+// This Source Code is in the Public Domain per: http://unlicense.org
+package org.litesoft.whereclause.evaluation;
+
+import org.litesoft.whereclause.SimpleColumnDefinition;
+import org.litesoft.whereclause.nonpublic.IllegalArgument;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * A <b>ColumnAccessor</b> with primitive (int, long, double, and boolean) getters
+ * registered per column, each with an explicit null check, so that the comparisons
+ * (EQUALS, LESSTHAN, GREATERTHAN, BETWEEN, IS_ANY_OF with numeric values) and IS NULLs
+ * of those columns are evaluated without boxing any values.<p>
+ * <a href="../../../Licence.txt">Licence</a><br>
+ * <p/>
+ * The int and long getters (e.g. for a <b>CDinteger</b> or <b>CDlong</b>) are compared
+ * as longs, and the double getters (e.g. for a <b>CDdouble</b> or a <b>CDfloat</b>, as
+ * the float widens exactly) as doubles, exactly as <b>WhereClauseValueSupport.compare()</b>
+ * compares the boxed values; any other leaf reads the (boxed) value with <b>getValue()</b>
+ * (the Booleans are NOT allocated).  Columns that are NOT registered are read by the
+ * fallback accessor.<p>
+ * <p/>
+ * Register all the columns before the accessor is shared (or compiled against).<p>
+ *
+ * @param <R> the type of the rows.
+ */
+public class TypedColumnAccessor<R> implements ColumnAccessor<R> {
+    private final ColumnAccessor<R> mFallback;
+    private final Map<SimpleColumnDefinition, Getter<R>> mGetters = new HashMap<>();
+
+    /**
+     * Constructor.<p>
+     *
+     * @param pFallback reads the column values of the columns NOT registered (null for none).
+     */
+    public TypedColumnAccessor( ColumnAccessor<R> pFallback ) {
+        mFallback = pFallback;
+    }
+
+    /**
+     * Constructor (without a fallback, so all the columns read must be registered).<p>
+     */
+    public TypedColumnAccessor() {
+        this( null );
+    }
+
+    /**
+     * @param pColumnDefinition the column (!null, NOT already registered).
+     * @param pGetter           the value (!null), only called if NOT pIsNull.
+     * @param pIsNull           the null check (null if the column is never NULL).
+     */
+    public TypedColumnAccessor<R> addInt( SimpleColumnDefinition pColumnDefinition, final ToIntFunction<R> pGetter, Predicate<R> pIsNull ) {
+        IllegalArgument.ifNull( "Getter", pGetter );
+        return add( pColumnDefinition, new Getter<R>( Kind.INT, pGetter, new ToLongFunction<R>() {
+            @Override
+            public long applyAsLong( R pRow ) {
+                return pGetter.applyAsInt( pRow );
+            }
+        }, null, null, pIsNull ) );
+    }
+
+    public TypedColumnAccessor<R> addInt( SimpleColumnDefinition pColumnDefinition, ToIntFunction<R> pGetter ) {
+        return addInt( pColumnDefinition, pGetter, null );
+    }
+
+    /**
+     * @param pColumnDefinition the column (!null, NOT already registered).
+     * @param pGetter           the value (!null), only called if NOT pIsNull.
+     * @param pIsNull           the null check (null if the column is never NULL).
+     */
+    public TypedColumnAccessor<R> addLong( SimpleColumnDefinition pColumnDefinition, ToLongFunction<R> pGetter, Predicate<R> pIsNull ) {
+        IllegalArgument.ifNull( "Getter", pGetter );
+        return add( pColumnDefinition, new Getter<R>( Kind.LONG, null, pGetter, null, null, pIsNull ) );
+    }
+
+    public TypedColumnAccessor<R> addLong( SimpleColumnDefinition pColumnDefinition, ToLongFunction<R> pGetter ) {
+        return addLong( pColumnDefinition, pGetter, null );
+    }
+
+    /**
+     * @param pColumnDefinition the column (!null, NOT already registered).
+     * @param pGetter           the value (!null), only called if NOT pIsNull.
+     * @param pIsNull           the null check (null if the column is never NULL).
+     */
+    public TypedColumnAccessor<R> addDouble( SimpleColumnDefinition pColumnDefinition, ToDoubleFunction<R> pGetter, Predicate<R> pIsNull ) {
+        IllegalArgument.ifNull( "Getter", pGetter );
+        return add( pColumnDefinition, new Getter<R>( Kind.DOUBLE, null, null, pGetter, null, pIsNull ) );
+    }
+
+    public TypedColumnAccessor<R> addDouble( SimpleColumnDefinition pColumnDefinition, ToDoubleFunction<R> pGetter ) {
+        return addDouble( pColumnDefinition, pGetter, null );
+    }
+
+    /**
+     * @param pColumnDefinition the column (!null, NOT already registered).
+     * @param pGetter           the value (!null), only called if NOT pIsNull.
+     * @param pIsNull           the null check (null if the column is never NULL).
+     */
+    public TypedColumnAccessor<R> addBoolean( SimpleColumnDefinition pColumnDefinition, Predicate<R> pGetter, Predicate<R> pIsNull ) {
+        IllegalArgument.ifNull( "Getter", pGetter );
+        return add( pColumnDefinition, new Getter<R>( Kind.BOOLEAN, null, null, null, pGetter, pIsNull ) );
+    }
+
+    public TypedColumnAccessor<R> addBoolean( SimpleColumnDefinition pColumnDefinition, Predicate<R> pGetter ) {
+        return addBoolean( pColumnDefinition, pGetter, null );
+    }
+
+    public ColumnAccessor<R> getFallback() {
+        return mFallback;
+    }
+
+    /**
+     * @return true if the column has a registered (primitive) getter.
+     */
+    public boolean isRegistered( SimpleColumnDefinition pColumnDefinition ) {
+        return mGetters.containsKey( pColumnDefinition );
+    }
+
+    @Override
+    public Object getValue( R pRow, SimpleColumnDefinition pColumnDefinition ) {
+        Getter<R> zGetter = mGetters.get( pColumnDefinition );
+        if ( zGetter != null ) {
+            return zGetter.getValue( pRow );
+        }
+        if ( mFallback == null ) {
+            throw IllegalArgument.exception( "ColumnDefinition", "not registered (and no fallback): " + pColumnDefinition );
+        }
+        return mFallback.getValue( pRow, pColumnDefinition );
+    }
+
+    /**
+     * @return the registered getter or null.
+     */
+    Getter<R> getGetter( SimpleColumnDefinition pColumnDefinition ) {
+        return mGetters.get( pColumnDefinition );
+    }
+
+    private TypedColumnAccessor<R> add( SimpleColumnDefinition pColumnDefinition, Getter<R> pGetter ) {
+        IllegalArgument.ifNull( "ColumnDefinition", pColumnDefinition );
+        if ( mGetters.containsKey( pColumnDefinition ) ) {
+            throw IllegalArgument.exception( "ColumnDefinition", "already registered: " + pColumnDefinition );
+        }
+        mGetters.put( pColumnDefinition, pGetter );
+        return this;
+    }
+
+    enum Kind {
+        INT, LONG, DOUBLE, BOOLEAN
+    }
+
+    /**
+     * A registered column's getters (only the one of its Kind, with INT also read as a long).
+     */
+    static final class Getter<R> {
+        private final Kind mKind;
+        private final ToIntFunction<R> mInt;
+        private final ToLongFunction<R> mLong;
+        private final ToDoubleFunction<R> mDouble;
+        private final Predicate<R> mBoolean;
+        private final Predicate<R> mIsNull;
+
+        Getter( Kind pKind, ToIntFunction<R> pInt, ToLongFunction<R> pLong, ToDoubleFunction<R> pDouble, Predicate<R> pBoolean, Predicate<R> pIsNull ) {
+            mKind = pKind;
+            mInt = pInt;
+            mLong = pLong;
+            mDouble = pDouble;
+            mBoolean = pBoolean;
+            mIsNull = pIsNull;
+        }
+
+        Kind getKind() {
+            return mKind;
+        }
+
+        /**
+         * @return true if the values are read (exactly) as longs.
+         */
+        boolean isIntegral() {
+            return (mKind == Kind.INT) || (mKind == Kind.LONG);
+        }
+
+        /**
+         * @return the null check, or null if the column is never NULL.
+         */
+        Predicate<R> getIsNull() {
+            return mIsNull;
+        }
+
+        /**
+         * @return the (registered int) getter of the INT Kind, otherwise null.
+         */
+        ToIntFunction<R> getIntGetter() {
+            return mInt;
+        }
+
+        /**
+         * @return the (long) getter of an integral Kind, otherwise null.
+         */
+        ToLongFunction<R> getLongGetter() {
+            return mLong;
+        }
+
+        /**
+         * @return the (double) getter of the DOUBLE Kind, otherwise null.
+         */
+        ToDoubleFunction<R> getDoubleGetter() {
+            return mDouble;
+        }
+
+        boolean isNull( R pRow ) {
+            return (mIsNull != null) && mIsNull.test( pRow );
+        }
+
+        /**
+         * Only for an integral Kind, and a row that is NOT null.
+         */
+        long getLong( R pRow ) {
+            return mLong.applyAsLong( pRow );
+        }
+
+        /**
+         * Only for a NON-Boolean Kind, and a row that is NOT null.
+         */
+        double getDouble( R pRow ) {
+            return (mDouble != null) ? mDouble.applyAsDouble( pRow ) : (double) mLong.applyAsLong( pRow );
+        }
+
+        Object getValue( R pRow ) {
+            if ( isNull( pRow ) ) {
+                return null;
+            }
+            switch ( mKind ) {
+                case INT:
+                    return (int) mLong.applyAsLong( pRow );
+                case LONG:
+                    return mLong.applyAsLong( pRow );
+                case DOUBLE:
+                    return mDouble.applyAsDouble( pRow );
+                default:
+                    return mBoolean.test( pRow );
+            }
+        }
+    }
+}
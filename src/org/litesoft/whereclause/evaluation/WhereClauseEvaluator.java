@@ -0,0 +1,117 @@
+// This Source Code is in the Public Domain per: http://unlicense.org
+package org.litesoft.whereclause.evaluation;
+
+import org.litesoft.whereclause.WhereClause;
+import org.litesoft.whereclause.nonpublic.IllegalArgument;
+import org.litesoft.whereclause.transform.WhereClauseTransform;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Evaluates <b>WhereClause</b>s against rows in memory (instead of rendering them to
+ * SQL), reading the column values through a <b>ColumnAccessor</b>.<p>
+ * <a href="../../../Licence.txt">Licence</a><br>
+ * <p/>
+ * The evaluation follows SQL's three-valued logic (see <b>TriState</b>) and NULL semantics
+ * exactly as the SQL rendered from the same WhereClause would, including the null
+ * inclusive NOT mode of EQUALS, NOT IN, NOT BETWEEN, and the LIKE escaping; so a row is
+ * selected in memory if and only if the database would select it.  The exception is
+ * IS_IN (a sub-select), which can only be evaluated against a table in memory (see
+ * <b>InMemoryTables</b>).<p>
+ * <p/>
+ * Compile once (<b>compile()</b>) and evaluate many times; the optional
+ * <b>WhereClauseTransform</b> (e.g. a <b>CostBasedOrderer</b>) is applied before compiling.<p>
+ *
+ * @param <R> the type of the rows.
+ */
+public class WhereClauseEvaluator<R> implements RowFilterCompiler<R> {
+    private static final InMemoryTables NO_TABLES = new InMemoryTables();
+
+    private final ColumnAccessor<R> mAccessor;
+    private final WhereClauseTransform mTransform;
+    private final InMemoryTables mTables;
+
+    /**
+     * Constructor.<p>
+     *
+     * @param pAccessor  reads the column values of the rows (!null).
+     * @param pTransform applied to each WhereClause before compiling (!null, WhereClauseTransform.NONE for none).
+     * @param pTables    the tables (null OK, for none) that the IS_INs (sub-selects) are evaluated against (see <b>InMemoryTables</b>).
+     */
+    public WhereClauseEvaluator( ColumnAccessor<R> pAccessor, WhereClauseTransform pTransform, InMemoryTables pTables ) {
+        IllegalArgument.ifNull( "Accessor", mAccessor = pAccessor );
+        IllegalArgument.ifNull( "Transform", mTransform = pTransform );
+        mTables = pTables;
+    }
+
+    /**
+     * Constructor (without any tables in memory).<p>
+     *
+     * @param pAccessor  reads the column values of the rows (!null).
+     * @param pTransform applied to each WhereClause before compiling (!null, WhereClauseTransform.NONE for none).
+     */
+    public WhereClauseEvaluator( ColumnAccessor<R> pAccessor, WhereClauseTransform pTransform ) {
+        this( pAccessor, pTransform, null );
+    }
+
+    /**
+     * Constructor (without a transform).<p>
+     *
+     * @param pAccessor reads the column values of the rows (!null).
+     */
+    public WhereClauseEvaluator( ColumnAccessor<R> pAccessor ) {
+        this( pAccessor, WhereClauseTransform.NONE );
+    }
+
+    public ColumnAccessor<R> getAccessor() {
+        return mAccessor;
+    }
+
+    public WhereClauseTransform getTransform() {
+        return mTransform;
+    }
+
+    /**
+     * @return false if the WhereClause has an IS_IN (sub-select) whose table is NOT in memory (see <b>InMemoryTables.isInMemory()</b>), so it can NOT be compiled.
+     */
+    public boolean canEvaluate( WhereClause pWhereClause ) {
+        return ((mTables != null) ? mTables : NO_TABLES).isInMemory( pWhereClause );
+    }
+
+    @Override
+    public RowFilter<R> compile( WhereClause pWhereClause ) {
+        IllegalArgument.ifNull( "WhereClause", pWhereClause );
+        WhereClause zWhereClause = mTransform.transform( pWhereClause );
+        return new CompiledRowFilter<>( zWhereClause, new ConditionCompiler<>( mAccessor, mTables ).compile( zWhereClause ) );
+    }
+
+    /**
+     * Evaluate a WhereClause against a single row (prefer <b>compile()</b> for repeated use).<p>
+     *
+     * @return the SQL (three-valued) result.
+     */
+    public TriState evaluate( WhereClause pWhereClause, R pRow ) {
+        return compile( pWhereClause ).evaluate( pRow );
+    }
+
+    /**
+     * Select the rows that the WhereClause would select.<p>
+     *
+     * @param pWhereClause the tree (!null, IS_INs only against the tables in memory).
+     * @param pRows        the rows (!null, no null entries).
+     *
+     * @return the selected rows in their original order (!null).
+     */
+    public List<R> filter( WhereClause pWhereClause, Iterable<R> pRows ) {
+        IllegalArgument.ifNull( "Rows", pRows );
+        RowFilter<R> zFilter = compile( pWhereClause );
+        List<R> zSelected = new ArrayList<>();
+        for ( R zRow : pRows ) {
+            if ( zFilter.test( zRow ) ) {
+                zSelected.add( zRow );
+            }
+        }
+        return zSelected;
+    }
+}
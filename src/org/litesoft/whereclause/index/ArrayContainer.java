@@ -0,0 +1,201 @@
+// This Source Code is in the Public Domain per: http://unlicense.org
+package org.litesoft.whereclause.index;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * A <b>Container</b> of no more than MAX_ARRAY values, as a sorted array.<p>
+ * <a href="../../../Licence.txt">Licence</a><br>
+ */
+final class ArrayContainer extends Container {
+    /**
+     * Smaller arrays are intersected value by value, larger ones via a bitmap.
+     */
+    static final int SMALL_ARRAY = 64;
+
+    private char[] mValues;
+    private int mCardinality;
+
+    ArrayContainer( char[] pValues, int pCardinality ) {
+        mValues = pValues;
+        mCardinality = pCardinality;
+    }
+
+    static ArrayContainer of( char pLow ) {
+        return new ArrayContainer( new char[]{pLow, 0, 0, 0}, 1 );
+    }
+
+    static ArrayContainer fromWords( long[] pWords, int pCardinality ) {
+        char[] zValues = new char[pCardinality];
+        int zAt = 0;
+        for ( int i = 0; i < pWords.length; i++ ) {
+            for ( long zWord = pWords[i]; zWord != 0; zWord &= zWord - 1 ) {
+                zValues[zAt++] = (char) ((i << 6) + Long.numberOfTrailingZeros( zWord ));
+            }
+        }
+        return new ArrayContainer( zValues, pCardinality );
+    }
+
+    static int sizeInBytes( int pCardinality ) {
+        return 2 * pCardinality;
+    }
+
+    @Override
+    int sizeInBytes() {
+        return sizeInBytes( mCardinality );
+    }
+
+    @Override
+    int cardinality() {
+        return mCardinality;
+    }
+
+    @Override
+    boolean contains( char pLow ) {
+        return Arrays.binarySearch( mValues, 0, mCardinality, pLow ) >= 0;
+    }
+
+    @Override
+    Container add( char pLow ) {
+        int zAt = ((mCardinality == 0) || (mValues[mCardinality - 1] < pLow)) ? //
+                  -(mCardinality + 1) : Arrays.binarySearch( mValues, 0, mCardinality, pLow ); // appending is the common case
+        if ( zAt >= 0 ) {
+            return this;
+        }
+        if ( mCardinality == MAX_ARRAY ) {
+            return new BitmapContainer( toWords(), mCardinality ).add( pLow );
+        }
+        zAt = -(zAt + 1);
+        if ( mCardinality == mValues.length ) {
+            mValues = Arrays.copyOf( mValues, Math.min( MAX_ARRAY, mCardinality * 2 ) );
+        }
+        System.arraycopy( mValues, zAt, mValues, zAt + 1, mCardinality - zAt );
+        mValues[zAt] = pLow;
+        mCardinality++;
+        return this;
+    }
+
+    @Override
+    void orInto( long[] pWords ) {
+        for ( int i = 0; i < mCardinality; i++ ) {
+            char zLow = mValues[i];
+            pWords[zLow >>> 6] |= 1L << zLow;
+        }
+    }
+
+    @Override
+    int fill( int[] pValues, int pAt, int pHigh ) {
+        for ( int i = 0; i < mCardinality; i++ ) {
+            pValues[pAt++] = pHigh | mValues[i];
+        }
+        return pAt;
+    }
+
+    @Override
+    void forEach( int pHigh, IntConsumer pConsumer ) {
+        for ( int i = 0; i < mCardinality; i++ ) {
+            pConsumer.accept( pHigh | mValues[i] );
+        }
+    }
+
+    @Override
+    Container copy() {
+        return new ArrayContainer( Arrays.copyOf( mValues, mCardinality ), mCardinality );
+    }
+
+    /**
+     * Filters the values by the other's values.
+     */
+    @Override
+    Container and( Container pOther ) {
+        if ( pOther.cardinality() == VALUES ) {
+            return copy();
+        }
+        return filter( pOther, true );
+    }
+
+    @Override
+    Container andNot( Container pOther ) {
+        return filter( pOther, false );
+    }
+
+    /**
+     * A small array (or runs) is walked along with the values; otherwise the values are
+     * probed (without branching) against the other's bitmap.
+     */
+    private Container filter( Container pOther, boolean pKeep ) {
+        char[] zValues = new char[mCardinality];
+        int zCardinality = 0;
+        if ( (pOther instanceof ArrayContainer) && (pOther.cardinality() < SMALL_ARRAY) ) {
+            ArrayContainer zOther = (ArrayContainer) pOther;
+            for ( int i = 0, j = 0; i < mCardinality; i++ ) {
+                char zValue = mValues[i];
+                while ( (j < zOther.mCardinality) && (zOther.mValues[j] < zValue) ) {
+                    j++;
+                }
+                if ( ((j < zOther.mCardinality) && (zOther.mValues[j] == zValue)) == pKeep ) {
+                    zValues[zCardinality++] = zValue;
+                }
+            }
+        } else if ( pOther instanceof RunContainer ) {
+            RunContainer zOther = (RunContainer) pOther;
+            for ( int i = 0, j = 0; i < mCardinality; i++ ) {
+                char zValue = mValues[i];
+                while ( (j < zOther.runs()) && (zOther.end( j ) < zValue) ) {
+                    j++;
+                }
+                if ( ((j < zOther.runs()) && (zOther.start( j ) <= zValue)) == pKeep ) {
+                    zValues[zCardinality++] = zValue;
+                }
+            }
+        } else {
+            long[] zWords = (pOther instanceof BitmapContainer) ? ((BitmapContainer) pOther).words() : pOther.toWords();
+            int zFlip = pKeep ? 0 : 1;
+            for ( int i = 0; i < mCardinality; i++ ) {
+                char zValue = mValues[i];
+                zValues[zCardinality] = zValue;
+                zCardinality += (int) ((zWords[zValue >>> 6] >>> zValue) & 1) ^ zFlip;
+            }
+        }
+        return (zCardinality == 0) ? null : new ArrayContainer( zValues, zCardinality );
+    }
+
+    /**
+     * Two arrays (that fit in an array) are merged.
+     */
+    @Override
+    Container or( Container pOther ) {
+        if ( !(pOther instanceof ArrayContainer) || ((mCardinality + pOther.cardinality()) > MAX_ARRAY) ) {
+            return super.or( pOther );
+        }
+        ArrayContainer zOther = (ArrayContainer) pOther;
+        char[] zValues = new char[mCardinality + zOther.mCardinality];
+        int zCardinality = 0;
+        int i = 0, j = 0;
+        while ( (i < mCardinality) && (j < zOther.mCardinality) ) {
+            char zMine = mValues[i];
+            char zTheirs = zOther.mValues[j];
+            if ( zMine <= zTheirs ) {
+                i++;
+                j += (zMine == zTheirs) ? 1 : 0;
+                zValues[zCardinality++] = zMine;
+            } else {
+                j++;
+                zValues[zCardinality++] = zTheirs;
+            }
+        }
+        while ( i < mCardinality ) {
+            zValues[zCardinality++] = mValues[i++];
+        }
+        while ( j < zOther.mCardinality ) {
+            zValues[zCardinality++] = zOther.mValues[j++];
+        }
+        return new ArrayContainer( zValues, zCardinality );
+    }
+
+    @Override
+    public String toString() {
+        return "Array(" + mCardinality + ")";
+    }
+}
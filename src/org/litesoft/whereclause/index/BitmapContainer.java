@@ -0,0 +1,89 @@
+// This Source Code is in the Public Domain per: http://unlicense.org
+package org.litesoft.whereclause.index;
+
+import java.util.function.IntConsumer;
+
+/**
+ * A <b>Container</b> of (more than MAX_ARRAY) values, as a 65536 bit bitmap.<p>
+ * <a href="../../../Licence.txt">Licence</a><br>
+ */
+final class BitmapContainer extends Container {
+    static final int SIZE_IN_BYTES = WORDS * 8;
+
+    private final long[] mWords;
+    private int mCardinality;
+
+    BitmapContainer( long[] pWords, int pCardinality ) {
+        mWords = pWords;
+        mCardinality = pCardinality;
+    }
+
+    /**
+     * @return the (live) bits.
+     */
+    long[] words() {
+        return mWords;
+    }
+
+    @Override
+    int sizeInBytes() {
+        return SIZE_IN_BYTES;
+    }
+
+    @Override
+    int cardinality() {
+        return mCardinality;
+    }
+
+    @Override
+    boolean contains( char pLow ) {
+        return (mWords[pLow >>> 6] & (1L << pLow)) != 0;
+    }
+
+    @Override
+    Container add( char pLow ) {
+        long zBefore = mWords[pLow >>> 6];
+        long zAfter = zBefore | (1L << pLow);
+        if ( zBefore != zAfter ) {
+            mWords[pLow >>> 6] = zAfter;
+            mCardinality++;
+        }
+        return this;
+    }
+
+    @Override
+    void orInto( long[] pWords ) {
+        for ( int i = 0; i < WORDS; i++ ) {
+            pWords[i] |= mWords[i];
+        }
+    }
+
+    @Override
+    int fill( int[] pValues, int pAt, int pHigh ) {
+        for ( int i = 0; i < WORDS; i++ ) {
+            for ( long zWord = mWords[i]; zWord != 0; zWord &= zWord - 1 ) {
+                pValues[pAt++] = pHigh | ((i << 6) + Long.numberOfTrailingZeros( zWord ));
+            }
+        }
+        return pAt;
+    }
+
+    @Override
+    void forEach( int pHigh, IntConsumer pConsumer ) {
+        for ( int i = 0; i < WORDS; i++ ) {
+            for ( long zWord = mWords[i]; zWord != 0; zWord &= zWord - 1 ) {
+                pConsumer.accept( pHigh | ((i << 6) + Long.numberOfTrailingZeros( zWord )) );
+            }
+        }
+    }
+
+    @Override
+    Container copy() {
+        return new BitmapContainer( mWords.clone(), mCardinality );
+    }
+
+    @Override
+    public String toString() {
+        return "Bitmap(" + mCardinality + ")";
+    }
+}
@@ -0,0 +1,190 @@
+// This Source Code is in the Public Domain per: http://unlicense.org
+package org.litesoft.whereclause.index;
+
+import org.litesoft.whereclause.SimpleColumnDefinition;
+import org.litesoft.whereclause.WhereClauseType;
+import org.litesoft.whereclause.WhereClauseValueSupport;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseColumnAndValue;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseColumnAnd_N_Values;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseColumnReference;
+import org.litesoft.whereclause.nonpublic.IllegalArgument;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A <b>ColumnIndex</b> of a <b>RoaringBitmap</b> (of row IDs) per distinct (normalized)
+ * value, and one of the NULLs, for low and medium cardinality columns; it answers
+ * IS_NULL, EQUALS, and IS_ANY_OF (in both modes) with bitmap algebra only.<p>
+ * <a href="../../../Licence.txt">Licence</a><br>
+ * <p/>
+ * The integral values (Long, Integer, Short and Byte) are held as Longs.  A value is
+ * looked up (hashed) when that is exact: a String when all the values are Strings, and
+ * a Number when all the values are integral (and, for a NON-integral Number, no larger
+ * than 2^53); otherwise (e.g. a String against Numbers) each distinct value
+ * is checked with <b>WhereClauseValueSupport.areEqual()</b>.<p>
+ * <p/>
+ * The buckets are changed in place (by add()), so each method holds the index's lock.<p>
+ */
+public class BitmapIndex implements ColumnIndex {
+    private static final long EXACT_DOUBLE_MAGNITUDE = 1L << 53;
+
+    private final SimpleColumnDefinition mColumnDefinition;
+    private final Map<Object, RoaringBitmap> mBuckets = new HashMap<>();
+    private final RoaringBitmap mNulls = new RoaringBitmap();
+    private int mValues, mNonStrings, mNonIntegrals;
+    private boolean mHasBigIntegrals;
+
+    public BitmapIndex( SimpleColumnDefinition pColumnDefinition ) {
+        IllegalArgument.ifNull( "ColumnDefinition", mColumnDefinition = pColumnDefinition );
+    }
+
+    @Override
+    public SimpleColumnDefinition getColumnDefinition() {
+        return mColumnDefinition;
+    }
+
+    @Override
+    public BitmapIndex newIndex() {
+        return new BitmapIndex( mColumnDefinition );
+    }
+
+    /**
+     * @return the number of distinct (NOT null) values.
+     */
+    public synchronized int getDistinctValues() {
+        return mBuckets.size();
+    }
+
+    @Override
+    public synchronized void add( int pRowID, Object pValue ) {
+        Object zValue = WhereClauseValueSupport.normalizeValue( mColumnDefinition, pValue );
+        if ( zValue == null ) {
+            mNulls.add( pRowID );
+            return;
+        }
+        mValues++;
+        Object zKey = key( zValue );
+        RoaringBitmap zBucket = mBuckets.get( zKey );
+        if ( zBucket == null ) {
+            mBuckets.put( zKey, zBucket = new RoaringBitmap() );
+            if ( !(zKey instanceof String) ) {
+                mNonStrings++;
+            }
+            if ( !(zKey instanceof Long) ) {
+                mNonIntegrals++;
+            } else {
+                long zLong = (Long) zKey;
+                mHasBigIntegrals |= (zLong < -EXACT_DOUBLE_MAGNITUDE) || (EXACT_DOUBLE_MAGNITUDE < zLong);
+            }
+        }
+        zBucket.add( pRowID );
+    }
+
+    private static Object key( Object pValue ) {
+        return WhereClauseValueSupport.isIntegral( pValue ) ? (Object) ((Number) pValue).longValue() : pValue;
+    }
+
+    @Override
+    public boolean canSelect( AbstractWhereClauseColumnReference pLeaf ) {
+        if ( !mColumnDefinition.equals( pLeaf.getColumnDefinition() ) ) {
+            return false;
+        }
+        WhereClauseType zType = pLeaf.getType();
+        return (zType == WhereClauseType.IS_NULL) || (zType == WhereClauseType.EQUALS) || (zType == WhereClauseType.IS_ANY_OF);
+    }
+
+    @Override
+    public synchronized RowSelection select( AbstractWhereClauseColumnReference pLeaf, RoaringBitmap pRows ) {
+        switch ( pLeaf.getType() ) {
+            case IS_NULL:
+                return new RowSelection( pLeaf.isNot() ? pRows.andNot( mNulls ) : pRows.and( mNulls ), new RoaringBitmap() );
+            case EQUALS:
+                RoaringBitmap zEquals = equalTo( (AbstractWhereClauseColumnAndValue) pLeaf );
+                if ( pLeaf.isNot() ) { // null inclusive: "(col <> v) OR (col IS NULL)"
+                    return new RowSelection( pRows.andNot( zEquals ), new RoaringBitmap() );
+                }
+                return new RowSelection( pRows.and( zEquals ), pRows.and( mNulls ) );
+            case IS_ANY_OF:
+                RoaringBitmap zAnyOf = anyOf( (AbstractWhereClauseColumnAnd_N_Values) pLeaf );
+                RoaringBitmap zNulls = pRows.and( mNulls );
+                return new RowSelection( pLeaf.isNot() ? pRows.andNot( zAnyOf ).andNot( zNulls ) : pRows.and( zAnyOf ), zNulls );
+            default:
+                throw IllegalArgument.exception( "Leaf", "NOT selectable: " + pLeaf );
+        }
+    }
+
+    @Override
+    public synchronized long estimateRows( AbstractWhereClauseColumnReference pLeaf ) {
+        switch ( pLeaf.getType() ) {
+            case IS_NULL:
+                return pLeaf.isNot() ? mValues : mNulls.getCardinality();
+            case EQUALS:
+                int zEquals = equalTo( (AbstractWhereClauseColumnAndValue) pLeaf ).getCardinality();
+                return pLeaf.isNot() ? (mValues + mNulls.getCardinality() - zEquals) : zEquals;
+            case IS_ANY_OF:
+                long zAnyOf = 0; // the buckets are disjoint (unless a value is repeated)
+                for ( Object zValue : ((AbstractWhereClauseColumnAnd_N_Values) pLeaf).getValues() ) {
+                    zAnyOf += lookup( WhereClauseValueSupport.normalizeValue( mColumnDefinition, zValue ) ).getCardinality();
+                }
+                zAnyOf = Math.min( zAnyOf, mValues );
+                return pLeaf.isNot() ? (mValues - zAnyOf) : zAnyOf;
+            default:
+                throw IllegalArgument.exception( "Leaf", "NOT selectable: " + pLeaf );
+        }
+    }
+
+    @Override
+    public synchronized double estimateCost( AbstractWhereClauseColumnReference pLeaf ) {
+        int zLookups = (pLeaf.getType() == WhereClauseType.IS_ANY_OF) ? ((AbstractWhereClauseColumnAnd_N_Values) pLeaf).getValues().length : 1;
+        return (LOOKUP_COST * zLookups) + (ROW_ID_COST * estimateRows( pLeaf ));
+    }
+
+    private RoaringBitmap equalTo( AbstractWhereClauseColumnAndValue pLeaf ) {
+        return lookup( WhereClauseValueSupport.normalizeValue( mColumnDefinition, pLeaf.getValue() ) );
+    }
+
+    private RoaringBitmap anyOf( AbstractWhereClauseColumnAnd_N_Values pLeaf ) {
+        List<RoaringBitmap> zBuckets = new ArrayList<>();
+        for ( Object zValue : pLeaf.getValues() ) {
+            zBuckets.add( lookup( WhereClauseValueSupport.normalizeValue( mColumnDefinition, zValue ) ) );
+        }
+        return RoaringBitmap.or( zBuckets );
+    }
+
+    /**
+     * @return the (shared, so NOT to be changed) row IDs of the values equal to the (normalized) value.
+     */
+    private RoaringBitmap lookup( Object pValue ) {
+        if ( pValue == null ) {
+            return new RoaringBitmap();
+        }
+        if ( (pValue instanceof String) ? (mNonStrings == 0) : WhereClauseValueSupport.isIntegral( pValue ) && (mNonIntegrals == 0) ) {
+            return bucket( key( pValue ) );
+        }
+        if ( (pValue instanceof Number) && (mNonIntegrals == 0) && !mHasBigIntegrals ) {
+            double zDouble = ((Number) pValue).doubleValue(); // a NaN is NOT whole (nor equal to any integral)
+            boolean zWhole = (zDouble == Math.rint( zDouble )) && (Math.abs( zDouble ) <= EXACT_DOUBLE_MAGNITUDE);
+            return zWhole ? bucket( (long) zDouble ) : new RoaringBitmap();
+        }
+        List<RoaringBitmap> zEquals = new ArrayList<>();
+        for ( Map.Entry<Object, RoaringBitmap> zEntry : mBuckets.entrySet() ) {
+            if ( WhereClauseValueSupport.areEqual( zEntry.getKey(), pValue ) ) {
+                zEquals.add( zEntry.getValue() );
+            }
+        }
+        return RoaringBitmap.or( zEquals );
+    }
+
+    private RoaringBitmap bucket( Object pKey ) {
+        RoaringBitmap zBucket = mBuckets.get( pKey );
+        return (zBucket != null) ? zBucket : new RoaringBitmap();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "BitmapIndex(" + mColumnDefinition.getColumnName() + ": " + mBuckets.size() + " values)";
+    }
+}
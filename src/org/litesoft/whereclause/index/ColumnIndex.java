@@ -0,0 +1,72 @@
+// This Source Code is in the Public Domain per: http://unlicense.org
+package org.litesoft.whereclause.index;
+
+import org.litesoft.whereclause.SimpleColumnDefinition;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseColumnReference;
+
+/**
+ * A secondary index (of the row IDs of an <b>IndexedTable</b>) on a single column,
+ * that answers (some of) the <b>WhereClause</b> leaves of that column without checking
+ * the rows, with exactly the results (including SQL's NULL semantics) of the
+ * <b>WhereClauseEvaluator</b>.<p>
+ * <a href="../../../Licence.txt">Licence</a><br>
+ * <p/>
+ * An index must be thread safe: rows may be added while other threads select, and a
+ * select (of rows added before it) must NOT be affected by the rows being added.<p>
+ */
+public interface ColumnIndex {
+    /**
+     * The (relative) cost of a lookup (e.g. a hash probe or binary search), in the units
+     * of the <b>QueryPlanner</b>: the cost of checking one row for an EQUALS.<p>
+     */
+    double LOOKUP_COST = 20.0;
+
+    /**
+     * The (relative) cost, per row ID, of producing (or combining) the selected row IDs.<p>
+     */
+    double ROW_ID_COST = 0.05;
+
+    SimpleColumnDefinition getColumnDefinition();
+
+    /**
+     * @return a new (empty) index of the same kind, on the same column (e.g. to rebuild this one).
+     */
+    ColumnIndex newIndex();
+
+    /**
+     * @param pLeaf a leaf of this index's column (!null).
+     *
+     * @return true if <b>select()</b> can answer the leaf.
+     */
+    boolean canSelect( AbstractWhereClauseColumnReference pLeaf );
+
+    /**
+     * @param pLeaf a leaf that <b>canSelect()</b> (!null).
+     *
+     * @return the estimated number of (all the) rows that the leaf (in its mode) is TRUE for.
+     */
+    long estimateRows( AbstractWhereClauseColumnReference pLeaf );
+
+    /**
+     * @param pLeaf a leaf that <b>canSelect()</b> (!null).
+     *
+     * @return the estimated cost of <b>select()</b> (see LOOKUP_COST and ROW_ID_COST).
+     */
+    double estimateCost( AbstractWhereClauseColumnReference pLeaf );
+
+    /**
+     * @param pLeaf a leaf that <b>canSelect()</b> (!null).
+     * @param pRows the row IDs to select from (!null).
+     *
+     * @return the selection (of the rows in pRows) for the leaf (!null).
+     */
+    RowSelection select( AbstractWhereClauseColumnReference pLeaf, RoaringBitmap pRows );
+
+    /**
+     * Index a row (the row IDs are added in ascending order).<p>
+     *
+     * @param pRowID the row's ID.
+     * @param pValue the row's (NOT normalized) column value (null OK).
+     */
+    void add( int pRowID, Object pValue );
+}
@@ -0,0 +1,120 @@
+// This Source Code is in the Public Domain per: http://unlicense.org
+package org.litesoft.whereclause.index;
+
+import java.util.function.IntConsumer;
+
+/**
+ * The (low 16 bits of the) values of a <b>RoaringBitmap</b> that share their high 16
+ * bits, held as the smallest of: a sorted array (<b>ArrayContainer</b>), a 65536 bit
+ * bitmap (<b>BitmapContainer</b>), or the runs of consecutive values (<b>RunContainer</b>).<p>
+ * <a href="../../../Licence.txt">Licence</a><br>
+ * <p/>
+ * An array AND (or AND NOT) anything is filtered by <b>contains()</b>, and two small
+ * arrays are merged; the other combinations are done a word (64 values) at a time, and
+ * the result then held in its smallest form (see <b>best()</b>).  A Container is never
+ * empty (an empty result is null).<p>
+ */
+abstract class Container {
+    static final int WORDS = 1024;
+    static final int VALUES = WORDS * 64;
+    static final int MAX_ARRAY = 4096;
+
+    abstract int cardinality();
+
+    abstract boolean contains( char pLow );
+
+    /**
+     * @return this or its replacement (e.g. an array grown beyond MAX_ARRAY values).
+     */
+    abstract Container add( char pLow );
+
+    /**
+     * Set the container's bits in the (WORDS long) bitmap.
+     */
+    abstract void orInto( long[] pWords );
+
+    /**
+     * @return the index after the last value written (pHigh is the high 16 bits).
+     */
+    abstract int fill( int[] pValues, int pAt, int pHigh );
+
+    abstract void forEach( int pHigh, IntConsumer pConsumer );
+
+    abstract Container copy();
+
+    /**
+     * @return the (approximate) size in bytes.
+     */
+    abstract int sizeInBytes();
+
+    final long[] toWords() {
+        long[] zWords = new long[WORDS];
+        orInto( zWords );
+        return zWords;
+    }
+
+    Container and( Container pOther ) {
+        if ( pOther.cardinality() == VALUES ) {
+            return copy();
+        }
+        if ( cardinality() == VALUES ) {
+            return pOther.copy();
+        }
+        if ( pOther instanceof ArrayContainer ) {
+            return pOther.and( this );
+        }
+        long[] zWords = toWords();
+        long[] zOthers = pOther.toWords();
+        for ( int i = 0; i < WORDS; i++ ) {
+            zWords[i] &= zOthers[i];
+        }
+        return best( zWords );
+    }
+
+    Container or( Container pOther ) {
+        long[] zWords = toWords();
+        pOther.orInto( zWords );
+        return best( zWords );
+    }
+
+    Container andNot( Container pOther ) {
+        long[] zWords = toWords();
+        long[] zOthers = pOther.toWords();
+        for ( int i = 0; i < WORDS; i++ ) {
+            zWords[i] &= ~zOthers[i];
+        }
+        return best( zWords );
+    }
+
+    /**
+     * @return the smallest form of the bitmap (or null if empty).
+     */
+    static Container best( long[] pWords ) {
+        int zCardinality = 0;
+        int zRuns = 0;
+        long zCarry = 0; // the top bit of the previous word
+        for ( long zWord : pWords ) {
+            zCardinality += Long.bitCount( zWord );
+            zRuns += Long.bitCount( zWord & ~((zWord << 1) | zCarry) ); // the first bit of each run
+            zCarry = zWord >>> 63;
+        }
+        if ( zCardinality == 0 ) {
+            return null;
+        }
+        if ( (RunContainer.sizeInBytes( zRuns ) < ArrayContainer.sizeInBytes( zCardinality )) && //
+             (RunContainer.sizeInBytes( zRuns ) < BitmapContainer.SIZE_IN_BYTES) ) {
+            return RunContainer.fromWords( pWords, zRuns, zCardinality );
+        }
+        if ( zCardinality <= MAX_ARRAY ) {
+            return ArrayContainer.fromWords( pWords, zCardinality );
+        }
+        return new BitmapContainer( pWords, zCardinality );
+    }
+
+    /**
+     * @return the best form of the container (see <b>best()</b>).
+     */
+    Container optimize() {
+        return best( toWords() );
+    }
+}
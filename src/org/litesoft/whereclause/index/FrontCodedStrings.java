@@ -0,0 +1,146 @@
+// This Source Code is in the Public Domain per: http://unlicense.org
+package org.litesoft.whereclause.index;
+
+import java.util.List;
+
+/**
+ * An immutable sorted (by <b>String.compareTo()</b>) array of distinct Strings, front
+ * coded: in blocks of BLOCK Strings, the first held in full, and each of the others as
+ * the length of the prefix it shares with the one before it, and the rest of its
+ * characters; all the characters in one <b>char[]</b>.<p>
+ * <a href="../../../Licence.txt">Licence</a><br>
+ * <p/>
+ * A search is a binary search of the (full) first Strings of the blocks, and then a
+ * scan (decoding each String into a reused buffer) of just one block; in either the
+ * exact mode, or the prefix mode, where a String that starts with the searched for
+ * String compares as equal to it (so the Strings with a prefix are those from its
+ * lower to its upper bound).<p>
+ */
+final class FrontCodedStrings {
+    static final int BLOCK = 16;
+
+    private final int mSize, mMaxLength;
+    private final char[] mChars;
+    private final int[] mStarts; // of each String's (unshared) characters, and the end
+    private final char[] mShared;
+
+    /**
+     * @param pSorted the Strings (distinct, and in order).
+     */
+    FrontCodedStrings( List<String> pSorted ) {
+        mSize = pSorted.size();
+        mStarts = new int[mSize + 1];
+        mShared = new char[mSize];
+        int zMaxLength = 0;
+        int zChars = 0;
+        String zPrevious = "";
+        for ( int i = 0; i < mSize; i++ ) {
+            String zString = pSorted.get( i );
+            mShared[i] = ((i % BLOCK) == 0) ? 0 : (char) Math.min( Character.MAX_VALUE, sharedPrefix( zPrevious, zString ) );
+            zChars += zString.length() - mShared[i];
+            mStarts[i + 1] = zChars;
+            zMaxLength = Math.max( zMaxLength, zString.length() );
+            zPrevious = zString;
+        }
+        mMaxLength = zMaxLength;
+        mChars = new char[zChars];
+        for ( int i = 0; i < mSize; i++ ) {
+            String zString = pSorted.get( i );
+            zString.getChars( mShared[i], zString.length(), mChars, mStarts[i] );
+        }
+    }
+
+    private static int sharedPrefix( String pString1, String pString2 ) {
+        int zMax = Math.min( pString1.length(), pString2.length() );
+        int i = 0;
+        while ( (i < zMax) && (pString1.charAt( i ) == pString2.charAt( i )) ) {
+            i++;
+        }
+        return i;
+    }
+
+    int size() {
+        return mSize;
+    }
+
+    /**
+     * @return the (approximate) size in bytes.
+     */
+    int sizeInBytes() {
+        return 2 * mChars.length + 4 * mStarts.length + 2 * mShared.length;
+    }
+
+    String get( int pIndex ) {
+        char[] zBuffer = new char[mMaxLength];
+        int zLength = 0;
+        for ( int i = pIndex - (pIndex % BLOCK); i <= pIndex; i++ ) {
+            zLength = decode( i, zBuffer );
+        }
+        return new String( zBuffer, 0, zLength );
+    }
+
+    /**
+     * Decode the String, whose predecessor (unless the first of its block) is in the buffer, into the buffer.<p>
+     *
+     * @return its length.
+     */
+    private int decode( int pIndex, char[] pBuffer ) {
+        int zStart = mStarts[pIndex];
+        int zUnshared = mStarts[pIndex + 1] - zStart;
+        System.arraycopy( mChars, zStart, pBuffer, mShared[pIndex], zUnshared );
+        return mShared[pIndex] + zUnshared;
+    }
+
+    /**
+     * @return the index of the first String that is NOT less than (or, if pUpper, is greater than) the target.
+     */
+    int bound( String pTarget, boolean pPrefix, boolean pUpper ) {
+        int zLow = 0;
+        int zHigh = (mSize + BLOCK - 1) / BLOCK; // the first block whose first String is at (or after) the bound
+        while ( zLow < zHigh ) {
+            int zMid = (zLow + zHigh) >>> 1;
+            int zHead = zMid * BLOCK;
+            if ( isBound( compare( mChars, mStarts[zHead], mStarts[zHead + 1] - mStarts[zHead], pTarget, pPrefix ), pUpper ) ) {
+                zHigh = zMid;
+            } else {
+                zLow = zMid + 1;
+            }
+        }
+        if ( zLow == 0 ) {
+            return 0;
+        }
+        int zEnd = Math.min( mSize, zLow * BLOCK );
+        char[] zBuffer = new char[mMaxLength];
+        int i = (zLow - 1) * BLOCK;
+        decode( i, zBuffer ); // NOT at the bound
+        while ( ++i < zEnd ) {
+            if ( isBound( compare( zBuffer, 0, decode( i, zBuffer ), pTarget, pPrefix ), pUpper ) ) {
+                return i;
+            }
+        }
+        return zEnd;
+    }
+
+    private static boolean isBound( int pComparison, boolean pUpper ) {
+        return pUpper ? (pComparison > 0) : (pComparison >= 0);
+    }
+
+    /**
+     * @return the comparison of the String (pLength chars from pFrom) to the target (in the prefix mode, equal if it starts with the target).
+     */
+    private static int compare( char[] pChars, int pFrom, int pLength, String pTarget, boolean pPrefix ) {
+        int zMax = Math.min( pLength, pTarget.length() );
+        for ( int i = 0; i < zMax; i++ ) {
+            int zDiff = pChars[pFrom + i] - pTarget.charAt( i );
+            if ( zDiff != 0 ) {
+                return zDiff;
+            }
+        }
+        return (pPrefix && (pLength >= pTarget.length())) ? 0 : pLength - pTarget.length();
+    }
+
+    @Override
+    public String toString() {
+        return "FrontCodedStrings(" + mSize + " in " + mChars.length + " chars)";
+    }
+}
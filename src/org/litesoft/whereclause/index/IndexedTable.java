@@ -0,0 +1,352 @@
+// This Source Code is in the Public Domain per: http://unlicense.org
+package org.litesoft.whereclause.index;
+
+import org.litesoft.whereclause.SimpleColumnDefinition;
+import org.litesoft.whereclause.WhereClause;
+import org.litesoft.whereclause.evaluation.ColumnAccessor;
+import org.litesoft.whereclause.evaluation.WhereClauseEvaluator;
+import org.litesoft.whereclause.nonpublic.IllegalArgument;
+import org.litesoft.whereclause.statistics.CostModel;
+import org.litesoft.whereclause.statistics.SelectivityEstimator;
+import org.litesoft.whereclause.statistics.SelectivitySource;
+import org.litesoft.whereclause.statistics.StatisticsRegistry;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Rows cached in memory (each identified by its row ID: its position), with secondary
+ * indexes (<b>ColumnIndex</b>es, e.g. a <b>BitmapIndex</b>, <b>SortedIndex</b>,
+ * <b>PrefixIndex</b> or <b>TrigramIndex</b>) keyed by their <b>SimpleColumnDefinition</b>,
+ * that selects the rows of a <b>WhereClause</b> with the indexes wherever it can.<p>
+ * <a href="../../../Licence.txt">Licence</a><br>
+ * <p/>
+ * The leaves that an index can answer are selected with bitmap algebra (see
+ * <b>RowSelection</b>), as are the ANDs, ORs, and NOTs of them; the residual parts
+ * (e.g. the subtrees without an indexed leaf) are checked row by row (by the
+ * <b>WhereClauseEvaluator</b>), and only against the rows still in question: an AND's
+ * children check just the rows that are NOT yet FALSE (and an OR's just the rows NOT
+ * yet TRUE).  Which index answers a leaf, the order of the children, and whether a part
+ * is cheaper to check than to look up, are chosen by the (cost based) <b>QueryPlanner</b>
+ * (see <b>plan()</b> and <b>explain()</b>).<p>
+ * <p/>
+ * The results are exactly those of the WhereClauseEvaluator (so of the SQL).<p>
+ * <p/>
+ * An IndexedTable is thread safe: the writers (add, set, addIndex, and compact) take
+ * turns (on the table's lock), and each publishes a new (version stamped)
+ * <b>TableSnapshot</b>; the readers (select, filter, count, etc.) read the latest
+ * snapshot, so are never blocked by (nor see a part of) a write, and a reader that
+ * needs several consistent reads takes a <b>snapshot()</b> and reads that.  The indexes
+ * are locked one at a time (each by its own lock), and only for as long as one leaf's
+ * lookup or one row's add.<p>
+ * <p/>
+ * An updated row (see <b>set()</b>) is NOT re-indexed, but checked row by row until the
+ * next <b>compact()</b> (which rebuilds the indexes).<p>
+ *
+ * @param <R> the type of the rows.
+ */
+public class IndexedTable<R> {
+    private final ColumnAccessor<R> mAccessor;
+    private final WhereClauseEvaluator<R> mEvaluator;
+    private final SelectivitySource mSelectivitySource;
+    private final CostModel mCostModel;
+    private volatile TableSnapshot<R> mSnapshot;
+    // The writers' state (guarded by this), shared with (but NOT changed below the size of) the snapshots:
+    private Object[][] mSegments = new Object[4][];
+    private int mSize;
+    private Map<SimpleColumnDefinition, List<ColumnIndex>> mIndexes = Collections.emptyMap();
+    private RoaringBitmap mUpdated = new RoaringBitmap();
+
+    /**
+     * Constructor.<p>
+     *
+     * @param pAccessor          reads the column values of the rows (!null).
+     * @param pSelectivitySource the selectivities of the residual (NOT indexed) parts (!null).
+     * @param pCostModel         the costs of checking the residual parts (!null).
+     */
+    public IndexedTable( ColumnAccessor<R> pAccessor, SelectivitySource pSelectivitySource, CostModel pCostModel ) {
+        IllegalArgument.ifNull( "Accessor", mAccessor = pAccessor );
+        IllegalArgument.ifNull( "SelectivitySource", mSelectivitySource = pSelectivitySource );
+        IllegalArgument.ifNull( "CostModel", mCostModel = pCostModel );
+        mEvaluator = new WhereClauseEvaluator<>( pAccessor );
+        mSnapshot = new TableSnapshot<>( this, 0, 0, mSegments, mIndexes, mUpdated );
+    }
+
+    /**
+     * Constructor using the CostModel.DEFAULT, and a SelectivityEstimator over an empty
+     * StatisticsRegistry (its defaults).<p>
+     *
+     * @param pAccessor reads the column values of the rows (!null).
+     */
+    public IndexedTable( ColumnAccessor<R> pAccessor ) {
+        this( pAccessor, new SelectivityEstimator( new StatisticsRegistry() ), CostModel.DEFAULT );
+    }
+
+    public ColumnAccessor<R> getAccessor() {
+        return mAccessor;
+    }
+
+    WhereClauseEvaluator<R> getEvaluator() {
+        return mEvaluator;
+    }
+
+    QueryPlanner newPlanner( TableSnapshot<R> pSnapshot ) {
+        return new QueryPlanner( pSnapshot, mSelectivitySource, mCostModel );
+    }
+
+    /**
+     * @return the latest (consistent, immutable) view of the rows and indexes.
+     */
+    public TableSnapshot<R> snapshot() {
+        return mSnapshot;
+    }
+
+    /**
+     * Add (and build) an index.<p>
+     *
+     * @return this (for chaining).
+     */
+    public synchronized IndexedTable<R> addIndex( ColumnIndex pIndex ) {
+        IllegalArgument.ifNull( "Index", pIndex );
+        SimpleColumnDefinition zColumnDefinition = pIndex.getColumnDefinition();
+        build( pIndex );
+        Map<SimpleColumnDefinition, List<ColumnIndex>> zIndexes = new HashMap<>( mIndexes ); // copy on write
+        List<ColumnIndex> zColumnIndexes = new ArrayList<>();
+        if ( mIndexes.containsKey( zColumnDefinition ) ) {
+            zColumnIndexes.addAll( mIndexes.get( zColumnDefinition ) );
+        }
+        zColumnIndexes.add( pIndex );
+        zIndexes.put( zColumnDefinition, Collections.unmodifiableList( zColumnIndexes ) );
+        mIndexes = zIndexes;
+        publish();
+        return this;
+    }
+
+    /**
+     * Add (and build) a <b>BitmapIndex</b>.<p>
+     *
+     * @return this (for chaining).
+     */
+    public IndexedTable<R> addBitmapIndex( SimpleColumnDefinition pColumnDefinition ) {
+        return addIndex( new BitmapIndex( pColumnDefinition ) );
+    }
+
+    /**
+     * Add (and build) a <b>SortedIndex</b> (for range, between and comparison predicates).<p>
+     *
+     * @return this (for chaining).
+     */
+    public IndexedTable<R> addSortedIndex( SimpleColumnDefinition pColumnDefinition ) {
+        return addIndex( new SortedIndex( pColumnDefinition ) );
+    }
+
+    /**
+     * Add (and build) a <b>PrefixIndex</b> (for STARTS_WITH, and equality, on a String column).<p>
+     *
+     * @return this (for chaining).
+     */
+    public IndexedTable<R> addPrefixIndex( SimpleColumnDefinition pColumnDefinition ) {
+        return addIndex( new PrefixIndex( pColumnDefinition ) );
+    }
+
+    /**
+     * Add (and build) a <b>TrigramIndex</b> (for CONTAINS, ENDS_WITH, and LIKE, on a String column).<p>
+     *
+     * @return this (for chaining).
+     */
+    public IndexedTable<R> addTrigramIndex( SimpleColumnDefinition pColumnDefinition ) {
+        return addIndex( new TrigramIndex( pColumnDefinition ) );
+    }
+
+    /**
+     * @return the indexes of the column (!null).
+     */
+    public List<ColumnIndex> getIndexes( SimpleColumnDefinition pColumnDefinition ) {
+        return mSnapshot.getIndexes( pColumnDefinition );
+    }
+
+    /**
+     * Add a row (and index it).<p>
+     *
+     * @return the row's ID.
+     */
+    public synchronized int add( R pRow ) {
+        int zRowID = append( pRow );
+        publish();
+        return zRowID;
+    }
+
+    /**
+     * Add the rows (as one change: a snapshot has all or none of them).<p>
+     *
+     * @return this (for chaining).
+     */
+    public synchronized IndexedTable<R> addAll( Iterable<R> pRows ) {
+        IllegalArgument.ifNull( "Rows", pRows );
+        for ( R zRow : pRows ) {
+            append( zRow );
+        }
+        publish();
+        return this;
+    }
+
+    /**
+     * Replace (update) a row; it is checked row by row (NOT by the indexes) until the next <b>compact()</b>.<p>
+     *
+     * @return this (for chaining).
+     */
+    public synchronized IndexedTable<R> set( int pRowID, R pRow ) {
+        return setAll( Collections.singletonMap( pRowID, pRow ) );
+    }
+
+    /**
+     * Replace (update) the rows (as one change: a snapshot has all or none of them).<p>
+     *
+     * @param pRows the new rows by their row IDs (!null).
+     *
+     * @return this (for chaining).
+     */
+    public synchronized IndexedTable<R> setAll( Map<Integer, ? extends R> pRows ) {
+        IllegalArgument.ifNull( "Rows", pRows );
+        Object[][] zSegments = mSegments.clone(); // copy on write
+        RoaringBitmap zUpdated = new RoaringBitmap();
+        for ( Map.Entry<Integer, ? extends R> zEntry : pRows.entrySet() ) {
+            int zRowID = zEntry.getKey();
+            if ( (zRowID < 0) || (mSize <= zRowID) ) {
+                throw new IndexOutOfBoundsException( "RowID: " + zRowID + ", Size: " + mSize );
+            }
+            IllegalArgument.ifNull( "Row", zEntry.getValue() );
+            int zSegment = zRowID >>> TableSnapshot.SEGMENT_BITS;
+            if ( zSegments[zSegment] == mSegments[zSegment] ) {
+                zSegments[zSegment] = mSegments[zSegment].clone();
+            }
+            zSegments[zSegment][zRowID & (TableSnapshot.SEGMENT_SIZE - 1)] = zEntry.getValue();
+            zUpdated.add( zRowID );
+        }
+        mSegments = zSegments;
+        mUpdated = mUpdated.or( zUpdated );
+        publish();
+        return this;
+    }
+
+    /**
+     * Rebuild the indexes (as new ones), so that NO row is checked for being updated.
+     * The writers wait for the rebuild; the readers do NOT (they read the earlier
+     * snapshots, with the earlier indexes, until it is done).<p>
+     *
+     * @return this (for chaining).
+     */
+    public synchronized IndexedTable<R> compact() {
+        Map<SimpleColumnDefinition, List<ColumnIndex>> zIndexes = new HashMap<>();
+        for ( Map.Entry<SimpleColumnDefinition, List<ColumnIndex>> zEntry : mIndexes.entrySet() ) {
+            List<ColumnIndex> zColumnIndexes = new ArrayList<>( zEntry.getValue().size() );
+            for ( ColumnIndex zIndex : zEntry.getValue() ) {
+                ColumnIndex zRebuilt = zIndex.newIndex();
+                build( zRebuilt );
+                zColumnIndexes.add( zRebuilt );
+            }
+            zIndexes.put( zEntry.getKey(), Collections.unmodifiableList( zColumnIndexes ) );
+        }
+        mIndexes = zIndexes;
+        mUpdated = new RoaringBitmap();
+        publish();
+        return this;
+    }
+
+    public int size() {
+        return mSnapshot.size();
+    }
+
+    public R getRow( int pRowID ) {
+        return mSnapshot.getRow( pRowID );
+    }
+
+    /**
+     * @return the (three-valued) selection of all the rows.
+     */
+    public RowSelection select( WhereClause pWhereClause ) {
+        return mSnapshot.select( pWhereClause );
+    }
+
+    /**
+     * @return the (cheapest found) plan for selecting the rows of the WhereClause.
+     */
+    public QueryPlan plan( WhereClause pWhereClause ) {
+        return mSnapshot.plan( pWhereClause );
+    }
+
+    /**
+     * @return the description of the plan for selecting the rows of the WhereClause (see <b>QueryPlan.explain()</b>).
+     */
+    public String explain( WhereClause pWhereClause ) {
+        return mSnapshot.explain( pWhereClause );
+    }
+
+    /**
+     * @return the rows (in row ID order) that the WhereClause selects (is TRUE for).
+     */
+    public List<R> filter( WhereClause pWhereClause ) {
+        return mSnapshot.filter( pWhereClause );
+    }
+
+    public int count( WhereClause pWhereClause ) {
+        return mSnapshot.count( pWhereClause );
+    }
+
+    /**
+     * Index (all the current rows) with the index.
+     */
+    private void build( ColumnIndex pIndex ) {
+        SimpleColumnDefinition zColumnDefinition = pIndex.getColumnDefinition();
+        for ( int i = 0; i < mSize; i++ ) {
+            pIndex.add( i, mAccessor.getValue( row( i ), zColumnDefinition ) );
+        }
+    }
+
+    /**
+     * Add the row (beyond the end of every snapshot) and index it.<p>
+     *
+     * @return the row's ID.
+     */
+    private int append( R pRow ) {
+        IllegalArgument.ifNull( "Row", pRow );
+        int zRowID = mSize;
+        int zSegment = zRowID >>> TableSnapshot.SEGMENT_BITS;
+        if ( zSegment == mSegments.length ) {
+            mSegments = Arrays.copyOf( mSegments, zSegment * 2 );
+        }
+        if ( mSegments[zSegment] == null ) {
+            mSegments[zSegment] = new Object[TableSnapshot.SEGMENT_SIZE];
+        }
+        mSegments[zSegment][zRowID & (TableSnapshot.SEGMENT_SIZE - 1)] = pRow;
+        mSize++;
+        for ( Map.Entry<SimpleColumnDefinition, List<ColumnIndex>> zEntry : mIndexes.entrySet() ) {
+            Object zValue = mAccessor.getValue( pRow, zEntry.getKey() );
+            for ( ColumnIndex zIndex : zEntry.getValue() ) {
+                zIndex.add( zRowID, zValue );
+            }
+        }
+        return zRowID;
+    }
+
+    @SuppressWarnings("unchecked")
+    private R row( int pRowID ) {
+        return (R) mSegments[pRowID >>> TableSnapshot.SEGMENT_BITS][pRowID & (TableSnapshot.SEGMENT_SIZE - 1)];
+    }
+
+    /**
+     * Publish (the volatile write, after all the writes of the change) the next snapshot.
+     */
+    private void publish() {
+        mSnapshot = new TableSnapshot<>( this, mSnapshot.getVersion() + 1, mSize, mSegments, mIndexes, mUpdated );
+    }
+
+    @Override
+    public String toString() {
+        return "IndexedTable(" + mSnapshot + ")";
+    }
+}
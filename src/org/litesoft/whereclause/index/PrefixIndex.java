@@ -0,0 +1,272 @@
+// This Source Code is in the Public Domain per: http://unlicense.org
+package org.litesoft.whereclause.index;
+
+import org.litesoft.whereclause.SimpleColumnDefinition;
+import org.litesoft.whereclause.WhereClauseType;
+import org.litesoft.whereclause.WhereClauseValueSupport;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseColumnAndLikeValue;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseColumnAndValue;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseColumnAnd_N_Values;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseColumnReference;
+import org.litesoft.whereclause.nonpublic.IllegalArgument;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A <b>ColumnIndex</b> for String columns: the distinct (normalized) values sorted and
+ * front coded (see <b>FrontCodedStrings</b>), with the row IDs of each value, that
+ * answers STARTS_WITH, EQUALS, and IS_ANY_OF (in both modes) in O(pattern length +
+ * results): the values with a prefix are consecutive, as are their row IDs.<p>
+ * <a href="../../../Licence.txt">Licence</a><br>
+ * <p/>
+ * For a column with a Search Column the values (and the prefixes) are lower cased, just
+ * as the database compares them (and as a case folding <b>LikeMatcher</b> matches them).
+ * Only String values (of the column, and of the leaves) are answered; a column with any
+ * other value is left to the <b>WhereClauseEvaluator</b> (see <b>canSelect()</b>).<p>
+ * <p/>
+ * The values added since the last select are sorted, and merged in by the next select.<p>
+ */
+public class PrefixIndex implements ColumnIndex {
+    private final SimpleColumnDefinition mColumnDefinition;
+    private final RoaringBitmap mNulls = new RoaringBitmap();
+    private int mNonStrings;
+    private FrontCodedStrings mValues = new FrontCodedStrings( new ArrayList<String>() );
+    private int[] mOffsets = {0}; // of each value's row IDs (and the end)
+    private int[] mRowIDs = {};
+    private String[] mAddedValues = new String[16];
+    private int[] mAddedRowIDs = new int[16];
+    private int mAdded;
+
+    public PrefixIndex( SimpleColumnDefinition pColumnDefinition ) {
+        IllegalArgument.ifNull( "ColumnDefinition", mColumnDefinition = pColumnDefinition );
+    }
+
+    @Override
+    public SimpleColumnDefinition getColumnDefinition() {
+        return mColumnDefinition;
+    }
+
+    @Override
+    public PrefixIndex newIndex() {
+        return new PrefixIndex( mColumnDefinition );
+    }
+
+    @Override
+    public synchronized void add( int pRowID, Object pValue ) {
+        Object zValue = WhereClauseValueSupport.normalizeValue( mColumnDefinition, pValue );
+        if ( zValue == null ) {
+            mNulls.add( pRowID );
+            return;
+        }
+        if ( !(zValue instanceof String) ) {
+            mNonStrings++;
+            return;
+        }
+        if ( mAdded == mAddedValues.length ) {
+            mAddedValues = Arrays.copyOf( mAddedValues, mAdded * 2 );
+            mAddedRowIDs = Arrays.copyOf( mAddedRowIDs, mAddedValues.length );
+        }
+        mAddedValues[mAdded] = (String) zValue;
+        mAddedRowIDs[mAdded++] = pRowID;
+    }
+
+    /**
+     * @return the number of distinct (NOT null) values.
+     */
+    public synchronized int getDistinctValues() {
+        merge();
+        return mValues.size();
+    }
+
+    /**
+     * @return the (approximate) size in bytes (of the values and their row IDs).
+     */
+    public synchronized long getSizeInBytes() {
+        merge();
+        return mValues.sizeInBytes() + 4L * (mOffsets.length + mRowIDs.length);
+    }
+
+    @Override
+    public synchronized boolean canSelect( AbstractWhereClauseColumnReference pLeaf ) {
+        if ( !mColumnDefinition.equals( pLeaf.getColumnDefinition() ) || (mNonStrings != 0) ) {
+            return false;
+        }
+        switch ( pLeaf.getType() ) {
+            case STARTS_WITH:
+                return true;
+            case EQUALS:
+                return isString( ((AbstractWhereClauseColumnAndValue) pLeaf).getValue() );
+            case IS_ANY_OF:
+                for ( Object zValue : ((AbstractWhereClauseColumnAnd_N_Values) pLeaf).getValues() ) {
+                    if ( (zValue != null) && !isString( zValue ) ) {
+                        return false;
+                    }
+                }
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private boolean isString( Object pValue ) {
+        return WhereClauseValueSupport.normalizeValue( mColumnDefinition, pValue ) instanceof String;
+    }
+
+    @Override
+    public RowSelection select( AbstractWhereClauseColumnReference pLeaf, RoaringBitmap pRows ) {
+        RoaringBitmap zMatches;
+        RoaringBitmap zNulls;
+        synchronized ( this ) {
+            merge();
+            zNulls = pRows.and( mNulls );
+            switch ( pLeaf.getType() ) {
+                case STARTS_WITH:
+                    String zPrefix = prefix( (AbstractWhereClauseColumnAndLikeValue) pLeaf );
+                    zMatches = rows( mValues.bound( zPrefix, true, false ), mValues.bound( zPrefix, true, true ) );
+                    break;
+                case EQUALS:
+                    zMatches = rows( normalize( ((AbstractWhereClauseColumnAndValue) pLeaf).getValue() ) );
+                    if ( pLeaf.isNot() ) { // null inclusive: "(col <> v) OR (col IS NULL)"
+                        return new RowSelection( pRows.andNot( zMatches ), new RoaringBitmap() );
+                    }
+                    break;
+                case IS_ANY_OF:
+                    Object[] zValues = ((AbstractWhereClauseColumnAnd_N_Values) pLeaf).getValues();
+                    List<RoaringBitmap> zRows = new ArrayList<>( zValues.length );
+                    for ( Object zValue : zValues ) {
+                        zRows.add( rows( normalize( zValue ) ) );
+                    }
+                    zMatches = RoaringBitmap.or( zRows );
+                    break;
+                default:
+                    throw IllegalArgument.exception( "Leaf", "NOT selectable: " + pLeaf );
+            }
+        }
+        return new RowSelection( pLeaf.isNot() ? pRows.andNot( zMatches ).andNot( zNulls ) : pRows.and( zMatches ), zNulls );
+    }
+
+    @Override
+    public synchronized long estimateRows( AbstractWhereClauseColumnReference pLeaf ) {
+        merge();
+        long zValues = mRowIDs.length; // NOT null
+        switch ( pLeaf.getType() ) {
+            case STARTS_WITH:
+                String zPrefix = prefix( (AbstractWhereClauseColumnAndLikeValue) pLeaf );
+                long zStartsWith = mOffsets[mValues.bound( zPrefix, true, true )] - mOffsets[mValues.bound( zPrefix, true, false )];
+                return pLeaf.isNot() ? (zValues - zStartsWith) : zStartsWith;
+            case EQUALS:
+                long zEquals = count( normalize( ((AbstractWhereClauseColumnAndValue) pLeaf).getValue() ) );
+                return pLeaf.isNot() ? (zValues + mNulls.getCardinality() - zEquals) : zEquals;
+            case IS_ANY_OF:
+                long zAnyOf = 0; // the values' row IDs are disjoint (unless a value is repeated)
+                for ( Object zValue : ((AbstractWhereClauseColumnAnd_N_Values) pLeaf).getValues() ) {
+                    zAnyOf += count( normalize( zValue ) );
+                }
+                zAnyOf = Math.min( zAnyOf, zValues );
+                return pLeaf.isNot() ? (zValues - zAnyOf) : zAnyOf;
+            default:
+                throw IllegalArgument.exception( "Leaf", "NOT selectable: " + pLeaf );
+        }
+    }
+
+    @Override
+    public double estimateCost( AbstractWhereClauseColumnReference pLeaf ) {
+        int zLookups = (pLeaf.getType() == WhereClauseType.IS_ANY_OF) ? ((AbstractWhereClauseColumnAnd_N_Values) pLeaf).getValues().length : 1;
+        return (2 * LOOKUP_COST * zLookups) + (ROW_ID_COST * estimateRows( pLeaf ));
+    }
+
+    private String prefix( AbstractWhereClauseColumnAndLikeValue pLeaf ) {
+        return mColumnDefinition.hasSearchColumn() ? pLeaf.getValue().toLowerCase() : pLeaf.getValue();
+    }
+
+    private String normalize( Object pValue ) {
+        return (String) WhereClauseValueSupport.normalizeValue( mColumnDefinition, pValue );
+    }
+
+    /**
+     * @return the row IDs of the value (none if null).
+     */
+    private RoaringBitmap rows( String pValue ) {
+        if ( pValue == null ) {
+            return new RoaringBitmap();
+        }
+        int zFrom = mValues.bound( pValue, false, false );
+        return rows( zFrom, mValues.bound( pValue, false, true ) );
+    }
+
+    /**
+     * @return the number of rows of the value (none if null).
+     */
+    private int count( String pValue ) {
+        if ( pValue == null ) {
+            return 0;
+        }
+        return mOffsets[mValues.bound( pValue, false, true )] - mOffsets[mValues.bound( pValue, false, false )];
+    }
+
+    /**
+     * @return the row IDs of the values pFrom (inclusive) to pTo (exclusive).
+     */
+    private RoaringBitmap rows( int pFrom, int pTo ) {
+        return RoaringBitmap.of( mRowIDs, mOffsets[pFrom], mOffsets[pTo] );
+    }
+
+    /**
+     * Sort the values added since the last merge, and merge them (and their row IDs) in.
+     */
+    private void merge() {
+        if ( mAdded == 0 ) {
+            return;
+        }
+        final String[] zAddedValues = mAddedValues;
+        Integer[] zOrder = new Integer[mAdded];
+        for ( int i = 0; i < mAdded; i++ ) {
+            zOrder[i] = i;
+        }
+        Arrays.sort( zOrder, new Comparator<Integer>() { // stable, so each value's row IDs stay ascending
+            @Override
+            public int compare( Integer pIndex1, Integer pIndex2 ) {
+                return zAddedValues[pIndex1].compareTo( zAddedValues[pIndex2] );
+            }
+        } );
+        int zExisting = mValues.size();
+        List<String> zValues = new ArrayList<>( zExisting + mAdded );
+        int[] zOffsets = new int[zExisting + mAdded + 1];
+        int[] zRowIDs = new int[mRowIDs.length + mAdded];
+        int zAt = 0;
+        int i = 0, j = 0;
+        String zOld = (zExisting == 0) ? null : mValues.get( 0 );
+        while ( (zOld != null) || (j < mAdded) ) {
+            String zNew = (j < mAdded) ? zAddedValues[zOrder[j]] : null;
+            int zComparison = (zOld == null) ? 1 : (zNew == null) ? -1 : zOld.compareTo( zNew );
+            zOffsets[zValues.size()] = zAt;
+            zValues.add( (zComparison <= 0) ? zOld : zNew );
+            if ( zComparison <= 0 ) { // the existing (earlier) row IDs first
+                int zCount = mOffsets[i + 1] - mOffsets[i];
+                System.arraycopy( mRowIDs, mOffsets[i], zRowIDs, zAt, zCount );
+                zAt += zCount;
+                zOld = (++i < zExisting) ? mValues.get( i ) : null;
+            }
+            if ( zComparison >= 0 ) {
+                do {
+                    zRowIDs[zAt++] = mAddedRowIDs[zOrder[j++]];
+                } while ( (j < mAdded) && zAddedValues[zOrder[j]].equals( zNew ) );
+            }
+        }
+        zOffsets[zValues.size()] = zAt;
+        mValues = new FrontCodedStrings( zValues );
+        mOffsets = Arrays.copyOf( zOffsets, zValues.size() + 1 );
+        mRowIDs = zRowIDs;
+        mAddedValues = new String[16];
+        mAddedRowIDs = new int[16];
+        mAdded = 0;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "PrefixIndex(" + mColumnDefinition.getColumnName() + ": " + (mValues.size() + mAdded) + " values)";
+    }
+}
@@ -0,0 +1,368 @@
+// This Source Code is in the Public Domain per: http://unlicense.org
+package org.litesoft.whereclause.index;
+
+import org.litesoft.whereclause.WhereClause;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseColumnReference;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The plan (chosen by the <b>QueryPlanner</b>) for selecting the rows of a
+ * <b>WhereClause</b> from an <b>IndexedTable</b>: a tree of index lookups, row by row
+ * checks (of the residual parts), and the ANDs, ORs, and NOTs of them, with the
+ * estimated rows (TRUE) and cost of each.<p>
+ * <a href="../../../Licence.txt">Licence</a><br>
+ * <p/>
+ * The children of an AND (or OR) are executed in the planned order, each against just
+ * the rows that are NOT yet FALSE (or NOT yet TRUE).  <b>explain()</b> describes the
+ * plan, e.g.:<p>
+ * <pre>
+ *      AND (rows ~ 12, cost ~ 38.5)
+ *          Lookup BitmapIndex(StatusCol: 4 values): StatusCol = 'Open' (rows ~ 120, cost ~ 26.0)
+ *          Check: NameCol LIKE '%smith%' (rows ~ 12, cost ~ 12.5)
+ * </pre>
+ * A QueryPlan is immutable, but its estimates are those of the <b>TableSnapshot</b> it
+ * was planned for.<p>
+ */
+public abstract class QueryPlan {
+    private final double mEstimatedRows, mEstimatedCost;
+
+    QueryPlan( double pEstimatedRows, double pEstimatedCost ) {
+        mEstimatedRows = pEstimatedRows;
+        mEstimatedCost = pEstimatedCost;
+    }
+
+    /**
+     * @return the estimated number of rows that the plan selects (as TRUE).
+     */
+    public double getEstimatedRows() {
+        return mEstimatedRows;
+    }
+
+    /**
+     * @return the estimated cost (in the units of <b>ColumnIndex.LOOKUP_COST</b>).
+     */
+    public double getEstimatedCost() {
+        return mEstimatedCost;
+    }
+
+    /**
+     * @return the part of the estimated cost that does NOT grow with the candidates (the index lookups).
+     */
+    abstract double getFixedCost();
+
+    /**
+     * @return this plan (the same lookups and checks, in the same order) against pFactor
+     * times the candidates it was planned against (as the parts are assumed to be
+     * independent, its rows and the rest of its cost are in proportion to them).
+     */
+    abstract QueryPlan scaled( double pFactor );
+
+    double scaledRows( double pFactor ) {
+        return mEstimatedRows * pFactor;
+    }
+
+    double scaledCost( double pFactor ) {
+        double zFixedCost = getFixedCost();
+        return zFixedCost + ((mEstimatedCost - zFixedCost) * pFactor);
+    }
+
+    static List<QueryPlan> scaled( List<QueryPlan> pPlans, double pFactor ) {
+        List<QueryPlan> zScaled = new ArrayList<>( pPlans.size() );
+        for ( QueryPlan zPlan : pPlans ) {
+            zScaled.add( zPlan.scaled( pFactor ) );
+        }
+        return zScaled;
+    }
+
+    static double fixedCostOf( List<QueryPlan> pPlans ) {
+        double zFixedCost = 0.0;
+        for ( QueryPlan zPlan : pPlans ) {
+            zFixedCost += zPlan.getFixedCost();
+        }
+        return zFixedCost;
+    }
+
+    /**
+     * @return the (indented, one line per node) description of the plan.
+     */
+    public String explain() {
+        StringBuilder sb = new StringBuilder();
+        explain( sb, "" );
+        return sb.toString();
+    }
+
+    private void explain( StringBuilder sb, String pIndent ) {
+        sb.append( pIndent ).append( describe() ) //
+                .append( String.format( Locale.US, " (rows ~ %.0f, cost ~ %.1f)", mEstimatedRows, mEstimatedCost ) );
+        for ( QueryPlan zChild : getChildren() ) {
+            sb.append( '\n' );
+            zChild.explain( sb, pIndent + "    " );
+        }
+    }
+
+    /**
+     * @return the description of (just) this node.
+     */
+    abstract String describe();
+
+    List<QueryPlan> getChildren() {
+        return Collections.emptyList();
+    }
+
+    /**
+     * @return the SQL of the WhereClause (without the "WHERE ").
+     */
+    static String sql( WhereClause pWhereClause ) {
+        return pWhereClause.toSQL().substring( "WHERE ".length() );
+    }
+
+    /**
+     * @return the selection of (just) the rows in pRows.
+     */
+    abstract RowSelection execute( TableSnapshot<?> pSnapshot, RoaringBitmap pRows );
+
+    @Override
+    public String toString() {
+        return explain();
+    }
+
+    /**
+     * A leaf answered by an index.
+     */
+    static class Lookup extends QueryPlan {
+        private final AbstractWhereClauseColumnReference mLeaf;
+        private final ColumnIndex mIndex;
+
+        Lookup( AbstractWhereClauseColumnReference pLeaf, ColumnIndex pIndex, double pEstimatedRows, double pEstimatedCost ) {
+            super( pEstimatedRows, pEstimatedCost );
+            mLeaf = pLeaf;
+            mIndex = pIndex;
+        }
+
+        @Override
+        String describe() {
+            return "Lookup " + mIndex + ": " + sql( mLeaf );
+        }
+
+        @Override
+        double getFixedCost() {
+            return getEstimatedCost() - (ColumnIndex.ROW_ID_COST * getEstimatedRows()); // the index's estimateCost()
+        }
+
+        @Override
+        QueryPlan scaled( double pFactor ) {
+            return new Lookup( mLeaf, mIndex, scaledRows( pFactor ), scaledCost( pFactor ) );
+        }
+
+        @Override
+        RowSelection execute( TableSnapshot<?> pSnapshot, RoaringBitmap pRows ) {
+            return mIndex.select( mLeaf, pRows );
+        }
+    }
+
+    /**
+     * A (residual) WhereClause checked row by row.
+     */
+    static class Check extends QueryPlan {
+        private final WhereClause mWhereClause;
+
+        Check( WhereClause pWhereClause, double pEstimatedRows, double pEstimatedCost ) {
+            super( pEstimatedRows, pEstimatedCost );
+            mWhereClause = pWhereClause;
+        }
+
+        @Override
+        String describe() {
+            return "Check: " + sql( mWhereClause );
+        }
+
+        @Override
+        double getFixedCost() {
+            return 0.0;
+        }
+
+        @Override
+        QueryPlan scaled( double pFactor ) {
+            return new Check( mWhereClause, scaledRows( pFactor ), scaledCost( pFactor ) );
+        }
+
+        @Override
+        RowSelection execute( TableSnapshot<?> pSnapshot, RoaringBitmap pRows ) {
+            return pSnapshot.check( mWhereClause, pRows );
+        }
+    }
+
+    /**
+     * The rows updated since the indexes were built checked (as their indexed values may
+     * be stale), and the others by the (indexed) plan.
+     */
+    static class Updated extends QueryPlan {
+        private final WhereClause mWhereClause;
+        private final RoaringBitmap mUpdated;
+        private final QueryPlan mIndexed;
+
+        Updated( WhereClause pWhereClause, RoaringBitmap pUpdated, QueryPlan pIndexed, double pEstimatedRows, double pEstimatedCost ) {
+            super( pEstimatedRows, pEstimatedCost );
+            mWhereClause = pWhereClause;
+            mUpdated = pUpdated;
+            mIndexed = pIndexed;
+        }
+
+        @Override
+        String describe() {
+            return "Check the " + mUpdated.getCardinality() + " updated rows, and the others by";
+        }
+
+        /**
+         * @return the cost of checking the updated rows (taken as fixed, as at most all of them are checked).
+         */
+        private double getUpdatedCost() {
+            return getEstimatedCost() - mIndexed.getEstimatedCost();
+        }
+
+        @Override
+        double getFixedCost() {
+            return getUpdatedCost() + mIndexed.getFixedCost();
+        }
+
+        @Override
+        QueryPlan scaled( double pFactor ) {
+            return new Updated( mWhereClause, mUpdated, mIndexed.scaled( pFactor ), scaledRows( pFactor ), scaledCost( pFactor ) );
+        }
+
+        @Override
+        List<QueryPlan> getChildren() {
+            return Collections.singletonList( mIndexed );
+        }
+
+        @Override
+        RowSelection execute( TableSnapshot<?> pSnapshot, RoaringBitmap pRows ) {
+            RowSelection zIndexed = mIndexed.execute( pSnapshot, pRows.andNot( mUpdated ) );
+            RowSelection zUpdated = pSnapshot.check( mWhereClause, pRows.and( mUpdated ) );
+            return new RowSelection( zIndexed.getTrue().or( zUpdated.getTrue() ), zIndexed.getUnknown().or( zUpdated.getUnknown() ) );
+        }
+    }
+
+    static class And extends QueryPlan {
+        private final List<QueryPlan> mChildren;
+
+        And( List<QueryPlan> pChildren, double pEstimatedRows, double pEstimatedCost ) {
+            super( pEstimatedRows, pEstimatedCost );
+            mChildren = pChildren;
+        }
+
+        @Override
+        String describe() {
+            return "AND";
+        }
+
+        @Override
+        double getFixedCost() {
+            return fixedCostOf( mChildren );
+        }
+
+        @Override
+        QueryPlan scaled( double pFactor ) {
+            return new And( scaled( mChildren, pFactor ), scaledRows( pFactor ), scaledCost( pFactor ) );
+        }
+
+        @Override
+        List<QueryPlan> getChildren() {
+            return mChildren;
+        }
+
+        @Override
+        RowSelection execute( TableSnapshot<?> pSnapshot, RoaringBitmap pRows ) {
+            RowSelection zSelection = RowSelection.all( pRows );
+            for ( QueryPlan zChild : mChildren ) {
+                RoaringBitmap zCandidates = zSelection.getCandidates();
+                if ( zCandidates.isEmpty() ) {
+                    break;
+                }
+                RowSelection zChildSelection = zChild.execute( pSnapshot, zCandidates );
+                zSelection = zSelection.getUnknown().isEmpty() ? zChildSelection : zSelection.and( zChildSelection ); // the child's is within the candidates
+            }
+            return zSelection;
+        }
+    }
+
+    static class Or extends QueryPlan {
+        private final List<QueryPlan> mChildren;
+
+        Or( List<QueryPlan> pChildren, double pEstimatedRows, double pEstimatedCost ) {
+            super( pEstimatedRows, pEstimatedCost );
+            mChildren = pChildren;
+        }
+
+        @Override
+        String describe() {
+            return "OR";
+        }
+
+        @Override
+        double getFixedCost() {
+            return fixedCostOf( mChildren );
+        }
+
+        @Override
+        QueryPlan scaled( double pFactor ) {
+            return new Or( scaled( mChildren, pFactor ), scaledRows( pFactor ), scaledCost( pFactor ) );
+        }
+
+        @Override
+        List<QueryPlan> getChildren() {
+            return mChildren;
+        }
+
+        @Override
+        RowSelection execute( TableSnapshot<?> pSnapshot, RoaringBitmap pRows ) {
+            RowSelection zSelection = RowSelection.none();
+            for ( QueryPlan zChild : mChildren ) {
+                RoaringBitmap zUndecided = pRows.andNot( zSelection.getTrue() );
+                if ( zUndecided.isEmpty() ) {
+                    break;
+                }
+                zSelection = zSelection.or( zChild.execute( pSnapshot, zUndecided ) );
+            }
+            return zSelection;
+        }
+    }
+
+    static class Not extends QueryPlan {
+        private final QueryPlan mChild;
+
+        Not( QueryPlan pChild, double pEstimatedRows, double pEstimatedCost ) {
+            super( pEstimatedRows, pEstimatedCost );
+            mChild = pChild;
+        }
+
+        @Override
+        String describe() {
+            return "NOT";
+        }
+
+        @Override
+        double getFixedCost() {
+            return mChild.getFixedCost();
+        }
+
+        @Override
+        QueryPlan scaled( double pFactor ) {
+            return new Not( mChild.scaled( pFactor ), scaledRows( pFactor ), scaledCost( pFactor ) );
+        }
+
+        @Override
+        List<QueryPlan> getChildren() {
+            return Collections.singletonList( mChild );
+        }
+
+        @Override
+        RowSelection execute( TableSnapshot<?> pSnapshot, RoaringBitmap pRows ) {
+            return mChild.execute( pSnapshot, pRows ).not( pRows );
+        }
+    }
+}
@@ -0,0 +1,258 @@
+// This Source Code is in the Public Domain per: http://unlicense.org
+package org.litesoft.whereclause.index;
+
+import org.litesoft.whereclause.WhereClause;
+import org.litesoft.whereclause.WhereClauseFactory;
+import org.litesoft.whereclause.WhereClauseType;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseAssociativeList;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseColumnReference;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseWrapper;
+import org.litesoft.whereclause.nonpublic.IllegalArgument;
+import org.litesoft.whereclause.statistics.CostBasedOrderer;
+import org.litesoft.whereclause.statistics.CostModel;
+import org.litesoft.whereclause.statistics.SelectivitySource;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Plans (see <b>QueryPlan</b>) the selection of the rows of a <b>WhereClause</b> from
+ * an <b>IndexedTable</b>, choosing, by their estimated costs, among the table's indexes
+ * and checking (the residual parts) row by row.<p>
+ * <a href="../../../Licence.txt">Licence</a><br>
+ * <p/>
+ * The costs are in the units of <b>ColumnIndex.LOOKUP_COST</b> (checking one row for an
+ * EQUALS).  Each part of the tree is planned against the (estimated) number of rows it
+ * will be executed against, its candidates:<p>
+ * <pre>
+ *      leaf:  the cheapest of its indexes (their estimateCost(), plus ROW_ID_COST per
+ *             row selected), or a check (of each candidate), whichever is cheaper
+ *      AND:   its children greedily ordered, each next the one that rejects the most
+ *             (1 - s) per unit of cost against the candidates that are left (those the
+ *             children before it did NOT reject), or a check of the whole AND
+ *      OR:    the same, by the acceptance (s) per unit of cost
+ *      NOT:   its child
+ * </pre>
+ * (an AND or OR all of whose children would be checked is checked as a whole), and
+ * where the selectivities (s) of the indexed leaves are their indexes' estimateRows()
+ * (over the table's rows), and of the rest are from the <b>SelectivitySource</b>; and
+ * the cost of a check is the expected (short circuited) cost of the <b>CostModel</b>
+ * (see <b>CostBasedOrderer.costOf()</b>) per candidate.  The parts are assumed to be
+ * independent.<p>
+ * <p/>
+ * Each child of an AND or OR is planned once, against all of the list's candidates; as
+ * the list is ordered, the child's rows and per candidate cost are scaled to the
+ * candidates that are left (and a check of it taken instead when that is then cheaper),
+ * so the planning is linear in the size of the tree (times its depth).<p>
+ * <p/>
+ * The rows updated since the indexes were built are checked (as their indexed values
+ * may be stale), and the rest are planned as above.<p>
+ */
+final class QueryPlanner {
+    private final TableSnapshot<?> mSnapshot;
+    private final SelectivitySource mSelectivitySource;
+    private final CostBasedOrderer mCheckCosts;
+
+    QueryPlanner( TableSnapshot<?> pSnapshot, SelectivitySource pSelectivitySource, CostModel pCostModel ) {
+        IllegalArgument.ifNull( "Snapshot", mSnapshot = pSnapshot );
+        IllegalArgument.ifNull( "SelectivitySource", mSelectivitySource = pSelectivitySource );
+        mCheckCosts = new CostBasedOrderer( WhereClauseFactory.INSTANCE, pSelectivitySource, pCostModel );
+    }
+
+    /**
+     * @return the cheapest plan (found) for all the snapshot's rows.
+     */
+    QueryPlan plan( WhereClause pWhereClause ) {
+        IllegalArgument.ifNull( "WhereClause", pWhereClause );
+        RoaringBitmap zUpdated = mSnapshot.getUpdated();
+        if ( zUpdated.isEmpty() ) {
+            return plan( pWhereClause, mSnapshot.size() );
+        }
+        int zUpdatedRows = zUpdated.getCardinality();
+        QueryPlan zIndexed = plan( pWhereClause, mSnapshot.size() - zUpdatedRows );
+        return new QueryPlan.Updated( pWhereClause, zUpdated, zIndexed, //
+                                      zIndexed.getEstimatedRows() + (zUpdatedRows * selectivityOf( pWhereClause )), //
+                                      zIndexed.getEstimatedCost() + (zUpdatedRows * mCheckCosts.costOf( pWhereClause )) );
+    }
+
+    private QueryPlan plan( WhereClause pWhereClause, double pCandidates ) {
+        return plan( pWhereClause, pCandidates, check( pWhereClause, pCandidates ) );
+    }
+
+    /**
+     * @param pCheck the plan of checking the WhereClause (for each candidate).
+     */
+    private QueryPlan plan( WhereClause pWhereClause, double pCandidates, QueryPlan pCheck ) {
+        if ( !hasIndexedLeaf( pWhereClause ) ) {
+            return pCheck;
+        }
+        QueryPlan zPlan;
+        switch ( pWhereClause.getType() ) {
+            case AND:
+            case OR:
+                zPlan = planList( pWhereClause.getType() == WhereClauseType.AND, //
+                                  ((AbstractWhereClauseAssociativeList) pWhereClause).getWhereClauseList(), pCandidates );
+                break;
+            case NOT:
+                QueryPlan zChild = plan( ((AbstractWhereClauseWrapper) pWhereClause).getWrappedWhereClause(), pCandidates );
+                zPlan = new QueryPlan.Not( zChild, pCandidates - zChild.getEstimatedRows(), //
+                                           zChild.getEstimatedCost() + (ColumnIndex.ROW_ID_COST * pCandidates) );
+                break;
+            default:
+                zPlan = planLookup( (AbstractWhereClauseColumnReference) pWhereClause, pCandidates );
+                break;
+        }
+        return ((zPlan == null) || (pCheck.getEstimatedCost() < zPlan.getEstimatedCost())) ? pCheck : zPlan;
+    }
+
+    private QueryPlan check( WhereClause pWhereClause, double pCandidates ) {
+        return new QueryPlan.Check( pWhereClause, pCandidates * selectivityOf( pWhereClause ), //
+                                    pCandidates * mCheckCosts.costOf( pWhereClause ) );
+    }
+
+    private QueryPlan planLookup( AbstractWhereClauseColumnReference pLeaf, double pCandidates ) {
+        ColumnIndex zBest = null;
+        double zBestCost = Double.POSITIVE_INFINITY;
+        for ( ColumnIndex zIndex : mSnapshot.getIndexes( pLeaf.getColumnDefinition() ) ) {
+            if ( zIndex.canSelect( pLeaf ) ) {
+                double zCost = zIndex.estimateCost( pLeaf );
+                if ( zCost < zBestCost ) {
+                    zBest = zIndex;
+                    zBestCost = zCost;
+                }
+            }
+        }
+        double zRows = pCandidates * selectivityOf( zBest, pLeaf );
+        return new QueryPlan.Lookup( pLeaf, zBest, zRows, zBestCost + (ColumnIndex.ROW_ID_COST * zRows) ); // and intersecting with the candidates
+    }
+
+    /**
+     * @return the plan, or null if (planned) all of the children would be checked.
+     */
+    private QueryPlan planList( boolean pAnd, List<WhereClause> pChildren, double pCandidates ) {
+        List<Scalable> zPlans = new ArrayList<>( pChildren.size() ); // each child planned once
+        List<Scalable> zChecks = new ArrayList<>( pChildren.size() );
+        for ( WhereClause zChild : pChildren ) {
+            QueryPlan zCheck = check( zChild, pCandidates );
+            QueryPlan zPlan = plan( zChild, pCandidates, zCheck );
+            zPlans.add( new Scalable( zPlan, pCandidates ) );
+            zChecks.add( (zPlan == zCheck) ? null : new Scalable( zCheck, pCandidates ) );
+        }
+        List<QueryPlan> zOrdered = new ArrayList<>( pChildren.size() );
+        double zCandidates = pCandidates;
+        double zCost = 0.0;
+        boolean zAllChecks = true;
+        while ( !zPlans.isEmpty() ) {
+            int zBestAt = 0;
+            Scalable zBest = null;
+            double zBestRank = -1.0;
+            for ( int i = 0; i < zPlans.size(); i++ ) {
+                Scalable zPlan = zPlans.get( i );
+                Scalable zCheck = zChecks.get( i );
+                if ( (zCheck != null) && (zCheck.costFor( zCandidates ) < zPlan.costFor( zCandidates )) ) {
+                    zPlan = zCheck; // e.g. a lookup costs more than checking the few candidates left
+                }
+                double zSelectivity = (zCandidates == 0.0) ? 0.0 : zPlan.mSelectivity;
+                double zRank = (pAnd ? 1.0 - zSelectivity : zSelectivity) / Math.max( zPlan.costFor( zCandidates ), Double.MIN_VALUE );
+                if ( zRank > zBestRank ) {
+                    zBestAt = i;
+                    zBest = zPlan;
+                    zBestRank = zRank;
+                }
+            }
+            zPlans.remove( zBestAt );
+            zChecks.remove( zBestAt );
+            QueryPlan zPlan = zBest.mPlan.scaled( (pCandidates == 0.0) ? 1.0 : zCandidates / pCandidates );
+            zOrdered.add( zPlan );
+            zCost += zPlan.getEstimatedCost();
+            zAllChecks &= (zPlan instanceof QueryPlan.Check);
+            zCandidates = pAnd ? zPlan.getEstimatedRows() : zCandidates - zPlan.getEstimatedRows();
+        }
+        if ( zAllChecks ) { // checking each row (once) for the whole list is cheaper
+            return null;
+        }
+        return pAnd ? new QueryPlan.And( zOrdered, zCandidates, zCost ) : //
+               new QueryPlan.Or( zOrdered, pCandidates - zCandidates, zCost );
+    }
+
+    /**
+     * @return the (estimated) fraction of the rows that the WhereClause is TRUE for.
+     */
+    private double selectivityOf( WhereClause pWhereClause ) {
+        switch ( pWhereClause.getType() ) {
+            case AND:
+            case OR:
+                boolean zAnd = (pWhereClause.getType() == WhereClauseType.AND);
+                double zSelectivity = 1.0; // of the AND, or NOT of the OR
+                for ( WhereClause zChild : ((AbstractWhereClauseAssociativeList) pWhereClause).getWhereClauseList() ) {
+                    zSelectivity *= zAnd ? selectivityOf( zChild ) : 1.0 - selectivityOf( zChild );
+                }
+                return zAnd ? zSelectivity : 1.0 - zSelectivity;
+            case NOT:
+                return 1.0 - selectivityOf( ((AbstractWhereClauseWrapper) pWhereClause).getWrappedWhereClause() );
+            default:
+                if ( pWhereClause instanceof AbstractWhereClauseColumnReference ) {
+                    AbstractWhereClauseColumnReference zLeaf = (AbstractWhereClauseColumnReference) pWhereClause;
+                    ColumnIndex zIndex = indexFor( zLeaf );
+                    if ( zIndex != null ) {
+                        return selectivityOf( zIndex, zLeaf );
+                    }
+                }
+                double zEstimate = mSelectivitySource.selectivityOf( pWhereClause );
+                return Double.isNaN( zEstimate ) ? 0.5 : Math.max( 0.0, Math.min( 1.0, zEstimate ) );
+        }
+    }
+
+    private double selectivityOf( ColumnIndex pIndex, AbstractWhereClauseColumnReference pLeaf ) {
+        int zRows = mSnapshot.size();
+        return (zRows == 0) ? 0.0 : Math.min( 1.0, (double) pIndex.estimateRows( pLeaf ) / zRows );
+    }
+
+    private boolean hasIndexedLeaf( WhereClause pWhereClause ) {
+        if ( pWhereClause instanceof AbstractWhereClauseAssociativeList ) {
+            for ( WhereClause zChild : ((AbstractWhereClauseAssociativeList) pWhereClause).getWhereClauseList() ) {
+                if ( hasIndexedLeaf( zChild ) ) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        if ( pWhereClause instanceof AbstractWhereClauseWrapper ) {
+            return hasIndexedLeaf( ((AbstractWhereClauseWrapper) pWhereClause).getWrappedWhereClause() );
+        }
+        return (pWhereClause instanceof AbstractWhereClauseColumnReference) && //
+               (indexFor( (AbstractWhereClauseColumnReference) pWhereClause ) != null);
+    }
+
+    /**
+     * @return the (first) index that can answer the leaf, or null if none.
+     */
+    private ColumnIndex indexFor( AbstractWhereClauseColumnReference pLeaf ) {
+        for ( ColumnIndex zIndex : mSnapshot.getIndexes( pLeaf.getColumnDefinition() ) ) {
+            if ( zIndex.canSelect( pLeaf ) ) {
+                return zIndex;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * A child's plan (against all of its list's candidates), with its rows and cost as
+     * functions of the candidates (as the parts are assumed to be independent).
+     */
+    private static final class Scalable {
+        private final QueryPlan mPlan;
+        private final double mSelectivity, mFixedCost, mCostPerCandidate;
+
+        Scalable( QueryPlan pPlan, double pCandidates ) {
+            mPlan = pPlan;
+            mFixedCost = pPlan.getFixedCost();
+            mSelectivity = (pCandidates == 0.0) ? 0.0 : pPlan.getEstimatedRows() / pCandidates;
+            mCostPerCandidate = (pCandidates == 0.0) ? 0.0 : (pPlan.getEstimatedCost() - mFixedCost) / pCandidates;
+        }
+
+        double costFor( double pCandidates ) {
+            return mFixedCost + (mCostPerCandidate * pCandidates);
+        }
+    }
+}
@@ -0,0 +1,322 @@
+// This Source Code is in the Public Domain per: http://unlicense.org
+package org.litesoft.whereclause.index;
+
+import org.litesoft.whereclause.nonpublic.IllegalArgument;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.IntConsumer;
+
+/**
+ * A compressed set of (non-negative int) row IDs, in the style of a Roaring bitmap:
+ * the IDs are split by their high 16 bits into (up to 32768) chunks, each held as the
+ * smallest of a sorted array, a bitmap, or runs (see <b>Container</b>).<p>
+ * <a href="../../../Licence.txt">Licence</a><br>
+ * <p/>
+ * The set operations (<b>and()</b>, <b>or()</b> and <b>andNot()</b>) return a new
+ * RoaringBitmap (NOT sharing any mutable part of either), merging the chunks by their
+ * (sorted) high bits, so chunks that are absent from one side cost nothing.<p>
+ * <p/>
+ * A RoaringBitmap is NOT thread safe while being added to; once built it may be read
+ * (and combined) concurrently.<p>
+ */
+public final class RoaringBitmap {
+    private static final int FEW = 1024;
+
+    private char[] mKeys;
+    private Container[] mContainers;
+    private int mSize;
+
+    public RoaringBitmap() {
+        this( new char[4], new Container[4], 0 );
+    }
+
+    private RoaringBitmap( char[] pKeys, Container[] pContainers, int pSize ) {
+        mKeys = pKeys;
+        mContainers = pContainers;
+        mSize = pSize;
+    }
+
+    public static RoaringBitmap of( int... pRowIDs ) {
+        RoaringBitmap zBitmap = new RoaringBitmap();
+        for ( int zRowID : pRowIDs ) {
+            zBitmap.add( zRowID );
+        }
+        return zBitmap;
+    }
+
+    /**
+     * A few row IDs are sorted and added, more are set (each chunk) a word at a time.<p>
+     *
+     * @return the row IDs pRowIDs[pFrom] .. pRowIDs[pTo - 1] (in any order).
+     */
+    public static RoaringBitmap of( int[] pRowIDs, int pFrom, int pTo ) {
+        if ( (pTo - pFrom) <= FEW ) {
+            int[] zRowIDs = Arrays.copyOfRange( pRowIDs, pFrom, pTo );
+            Arrays.sort( zRowIDs );
+            return of( zRowIDs );
+        }
+        int zMaxHigh = -1;
+        for ( int i = pFrom; i < pTo; i++ ) {
+            if ( pRowIDs[i] < 0 ) {
+                throw IllegalArgument.exception( "RowID", "negative: " + pRowIDs[i] );
+            }
+            zMaxHigh = Math.max( zMaxHigh, pRowIDs[i] >>> 16 );
+        }
+        long[][] zChunks = new long[zMaxHigh + 1][];
+        for ( int i = pFrom; i < pTo; i++ ) {
+            long[] zWords = zChunks[pRowIDs[i] >>> 16];
+            if ( zWords == null ) {
+                zChunks[pRowIDs[i] >>> 16] = zWords = new long[Container.WORDS];
+            }
+            zWords[(pRowIDs[i] >>> 6) & (Container.WORDS - 1)] |= 1L << pRowIDs[i];
+        }
+        RoaringBitmap zBitmap = new RoaringBitmap();
+        for ( int zHigh = 0; zHigh < zChunks.length; zHigh++ ) {
+            if ( zChunks[zHigh] != null ) {
+                zBitmap.append( (char) zHigh, Container.best( zChunks[zHigh] ) );
+            }
+        }
+        return zBitmap;
+    }
+
+    /**
+     * @return the row IDs pFrom (inclusive) to pTo (exclusive), as runs.
+     */
+    public static RoaringBitmap range( int pFrom, int pTo ) {
+        if ( (pFrom < 0) || (pTo < pFrom) ) {
+            throw IllegalArgument.exception( "Range", pFrom + " .. " + pTo );
+        }
+        RoaringBitmap zBitmap = new RoaringBitmap();
+        for ( int zFrom = pFrom; zFrom < pTo; ) {
+            int zHigh = zFrom >>> 16;
+            int zTo = (int) Math.min( pTo, ((long) zHigh + 1) << 16 ); // exclusive
+            zBitmap.append( (char) zHigh, RunContainer.range( (char) zFrom, (char) (zTo - 1) ) );
+            zFrom = zTo;
+        }
+        return zBitmap;
+    }
+
+    /**
+     * @return this (for chaining).
+     */
+    public RoaringBitmap add( int pRowID ) {
+        if ( pRowID < 0 ) {
+            throw IllegalArgument.exception( "RowID", "negative: " + pRowID );
+        }
+        char zHigh = (char) (pRowID >>> 16);
+        char zLow = (char) pRowID;
+        int zAt = ((mSize != 0) && (mKeys[mSize - 1] == zHigh)) ? mSize - 1 : find( zHigh ); // appending is the common case
+        if ( zAt >= 0 ) {
+            mContainers[zAt] = mContainers[zAt].add( zLow );
+        } else {
+            insert( -(zAt + 1), zHigh, ArrayContainer.of( zLow ) );
+        }
+        return this;
+    }
+
+    public boolean contains( int pRowID ) {
+        if ( pRowID < 0 ) {
+            return false;
+        }
+        int zAt = find( (char) (pRowID >>> 16) );
+        return (zAt >= 0) && mContainers[zAt].contains( (char) pRowID );
+    }
+
+    public int getCardinality() {
+        int zCardinality = 0;
+        for ( int i = 0; i < mSize; i++ ) {
+            zCardinality += mContainers[i].cardinality();
+        }
+        return zCardinality;
+    }
+
+    public boolean isEmpty() {
+        return mSize == 0;
+    }
+
+    /**
+     * @return the (approximate) size in bytes of the chunks.
+     */
+    public long getSizeInBytes() {
+        long zBytes = 0;
+        for ( int i = 0; i < mSize; i++ ) {
+            zBytes += 2 + mContainers[i].sizeInBytes();
+        }
+        return zBytes;
+    }
+
+    public RoaringBitmap and( RoaringBitmap them ) {
+        RoaringBitmap zResult = new RoaringBitmap();
+        int i = 0, j = 0;
+        while ( (i < mSize) && (j < them.mSize) ) {
+            char zMine = mKeys[i];
+            char zTheirs = them.mKeys[j];
+            if ( zMine < zTheirs ) {
+                i++;
+            } else if ( zTheirs < zMine ) {
+                j++;
+            } else {
+                zResult.appendIfNotNull( zMine, mContainers[i++].and( them.mContainers[j++] ) );
+            }
+        }
+        return zResult;
+    }
+
+    public RoaringBitmap or( RoaringBitmap them ) {
+        RoaringBitmap zResult = new RoaringBitmap();
+        int i = 0, j = 0;
+        while ( (i < mSize) || (j < them.mSize) ) {
+            if ( (j == them.mSize) || ((i < mSize) && (mKeys[i] < them.mKeys[j])) ) {
+                zResult.append( mKeys[i], mContainers[i++].copy() );
+            } else if ( (i == mSize) || (them.mKeys[j] < mKeys[i]) ) {
+                zResult.append( them.mKeys[j], them.mContainers[j++].copy() );
+            } else {
+                zResult.append( mKeys[i], mContainers[i++].or( them.mContainers[j++] ) );
+            }
+        }
+        return zResult;
+    }
+
+    /**
+     * @return the union of the bitmaps, each chunk combined (a word at a time) just once.
+     */
+    public static RoaringBitmap or( List<RoaringBitmap> pBitmaps ) {
+        IllegalArgument.ifNull( "Bitmaps", pBitmaps );
+        if ( pBitmaps.size() < 3 ) {
+            return pBitmaps.isEmpty() ? new RoaringBitmap() : //
+                   (pBitmaps.size() == 1) ? pBitmaps.get( 0 ).copy() : pBitmaps.get( 0 ).or( pBitmaps.get( 1 ) );
+        }
+        TreeMap<Character, long[]> zChunks = new TreeMap<>();
+        for ( RoaringBitmap zBitmap : pBitmaps ) {
+            for ( int i = 0; i < zBitmap.mSize; i++ ) {
+                long[] zWords = zChunks.get( zBitmap.mKeys[i] );
+                if ( zWords == null ) {
+                    zChunks.put( zBitmap.mKeys[i], zWords = new long[Container.WORDS] );
+                }
+                zBitmap.mContainers[i].orInto( zWords );
+            }
+        }
+        RoaringBitmap zResult = new RoaringBitmap();
+        for ( Map.Entry<Character, long[]> zEntry : zChunks.entrySet() ) {
+            zResult.append( zEntry.getKey(), Container.best( zEntry.getValue() ) );
+        }
+        return zResult;
+    }
+
+    /**
+     * @return the row IDs of this that are NOT in them.
+     */
+    public RoaringBitmap andNot( RoaringBitmap them ) {
+        RoaringBitmap zResult = new RoaringBitmap();
+        int j = 0;
+        for ( int i = 0; i < mSize; i++ ) {
+            char zMine = mKeys[i];
+            while ( (j < them.mSize) && (them.mKeys[j] < zMine) ) {
+                j++;
+            }
+            if ( (j < them.mSize) && (them.mKeys[j] == zMine) ) {
+                zResult.appendIfNotNull( zMine, mContainers[i].andNot( them.mContainers[j] ) );
+            } else {
+                zResult.append( zMine, mContainers[i].copy() );
+            }
+        }
+        return zResult;
+    }
+
+    /**
+     * Convert each chunk to its smallest form (e.g. an array of consecutive row IDs to a run).<p>
+     *
+     * @return this (for chaining).
+     */
+    public RoaringBitmap runOptimize() {
+        for ( int i = 0; i < mSize; i++ ) {
+            mContainers[i] = mContainers[i].optimize();
+        }
+        return this;
+    }
+
+    /**
+     * @return the row IDs (ascending).
+     */
+    public int[] toArray() {
+        int[] zRowIDs = new int[getCardinality()];
+        int zAt = 0;
+        for ( int i = 0; i < mSize; i++ ) {
+            zAt = mContainers[i].fill( zRowIDs, zAt, mKeys[i] << 16 );
+        }
+        return zRowIDs;
+    }
+
+    /**
+     * Accept each row ID (ascending).
+     */
+    public void forEach( IntConsumer pConsumer ) {
+        for ( int i = 0; i < mSize; i++ ) {
+            mContainers[i].forEach( mKeys[i] << 16, pConsumer );
+        }
+    }
+
+    public RoaringBitmap copy() {
+        Container[] zContainers = new Container[mSize];
+        for ( int i = 0; i < mSize; i++ ) {
+            zContainers[i] = mContainers[i].copy();
+        }
+        return new RoaringBitmap( Arrays.copyOf( mKeys, mSize ), zContainers, mSize );
+    }
+
+    private int find( char pHigh ) {
+        return Arrays.binarySearch( mKeys, 0, mSize, pHigh );
+    }
+
+    private void appendIfNotNull( char pHigh, Container pContainer ) {
+        if ( pContainer != null ) {
+            append( pHigh, pContainer );
+        }
+    }
+
+    private void append( char pHigh, Container pContainer ) {
+        insert( mSize, pHigh, pContainer );
+    }
+
+    private void insert( int pAt, char pHigh, Container pContainer ) {
+        if ( mSize == mKeys.length ) {
+            mKeys = Arrays.copyOf( mKeys, Math.max( 4, mSize * 2 ) );
+            mContainers = Arrays.copyOf( mContainers, mKeys.length );
+        }
+        System.arraycopy( mKeys, pAt, mKeys, pAt + 1, mSize - pAt );
+        System.arraycopy( mContainers, pAt, mContainers, pAt + 1, mSize - pAt );
+        mKeys[pAt] = pHigh;
+        mContainers[pAt] = pContainer;
+        mSize++;
+    }
+
+    @Override
+    public boolean equals( Object them ) {
+        if ( this == them ) {
+            return true;
+        }
+        if ( !(them instanceof RoaringBitmap) ) {
+            return false;
+        }
+        RoaringBitmap zThem = (RoaringBitmap) them;
+        return (getCardinality() == zThem.getCardinality()) && Arrays.equals( toArray(), zThem.toArray() );
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode( toArray() );
+    }
+
+    @Override
+    public String toString() {
+        int[] zKinds = new int[3];
+        for ( int i = 0; i < mSize; i++ ) {
+            Container zContainer = mContainers[i];
+            zKinds[(zContainer instanceof ArrayContainer) ? 0 : (zContainer instanceof BitmapContainer) ? 1 : 2]++;
+        }
+        return "RoaringBitmap(" + getCardinality() + " in " + zKinds[0] + " arrays, " + zKinds[1] + " bitmaps, " + zKinds[2] + " runs)";
+    }
+}
@@ -0,0 +1,90 @@
+// This Source Code is in the Public Domain per: http://unlicense.org
+package org.litesoft.whereclause.index;
+
+import org.litesoft.whereclause.nonpublic.IllegalArgument;
+
+/**
+ * The (three-valued) result of a <b>WhereClause</b> over a set of rows: the row IDs for
+ * which it is TRUE, and those for which it is UNKNOWN (the others are FALSE).<p>
+ * <a href="../../../Licence.txt">Licence</a><br>
+ * <p/>
+ * The AND, OR, and NOT of the selections (of the same rows) follow SQL's three-valued
+ * logic, with bitmap algebra only:<p>
+ * <pre>
+ *      AND:  TRUE = T1 &amp; T2,        UNKNOWN = ((T1 | U1) &amp; (T2 | U2)) - TRUE
+ *      OR:   TRUE = T1 | T2,        UNKNOWN = (U1 | U2) - TRUE
+ *      NOT:  TRUE = rows - T - U,   UNKNOWN = U
+ * </pre>
+ * A RowSelection is immutable (so thread safe).<p>
+ */
+public final class RowSelection {
+    private static final RowSelection NONE = new RowSelection( new RoaringBitmap(), new RoaringBitmap() );
+
+    private final RoaringBitmap mTrue, mUnknown;
+
+    /**
+     * @param pTrue    the row IDs for which the WhereClause is TRUE (!null, NOT changed after).
+     * @param pUnknown the row IDs for which the WhereClause is UNKNOWN (!null, NOT changed after, none of pTrue).
+     */
+    public RowSelection( RoaringBitmap pTrue, RoaringBitmap pUnknown ) {
+        IllegalArgument.ifNull( "True", mTrue = pTrue );
+        IllegalArgument.ifNull( "Unknown", mUnknown = pUnknown );
+    }
+
+    /**
+     * @return all the rows as TRUE.
+     */
+    public static RowSelection all( RoaringBitmap pRows ) {
+        return new RowSelection( pRows, NONE.mUnknown );
+    }
+
+    /**
+     * @return NO rows (all FALSE).
+     */
+    public static RowSelection none() {
+        return NONE;
+    }
+
+    public RoaringBitmap getTrue() {
+        return mTrue;
+    }
+
+    public RoaringBitmap getUnknown() {
+        return mUnknown;
+    }
+
+    /**
+     * @return the row IDs that are TRUE or UNKNOWN (NOT FALSE).
+     */
+    public RoaringBitmap getCandidates() {
+        return mUnknown.isEmpty() ? mTrue : mTrue.or( mUnknown );
+    }
+
+    public RowSelection and( RowSelection them ) {
+        RoaringBitmap zTrue = mTrue.and( them.mTrue );
+        if ( mUnknown.isEmpty() && them.mUnknown.isEmpty() ) {
+            return new RowSelection( zTrue, mUnknown );
+        }
+        return new RowSelection( zTrue, getCandidates().and( them.getCandidates() ).andNot( zTrue ) );
+    }
+
+    public RowSelection or( RowSelection them ) {
+        RoaringBitmap zTrue = mTrue.or( them.mTrue );
+        if ( mUnknown.isEmpty() && them.mUnknown.isEmpty() ) {
+            return new RowSelection( zTrue, mUnknown );
+        }
+        return new RowSelection( zTrue, mUnknown.or( them.mUnknown ).andNot( zTrue ) );
+    }
+
+    /**
+     * @param pRows the rows this selection was made from.
+     */
+    public RowSelection not( RoaringBitmap pRows ) {
+        return new RowSelection( pRows.andNot( getCandidates() ), mUnknown );
+    }
+
+    @Override
+    public String toString() {
+        return "RowSelection(TRUE: " + mTrue.getCardinality() + ", UNKNOWN: " + mUnknown.getCardinality() + ")";
+    }
+}
@@ -0,0 +1,166 @@
+// This Source Code is in the Public Domain per: http://unlicense.org
+package org.litesoft.whereclause.index;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * A <b>Container</b> of values as runs (of consecutive values), each a start and a
+ * length (less one), sorted by start; e.g. the rows of a range, or the result of a NOT.<p>
+ * <a href="../../../Licence.txt">Licence</a><br>
+ */
+final class RunContainer extends Container {
+    private final char[] mStarts, mLengths; // each run is: start .. (start + length)
+    private final int mCardinality;
+
+    private RunContainer( char[] pStarts, char[] pLengths, int pCardinality ) {
+        mStarts = pStarts;
+        mLengths = pLengths;
+        mCardinality = pCardinality;
+    }
+
+    /**
+     * @return the single run: pFrom .. pTo (inclusive).
+     */
+    static RunContainer range( char pFrom, char pTo ) {
+        return new RunContainer( new char[]{pFrom}, new char[]{(char) (pTo - pFrom)}, pTo - pFrom + 1 );
+    }
+
+    static RunContainer fromWords( long[] pWords, int pRuns, int pCardinality ) {
+        char[] zStarts = new char[pRuns];
+        char[] zLengths = new char[pRuns];
+        int zRun = 0;
+        int zBit = nextSet( pWords, 0 );
+        while ( zBit != -1 ) {
+            int zEnd = nextClear( pWords, zBit );
+            zStarts[zRun] = (char) zBit;
+            zLengths[zRun++] = (char) (zEnd - zBit - 1);
+            zBit = (zEnd < (WORDS << 6)) ? nextSet( pWords, zEnd ) : -1;
+        }
+        return new RunContainer( zStarts, zLengths, pCardinality );
+    }
+
+    private static int nextSet( long[] pWords, int pFrom ) {
+        int i = pFrom >>> 6;
+        long zWord = pWords[i] & (-1L << pFrom);
+        while ( zWord == 0 ) {
+            if ( ++i == WORDS ) {
+                return -1;
+            }
+            zWord = pWords[i];
+        }
+        return (i << 6) + Long.numberOfTrailingZeros( zWord );
+    }
+
+    private static int nextClear( long[] pWords, int pFrom ) {
+        int i = pFrom >>> 6;
+        long zWord = ~pWords[i] & (-1L << pFrom);
+        while ( zWord == 0 ) {
+            if ( ++i == WORDS ) {
+                return WORDS << 6;
+            }
+            zWord = ~pWords[i];
+        }
+        return (i << 6) + Long.numberOfTrailingZeros( zWord );
+    }
+
+    int runs() {
+        return mStarts.length;
+    }
+
+    int start( int pRun ) {
+        return mStarts[pRun];
+    }
+
+    /**
+     * @return the (inclusive) end of the run.
+     */
+    int end( int pRun ) {
+        return mStarts[pRun] + mLengths[pRun];
+    }
+
+    static int sizeInBytes( int pRuns ) {
+        return 4 * pRuns;
+    }
+
+    @Override
+    int sizeInBytes() {
+        return sizeInBytes( mStarts.length );
+    }
+
+    @Override
+    int cardinality() {
+        return mCardinality;
+    }
+
+    @Override
+    boolean contains( char pLow ) {
+        int zAt = Arrays.binarySearch( mStarts, pLow );
+        if ( zAt >= 0 ) {
+            return true;
+        }
+        zAt = -(zAt + 1) - 1; // the run starting before the value
+        return (zAt >= 0) && ((pLow - mStarts[zAt]) <= mLengths[zAt]);
+    }
+
+    @Override
+    Container add( char pLow ) {
+        if ( contains( pLow ) ) {
+            return this;
+        }
+        long[] zWords = toWords();
+        zWords[pLow >>> 6] |= 1L << pLow;
+        return best( zWords );
+    }
+
+    @Override
+    void orInto( long[] pWords ) {
+        for ( int i = 0; i < mStarts.length; i++ ) {
+            int zFrom = mStarts[i];
+            int zTo = zFrom + mLengths[i]; // inclusive
+            int zFromWord = zFrom >>> 6;
+            int zToWord = zTo >>> 6;
+            if ( zFromWord == zToWord ) {
+                pWords[zFromWord] |= (-1L << zFrom) & (-1L >>> (63 - (zTo & 63)));
+            } else {
+                pWords[zFromWord] |= -1L << zFrom;
+                for ( int j = zFromWord + 1; j < zToWord; j++ ) {
+                    pWords[j] = -1L;
+                }
+                pWords[zToWord] |= -1L >>> (63 - (zTo & 63));
+            }
+        }
+    }
+
+    @Override
+    int fill( int[] pValues, int pAt, int pHigh ) {
+        for ( int i = 0; i < mStarts.length; i++ ) {
+            for ( int zLow = mStarts[i], zTo = zLow + mLengths[i]; zLow <= zTo; zLow++ ) {
+                pValues[pAt++] = pHigh | zLow;
+            }
+        }
+        return pAt;
+    }
+
+    @Override
+    void forEach( int pHigh, IntConsumer pConsumer ) {
+        for ( int i = 0; i < mStarts.length; i++ ) {
+            for ( int zLow = mStarts[i], zTo = zLow + mLengths[i]; zLow <= zTo; zLow++ ) {
+                pConsumer.accept( pHigh | zLow );
+            }
+        }
+    }
+
+    /**
+     * Immutable, so NOT copied.
+     */
+    @Override
+    Container copy() {
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "Run(" + mCardinality + " in " + mStarts.length + ")";
+    }
+}
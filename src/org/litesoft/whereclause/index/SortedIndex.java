@@ -0,0 +1,383 @@
+// This Source Code is in the Public Domain per: http://unlicense.org
+package org.litesoft.whereclause.index;
+
+import org.litesoft.whereclause.SimpleColumnDefinition;
+import org.litesoft.whereclause.WhereClauseType;
+import org.litesoft.whereclause.WhereClauseValueSupport;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseColumnAndTwoValues;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseColumnAndValue;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseColumnReference;
+import org.litesoft.whereclause.nonpublic.IllegalArgument;
+
+import java.util.Arrays;
+
+/**
+ * A <b>ColumnIndex</b> for numeric and temporal columns: the (NOT null) values as
+ * primitive <b>long</b> keys, with their row IDs, sorted by key (a sorted permutation
+ * of the rows), that answers LESSTHAN, GREATERTHAN and BETWEEN (in both modes) with two
+ * binary searches, each range of keys being a slice of row IDs.<p>
+ * <a href="../../../Licence.txt">Licence</a><br>
+ * <p/>
+ * The keys are: for integral values (Long, Integer, Short and Byte) the value, for
+ * <b>java.util.Date</b>s the time, and once any non-integral Number is added, the
+ * (order preserving) bits of each value's double.  The values compare exactly as
+ * <b>WhereClauseValueSupport.compare()</b> compares them, and the leaves it can NOT
+ * answer that way (e.g. a String value, a mix of Dates and Numbers, or a NaN) are left
+ * to the <b>WhereClauseEvaluator</b> (see <b>canSelect()</b>).  A NaN column value
+ * is greater than every number, so those rows are held apart (and are only ever
+ * GREATERTHAN).<p>
+ * <p/>
+ * The rows are added in row ID order, so values added in key order (e.g. the times of
+ * an event store) stay sorted, and their slices are (usually) consecutive row IDs, i.e.
+ * runs; otherwise the keys added since the last select are sorted (a stable radix sort)
+ * and merged in by the next select.<p>
+ */
+public class SortedIndex implements ColumnIndex {
+    private static final long EXACT_DOUBLE_MAGNITUDE = 1L << 53;
+
+    private enum Kind {
+        NONE, INTEGRAL, NUMBER, DATE, MIXED
+    }
+
+    private final SimpleColumnDefinition mColumnDefinition;
+    private final RoaringBitmap mNulls = new RoaringBitmap();
+    private final RoaringBitmap mNaNs = new RoaringBitmap();
+    private Kind mKind = Kind.NONE;
+    private Kind mKeyKind = Kind.NONE; // of the keys: the kind before any MIXED
+    private boolean mHasBigIntegrals;
+    private long[] mKeys = new long[16];
+    private int[] mRowIDs = new int[16];
+    private int mSize, mSortedSize;
+    private boolean mRowIDsAscending = true; // i.e. the values were added in key order
+
+    public SortedIndex( SimpleColumnDefinition pColumnDefinition ) {
+        IllegalArgument.ifNull( "ColumnDefinition", mColumnDefinition = pColumnDefinition );
+    }
+
+    @Override
+    public SimpleColumnDefinition getColumnDefinition() {
+        return mColumnDefinition;
+    }
+
+    @Override
+    public SortedIndex newIndex() {
+        return new SortedIndex( mColumnDefinition );
+    }
+
+    @Override
+    public synchronized void add( int pRowID, Object pValue ) {
+        Object zValue = WhereClauseValueSupport.normalizeValue( mColumnDefinition, pValue );
+        if ( zValue == null ) {
+            mNulls.add( pRowID );
+            return;
+        }
+        if ( zValue instanceof java.util.Date ) {
+            append( (mKind == Kind.NONE) || (mKind == Kind.DATE) ? Kind.DATE : Kind.MIXED, ((java.util.Date) zValue).getTime(), pRowID );
+        } else if ( WhereClauseValueSupport.isIntegral( zValue ) ) {
+            long zLong = ((Number) zValue).longValue();
+            mHasBigIntegrals |= (zLong < -EXACT_DOUBLE_MAGNITUDE) || (EXACT_DOUBLE_MAGNITUDE < zLong);
+            if ( (mKind == Kind.NONE) || (mKind == Kind.INTEGRAL) ) {
+                append( Kind.INTEGRAL, zLong, pRowID );
+            } else {
+                append( (mKind == Kind.NUMBER) && !mHasBigIntegrals ? Kind.NUMBER : Kind.MIXED, toKey( (double) zLong ), pRowID );
+            }
+        } else if ( zValue instanceof Number ) {
+            double zDouble = ((Number) zValue).doubleValue();
+            if ( Double.isNaN( zDouble ) ) {
+                mNaNs.add( pRowID );
+            } else if ( (mKind == Kind.NONE) || (mKind == Kind.NUMBER) ) {
+                append( Kind.NUMBER, toKey( zDouble ), pRowID );
+            } else if ( (mKind == Kind.INTEGRAL) && !mHasBigIntegrals ) {
+                for ( int i = 0; i < mSize; i++ ) { // re-key (exactly) as doubles, in the same order
+                    mKeys[i] = toKey( (double) mKeys[i] );
+                }
+                append( Kind.NUMBER, toKey( zDouble ), pRowID );
+            } else {
+                mKind = Kind.MIXED;
+            }
+        } else {
+            mKind = Kind.MIXED;
+        }
+    }
+
+    private void append( Kind pKind, long pKey, int pRowID ) {
+        mKind = pKind;
+        if ( pKind != Kind.MIXED ) {
+            mKeyKind = pKind;
+        }
+        if ( mSize == mKeys.length ) {
+            mKeys = Arrays.copyOf( mKeys, mSize * 2 );
+            mRowIDs = Arrays.copyOf( mRowIDs, mKeys.length );
+        }
+        if ( (mSize == mSortedSize) && ((mSize == 0) || (mKeys[mSize - 1] <= pKey)) ) {
+            mSortedSize++; // still in key order
+        }
+        mKeys[mSize] = pKey;
+        mRowIDs[mSize++] = pRowID;
+    }
+
+    /**
+     * @return a long that orders (as a signed long) as the double does (-0.0 as 0.0).
+     */
+    private static long toKey( double pDouble ) {
+        long zBits = Double.doubleToLongBits( pDouble + 0.0 );
+        return zBits ^ ((zBits >> 63) & Long.MAX_VALUE);
+    }
+
+    /**
+     * @return the number of (NOT null, nor NaN) values.
+     */
+    public synchronized int getValues() {
+        return mSize;
+    }
+
+    @Override
+    public boolean canSelect( AbstractWhereClauseColumnReference pLeaf ) {
+        if ( !mColumnDefinition.equals( pLeaf.getColumnDefinition() ) ) {
+            return false;
+        }
+        switch ( pLeaf.getType() ) {
+            case LESSTHAN:
+            case GREATERTHAN:
+                return canSelect( ((AbstractWhereClauseColumnAndValue) pLeaf).getValue() );
+            case BETWEEN:
+                AbstractWhereClauseColumnAndTwoValues zBetween = (AbstractWhereClauseColumnAndTwoValues) pLeaf;
+                return canSelect( zBetween.getLeftValue() ) && canSelect( zBetween.getRightValue() );
+            default:
+                return false;
+        }
+    }
+
+    private synchronized boolean canSelect( Object pValue ) {
+        Object zValue = WhereClauseValueSupport.normalizeValue( mColumnDefinition, pValue );
+        if ( zValue instanceof java.util.Date ) {
+            return (mKind == Kind.NONE) || (mKind == Kind.DATE);
+        }
+        if ( !(zValue instanceof Number) ) {
+            return false;
+        }
+        if ( WhereClauseValueSupport.isIntegral( zValue ) ) {
+            long zLong = ((Number) zValue).longValue();
+            boolean zBig = (zLong < -EXACT_DOUBLE_MAGNITUDE) || (EXACT_DOUBLE_MAGNITUDE < zLong);
+            return (mKind == Kind.NONE) || (mKind == Kind.INTEGRAL) || ((mKind == Kind.NUMBER) && !zBig);
+        }
+        return !Double.isNaN( ((Number) zValue).doubleValue() ) && //
+               ((mKind == Kind.NONE) || (mKind == Kind.NUMBER) || ((mKind == Kind.INTEGRAL) && !mHasBigIntegrals));
+    }
+
+    @Override
+    public synchronized long estimateRows( AbstractWhereClauseColumnReference pLeaf ) {
+        sort();
+        int[] zSlice = slice( pLeaf );
+        boolean zGreater = (pLeaf.getType() == WhereClauseType.GREATERTHAN); // a NaN is greater than any (NOT NaN) value
+        long zSelected = zSlice[1] - zSlice[0];
+        if ( pLeaf.isNot() ) {
+            return (mSize - zSelected) + (zGreater ? 0 : mNaNs.getCardinality());
+        }
+        return zSelected + (zGreater ? mNaNs.getCardinality() : 0);
+    }
+
+    @Override
+    public double estimateCost( AbstractWhereClauseColumnReference pLeaf ) {
+        return (2 * LOOKUP_COST) + (ROW_ID_COST * estimateRows( pLeaf ));
+    }
+
+    @Override
+    public RowSelection select( AbstractWhereClauseColumnReference pLeaf, RoaringBitmap pRows ) {
+        int[] zRowIDs;
+        int zSize;
+        RoaringBitmap zNulls, zNaNs;
+        int[] zSlice;
+        boolean zAscending;
+        synchronized ( this ) {
+            sort();
+            zRowIDs = mRowIDs;
+            zSize = mSize;
+            zAscending = mRowIDsAscending;
+            zNulls = mNulls.and( pRows );
+            zNaNs = mNaNs.and( pRows );
+            zSlice = slice( pLeaf );
+        }
+        boolean zGreater = (pLeaf.getType() == WhereClauseType.GREATERTHAN); // a NaN is greater than any (NOT NaN) value
+        RoaringBitmap zTrue;
+        if ( !pLeaf.isNot() ) {
+            zTrue = rows( zRowIDs, zSlice[0], zSlice[1], zAscending ).and( pRows );
+            if ( zGreater ) {
+                zTrue = zTrue.or( zNaNs );
+            }
+        } else {
+            zTrue = rows( zRowIDs, 0, zSlice[0], zAscending ).or( rows( zRowIDs, zSlice[1], zSize, zAscending ) ).and( pRows );
+            if ( !zGreater ) {
+                zTrue = zTrue.or( zNaNs );
+            }
+        }
+        return new RowSelection( zTrue, zNulls );
+    }
+
+    /**
+     * @return the (sorted) keys' from (inclusive) and to (exclusive) that the leaf (in the regular mode) selects.
+     */
+    private int[] slice( AbstractWhereClauseColumnReference pLeaf ) {
+        switch ( pLeaf.getType() ) {
+            case BETWEEN:
+                AbstractWhereClauseColumnAndTwoValues zBetween = (AbstractWhereClauseColumnAndTwoValues) pLeaf;
+                int zFrom = firstNotBelow( zBetween.getLeftValue() );
+                return new int[]{zFrom, Math.max( zFrom, firstAbove( zBetween.getRightValue() ) )};
+            case LESSTHAN:
+                return new int[]{0, firstNotBelow( ((AbstractWhereClauseColumnAndValue) pLeaf).getValue() )};
+            case GREATERTHAN:
+                return new int[]{firstAbove( ((AbstractWhereClauseColumnAndValue) pLeaf).getValue() ), mSize};
+            default:
+                throw IllegalArgument.exception( "Leaf", "NOT selectable: " + pLeaf );
+        }
+    }
+
+    /**
+     * @return the index of the first key that is NOT less than the value.
+     */
+    private int firstNotBelow( Object pValue ) {
+        Object zValue = WhereClauseValueSupport.normalizeValue( mColumnDefinition, pValue );
+        if ( (mKeyKind == Kind.INTEGRAL) && !WhereClauseValueSupport.isIntegral( zValue ) ) {
+            return firstAtLeast( (long) Math.ceil( clamp( ((Number) zValue).doubleValue() ) ) );
+        }
+        return firstAtLeast( key( zValue ) );
+    }
+
+    /**
+     * @return the index of the first key that is greater than the value.
+     */
+    private int firstAbove( Object pValue ) {
+        Object zValue = WhereClauseValueSupport.normalizeValue( mColumnDefinition, pValue );
+        if ( (mKeyKind == Kind.INTEGRAL) && !WhereClauseValueSupport.isIntegral( zValue ) ) {
+            return firstAtLeast( (long) Math.floor( clamp( ((Number) zValue).doubleValue() ) ) + 1 );
+        }
+        long zKey = key( zValue );
+        return (zKey == Long.MAX_VALUE) ? mSize : firstAtLeast( zKey + 1 );
+    }
+
+    /**
+     * The keys' kind is used (rather than the current kind), so that once the index is
+     * MIXED (by a value added after the leaf was planned) the earlier rows still select.<p>
+     *
+     * @return the key of a (selectable, normalized) value, for the keys' kind.
+     */
+    private long key( Object pValue ) {
+        if ( pValue instanceof java.util.Date ) {
+            return ((java.util.Date) pValue).getTime();
+        }
+        if ( mKeyKind == Kind.NUMBER ) {
+            return toKey( ((Number) pValue).doubleValue() );
+        }
+        return ((Number) pValue).longValue(); // an integral value, against INTEGRAL (or NONE)
+    }
+
+    /**
+     * @return the double, limited to beyond the (no larger than 2^53) integral keys.
+     */
+    private static double clamp( double pDouble ) {
+        return Math.max( -2.0 * EXACT_DOUBLE_MAGNITUDE, Math.min( 2.0 * EXACT_DOUBLE_MAGNITUDE, pDouble ) );
+    }
+
+    private int firstAtLeast( long pKey ) {
+        int zLow = 0;
+        int zHigh = mSize;
+        while ( zLow < zHigh ) {
+            int zMid = (zLow + zHigh) >>> 1;
+            if ( mKeys[zMid] < pKey ) {
+                zLow = zMid + 1;
+            } else {
+                zHigh = zMid;
+            }
+        }
+        return zLow;
+    }
+
+    /**
+     * @return the row IDs of the slice: as a range if consecutive, otherwise a chunk at a time.
+     */
+    private static RoaringBitmap rows( int[] pRowIDs, int pFrom, int pTo, boolean pAscending ) {
+        if ( pFrom >= pTo ) {
+            return new RoaringBitmap();
+        }
+        if ( pAscending && ((pRowIDs[pTo - 1] - pRowIDs[pFrom]) == (pTo - pFrom - 1)) ) {
+            return RoaringBitmap.range( pRowIDs[pFrom], pRowIDs[pTo - 1] + 1 );
+        }
+        return RoaringBitmap.of( pRowIDs, pFrom, pTo );
+    }
+
+    /**
+     * Sort (if needed) the keys added since the last sort, and merge them in.
+     */
+    private void sort() {
+        if ( mSortedSize == mSize ) {
+            return;
+        }
+        long[] zKeys = new long[mSize];
+        int[] zRowIDs = new int[mSize];
+        radixSort( mKeys, mRowIDs, mSortedSize, mSize, zKeys, zRowIDs );
+        int i = 0, j = mSortedSize, zAt = 0; // the earlier (sorted) rows first, for equal keys
+        while ( (i < mSortedSize) && (j < mSize) ) {
+            if ( mKeys[j] < mKeys[i] ) {
+                zKeys[zAt] = mKeys[j];
+                zRowIDs[zAt++] = mRowIDs[j++];
+            } else {
+                zKeys[zAt] = mKeys[i];
+                zRowIDs[zAt++] = mRowIDs[i++];
+            }
+        }
+        System.arraycopy( mKeys, i, zKeys, zAt, mSortedSize - i );
+        System.arraycopy( mRowIDs, i, zRowIDs, zAt, mSortedSize - i );
+        zAt += mSortedSize - i;
+        System.arraycopy( mKeys, j, zKeys, zAt, mSize - j );
+        System.arraycopy( mRowIDs, j, zRowIDs, zAt, mSize - j );
+        mRowIDsAscending = false;
+        mKeys = zKeys; // new arrays, so an earlier select's (captured) arrays are unchanged
+        mRowIDs = zRowIDs;
+        mSortedSize = mSize;
+    }
+
+    /**
+     * Stable LSD radix sort (16 bits at a time, skipping the digits that are all the
+     * same) of the keys (and their row IDs) pFrom to pTo, in place (pKeys2 and pRowIDs2
+     * are the scratch space).<p>
+     */
+    private static void radixSort( long[] pKeys, int[] pRowIDs, int pFrom, int pTo, long[] pKeys2, int[] pRowIDs2 ) {
+        long[] zKeys = pKeys, zKeys2 = pKeys2;
+        int[] zRowIDs = pRowIDs, zRowIDs2 = pRowIDs2;
+        int[] zCounts = new int[(1 << 16) + 1];
+        for ( int zShift = 0; zShift < 64; zShift += 16 ) {
+            long zSignFlip = (zShift == 48) ? 0x8000 : 0; // signed order
+            Arrays.fill( zCounts, 0 );
+            for ( int i = pFrom; i < pTo; i++ ) {
+                zCounts[(int) (((zKeys[i] >>> zShift) & 0xFFFF) ^ zSignFlip) + 1]++;
+            }
+            if ( zCounts[(int) (((zKeys[pFrom] >>> zShift) & 0xFFFF) ^ zSignFlip) + 1] == (pTo - pFrom) ) {
+                continue; // all the same digit
+            }
+            zCounts[0] = pFrom;
+            for ( int i = 1; i < zCounts.length; i++ ) {
+                zCounts[i] += zCounts[i - 1];
+            }
+            for ( int i = pFrom; i < pTo; i++ ) {
+                int zAt = zCounts[(int) (((zKeys[i] >>> zShift) & 0xFFFF) ^ zSignFlip)]++;
+                zKeys2[zAt] = zKeys[i];
+                zRowIDs2[zAt] = zRowIDs[i];
+            }
+            long[] zKeysT = zKeys;
+            zKeys = zKeys2;
+            zKeys2 = zKeysT;
+            int[] zRowIDsT = zRowIDs;
+            zRowIDs = zRowIDs2;
+            zRowIDs2 = zRowIDsT;
+        }
+        if ( zKeys != pKeys ) {
+            System.arraycopy( zKeys, pFrom, pKeys, pFrom, pTo - pFrom );
+            System.arraycopy( zRowIDs, pFrom, pRowIDs, pFrom, pTo - pFrom );
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "SortedIndex(" + mColumnDefinition.getColumnName() + ": " + mSize + " " + mKind + " values)";
+    }
+}
@@ -0,0 +1,161 @@
+// This Source Code is in the Public Domain per: http://unlicense.org
+package org.litesoft.whereclause.index;
+
+import org.litesoft.whereclause.SimpleColumnDefinition;
+import org.litesoft.whereclause.WhereClause;
+import org.litesoft.whereclause.evaluation.RowFilter;
+import org.litesoft.whereclause.evaluation.TriState;
+import org.litesoft.whereclause.nonpublic.IllegalArgument;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntConsumer;
+
+/**
+ * An immutable (consistent) view of an <b>IndexedTable</b> as of one version: its rows,
+ * its indexes, and the rows updated since the indexes were built; that selects (plans,
+ * filters, and counts) without blocking, or being affected by, the table's writers.<p>
+ * <a href="../../../Licence.txt">Licence</a><br>
+ * <p/>
+ * The rows are held in segments (of SEGMENT_SIZE rows) that are shared with the table:
+ * an added row goes beyond the end of every earlier snapshot, and an updated row goes
+ * into a copy of its segment (copy on write).  The indexes are shared too, but are only
+ * ever added to, so each select is limited to the snapshot's rows; and as an updated
+ * row is NOT re-indexed (its indexed value is the one it had when the indexes were
+ * built), the updated rows are checked row by row (see <b>IndexedTable.compact()</b>).<p>
+ *
+ * @param <R> the type of the rows.
+ */
+public final class TableSnapshot<R> {
+    static final int SEGMENT_BITS = 10;
+    static final int SEGMENT_SIZE = 1 << SEGMENT_BITS;
+
+    private final IndexedTable<R> mTable;
+    private final long mVersion;
+    private final int mSize;
+    private final Object[][] mSegments;
+    private final Map<SimpleColumnDefinition, List<ColumnIndex>> mIndexes;
+    private final RoaringBitmap mUpdated;
+
+    /**
+     * @param pSegments the rows' segments (NOT changed after, below pSize).
+     * @param pIndexes  the indexes (NOT changed after, other than being added to).
+     * @param pUpdated  the row IDs updated since the indexes were built (NOT changed after).
+     */
+    TableSnapshot( IndexedTable<R> pTable, long pVersion, int pSize, Object[][] pSegments, //
+                   Map<SimpleColumnDefinition, List<ColumnIndex>> pIndexes, RoaringBitmap pUpdated ) {
+        mTable = pTable;
+        mVersion = pVersion;
+        mSize = pSize;
+        mSegments = pSegments;
+        mIndexes = pIndexes;
+        mUpdated = pUpdated;
+    }
+
+    /**
+     * @return the version: incremented by each (batch of) change(s) to the table.
+     */
+    public long getVersion() {
+        return mVersion;
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    @SuppressWarnings("unchecked")
+    public R getRow( int pRowID ) {
+        if ( (pRowID < 0) || (mSize <= pRowID) ) {
+            throw new IndexOutOfBoundsException( "RowID: " + pRowID + ", Size: " + mSize );
+        }
+        return (R) mSegments[pRowID >>> SEGMENT_BITS][pRowID & (SEGMENT_SIZE - 1)];
+    }
+
+    /**
+     * @return the indexes of the column (!null).
+     */
+    public List<ColumnIndex> getIndexes( SimpleColumnDefinition pColumnDefinition ) {
+        List<ColumnIndex> zIndexes = mIndexes.get( pColumnDefinition );
+        return (zIndexes == null) ? Collections.<ColumnIndex>emptyList() : zIndexes;
+    }
+
+    /**
+     * @return the number of rows updated since the indexes were built (each checked row by row).
+     */
+    public int getUpdatedRows() {
+        return mUpdated.getCardinality();
+    }
+
+    RoaringBitmap getUpdated() {
+        return mUpdated;
+    }
+
+    /**
+     * @return the (three-valued) selection of all the rows.
+     */
+    public RowSelection select( WhereClause pWhereClause ) {
+        return plan( pWhereClause ).execute( this, RoaringBitmap.range( 0, mSize ) );
+    }
+
+    /**
+     * @return the (cheapest found) plan for selecting the rows of the WhereClause.
+     */
+    public QueryPlan plan( WhereClause pWhereClause ) {
+        return mTable.newPlanner( this ).plan( pWhereClause );
+    }
+
+    /**
+     * @return the description of the plan for selecting the rows of the WhereClause (see <b>QueryPlan.explain()</b>).
+     */
+    public String explain( WhereClause pWhereClause ) {
+        return plan( pWhereClause ).explain();
+    }
+
+    /**
+     * @return the rows (in row ID order) that the WhereClause selects (is TRUE for).
+     */
+    public List<R> filter( WhereClause pWhereClause ) {
+        RoaringBitmap zSelected = select( pWhereClause ).getTrue();
+        final List<R> zRows = new ArrayList<>( zSelected.getCardinality() );
+        zSelected.forEach( new IntConsumer() {
+            @Override
+            public void accept( int pRowID ) {
+                zRows.add( getRow( pRowID ) );
+            }
+        } );
+        return zRows;
+    }
+
+    public int count( WhereClause pWhereClause ) {
+        return select( pWhereClause ).getTrue().getCardinality();
+    }
+
+    /**
+     * Check (with the WhereClauseEvaluator) each of the rows.
+     */
+    RowSelection check( WhereClause pWhereClause, RoaringBitmap pRows ) {
+        IllegalArgument.ifNull( "WhereClause", pWhereClause );
+        final RowFilter<R> zFilter = mTable.getEvaluator().compile( pWhereClause );
+        final RoaringBitmap zTrue = new RoaringBitmap();
+        final RoaringBitmap zUnknown = new RoaringBitmap();
+        pRows.forEach( new IntConsumer() {
+            @Override
+            public void accept( int pRowID ) {
+                TriState zState = zFilter.evaluate( getRow( pRowID ) );
+                if ( zState == TriState.TRUE ) {
+                    zTrue.add( pRowID );
+                } else if ( zState == TriState.UNKNOWN ) {
+                    zUnknown.add( pRowID );
+                }
+            }
+        } );
+        return new RowSelection( zTrue, zUnknown );
+    }
+
+    @Override
+    public String toString() {
+        return "TableSnapshot(v" + mVersion + ": " + mSize + " rows, " + mUpdated.getCardinality() + " updated, indexes: " + mIndexes.values() + ")";
+    }
+}
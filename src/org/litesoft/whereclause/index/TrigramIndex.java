@@ -0,0 +1,266 @@
+// This Source Code is in the Public Domain per: http://unlicense.org
+package org.litesoft.whereclause.index;
+
+import org.litesoft.whereclause.SimpleColumnDefinition;
+import org.litesoft.whereclause.WhereClauseValueSupport;
+import org.litesoft.whereclause.evaluation.LikeMatcher;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseColumnAndLikeValue;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseColumnAndLikeValues;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseColumnReference;
+import org.litesoft.whereclause.nonpublic.IllegalArgument;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.IntConsumer;
+
+/**
+ * A <b>ColumnIndex</b> for String columns: an inverted index of the trigrams (each
+ * three consecutive characters) of the (normalized) values, each with a (compressed)
+ * <b>RoaringBitmap</b> of the row IDs whose value has it, that answers CONTAINS,
+ * STARTS_WITH, ENDS_WITH, and LIKE (in both modes), i.e. including the leading
+ * wildcards that a sorted (B-tree) index can NOT.<p>
+ * <a href="../../../Licence.txt">Licence</a><br>
+ * <p/>
+ * The candidates for a LIKE are the rows with every trigram of each of its (literal)
+ * segments (the intersection of their row IDs, smallest first), and each candidate is
+ * then verified by the exact <b>LikeMatcher</b>; so the results are exactly those of
+ * the <b>WhereClauseEvaluator</b>.  A LIKE with no segment of three or more characters
+ * has no trigrams, so all of the (NOT null) rows are candidates.<p>
+ * <p/>
+ * For a column with a Search Column the values (and the segments) are lower cased, just
+ * as the case folding LikeMatcher matches them.  Only String values are answered; a
+ * column with any other value is left to the WhereClauseEvaluator (see <b>canSelect()</b>).<p>
+ */
+public class TrigramIndex implements ColumnIndex {
+    /**
+     * The (estimated) cost of verifying a candidate (by the LikeMatcher), relative to
+     * <b>LOOKUP_COST</b> and <b>ROW_ID_COST</b>.
+     */
+    public static final double VERIFY_COST = 1.0;
+
+    private final SimpleColumnDefinition mColumnDefinition;
+    private final RoaringBitmap mNulls = new RoaringBitmap();
+    private final Map<Long, RoaringBitmap> mPostings = new HashMap<>();
+    private String[] mValues = new String[16]; // by row ID, for the verification
+    private int mStrings, mNonStrings;
+
+    public TrigramIndex( SimpleColumnDefinition pColumnDefinition ) {
+        IllegalArgument.ifNull( "ColumnDefinition", mColumnDefinition = pColumnDefinition );
+    }
+
+    @Override
+    public SimpleColumnDefinition getColumnDefinition() {
+        return mColumnDefinition;
+    }
+
+    @Override
+    public TrigramIndex newIndex() {
+        return new TrigramIndex( mColumnDefinition );
+    }
+
+    @Override
+    public synchronized void add( int pRowID, Object pValue ) {
+        Object zValue = WhereClauseValueSupport.normalizeValue( mColumnDefinition, pValue );
+        if ( zValue == null ) {
+            mNulls.add( pRowID );
+            return;
+        }
+        if ( !(zValue instanceof String) ) {
+            mNonStrings++;
+            return;
+        }
+        String zString = (String) zValue;
+        mStrings++;
+        if ( pRowID >= mValues.length ) {
+            mValues = Arrays.copyOf( mValues, Math.max( pRowID + 1, mValues.length * 2 ) );
+        }
+        mValues[pRowID] = zString;
+        for ( int i = 3; i <= zString.length(); i++ ) {
+            Long zTrigram = trigram( zString, i - 3 );
+            RoaringBitmap zPosting = mPostings.get( zTrigram );
+            if ( zPosting == null ) {
+                mPostings.put( zTrigram, zPosting = new RoaringBitmap() );
+            }
+            zPosting.add( pRowID );
+        }
+    }
+
+    private static long trigram( String pString, int pAt ) {
+        return ((long) pString.charAt( pAt ) << 32) | ((long) pString.charAt( pAt + 1 ) << 16) | pString.charAt( pAt + 2 );
+    }
+
+    /**
+     * @return the number of distinct trigrams.
+     */
+    public synchronized int getTrigrams() {
+        return mPostings.size();
+    }
+
+    /**
+     * @return the (approximate) size in bytes of the posting lists.
+     */
+    public synchronized long getSizeInBytes() {
+        long zBytes = 0;
+        for ( RoaringBitmap zPosting : mPostings.values() ) {
+            zBytes += 8 + zPosting.getSizeInBytes();
+        }
+        return zBytes;
+    }
+
+    @Override
+    public synchronized boolean canSelect( AbstractWhereClauseColumnReference pLeaf ) {
+        if ( !mColumnDefinition.equals( pLeaf.getColumnDefinition() ) || (mNonStrings != 0) ) {
+            return false;
+        }
+        switch ( pLeaf.getType() ) {
+            case CONTAINS:
+            case STARTS_WITH:
+            case ENDS_WITH:
+            case LIKE:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    @Override
+    public RowSelection select( AbstractWhereClauseColumnReference pLeaf, RoaringBitmap pRows ) {
+        RoaringBitmap zCandidates;
+        RoaringBitmap zNulls;
+        final String[] zValues;
+        synchronized ( this ) {
+            zNulls = pRows.and( mNulls );
+            zCandidates = candidates( segments( pLeaf ), pRows.andNot( zNulls ) );
+            zValues = mValues;
+        }
+        final LikeMatcher zMatcher = LikeMatcher.compile( pLeaf );
+        final RoaringBitmap zMatches = new RoaringBitmap();
+        zCandidates.forEach( new IntConsumer() {
+            @Override
+            public void accept( int pRowID ) {
+                if ( zMatcher.matches( zValues[pRowID] ) != zMatcher.isNot() ) { // in the regular mode
+                    zMatches.add( pRowID );
+                }
+            }
+        } );
+        return new RowSelection( pLeaf.isNot() ? pRows.andNot( zMatches ).andNot( zNulls ) : zMatches, zNulls );
+    }
+
+    /**
+     * The candidates are estimated as the row IDs of the trigram with the fewest (all of
+     * the NOT null rows if there are no trigrams), i.e. as if every candidate matched.<p>
+     */
+    @Override
+    public synchronized long estimateRows( AbstractWhereClauseColumnReference pLeaf ) {
+        long zCandidates = estimateCandidates( postings( trigrams( segments( pLeaf ) ) ) );
+        return pLeaf.isNot() ? (mStrings - zCandidates) : zCandidates;
+    }
+
+    @Override
+    public synchronized double estimateCost( AbstractWhereClauseColumnReference pLeaf ) {
+        Set<Long> zTrigrams = trigrams( segments( pLeaf ) );
+        List<RoaringBitmap> zPostings = postings( zTrigrams );
+        long zRowIDs = 0;
+        for ( int i = 0; (zPostings != null) && (i < zPostings.size()); i++ ) {
+            zRowIDs += zPostings.get( i ).getCardinality();
+        }
+        return (LOOKUP_COST * zTrigrams.size()) + (ROW_ID_COST * zRowIDs) + (VERIFY_COST * estimateCandidates( zPostings ));
+    }
+
+    private long estimateCandidates( List<RoaringBitmap> pPostings ) {
+        if ( pPostings == null ) {
+            return 0;
+        }
+        long zCandidates = mStrings;
+        for ( RoaringBitmap zPosting : pPostings ) {
+            zCandidates = Math.min( zCandidates, zPosting.getCardinality() );
+        }
+        return zCandidates;
+    }
+
+    /**
+     * @return the (literal) segments of the LIKE (as indexed).
+     */
+    private String[] segments( AbstractWhereClauseColumnReference pLeaf ) {
+        String[] zSegments;
+        switch ( pLeaf.getType() ) {
+            case LIKE:
+                zSegments = ((AbstractWhereClauseColumnAndLikeValues) pLeaf).getValues().clone();
+                break;
+            case CONTAINS:
+            case STARTS_WITH:
+            case ENDS_WITH:
+                zSegments = new String[]{((AbstractWhereClauseColumnAndLikeValue) pLeaf).getValue()};
+                break;
+            default:
+                throw IllegalArgument.exception( "Leaf", "NOT selectable: " + pLeaf );
+        }
+        for ( int i = 0; i < zSegments.length; i++ ) {
+            if ( (zSegments[i] != null) && mColumnDefinition.hasSearchColumn() ) {
+                zSegments[i] = zSegments[i].toLowerCase();
+            }
+        }
+        return zSegments;
+    }
+
+    /**
+     * @return the rows (of pRows) with all the trigrams of the segments.
+     */
+    private RoaringBitmap candidates( String[] pSegments, RoaringBitmap pRows ) {
+        List<RoaringBitmap> zPostings = postings( trigrams( pSegments ) );
+        if ( zPostings == null ) {
+            return new RoaringBitmap(); // NO value has (one of) them
+        }
+        Collections.sort( zPostings, new Comparator<RoaringBitmap>() {
+            @Override
+            public int compare( RoaringBitmap pPosting1, RoaringBitmap pPosting2 ) {
+                return Integer.compare( pPosting1.getCardinality(), pPosting2.getCardinality() );
+            }
+        } );
+        RoaringBitmap zCandidates = pRows;
+        for ( RoaringBitmap zPosting : zPostings ) {
+            if ( zCandidates.isEmpty() ) {
+                break;
+            }
+            zCandidates = zPosting.and( zCandidates );
+        }
+        return zCandidates;
+    }
+
+    private static Set<Long> trigrams( String[] pSegments ) {
+        Set<Long> zTrigrams = new HashSet<>();
+        for ( String zSegment : pSegments ) {
+            for ( int i = 3; (zSegment != null) && (i <= zSegment.length()); i++ ) {
+                zTrigrams.add( trigram( zSegment, i - 3 ) );
+            }
+        }
+        return zTrigrams;
+    }
+
+    /**
+     * @return the postings of the trigrams, or null if NO value has (one of) them.
+     */
+    private List<RoaringBitmap> postings( Set<Long> pTrigrams ) {
+        List<RoaringBitmap> zPostings = new ArrayList<>( pTrigrams.size() );
+        for ( Long zTrigram : pTrigrams ) {
+            RoaringBitmap zPosting = mPostings.get( zTrigram );
+            if ( zPosting == null ) {
+                return null;
+            }
+            zPostings.add( zPosting );
+        }
+        return zPostings;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "TrigramIndex(" + mColumnDefinition.getColumnName() + ": " + mPostings.size() + " trigrams)";
+    }
+}
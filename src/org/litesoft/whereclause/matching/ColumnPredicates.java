@@ -0,0 +1,333 @@
+// This Source Code is in the Public Domain per: http://unlicense.org
+package org.litesoft.whereclause.matching;
+
+import org.litesoft.whereclause.SimpleColumnDefinition;
+import org.litesoft.whereclause.WhereClauseValueSupport;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseColumnAndLikeValue;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseColumnAndTwoValues;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseColumnAndValue;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseColumnAnd_N_Values;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseColumnReference;
+import org.litesoft.whereclause.nonpublic.IllegalArgument;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The (indexed) predicates of one column (of a <b>SubscriptionIndex</b>), that finds
+ * the predicates that are TRUE for a (event's) column value, without checking them one
+ * by one:<p>
+ * <pre>
+ *      IS NULL, IS NOT NULL:         a list of each
+ *      EQUALS, IS_ANY_OF:            a hash map, from each (normalized) value
+ *      LESSTHAN, GREATERTHAN,
+ *      BETWEEN (and their NOTs):     an <b>IntervalTree</b> (per family) of their ranges
+ *      STARTS_WITH:                  a <b>PrefixTrie</b> of their (case folded) prefixes
+ * </pre>
+ * The results are exactly those of the <b>WhereClauseEvaluator</b> (TRUE, as opposed to
+ * FALSE or UNKNOWN).  Like the <b>BitmapIndex</b>, a value is looked up (hashed) when
+ * that is exact: a String when all the values are Strings, and a Number when all the
+ * values are integral (and, for a NON-integral Number, no larger than 2^53); otherwise
+ * each distinct value is checked with <b>WhereClauseValueSupport.areEqual()</b>.  A
+ * range is kept in the tree of the family of its bounds (Numbers, Dates, or a class),
+ * and a value is stabbed into the tree of its family, and checked against the ranges of
+ * any other families (e.g. a String against Numbers), as their order is NOT consistent
+ * (and the NaNs, and the integrals larger than 2^53, are always checked).<p>
+ * <p/>
+ * A predicate is a single (leaf) WhereClause, and so may be added under several values
+ * (an IS_ANY_OF), or ranges (a NOT BETWEEN); and so be found more than once.<p>
+ *
+ * @param <P> the type of the predicates.
+ */
+final class ColumnPredicates<P> {
+    private static final Object UNORDERED = new Object(); // the family of the ranges that are always checked
+
+    private final SimpleColumnDefinition mColumnDefinition;
+    private final List<P> mIsNulls = new ArrayList<>();
+    private final List<P> mIsNotNulls = new ArrayList<>();
+    private final Map<Object, List<P>> mEquals = new HashMap<>();
+    private int mNonStrings, mNonIntegrals, mBigIntegrals; // of the keys of mEquals
+    private final Map<Object, IntervalTree<P>> mRanges = new LinkedHashMap<>(); // by family
+    private final Map<P, List<IntervalTree.Interval<P>>> mIntervals = new HashMap<>();
+    private final PrefixTrie<P> mPrefixes = new PrefixTrie<>();
+    private int mPredicates;
+
+    ColumnPredicates( SimpleColumnDefinition pColumnDefinition ) {
+        IllegalArgument.ifNull( "ColumnDefinition", mColumnDefinition = pColumnDefinition );
+    }
+
+    /**
+     * @return true if the leaf (in its mode) can be indexed; the rest are checked by the <b>WhereClauseEvaluator</b>.
+     */
+    static boolean isIndexable( AbstractWhereClauseColumnReference pLeaf ) {
+        SimpleColumnDefinition zColumnDefinition = pLeaf.getColumnDefinition();
+        switch ( pLeaf.getType() ) {
+            case IS_NULL:
+                return true;
+            case EQUALS: // the NOT mode is null inclusive
+                return !pLeaf.isNot() && (normalize( zColumnDefinition, ((AbstractWhereClauseColumnAndValue) pLeaf).getValue() ) != null);
+            case IS_ANY_OF:
+                if ( !pLeaf.isNot() ) {
+                    for ( Object zValue : ((AbstractWhereClauseColumnAnd_N_Values) pLeaf).getValues() ) {
+                        if ( normalize( zColumnDefinition, zValue ) != null ) {
+                            return true;
+                        }
+                    }
+                }
+                return false;
+            case LESSTHAN:
+            case GREATERTHAN:
+                return normalize( zColumnDefinition, ((AbstractWhereClauseColumnAndValue) pLeaf).getValue() ) != null;
+            case BETWEEN:
+                AbstractWhereClauseColumnAndTwoValues zBetween = (AbstractWhereClauseColumnAndTwoValues) pLeaf;
+                return (normalize( zColumnDefinition, zBetween.getLeftValue() ) != null) && (normalize( zColumnDefinition, zBetween.getRightValue() ) != null);
+            case STARTS_WITH:
+                return !pLeaf.isNot();
+            default:
+                return false;
+        }
+    }
+
+    boolean isEmpty() {
+        return mPredicates == 0;
+    }
+
+    /**
+     * @param pLeaf an indexable (see <b>isIndexable()</b>) leaf of the column.
+     */
+    void add( AbstractWhereClauseColumnReference pLeaf, P pPredicate ) {
+        switch ( pLeaf.getType() ) {
+            case IS_NULL:
+                (pLeaf.isNot() ? mIsNotNulls : mIsNulls).add( pPredicate );
+                break;
+            case EQUALS:
+                addEquals( normalize( ((AbstractWhereClauseColumnAndValue) pLeaf).getValue() ), pPredicate );
+                break;
+            case IS_ANY_OF:
+                for ( Object zValue : ((AbstractWhereClauseColumnAnd_N_Values) pLeaf).getValues() ) {
+                    Object zNormalized = normalize( zValue );
+                    if ( zNormalized != null ) {
+                        addEquals( zNormalized, pPredicate );
+                    }
+                }
+                break;
+            case LESSTHAN:
+            case GREATERTHAN:
+            case BETWEEN:
+                List<IntervalTree.Interval<P>> zIntervals = intervals( pLeaf, pPredicate );
+                for ( IntervalTree.Interval<P> zInterval : zIntervals ) {
+                    IntervalTree<P> zTree = mRanges.get( zInterval.getFamily() );
+                    if ( zTree == null ) {
+                        mRanges.put( zInterval.getFamily(), zTree = new IntervalTree<>() );
+                    }
+                    zTree.add( zInterval );
+                }
+                mIntervals.put( pPredicate, zIntervals );
+                break;
+            case STARTS_WITH:
+                mPrefixes.add( prefix( (AbstractWhereClauseColumnAndLikeValue) pLeaf ), pPredicate );
+                break;
+            default:
+                throw IllegalArgument.exception( "Leaf", "NOT indexable: " + pLeaf );
+        }
+        mPredicates++;
+    }
+
+    /**
+     * @param pLeaf the leaf the predicate was added with.
+     */
+    void remove( AbstractWhereClauseColumnReference pLeaf, P pPredicate ) {
+        switch ( pLeaf.getType() ) {
+            case IS_NULL:
+                (pLeaf.isNot() ? mIsNotNulls : mIsNulls).remove( pPredicate );
+                break;
+            case EQUALS:
+                removeEquals( normalize( ((AbstractWhereClauseColumnAndValue) pLeaf).getValue() ), pPredicate );
+                break;
+            case IS_ANY_OF:
+                for ( Object zValue : ((AbstractWhereClauseColumnAnd_N_Values) pLeaf).getValues() ) {
+                    Object zNormalized = normalize( zValue );
+                    if ( zNormalized != null ) {
+                        removeEquals( zNormalized, pPredicate );
+                    }
+                }
+                break;
+            case LESSTHAN:
+            case GREATERTHAN:
+            case BETWEEN:
+                for ( IntervalTree.Interval<P> zInterval : mIntervals.remove( pPredicate ) ) {
+                    IntervalTree<P> zTree = mRanges.get( zInterval.getFamily() );
+                    zTree.remove( zInterval );
+                    if ( zTree.isEmpty() ) {
+                        mRanges.remove( zInterval.getFamily() );
+                    }
+                }
+                break;
+            case STARTS_WITH:
+                mPrefixes.remove( prefix( (AbstractWhereClauseColumnAndLikeValue) pLeaf ), pPredicate );
+                break;
+            default:
+                throw IllegalArgument.exception( "Leaf", "NOT indexable: " + pLeaf );
+        }
+        mPredicates--;
+    }
+
+    /**
+     * Add the predicates that are TRUE for the column value (possibly more than once).
+     *
+     * @param pValue the (event's, NOT normalized) column value (null OK).
+     */
+    void collect( Object pValue, List<P> pPredicates ) {
+        Object zValue = normalize( pValue );
+        if ( zValue == null ) {
+            pPredicates.addAll( mIsNulls );
+            return;
+        }
+        pPredicates.addAll( mIsNotNulls );
+        if ( !mEquals.isEmpty() ) {
+            collectEquals( zValue, pPredicates );
+        }
+        if ( !mRanges.isEmpty() ) {
+            Object zFamily = family( zValue );
+            for ( Map.Entry<Object, IntervalTree<P>> zEntry : mRanges.entrySet() ) {
+                if ( (zFamily != UNORDERED) && (zEntry.getKey() == zFamily) ) {
+                    zEntry.getValue().stab( zValue, pPredicates );
+                } else {
+                    zEntry.getValue().scan( zValue, pPredicates );
+                }
+            }
+        }
+        if ( !mPrefixes.isEmpty() ) { // as the LikeMatcher: a non-String as its (normalized) toString()
+            String zText = (pValue instanceof String) ? (String) pValue : zValue.toString();
+            mPrefixes.collect( mColumnDefinition.hasSearchColumn() ? zText.toLowerCase() : zText, pPredicates );
+        }
+    }
+
+    private void collectEquals( Object pValue, List<P> pPredicates ) {
+        if ( (pValue instanceof String) ? (mNonStrings == 0) : WhereClauseValueSupport.isIntegral( pValue ) && (mNonIntegrals == 0) ) {
+            addAll( mEquals.get( key( pValue ) ), pPredicates );
+            return;
+        }
+        if ( (pValue instanceof Number) && (mNonIntegrals == 0) && (mBigIntegrals == 0) ) {
+            double zDouble = ((Number) pValue).doubleValue();
+            if ( !Double.isNaN( zDouble ) ) {
+                if ( (zDouble == Math.rint( zDouble )) && WhereClauseValueSupport.isExactAsDouble( (long) zDouble ) ) {
+                    addAll( mEquals.get( (long) zDouble ), pPredicates );
+                }
+                return;
+            }
+        }
+        for ( Map.Entry<Object, List<P>> zEntry : mEquals.entrySet() ) {
+            if ( WhereClauseValueSupport.areEqual( pValue, zEntry.getKey() ) ) {
+                pPredicates.addAll( zEntry.getValue() );
+            }
+        }
+    }
+
+    private static <P> void addAll( List<P> pFound, List<P> pPredicates ) {
+        if ( pFound != null ) {
+            pPredicates.addAll( pFound );
+        }
+    }
+
+    private void addEquals( Object pValue, P pPredicate ) {
+        Object zKey = key( pValue );
+        List<P> zPredicates = mEquals.get( zKey );
+        if ( zPredicates == null ) {
+            mEquals.put( zKey, zPredicates = new ArrayList<>( 1 ) );
+            count( zKey, 1 );
+        }
+        zPredicates.add( pPredicate );
+    }
+
+    private void removeEquals( Object pValue, P pPredicate ) {
+        Object zKey = key( pValue );
+        List<P> zPredicates = mEquals.get( zKey );
+        if ( (zPredicates != null) && zPredicates.remove( pPredicate ) && zPredicates.isEmpty() ) {
+            mEquals.remove( zKey );
+            count( zKey, -1 );
+        }
+    }
+
+    private void count( Object pKey, int pDelta ) {
+        if ( !(pKey instanceof String) ) {
+            mNonStrings += pDelta;
+        }
+        if ( !(pKey instanceof Long) ) {
+            mNonIntegrals += pDelta;
+        } else if ( !WhereClauseValueSupport.isExactAsDouble( (Long) pKey ) ) {
+            mBigIntegrals += pDelta;
+        }
+    }
+
+    private static Object key( Object pValue ) {
+        return WhereClauseValueSupport.isIntegral( pValue ) ? (Object) ((Number) pValue).longValue() : pValue;
+    }
+
+    /**
+     * @return the ranges (TRUE in the leaf's mode) of a LESSTHAN, GREATERTHAN, or BETWEEN.
+     */
+    private List<IntervalTree.Interval<P>> intervals( AbstractWhereClauseColumnReference pLeaf, P pPredicate ) {
+        List<IntervalTree.Interval<P>> zIntervals = new ArrayList<>( 2 );
+        boolean zNot = pLeaf.isNot();
+        switch ( pLeaf.getType() ) {
+            case LESSTHAN: // NOT is ">="
+                Object zBelow = normalize( ((AbstractWhereClauseColumnAndValue) pLeaf).getValue() );
+                zIntervals.add( zNot ? interval( zBelow, true, null, false, pPredicate ) : interval( null, false, zBelow, false, pPredicate ) );
+                break;
+            case GREATERTHAN: // NOT is "<="
+                Object zAbove = normalize( ((AbstractWhereClauseColumnAndValue) pLeaf).getValue() );
+                zIntervals.add( zNot ? interval( null, false, zAbove, true, pPredicate ) : interval( zAbove, false, null, false, pPredicate ) );
+                break;
+            default: // BETWEEN: NOT is below the left or above the right
+                AbstractWhereClauseColumnAndTwoValues zBetween = (AbstractWhereClauseColumnAndTwoValues) pLeaf;
+                Object zLeft = normalize( zBetween.getLeftValue() );
+                Object zRight = normalize( zBetween.getRightValue() );
+                if ( !zNot ) {
+                    zIntervals.add( interval( zLeft, true, zRight, true, pPredicate ) );
+                } else {
+                    zIntervals.add( interval( null, false, zLeft, false, pPredicate ) );
+                    zIntervals.add( interval( zRight, false, null, false, pPredicate ) );
+                }
+                break;
+        }
+        return zIntervals;
+    }
+
+    private static <P> IntervalTree.Interval<P> interval( Object pLow, boolean pLowInclusive, Object pHigh, boolean pHighInclusive, P pPredicate ) {
+        Object zFamily = family( (pLow != null) ? pLow : pHigh );
+        if ( (pLow != null) && (pHigh != null) && (family( pHigh ) != zFamily) ) {
+            zFamily = UNORDERED;
+        }
+        return new IntervalTree.Interval<>( zFamily, pLow, pLowInclusive, pHigh, pHighInclusive, pPredicate );
+    }
+
+    /**
+     * @return the family (see <b>WhereClauseValueSupport.familyOf()</b>) of the (!null, normalized) value, or UNORDERED.
+     */
+    private static Object family( Object pValue ) {
+        Class<?> zFamily = WhereClauseValueSupport.familyOf( pValue );
+        return (zFamily == null) ? UNORDERED : zFamily;
+    }
+
+    private String prefix( AbstractWhereClauseColumnAndLikeValue pLeaf ) {
+        return mColumnDefinition.hasSearchColumn() ? pLeaf.getValue().toLowerCase() : pLeaf.getValue();
+    }
+
+    private Object normalize( Object pValue ) {
+        return normalize( mColumnDefinition, pValue );
+    }
+
+    private static Object normalize( SimpleColumnDefinition pColumnDefinition, Object pValue ) {
+        return WhereClauseValueSupport.normalizeValue( pColumnDefinition, pValue );
+    }
+
+    @Override
+    public String toString() {
+        return "ColumnPredicates(" + mColumnDefinition.getColumnName() + ": " + mPredicates + " predicates, " + mEquals.size() + " values, " + //
+               mIntervals.size() + " ranges, " + mPrefixes.size() + " prefixes)";
+    }
+}
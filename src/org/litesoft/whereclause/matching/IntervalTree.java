@@ -0,0 +1,264 @@
+// This Source Code is in the Public Domain per: http://unlicense.org
+package org.litesoft.whereclause.matching;
+
+import org.litesoft.whereclause.WhereClauseValueSupport;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A (centered) interval tree of the ranges (of the values of one family, see
+ * <b>ColumnPredicates</b>) of the predicates of a column, that finds the ranges that
+ * contain a value (a stabbing query) in O(log n + ranges found).<p>
+ * <a href="../../../Licence.txt">Licence</a><br>
+ * <p/>
+ * Each node has a center (about the median of its ranges' bounds, the low of its median
+ * range) and the ranges that contain it (sorted both by their lows and by their highs),
+ * with the ranges entirely below the center on the left, and those entirely above on
+ * the right.  A value below the center
+ * checks the node's ranges in the order of their lows until a low is above the value,
+ * and goes left (and symmetrically above); a value equal to the center is done.<p>
+ * <p/>
+ * The values are compared with <b>WhereClauseValueSupport.compare()</b>, which must be a
+ * (consistent) total order for the values (and bounds) stabbed.  The tree is built (the
+ * ranges sorted once, and then partitioned in order) on the first stab after a range is
+ * added or removed.<p>
+ *
+ * @param <P> the type of the payloads (predicates) of the ranges.
+ */
+final class IntervalTree<P> {
+    /**
+     * A range: either bound may be null (unbounded).
+     */
+    static final class Interval<P> {
+        private final Object mFamily;
+        private final Object mLow, mHigh;
+        private final boolean mLowInclusive, mHighInclusive;
+        private final P mPayload;
+        private int mSide; // (scratch) of the build
+
+        Interval( Object pFamily, Object pLow, boolean pLowInclusive, Object pHigh, boolean pHighInclusive, P pPayload ) {
+            mFamily = pFamily;
+            mLow = pLow;
+            mLowInclusive = pLowInclusive;
+            mHigh = pHigh;
+            mHighInclusive = pHighInclusive;
+            mPayload = pPayload;
+        }
+
+        /**
+         * @return the family (see <b>ColumnPredicates</b>) of the bounds.
+         */
+        Object getFamily() {
+            return mFamily;
+        }
+
+        boolean contains( Object pValue ) {
+            return isAboveLow( pValue ) && isBelowHigh( pValue );
+        }
+
+        boolean isAboveLow( Object pValue ) {
+            if ( mLow == null ) {
+                return true;
+            }
+            int zComparison = WhereClauseValueSupport.compare( pValue, mLow );
+            return mLowInclusive ? (zComparison >= 0) : (zComparison > 0);
+        }
+
+        boolean isBelowHigh( Object pValue ) {
+            if ( mHigh == null ) {
+                return true;
+            }
+            int zComparison = WhereClauseValueSupport.compare( pValue, mHigh );
+            return mHighInclusive ? (zComparison <= 0) : (zComparison < 0);
+        }
+
+        @Override
+        public String toString() {
+            return (mLowInclusive ? "[" : "(") + ((mLow == null) ? "" : mLow) + ", " + ((mHigh == null) ? "" : mHigh) + (mHighInclusive ? "]" : ")");
+        }
+    }
+
+    private static final Comparator<Interval<?>> BY_LOW = new Comparator<Interval<?>>() {
+        @Override
+        public int compare( Interval<?> pInterval1, Interval<?> pInterval2 ) { // the unbounded first, then the inclusive first
+            if ( (pInterval1.mLow == null) || (pInterval2.mLow == null) ) {
+                return (pInterval1.mLow == null) ? ((pInterval2.mLow == null) ? 0 : -1) : 1;
+            }
+            int zComparison = WhereClauseValueSupport.compare( pInterval1.mLow, pInterval2.mLow );
+            return (zComparison != 0) ? zComparison : Boolean.compare( pInterval2.mLowInclusive, pInterval1.mLowInclusive );
+        }
+    };
+
+    private static final Comparator<Interval<?>> BY_HIGH_DESCENDING = new Comparator<Interval<?>>() {
+        @Override
+        public int compare( Interval<?> pInterval1, Interval<?> pInterval2 ) { // the unbounded first, then the inclusive first
+            if ( (pInterval1.mHigh == null) || (pInterval2.mHigh == null) ) {
+                return (pInterval1.mHigh == null) ? ((pInterval2.mHigh == null) ? 0 : -1) : 1;
+            }
+            int zComparison = WhereClauseValueSupport.compare( pInterval2.mHigh, pInterval1.mHigh );
+            return (zComparison != 0) ? zComparison : Boolean.compare( pInterval2.mHighInclusive, pInterval1.mHighInclusive );
+        }
+    };
+
+    private static final int LEFT = -1, HERE = 0, RIGHT = 1;
+
+    private final Set<Interval<P>> mIntervals = new LinkedHashSet<>();
+    private Node<P> mRoot;
+    private boolean mBuilt = true;
+
+    void add( Interval<P> pInterval ) {
+        mIntervals.add( pInterval );
+        mBuilt = false;
+    }
+
+    void remove( Interval<P> pInterval ) {
+        mIntervals.remove( pInterval );
+        mBuilt = false;
+    }
+
+    boolean isEmpty() {
+        return mIntervals.isEmpty();
+    }
+
+    int size() {
+        return mIntervals.size();
+    }
+
+    /**
+     * Add the payloads of the ranges that contain the value with the tree.
+     */
+    void stab( Object pValue, List<P> pPayloads ) {
+        if ( !mBuilt ) {
+            mRoot = build();
+            mBuilt = true;
+        }
+        for ( Node<P> zNode = mRoot; zNode != null; ) {
+            int zComparison = (zNode.mCenter == null) ? 0 : WhereClauseValueSupport.compare( pValue, zNode.mCenter );
+            if ( zComparison < 0 ) {
+                for ( Interval<P> zInterval : zNode.mByLow ) {
+                    if ( !zInterval.isAboveLow( pValue ) ) {
+                        break;
+                    }
+                    if ( zInterval.isBelowHigh( pValue ) ) {
+                        pPayloads.add( zInterval.mPayload );
+                    }
+                }
+                zNode = zNode.mLeft;
+            } else if ( zComparison > 0 ) {
+                for ( Interval<P> zInterval : zNode.mByHighDescending ) {
+                    if ( !zInterval.isBelowHigh( pValue ) ) {
+                        break;
+                    }
+                    if ( zInterval.isAboveLow( pValue ) ) {
+                        pPayloads.add( zInterval.mPayload );
+                    }
+                }
+                zNode = zNode.mRight;
+            } else {
+                scan( zNode.mByLow, pValue, pPayloads );
+                zNode = null; // the left are all below the center, and the right all above
+            }
+        }
+    }
+
+    /**
+     * Add the payloads of the ranges that contain the value by checking each of them (for a value NOT of the tree's family).
+     */
+    void scan( Object pValue, List<P> pPayloads ) {
+        for ( Interval<P> zInterval : mIntervals ) {
+            if ( zInterval.contains( pValue ) ) {
+                pPayloads.add( zInterval.mPayload );
+            }
+        }
+    }
+
+    private static <P> void scan( Interval<P>[] pIntervals, Object pValue, List<P> pPayloads ) {
+        for ( Interval<P> zInterval : pIntervals ) {
+            if ( zInterval.contains( pValue ) ) {
+                pPayloads.add( zInterval.mPayload );
+            }
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private Node<P> build() {
+        Interval<P>[] zByLow = mIntervals.toArray( new Interval[mIntervals.size()] );
+        Interval<P>[] zByHigh = zByLow.clone();
+        Arrays.sort( zByLow, BY_LOW );
+        Arrays.sort( zByHigh, BY_HIGH_DESCENDING );
+        return build( zByLow, zByHigh );
+    }
+
+    /**
+     * @param pByLow  the ranges sorted by their lows.
+     * @param pByHigh the same ranges sorted by their highs (descending).
+     */
+    private static <P> Node<P> build( Interval<P>[] pByLow, Interval<P>[] pByHigh ) {
+        int zCount = pByLow.length;
+        if ( zCount == 0 ) {
+            return null;
+        }
+        Object zCenter = pByLow[zCount / 2].mLow; // about the median bound
+        if ( zCenter == null ) {
+            zCenter = pByHigh[zCount / 2].mHigh;
+        }
+        if ( zCenter == null ) {
+            return new Node<>( null, pByLow, pByHigh, null, null );
+        }
+        int zLefts = 0, zRights = 0;
+        for ( Interval<P> zInterval : pByLow ) {
+            if ( (zInterval.mHigh != null) && !zInterval.isBelowHigh( zCenter ) ) { // all below the center
+                zInterval.mSide = LEFT;
+                zLefts++;
+            } else if ( (zInterval.mLow != null) && !zInterval.isAboveLow( zCenter ) ) { // all above the center
+                zInterval.mSide = RIGHT;
+                zRights++;
+            } else {
+                zInterval.mSide = HERE;
+            }
+        }
+        if ( (zLefts == zCount) || (zRights == zCount) ) { // No progress (all the bounds are the center)
+            return new Node<>( zCenter, pByLow, pByHigh, null, null );
+        }
+        return new Node<>( zCenter, side( pByLow, HERE, zCount - zLefts - zRights ), side( pByHigh, HERE, zCount - zLefts - zRights ), //
+                           build( side( pByLow, LEFT, zLefts ), side( pByHigh, LEFT, zLefts ) ), //
+                           build( side( pByLow, RIGHT, zRights ), side( pByHigh, RIGHT, zRights ) ) );
+    }
+
+    /**
+     * @return the ranges of the side (in their order).
+     */
+    private static <P> Interval<P>[] side( Interval<P>[] pIntervals, int pSide, int pCount ) {
+        Interval<P>[] zSide = Arrays.copyOf( pIntervals, pCount );
+        int zAt = 0;
+        for ( Interval<P> zInterval : pIntervals ) {
+            if ( zInterval.mSide == pSide ) {
+                zSide[zAt++] = zInterval;
+            }
+        }
+        return zSide;
+    }
+
+    private static final class Node<P> {
+        private final Object mCenter; // null if none of the ranges are bounded
+        private final Interval<P>[] mByLow, mByHighDescending;
+        private final Node<P> mLeft, mRight;
+
+        Node( Object pCenter, Interval<P>[] pByLow, Interval<P>[] pByHighDescending, Node<P> pLeft, Node<P> pRight ) {
+            mCenter = pCenter;
+            mByLow = pByLow;
+            mByHighDescending = pByHighDescending;
+            mLeft = pLeft;
+            mRight = pRight;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "IntervalTree(" + mIntervals.size() + " ranges)";
+    }
+}
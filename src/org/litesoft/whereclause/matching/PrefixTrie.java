@@ -0,0 +1,138 @@
+// This Source Code is in the Public Domain per: http://unlicense.org
+package org.litesoft.whereclause.matching;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A trie (by character) of the prefixes of the STARTS_WITH predicates of a column,
+ * that finds the prefixes of a value in O(value length + prefixes found): the nodes
+ * on the value's path are exactly its prefixes.<p>
+ * <a href="../../../Licence.txt">Licence</a><br>
+ * <p/>
+ * The children of a node are held in (parallel) arrays sorted by their characters (and
+ * found with a binary search), and a node left empty by a remove is pruned.<p>
+ *
+ * @param <P> the type of the payloads (predicates) of the prefixes.
+ */
+final class PrefixTrie<P> {
+    private static final char[] NO_CHARS = {};
+
+    private final Node<P> mRoot = new Node<>();
+    private int mSize;
+
+    void add( String pPrefix, P pPayload ) {
+        Node<P> zNode = mRoot;
+        for ( int i = 0; i < pPrefix.length(); i++ ) {
+            zNode = zNode.child( pPrefix.charAt( i ), true );
+        }
+        if ( zNode.mPayloads == null ) {
+            zNode.mPayloads = new ArrayList<>( 1 );
+        }
+        zNode.mPayloads.add( pPayload );
+        mSize++;
+    }
+
+    void remove( String pPrefix, P pPayload ) {
+        if ( remove( mRoot, pPrefix, 0, pPayload ) ) {
+            mSize--;
+        }
+    }
+
+    boolean isEmpty() {
+        return mSize == 0;
+    }
+
+    int size() {
+        return mSize;
+    }
+
+    /**
+     * Add the payloads of the prefixes of the value.
+     */
+    void collect( String pValue, List<P> pPayloads ) {
+        Node<P> zNode = mRoot;
+        for ( int i = 0; zNode != null; i++ ) {
+            if ( zNode.mPayloads != null ) {
+                pPayloads.addAll( zNode.mPayloads );
+            }
+            zNode = (i < pValue.length()) ? zNode.child( pValue.charAt( i ), false ) : null;
+        }
+    }
+
+    private static <P> boolean remove( Node<P> pNode, String pPrefix, int pAt, P pPayload ) {
+        if ( pAt == pPrefix.length() ) {
+            if ( (pNode.mPayloads == null) || !pNode.mPayloads.remove( pPayload ) ) {
+                return false;
+            }
+            if ( pNode.mPayloads.isEmpty() ) {
+                pNode.mPayloads = null;
+            }
+            return true;
+        }
+        Node<P> zChild = pNode.child( pPrefix.charAt( pAt ), false );
+        if ( (zChild == null) || !remove( zChild, pPrefix, pAt + 1, pPayload ) ) {
+            return false;
+        }
+        if ( zChild.isEmpty() ) {
+            pNode.removeChild( pPrefix.charAt( pAt ) );
+        }
+        return true;
+    }
+
+    private static final class Node<P> {
+        private char[] mChars = NO_CHARS;
+        private Node<P>[] mChildren;
+        private List<P> mPayloads; // null if none
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        Node<P> child( char pChar, boolean pCreate ) {
+            int zAt = Arrays.binarySearch( mChars, pChar );
+            if ( zAt >= 0 ) {
+                return mChildren[zAt];
+            }
+            if ( !pCreate ) {
+                return null;
+            }
+            zAt = -zAt - 1;
+            int zChildren = mChars.length;
+            char[] zChars = new char[zChildren + 1];
+            Node<P>[] zNodes = new Node[zChildren + 1];
+            System.arraycopy( mChars, 0, zChars, 0, zAt );
+            System.arraycopy( mChars, zAt, zChars, zAt + 1, zChildren - zAt );
+            if ( zChildren != 0 ) {
+                System.arraycopy( mChildren, 0, zNodes, 0, zAt );
+                System.arraycopy( mChildren, zAt, zNodes, zAt + 1, zChildren - zAt );
+            }
+            zChars[zAt] = pChar;
+            zNodes[zAt] = new Node<>();
+            mChars = zChars;
+            mChildren = zNodes;
+            return zNodes[zAt];
+        }
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        void removeChild( char pChar ) {
+            int zAt = Arrays.binarySearch( mChars, pChar );
+            int zChildren = mChars.length - 1;
+            char[] zChars = new char[zChildren];
+            Node<P>[] zNodes = new Node[zChildren];
+            System.arraycopy( mChars, 0, zChars, 0, zAt );
+            System.arraycopy( mChars, zAt + 1, zChars, zAt, zChildren - zAt );
+            System.arraycopy( mChildren, 0, zNodes, 0, zAt );
+            System.arraycopy( mChildren, zAt + 1, zNodes, zAt, zChildren - zAt );
+            mChars = zChars;
+            mChildren = zNodes;
+        }
+
+        boolean isEmpty() {
+            return (mPayloads == null) && (mChars.length == 0);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "PrefixTrie(" + mSize + " prefixes)";
+    }
+}
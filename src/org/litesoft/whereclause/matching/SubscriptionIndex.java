@@ -0,0 +1,444 @@
+// This Source Code is in the Public Domain per: http://unlicense.org
+package org.litesoft.whereclause.matching;
+
+import org.litesoft.whereclause.SimpleColumnDefinition;
+import org.litesoft.whereclause.WhereClause;
+import org.litesoft.whereclause.WhereClauseFactory;
+import org.litesoft.whereclause.evaluation.ColumnAccessor;
+import org.litesoft.whereclause.evaluation.RowFilter;
+import org.litesoft.whereclause.evaluation.TriState;
+import org.litesoft.whereclause.evaluation.WhereClauseEvaluator;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseColumnAndLikeValue;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseColumnAndTwoValues;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseColumnAndValue;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseColumnAnd_N_Values;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseColumnReference;
+import org.litesoft.whereclause.nonpublic.IllegalArgument;
+import org.litesoft.whereclause.statistics.SelectivityEstimator;
+import org.litesoft.whereclause.statistics.SelectivitySource;
+import org.litesoft.whereclause.statistics.StatisticsRegistry;
+import org.litesoft.whereclause.transform.NormalForm;
+import org.litesoft.whereclause.transform.NormalFormConverter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An inverted index of the <b>WhereClause</b>s of many subscriptions (e.g. hundreds of
+ * thousands of them), that finds the subscriptions that an event (a row) matches, i.e.
+ * whose WhereClause is TRUE for it, in time that depends on the predicates the event
+ * satisfies, NOT on the number of subscriptions.<p>
+ * <a href="../../../Licence.txt">Licence</a><br>
+ * <p/>
+ * Each WhereClause is converted to its Disjunctive Normal Form (see
+ * <b>NormalFormConverter</b>), and each of its conjunctions (ANDs of literals) is
+ * matched by counting its satisfied predicates: its indexable literals (see
+ * <b>ColumnPredicates</b>) are shared, as predicates, by all the conjunctions that have
+ * them.  Each conjunction is clustered under just one of its predicates, its access
+ * predicate (the one whose satisfaction, per the <b>SelectivitySource</b>, is expected
+ * to count the fewest conjunctions, i.e. its selectivity times its cluster), and only
+ * the access predicates are indexed by column (hashed values, interval trees of
+ * ranges, and tries of prefixes).  An event first finds (and marks)
+ * the access predicates it satisfies; then only the conjunctions clustered under them
+ * are counted, the marks answering for their other indexed predicates, and any
+ * predicate that is not indexed being evaluated (once per event), so that neither a
+ * broad predicate (e.g. "Status = 'open'") nor a broad range (e.g. "Amount &lt; 500")
+ * touches every conjunction that has it.  A conjunction all of whose predicates are
+ * satisfied is a match once its other literals (the residual, e.g. a CONTAINS or a NOT
+ * EQUALS) are checked by the <b>WhereClauseEvaluator</b>.  A conjunction without any
+ * indexable literals is checked for every event.<p>
+ * <p/>
+ * The results are exactly those of the WhereClauseEvaluator (with the same transform
+ * applied to each WhereClause), in SQL's three-valued logic: a subscription matches if
+ * its WhereClause is TRUE (NOT UNKNOWN).<p>
+ * <p/>
+ * The marks are held in the predicates themselves (by the number of the event), so each
+ * method holds the index's lock.<p>
+ *
+ * @param <S> the type of the subscribers (keys, with equals() and hashCode()).
+ * @param <R> the type of the events (rows).
+ */
+public class SubscriptionIndex<S, R> {
+    private final WhereClauseEvaluator<R> mEvaluator;
+    private final ColumnAccessor<R> mAccessor;
+    private final NormalFormConverter mConverter;
+    private final SelectivitySource mSelectivitySource;
+    private final Map<S, Subscription> mSubscriptions = new HashMap<>();
+    private final Map<List<Object>, Predicate> mPredicates = new HashMap<>();
+    private final Map<SimpleColumnDefinition, ColumnPredicates<Predicate>> mColumns = new LinkedHashMap<>();
+    private final Predicate mUnindexed = new Predicate( null, null, 1.0 ); // the access of the conjunctions without any predicates
+    private final List<Predicate> mFound = new ArrayList<>();
+    private long mEvent;
+
+    /**
+     * Constructor.<p>
+     *
+     * @param pEvaluator         checks the residual literals (!null), and reads the events' column values.
+     * @param pConverter         converts each WhereClause to its DNF (!null).
+     * @param pSelectivitySource the selectivities of the predicates, for choosing the access predicates (!null).
+     */
+    public SubscriptionIndex( WhereClauseEvaluator<R> pEvaluator, NormalFormConverter pConverter, SelectivitySource pSelectivitySource ) {
+        IllegalArgument.ifNull( "Evaluator", mEvaluator = pEvaluator );
+        IllegalArgument.ifNull( "Converter", mConverter = pConverter );
+        IllegalArgument.ifNull( "SelectivitySource", mSelectivitySource = pSelectivitySource );
+        mAccessor = pEvaluator.getAccessor();
+    }
+
+    /**
+     * Constructor using the NormalFormConverter.INSTANCE, and a SelectivityEstimator over
+     * an empty StatisticsRegistry (its defaults).<p>
+     *
+     * @param pAccessor reads the events' column values (!null).
+     */
+    public SubscriptionIndex( ColumnAccessor<R> pAccessor ) {
+        this( new WhereClauseEvaluator<>( pAccessor ), NormalFormConverter.INSTANCE, new SelectivityEstimator( new StatisticsRegistry() ) );
+    }
+
+    /**
+     * Register (or replace) the subscriber's WhereClause.<p>
+     *
+     * @param pSubscriber the subscriber (!null).
+     * @param pWhereClause the tree (!null, IS_INs only against the evaluator's tables in memory).
+     *
+     * @return this.
+     */
+    public synchronized SubscriptionIndex<S, R> register( S pSubscriber, WhereClause pWhereClause ) {
+        IllegalArgument.ifNull( "Subscriber", pSubscriber );
+        IllegalArgument.ifNull( "WhereClause", pWhereClause );
+        NormalForm zDNF = mConverter.toDNF( mEvaluator.getTransform().transform( pWhereClause ) );
+        List<List<AbstractWhereClauseColumnReference>> zIndexed = new ArrayList<>();
+        List<RowFilter<R>> zResiduals = new ArrayList<>();
+        for ( List<WhereClause> zClause : zDNF.getClauses() ) { // compiled (which may fail) before any change
+            List<AbstractWhereClauseColumnReference> zLeaves = new ArrayList<>();
+            List<WhereClause> zResidual = new ArrayList<>();
+            for ( WhereClause zLiteral : zClause ) {
+                if ( (zLiteral instanceof AbstractWhereClauseColumnReference) && ColumnPredicates.isIndexable( (AbstractWhereClauseColumnReference) zLiteral ) ) {
+                    zLeaves.add( (AbstractWhereClauseColumnReference) zLiteral );
+                } else {
+                    zResidual.add( zLiteral );
+                }
+            }
+            zIndexed.add( zLeaves );
+            zResiduals.add( zResidual.isEmpty() ? null : //
+                            mEvaluator.compile( (zResidual.size() == 1) ? zResidual.get( 0 ) : WhereClauseFactory.INSTANCE.and( zResidual ) ) );
+        }
+        unregister( pSubscriber );
+        Subscription zSubscription = new Subscription( pSubscriber, pWhereClause );
+        for ( int i = 0; i < zIndexed.size(); i++ ) {
+            zSubscription.mConjunctions.add( new Conjunction( zSubscription, predicatesOf( zIndexed.get( i ) ), zResiduals.get( i ) ) );
+        }
+        mSubscriptions.put( pSubscriber, zSubscription );
+        return this;
+    }
+
+    /**
+     * @return true if the subscriber was registered.
+     */
+    public synchronized boolean unregister( S pSubscriber ) {
+        Subscription zSubscription = mSubscriptions.remove( pSubscriber );
+        if ( zSubscription == null ) {
+            return false;
+        }
+        for ( Conjunction zConjunction : zSubscription.mConjunctions ) {
+            zConjunction.unlink();
+        }
+        return true;
+    }
+
+    /**
+     * @return the subscriber's WhereClause, or null if NOT registered.
+     */
+    public synchronized WhereClause getWhereClause( S pSubscriber ) {
+        Subscription zSubscription = mSubscriptions.get( pSubscriber );
+        return (zSubscription == null) ? null : zSubscription.mWhereClause;
+    }
+
+    public synchronized int size() {
+        return mSubscriptions.size();
+    }
+
+    /**
+     * @return the number of distinct (indexed) predicates.
+     */
+    public synchronized int getPredicates() {
+        return mPredicates.size();
+    }
+
+    /**
+     * @return the number of conjunctions without any (indexed) predicates, each checked for every event.
+     */
+    public synchronized int getUnindexedConjunctions() {
+        return mUnindexed.mAccessed;
+    }
+
+    /**
+     * @param pEvent the event (!null).
+     *
+     * @return the subscribers (each once) whose WhereClauses are TRUE for the event (!null).
+     */
+    public synchronized List<S> match( R pEvent ) {
+        IllegalArgument.ifNull( "Event", pEvent );
+        long zEvent = ++mEvent;
+        List<Predicate> zFound = mFound;
+        List<S> zMatches = new ArrayList<>();
+        try {
+            for ( Map.Entry<SimpleColumnDefinition, ColumnPredicates<Predicate>> zEntry : mColumns.entrySet() ) {
+                zEntry.getValue().collect( mAccessor.getValue( pEvent, zEntry.getKey() ), zFound );
+            }
+            int zSatisfied = 0;
+            for ( Predicate zPredicate : zFound ) { // marked (and kept) once each
+                if ( zPredicate.mEvent != zEvent ) {
+                    zPredicate.mEvent = zEvent;
+                    zFound.set( zSatisfied++, zPredicate );
+                }
+            }
+            for ( int i = 0; i < zSatisfied; i++ ) {
+                Predicate zPredicate = zFound.get( i );
+                for ( int j = 0; j < zPredicate.mAccessed; j++ ) {
+                    Conjunction zConjunction = zPredicate.mConjunctions[j];
+                    if ( zConjunction.isSatisfied( pEvent, zEvent ) ) {
+                        zConjunction.check( pEvent, zEvent, zMatches );
+                    }
+                }
+            }
+        }
+        finally {
+            zFound.clear(); // even if an accessor (or filter) threw, so its predicates are NOT found for the next event
+        }
+        for ( int i = 0; i < mUnindexed.mAccessed; i++ ) {
+            mUnindexed.mConjunctions[i].check( pEvent, zEvent, zMatches );
+        }
+        return zMatches;
+    }
+
+    /**
+     * @return the (shared) predicates of the (indexable) leaves, each once.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private Predicate[] predicatesOf( List<AbstractWhereClauseColumnReference> pLeaves ) {
+        List<Predicate> zPredicates = new ArrayList<>( pLeaves.size() );
+        for ( AbstractWhereClauseColumnReference zLeaf : pLeaves ) {
+            List<Object> zKey = keyOf( zLeaf );
+            Predicate zPredicate = mPredicates.get( zKey );
+            if ( zPredicate == null ) {
+                mPredicates.put( zKey, zPredicate = new Predicate( zKey, zLeaf, selectivityOf( zLeaf ) ) );
+            }
+            if ( !zPredicates.contains( zPredicate ) ) { // e.g. "a = 1 AND a = 1"
+                zPredicates.add( zPredicate );
+            }
+        }
+        return zPredicates.toArray( (Predicate[]) new SubscriptionIndex.Predicate[zPredicates.size()] );
+    }
+
+    private double selectivityOf( AbstractWhereClauseColumnReference pLeaf ) {
+        double zEstimate = mSelectivitySource.selectivityOf( pLeaf );
+        return Double.isNaN( zEstimate ) ? 0.5 : Math.max( 0.0, Math.min( 1.0, zEstimate ) );
+    }
+
+    /**
+     * @return the key of the leaf: its column, type, mode, and values (NOT its SQL, which may NOT be exact, e.g. for a Date).
+     */
+    private static List<Object> keyOf( AbstractWhereClauseColumnReference pLeaf ) {
+        List<Object> zKey = new ArrayList<>( Arrays.asList( pLeaf.getColumnDefinition(), pLeaf.getType(), pLeaf.isNot() ) );
+        if ( pLeaf instanceof AbstractWhereClauseColumnAndValue ) {
+            zKey.add( ((AbstractWhereClauseColumnAndValue) pLeaf).getValue() );
+        } else if ( pLeaf instanceof AbstractWhereClauseColumnAndTwoValues ) {
+            zKey.add( ((AbstractWhereClauseColumnAndTwoValues) pLeaf).getLeftValue() );
+            zKey.add( ((AbstractWhereClauseColumnAndTwoValues) pLeaf).getRightValue() );
+        } else if ( pLeaf instanceof AbstractWhereClauseColumnAnd_N_Values ) {
+            zKey.addAll( Arrays.asList( ((AbstractWhereClauseColumnAnd_N_Values) pLeaf).getValues() ) );
+        } else if ( pLeaf instanceof AbstractWhereClauseColumnAndLikeValue ) {
+            zKey.add( ((AbstractWhereClauseColumnAndLikeValue) pLeaf).getValue() );
+        }
+        return zKey;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "SubscriptionIndex(" + mSubscriptions.size() + " subscriptions, " + mPredicates.size() + " predicates, " + mUnindexed.mAccessed + " unindexed conjunctions)";
+    }
+
+    private class Subscription {
+        private final S mSubscriber;
+        private final WhereClause mWhereClause;
+        private final List<Conjunction> mConjunctions = new ArrayList<>( 1 );
+        private long mEvent; // last matched
+
+        Subscription( S pSubscriber, WhereClause pWhereClause ) {
+            mSubscriber = pSubscriber;
+            mWhereClause = pWhereClause;
+        }
+    }
+
+    /**
+     * A (shared) indexable literal, with the conjunctions it is the access predicate of.
+     * Only the access predicates are indexed (in their column), so an event marks only
+     * them; any other is checked (once per event) by evaluating it.
+     */
+    private class Predicate {
+        private final List<Object> mKey;
+        private final AbstractWhereClauseColumnReference mLeaf; // null for the unindexed
+        private final double mSelectivity;
+        private final RowFilter<R> mFilter; // null for the unindexed
+        private int mReferences; // the conjunctions that have it
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private Conjunction[] mConjunctions = (Conjunction[]) new SubscriptionIndex.Conjunction[2]; // accessed by it
+        private int mAccessed;
+        private long mEvent; // last satisfied (if indexed)
+        private long mEvaluated; // last evaluated (if not indexed)
+        private boolean mSatisfied;
+
+        Predicate( List<Object> pKey, AbstractWhereClauseColumnReference pLeaf, double pSelectivity ) {
+            mKey = pKey;
+            mLeaf = pLeaf;
+            mSelectivity = pSelectivity;
+            mFilter = (pLeaf == null) ? null : mEvaluator.compile( pLeaf );
+        }
+
+        /**
+         * @return the expected number of conjunctions counted per event, if it were the access predicate of one more.
+         */
+        double accessCost() {
+            return mSelectivity * (mAccessed + 1);
+        }
+
+        /**
+         * @return true if this is a better access predicate (cheaper, then less shared) than pOther.
+         */
+        boolean isBetterAccessThan( Predicate pOther ) {
+            double zCost = accessCost(), zOtherCost = pOther.accessCost();
+            if ( zCost != zOtherCost ) {
+                return zCost < zOtherCost;
+            }
+            return mReferences < pOther.mReferences;
+        }
+
+        /**
+         * @return true if the predicate is TRUE for the event, from its mark if indexed, otherwise by evaluating it (once per event).
+         */
+        boolean isSatisfied( R pEvent, long pEventNumber ) {
+            if ( mAccessed != 0 ) {
+                return mEvent == pEventNumber;
+            }
+            if ( mEvaluated != pEventNumber ) {
+                mEvaluated = pEventNumber;
+                mSatisfied = (mFilter.evaluate( pEvent ) == TriState.TRUE);
+            }
+            return mSatisfied;
+        }
+
+        /**
+         * Add the conjunction (indexing the predicate if it is its first).
+         *
+         * @return the position of the conjunction.
+         */
+        int access( Conjunction pConjunction ) {
+            if ( (mAccessed == 0) && (mLeaf != null) ) {
+                SimpleColumnDefinition zColumnDefinition = mLeaf.getColumnDefinition();
+                ColumnPredicates<Predicate> zColumn = mColumns.get( zColumnDefinition );
+                if ( zColumn == null ) {
+                    mColumns.put( zColumnDefinition, zColumn = new ColumnPredicates<>( zColumnDefinition ) );
+                }
+                zColumn.add( mLeaf, this );
+            }
+            if ( mAccessed == mConjunctions.length ) {
+                mConjunctions = Arrays.copyOf( mConjunctions, mAccessed * 2 );
+            }
+            mConjunctions[mAccessed] = pConjunction;
+            return mAccessed++;
+        }
+
+        /**
+         * Remove the conjunction at the position (moving the last conjunction into it), and
+         * un-index the predicate if it was its last.
+         */
+        void unaccess( int pPosition ) {
+            Conjunction zLast = mConjunctions[--mAccessed];
+            mConjunctions[mAccessed] = null;
+            if ( pPosition != mAccessed ) {
+                mConjunctions[pPosition] = zLast;
+                zLast.mPosition = pPosition;
+            }
+            if ( (mAccessed == 0) && (mLeaf != null) ) {
+                SimpleColumnDefinition zColumnDefinition = mLeaf.getColumnDefinition();
+                ColumnPredicates<Predicate> zColumn = mColumns.get( zColumnDefinition );
+                zColumn.remove( mLeaf, this );
+                if ( zColumn.isEmpty() ) {
+                    mColumns.remove( zColumnDefinition );
+                }
+            }
+        }
+
+        /**
+         * Drop a reference, and the predicate itself once it has none.
+         */
+        void dereference() {
+            if ( --mReferences == 0 ) {
+                mPredicates.remove( mKey );
+            }
+        }
+    }
+
+    /**
+     * A clause (an AND of literals) of a subscription's DNF: its (distinct, indexed) predicates, and the residual of its other literals.
+     */
+    private class Conjunction {
+        private final Subscription mSubscription;
+        private final Predicate[] mPredicates;
+        private final Predicate mAccess;
+        private int mPosition; // in the access predicate's conjunctions
+        private final RowFilter<R> mResidual; // null if none
+
+        Conjunction( Subscription pSubscription, Predicate[] pPredicates, RowFilter<R> pResidual ) {
+            mSubscription = pSubscription;
+            mPredicates = pPredicates;
+            mResidual = pResidual;
+            Predicate zAccess = mUnindexed;
+            for ( Predicate zPredicate : pPredicates ) {
+                zPredicate.mReferences++;
+                if ( (zAccess == mUnindexed) || zPredicate.isBetterAccessThan( zAccess ) ) {
+                    zAccess = zPredicate;
+                }
+            }
+            mAccess = zAccess;
+            mPosition = zAccess.access( this );
+        }
+
+        void unlink() {
+            mAccess.unaccess( mPosition );
+            for ( Predicate zPredicate : mPredicates ) {
+                zPredicate.dereference();
+            }
+        }
+
+        /**
+         * The access predicate is satisfied (by the event).
+         *
+         * @return true if all the predicates are satisfied, i.e. their count is the number of them.
+         */
+        boolean isSatisfied( R pEvent, long pEventNumber ) {
+            int zCount = 0;
+            for ( Predicate zPredicate : mPredicates ) {
+                if ( (zPredicate != mAccess) && !zPredicate.isSatisfied( pEvent, pEventNumber ) ) {
+                    break;
+                }
+                zCount++;
+            }
+            return zCount == mPredicates.length;
+        }
+
+        /**
+         * All the predicates are TRUE, so add the subscriber (once) if the residual is TRUE too.
+         */
+        void check( R pEvent, long pEventNumber, List<S> pMatches ) {
+            if ( (mSubscription.mEvent != pEventNumber) && ((mResidual == null) || (mResidual.evaluate( pEvent ) == TriState.TRUE)) ) {
+                mSubscription.mEvent = pEventNumber;
+                pMatches.add( mSubscription.mSubscriber );
+            }
+        }
+    }
+}
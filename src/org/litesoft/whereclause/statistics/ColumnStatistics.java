@@ -0,0 +1,292 @@
+// This Source Code is in the Public Domain per: http://unlicense.org
+package org.litesoft.whereclause.statistics;
+
+import org.litesoft.whereclause.WhereClauseValueSupport;
+import org.litesoft.whereclause.nonpublic.IllegalArgument;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The (immutable) statistics of a single column, used by the <b>SelectivityEstimator</b>.<p>
+ * <a href="../../../Licence.txt">Licence</a><br>
+ * <p/>
+ * The statistics are:<p>
+ * <ul>
+ * Row Count: the number of rows in the table,<br>
+ * Distinct Count: the number of distinct (non-null) values,<br>
+ * Null Fraction: the fraction of the rows that are null,<br>
+ * Most Common Values: the values, and the fraction of the rows that have each of them, and<br>
+ * Histogram: the sorted bounds of an equi-depth histogram over the non-null values,
+ * each of the (bounds - 1) buckets holding the same number of rows.
+ * </ul><p>
+ * <p/>
+ * Values (of a column with a Search Column) are expected to be those of the Search
+ * Column, i.e. lower cased.<p>
+ */
+public class ColumnStatistics {
+    private static final Object[] NO_VALUES = new Object[0];
+    private static final double[] NO_FREQUENCIES = new double[0];
+
+    private final long mRowCount;
+    private final long mDistinctCount;
+    private final double mNullFraction;
+    private final Object[] mMostCommonValues;
+    private final double[] mMostCommonFrequencies;
+    private final double mMostCommonTotal;
+    private final Object[] mHistogramBounds;
+
+    /**
+     * Constructor for the full set of statistics.<p>
+     *
+     * @param pRowCount              number of rows (>= 0).
+     * @param pDistinctCount         number of distinct non-null values (>= 0).
+     * @param pNullFraction          fraction of the rows that are null (0.0 - 1.0).
+     * @param pMostCommonValues      the most common values (null OK, entries !null).
+     * @param pMostCommonFrequencies the fraction of the rows for each of the most common values (same length as pMostCommonValues).
+     * @param pHistogramBounds       the sorted equi-depth histogram bounds (null OK, otherwise at least 2 !null entries).
+     */
+    public ColumnStatistics( long pRowCount, long pDistinctCount, double pNullFraction, //
+                             Object[] pMostCommonValues, double[] pMostCommonFrequencies, Object[] pHistogramBounds ) {
+        if ( pRowCount < 0 ) {
+            throw IllegalArgument.exception( "RowCount", "Negative" );
+        }
+        if ( pDistinctCount < 0 ) {
+            throw IllegalArgument.exception( "DistinctCount", "Negative" );
+        }
+        if ( !(0.0 <= pNullFraction && pNullFraction <= 1.0) ) {
+            throw IllegalArgument.exception( "NullFraction", "NOT between 0 and 1" );
+        }
+        mRowCount = pRowCount;
+        mDistinctCount = pDistinctCount;
+        mNullFraction = pNullFraction;
+        mMostCommonValues = (pMostCommonValues != null) ? pMostCommonValues.clone() : NO_VALUES;
+        mMostCommonFrequencies = (pMostCommonFrequencies != null) ? pMostCommonFrequencies.clone() : NO_FREQUENCIES;
+        if ( mMostCommonValues.length != mMostCommonFrequencies.length ) {
+            throw IllegalArgument.exception( "MostCommonFrequencies", "NOT the same length as the MostCommonValues" );
+        }
+        double zTotal = 0.0;
+        for ( int i = 0; i < mMostCommonValues.length; i++ ) {
+            IllegalArgument.ifNull( "MostCommonValues[" + i + "]", mMostCommonValues[i] );
+            zTotal += mMostCommonFrequencies[i];
+        }
+        mMostCommonTotal = Math.min( zTotal, 1.0 - mNullFraction );
+        if ( (pHistogramBounds != null) && (pHistogramBounds.length < 2) ) {
+            throw IllegalArgument.exception( "HistogramBounds", "NOT at least 2 bounds" );
+        }
+        mHistogramBounds = (pHistogramBounds != null) ? pHistogramBounds.clone() : NO_VALUES;
+        for ( int i = 0; i < mHistogramBounds.length; i++ ) {
+            IllegalArgument.ifNull( "HistogramBounds[" + i + "]", mHistogramBounds[i] );
+        }
+    }
+
+    /**
+     * Constructor for just the basic statistics.<p>
+     *
+     * @param pRowCount      number of rows (>= 0).
+     * @param pDistinctCount number of distinct non-null values (>= 0).
+     * @param pNullFraction  fraction of the rows that are null (0.0 - 1.0).
+     */
+    public ColumnStatistics( long pRowCount, long pDistinctCount, double pNullFraction ) {
+        this( pRowCount, pDistinctCount, pNullFraction, null, null, null );
+    }
+
+    /**
+     * Compute the statistics from all of (or a sample of) a column's values.<p>
+     *
+     * @param pValues           the values (null entries OK) (!null).
+     * @param pMostCommonValues maximum number of most common values to track (>= 0).
+     * @param pHistogramBuckets number of histogram buckets (0 for no histogram).
+     *
+     * @return the computed statistics.
+     */
+    public static ColumnStatistics of( Collection<?> pValues, int pMostCommonValues, int pHistogramBuckets ) {
+        IllegalArgument.ifNull( "Values", pValues );
+        Map<Object, Integer> zCounts = new HashMap<>();
+        List<Object> zNonNulls = new ArrayList<>( pValues.size() );
+        for ( Object zValue : pValues ) {
+            if ( zValue != null ) {
+                zNonNulls.add( zValue );
+                Integer zCount = zCounts.get( zValue );
+                zCounts.put( zValue, (zCount == null) ? 1 : zCount + 1 );
+            }
+        }
+        long zRows = pValues.size();
+        double zNullFraction = (zRows == 0) ? 0.0 : (zRows - zNonNulls.size()) / (double) zRows;
+
+        List<Map.Entry<Object, Integer>> zEntries = new ArrayList<>( zCounts.entrySet() );
+        zEntries.sort( new Comparator<Map.Entry<Object, Integer>>() {
+            @Override
+            public int compare( Map.Entry<Object, Integer> pEntry1, Map.Entry<Object, Integer> pEntry2 ) {
+                return pEntry2.getValue().compareTo( pEntry1.getValue() );
+            }
+        } );
+        int zMCVs = Math.min( pMostCommonValues, zEntries.size() );
+        Object[] zMostCommonValues = new Object[zMCVs];
+        double[] zMostCommonFrequencies = new double[zMCVs];
+        for ( int i = 0; i < zMCVs; i++ ) {
+            zMostCommonValues[i] = zEntries.get( i ).getKey();
+            zMostCommonFrequencies[i] = zEntries.get( i ).getValue() / (double) zRows;
+        }
+
+        Object[] zBounds = null;
+        if ( (pHistogramBuckets > 0) && (zNonNulls.size() > 1) ) {
+            zNonNulls.sort( VALUE_ORDER );
+            int zBuckets = Math.min( pHistogramBuckets, zNonNulls.size() - 1 );
+            zBounds = new Object[zBuckets + 1];
+            for ( int i = 0; i <= zBuckets; i++ ) {
+                zBounds[i] = zNonNulls.get( (int) ((long) i * (zNonNulls.size() - 1) / zBuckets) );
+            }
+        }
+        return new ColumnStatistics( zRows, zCounts.size(), zNullFraction, zMostCommonValues, zMostCommonFrequencies, zBounds );
+    }
+
+    /**
+     * A total order of the values for the histogram: those of a family (Numbers, Dates,
+     * Strings, then the other classes by name) together, each family ordered as
+     * <b>WhereClauseValueSupport.compare()</b> orders it (so a NaN after all the other
+     * Numbers), but with each integral compared exactly with each NON-integral Number.
+     * The families are NOT compared with compare(), as (e.g. 9 &lt; "10" &lt; "9" = 9) it
+     * is NOT transitive across them, and a sort needs a consistent order.
+     */
+    private static final Comparator<Object> VALUE_ORDER = new Comparator<Object>() {
+        @Override
+        @SuppressWarnings("unchecked")
+        public int compare( Object pValue1, Object pValue2 ) {
+            int zCompare = Integer.compare( family( pValue1 ), family( pValue2 ) );
+            if ( zCompare != 0 ) {
+                return zCompare;
+            }
+            if ( pValue1 instanceof Number ) {
+                return compareNumbers( (Number) pValue1, (Number) pValue2 );
+            }
+            if ( (pValue1 instanceof java.util.Date) || (pValue1 instanceof String) ) {
+                return WhereClauseValueSupport.compare( pValue1, pValue2 );
+            }
+            zCompare = pValue1.getClass().getName().compareTo( pValue2.getClass().getName() );
+            if ( zCompare != 0 ) {
+                return zCompare;
+            }
+            if ( (pValue1 instanceof Comparable) && (pValue1.getClass() == pValue2.getClass()) ) {
+                return ((Comparable<Object>) pValue1).compareTo( pValue2 );
+            }
+            return pValue1.toString().compareTo( pValue2.toString() );
+        }
+
+        private int family( Object pValue ) {
+            return (pValue instanceof Number) ? 0 : (pValue instanceof java.util.Date) ? 1 : (pValue instanceof String) ? 2 : 3;
+        }
+
+        private int compareNumbers( Number pNumber1, Number pNumber2 ) {
+            boolean zIntegral1 = WhereClauseValueSupport.isIntegral( pNumber1 );
+            if ( zIntegral1 == WhereClauseValueSupport.isIntegral( pNumber2 ) ) {
+                return WhereClauseValueSupport.compare( pNumber1, pNumber2 );
+            }
+            return zIntegral1 ? compareExactly( pNumber1.longValue(), pNumber2.doubleValue() ) : //
+                   -compareExactly( pNumber2.longValue(), pNumber1.doubleValue() );
+        }
+
+        /**
+         * A long and a double as their exact (real number) values, a NaN being greater than every long.
+         */
+        private int compareExactly( long pLong, double pDouble ) {
+            if ( Double.isNaN( pDouble ) || (pDouble >= (double) Long.MAX_VALUE) ) { // 2^63
+                return -1;
+            }
+            if ( pDouble < (double) Long.MIN_VALUE ) {
+                return 1;
+            }
+            long zWhole = (long) pDouble; // exact, as is the fraction, as a double with a fraction is less than 2^52
+            if ( pLong != zWhole ) {
+                return (pLong < zWhole) ? -1 : 1;
+            }
+            double zFraction = pDouble - zWhole;
+            return (zFraction > 0.0) ? -1 : (zFraction < 0.0) ? 1 : 0;
+        }
+    };
+
+    public long getRowCount() {
+        return mRowCount;
+    }
+
+    public long getDistinctCount() {
+        return mDistinctCount;
+    }
+
+    public double getNullFraction() {
+        return mNullFraction;
+    }
+
+    public Object[] getMostCommonValues() {
+        return mMostCommonValues.clone();
+    }
+
+    public double[] getMostCommonFrequencies() {
+        return mMostCommonFrequencies.clone();
+    }
+
+    public Object[] getHistogramBounds() {
+        return mHistogramBounds.clone();
+    }
+
+    public boolean hasHistogram() {
+        return mHistogramBounds.length != 0;
+    }
+
+    /**
+     * Estimate the fraction of all the rows that are equal to a (!null, normalized) value.<p>
+     */
+    public double equalsFraction( Object pValue ) {
+        for ( int i = 0; i < mMostCommonValues.length; i++ ) {
+            if ( WhereClauseValueSupport.areEqual( mMostCommonValues[i], pValue ) ) {
+                return mMostCommonFrequencies[i];
+            }
+        }
+        long zOtherDistincts = mDistinctCount - mMostCommonValues.length;
+        double zOtherFraction = 1.0 - mNullFraction - mMostCommonTotal;
+        if ( zOtherDistincts <= 0 ) {
+            return (mMostCommonValues.length != 0) ? 0.0 : zOtherFraction;
+        }
+        return zOtherFraction / zOtherDistincts;
+    }
+
+    /**
+     * Estimate the fraction of the non-null rows that are less than (or equal to) a
+     * (!null, normalized) value, using the histogram.<p>
+     *
+     * @return the fraction, or NaN if there is no histogram.
+     */
+    public double lessThanFraction( Object pValue, boolean pInclusive ) {
+        int zBuckets = mHistogramBounds.length - 1;
+        if ( zBuckets < 1 ) {
+            return Double.NaN;
+        }
+        int zCompare = WhereClauseValueSupport.compare( pValue, mHistogramBounds[0] );
+        if ( (zCompare < 0) || ((zCompare == 0) && !pInclusive) ) {
+            return 0.0;
+        }
+        zCompare = WhereClauseValueSupport.compare( pValue, mHistogramBounds[zBuckets] );
+        if ( (zCompare > 0) || ((zCompare == 0) && pInclusive) ) {
+            return 1.0;
+        }
+        int zBucket = 0;
+        while ( (zBucket < (zBuckets - 1)) && (WhereClauseValueSupport.compare( pValue, mHistogramBounds[zBucket + 1] ) >= 0) ) {
+            zBucket++;
+        }
+        return (zBucket + positionInBucket( pValue, mHistogramBounds[zBucket], mHistogramBounds[zBucket + 1] )) / zBuckets;
+    }
+
+    private static double positionInBucket( Object pValue, Object pLow, Object pHigh ) {
+        double zValue = WhereClauseValueSupport.toDouble( pValue );
+        double zLow = WhereClauseValueSupport.toDouble( pLow );
+        double zHigh = WhereClauseValueSupport.toDouble( pHigh );
+        if ( Double.isNaN( zValue ) || Double.isNaN( zLow ) || Double.isNaN( zHigh ) || (zHigh <= zLow) ) {
+            return 0.5;
+        }
+        return Math.max( 0.0, Math.min( 1.0, (zValue - zLow) / (zHigh - zLow) ) );
+    }
+}
@@ -0,0 +1,186 @@
+// This Source Code is in the Public Domain per: http://unlicense.org
+package org.litesoft.whereclause.statistics;
+
+import org.litesoft.whereclause.WhereClause;
+import org.litesoft.whereclause.WhereClauseFactory;
+import org.litesoft.whereclause.WhereClauseType;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseAssociativeList;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseColumnReference;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseWrapper;
+import org.litesoft.whereclause.nonpublic.IllegalArgument;
+import org.litesoft.whereclause.transform.AbstractWhereClauseRewriter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A <b>WhereClauseTransform</b> that orders the <b>WhereClause</b>s of each AND & OR
+ * so that, when they are evaluated in order with short circuiting (in memory, or by
+ * an engine that does not plan, e.g. SQLite), the cheap and decisive ones go first.<p>
+ * <a href="../../../Licence.txt">Licence</a><br>
+ * <p/>
+ * Each <b>WhereClause</b> has a selectivity <i>s</i> (from the <b>SelectivitySource</b>)
+ * and a cost <i>c</i> (from the <b>CostModel</b> for leaves, and the expected short
+ * circuited cost for AND, OR, and NOT).  The (stable) sort is descending on:<p>
+ * <pre>
+ *      AND: (1 - s) / c    the rejection rate per unit of cost
+ *      OR:  s / c          the acceptance rate per unit of cost
+ * </pre>
+ * which minimizes the expected cost of the AND / OR when its parts are independent.<p>
+ * <p/>
+ * Each pass estimates the tree bottom up, so every part's cost and selectivity is
+ * computed once (only the leaves are estimated by the SelectivitySource).<p>
+ * <p/>
+ * The reordering only changes the order of evaluation, never the result, so may be
+ * applied before rendering (e.g. via <b>WhereClauseRenderer</b>) or evaluating.<p>
+ */
+public class CostBasedOrderer extends AbstractWhereClauseRewriter {
+    private final SelectivitySource mSelectivitySource;
+    private final CostModel mCostModel;
+
+    /**
+     * Constructor.<p>
+     *
+     * @param pFactory           the factory used to (re)build the changed parts of a tree (!null).
+     * @param pSelectivitySource the selectivities (!null).
+     * @param pCostModel         the leaf costs (!null).
+     */
+    public CostBasedOrderer( WhereClauseFactory pFactory, SelectivitySource pSelectivitySource, CostModel pCostModel ) {
+        super( pFactory );
+        IllegalArgument.ifNull( "SelectivitySource", mSelectivitySource = pSelectivitySource );
+        IllegalArgument.ifNull( "CostModel", mCostModel = pCostModel );
+    }
+
+    /**
+     * Constructor using the WhereClauseFactory.INSTANCE and the CostModel.DEFAULT.<p>
+     *
+     * @param pSelectivitySource the selectivities (!null).
+     */
+    public CostBasedOrderer( SelectivitySource pSelectivitySource ) {
+        this( WhereClauseFactory.INSTANCE, pSelectivitySource, CostModel.DEFAULT );
+    }
+
+    /**
+     * Constructor using the WhereClauseFactory.INSTANCE, the CostModel.DEFAULT, and
+     * a SelectivityEstimator over the statistics in pRegistry.<p>
+     *
+     * @param pRegistry the statistics (!null).
+     */
+    public CostBasedOrderer( StatisticsRegistry pRegistry ) {
+        this( new SelectivityEstimator( pRegistry ) );
+    }
+
+    /**
+     * Estimate the expected cost of evaluating a WhereClause (in its current order)
+     * with short circuiting.<p>
+     *
+     * @param pWhereClause the tree (!null).
+     *
+     * @return the expected cost.
+     */
+    public double costOf( WhereClause pWhereClause ) {
+        IllegalArgument.ifNull( "WhereClause", pWhereClause );
+        return estimate( pWhereClause, false ).mCost;
+    }
+
+    @Override
+    public WhereClause transform( WhereClause pWhereClause ) {
+        IllegalArgument.ifNull( "WhereClause", pWhereClause );
+        return estimate( pWhereClause, true ).mWhereClause;
+    }
+
+    /**
+     * Estimate (and if pReorder, order) a tree bottom up.  As with the SelectivityEstimator,
+     * the selectivity of an AND, OR or NOT is combined from its (assumed independent) parts.<p>
+     */
+    private Estimated estimate( WhereClause pWhereClause, boolean pReorder ) {
+        switch ( pWhereClause.getType() ) {
+            case TRUE:
+                return new Estimated( pWhereClause, 0.0, 1.0 );
+            case FALSE:
+                return new Estimated( pWhereClause, 0.0, 0.0 );
+            case AND:
+            case OR:
+                return estimateList( (AbstractWhereClauseAssociativeList) pWhereClause, pReorder );
+            case NOT:
+                WhereClause zWrapped = ((AbstractWhereClauseWrapper) pWhereClause).getWrappedWhereClause();
+                Estimated zEstimated = estimate( zWrapped, pReorder );
+                WhereClause zNot = (zEstimated.mWhereClause == zWrapped) ? pWhereClause : mFactory.negationOf( zEstimated.mWhereClause );
+                return new Estimated( zNot, zEstimated.mCost, 1.0 - zEstimated.mSelectivity );
+            default:
+                WhereClause zLeaf = pReorder ? super.transform( pWhereClause ) : pWhereClause; // e.g. an IS_IN's sub-select
+                return new Estimated( zLeaf, mCostModel.costOf( (AbstractWhereClauseColumnReference) pWhereClause ), selectivityOf( zLeaf ) );
+        }
+    }
+
+    private Estimated estimateList( AbstractWhereClauseAssociativeList pList, boolean pReorder ) {
+        boolean zAnd = (pList.getType() == WhereClauseType.AND);
+        List<WhereClause> zOriginals = pList.getWhereClauseList();
+        List<Estimated> zChildren = new ArrayList<>( zOriginals.size() );
+        boolean zChanged = false;
+        for ( WhereClause zOriginal : zOriginals ) {
+            Estimated zChild = estimate( zOriginal, pReorder );
+            zChanged |= (zChild.mWhereClause != zOriginal);
+            zChildren.add( zChild );
+        }
+        if ( pReorder ) {
+            List<Estimated> zOrdered = new ArrayList<>( zChildren );
+            Collections.sort( zOrdered, zAnd ? BY_REJECTION_RATE : BY_ACCEPTANCE_RATE );
+            zChanged |= !zOrdered.equals( zChildren );
+            zChildren = zOrdered;
+        }
+        double zCost = 0.0;
+        double zReached = 1.0;
+        List<WhereClause> zWhereClauses = new ArrayList<>( zChildren.size() );
+        for ( Estimated zChild : zChildren ) {
+            zCost += zReached * zChild.mCost;
+            zReached *= zAnd ? zChild.mSelectivity : 1.0 - zChild.mSelectivity;
+            zWhereClauses.add( zChild.mWhereClause );
+        }
+        WhereClause zList = !zChanged ? pList : zAnd ? mFactory.and( zWhereClauses ) : mFactory.or( zWhereClauses );
+        return new Estimated( zList, zCost, zAnd ? zReached : 1.0 - zReached );
+    }
+
+    private double selectivityOf( WhereClause pWhereClause ) {
+        double zSelectivity = mSelectivitySource.selectivityOf( pWhereClause );
+        return Double.isNaN( zSelectivity ) ? 0.5 : Math.max( 0.0, Math.min( 1.0, zSelectivity ) );
+    }
+
+    /**
+     * Descending (1 - s) / c, for an AND.
+     */
+    private static final Comparator<Estimated> BY_REJECTION_RATE = new Comparator<Estimated>() {
+        @Override
+        public int compare( Estimated p1, Estimated p2 ) {
+            return Double.compare( p2.rate( 1.0 - p2.mSelectivity ), p1.rate( 1.0 - p1.mSelectivity ) );
+        }
+    };
+
+    /**
+     * Descending s / c, for an OR.
+     */
+    private static final Comparator<Estimated> BY_ACCEPTANCE_RATE = new Comparator<Estimated>() {
+        @Override
+        public int compare( Estimated p1, Estimated p2 ) {
+            return Double.compare( p2.rate( p2.mSelectivity ), p1.rate( p1.mSelectivity ) );
+        }
+    };
+
+    private static class Estimated {
+        private final WhereClause mWhereClause;
+        private final double mCost;
+        private final double mSelectivity;
+
+        Estimated( WhereClause pWhereClause, double pCost, double pSelectivity ) {
+            mWhereClause = pWhereClause;
+            mCost = pCost;
+            mSelectivity = pSelectivity;
+        }
+
+        double rate( double pDecisive ) {
+            return pDecisive / Math.max( mCost, Double.MIN_VALUE );
+        }
+    }
+}
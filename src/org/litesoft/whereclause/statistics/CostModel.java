@@ -0,0 +1,56 @@
+// This Source Code is in the Public Domain per: http://unlicense.org
+package org.litesoft.whereclause.statistics;
+
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseColumnAnd_N_Values;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseColumnAndLikeValues;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseColumnReference;
+
+/**
+ * An interface for the (relative) cost of evaluating a single Column Reference (leaf)
+ * <b>WhereClause</b> against a row, used by the <b>CostBasedOrderer</b>.<p>
+ * <a href="../../../Licence.txt">Licence</a><br>
+ * <p/>
+ * Only the relative sizes of the costs matter.  The <b>DEFAULT</b> is ordered:<p>
+ * <pre>
+ *      IS_NULL < EQUALS < ranges (LESSTHAN, GREATERTHAN, BETWEEN) < IS_ANY_OF
+ *              < CONTAINS, STARTS_WITH, ENDS_WITH < LIKE < IS_IN
+ * </pre>
+ */
+public interface CostModel {
+    /**
+     * @param pLeaf the Column Reference WhereClause (!null).
+     *
+     * @return the relative cost (> 0) of evaluating pLeaf.
+     */
+    double costOf( AbstractWhereClauseColumnReference pLeaf );
+
+    CostModel DEFAULT = new CostModel() {
+        @Override
+        public double costOf( AbstractWhereClauseColumnReference pLeaf ) {
+            switch ( pLeaf.getType() ) {
+                case IS_NULL:
+                    return 0.5;
+                case EQUALS:
+                    return 1.0;
+                case LESSTHAN:
+                case GREATERTHAN:
+                    return 1.5;
+                case BETWEEN:
+                    return 2.0;
+                case IS_ANY_OF: // Hash lookup, or a scan of the few values
+                    return 1.0 + Math.min( 2.0, ((AbstractWhereClauseColumnAnd_N_Values) pLeaf).getValues().length / 4.0 );
+                case STARTS_WITH:
+                case ENDS_WITH:
+                    return 3.0;
+                case CONTAINS:
+                    return 4.0;
+                case LIKE:
+                    return 4.0 + ((AbstractWhereClauseColumnAndLikeValues) pLeaf).getValues().length;
+                case IS_IN:
+                    return 50.0;
+                default:
+                    return 1.0;
+            }
+        }
+    };
+}
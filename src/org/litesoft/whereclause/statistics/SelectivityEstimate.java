@@ -0,0 +1,48 @@
+// This Source Code is in the Public Domain per: http://unlicense.org
+package org.litesoft.whereclause.statistics;
+
+/**
+ * The (immutable) result of a <b>SelectivityEstimator</b> estimate.<p>
+ * <a href="../../../Licence.txt">Licence</a><br>
+ */
+public class SelectivityEstimate {
+    public static final long UNKNOWN_ROWS = -1;
+
+    private final double mSelectivity;
+    private final long mTableRowCount;
+
+    public SelectivityEstimate( double pSelectivity, long pTableRowCount ) {
+        mSelectivity = pSelectivity;
+        mTableRowCount = pTableRowCount;
+    }
+
+    /**
+     * @return the fraction (0.0 - 1.0) of the rows expected to be selected.
+     */
+    public double getSelectivity() {
+        return mSelectivity;
+    }
+
+    /**
+     * @return the number of rows in the table, or UNKNOWN_ROWS.
+     */
+    public long getTableRowCount() {
+        return mTableRowCount;
+    }
+
+    public boolean isRowCountKnown() {
+        return mTableRowCount != UNKNOWN_ROWS;
+    }
+
+    /**
+     * @return the number of rows expected to be selected, or UNKNOWN_ROWS.
+     */
+    public long getRowCount() {
+        return isRowCountKnown() ? Math.round( mSelectivity * mTableRowCount ) : UNKNOWN_ROWS;
+    }
+
+    @Override
+    public String toString() {
+        return "Selectivity: " + mSelectivity + (isRowCountKnown() ? " (" + getRowCount() + " of " + mTableRowCount + " rows)" : "");
+    }
+}
@@ -0,0 +1,279 @@
+// This Source Code is in the Public Domain per: http://unlicense.org
+package org.litesoft.whereclause.statistics;
+
+import org.litesoft.whereclause.SimpleColumnDefinition;
+import org.litesoft.whereclause.SingleColumnSelect;
+import org.litesoft.whereclause.WhereClause;
+import org.litesoft.whereclause.WhereClauseColumns;
+import org.litesoft.whereclause.WhereClauseValueSupport;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseAssociativeList;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseColumnAndLikeValue;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseColumnAndLikeValues;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseColumnAndTwoValues;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseColumnAndValue;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseColumnAnd_N_Values;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseColumnIsIn;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseColumnReference;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseWrapper;
+import org.litesoft.whereclause.nonpublic.IllegalArgument;
+import org.litesoft.whereclause.transform.PrefixRangeRewriter;
+
+/**
+ * Estimates the selectivity (and row count) of a <b>WhereClause</b> <i>tree</i> from the
+ * <b>ColumnStatistics</b> in a <b>StatisticsRegistry</b>.<p>
+ * <a href="../../../Licence.txt">Licence</a><br>
+ * <p/>
+ * The leaves are estimated from their column's statistics (Most Common Values for
+ * equality, the Histogram for ranges and prefixes), falling back to the DEFAULT_...
+ * selectivities when there are none.  The AND, OR and NOT are combined assuming
+ * independence:<p>
+ * <pre>
+ *      AND: s1 * s2 ...
+ *      OR:  1 - ((1 - s1) * (1 - s2) ...)
+ *      NOT: 1 - s
+ * </pre>
+ * <p/>
+ * Typical uses are choosing between an index lookup and a full scan
+ * (<b>prefersIndexLookup()</b>), rejecting runaway queries (<b>isRunaway()</b>), and
+ * deciding if an IS_IN's SingleColumnSelect is small enough to materialize client side
+ * (<b>shouldMaterialize()</b>).<p>
+ */
+public class SelectivityEstimator implements SelectivitySource {
+    public static final double DEFAULT_EQUALS = 0.005;
+    public static final double DEFAULT_IS_NULL = 0.005;
+    public static final double DEFAULT_RANGE = 1.0 / 3.0;
+    public static final double DEFAULT_BETWEEN = DEFAULT_RANGE * DEFAULT_RANGE;
+    public static final double DEFAULT_PREFIX = 0.05;
+    public static final double DEFAULT_LIKE = 0.05;
+    public static final double DEFAULT_IS_IN = 0.5;
+
+    private final StatisticsRegistry mRegistry;
+
+    /**
+     * Constructor.<p>
+     *
+     * @param pRegistry the statistics (!null).
+     */
+    public SelectivityEstimator( StatisticsRegistry pRegistry ) {
+        IllegalArgument.ifNull( "Registry", mRegistry = pRegistry );
+    }
+
+    /**
+     * Estimate a WhereClause, with the table's row count from the statistics of the
+     * referenced columns (the largest row count).<p>
+     *
+     * @param pWhereClause the tree (!null).
+     *
+     * @return the estimate.
+     */
+    public SelectivityEstimate estimate( WhereClause pWhereClause ) {
+        return new SelectivityEstimate( selectivityOf( pWhereClause ), tableRowCount( pWhereClause ) );
+    }
+
+    /**
+     * Estimate a WhereClause, against a table with a known row count.<p>
+     *
+     * @param pWhereClause  the tree (!null).
+     * @param pTableRowCount the table's row count.
+     *
+     * @return the estimate.
+     */
+    public SelectivityEstimate estimate( WhereClause pWhereClause, long pTableRowCount ) {
+        return new SelectivityEstimate( selectivityOf( pWhereClause ), pTableRowCount );
+    }
+
+    @Override
+    public double selectivityOf( WhereClause pWhereClause ) {
+        IllegalArgument.ifNull( "WhereClause", pWhereClause );
+        return clamp( LLselectivity( pWhereClause ) );
+    }
+
+    /**
+     * @return true if the tree's selectivity is at or below pMaxSelectivity (the break even
+     * point between an index lookup and a full scan).
+     */
+    public boolean prefersIndexLookup( WhereClause pWhereClause, double pMaxSelectivity ) {
+        return selectivityOf( pWhereClause ) <= pMaxSelectivity;
+    }
+
+    /**
+     * @return true if the tree is expected to select more than pMaxRows (false if the row count is unknown).
+     */
+    public boolean isRunaway( WhereClause pWhereClause, long pMaxRows ) {
+        SelectivityEstimate zEstimate = estimate( pWhereClause );
+        return zEstimate.isRowCountKnown() && (zEstimate.getRowCount() > pMaxRows);
+    }
+
+    /**
+     * Estimate the rows a SingleColumnSelect (of an IS_IN) would return.<p>
+     *
+     * @return the estimated row count, or SelectivityEstimate.UNKNOWN_ROWS.
+     */
+    public long estimateRows( SingleColumnSelect pSelect ) {
+        ColumnStatistics zStatistics = mRegistry.get( pSelect.getColumnDefinition() );
+        WhereClause zWhereClause = pSelect.getWhereClause();
+        long zTableRows = (zStatistics != null) ? zStatistics.getRowCount() : SelectivityEstimate.UNKNOWN_ROWS;
+        if ( zWhereClause == null ) {
+            return zTableRows;
+        }
+        SelectivityEstimate zEstimate = (zTableRows != SelectivityEstimate.UNKNOWN_ROWS) ? //
+                                        estimate( zWhereClause, zTableRows ) : estimate( zWhereClause );
+        return zEstimate.getRowCount();
+    }
+
+    /**
+     * @return true if the SingleColumnSelect is expected to return no more than pMaxRows (false if unknown).
+     */
+    public boolean shouldMaterialize( SingleColumnSelect pSelect, long pMaxRows ) {
+        long zRows = estimateRows( pSelect );
+        return (zRows != SelectivityEstimate.UNKNOWN_ROWS) && (zRows <= pMaxRows);
+    }
+
+    private long tableRowCount( WhereClause pWhereClause ) {
+        long zRows = SelectivityEstimate.UNKNOWN_ROWS;
+        for ( SimpleColumnDefinition zColumn : WhereClauseColumns.of( pWhereClause ) ) {
+            ColumnStatistics zStatistics = mRegistry.get( zColumn );
+            if ( zStatistics != null ) {
+                zRows = Math.max( zRows, zStatistics.getRowCount() );
+            }
+        }
+        return zRows;
+    }
+
+    private double LLselectivity( WhereClause pWhereClause ) {
+        switch ( pWhereClause.getType() ) {
+            case TRUE:
+                return 1.0;
+            case FALSE:
+                return 0.0;
+            case AND:
+                double zAnd = 1.0;
+                for ( WhereClause zChild : ((AbstractWhereClauseAssociativeList) pWhereClause).getWhereClauseList() ) {
+                    zAnd *= clamp( LLselectivity( zChild ) );
+                }
+                return zAnd;
+            case OR:
+                double zNone = 1.0;
+                for ( WhereClause zChild : ((AbstractWhereClauseAssociativeList) pWhereClause).getWhereClauseList() ) {
+                    zNone *= 1.0 - clamp( LLselectivity( zChild ) );
+                }
+                return 1.0 - zNone;
+            case NOT:
+                return 1.0 - clamp( LLselectivity( ((AbstractWhereClauseWrapper) pWhereClause).getWrappedWhereClause() ) );
+            default:
+                return leafSelectivity( (AbstractWhereClauseColumnReference) pWhereClause );
+        }
+    }
+
+    private double leafSelectivity( AbstractWhereClauseColumnReference pLeaf ) {
+        SimpleColumnDefinition zColumn = pLeaf.getColumnDefinition();
+        ColumnStatistics zStatistics = mRegistry.get( zColumn );
+        double zNonNull = (zStatistics != null) ? 1.0 - zStatistics.getNullFraction() : 1.0;
+        boolean zNot = pLeaf.isNot();
+        double zSelectivity;
+        switch ( pLeaf.getType() ) {
+            case IS_NULL:
+                zSelectivity = (zStatistics != null) ? zStatistics.getNullFraction() : DEFAULT_IS_NULL;
+                return zNot ? 1.0 - zSelectivity : zSelectivity;
+            case EQUALS:
+                zSelectivity = equalsFraction( zStatistics, zColumn, ((AbstractWhereClauseColumnAndValue) pLeaf).getValue() );
+                return zNot ? 1.0 - zSelectivity : zSelectivity; // NOT EQUALS includes the NULLs
+            case LESSTHAN:
+                zSelectivity = lessThanFraction( zStatistics, zColumn, ((AbstractWhereClauseColumnAndValue) pLeaf).getValue(), false, DEFAULT_RANGE );
+                break;
+            case GREATERTHAN:
+                zSelectivity = 1.0 - lessThanFraction( zStatistics, zColumn, ((AbstractWhereClauseColumnAndValue) pLeaf).getValue(), true, 1.0 - DEFAULT_RANGE );
+                break;
+            case BETWEEN:
+                AbstractWhereClauseColumnAndTwoValues zBetween = (AbstractWhereClauseColumnAndTwoValues) pLeaf;
+                double zHigh = lessThanFraction( zStatistics, zColumn, zBetween.getRightValue(), true, Double.NaN );
+                double zLow = lessThanFraction( zStatistics, zColumn, zBetween.getLeftValue(), false, Double.NaN );
+                zSelectivity = (Double.isNaN( zHigh ) || Double.isNaN( zLow )) ? DEFAULT_BETWEEN : Math.max( 0.0, zHigh - zLow );
+                break;
+            case IS_ANY_OF:
+                zSelectivity = 0.0;
+                for ( Object zValue : ((AbstractWhereClauseColumnAnd_N_Values) pLeaf).getValues() ) {
+                    zSelectivity += equalsFraction( zStatistics, zColumn, zValue );
+                }
+                zSelectivity = Math.min( zSelectivity, zNonNull ) / zNonNull; // Per non-null row
+                break;
+            case STARTS_WITH:
+                zSelectivity = prefixFraction( zStatistics, zColumn, ((AbstractWhereClauseColumnAndLikeValue) pLeaf).getValue() );
+                break;
+            case CONTAINS:
+            case ENDS_WITH:
+                zSelectivity = (((AbstractWhereClauseColumnAndLikeValue) pLeaf).getValue().length() == 0) ? 1.0 : DEFAULT_LIKE;
+                break;
+            case LIKE:
+                String[] zSegments = ((AbstractWhereClauseColumnAndLikeValues) pLeaf).getValues();
+                zSelectivity = DEFAULT_LIKE / Math.max( 1, zSegments.length - 2 );
+                if ( (zSegments[0] != null) && (zSegments[0].length() != 0) ) {
+                    zSelectivity = Math.min( zSelectivity, prefixFraction( zStatistics, zColumn, zSegments[0] ) );
+                }
+                break;
+            case IS_IN:
+                zSelectivity = isInFraction( zStatistics, ((AbstractWhereClauseColumnIsIn) pLeaf).getSingleColumnSelect() );
+                break;
+            default:
+                throw new IllegalStateException( "Unexpected Column Reference Type: " + pLeaf.getType() );
+        }
+        // zSelectivity is per non-null row, and both the regular and NOT forms exclude the NULLs
+        zSelectivity = clamp( zSelectivity );
+        return zNonNull * (zNot ? 1.0 - zSelectivity : zSelectivity);
+    }
+
+    /**
+     * @return the fraction of ALL the rows
+     */
+    private double equalsFraction( ColumnStatistics pStatistics, SimpleColumnDefinition pColumn, Object pValue ) {
+        if ( pStatistics == null ) {
+            return DEFAULT_EQUALS;
+        }
+        return pStatistics.equalsFraction( WhereClauseValueSupport.normalizeValue( pColumn, pValue ) );
+    }
+
+    /**
+     * @return the fraction of the non-null rows
+     */
+    private double lessThanFraction( ColumnStatistics pStatistics, SimpleColumnDefinition pColumn, Object pValue, boolean pInclusive,
+                                     double pDefault ) {
+        if ( (pStatistics == null) || !pStatistics.hasHistogram() ) {
+            return pDefault;
+        }
+        return pStatistics.lessThanFraction( WhereClauseValueSupport.normalizeValue( pColumn, pValue ), pInclusive );
+    }
+
+    /**
+     * @return the fraction of the non-null rows
+     */
+    private double prefixFraction( ColumnStatistics pStatistics, SimpleColumnDefinition pColumn, String pPrefix ) {
+        if ( pPrefix.length() == 0 ) {
+            return 1.0;
+        }
+        if ( (pStatistics == null) || !pStatistics.hasHistogram() || !(pStatistics.getHistogramBounds()[0] instanceof String) ) {
+            return DEFAULT_PREFIX;
+        }
+        String zPrefix = (String) WhereClauseValueSupport.normalizeValue( pColumn, pPrefix );
+        String zSuccessor = PrefixRangeRewriter.successor( zPrefix, false );
+        double zLow = pStatistics.lessThanFraction( zPrefix, false );
+        double zHigh = (zSuccessor != null) ? pStatistics.lessThanFraction( zSuccessor, false ) : 1.0;
+        return Math.max( zHigh - zLow, pStatistics.equalsFraction( zPrefix ) );
+    }
+
+    /**
+     * @return the fraction of the non-null rows
+     */
+    private double isInFraction( ColumnStatistics pStatistics, SingleColumnSelect pSelect ) {
+        ColumnStatistics zInnerStatistics = mRegistry.get( pSelect.getColumnDefinition() );
+        long zInnerRows = estimateRows( pSelect );
+        if ( (pStatistics == null) || (zInnerStatistics == null) || (zInnerRows == SelectivityEstimate.UNKNOWN_ROWS) ) {
+            return DEFAULT_IS_IN;
+        }
+        long zInnerDistincts = Math.min( zInnerRows, zInnerStatistics.getDistinctCount() );
+        return (pStatistics.getDistinctCount() == 0) ? 0.0 : Math.min( 1.0, zInnerDistincts / (double) pStatistics.getDistinctCount() );
+    }
+
+    private static double clamp( double pSelectivity ) {
+        return Double.isNaN( pSelectivity ) ? 0.0 : Math.max( 0.0, Math.min( 1.0, pSelectivity ) );
+    }
+}
@@ -0,0 +1,18 @@
+// This Source Code is in the Public Domain per: http://unlicense.org
+package org.litesoft.whereclause.statistics;
+
+import org.litesoft.whereclause.WhereClause;
+
+/**
+ * An interface for anything that can supply the selectivity (the fraction of the
+ * rows that satisfy it) of a <b>WhereClause</b>.<p>
+ * <a href="../../../Licence.txt">Licence</a><br>
+ */
+public interface SelectivitySource {
+    /**
+     * @param pWhereClause the WhereClause (!null).
+     *
+     * @return the fraction (0.0 - 1.0) of the rows expected to satisfy pWhereClause.
+     */
+    double selectivityOf( WhereClause pWhereClause );
+}
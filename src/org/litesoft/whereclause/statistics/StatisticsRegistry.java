@@ -0,0 +1,50 @@
+// This Source Code is in the Public Domain per: http://unlicense.org
+package org.litesoft.whereclause.statistics;
+
+import org.litesoft.whereclause.SimpleColumnDefinition;
+import org.litesoft.whereclause.nonpublic.IllegalArgument;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A (thread safe) registry of <b>ColumnStatistics</b> keyed by <b>SimpleColumnDefinition</b>.<p>
+ * <a href="../../../Licence.txt">Licence</a><br>
+ * <p/>
+ * Statistics may be (re)registered at any time, e.g. after a periodic ANALYZE.<p>
+ */
+public class StatisticsRegistry {
+    private final Map<SimpleColumnDefinition, ColumnStatistics> mStatistics = new ConcurrentHashMap<>();
+
+    /**
+     * Register (or replace) the statistics of a column.<p>
+     *
+     * @param pColumnDefinition Column Definition (!null).
+     * @param pStatistics       the statistics (!null).
+     */
+    public void register( SimpleColumnDefinition pColumnDefinition, ColumnStatistics pStatistics ) {
+        IllegalArgument.ifNull( "ColumnDefinition", pColumnDefinition );
+        IllegalArgument.ifNull( "Statistics", pStatistics );
+        mStatistics.put( pColumnDefinition, pStatistics );
+    }
+
+    /**
+     * Remove the statistics of a column.<p>
+     *
+     * @param pColumnDefinition Column Definition (!null).
+     */
+    public void unregister( SimpleColumnDefinition pColumnDefinition ) {
+        mStatistics.remove( pColumnDefinition );
+    }
+
+    /**
+     * Accessor for the statistics of a column.<p>
+     *
+     * @param pColumnDefinition Column Definition (!null).
+     *
+     * @return the statistics or null if none registered.
+     */
+    public ColumnStatistics get( SimpleColumnDefinition pColumnDefinition ) {
+        return mStatistics.get( pColumnDefinition );
+    }
+}
@@ -0,0 +1,141 @@
+// This Source Code is in the Public Domain per: http://unlicense.org
+package org.litesoft.whereclause.transform;
+
+import org.litesoft.whereclause.SingleColumnSelect;
+import org.litesoft.whereclause.WhereClause;
+import org.litesoft.whereclause.WhereClauseFactory;
+import org.litesoft.whereclause.WhereClauseType;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseAssociativeList;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseColumnIsIn;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseColumnReference;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseWrapper;
+import org.litesoft.whereclause.nonpublic.IllegalArgument;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An abstract helper class to make implementing a (bottom up) <b>WhereClauseTransform</b> simpler.<p>
+ * <a href="../../../Licence.txt">Licence</a><br>
+ * <p/>
+ * The recursive decent of AND, OR, NOT and the WhereClause of an IS_IN's
+ * <b>SingleColumnSelect</b> is handled here, as is the (re)building, via the
+ * <b>WhereClauseFactory</b>, of only those parts of the tree that actually changed.
+ * Extensions override one or both of the hooks:<p>
+ * <ul>
+ * <b>orderChildren()</b> to reorder the (already transformed) WhereClauses of an AND or OR, and<br>
+ * <b>rewriteColumnReference()</b> to rewrite a Column Reference (leaf) WhereClause.
+ * </ul><p>
+ */
+public abstract class AbstractWhereClauseRewriter implements WhereClauseTransform {
+    protected final WhereClauseFactory mFactory;
+
+    /**
+     * Constructor.<p>
+     *
+     * @param pFactory the factory used to (re)build the changed parts of a tree (!null).
+     */
+    protected AbstractWhereClauseRewriter( WhereClauseFactory pFactory ) {
+        IllegalArgument.ifNull( "Factory", mFactory = pFactory );
+    }
+
+    @Override
+    public WhereClause transform( WhereClause pWhereClause ) {
+        IllegalArgument.ifNull( "WhereClause", pWhereClause );
+        switch ( pWhereClause.getType() ) {
+            case AND:
+            case OR:
+                return transformList( (AbstractWhereClauseAssociativeList) pWhereClause );
+            case NOT:
+                WhereClause zWrapped = ((AbstractWhereClauseWrapper) pWhereClause).getWrappedWhereClause();
+                WhereClause zTransformed = transform( zWrapped );
+                return (zTransformed == zWrapped) ? pWhereClause : mFactory.negationOf( zTransformed );
+            case IS_IN:
+                return rewriteColumnReference( transformIsIn( (AbstractWhereClauseColumnIsIn) pWhereClause ) );
+            default:
+                if ( pWhereClause instanceof AbstractWhereClauseColumnReference ) {
+                    return rewriteColumnReference( (AbstractWhereClauseColumnReference) pWhereClause );
+                }
+                return pWhereClause;
+        }
+    }
+
+    /**
+     * Hook to reorder the (already transformed) WhereClauses of an AND or OR.<p>
+     *
+     * @param pType     AND or OR.
+     * @param pChildren the transformed WhereClauses (!null, may be modified and returned).
+     *
+     * @return the WhereClauses in the desired order (!null).
+     */
+    protected List<WhereClause> orderChildren( WhereClauseType pType, List<WhereClause> pChildren ) {
+        return pChildren;
+    }
+
+    /**
+     * Hook to rewrite a Column Reference (leaf) WhereClause.<p>
+     * <p/>
+     * Note: MUST NOT toggle the NOT mode of pWhereClause (see WhereClauseFactory.negationOf()), and
+     * as the leaf may be under a NOT, the replacement MUST be equivalent in all three values
+     * (TRUE, FALSE and UNKNOWN).<p>
+     *
+     * @param pWhereClause the leaf (!null).
+     *
+     * @return pWhereClause or its rewritten replacement (!null).
+     */
+    protected WhereClause rewriteColumnReference( AbstractWhereClauseColumnReference pWhereClause ) {
+        return pWhereClause;
+    }
+
+    /**
+     * Helper to apply the NOT mode of an original leaf to a newly built replacement.<p>
+     *
+     * @param pOriginal    the leaf being replaced.
+     * @param pReplacement the newly built (unshared) replacement, in the <i>regular</i> mode.
+     *
+     * @return the replacement with the NOT mode of the original.
+     */
+    protected WhereClause withNotOf( AbstractWhereClauseColumnReference pOriginal, WhereClause pReplacement ) {
+        return pOriginal.isNot() ? mFactory.negationOf( pReplacement ) : pReplacement;
+    }
+
+    private WhereClause transformList( AbstractWhereClauseAssociativeList pList ) {
+        List<WhereClause> zOriginals = pList.getWhereClauseList();
+        List<WhereClause> zChildren = new ArrayList<>( zOriginals.size() );
+        for ( WhereClause zOriginal : zOriginals ) {
+            zChildren.add( transform( zOriginal ) );
+        }
+        zChildren = orderChildren( pList.getType(), zChildren );
+        if ( isIdentical( zOriginals, zChildren ) ) {
+            return pList;
+        }
+        return (pList.getType() == WhereClauseType.AND) ? mFactory.and( zChildren ) : mFactory.or( zChildren );
+    }
+
+    private static boolean isIdentical( List<WhereClause> pList1, List<WhereClause> pList2 ) {
+        if ( pList1.size() != pList2.size() ) {
+            return false;
+        }
+        for ( int i = 0; i < pList1.size(); i++ ) {
+            if ( pList1.get( i ) != pList2.get( i ) ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private AbstractWhereClauseColumnIsIn transformIsIn( AbstractWhereClauseColumnIsIn pIsIn ) {
+        SingleColumnSelect zSelect = pIsIn.getSingleColumnSelect();
+        WhereClause zWhereClause = zSelect.getWhereClause();
+        if ( zWhereClause == null ) {
+            return pIsIn;
+        }
+        WhereClause zTransformed = transform( zWhereClause );
+        if ( zTransformed == zWhereClause ) {
+            return pIsIn;
+        }
+        WhereClause zIsIn = mFactory.isIn( pIsIn.getColumnDefinition(), //
+                                           new SingleColumnSelect( zSelect.getColumnDefinition(), zSelect.getFromIdentifier(), zTransformed ) );
+        return (AbstractWhereClauseColumnIsIn) withNotOf( pIsIn, zIsIn );
+    }
+}
@@ -0,0 +1,170 @@
+// This Source Code is in the Public Domain per: http://unlicense.org
+package org.litesoft.whereclause.transform;
+
+import org.litesoft.whereclause.WhereClause;
+import org.litesoft.whereclause.WhereClauseFactory;
+import org.litesoft.whereclause.WhereClauseType;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseColumnReference;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The (immutable) result of a <b>NormalFormConverter</b> conversion, a list of clauses,
+ * each of which is a list of literals.<p>
+ * <a href="../../../Licence.txt">Licence</a><br>
+ * <p/>
+ * For the Disjunctive Normal Form (DNF) the clauses are OR'd together, and the literals
+ * of each clause are AND'd together (an empty clause is TRUE, no clauses is FALSE).<p>
+ * <p/>
+ * For the Conjunctive Normal Form (CNF) the clauses are AND'd together, and the literals
+ * of each clause are OR'd together (an empty clause is FALSE, no clauses is TRUE).<p>
+ * <p/>
+ * A literal is normally an atomic (Column Reference) <b>WhereClause</b>, in either its
+ * regular or NOT mode.  When the conversion of a part of the tree would exceed the
+ * size budget, that part is kept (in negation normal form) as a single <i>opaque</i>
+ * literal (an AND or OR), much like the fresh variable a Tseitin encoding introduces
+ * for a sub-formula.  The result still selects the same rows as the original tree (see
+ * <b>NormalFormConverter</b> for UNKNOWN), but is only <b>isAtomic()</b> if there are
+ * no opaque literals.<p>
+ */
+public class NormalForm {
+    private final boolean mDisjunctive;
+    private final List<List<WhereClause>> mClauses;
+    private final List<WhereClause> mOpaqueLiterals;
+
+    NormalForm( boolean pDisjunctive, List<List<WhereClause>> pClauses ) {
+        mDisjunctive = pDisjunctive;
+        List<List<WhereClause>> zClauses = new ArrayList<>( pClauses.size() );
+        List<WhereClause> zOpaques = new ArrayList<>();
+        for ( List<WhereClause> zClause : pClauses ) {
+            zClauses.add( Collections.unmodifiableList( new ArrayList<>( zClause ) ) );
+            for ( WhereClause zLiteral : zClause ) {
+                if ( isOpaque( zLiteral ) && !containsSame( zOpaques, zLiteral ) ) {
+                    zOpaques.add( zLiteral );
+                }
+            }
+        }
+        mClauses = Collections.unmodifiableList( zClauses );
+        mOpaqueLiterals = Collections.unmodifiableList( zOpaques );
+    }
+
+    /**
+     * @return true if DNF (OR of ANDs), false if CNF (AND of ORs).
+     */
+    public boolean isDisjunctive() {
+        return mDisjunctive;
+    }
+
+    /**
+     * @return the Type (OR for DNF, AND for CNF) joining the clauses.
+     */
+    public WhereClauseType getClausesType() {
+        return mDisjunctive ? WhereClauseType.OR : WhereClauseType.AND;
+    }
+
+    /**
+     * @return the Type (AND for DNF, OR for CNF) joining the literals of each clause.
+     */
+    public WhereClauseType getLiteralsType() {
+        return mDisjunctive ? WhereClauseType.AND : WhereClauseType.OR;
+    }
+
+    /**
+     * @return the (unmodifiable) clauses, each an (unmodifiable) list of literals.
+     */
+    public List<List<WhereClause>> getClauses() {
+        return mClauses;
+    }
+
+    public int getClauseCount() {
+        return mClauses.size();
+    }
+
+    /**
+     * @return the total number of literals across all the clauses.
+     */
+    public int getSize() {
+        int zSize = 0;
+        for ( List<WhereClause> zClause : mClauses ) {
+            zSize += zClause.size();
+        }
+        return zSize;
+    }
+
+    /**
+     * @return true if every literal is an atomic (Column Reference) WhereClause.
+     */
+    public boolean isAtomic() {
+        return mOpaqueLiterals.isEmpty();
+    }
+
+    /**
+     * @return the (unmodifiable, distinct) literals that are kept opaque because of the size budget.
+     */
+    public List<WhereClause> getOpaqueLiterals() {
+        return mOpaqueLiterals;
+    }
+
+    /**
+     * Rebuild a WhereClause <i>tree</i> from the normal form.<p>
+     *
+     * @param pFactory the factory used to build the tree (!null).
+     *
+     * @return the tree (selecting the same rows as the original).
+     */
+    public WhereClause toWhereClause( WhereClauseFactory pFactory ) {
+        List<WhereClause> zClauses = new ArrayList<>( mClauses.size() );
+        for ( List<WhereClause> zClause : mClauses ) {
+            zClauses.add( mDisjunctive ? pFactory.and( zClause ) : pFactory.or( zClause ) );
+        }
+        return mDisjunctive ? pFactory.or( zClauses ) : pFactory.and( zClauses );
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder( mDisjunctive ? "DNF" : "CNF" );
+        String zClauseJoin = " " + getClausesType() + " ";
+        String zLiteralJoin = " " + getLiteralsType() + " ";
+        sb.append( ':' );
+        if ( mClauses.isEmpty() ) {
+            return sb.append( ' ' ).append( mDisjunctive ? WhereClauseType.FALSE : WhereClauseType.TRUE ).toString();
+        }
+        String zClausePrefix = " ";
+        for ( List<WhereClause> zClause : mClauses ) {
+            sb.append( zClausePrefix ).append( '[' );
+            if ( zClause.isEmpty() ) {
+                sb.append( mDisjunctive ? WhereClauseType.TRUE : WhereClauseType.FALSE );
+            }
+            String zLiteralPrefix = "";
+            for ( WhereClause zLiteral : zClause ) {
+                sb.append( zLiteralPrefix ).append( isOpaque( zLiteral ) ? "{" + sqlOf( zLiteral ) + "}" : sqlOf( zLiteral ) );
+                zLiteralPrefix = zLiteralJoin;
+            }
+            sb.append( ']' );
+            zClausePrefix = zClauseJoin;
+        }
+        return sb.toString();
+    }
+
+    private static boolean containsSame( List<WhereClause> pLiterals, WhereClause pLiteral ) {
+        for ( WhereClause zLiteral : pLiterals ) {
+            if ( zLiteral == pLiteral ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String sqlOf( WhereClause pLiteral ) {
+        String zSQL = pLiteral.toSQL().substring( "WHERE ".length() );
+        boolean zNotEquals = (pLiteral.getType() == WhereClauseType.EQUALS) && ((AbstractWhereClauseColumnReference) pLiteral).isNot();
+        return zNotEquals ? "(" + zSQL + ")" : zSQL; // Renders as an OR
+    }
+
+    static boolean isOpaque( WhereClause pLiteral ) {
+        WhereClauseType zType = pLiteral.getType();
+        return (zType == WhereClauseType.AND) || (zType == WhereClauseType.OR);
+    }
+}
@@ -0,0 +1,273 @@
+// This Source Code is in the Public Domain per: http://unlicense.org
+package org.litesoft.whereclause.transform;
+
+import org.litesoft.whereclause.WhereClause;
+import org.litesoft.whereclause.WhereClauseFactory;
+import org.litesoft.whereclause.WhereClauseType;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseAssociativeList;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseColumnReference;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseWrapper;
+import org.litesoft.whereclause.nonpublic.IllegalArgument;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Converts a <b>WhereClause</b> <i>tree</i> into its Disjunctive (<b>toDNF()</b>) or
+ * Conjunctive (<b>toCNF()</b>) <b>NormalForm</b>, for targets (like index union
+ * planners and partition pruners) that can only handle those forms.<p>
+ * <a href="../../../Licence.txt">Licence</a><br>
+ * <p/>
+ * The tree is first put into negation normal form, pushing the NOTs down to the
+ * Column Reference (leaf) WhereClauses with De Morgan's laws.  As the NOT mode of an
+ * EQUALS is null inclusive ("(col <> v) OR (col IS NULL)"), while SQL's NOT of "col = v"
+ * is not, the negation of a regular EQUALS becomes the two literals
+ * "NOT EQUALS AND IS NOT NULL".<p>
+ * <p/>
+ * The result selects exactly the same rows as the original tree, but a row for which
+ * the original is UNKNOWN may be FALSE: e.g. "NOT ((D > 0) OR (S = 'ab'))" with
+ * D = -2.5 and S NULL is UNKNOWN, while its NNF "(D <= 0) AND ... AND (S IS NOT NULL)"
+ * is FALSE.  So the results (see <b>NormalForm</b>) are NOT safe to wrap in a NOT.<p>
+ * <p/>
+ * Distributing can grow a tree exponentially, so the conversion has a hard size budget
+ * (the total number of literals across all the clauses).  When a part of the tree would
+ * exceed it, the largest parts are kept as <i>opaque</i> literals (see <b>NormalForm</b>)
+ * until it fits.<p>
+ */
+public class NormalFormConverter {
+    public static final int DEFAULT_MAX_SIZE = 256;
+
+    public static final NormalFormConverter INSTANCE = new NormalFormConverter( WhereClauseFactory.INSTANCE, DEFAULT_MAX_SIZE );
+
+    private final WhereClauseFactory mFactory;
+    private final int mMaxSize;
+
+    /**
+     * Constructor.<p>
+     *
+     * @param pFactory the factory used to build the negation normal form (!null).
+     * @param pMaxSize the size budget, the maximum total literals (>= 1).
+     */
+    public NormalFormConverter( WhereClauseFactory pFactory, int pMaxSize ) {
+        IllegalArgument.ifNull( "Factory", mFactory = pFactory );
+        if ( (mMaxSize = pMaxSize) < 1 ) {
+            throw IllegalArgument.exception( "MaxSize", "Must be at least 1" );
+        }
+    }
+
+    public int getMaxSize() {
+        return mMaxSize;
+    }
+
+    /**
+     * Convert to the Disjunctive Normal Form (an OR of ANDs).<p>
+     *
+     * @param pWhereClause the tree (!null, not modified).
+     *
+     * @return the DNF.
+     */
+    public NormalForm toDNF( WhereClause pWhereClause ) {
+        return convert( pWhereClause, true );
+    }
+
+    /**
+     * Convert to the Conjunctive Normal Form (an AND of ORs).<p>
+     *
+     * @param pWhereClause the tree (!null, not modified).
+     *
+     * @return the CNF.
+     */
+    public NormalForm toCNF( WhereClause pWhereClause ) {
+        return convert( pWhereClause, false );
+    }
+
+    /**
+     * Convert to the negation normal form (NOTs only as the NOT mode of the Column Reference WhereClauses).<p>
+     *
+     * @param pWhereClause the tree (!null, not modified).
+     *
+     * @return the tree in negation normal form, selecting the same rows (an UNKNOWN may become FALSE).
+     */
+    public WhereClause toNNF( WhereClause pWhereClause ) {
+        IllegalArgument.ifNull( "WhereClause", pWhereClause );
+        return nnf( pWhereClause, false );
+    }
+
+    private NormalForm convert( WhereClause pWhereClause, boolean pDisjunctive ) {
+        return new NormalForm( pDisjunctive, normalize( toNNF( pWhereClause ), pDisjunctive ) );
+    }
+
+    private WhereClause nnf( WhereClause pWhereClause, boolean pNegate ) {
+        switch ( pWhereClause.getType() ) {
+            case TRUE:
+                return pNegate ? mFactory.alwaysFalse() : pWhereClause;
+            case FALSE:
+                return pNegate ? mFactory.alwaysTrue() : pWhereClause;
+            case NOT:
+                return nnf( ((AbstractWhereClauseWrapper) pWhereClause).getWrappedWhereClause(), !pNegate );
+            case AND:
+            case OR:
+                List<WhereClause> zOriginals = ((AbstractWhereClauseAssociativeList) pWhereClause).getWhereClauseList();
+                List<WhereClause> zChildren = new ArrayList<>( zOriginals.size() );
+                boolean zChanged = pNegate;
+                for ( WhereClause zOriginal : zOriginals ) {
+                    WhereClause zChild = nnf( zOriginal, pNegate );
+                    zChanged |= (zChild != zOriginal);
+                    zChildren.add( zChild );
+                }
+                if ( !zChanged ) {
+                    return pWhereClause;
+                }
+                boolean zAnd = (pWhereClause.getType() == WhereClauseType.AND) != pNegate;
+                return zAnd ? mFactory.and( zChildren ) : mFactory.or( zChildren );
+            default:
+                if ( !pNegate ) {
+                    return pWhereClause;
+                }
+                AbstractWhereClauseColumnReference zLeaf = (AbstractWhereClauseColumnReference) pWhereClause;
+                WhereClause zNegated = mFactory.negationOf( zLeaf );
+                if ( (zLeaf.getType() == WhereClauseType.EQUALS) && !zLeaf.isNot() ) {
+                    return mFactory.and( zNegated, mFactory.isNotNull( zLeaf.getColumnDefinition() ) );
+                }
+                return zNegated;
+        }
+    }
+
+    private List<List<WhereClause>> normalize( WhereClause pWhereClause, boolean pDisjunctive ) {
+        WhereClauseType zType = pWhereClause.getType();
+        switch ( zType ) {
+            case TRUE:
+                return pDisjunctive ? oneEmptyClause() : noClauses();
+            case FALSE:
+                return pDisjunctive ? noClauses() : oneEmptyClause();
+            case AND:
+            case OR:
+                List<WhereClause> zChildren = ((AbstractWhereClauseAssociativeList) pWhereClause).getWhereClauseList();
+                List<List<List<WhereClause>>> zParts = new ArrayList<>( zChildren.size() );
+                for ( WhereClause zChild : zChildren ) {
+                    zParts.add( normalize( zChild, pDisjunctive ) );
+                }
+                boolean zJoinsClauses = (zType == WhereClauseType.OR) == pDisjunctive;
+                return zJoinsClauses ? concatenate( pWhereClause, zChildren, zParts ) : distribute( pWhereClause, zChildren, zParts );
+            default:
+                return single( pWhereClause );
+        }
+    }
+
+    private List<List<WhereClause>> concatenate( WhereClause pNode, List<WhereClause> pChildren, List<List<List<WhereClause>>> pParts ) {
+        while ( concatenatedSize( pParts ) > mMaxSize ) {
+            if ( !makeLargestOpaque( pChildren, pParts ) ) {
+                return single( pNode );
+            }
+        }
+        List<List<WhereClause>> zClauses = new ArrayList<>();
+        for ( List<List<WhereClause>> zPart : pParts ) {
+            zClauses.addAll( zPart );
+        }
+        return zClauses;
+    }
+
+    private List<List<WhereClause>> distribute( WhereClause pNode, List<WhereClause> pChildren, List<List<List<WhereClause>>> pParts ) {
+        while ( distributedSize( pParts ) > mMaxSize ) {
+            if ( !makeLargestOpaque( pChildren, pParts ) ) {
+                return single( pNode );
+            }
+        }
+        List<List<WhereClause>> zClauses = oneEmptyClause();
+        for ( List<List<WhereClause>> zPart : pParts ) {
+            List<List<WhereClause>> zProduct = new ArrayList<>( zClauses.size() * zPart.size() );
+            for ( List<WhereClause> zClause : zClauses ) {
+                for ( List<WhereClause> zPartClause : zPart ) {
+                    zProduct.add( merge( zClause, zPartClause ) );
+                }
+            }
+            zClauses = zProduct;
+        }
+        return zClauses;
+    }
+
+    /**
+     * Replace the largest part (of more than one literal) by its child as a single (opaque) literal.
+     *
+     * @return false if there was no such part.
+     */
+    private static boolean makeLargestOpaque( List<WhereClause> pChildren, List<List<List<WhereClause>>> pParts ) {
+        int zLargest = -1;
+        int zLargestSize = 1;
+        for ( int i = 0; i < pParts.size(); i++ ) {
+            int zSize = sizeOf( pParts.get( i ) );
+            if ( zSize > zLargestSize ) {
+                zLargest = i;
+                zLargestSize = zSize;
+            }
+        }
+        if ( zLargest == -1 ) {
+            return false;
+        }
+        pParts.set( zLargest, single( pChildren.get( zLargest ) ) );
+        return true;
+    }
+
+    private static List<WhereClause> merge( List<WhereClause> pClause1, List<WhereClause> pClause2 ) {
+        Map<String, WhereClause> zLiterals = new LinkedHashMap<>();
+        for ( WhereClause zLiteral : pClause1 ) {
+            zLiterals.put( zLiteral.toSQL(), zLiteral );
+        }
+        for ( WhereClause zLiteral : pClause2 ) {
+            if ( !zLiterals.containsKey( zLiteral.toSQL() ) ) {
+                zLiterals.put( zLiteral.toSQL(), zLiteral );
+            }
+        }
+        return new ArrayList<>( zLiterals.values() );
+    }
+
+    private static double concatenatedSize( List<List<List<WhereClause>>> pParts ) {
+        double zSize = 0;
+        for ( List<List<WhereClause>> zPart : pParts ) {
+            zSize += sizeOf( zPart );
+        }
+        return zSize;
+    }
+
+    private static double distributedSize( List<List<List<WhereClause>>> pParts ) {
+        double zClauses = 1; // Each literal of a part is repeated once per combination of the other parts' clauses
+        for ( List<List<WhereClause>> zPart : pParts ) {
+            zClauses *= zPart.size();
+        }
+        if ( zClauses == 0 ) {
+            return 0;
+        }
+        double zSize = 0;
+        for ( List<List<WhereClause>> zPart : pParts ) {
+            zSize += sizeOf( zPart ) * (zClauses / zPart.size());
+        }
+        return zSize;
+    }
+
+    private static int sizeOf( List<List<WhereClause>> pClauses ) {
+        int zSize = 0;
+        for ( List<WhereClause> zClause : pClauses ) {
+            zSize += zClause.size();
+        }
+        return zSize;
+    }
+
+    private static List<List<WhereClause>> single( WhereClause pLiteral ) {
+        List<List<WhereClause>> zClauses = new ArrayList<>( 1 );
+        zClauses.add( Collections.singletonList( pLiteral ) );
+        return zClauses;
+    }
+
+    private static List<List<WhereClause>> oneEmptyClause() {
+        List<List<WhereClause>> zClauses = new ArrayList<>( 1 );
+        zClauses.add( Collections.<WhereClause>emptyList() );
+        return zClauses;
+    }
+
+    private static List<List<WhereClause>> noClauses() {
+        return new ArrayList<>();
+    }
+}
@@ -0,0 +1,207 @@
+// This Source Code is in the Public Domain per: http://unlicense.org
+package org.litesoft.whereclause.transform;
+
+import org.litesoft.whereclause.SimpleColumnDefinition;
+import org.litesoft.whereclause.WhereClause;
+import org.litesoft.whereclause.WhereClauseFactory;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseColumnAndLikeValue;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseColumnAndLikeValues;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseColumnReference;
+import org.litesoft.whereclause.nonpublic.IllegalArgument;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * A <b>WhereClauseTransform</b> that rewrites prefix searches into index friendly ranges.<p>
+ * <a href="../../../Licence.txt">Licence</a><br>
+ * <p/>
+ * "col LIKE 'abc%'" is not turned into an index range scan by some engines (and
+ * collations), while "col >= 'abc' AND col < 'abd'" always can be.  For the
+ * columns accepted by the <b>Policy</b>:<p>
+ * <ul>
+ * STARTS_WITH "abc" becomes: col >= 'abc' AND col < 'abd',<br>
+ * Does NOT STARTS_WITH "abc" becomes: col < 'abc' OR col >= 'abd',<br>
+ * STARTS_WITH, CONTAINS or ENDS_WITH "" (no real wildcard) becomes: col >= '' (NOT: col < ''), and<br>
+ * LIKE ("abc", "x", ...) becomes: col >= 'abc' AND col < 'abd' AND col LIKE 'abc%x...'.
+ * </ul><p>
+ * <p/>
+ * Both forms are UNKNOWN for a NULL column, so the SQL three valued logic is preserved.
+ * The prefix is the raw (un-escaped) value, as the '%' and '_' characters in a value
+ * are escaped by <b>WhereClauseColumnSupport.Like</b> and are therefore literals. For
+ * a Search Column, the range is computed over the lower cased prefix (as the Like is),
+ * and the successor skips characters that are changed by lower casing (as they can
+ * not be in a lower cased Search Column).<p>
+ * <p/>
+ * Note: The range is only equivalent when the column's collation orders Strings as Java
+ * does (by UTF-16 code unit, e.g. a binary or "C" collation), hence the <b>Policy</b>.
+ * (The single segment LIKE, which is wildcard free, is already an EQUALS via the
+ * <b>WhereClauseFactory</b>).<p>
+ */
+public class PrefixRangeRewriter extends AbstractWhereClauseRewriter {
+    /**
+     * Determines which columns (or for a Dialect, all columns) have a collation that
+     * makes the range rewrite equivalent.<p>
+     */
+    public interface Policy {
+        boolean isRangeRewritable( SimpleColumnDefinition pColumnDefinition );
+
+        Policy ALL = new Policy() {
+            @Override
+            public boolean isRangeRewritable( SimpleColumnDefinition pColumnDefinition ) {
+                return true;
+            }
+        };
+
+        Policy NONE = new Policy() {
+            @Override
+            public boolean isRangeRewritable( SimpleColumnDefinition pColumnDefinition ) {
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Create a Policy that accepts only the specified columns.<p>
+     *
+     * @param pColumnDefinitions the acceptable columns.
+     *
+     * @return the Policy.
+     */
+    public static Policy forColumns( SimpleColumnDefinition... pColumnDefinitions ) {
+        final Set<SimpleColumnDefinition> zColumns = new HashSet<>( Arrays.asList( pColumnDefinitions ) );
+        return new Policy() {
+            @Override
+            public boolean isRangeRewritable( SimpleColumnDefinition pColumnDefinition ) {
+                return zColumns.contains( pColumnDefinition );
+            }
+        };
+    }
+
+    private static final int MAX_SUCCESSOR_PROBES = 1024;
+
+    private final Policy mPolicy;
+
+    /**
+     * Constructor.<p>
+     *
+     * @param pFactory the factory used to (re)build the changed parts of a tree (!null).
+     * @param pPolicy  which columns may be rewritten (!null).
+     */
+    public PrefixRangeRewriter( WhereClauseFactory pFactory, Policy pPolicy ) {
+        super( pFactory );
+        IllegalArgument.ifNull( "Policy", mPolicy = pPolicy );
+    }
+
+    /**
+     * Constructor using the WhereClauseFactory.INSTANCE.<p>
+     *
+     * @param pPolicy which columns may be rewritten (!null).
+     */
+    public PrefixRangeRewriter( Policy pPolicy ) {
+        this( WhereClauseFactory.INSTANCE, pPolicy );
+    }
+
+    @Override
+    protected WhereClause rewriteColumnReference( AbstractWhereClauseColumnReference pWhereClause ) {
+        SimpleColumnDefinition zColumn = pWhereClause.getColumnDefinition();
+        switch ( pWhereClause.getType() ) {
+            case STARTS_WITH:
+                if ( mPolicy.isRangeRewritable( zColumn ) ) {
+                    WhereClause zRange = prefixRange( zColumn, ((AbstractWhereClauseColumnAndLikeValue) pWhereClause).getValue(), pWhereClause.isNot() );
+                    if ( zRange != null ) {
+                        return zRange;
+                    }
+                }
+                break;
+            case CONTAINS:
+            case ENDS_WITH:
+                if ( (((AbstractWhereClauseColumnAndLikeValue) pWhereClause).getValue().length() == 0) && mPolicy.isRangeRewritable( zColumn ) ) {
+                    return prefixRange( zColumn, "", pWhereClause.isNot() );
+                }
+                break;
+            case LIKE:
+                String zPrefix = ((AbstractWhereClauseColumnAndLikeValues) pWhereClause).getValues()[0];
+                if ( !pWhereClause.isNot() && (zPrefix != null) && (zPrefix.length() != 0) && mPolicy.isRangeRewritable( zColumn ) ) {
+                    WhereClause zRange = prefixRange( zColumn, zPrefix, false );
+                    if ( zRange != null ) {
+                        return mFactory.and( zRange, pWhereClause );
+                    }
+                }
+                break;
+            default:
+                break;
+        }
+        return pWhereClause;
+    }
+
+    /**
+     * Build the range for a prefix.<p>
+     *
+     * @return the range, or null if no (safe) successor could be determined.
+     */
+    private WhereClause prefixRange( SimpleColumnDefinition pColumn, String pPrefix, boolean pNot ) {
+        boolean zSearchColumn = pColumn.hasSearchColumn();
+        String zPrefix = zSearchColumn ? pPrefix.toLowerCase() : pPrefix;
+        if ( zSearchColumn && !isLowerCaseStable( zPrefix ) ) {
+            return null;
+        }
+        String zSuccessor = successor( zPrefix, zSearchColumn );
+        if ( zSuccessor == null ) {
+            if ( !allMaxChars( zPrefix ) ) {
+                return null;
+            }
+            // Nothing is greater than a prefix of only MAX_VALUE chars that does not start with it
+            return pNot ? mFactory.isLessThan( pColumn, zPrefix ) : mFactory.isGreaterThanEqual( pColumn, zPrefix );
+        }
+        if ( pNot ) {
+            return mFactory.or( mFactory.isLessThan( pColumn, zPrefix ), mFactory.isGreaterThanEqual( pColumn, zSuccessor ) );
+        }
+        return mFactory.and( mFactory.isGreaterThanEqual( pColumn, zPrefix ), mFactory.isLessThan( pColumn, zSuccessor ) );
+    }
+
+    /**
+     * Compute the smallest String (in UTF-16 code unit order) that is greater than every
+     * String that starts with pPrefix: drop any trailing Character.MAX_VALUEs and then
+     * increment the last character.<p>
+     * <p/>
+     * When pLowerCaseStable, characters that would be changed by lower casing are skipped,
+     * as the rendering of the value for a Search Column lower cases it.<p>
+     *
+     * @param pPrefix          the prefix (!null).
+     * @param pLowerCaseStable true if the successor must be unchanged by toLowerCase().
+     *
+     * @return the successor, or null if there is none (empty or only MAX_VALUE chars, or no stable one).
+     */
+    public static String successor( String pPrefix, boolean pLowerCaseStable ) {
+        for ( int i = pPrefix.length() - 1; i >= 0; i-- ) {
+            char c = pPrefix.charAt( i );
+            if ( c != Character.MAX_VALUE ) {
+                String zBase = pPrefix.substring( 0, i );
+                int zLimit = Math.min( Character.MAX_VALUE, c + MAX_SUCCESSOR_PROBES );
+                for ( int n = c + 1; n <= zLimit; n++ ) {
+                    String zCandidate = zBase + (char) n;
+                    if ( !pLowerCaseStable || isLowerCaseStable( zCandidate ) ) {
+                        return zCandidate;
+                    }
+                }
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private static boolean isLowerCaseStable( String pString ) {
+        return pString.toLowerCase().equals( pString );
+    }
+
+    private static boolean allMaxChars( String pString ) {
+        for ( int i = 0; i < pString.length(); i++ ) {
+            if ( pString.charAt( i ) != Character.MAX_VALUE ) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,96 @@
+// This Source Code is in the Public Domain per: http://unlicense.org
+package org.litesoft.whereclause.transform;
+
+import org.litesoft.whereclause.WhereClause;
+import org.litesoft.whereclause.nonpublic.IllegalArgument;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * A metric of how many distinct rendered shapes a <b>WhereClauseTransform</b>
+ * (normally the <b>WhereClauseCanonicalizer</b>) removes from a captured workload.<p>
+ * <a href="../../../Licence.txt">Licence</a><br>
+ * <p/>
+ * Each recorded <b>WhereClause</b> has its shape (see <b>WhereClauseShape</b>)
+ * collected both as is and after the transform; the difference in the number of
+ * distinct shapes is the number of statement (cache) entries the transform saves.<p>
+ * <p/>
+ * Note: Instances are NOT thread safe.<p>
+ */
+public class ShapeReductionReport {
+    private final WhereClauseTransform mTransform;
+    private final Set<String> mOriginalShapes = new HashSet<>();
+    private final Set<String> mTransformedShapes = new HashSet<>();
+    private int mRecorded;
+
+    /**
+     * Constructor.<p>
+     *
+     * @param pTransform the transform being measured (!null).
+     */
+    public ShapeReductionReport( WhereClauseTransform pTransform ) {
+        IllegalArgument.ifNull( "Transform", mTransform = pTransform );
+    }
+
+    /**
+     * Create a report, measuring the <b>WhereClauseCanonicalizer</b>, from a captured workload.<p>
+     *
+     * @param pWorkload the captured WhereClauses (!null).
+     *
+     * @return the report.
+     */
+    public static ShapeReductionReport of( Iterable<WhereClause> pWorkload ) {
+        ShapeReductionReport zReport = new ShapeReductionReport( WhereClauseCanonicalizer.INSTANCE );
+        for ( WhereClause zWhereClause : pWorkload ) {
+            zReport.record( zWhereClause );
+        }
+        return zReport;
+    }
+
+    /**
+     * Add a WhereClause (from the workload) to the report.<p>
+     *
+     * @param pWhereClause the WhereClause (!null).
+     */
+    public void record( WhereClause pWhereClause ) {
+        IllegalArgument.ifNull( "WhereClause", pWhereClause );
+        mOriginalShapes.add( WhereClauseShape.of( pWhereClause ) );
+        mTransformedShapes.add( WhereClauseShape.of( mTransform.transform( pWhereClause ) ) );
+        mRecorded++;
+    }
+
+    /**
+     * @return the number of WhereClauses recorded.
+     */
+    public int getRecorded() {
+        return mRecorded;
+    }
+
+    /**
+     * @return the number of distinct shapes as the WhereClauses were recorded.
+     */
+    public int getOriginalShapes() {
+        return mOriginalShapes.size();
+    }
+
+    /**
+     * @return the number of distinct shapes after the transform.
+     */
+    public int getTransformedShapes() {
+        return mTransformedShapes.size();
+    }
+
+    /**
+     * @return the number of distinct shapes the transform removed.
+     */
+    public int getShapesRemoved() {
+        return getOriginalShapes() - getTransformedShapes();
+    }
+
+    @Override
+    public String toString() {
+        return "Recorded: " + getRecorded() + ", Shapes: " + getOriginalShapes() + " -> " + getTransformedShapes() + //
+               " (" + getShapesRemoved() + " removed)";
+    }
+}
@@ -0,0 +1,180 @@
+// This Source Code is in the Public Domain per: http://unlicense.org
+package org.litesoft.whereclause.transform;
+
+import org.litesoft.whereclause.SimpleColumnDefinition;
+import org.litesoft.whereclause.WhereClause;
+import org.litesoft.whereclause.WhereClauseFactory;
+import org.litesoft.whereclause.WhereClauseType;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseColumnAnd_N_Values;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseColumnReference;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A <b>WhereClauseTransform</b> that puts the commutative parts of a <b>WhereClause</b>
+ * <i>tree</i> into a deterministic (canonical) order.<p>
+ * <a href="../../../Licence.txt">Licence</a><br>
+ * <p/>
+ * <b>AbstractWhereClauseAssociativeList</b>s (AND & OR) keep the order their
+ * <b>WhereClause</b>s were added in, so "a = ? AND b = ?" and "b = ? AND a = ?"
+ * render differently, which splits both the database's statement cache and
+ * any shape keyed cache.  This transform (bottom up) sorts:<p>
+ * <ul>
+ * the <b>WhereClause</b>s of each AND & OR by: Type, Column, NOT mode, Shape and then Values, and<br>
+ * the values of each IS_ANY_OF (SQL IN list).
+ * </ul><p>
+ * <p/>
+ * Sorting on the Shape before the Values means that two trees that differ only
+ * in their values will produce the same canonical shape.<p>
+ * <p/>
+ * See <a href="WhereClauseShape.html">WhereClauseShape</a><br>
+ * See <a href="ShapeReductionReport.html">ShapeReductionReport</a><p>
+ */
+public class WhereClauseCanonicalizer extends AbstractWhereClauseRewriter {
+    public static final WhereClauseCanonicalizer INSTANCE = new WhereClauseCanonicalizer( WhereClauseFactory.INSTANCE );
+
+    /**
+     * Constructor.<p>
+     *
+     * @param pFactory the factory used to (re)build the changed parts of a tree (!null).
+     */
+    public WhereClauseCanonicalizer( WhereClauseFactory pFactory ) {
+        super( pFactory );
+    }
+
+    /**
+     * Convenience method to render the canonical form of a WhereClause.<p>
+     *
+     * @param pWhereClause the tree to render (!null).
+     *
+     * @return the <b>WHERE</b> clause of the canonical form.
+     */
+    public String toSQL( WhereClause pWhereClause ) {
+        return transform( pWhereClause ).toSQL();
+    }
+
+    @Override
+    protected List<WhereClause> orderChildren( WhereClauseType pType, List<WhereClause> pChildren ) {
+        List<Keyed> zKeyeds = new ArrayList<>( pChildren.size() );
+        for ( WhereClause zChild : pChildren ) {
+            zKeyeds.add( new Keyed( zChild ) );
+        }
+        Collections.sort( zKeyeds );
+        pChildren.clear();
+        for ( Keyed zKeyed : zKeyeds ) {
+            pChildren.add( zKeyed.mWhereClause );
+        }
+        return pChildren;
+    }
+
+    @Override
+    protected WhereClause rewriteColumnReference( AbstractWhereClauseColumnReference pWhereClause ) {
+        if ( pWhereClause.getType() != WhereClauseType.IS_ANY_OF ) {
+            return pWhereClause;
+        }
+        Object[] zValues = ((AbstractWhereClauseColumnAnd_N_Values) pWhereClause).getValues();
+        Object[] zSorted = zValues.clone();
+        Arrays.sort( zSorted, VALUE_ORDER );
+        if ( isIdentityOrdered( zValues, zSorted ) ) {
+            return pWhereClause;
+        }
+        return withNotOf( pWhereClause, mFactory.isAnyOf( pWhereClause.getColumnDefinition(), zSorted ) );
+    }
+
+    private static boolean isIdentityOrdered( Object[] pValues1, Object[] pValues2 ) {
+        for ( int i = 0; i < pValues1.length; i++ ) {
+            if ( pValues1[i] != pValues2[i] ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Key for a Column Definition, "" if there is no Column Definition.<p>
+     */
+    static String columnKey( WhereClause pWhereClause ) {
+        if ( !(pWhereClause instanceof AbstractWhereClauseColumnReference) ) {
+            return "";
+        }
+        SimpleColumnDefinition zColumn = ((AbstractWhereClauseColumnReference) pWhereClause).getColumnDefinition();
+        String zKey = zColumn.getColumnName();
+        return (zKey != null) ? zKey : zColumn.getName();
+    }
+
+    static boolean isNot( WhereClause pWhereClause ) {
+        return (pWhereClause instanceof AbstractWhereClauseColumnReference) && ((AbstractWhereClauseColumnReference) pWhereClause).isNot();
+    }
+
+    /**
+     * Deterministic order for the values of an IS_ANY_OF: Numbers (numerically) before
+     * everything else, then other Comparables of the same class naturally, otherwise
+     * by class name and then by toString().<p>
+     */
+    @SuppressWarnings("unchecked")
+    public static final Comparator<Object> VALUE_ORDER = new Comparator<Object>() {
+        @Override
+        public int compare( Object pValue1, Object pValue2 ) {
+            boolean zNumber1 = (pValue1 instanceof Number);
+            if ( zNumber1 != (pValue2 instanceof Number) ) {
+                return zNumber1 ? -1 : 1;
+            }
+            if ( zNumber1 ) {
+                int zCompare = Double.compare( ((Number) pValue1).doubleValue(), ((Number) pValue2).doubleValue() );
+                if ( zCompare != 0 ) {
+                    return zCompare;
+                }
+            } else if ( (pValue1 instanceof Comparable) && (pValue1.getClass() == pValue2.getClass()) ) {
+                return ((Comparable<Object>) pValue1).compareTo( pValue2 );
+            }
+            int zCompare = pValue1.getClass().getName().compareTo( pValue2.getClass().getName() );
+            return (zCompare != 0) ? zCompare : pValue1.toString().compareTo( pValue2.toString() );
+        }
+    };
+
+    private static class Keyed implements Comparable<Keyed> {
+        private final WhereClause mWhereClause;
+        private final int mTypeOrdinal;
+        private final String mColumnKey;
+        private final boolean mNot;
+        private final String mShape;
+        private String mSQL;
+
+        Keyed( WhereClause pWhereClause ) {
+            mWhereClause = pWhereClause;
+            mTypeOrdinal = pWhereClause.getType().ordinal();
+            mColumnKey = columnKey( pWhereClause );
+            mNot = isNot( pWhereClause );
+            mShape = WhereClauseShape.of( pWhereClause );
+        }
+
+        private String getSQL() {
+            if ( mSQL == null ) {
+                mSQL = mWhereClause.toSQL();
+            }
+            return mSQL;
+        }
+
+        @Override
+        public int compareTo( Keyed them ) {
+            int zCompare = Integer.compare( mTypeOrdinal, them.mTypeOrdinal );
+            if ( zCompare == 0 ) {
+                zCompare = mColumnKey.compareTo( them.mColumnKey );
+                if ( zCompare == 0 ) {
+                    zCompare = Boolean.compare( mNot, them.mNot );
+                    if ( zCompare == 0 ) {
+                        zCompare = mShape.compareTo( them.mShape );
+                        if ( zCompare == 0 ) {
+                            zCompare = getSQL().compareTo( them.getSQL() );
+                        }
+                    }
+                }
+            }
+            return zCompare;
+        }
+    }
+}
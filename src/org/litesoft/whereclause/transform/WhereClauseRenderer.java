@@ -0,0 +1,87 @@
+// This Source Code is in the Public Domain per: http://unlicense.org
+package org.litesoft.whereclause.transform;
+
+import org.litesoft.whereclause.WhereClause;
+import org.litesoft.whereclause.nonpublic.IllegalArgument;
+import org.litesoft.whereclause.nonpublic.WCtoSqlHelper;
+
+/**
+ * Renders a <b>WhereClause</b> <i>tree</i> to SQL after applying a chain of
+ * (optional) <b>WhereClauseTransform</b>s, e.g. a <b>WhereClauseCanonicalizer</b>,
+ * <b>PrefixRangeRewriter</b>, or (statistics) <b>CostBasedOrderer</b>.<p>
+ * <a href="../../../Licence.txt">Licence</a><br>
+ * <p/>
+ * Renderers are immutable, <b>with()</b> returns a new renderer with the additional
+ * transform applied after the existing ones.<p>
+ */
+public class WhereClauseRenderer {
+    public static final WhereClauseRenderer PLAIN = new WhereClauseRenderer( WCtoSqlHelper.NULL, WhereClauseTransform.NONE );
+
+    private final WCtoSqlHelper mWCtoSqlHelper;
+    private final WhereClauseTransform mTransform;
+
+    /**
+     * Constructor.<p>
+     *
+     * @param pWCtoSqlHelper helper called on each toSqlHelper() (null means WCtoSqlHelper.NULL).
+     * @param pTransform     the transform to apply before rendering (!null).
+     */
+    public WhereClauseRenderer( WCtoSqlHelper pWCtoSqlHelper, WhereClauseTransform pTransform ) {
+        mWCtoSqlHelper = (pWCtoSqlHelper != null) ? pWCtoSqlHelper : WCtoSqlHelper.NULL;
+        IllegalArgument.ifNull( "Transform", mTransform = pTransform );
+    }
+
+    /**
+     * @return a new renderer that also applies pTransform (after the existing transforms).
+     */
+    public WhereClauseRenderer with( WhereClauseTransform pTransform ) {
+        return new WhereClauseRenderer( mWCtoSqlHelper, chain( mTransform, pTransform ) );
+    }
+
+    /**
+     * @return a new renderer with the same transforms, but using pWCtoSqlHelper.
+     */
+    public WhereClauseRenderer with( WCtoSqlHelper pWCtoSqlHelper ) {
+        return new WhereClauseRenderer( pWCtoSqlHelper, mTransform );
+    }
+
+    /**
+     * @return the (chained) transform applied before rendering.
+     */
+    public WhereClauseTransform getTransform() {
+        return mTransform;
+    }
+
+    /**
+     * Transform and then render a WhereClause.<p>
+     *
+     * @param pWhereClause the tree to render (!null).
+     *
+     * @return the <b>WHERE</b> clause.
+     */
+    public String toSQL( WhereClause pWhereClause ) {
+        return mTransform.transform( pWhereClause ).toSQL( mWCtoSqlHelper );
+    }
+
+    /**
+     * Chain two transforms, the first applied first.<p>
+     *
+     * @return the chained transform (!null).
+     */
+    public static WhereClauseTransform chain( final WhereClauseTransform pFirst, final WhereClauseTransform pSecond ) {
+        IllegalArgument.ifNull( "First", pFirst );
+        IllegalArgument.ifNull( "Second", pSecond );
+        if ( pFirst == WhereClauseTransform.NONE ) {
+            return pSecond;
+        }
+        if ( pSecond == WhereClauseTransform.NONE ) {
+            return pFirst;
+        }
+        return new WhereClauseTransform() {
+            @Override
+            public WhereClause transform( WhereClause pWhereClause ) {
+                return pSecond.transform( pFirst.transform( pWhereClause ) );
+            }
+        };
+    }
+}
@@ -0,0 +1,103 @@
+// This Source Code is in the Public Domain per: http://unlicense.org
+package org.litesoft.whereclause.transform;
+
+import org.litesoft.whereclause.SingleColumnSelect;
+import org.litesoft.whereclause.WhereClause;
+import org.litesoft.whereclause.WhereClauseType;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseColumnAnd_N_Values;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseColumnReference;
+import org.litesoft.whereclause.nonpublic.WCtoSqlHelper;
+
+/**
+ * Utility class to render the <i>shape</i> of a <b>WhereClause</b> <i>tree</i>.<p>
+ * <a href="../../../Licence.txt">Licence</a><br>
+ * <p/>
+ * The shape is the SQL that <b>toSQL()</b> would generate if every value were
+ * a bind parameter (<b>?</b>), and is therefore what a database's statement
+ * cache (or any shape keyed cache) would see.  An IN list keeps one <b>?</b>
+ * per value, as the number of values changes the statement.<p>
+ */
+public class WhereClauseShape {
+    private WhereClauseShape() {
+    }
+
+    /**
+     * Render the shape of a WhereClause.<p>
+     *
+     * @param pWhereClause the tree to render (!null).
+     *
+     * @return the parameterized <b>WHERE</b> clause.
+     */
+    public static String of( WhereClause pWhereClause ) {
+        return pWhereClause.toSQL( HELPER );
+    }
+
+    /**
+     * WCtoSqlHelper that renders the value bearing nodes with bind parameters.<p>
+     */
+    public static final WCtoSqlHelper HELPER = new WCtoSqlHelper() {
+        @Override
+        public boolean preRender( WhereClause pWC, StringBuilder pSB ) {
+            WhereClauseType zType = pWC.getType();
+            switch ( zType ) {
+                case EQUALS:
+                    AbstractWhereClauseColumnReference zEquals = (AbstractWhereClauseColumnReference) pWC;
+                    if ( !zEquals.isNot() ) {
+                        appendColumnOperator( pSB, zEquals ).append( '?' );
+                    } else {
+                        pSB.append( '(' );
+                        appendColumnOperator( pSB, zEquals ).append( "?) OR (" );
+                        pSB.append( zEquals.getColumnDefinition().getSearchColumnName() ).append( " IS NULL)" );
+                    }
+                    return true;
+                case LESSTHAN:
+                case GREATERTHAN:
+                    appendColumnOperator( pSB, (AbstractWhereClauseColumnReference) pWC ).append( '?' );
+                    return true;
+                case BETWEEN:
+                    appendColumnOperator( pSB, (AbstractWhereClauseColumnReference) pWC ).append( "? AND ?" );
+                    return true;
+                case IS_ANY_OF:
+                    AbstractWhereClauseColumnAnd_N_Values zAnyOf = (AbstractWhereClauseColumnAnd_N_Values) pWC;
+                    appendColumnOperator( pSB, zAnyOf ).setLength( pSB.length() - 1 ); // Drop the space
+                    pSB.append( '?' );
+                    for ( int i = 1; i < zAnyOf.getValues().length; i++ ) {
+                        pSB.append( ",?" );
+                    }
+                    pSB.append( ')' );
+                    return true;
+                case CONTAINS:
+                case STARTS_WITH:
+                case ENDS_WITH:
+                case LIKE:
+                    AbstractWhereClauseColumnReference zLike = (AbstractWhereClauseColumnReference) pWC;
+                    pSB.append( zLike.getColumnDefinition().getSearchColumnName() );
+                    pSB.append( zLike.isNot() ? " NOT LIKE ?" : " LIKE ?" );
+                    return true;
+                default:
+                    return false;
+            }
+        }
+
+        private StringBuilder appendColumnOperator( StringBuilder pSB, AbstractWhereClauseColumnReference pWC ) {
+            pSB.append( pWC.getColumnDefinition().getSearchColumnName() );
+            pSB.append( ' ' );
+            WhereClauseType zType = pWC.getType();
+            pSB.append( pWC.isNot() ? zType.getToNotSql() : zType.getToSql() );
+            return pSB.append( ' ' );
+        }
+
+        @Override
+        public void postRender( WhereClause pWC, StringBuilder pSB ) {
+        }
+
+        @Override
+        public boolean preRender( SingleColumnSelect pSCS, StringBuilder pSB ) {
+            return false;
+        }
+
+        @Override
+        public void postRender( SingleColumnSelect pSCS, StringBuilder pSB ) {
+        }
+    };
+}
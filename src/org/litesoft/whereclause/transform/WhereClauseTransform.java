@@ -0,0 +1,33 @@
+// This Source Code is in the Public Domain per: http://unlicense.org
+package org.litesoft.whereclause.transform;
+
+import org.litesoft.whereclause.WhereClause;
+
+/**
+ * An interface for a (row selection preserving) rewrite of a <b>WhereClause</b> <i>tree</i>.<p>
+ * <a href="../../../Licence.txt">Licence</a><br>
+ * <p/>
+ * The rewritten tree MUST select exactly the rows the original does, but a row for which
+ * the original is UNKNOWN may become FALSE (as NULL only ever fails a WHERE).  So the
+ * result is for use as a whole WHERE, and is NOT safe to wrap in a NOT.<p>
+ * <p/>
+ * Implementations MUST NOT modify the <b>WhereClause</b>s of the tree passed in (including
+ * toggling a NOT flag), but may share any unchanged nodes with the returned tree.<p>
+ */
+public interface WhereClauseTransform {
+    /**
+     * Rewrite the <b>WhereClause</b> <i>tree</i>.<p>
+     *
+     * @param pWhereClause the tree to rewrite (!null).
+     *
+     * @return the rewritten tree, or pWhereClause if nothing changed (!null).
+     */
+    WhereClause transform( WhereClause pWhereClause );
+
+    WhereClauseTransform NONE = new WhereClauseTransform() {
+        @Override
+        public WhereClause transform( WhereClause pWhereClause ) {
+            return pWhereClause;
+        }
+    };
+}
@@ -0,0 +1,232 @@
+// This Source Code is in the Public Domain per: http://unlicense.org
+package org.litesoft.whereclause.cache;
+
+import org.litesoft.whereclause.SimpleColumnDefinition;
+import org.litesoft.whereclause.SimpleFromIdentifier;
+import org.litesoft.whereclause.SingleColumnSelect;
+import org.litesoft.whereclause.WhereClause;
+import org.litesoft.whereclause.WhereClauseFactory;
+import org.litesoft.whereclause.evaluation.MapColumnAccessor;
+import org.litesoft.whereclause.evaluation.TriState;
+import org.litesoft.whereclause.evaluation.WhereClauseEvaluator;
+import org.litesoft.whereclause.nonpublic.AbstractColumnDefinition;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+public class QueryContainmentTest extends TestCase {
+    public static Test suite() {
+        return new TestSuite( QueryContainmentTest.class );
+    }
+
+    public QueryContainmentTest( String name ) {
+        super( name );
+    }
+
+    public static void main( String[] args ) {
+        junit.textui.TestRunner.run( suite() );
+    }
+
+    static class TestingColumnDefinition extends AbstractColumnDefinition {
+        TestingColumnDefinition( String pName, Class pColumnType ) {
+            super( pName + "Attr", pName + "Col", pColumnType );
+        }
+    }
+
+    static class SearchColumnDefinition extends AbstractColumnDefinition {
+        SearchColumnDefinition( String pName ) {
+            super( pName + "Attr", pName + "Col", pName + "Col_SC", String.class );
+        }
+    }
+
+    static class WCtableID implements SimpleFromIdentifier {
+        @Override
+        public String getTableName() {
+            return "Orders";
+        }
+
+        @Override
+        public String getIdentifierName() {
+            return "zOrders";
+        }
+    }
+
+    private WhereClauseFactory F = WhereClauseFactory.INSTANCE;
+    private WhereClauseEvaluator<Map<SimpleColumnDefinition, Object>> E = new WhereClauseEvaluator<>( MapColumnAccessor.INSTANCE );
+    private QueryContainment C = QueryContainment.INSTANCE;
+
+    private TestingColumnDefinition TheInt = new TestingColumnDefinition( "Int", Integer.class );
+    private TestingColumnDefinition TheWhen = new TestingColumnDefinition( "When", Date.class );
+    private TestingColumnDefinition TheCode = new TestingColumnDefinition( "Code", String.class );
+    private SearchColumnDefinition TheName = new SearchColumnDefinition( "Name" );
+
+    public void test_implies() {
+        WhereClause zRange = F.isBetween( TheInt, 10, 20 );
+        assertTrue( C.implies( F.isBetween( TheInt, 12, 15 ), zRange ) );
+        assertTrue( C.implies( F.and( F.isGreaterThanEqual( TheInt, 10 ), F.isLessThan( TheInt, 20 ) ), zRange ) );
+        assertFalse( C.implies( F.isGreaterThanEqual( TheInt, 10 ), zRange ) );
+        assertFalse( C.implies( zRange, F.isBetween( TheInt, 12, 15 ) ) );
+        assertTrue( C.implies( F.isGreaterThan( TheInt, 5 ), F.isGreaterThanEqual( TheInt, 5 ) ) );
+        assertFalse( C.implies( F.isGreaterThanEqual( TheInt, 5 ), F.isGreaterThan( TheInt, 5 ) ) );
+        assertTrue( C.implies( F.isGreaterThan( TheInt, 5.5 ), F.isNotLessThan( TheInt, 5 ) ) );
+        assertTrue( C.implies( F.isLessThan( TheInt, 3 ), F.isNotBetween( TheInt, 10, 20 ) ) );
+
+        assertTrue( C.implies( F.isEqual( TheInt, 12 ), zRange ) );
+        assertTrue( C.implies( F.isAnyOf( TheInt, 12, 14L ), F.isAnyOf( TheInt, 12.0, 13, 14 ) ) );
+        assertFalse( C.implies( F.isAnyOf( TheInt, 12, 15 ), F.isAnyOf( TheInt, 12, 14 ) ) );
+        assertTrue( C.implies( F.and( F.isAnyOf( TheInt, 12, 25 ), F.isLessThan( TheInt, 20 ) ), F.isEqual( TheInt, 12 ) ) );
+        assertTrue( C.implies( F.isEqual( TheInt, 3 ), F.isNotEqual( TheInt, 4 ) ) );
+        assertTrue( C.implies( F.isNull( TheInt ), F.isNotEqual( TheInt, 4 ) ) );
+        assertFalse( C.implies( F.isNull( TheInt ), F.isNotAnyOf( TheInt, 4, 5 ) ) ); // NOT IN is UNKNOWN for a NULL
+        assertTrue( C.implies( F.isEqual( TheInt, 3 ), F.isNotNull( TheInt ) ) );
+        assertFalse( C.implies( F.isEqual( TheInt, "3" ), F.isEqual( TheInt, 3 ) ) ); // different families
+
+        assertTrue( C.implies( F.startsWith( TheCode, "abc" ), F.startsWith( TheCode, "ab" ) ) );
+        assertFalse( C.implies( F.startsWith( TheCode, "ab" ), F.startsWith( TheCode, "abc" ) ) );
+        assertTrue( C.implies( F.startsWith( TheName, "ABC" ), F.startsWith( TheName, "ab" ) ) ); // case folded
+        assertFalse( C.implies( F.startsWith( TheCode, "ABC" ), F.startsWith( TheCode, "ab" ) ) );
+        assertTrue( C.implies( F.like( TheCode, "abc", "x", "" ), F.startsWith( TheCode, "ab" ) ) );
+        assertTrue( C.implies( F.startsWith( TheCode, "abc" ), F.doesNotStartWith( TheCode, "x" ) ) );
+        assertTrue( C.implies( F.isAnyOf( TheCode, "abc", "abd" ), F.startsWith( TheCode, "ab" ) ) );
+        assertTrue( C.implies( F.contains( TheCode, "q" ), F.contains( TheCode, "q" ) ) );
+
+        WhereClause zBroad = F.and( F.isBetween( TheWhen, new Date( 1000 ), new Date( 5000 ) ), F.isAnyOf( TheCode, "open", "closed" ) );
+        assertTrue( C.implies( F.and( F.isBetween( TheWhen, new Date( 1000 ), new Date( 5000 ) ), F.isEqual( TheCode, "open" ), F.isGreaterThan( TheInt, 7 ) ), zBroad ) );
+        assertFalse( C.implies( F.and( F.isBetween( TheWhen, new Date( 1000 ), new Date( 6000 ) ), F.isEqual( TheCode, "open" ) ), zBroad ) );
+        assertTrue( C.implies( F.or( F.isEqual( TheInt, 1 ), F.isEqual( TheInt, 2 ) ), F.isLessThan( TheInt, 3 ) ) );
+        assertFalse( C.implies( F.or( F.isEqual( TheInt, 1 ), F.isEqual( TheInt, 4 ) ), F.isLessThan( TheInt, 3 ) ) );
+        assertTrue( C.implies( F.isEqual( TheInt, 1 ), F.or( F.isGreaterThan( TheInt, 9 ), F.isLessThan( TheInt, 3 ) ) ) );
+        assertTrue( C.implies( F.and( F.isLessThan( TheInt, 1 ), F.isGreaterThan( TheInt, 2 ) ), F.isEqual( TheCode, "x" ) ) ); // unsatisfiable
+        assertTrue( C.implies( F.not( F.isEqual( TheInt, 1 ) ), F.isNotEqual( TheInt, 1 ) ) );
+
+        assertTrue( C.implies( F.isLessThanEqual( TheInt, 2 ), F.isLessThan( TheInt, 1L << 40 ) ) ); // as a NaN is above every number
+        assertTrue( C.implies( F.isGreaterThan( TheInt, 2 ), F.isGreaterThanEqual( TheInt, 1 ) ) );
+        assertTrue( C.implies( F.isBetween( TheInt, 4, -0.0 ), F.isEqual( TheCode, "x" ) ) ); // unsatisfiable, even for a NaN
+        assertFalse( C.implies( F.isEqual( TheInt, Double.NaN ), F.isLessThan( TheInt, 1L << 40 ) ) );
+    }
+
+    public void test_soundness() {
+        Random zRandom = new Random( 50 );
+        List<Map<SimpleColumnDefinition, Object>> zRows = new ArrayList<>();
+        for ( Object zInt : Arrays.asList( null, 0, 1, 2, 3, 4, 5, 6, 2.5, -0.0, Double.NaN ) ) {
+            for ( Object zName : Arrays.asList( null, "", "a", "Ab", "abc", "ABD", "b", "ba" ) ) {
+                Map<SimpleColumnDefinition, Object> zRow = new HashMap<>();
+                zRow.put( TheInt, zInt );
+                zRow.put( TheName, zName );
+                zRows.add( zRow );
+            }
+        }
+        int zImplied = 0;
+        for ( int i = 0; i < 20000; i++ ) {
+            WhereClause zNarrow = whereClause( zRandom, 2 );
+            WhereClause zBroad = (i % 3 == 0) ? F.and( zNarrow, whereClause( zRandom, 1 ) ) : whereClause( zRandom, 2 ); // some truly narrower
+            if ( (i % 3 == 0) ) {
+                WhereClause zSwap = zNarrow;
+                zNarrow = zBroad;
+                zBroad = zSwap;
+            }
+            if ( C.implies( zNarrow, zBroad ) ) {
+                zImplied++;
+                for ( Map<SimpleColumnDefinition, Object> zRow : zRows ) {
+                    if ( E.evaluate( zNarrow, zRow ) == TriState.TRUE ) {
+                        assertEquals( zNarrow + " implies " + zBroad + " but NOT for: " + zRow, TriState.TRUE, E.evaluate( zBroad, zRow ) );
+                    }
+                }
+            }
+        }
+        assertTrue( "" + zImplied, zImplied > 7000 );
+    }
+
+    private Object pick( Random pRandom, Object... pValues ) {
+        return pValues[pRandom.nextInt( pValues.length )];
+    }
+
+    private WhereClause whereClause( Random pRandom, int pDepth ) {
+        switch ( pRandom.nextInt( (pDepth == 0) ? 10 : 13 ) ) {
+            case 0:
+                return pRandom.nextBoolean() ? F.isEqual( TheInt, pick( pRandom, 1, 2L, 3.0, 4, Double.NaN ) ) : F.isNotEqual( TheInt, pick( pRandom, 1, 3, Double.NaN ) );
+            case 1:
+                return pRandom.nextBoolean() ? F.isAnyOf( TheInt, pick( pRandom, 1, 2 ), pick( pRandom, 3, 4L ) ) : F.isNotAnyOf( TheInt, 2, pick( pRandom, 3, 5 ) );
+            case 2:
+                return pRandom.nextBoolean() ? F.isBetween( TheInt, pick( pRandom, 1, 2, 4 ), pick( pRandom, 3, 4.5, -0.0 ) ) : F.isNotBetween( TheInt, 2, 4 );
+            case 3:
+                return pRandom.nextBoolean() ? F.isLessThan( TheInt, pick( pRandom, 2, 3.5, 5, 1L << 40 ) ) : F.isNotLessThan( TheInt, pick( pRandom, 1, 3 ) );
+            case 4:
+                return pRandom.nextBoolean() ? F.isGreaterThan( TheInt, pick( pRandom, 1, 2.5, 4, Double.NaN ) ) : F.isNotGreaterThan( TheInt, pick( pRandom, 2, 3, 5 ) );
+            case 5:
+                return pRandom.nextBoolean() ? F.isNull( (SimpleColumnDefinition) pick( pRandom, TheInt, TheName ) ) : F.isNotNull( (SimpleColumnDefinition) pick( pRandom, TheInt, TheName ) );
+            case 6:
+                return pRandom.nextBoolean() ? F.startsWith( TheName, (String) pick( pRandom, "a", "AB", "b" ) ) : F.doesNotStartWith( TheName, (String) pick( pRandom, "a", "Ab" ) );
+            case 7:
+                return pRandom.nextBoolean() ? F.isEqual( TheName, pick( pRandom, "abc", "Ab", "b" ) ) : F.isAnyOf( TheName, "a", pick( pRandom, "ABC", "ba" ) );
+            case 8:
+                return pRandom.nextBoolean() ? F.isLessThan( TheName, pick( pRandom, "ab", "b" ) ) : F.isGreaterThanEqual( TheName, pick( pRandom, "abc", "B" ) );
+            case 9:
+                return pRandom.nextBoolean() ? F.contains( TheName, "b" ) : F.like( TheName, "a", "c" );
+            case 10:
+                return F.not( whereClause( pRandom, pDepth - 1 ) );
+            case 11:
+                return F.and( whereClause( pRandom, pDepth - 1 ), whereClause( pRandom, pDepth - 1 ) );
+            default:
+                return F.or( whereClause( pRandom, pDepth - 1 ), whereClause( pRandom, pDepth - 1 ) );
+        }
+    }
+
+    public void test_semanticCache() {
+        SemanticResultCache<Map<SimpleColumnDefinition, Object>> zCache = new SemanticResultCache<>( 100, MapColumnAccessor.INSTANCE );
+        WCtableID zOrders = new WCtableID();
+        List<Map<SimpleColumnDefinition, Object>> zAll = new ArrayList<>();
+        for ( int i = 0; i < 100; i++ ) {
+            Map<SimpleColumnDefinition, Object> zRow = new HashMap<>();
+            zRow.put( TheInt, i );
+            zRow.put( TheWhen, new Date( i * 100L ) );
+            zRow.put( TheCode, (i % 3 == 0) ? "open" : (i % 3 == 1) ? "closed" : "void" );
+            zAll.add( zRow );
+        }
+        final int[] zLoads = {0};
+        final List<Map<SimpleColumnDefinition, Object>> zTable = zAll;
+        QueryResultCache.Loader<List<Map<SimpleColumnDefinition, Object>>> zDatabase = new QueryResultCache.Loader<List<Map<SimpleColumnDefinition, Object>>>() {
+            @Override
+            public List<Map<SimpleColumnDefinition, Object>> load( SimpleFromIdentifier pFromIdentifier, WhereClause pWhereClause ) {
+                zLoads[0]++;
+                return E.filter( pWhereClause, zTable );
+            }
+        };
+        WhereClause zDateRange = F.isBetween( TheWhen, new Date( 1000 ), new Date( 5000 ) );
+        assertEquals( 41, zCache.get( zOrders, zDateRange, zDatabase ).size() );
+        WhereClause zNarrower = F.and( F.isEqual( TheCode, "open" ), F.isBetween( TheWhen, new Date( 2000 ), new Date( 5000 ) ) );
+        assertEquals( E.filter( zNarrower, zAll ), zCache.get( zOrders, zNarrower, zDatabase ) );
+        assertEquals( E.filter( zNarrower, zAll ), zCache.get( zOrders, zNarrower ) );
+        assertNull( zCache.get( zOrders, F.and( F.isEqual( TheCode, "open" ), F.isLessThan( TheWhen, new Date( 2000 ) ) ) ) );
+        assertEquals( 1, zLoads[0] );
+        assertEquals( 0, zCache.getExactHits() );
+        assertEquals( 2, zCache.getContainedHits() );
+        assertEquals( 2, zCache.getMisses() );
+
+        assertEquals( 41, zCache.get( zOrders, zDateRange ).size() );
+        assertEquals( 1, zCache.getExactHits() );
+        QueryResultCache<List<Map<SimpleColumnDefinition, Object>>> zRows = zCache.getCache(); // each query counted once
+        assertEquals( 3, zRows.getHits() );
+        assertEquals( 2, zRows.getMisses() );
+        assertEquals( 0.6, zRows.getHitRate(), 1e-9 );
+
+        assertEquals( 1, zCache.tableChanged( zOrders ) );
+        assertNull( zCache.get( zOrders, zNarrower ) );
+        assertEquals( 3, zRows.getHits() );
+        assertEquals( 3, zRows.getMisses() );
+
+        assertEquals( 41, zCache.get( zOrders, zDateRange, zDatabase ).size() );
+        WhereClause zSubSelect = F.isIn( TheInt, new SingleColumnSelect( TheInt, new QueryResultCacheTest.WCtableID( "Customers" ), F.isEqual( TheCode, "x" ) ) );
+        assertNull( zCache.get( zOrders, F.and( zDateRange, zSubSelect ) ) ); // its table is NOT in memory
+        assertEquals( 5, zCache.getMisses() );
+    }
+}
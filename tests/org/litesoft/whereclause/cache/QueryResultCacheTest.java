@@ -0,0 +1,166 @@
+// This Source Code is in the Public Domain per: http://unlicense.org
+package org.litesoft.whereclause.cache;
+
+import org.litesoft.whereclause.SimpleFromIdentifier;
+import org.litesoft.whereclause.SingleColumnSelect;
+import org.litesoft.whereclause.WhereClause;
+import org.litesoft.whereclause.WhereClauseFactory;
+import org.litesoft.whereclause.nonpublic.AbstractColumnDefinition;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.util.Date;
+
+public class QueryResultCacheTest extends TestCase {
+    public static Test suite() {
+        return new TestSuite( QueryResultCacheTest.class );
+    }
+
+    public QueryResultCacheTest( String name ) {
+        super( name );
+    }
+
+    public static void main( String[] args ) {
+        junit.textui.TestRunner.run( suite() );
+    }
+
+    static class TestingColumnDefinition extends AbstractColumnDefinition {
+        TestingColumnDefinition( String pName, Class pColumnType ) {
+            super( pName + "Attr", pName + "Col", pColumnType );
+        }
+    }
+
+    static class WCtableID implements SimpleFromIdentifier {
+        private final String mTableName;
+
+        WCtableID( String pTableName ) {
+            mTableName = pTableName;
+        }
+
+        @Override
+        public String getTableName() {
+            return mTableName;
+        }
+
+        @Override
+        public String getIdentifierName() {
+            return "z" + mTableName;
+        }
+    }
+
+    private WhereClauseFactory F = WhereClauseFactory.INSTANCE;
+
+    private TestingColumnDefinition TheInt = new TestingColumnDefinition( "Int", Integer.class );
+    private TestingColumnDefinition TheStr = new TestingColumnDefinition( "Str", String.class );
+    private TestingColumnDefinition TheWhen = new TestingColumnDefinition( "When", Date.class );
+
+    private WCtableID Orders = new WCtableID( "Orders" );
+    private WCtableID Customers = new WCtableID( "Customers" );
+
+    public void test_keys() {
+        QueryResultCache<String> zCache = new QueryResultCache<>( 10 );
+        zCache.put( Orders, F.and( F.isEqual( TheInt, 3 ), F.isAnyOf( TheStr, "b", "a" ) ), "r1" );
+        assertEquals( "r1", zCache.get( Orders, F.and( F.isAnyOf( TheStr, "a", "b" ), F.isEqual( TheInt, 3L ) ) ) ); // normalized
+        assertNull( zCache.get( Customers, F.and( F.isEqual( TheInt, 3 ), F.isAnyOf( TheStr, "a", "b" ) ) ) );
+        assertNull( zCache.get( Orders, F.and( F.isEqual( TheInt, "3" ), F.isAnyOf( TheStr, "a", "b" ) ) ) );
+        assertNull( zCache.get( Orders, F.and( F.isNotEqual( TheInt, 3 ), F.isAnyOf( TheStr, "a", "b" ) ) ) );
+
+        zCache.put( Orders, F.isEqual( TheWhen, new Date( 1000 ) ), "r2" ); // same SQL, different keys
+        assertNull( zCache.get( Orders, F.isEqual( TheWhen, new Date( 1001 ) ) ) );
+        assertEquals( "r2", zCache.get( Orders, F.isEqual( TheWhen, new Date( 1000 ) ) ) );
+
+        assertEquals( 2, zCache.getHits() );
+        assertEquals( 4, zCache.getMisses() );
+        assertEquals( 0, zCache.getEvictions() );
+    }
+
+    public void test_invalidation() {
+        QueryResultCache<String> zCache = new QueryResultCache<>( 10 );
+        WhereClause zInt = F.isGreaterThan( TheInt, 5 );
+        WhereClause zStr = F.startsWith( TheStr, "x" );
+        WhereClause zSubSelect = F.isIn( TheInt, new SingleColumnSelect( TheInt, Customers, F.isEqual( TheWhen, new Date( 0 ) ) ) );
+        zCache.put( Orders, zInt, "int" );
+        zCache.put( Orders, zStr, "str" );
+        zCache.put( Orders, zSubSelect, "subSelect" );
+        zCache.put( Customers, zStr, "customers" );
+
+        assertEquals( 2, zCache.columnsChanged( TheInt ) ); // "int" and "subSelect"
+        assertNull( zCache.get( Orders, zInt ) );
+        assertEquals( "str", zCache.get( Orders, zStr ) );
+        assertEquals( 0, zCache.columnsChanged( TheWhen ) );
+
+        zCache.put( Orders, zSubSelect, "subSelect" );
+        assertEquals( 2, zCache.tableChanged( Customers ) ); // "subSelect" and "customers"
+        assertEquals( "str", zCache.get( Orders, zStr ) );
+        assertEquals( 1, zCache.tableChanged( "Orders" ) );
+        assertEquals( 0, zCache.size() );
+        assertEquals( 5, zCache.getInvalidations() );
+    }
+
+    public void test_loader() {
+        final QueryResultCache<String> zCache = new QueryResultCache<>( 10 );
+        final int[] zLoads = {0};
+        QueryResultCache.Loader<String> zLoader = new QueryResultCache.Loader<String>() {
+            @Override
+            public String load( SimpleFromIdentifier pFromIdentifier, WhereClause pWhereClause ) {
+                zLoads[0]++;
+                return pFromIdentifier.getTableName() + ": " + pWhereClause;
+            }
+        };
+        WhereClause zWhereClause = F.isEqual( TheInt, 1 );
+        assertEquals( zCache.get( Orders, zWhereClause, zLoader ), zCache.get( Orders, zWhereClause, zLoader ) );
+        assertEquals( 1, zLoads[0] );
+
+        QueryResultCache.Loader<String> zChanging = new QueryResultCache.Loader<String>() {
+            @Override
+            public String load( SimpleFromIdentifier pFromIdentifier, WhereClause pWhereClause ) {
+                zCache.columnsChanged( TheStr ); // while loading, so possibly stale
+                return "stale";
+            }
+        };
+        assertEquals( "stale", zCache.get( Orders, F.isEqual( TheInt, 2 ), zChanging ) );
+        assertNull( zCache.get( Orders, F.isEqual( TheInt, 2 ) ) );
+    }
+
+    public void test_admission() {
+        QueryResultCache<Integer> zCache = new QueryResultCache<>( 100 );
+        for ( int zRound = 0; zRound < 5; zRound++ ) { // a working set queried often
+            for ( int i = 0; i < 80; i++ ) {
+                WhereClause zWhereClause = F.isEqual( TheInt, i );
+                if ( zCache.get( Orders, zWhereClause ) == null ) {
+                    zCache.put( Orders, zWhereClause, i );
+                }
+            }
+        }
+        for ( int i = 1000; i < 3000; i++ ) { // a scan of one off queries
+            WhereClause zWhereClause = F.isEqual( TheInt, i );
+            if ( zCache.get( Orders, zWhereClause ) == null ) {
+                zCache.put( Orders, zWhereClause, i );
+            }
+        }
+        assertEquals( 100, zCache.size() );
+        long zHits = zCache.getHits();
+        for ( int i = 0; i < 80; i++ ) {
+            zCache.get( Orders, F.isEqual( TheInt, i ) );
+        }
+        assertTrue( zCache.toString(), zCache.getHits() - zHits >= 78 ); // the scan did NOT flush the working set
+        assertEquals( 80 + 2000 - 100, zCache.getEvictions() );
+    }
+
+    public void test_loopLargerThanTheCache() { // where an LRU never hits
+        QueryResultCache<Integer> zCache = new QueryResultCache<>( 100 );
+        long zHits = 0;
+        for ( int zRound = 0; zRound < 10; zRound++ ) {
+            zHits = zCache.getHits();
+            for ( int i = 0; i < 150; i++ ) {
+                WhereClause zWhereClause = F.isEqual( TheInt, i );
+                if ( zCache.get( Orders, zWhereClause ) == null ) {
+                    zCache.put( Orders, zWhereClause, i );
+                }
+            }
+        }
+        assertTrue( zCache.toString(), zCache.getHits() - zHits >= 75 ); // of the last round's 150
+    }
+}
@@ -0,0 +1,87 @@
+// This Source Code is in the Public Domain per: http://unlicense.org
+package org.litesoft.whereclause.columnar;
+
+import org.litesoft.whereclause.WhereClause;
+import org.litesoft.whereclause.WhereClauseFactory;
+import org.litesoft.whereclause.nonpublic.AbstractColumnDefinition;
+
+import java.util.Random;
+
+/**
+ * Measures the <b>ColumnarEvaluator</b>'s scan rate (rows per second) over (by default)
+ * 200,000,000 rows.<p>
+ * <p/>
+ * Not a unit test (run main, optionally with the number of rows); a batch of 1M rows is
+ * scanned repeatedly, after a warm up.<p>
+ */
+public class ColumnarBenchmark {
+    static class BenchmarkColumnDefinition extends AbstractColumnDefinition {
+        BenchmarkColumnDefinition( String pName, Class pColumnType ) {
+            super( pName + "Attr", pName + "Col", pColumnType );
+        }
+    }
+
+    static final BenchmarkColumnDefinition AGE = new BenchmarkColumnDefinition( "Age", Integer.class );
+    static final BenchmarkColumnDefinition BALANCE = new BenchmarkColumnDefinition( "Balance", Long.class );
+    static final BenchmarkColumnDefinition SCORE = new BenchmarkColumnDefinition( "Score", Double.class );
+    static final BenchmarkColumnDefinition STATE = new BenchmarkColumnDefinition( "State", String.class );
+
+    private static final int BATCH_SIZE = 1 << 20;
+
+    public static void main( String[] args ) {
+        long zRows = (args.length == 0) ? 200000000L : Long.parseLong( args[0] );
+        int zScans = (int) Math.max( 1, zRows / BATCH_SIZE );
+
+        ColumnarBatch zBatch = createBatch( new Random( 1 ) );
+        WhereClauseFactory zFactory = WhereClauseFactory.INSTANCE;
+        WhereClause[] zWhereClauses = { //
+                zFactory.isBetween( AGE, 30, 40 ), //
+                zFactory.and( zFactory.isGreaterThanEqual( AGE, 21 ), zFactory.isLessThan( BALANCE, 500000L ), zFactory.isGreaterThan( SCORE, 50.0 ) ), //
+                zFactory.or( zFactory.isNotEqual( AGE, 30 ), zFactory.isAnyOf( BALANCE, 1L, 10L, 100L, 1000L, 10000L ) ), //
+                zFactory.and( zFactory.isAnyOf( STATE, "CA", "NY", "TX" ), zFactory.not( zFactory.isNull( AGE ) ) ), //
+        };
+        ColumnarEvaluator zEvaluator = new ColumnarEvaluator();
+        for ( WhereClause zWhereClause : zWhereClauses ) {
+            ColumnarFilter zFilter = zEvaluator.compile( zWhereClause );
+            long[] zTrue = Bitmaps.create( BATCH_SIZE );
+            long[] zUnknown = Bitmaps.create( BATCH_SIZE );
+            for ( int i = 0; i < Math.max( 10, zScans / 4 ); i++ ) { // Warm up
+                zFilter.evaluate( zBatch, zTrue, zUnknown );
+            }
+            long zSelected = 0;
+            long zStart = System.nanoTime();
+            for ( int i = 0; i < zScans; i++ ) {
+                zFilter.evaluate( zBatch, zTrue, zUnknown );
+                zSelected += Bitmaps.cardinality( zTrue );
+            }
+            long zNanos = System.nanoTime() - zStart;
+            long zScanned = (long) zScans * BATCH_SIZE;
+            System.out.printf( "%-90s %8.1f ms %8.1f M rows/s  (selected %d)%n", zWhereClause.toSQL(), //
+                               zNanos / 1e6, zScanned * 1e3 / zNanos, zSelected );
+        }
+    }
+
+    static ColumnarBatch createBatch( Random pRandom ) {
+        int[] zAges = new int[BATCH_SIZE];
+        long[] zAgeNulls = Bitmaps.create( BATCH_SIZE );
+        long[] zBalances = new long[BATCH_SIZE];
+        double[] zScores = new double[BATCH_SIZE];
+        int[] zStateCodes = new int[BATCH_SIZE];
+        String[] zStates = {"AK", "AZ", "CA", "CO", "FL", "NY", "OR", "TX", "WA"};
+        for ( int i = 0; i < BATCH_SIZE; i++ ) {
+            if ( pRandom.nextInt( 20 ) == 0 ) {
+                Bitmaps.set( zAgeNulls, i );
+            } else {
+                zAges[i] = 18 + pRandom.nextInt( 60 );
+            }
+            zBalances[i] = pRandom.nextInt( 1000000 );
+            zScores[i] = pRandom.nextDouble() * 100;
+            zStateCodes[i] = pRandom.nextInt( zStates.length );
+        }
+        return new ColumnarBatch( BATCH_SIZE ) //
+                .add( AGE, new IntColumnVector( zAges, zAgeNulls ) ) //
+                .add( BALANCE, new LongColumnVector( zBalances, null ) ) //
+                .add( SCORE, new DoubleColumnVector( zScores, null ) ) //
+                .add( STATE, new DictionaryColumnVector( zStateCodes, zStates, null ) );
+    }
+}
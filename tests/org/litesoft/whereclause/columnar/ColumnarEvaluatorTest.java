@@ -0,0 +1,208 @@
+// This Source Code is in the Public Domain per: http://unlicense.org
+package org.litesoft.whereclause.columnar;
+
+import org.litesoft.whereclause.SimpleColumnDefinition;
+import org.litesoft.whereclause.WhereClause;
+import org.litesoft.whereclause.WhereClauseFactory;
+import org.litesoft.whereclause.evaluation.MapColumnAccessor;
+import org.litesoft.whereclause.evaluation.TriState;
+import org.litesoft.whereclause.evaluation.WhereClauseEvaluator;
+import org.litesoft.whereclause.nonpublic.AbstractColumnDefinition;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+public class ColumnarEvaluatorTest extends TestCase {
+    public static Test suite() {
+        return new TestSuite( ColumnarEvaluatorTest.class );
+    }
+
+    public ColumnarEvaluatorTest( String name ) {
+        super( name );
+    }
+
+    public static void main( String[] args ) {
+        junit.textui.TestRunner.run( suite() );
+    }
+
+    static class TestingColumnDefinition extends AbstractColumnDefinition {
+        TestingColumnDefinition( String pName, Class pColumnType ) {
+            super( pName + "Attr", pName + "Col", pColumnType );
+        }
+    }
+
+    private static final long BIG = (1L << 53) + 1; // NOT exactly a double
+
+    private WhereClauseFactory F = WhereClauseFactory.INSTANCE;
+    private WhereClauseEvaluator<Map<SimpleColumnDefinition, Object>> E = new WhereClauseEvaluator<>( MapColumnAccessor.INSTANCE );
+    private ColumnarEvaluator C = new ColumnarEvaluator();
+
+    private TestingColumnDefinition TheInt = new TestingColumnDefinition( "Int", Integer.class );
+    private TestingColumnDefinition TheLong = new TestingColumnDefinition( "Long", Long.class );
+    private TestingColumnDefinition TheDbl = new TestingColumnDefinition( "Dbl", Double.class );
+    private TestingColumnDefinition TheCode = new TestingColumnDefinition( "Code", String.class );
+    private TestingColumnDefinition TheName = new TestingColumnDefinition( "Name", String.class );
+
+    private int[] mInts = {-1, 0, 1, 2, 3, Integer.MIN_VALUE, Integer.MAX_VALUE};
+    private long[] mLongs = {-1L, 0L, 2L, 3L, BIG, BIG - 1, Long.MIN_VALUE, Long.MAX_VALUE};
+    private double[] mDbls = {-0.0, 0.0, 1.0, 2.0, 2.5, (double) BIG, Double.NaN, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY};
+    private Object[] mDictionary = {"a", "ab", null, "B", "abc"}; // a NULL code
+    private Object[] mNames = {null, "", "a", "ab", "Ab", "b%c", "ba"};
+
+    private Object[] mNumbers = {0, 1, 2, 3, -1, 2L, 2.5, -0.0, BIG, (double) BIG, Long.MAX_VALUE, Long.MIN_VALUE, Integer.MAX_VALUE, Double.NaN, //
+                                 Double.POSITIVE_INFINITY, "2"};
+    private Object[] mStrings = {"a", "ab", "B", "abc", "", "b%c", "zz"};
+
+    private static class Batch {
+        private final ColumnarBatch mBatch;
+        private final List<Map<SimpleColumnDefinition, Object>> mRows = new ArrayList<>();
+
+        Batch( ColumnarBatch pBatch, SimpleColumnDefinition... pColumns ) {
+            mBatch = pBatch;
+            for ( int i = 0; i < pBatch.size(); i++ ) {
+                Map<SimpleColumnDefinition, Object> zRow = new HashMap<>();
+                for ( SimpleColumnDefinition zColumn : pColumns ) {
+                    zRow.put( zColumn, pBatch.getColumn( zColumn ).getValue( i ) );
+                }
+                mRows.add( zRow );
+            }
+        }
+    }
+
+    private long[] nulls( Random pRandom, int pSize ) {
+        if ( pRandom.nextInt( 4 ) == 0 ) {
+            return null; // NO NULLs
+        }
+        long[] zNulls = Bitmaps.create( pSize );
+        for ( int i = 0; i < pSize; i++ ) {
+            if ( pRandom.nextInt( 8 ) == 0 ) {
+                Bitmaps.set( zNulls, i );
+            }
+        }
+        return zNulls;
+    }
+
+    /**
+     * A batch with each kind of vector (and NULLs bitmaps), whose NULL rows hold garbage primitives.
+     */
+    private Batch batch( Random pRandom, int pSize ) {
+        int[] zInts = new int[pSize];
+        long[] zLongs = new long[pSize];
+        double[] zDbls = new double[pSize];
+        int[] zCodes = new int[pSize];
+        Object[] zNames = new Object[pSize];
+        for ( int i = 0; i < pSize; i++ ) {
+            zInts[i] = mInts[pRandom.nextInt( mInts.length )];
+            zLongs[i] = mLongs[pRandom.nextInt( mLongs.length )];
+            zDbls[i] = mDbls[pRandom.nextInt( mDbls.length )];
+            zCodes[i] = pRandom.nextInt( mDictionary.length );
+            zNames[i] = mNames[pRandom.nextInt( mNames.length )];
+        }
+        ColumnarBatch zBatch = new ColumnarBatch( pSize ) //
+                .add( TheInt, new IntColumnVector( zInts, nulls( pRandom, pSize ) ) ) //
+                .add( TheLong, new LongColumnVector( zLongs, nulls( pRandom, pSize ) ) ) //
+                .add( TheDbl, new DoubleColumnVector( zDbls, nulls( pRandom, pSize ) ) ) //
+                .add( TheCode, new DictionaryColumnVector( zCodes, mDictionary, nulls( pRandom, pSize ) ) ) //
+                .add( TheName, new ObjectColumnVector( zNames ) );
+        return new Batch( zBatch, TheInt, TheLong, TheDbl, TheCode, TheName );
+    }
+
+    private Object pick( Random pRandom, Object... pValues ) {
+        return pValues[pRandom.nextInt( pValues.length )];
+    }
+
+    private WhereClause whereClause( Random pRandom, int pDepth ) {
+        SimpleColumnDefinition zNumber = (SimpleColumnDefinition) pick( pRandom, TheInt, TheLong, TheDbl );
+        SimpleColumnDefinition zString = (SimpleColumnDefinition) pick( pRandom, TheCode, TheName );
+        Object zValue = pick( pRandom, mNumbers );
+        switch ( pRandom.nextInt( (pDepth == 0) ? 10 : 13 ) ) {
+            case 0:
+                return pRandom.nextBoolean() ? F.isEqual( zNumber, zValue ) : F.isNotEqual( zNumber, zValue );
+            case 1:
+                return pRandom.nextBoolean() ? F.isLessThan( zNumber, zValue ) : F.isNotGreaterThan( zNumber, zValue );
+            case 2:
+                return pRandom.nextBoolean() ? F.isGreaterThan( zNumber, zValue ) : F.isNotLessThan( zNumber, zValue );
+            case 3:
+                Object zHigh = pick( pRandom, mNumbers );
+                return pRandom.nextBoolean() ? F.isBetween( zNumber, zValue, zHigh ) : F.isNotBetween( zNumber, zValue, zHigh );
+            case 4:
+                return pRandom.nextBoolean() ? F.isAnyOf( zNumber, zValue, pick( pRandom, mNumbers ), pick( pRandom, mNumbers ) ) : //
+                       F.isNotAnyOf( zNumber, zValue, pick( pRandom, mNumbers ) );
+            case 5:
+                SimpleColumnDefinition zAny = (SimpleColumnDefinition) pick( pRandom, TheInt, TheLong, TheDbl, TheCode, TheName );
+                return pRandom.nextBoolean() ? F.isNull( zAny ) : F.isNotNull( zAny );
+            case 6:
+                return pRandom.nextBoolean() ? F.isEqual( zString, pick( pRandom, mStrings ) ) : F.isNotAnyOf( zString, pick( pRandom, mStrings ), pick( pRandom, mStrings ) );
+            case 7:
+                return pRandom.nextBoolean() ? F.startsWith( zString, (String) pick( pRandom, "a", "b", "" ) ) : F.like( zString, "a", (String) pick( pRandom, "b", "c" ), "" );
+            case 8:
+                return pRandom.nextBoolean() ? F.isLessThan( zString, pick( pRandom, mStrings ) ) : F.isNotBetween( zString, "a", pick( pRandom, "ab", "b" ) );
+            case 9:
+                return pRandom.nextBoolean() ? F.alwaysTrue() : F.alwaysFalse();
+            case 10:
+                return F.not( whereClause( pRandom, pDepth - 1 ) );
+            case 11:
+                return F.and( whereClause( pRandom, pDepth - 1 ), whereClause( pRandom, pDepth - 1 ), whereClause( pRandom, pDepth - 1 ) );
+            default:
+                return F.or( whereClause( pRandom, pDepth - 1 ), whereClause( pRandom, pDepth - 1 ), whereClause( pRandom, pDepth - 1 ) );
+        }
+    }
+
+    private void check( WhereClause pWhereClause, Batch pBatch ) {
+        int zSize = pBatch.mBatch.size();
+        int zWords = Bitmaps.wordsFor( zSize );
+        ColumnarFilter zFilter = C.compile( pWhereClause );
+        long[] zSelected = C.select( pWhereClause, pBatch.mBatch );
+        long[] zTrue = new long[zWords + 1];
+        long[] zUnknown = new long[zWords + 1];
+        Arrays.fill( zTrue, -1L ); // all overwritten
+        Arrays.fill( zUnknown, -1L );
+        zFilter.evaluate( pBatch.mBatch, zTrue, zUnknown );
+        for ( int i = 0; i < zSize; i++ ) {
+            Map<SimpleColumnDefinition, Object> zRow = pBatch.mRows.get( i );
+            TriState zExpected = E.evaluate( pWhereClause, zRow );
+            String zWhat = pWhereClause.toSQL() + " row " + i + " of " + zSize + ": " + zRow;
+            assertEquals( zWhat, zExpected.isTrue(), Bitmaps.get( zSelected, i ) );
+            assertEquals( zWhat, zExpected == TriState.TRUE, Bitmaps.get( zTrue, i ) );
+            assertEquals( zWhat, zExpected == TriState.UNKNOWN, Bitmaps.get( zUnknown, i ) );
+        }
+        for ( int zWord = 0; zWord < zWords; zWord++ ) { // nothing past the last row
+            long zInvalid = ~Bitmaps.validMask( zSize, zWord * 64 );
+            String zWhat = pWhereClause.toSQL() + " word " + zWord + " of " + zSize + " rows";
+            assertEquals( zWhat, 0L, zSelected[zWord] & zInvalid );
+            assertEquals( zWhat, 0L, zTrue[zWord] & zInvalid );
+            assertEquals( zWhat, 0L, zUnknown[zWord] & zInvalid );
+        }
+        assertEquals( -1L, zTrue[zWords] ); // and nothing past the batch's words
+        assertEquals( -1L, zUnknown[zWords] );
+    }
+
+    public void test_againstEvaluator() {
+        Random zRandom = new Random( 34 );
+        for ( int zSize : new int[]{0, 1, 63, 64, 65, 130, 1000} ) {
+            Batch zBatch = batch( zRandom, zSize );
+            for ( int i = 0; i < 400; i++ ) {
+                check( whereClause( zRandom, 1 + (i % 3) ), zBatch );
+            }
+        }
+    }
+
+    public void test_NOT_UNKNOWN() { // NOT of UNKNOWN is UNKNOWN, and UNKNOWN AND FALSE is FALSE, UNKNOWN OR TRUE is TRUE
+        Random zRandom = new Random( 340 );
+        Batch zBatch = batch( zRandom, 100 );
+        check( F.not( F.isEqual( TheInt, 1 ) ), zBatch );
+        check( F.not( F.and( F.isLessThan( TheDbl, 2 ), F.isNotNull( TheLong ) ) ), zBatch );
+        check( F.not( F.or( F.isEqual( TheCode, "ab" ), F.isGreaterThan( TheLong, 0 ) ) ), zBatch );
+        check( F.and( F.isEqual( TheCode, "B" ), F.alwaysFalse() ), zBatch );
+        check( F.or( F.isEqual( TheName, "a" ), F.alwaysTrue() ), zBatch );
+        check( F.not( F.not( F.isGreaterThan( TheDbl, Double.NaN ) ) ), zBatch );
+    }
+}
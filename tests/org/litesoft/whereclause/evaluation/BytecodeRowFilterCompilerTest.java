@@ -0,0 +1,164 @@
+// This Source Code is in the Public Domain per: http://unlicense.org
+package org.litesoft.whereclause.evaluation;
+
+import org.litesoft.whereclause.SimpleColumnDefinition;
+import org.litesoft.whereclause.WhereClause;
+import org.litesoft.whereclause.WhereClauseFactory;
+import org.litesoft.whereclause.nonpublic.AbstractColumnDefinition;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+public class BytecodeRowFilterCompilerTest extends TestCase {
+    public static Test suite() {
+        return new TestSuite( BytecodeRowFilterCompilerTest.class );
+    }
+
+    public BytecodeRowFilterCompilerTest( String name ) {
+        super( name );
+    }
+
+    public static void main( String[] args ) {
+        junit.textui.TestRunner.run( suite() );
+    }
+
+    static class TestingColumnDefinition extends AbstractColumnDefinition {
+        TestingColumnDefinition( String pName, Class pColumnType ) {
+            super( pName + "Attr", pName + "Col", pColumnType );
+        }
+    }
+
+    private static final long BIG = (1L << 53) + 1; // NOT exactly a double
+
+    private WhereClauseFactory F = WhereClauseFactory.INSTANCE;
+    private WhereClauseEvaluator<Map<SimpleColumnDefinition, Object>> E = new WhereClauseEvaluator<>( MapColumnAccessor.INSTANCE );
+
+    private TestingColumnDefinition TheInt = new TestingColumnDefinition( "Int", Integer.class );
+    private TestingColumnDefinition TheLong = new TestingColumnDefinition( "Long", Long.class );
+    private TestingColumnDefinition TheDbl = new TestingColumnDefinition( "Dbl", Double.class );
+    private TestingColumnDefinition TheStr = new TestingColumnDefinition( "Str", String.class );
+
+    private Object[] mInts = {null, -1, 0, 1, 2, 3, Integer.MIN_VALUE, Integer.MAX_VALUE, 2L /* not an Integer */};
+    private Object[] mLongs = {null, -1L, 0L, 2L, 3L, BIG, BIG - 1, Long.MIN_VALUE, Long.MAX_VALUE};
+    private Object[] mDbls = {null, -0.0, 0.0, 1.0, 2.0, 2.5, (double) BIG, Double.NaN, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, 9.2233720368547758E18};
+    private Object[] mStrs = {null, "", "a", "ab", "b"};
+
+    private Object[] mConstants = {0, 1, 2, 3, -1, 2L, 2.5, -0.0, 0.0, BIG, (double) BIG, Long.MAX_VALUE, Long.MIN_VALUE, Integer.MAX_VALUE, Double.NaN, //
+                                   Double.POSITIVE_INFINITY, 9.2233720368547758E18};
+
+    private Object pick( Random pRandom, Object... pValues ) {
+        return pValues[pRandom.nextInt( pValues.length )];
+    }
+
+    private Map<SimpleColumnDefinition, Object> row( Random pRandom ) {
+        Map<SimpleColumnDefinition, Object> zRow = new HashMap<>();
+        zRow.put( TheInt, pick( pRandom, mInts ) );
+        zRow.put( TheLong, pick( pRandom, mLongs ) );
+        zRow.put( TheDbl, pick( pRandom, mDbls ) );
+        zRow.put( TheStr, pick( pRandom, mStrs ) );
+        return zRow;
+    }
+
+    private WhereClause whereClause( Random pRandom, int pDepth ) {
+        SimpleColumnDefinition zColumn = (SimpleColumnDefinition) pick( pRandom, TheInt, TheLong, TheDbl );
+        Object zValue = pick( pRandom, mConstants );
+        switch ( pRandom.nextInt( (pDepth == 0) ? 9 : 13 ) ) {
+            case 0:
+                return pRandom.nextBoolean() ? F.isEqual( zColumn, zValue ) : F.isNotEqual( zColumn, zValue );
+            case 1:
+                return pRandom.nextBoolean() ? F.isLessThan( zColumn, zValue ) : F.isNotLessThan( zColumn, zValue );
+            case 2:
+                return pRandom.nextBoolean() ? F.isGreaterThan( zColumn, zValue ) : F.isNotGreaterThan( zColumn, zValue );
+            case 3:
+                return pRandom.nextBoolean() ? F.isLessThanEqual( zColumn, zValue ) : F.isGreaterThanEqual( zColumn, zValue );
+            case 4:
+                Object zHigh = pick( pRandom, mConstants );
+                return pRandom.nextBoolean() ? F.isBetween( zColumn, zValue, zHigh ) : F.isNotBetween( zColumn, zValue, zHigh );
+            case 5:
+                SimpleColumnDefinition zAny = (SimpleColumnDefinition) pick( pRandom, TheInt, TheLong, TheDbl, TheStr );
+                return pRandom.nextBoolean() ? F.isNull( zAny ) : F.isNotNull( zAny );
+            case 6: // interpreted leaves
+                return pRandom.nextBoolean() ? F.startsWith( TheStr, (String) pick( pRandom, "a", "b" ) ) : F.isAnyOf( zColumn, zValue, pick( pRandom, mConstants ) );
+            case 7:
+                return pRandom.nextBoolean() ? F.isEqual( zColumn, pick( pRandom, 1, 2, 3 ) ) : F.isBetween( zColumn, pick( pRandom, 0, 1, 2 ), pick( pRandom, 2, 3, BIG ) );
+            case 8:
+                return pRandom.nextBoolean() ? F.alwaysTrue() : F.alwaysFalse();
+            case 9:
+                return F.not( whereClause( pRandom, pDepth - 1 ) );
+            case 10:
+                return F.and( whereClause( pRandom, pDepth - 1 ), whereClause( pRandom, pDepth - 1 ) );
+            case 11:
+                return F.or( whereClause( pRandom, pDepth - 1 ), whereClause( pRandom, pDepth - 1 ) );
+            default:
+                return (pRandom.nextBoolean() ? F.and( whereClause( pRandom, pDepth - 1 ), whereClause( pRandom, pDepth - 1 ), whereClause( pRandom, pDepth - 1 ) ) : //
+                        F.or( whereClause( pRandom, pDepth - 1 ), whereClause( pRandom, pDepth - 1 ), whereClause( pRandom, pDepth - 1 ) ));
+        }
+    }
+
+    private void check( RowFilter<Map<SimpleColumnDefinition, Object>> pFilter, WhereClause pWhereClause, List<Map<SimpleColumnDefinition, Object>> pRows ) {
+        for ( Map<SimpleColumnDefinition, Object> zRow : pRows ) {
+            TriState zExpected = E.evaluate( pWhereClause, zRow );
+            String zWhat = pWhereClause.toSQL() + " for: " + zRow;
+            assertEquals( zWhat, zExpected, pFilter.evaluate( zRow ) );
+            assertEquals( zWhat, zExpected.isTrue(), pFilter.test( zRow ) );
+        }
+    }
+
+    public void test_againstEvaluator() {
+        BytecodeRowFilterCompiler<Map<SimpleColumnDefinition, Object>> zCompiler = new BytecodeRowFilterCompiler<>( MapColumnAccessor.INSTANCE );
+        Random zRandom = new Random( 32 );
+        List<Map<SimpleColumnDefinition, Object>> zRows = new ArrayList<>();
+        for ( int i = 0; i < 60; i++ ) {
+            zRows.add( row( zRandom ) );
+        }
+        int zGenerated = 0;
+        for ( int i = 0; i < 3000; i++ ) {
+            WhereClause zWhereClause = whereClause( zRandom, 1 + (i % 4) );
+            RowFilter<Map<SimpleColumnDefinition, Object>> zFilter = zCompiler.compile( zWhereClause );
+            if ( zFilter instanceof GeneratedRowFilter ) {
+                zGenerated++;
+            }
+            check( zFilter, zWhereClause, zRows );
+        }
+        assertEquals( 3000, zGenerated );
+        assertTrue( "" + zCompiler.getCachedShapeCount(), zCompiler.getCachedShapeCount() < 3000 ); // shapes shared
+    }
+
+    public void test_shapeReuse() {
+        BytecodeRowFilterCompiler<Map<SimpleColumnDefinition, Object>> zCompiler = new BytecodeRowFilterCompiler<>( MapColumnAccessor.INSTANCE );
+        Random zRandom = new Random( 320 );
+        List<Map<SimpleColumnDefinition, Object>> zRows = new ArrayList<>();
+        for ( int i = 0; i < 200; i++ ) {
+            zRows.add( row( zRandom ) );
+        }
+        WhereClause zFirst = F.and( F.isLessThan( TheInt, 3 ), F.or( F.isGreaterThan( TheDbl, 1.5 ), F.isBetween( TheLong, 0L, BIG ) ) );
+        RowFilter<Map<SimpleColumnDefinition, Object>> zFirstFilter = zCompiler.compile( zFirst );
+        assertEquals( 1, zCompiler.getCachedShapeCount() );
+
+        WhereClause zSecond = F.and( F.isLessThan( TheInt, 1 ), F.or( F.isGreaterThan( TheDbl, -0.0 ), F.isBetween( TheLong, -1L, 2L ) ) );
+        RowFilter<Map<SimpleColumnDefinition, Object>> zSecondFilter = zCompiler.compile( zSecond );
+        assertEquals( 1, zCompiler.getCachedShapeCount() ); // only the constants differ
+        assertSame( zFirstFilter.getClass(), zSecondFilter.getClass() );
+        check( zFirstFilter, zFirst, zRows ); // each with its own constants
+        check( zSecondFilter, zSecond, zRows );
+
+        WhereClause zNot = F.and( F.isNotLessThan( TheInt, 1 ), F.or( F.isGreaterThan( TheDbl, -0.0 ), F.isBetween( TheLong, -1L, 2L ) ) );
+        check( zCompiler.compile( zNot ), zNot, zRows );
+        assertEquals( 2, zCompiler.getCachedShapeCount() ); // a different NOT mode
+
+        WhereClause zColumns = F.and( F.isLessThan( TheLong, 1 ), F.or( F.isGreaterThan( TheDbl, -0.0 ), F.isBetween( TheInt, -1L, 2L ) ) );
+        check( zCompiler.compile( zColumns ), zColumns, zRows );
+        assertEquals( 3, zCompiler.getCachedShapeCount() ); // different columns (slots and types)
+
+        WhereClause zNaN = F.and( F.isLessThan( TheInt, 1 ), F.or( F.isGreaterThan( TheDbl, Double.NaN ), F.isBetween( TheLong, -1L, 2L ) ) );
+        check( zCompiler.compile( zNaN ), zNaN, zRows );
+        assertEquals( 4, zCompiler.getCachedShapeCount() ); // the NaN leaf interpreted
+    }
+}
@@ -0,0 +1,146 @@
+// This Source Code is in the Public Domain per: http://unlicense.org
+package org.litesoft.whereclause.evaluation;
+
+import org.litesoft.whereclause.SimpleColumnDefinition;
+import org.litesoft.whereclause.WhereClause;
+import org.litesoft.whereclause.WhereClauseFactory;
+import org.litesoft.whereclause.nonpublic.AbstractColumnDefinition;
+import org.litesoft.whereclause.transform.WhereClauseCanonicalizer;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.lang.invoke.MethodHandle;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+public class MethodHandleRowFilterCompilerTest extends TestCase {
+    public static Test suite() {
+        return new TestSuite( MethodHandleRowFilterCompilerTest.class );
+    }
+
+    public MethodHandleRowFilterCompilerTest( String name ) {
+        super( name );
+    }
+
+    public static void main( String[] args ) {
+        junit.textui.TestRunner.run( suite() );
+    }
+
+    static class TestingColumnDefinition extends AbstractColumnDefinition {
+        TestingColumnDefinition( String pName, boolean pAddSearchColumn, Class pColumnType ) {
+            super( pName + "Attr", pName + "Col", pAddSearchColumn ? pName + "Col_SC" : pName + "Col", pColumnType );
+        }
+    }
+
+    private WhereClauseFactory F = WhereClauseFactory.INSTANCE;
+    private WhereClauseEvaluator<Map<SimpleColumnDefinition, Object>> E = new WhereClauseEvaluator<>( MapColumnAccessor.INSTANCE );
+
+    private TestingColumnDefinition TheInt = new TestingColumnDefinition( "Int", false, Integer.class );
+    private TestingColumnDefinition TheDbl = new TestingColumnDefinition( "Dbl", false, Double.class );
+    private TestingColumnDefinition TheStr = new TestingColumnDefinition( "Str", false, String.class );
+    private TestingColumnDefinition TheStr_SC = new TestingColumnDefinition( "StrSC", true, String.class );
+
+    private Object[] mInts = {null, -1, 0, 1, 2, 3, Integer.MAX_VALUE, 2L /* not an Integer */};
+    private Object[] mDbls = {null, -0.0, 0.0, 1.0, 2.5, Double.NaN, Double.POSITIVE_INFINITY};
+    private Object[] mStrs = {null, "", "a", "ab", "Ab", "abc", "xaby", "b%c", "ba"};
+    private Object[] mNumbers = {0, 1, 2, 3, 2L, 2.5, -0.0, Long.MAX_VALUE, Double.NaN};
+
+    private Object pick( Random pRandom, Object... pValues ) {
+        return pValues[pRandom.nextInt( pValues.length )];
+    }
+
+    private Map<SimpleColumnDefinition, Object> row( Random pRandom ) {
+        Map<SimpleColumnDefinition, Object> zRow = new HashMap<>();
+        zRow.put( TheInt, pick( pRandom, mInts ) );
+        zRow.put( TheDbl, pick( pRandom, mDbls ) );
+        zRow.put( TheStr, pick( pRandom, mStrs ) );
+        zRow.put( TheStr_SC, pick( pRandom, mStrs ) );
+        return zRow;
+    }
+
+    private WhereClause whereClause( Random pRandom, int pDepth ) {
+        SimpleColumnDefinition zNumber = (SimpleColumnDefinition) pick( pRandom, TheInt, TheDbl );
+        SimpleColumnDefinition zString = (SimpleColumnDefinition) pick( pRandom, TheStr, TheStr_SC );
+        Object zValue = pick( pRandom, mNumbers );
+        switch ( pRandom.nextInt( (pDepth == 0) ? 10 : 13 ) ) {
+            case 0:
+                return pRandom.nextBoolean() ? F.isEqual( zNumber, zValue ) : F.isNotEqual( zNumber, zValue );
+            case 1:
+                return pRandom.nextBoolean() ? F.isLessThan( zNumber, zValue ) : F.isNotGreaterThan( zNumber, zValue );
+            case 2:
+                return pRandom.nextBoolean() ? F.isGreaterThan( zNumber, zValue ) : F.isNotLessThan( zNumber, zValue );
+            case 3:
+                Object zHigh = pick( pRandom, mNumbers );
+                return pRandom.nextBoolean() ? F.isBetween( zNumber, zValue, zHigh ) : F.isNotBetween( zNumber, zValue, zHigh );
+            case 4:
+                return pRandom.nextBoolean() ? F.isAnyOf( zNumber, zValue, pick( pRandom, mNumbers ) ) : F.isNotAnyOf( zString, "ab", pick( pRandom, "a", "AB", "" ) );
+            case 5:
+                SimpleColumnDefinition zAny = (SimpleColumnDefinition) pick( pRandom, TheInt, TheDbl, TheStr );
+                return pRandom.nextBoolean() ? F.isNull( zAny ) : F.isNotNull( zAny );
+            case 6:
+                return pRandom.nextBoolean() ? F.startsWith( zString, (String) pick( pRandom, "a", "Ab", "" ) ) : F.doesNotEndWith( zString, (String) pick( pRandom, "b", "c" ) );
+            case 7:
+                return pRandom.nextBoolean() ? F.contains( zString, (String) pick( pRandom, "b", "%", "B" ) ) : F.like( zString, "a", (String) pick( pRandom, "b", "c" ), "" );
+            case 8:
+                return pRandom.nextBoolean() ? F.isEqual( zString, pick( pRandom, "ab", "Ab" ) ) : F.isLessThan( zString, pick( pRandom, "ab", "b" ) );
+            case 9:
+                return pRandom.nextBoolean() ? F.alwaysTrue() : F.alwaysFalse();
+            case 10:
+                return F.not( whereClause( pRandom, pDepth - 1 ) );
+            case 11:
+                return F.and( whereClause( pRandom, pDepth - 1 ), whereClause( pRandom, pDepth - 1 ), whereClause( pRandom, pDepth - 1 ) );
+            default:
+                return F.or( whereClause( pRandom, pDepth - 1 ), whereClause( pRandom, pDepth - 1 ), whereClause( pRandom, pDepth - 1 ) );
+        }
+    }
+
+    private List<Map<SimpleColumnDefinition, Object>> rows( Random pRandom ) {
+        List<Map<SimpleColumnDefinition, Object>> zRows = new ArrayList<>();
+        for ( int i = 0; i < 60; i++ ) {
+            zRows.add( row( pRandom ) );
+        }
+        return zRows;
+    }
+
+    public void test_againstEvaluator() {
+        MethodHandleRowFilterCompiler<Map<SimpleColumnDefinition, Object>> zCompiler = new MethodHandleRowFilterCompiler<>( MapColumnAccessor.INSTANCE );
+        Random zRandom = new Random( 33 );
+        List<Map<SimpleColumnDefinition, Object>> zRows = rows( zRandom );
+        for ( int i = 0; i < 2000; i++ ) {
+            WhereClause zWhereClause = whereClause( zRandom, 1 + (i % 3) );
+            RowFilter<Map<SimpleColumnDefinition, Object>> zFilter = zCompiler.compile( zWhereClause );
+            for ( Map<SimpleColumnDefinition, Object> zRow : zRows ) {
+                TriState zExpected = E.evaluate( zWhereClause, zRow );
+                String zWhat = zWhereClause.toSQL() + " for: " + zRow;
+                assertEquals( zWhat, zExpected, zFilter.evaluate( zRow ) );
+                assertEquals( zWhat, zExpected.isTrue(), zFilter.test( zRow ) );
+            }
+        }
+    }
+
+    public void test_compileHandle()
+            throws Throwable {
+        MethodHandleRowFilterCompiler<Map<SimpleColumnDefinition, Object>> zCompiler = new MethodHandleRowFilterCompiler<>( MapColumnAccessor.INSTANCE );
+        MethodHandleRowFilterCompiler<Map<SimpleColumnDefinition, Object>> zCanonicalizing = //
+                new MethodHandleRowFilterCompiler<>( MapColumnAccessor.INSTANCE, WhereClauseCanonicalizer.INSTANCE );
+        Random zRandom = new Random( 330 );
+        List<Map<SimpleColumnDefinition, Object>> zRows = rows( zRandom );
+        for ( int i = 0; i < 500; i++ ) {
+            WhereClause zWhereClause = whereClause( zRandom, 1 + (i % 3) );
+            MethodHandle zHandle = zCompiler.compileHandle( zWhereClause );
+            assertEquals( MethodHandleRowFilterCompiler.TEST_TYPE, zHandle.type() );
+            MethodHandle zCanonical = zCanonicalizing.compileHandle( zWhereClause );
+            for ( Map<SimpleColumnDefinition, Object> zRow : zRows ) {
+                boolean zExpected = E.evaluate( zWhereClause, zRow ).isTrue();
+                String zWhat = zWhereClause.toSQL() + " for: " + zRow;
+                assertEquals( zWhat, zExpected, (boolean) zHandle.invokeExact( (Object) zRow ) );
+                assertEquals( zWhat, zExpected, (boolean) zCanonical.invokeExact( (Object) zRow ) );
+            }
+        }
+    }
+}
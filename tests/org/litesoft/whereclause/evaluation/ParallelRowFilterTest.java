@@ -0,0 +1,178 @@
+// This Source Code is in the Public Domain per: http://unlicense.org
+package org.litesoft.whereclause.evaluation;
+
+import org.litesoft.whereclause.SimpleColumnDefinition;
+import org.litesoft.whereclause.WhereClause;
+import org.litesoft.whereclause.WhereClauseFactory;
+import org.litesoft.whereclause.nonpublic.AbstractColumnDefinition;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ForkJoinPool;
+
+public class ParallelRowFilterTest extends TestCase {
+    public static Test suite() {
+        return new TestSuite( ParallelRowFilterTest.class );
+    }
+
+    public ParallelRowFilterTest( String name ) {
+        super( name );
+    }
+
+    public static void main( String[] args ) {
+        junit.textui.TestRunner.run( suite() );
+    }
+
+    static class TestingColumnDefinition extends AbstractColumnDefinition {
+        TestingColumnDefinition( String pName, Class pColumnType ) {
+            super( pName + "Attr", pName + "Col", pColumnType );
+        }
+    }
+
+    private WhereClauseFactory F = WhereClauseFactory.INSTANCE;
+    private WhereClauseEvaluator<Map<SimpleColumnDefinition, Object>> E = new WhereClauseEvaluator<>( MapColumnAccessor.INSTANCE );
+
+    private TestingColumnDefinition TheId = new TestingColumnDefinition( "Id", Integer.class );
+    private TestingColumnDefinition TheInt = new TestingColumnDefinition( "Int", Integer.class );
+    private TestingColumnDefinition TheStr = new TestingColumnDefinition( "Str", String.class );
+
+    private ForkJoinPool mPool;
+
+    @Override
+    protected void setUp()
+            throws Exception {
+        super.setUp();
+        mPool = new ForkJoinPool( 4 );
+    }
+
+    @Override
+    protected void tearDown()
+            throws Exception {
+        mPool.shutdownNow();
+        super.tearDown();
+    }
+
+    private List<Map<SimpleColumnDefinition, Object>> rows( int pCount ) {
+        Random zRandom = new Random( 35 );
+        List<Map<SimpleColumnDefinition, Object>> zRows = new ArrayList<>();
+        for ( int i = 0; i < pCount; i++ ) {
+            Map<SimpleColumnDefinition, Object> zRow = new HashMap<>();
+            zRow.put( TheId, i );
+            zRow.put( TheInt, (zRandom.nextInt( 10 ) == 0) ? null : (Object) zRandom.nextInt( 100 ) );
+            zRow.put( TheStr, (zRandom.nextInt( 10 ) == 0) ? null : "s" + zRandom.nextInt( 20 ) );
+            zRows.add( zRow );
+        }
+        return zRows;
+    }
+
+    private WhereClause[] whereClauses() {
+        return new WhereClause[]{ //
+                                  F.isLessThan( TheInt, 30 ), //
+                                  F.or( F.isGreaterThanEqual( TheInt, 90 ), F.startsWith( TheStr, "s1" ) ), //
+                                  F.and( F.isNotNull( TheInt ), F.isNotEqual( TheStr, "s3" ) ), //
+                                  F.isNull( TheStr ), //
+                                  F.isEqual( TheInt, 1000 ), // none
+                                  F.isNotNull( TheId ), // all
+        };
+    }
+
+    private static List<Integer> ids( List<Map<SimpleColumnDefinition, Object>> pRows, SimpleColumnDefinition pId ) {
+        List<Integer> zIds = new ArrayList<>();
+        for ( Map<SimpleColumnDefinition, Object> zRow : pRows ) {
+            zIds.add( (Integer) zRow.get( pId ) );
+        }
+        return zIds;
+    }
+
+    private List<Integer> sorted( List<Map<SimpleColumnDefinition, Object>> pRows ) {
+        List<Integer> zIds = ids( pRows, TheId );
+        Collections.sort( zIds );
+        return zIds;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public void test_againstSequential() {
+        for ( int zSize : new int[]{0, 1, 63, 1000, 5000} ) {
+            List<Map<SimpleColumnDefinition, Object>> zRows = rows( zSize );
+            Map<SimpleColumnDefinition, Object>[] zArray = zRows.toArray( new Map[zRows.size()] );
+            for ( WhereClause zWhereClause : whereClauses() ) {
+                RowFilter<Map<SimpleColumnDefinition, Object>> zFilter = E.compile( zWhereClause );
+                List<Map<SimpleColumnDefinition, Object>> zExpected = E.filter( zWhereClause, zRows );
+                List<Integer> zExpectedIds = ids( zExpected, TheId );
+                for ( int zMinChunkSize : new int[]{1, 7, ParallelRowFilter.DEFAULT_MIN_CHUNK_SIZE} ) {
+                    String zWhat = zWhereClause.toSQL() + " over " + zSize + " rows by " + zMinChunkSize;
+                    ParallelRowFilter<Map<SimpleColumnDefinition, Object>> zParallel = new ParallelRowFilter<>( zFilter, mPool, zMinChunkSize );
+
+                    assertEquals( zWhat, zExpectedIds, ids( zParallel.filter( zRows, true ), TheId ) );
+                    assertEquals( zWhat, zExpectedIds, sorted( zParallel.filter( zRows, false ) ) );
+                    assertEquals( zWhat, zExpectedIds, ids( zParallel.filter( zArray, true ), TheId ) );
+                    assertEquals( zWhat, zExpectedIds, sorted( zParallel.filter( zArray, false ) ) );
+
+                    LinkedList<Map<SimpleColumnDefinition, Object>> zLinked = new LinkedList<>( zRows ); // NOT RandomAccess
+                    assertEquals( zWhat, zExpectedIds, ids( zParallel.filter( zLinked, true ), TheId ) );
+                    assertEquals( zWhat, zExpectedIds, sorted( zParallel.filter( zLinked, false ) ) );
+
+                    assertEquals( zWhat, zExpectedIds, ids( zParallel.filter( zRows.spliterator(), true ), TheId ) );
+                    assertEquals( zWhat, zExpectedIds, sorted( zParallel.filter( zRows.spliterator(), false ) ) );
+                    assertEquals( zWhat, zExpectedIds, ids( zParallel.filter( unsized( zRows ), true ), TheId ) );
+                    assertEquals( zWhat, zExpectedIds, sorted( zParallel.filter( unsized( zRows ), false ) ) );
+
+                    long zCount = zExpected.size();
+                    assertEquals( zWhat, zCount, zParallel.count( zRows ) );
+                    assertEquals( zWhat, zCount, zParallel.count( zArray ) );
+                    assertEquals( zWhat, zCount, zParallel.count( zLinked ) );
+                    assertEquals( zWhat, zCount, zParallel.count( zRows.spliterator() ) );
+                    assertEquals( zWhat, zCount, zParallel.count( unsized( zRows ) ) );
+                }
+            }
+        }
+    }
+
+    private static Spliterator<Map<SimpleColumnDefinition, Object>> unsized( List<Map<SimpleColumnDefinition, Object>> pRows ) {
+        return Spliterators.spliteratorUnknownSize( pRows.iterator(), Spliterator.ORDERED );
+    }
+
+    public void test_construction() {
+        RowFilter<Map<SimpleColumnDefinition, Object>> zFilter = E.compile( F.isNull( TheInt ) );
+        ParallelRowFilter<Map<SimpleColumnDefinition, Object>> zParallel = new ParallelRowFilter<>( zFilter );
+        assertSame( zFilter, zParallel.getFilter() );
+        assertSame( ForkJoinPool.commonPool(), zParallel.getPool() );
+        assertEquals( ParallelRowFilter.DEFAULT_MIN_CHUNK_SIZE, zParallel.getMinChunkSize() );
+        assertEquals( 1, new ParallelRowFilter<>( zFilter, mPool, 1 ).getMinChunkSize() );
+
+        for ( int zMinChunkSize : new int[]{0, -1} ) {
+            try {
+                new ParallelRowFilter<>( zFilter, mPool, zMinChunkSize );
+                fail( "MinChunkSize " + zMinChunkSize + " accepted" );
+            }
+            catch ( IllegalArgumentException expected ) {
+                // expected
+            }
+        }
+        try {
+            new ParallelRowFilter<>( null, mPool );
+            fail( "null Filter accepted" );
+        }
+        catch ( IllegalArgumentException expected ) {
+            // expected
+        }
+        try {
+            new ParallelRowFilter<>( zFilter, null );
+            fail( "null Pool accepted" );
+        }
+        catch ( IllegalArgumentException expected ) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,213 @@
+// This Source Code is in the Public Domain per: http://unlicense.org
+package org.litesoft.whereclause.evaluation;
+
+import org.litesoft.whereclause.SimpleColumnDefinition;
+import org.litesoft.whereclause.WhereClause;
+import org.litesoft.whereclause.WhereClauseFactory;
+import org.litesoft.whereclause.nonpublic.AbstractColumnDefinition;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * Compares the evaluation of rows with primitive fields through a (boxing)
+ * <b>ColumnAccessor</b> and through a <b>TypedColumnAccessor</b>, reporting the time and
+ * the bytes allocated per row; the typed comparisons must allocate nothing.<p>
+ * <p/>
+ * Not a unit test (run main, optionally with the number of evaluations), but it fails
+ * (throws an AssertionError, so exits non-zero) if a typed filter allocates on any of the
+ * compilers.  The allocations are measured, after a warm up, with the (HotSpot)
+ * <b>com.sun.management.ThreadMXBean</b>.<p>
+ * <p/>
+ * Each measurement runs in its own JVM, as a single (counting) loop that has already
+ * called other filters is (JIT) profiled for all of them, which slows every filter
+ * measured after the first.<p>
+ */
+public class PrimitiveAccessorBenchmark {
+    static class BenchmarkColumnDefinition extends AbstractColumnDefinition {
+        BenchmarkColumnDefinition( String pName, Class pColumnType ) {
+            super( pName + "Attr", pName + "Col", pColumnType );
+        }
+    }
+
+    static final BenchmarkColumnDefinition AGE = new BenchmarkColumnDefinition( "Age", Integer.class );
+    static final BenchmarkColumnDefinition BALANCE = new BenchmarkColumnDefinition( "Balance", Long.class );
+    static final BenchmarkColumnDefinition SCORE = new BenchmarkColumnDefinition( "Score", Double.class );
+
+    static class Row {
+        final int mAge;
+        final boolean mAgeNull;
+        final long mBalance;
+        final double mScore;
+
+        Row( int pAge, boolean pAgeNull, long pBalance, double pScore ) {
+            mAge = pAge;
+            mAgeNull = pAgeNull;
+            mBalance = pBalance;
+            mScore = pScore;
+        }
+    }
+
+    static class BoxingAccessor implements ColumnAccessor<Row> {
+        @Override
+        public Object getValue( Row pRow, SimpleColumnDefinition pColumnDefinition ) {
+            if ( pColumnDefinition == AGE ) {
+                return pRow.mAgeNull ? null : (Object) pRow.mAge;
+            }
+            return (pColumnDefinition == BALANCE) ? (Object) pRow.mBalance : (Object) pRow.mScore;
+        }
+    }
+
+    static TypedColumnAccessor<Row> createTypedAccessor() {
+        return new TypedColumnAccessor<Row>() //
+                .addInt( AGE, new ToIntFunction<Row>() {
+                    @Override
+                    public int applyAsInt( Row pRow ) {
+                        return pRow.mAge;
+                    }
+                }, new Predicate<Row>() {
+                    @Override
+                    public boolean test( Row pRow ) {
+                        return pRow.mAgeNull;
+                    }
+                } ) //
+                .addLong( BALANCE, new ToLongFunction<Row>() {
+                    @Override
+                    public long applyAsLong( Row pRow ) {
+                        return pRow.mBalance;
+                    }
+                } ) //
+                .addDouble( SCORE, new ToDoubleFunction<Row>() {
+                    @Override
+                    public double applyAsDouble( Row pRow ) {
+                        return pRow.mScore;
+                    }
+                } );
+    }
+
+    private static final int POOL_SIZE = 1 << 20;
+
+    private static final com.sun.management.ThreadMXBean THREADS = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean(); // Looked up (allocating) once
+
+    private static final String[] COMPILERS = {"WhereClauseEvaluator", "BytecodeRowFilterCompiler", "MethodHandleRowFilterCompiler"};
+
+    static WhereClause[] createWhereClauses() {
+        WhereClauseFactory zFactory = WhereClauseFactory.INSTANCE;
+        return new WhereClause[]{ //
+                zFactory.isBetween( AGE, 30, 40 ), //
+                zFactory.and( zFactory.isGreaterThanEqual( AGE, 21 ), zFactory.isLessThan( BALANCE, 500000L ), zFactory.isGreaterThan( SCORE, 50.0 ) ), //
+                zFactory.or( zFactory.isNotEqual( AGE, 30 ), zFactory.isAnyOf( BALANCE, 1L, 10L, 100L, 1000L, 10000L ) ), //
+                zFactory.and( zFactory.isNotBetween( SCORE, 10.0, 20.0 ), zFactory.isNotNull( AGE ) ), //
+        };
+    }
+
+    /**
+     * @param args the number of evaluations (optional), or (for a single measurement, in
+     *             the JVM forked for it) the evaluations, WhereClause index, compiler, and
+     *             "boxing" or "typed".
+     */
+    public static void main( String[] args )
+            throws IOException, InterruptedException {
+        long zEvaluations = (args.length == 0) ? 10000000L : Long.parseLong( args[0] );
+        if ( args.length == 4 ) {
+            measure( createWhereClauses()[Integer.parseInt( args[1] )], args[2], "typed".equals( args[3] ), zEvaluations );
+            return;
+        }
+        List<String> zFailures = new ArrayList<>();
+        WhereClause[] zWhereClauses = createWhereClauses();
+        for ( int i = 0; i < zWhereClauses.length; i++ ) {
+            System.out.println( zWhereClauses[i].toSQL() );
+            for ( String zCompiler : COMPILERS ) {
+                for ( String zMode : new String[]{"boxing", "typed"} ) {
+                    if ( fork( zEvaluations, i, zCompiler, zMode ) != 0 ) {
+                        zFailures.add( zCompiler + " (" + zMode + "): " + zWhereClauses[i].toSQL() );
+                    }
+                }
+            }
+        }
+        if ( !zFailures.isEmpty() ) {
+            throw new AssertionError( "Failed (see above): " + zFailures );
+        }
+    }
+
+    /**
+     * @return the exit value of the JVM that made the measurement.
+     */
+    private static int fork( long pEvaluations, int pWhereClause, String pCompiler, String pMode )
+            throws IOException, InterruptedException {
+        String zJava = System.getProperty( "java.home" ) + File.separator + "bin" + File.separator + "java";
+        ProcessBuilder zBuilder = new ProcessBuilder( zJava, "-cp", System.getProperty( "java.class.path" ), PrimitiveAccessorBenchmark.class.getName(), //
+                                                      Long.toString( pEvaluations ), Integer.toString( pWhereClause ), pCompiler, pMode );
+        return zBuilder.inheritIO().start().waitFor();
+    }
+
+    private static RowFilterCompiler<Row> createCompiler( String pName, ColumnAccessor<Row> pAccessor ) {
+        switch ( pName ) {
+            case "WhereClauseEvaluator":
+                return new WhereClauseEvaluator<>( pAccessor );
+            case "BytecodeRowFilterCompiler":
+                return new BytecodeRowFilterCompiler<>( pAccessor );
+            case "MethodHandleRowFilterCompiler":
+                return new MethodHandleRowFilterCompiler<>( pAccessor );
+            default:
+                throw new IllegalArgumentException( "Unknown compiler: " + pName );
+        }
+    }
+
+    /**
+     * Measure the filter after a warm up, and fail if it is typed and allocated anything.
+     */
+    private static void measure( WhereClause pWhereClause, String pCompiler, boolean pTyped, long pEvaluations ) {
+        Row[] zRows = createRows( new Random( 1 ) );
+        RowFilter<Row> zFilter = createCompiler( pCompiler, pTyped ? createTypedAccessor() : new BoxingAccessor() ).compile( pWhereClause );
+        String zName = pCompiler + (pTyped ? " (typed)" : " (boxing)");
+
+        for ( int i = 0; i < 20; i++ ) { // Warm up (calling count() repeatedly, so that it, and NOT only its loop, is compiled)
+            count( zFilter, zRows, pEvaluations / 20 );
+        }
+        allocatedBytes(); // ... including the (once, when linked) allocating first calls
+        System.nanoTime();
+        long zAllocated = allocatedBytes();
+        long zStart = System.nanoTime();
+        long zSelected = count( zFilter, zRows, pEvaluations );
+        long zNanos = System.nanoTime() - zStart;
+        zAllocated = allocatedBytes() - zAllocated;
+        System.out.printf( "    %-40s %8.1f ms %6.2f ns/row %8.3f bytes/row  (selected %d)%n", zName, //
+                           zNanos / 1e6, (double) zNanos / pEvaluations, (double) zAllocated / pEvaluations, zSelected );
+        if ( pTyped && (zAllocated > 0) ) {
+            throw new AssertionError( zName + " allocated " + zAllocated + " bytes over " + pEvaluations + " rows: " + pWhereClause.toSQL() );
+        }
+    }
+
+    private static long count( RowFilter<Row> pFilter, Row[] pRows, long pEvaluations ) {
+        long zSelected = 0;
+        int zMask = pRows.length - 1;
+        for ( long i = 0; i < pEvaluations; i++ ) {
+            if ( pFilter.test( pRows[(int) i & zMask] ) ) {
+                zSelected++;
+            }
+        }
+        return zSelected;
+    }
+
+    private static long allocatedBytes() {
+        return THREADS.getThreadAllocatedBytes( Thread.currentThread().getId() );
+    }
+
+    static Row[] createRows( Random pRandom ) {
+        Row[] zRows = new Row[POOL_SIZE];
+        for ( int i = 0; i < zRows.length; i++ ) {
+            zRows[i] = new Row( 18 + pRandom.nextInt( 60 ), pRandom.nextInt( 20 ) == 0, //
+                                pRandom.nextInt( 1000000 ), pRandom.nextDouble() * 100 );
+        }
+        return zRows;
+    }
+}
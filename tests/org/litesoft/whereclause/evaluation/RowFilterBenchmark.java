@@ -0,0 +1,142 @@
+// This Source Code is in the Public Domain per: http://unlicense.org
+package org.litesoft.whereclause.evaluation;
+
+import org.litesoft.whereclause.SimpleColumnDefinition;
+import org.litesoft.whereclause.WhereClause;
+import org.litesoft.whereclause.WhereClauseFactory;
+import org.litesoft.whereclause.nonpublic.AbstractColumnDefinition;
+
+import java.lang.invoke.MethodHandle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares the <b>RowFilterCompiler</b>s over (by default) 10,000,000 row evaluations.<p>
+ * <p/>
+ * Not a unit test (run main, optionally with the number of evaluations); each compiler is
+ * warmed up, and then timed for the same WhereClauses over the same rows.<p>
+ */
+public class RowFilterBenchmark {
+    static class BenchmarkColumnDefinition extends AbstractColumnDefinition {
+        final int mIndex;
+
+        BenchmarkColumnDefinition( String pName, int pIndex, Class pColumnType ) {
+            super( pName + "Attr", pName + "Col", pColumnType );
+            mIndex = pIndex;
+        }
+    }
+
+    static final BenchmarkColumnDefinition AGE = new BenchmarkColumnDefinition( "Age", 0, Integer.class );
+    static final BenchmarkColumnDefinition BALANCE = new BenchmarkColumnDefinition( "Balance", 1, Long.class );
+    static final BenchmarkColumnDefinition SCORE = new BenchmarkColumnDefinition( "Score", 2, Double.class );
+    static final BenchmarkColumnDefinition NAME = new BenchmarkColumnDefinition( "Name", 3, String.class );
+
+    static class Row {
+        final Object[] mValues;
+
+        Row( Integer pAge, Long pBalance, Double pScore, String pName ) {
+            mValues = new Object[]{pAge, pBalance, pScore, pName};
+        }
+    }
+
+    static class RowAccessor implements ColumnAccessor<Row> {
+        @Override
+        public Object getValue( Row pRow, SimpleColumnDefinition pColumnDefinition ) {
+            return pRow.mValues[((BenchmarkColumnDefinition) pColumnDefinition).mIndex];
+        }
+    }
+
+    private static final int POOL_SIZE = 1 << 20;
+
+    /**
+     * The first WhereClause as a constant (static final) handle, which the JIT can fully inline.
+     */
+    private static final MethodHandle CONSTANT_HANDLE = new MethodHandleRowFilterCompiler<>( new RowAccessor() ) //
+            .compileHandle( createWhereClauses( WhereClauseFactory.INSTANCE )[0] );
+
+    public static void main( String[] args ) {
+        long zEvaluations = (args.length == 0) ? 10000000L : Long.parseLong( args[0] );
+
+        Row[] zRows = createRows( new Random( 1 ) );
+        WhereClause[] zWhereClauses = createWhereClauses( WhereClauseFactory.INSTANCE );
+        RowAccessor zAccessor = new RowAccessor();
+
+        List<RowFilterCompiler<Row>> zCompilers = createCompilers( zAccessor );
+        for ( WhereClause zWhereClause : zWhereClauses ) {
+            System.out.println( zWhereClause.toSQL() );
+            for ( RowFilterCompiler<Row> zCompiler : zCompilers ) {
+                RowFilter<Row> zFilter = zCompiler.compile( zWhereClause );
+                run( zFilter, zRows, zEvaluations / 4 ); // Warm up
+                long zStart = System.nanoTime();
+                long zSelected = run( zFilter, zRows, zEvaluations );
+                long zNanos = System.nanoTime() - zStart;
+                System.out.printf( "    %-28s %8.1f ms %6.2f ns/row  (selected %d)%n", zCompiler.getClass().getSimpleName(), //
+                                   zNanos / 1e6, (double) zNanos / zEvaluations, zSelected );
+            }
+            if ( zWhereClause == zWhereClauses[0] ) {
+                runConstantHandle( zRows, zEvaluations / 4 ); // Warm up
+                long zStart = System.nanoTime();
+                long zSelected = runConstantHandle( zRows, zEvaluations );
+                long zNanos = System.nanoTime() - zStart;
+                System.out.printf( "    %-28s %8.1f ms %6.2f ns/row  (selected %d)%n", "static final MethodHandle", //
+                                   zNanos / 1e6, (double) zNanos / zEvaluations, zSelected );
+            }
+        }
+    }
+
+    static List<RowFilterCompiler<Row>> createCompilers( RowAccessor pAccessor ) {
+        List<RowFilterCompiler<Row>> zCompilers = new ArrayList<>();
+        zCompilers.add( new WhereClauseEvaluator<>( pAccessor ) );
+        zCompilers.add( new BytecodeRowFilterCompiler<>( pAccessor ) );
+        zCompilers.add( new MethodHandleRowFilterCompiler<>( pAccessor ) );
+        return zCompilers;
+    }
+
+    static Row[] createRows( Random pRandom ) {
+        Row[] zRows = new Row[POOL_SIZE];
+        for ( int i = 0; i < zRows.length; i++ ) {
+            zRows[i] = new Row( (pRandom.nextInt( 20 ) == 0) ? null : 18 + pRandom.nextInt( 60 ), //
+                                (long) pRandom.nextInt( 1000000 ), //
+                                pRandom.nextDouble() * 100, //
+                                "Name" + pRandom.nextInt( 10000 ) );
+        }
+        return zRows;
+    }
+
+    static WhereClause[] createWhereClauses( WhereClauseFactory pFactory ) {
+        return new WhereClause[]{ //
+                pFactory.isBetween( AGE, 30, 40 ), //
+                pFactory.and( pFactory.isGreaterThanEqual( AGE, 21 ), pFactory.isLessThan( BALANCE, 500000L ), pFactory.isGreaterThan( SCORE, 50.0 ) ), //
+                pFactory.or( pFactory.isNotEqual( AGE, 30 ), pFactory.and( pFactory.isNull( AGE ), pFactory.isGreaterThan( SCORE, 90.0 ) ) ), //
+                pFactory.and( pFactory.isLessThan( AGE, 50 ), pFactory.startsWith( NAME, "Name12" ) ), //
+        };
+    }
+
+    private static long run( RowFilter<Row> pFilter, Row[] pRows, long pEvaluations ) {
+        long zSelected = 0;
+        int zMask = pRows.length - 1;
+        for ( long i = 0; i < pEvaluations; i++ ) {
+            if ( pFilter.test( pRows[(int) i & zMask] ) ) {
+                zSelected++;
+            }
+        }
+        return zSelected;
+    }
+
+    private static long runConstantHandle( Row[] pRows, long pEvaluations ) {
+        long zSelected = 0;
+        int zMask = pRows.length - 1;
+        try {
+            for ( long i = 0; i < pEvaluations; i++ ) {
+                if ( (boolean) CONSTANT_HANDLE.invokeExact( (Object) pRows[(int) i & zMask] ) ) {
+                    zSelected++;
+                }
+            }
+        }
+        catch ( Throwable e ) {
+            throw new IllegalStateException( e );
+        }
+        return zSelected;
+    }
+}
@@ -0,0 +1,339 @@
+// This Source Code is in the Public Domain per: http://unlicense.org
+package org.litesoft.whereclause.evaluation;
+
+import org.litesoft.whereclause.SimpleColumnDefinition;
+import org.litesoft.whereclause.SimpleFromIdentifier;
+import org.litesoft.whereclause.SingleColumnSelect;
+import org.litesoft.whereclause.WhereClause;
+import org.litesoft.whereclause.WhereClauseFactory;
+import org.litesoft.whereclause.nonpublic.AbstractColumnDefinition;
+import org.litesoft.whereclause.transform.WhereClauseCanonicalizer;
+import org.litesoft.whereclause.transform.WhereClauseTransform;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+
+public class WhereClauseEvaluatorTest extends TestCase {
+    public static Test suite() {
+        return new TestSuite( WhereClauseEvaluatorTest.class );
+    }
+
+    public WhereClauseEvaluatorTest( String name ) {
+        super( name );
+    }
+
+    public static void main( String[] args ) {
+        junit.textui.TestRunner.run( suite() );
+    }
+
+    static class TestingColumnDefinition extends AbstractColumnDefinition {
+        TestingColumnDefinition( String pName, boolean pAddSearchColumn, Class pColumnType ) {
+            super( pName + "Attr", pName + "Col", pAddSearchColumn ? pName + "Col_SC" : pName + "Col", pColumnType );
+        }
+    }
+
+    static class WCtableID implements SimpleFromIdentifier {
+        @Override
+        public String getTableName() {
+            return "TheTable";
+        }
+
+        @Override
+        public String getIdentifierName() {
+            return "zTable";
+        }
+    }
+
+    private WhereClauseFactory F = WhereClauseFactory.INSTANCE;
+    private WhereClauseEvaluator<Map<SimpleColumnDefinition, Object>> E = new WhereClauseEvaluator<>( MapColumnAccessor.INSTANCE );
+
+    private TestingColumnDefinition TheInt = new TestingColumnDefinition( "Int", false, Integer.class );
+    private TestingColumnDefinition TheStr = new TestingColumnDefinition( "Str", false, String.class );
+    private TestingColumnDefinition TheStr_SC = new TestingColumnDefinition( "StrSC", true, String.class );
+
+    private Map<SimpleColumnDefinition, Object> row( Object pInt, Object pStr ) {
+        Map<SimpleColumnDefinition, Object> zRow = new HashMap<>();
+        zRow.put( TheInt, pInt );
+        zRow.put( TheStr, pStr );
+        zRow.put( TheStr_SC, pStr );
+        return zRow;
+    }
+
+    private Map<SimpleColumnDefinition, Object> NULLS = row( null, null );
+    private Map<SimpleColumnDefinition, Object> FIVE = row( 5, "Five" );
+
+    private void check( TriState pNulls, TriState pFive, WhereClause pWhereClause ) {
+        assertEquals( "NULLS: " + pWhereClause.toSQL(), pNulls, E.evaluate( pWhereClause, NULLS ) );
+        assertEquals( "FIVE: " + pWhereClause.toSQL(), pFive, E.evaluate( pWhereClause, FIVE ) );
+    }
+
+    public void test_nullSemantics() {
+        check( TriState.TRUE, TriState.FALSE, F.isNull( TheInt ) );
+        check( TriState.FALSE, TriState.TRUE, F.isNotNull( TheInt ) );
+        check( TriState.UNKNOWN, TriState.TRUE, F.isEqual( TheInt, 5 ) );
+        check( TriState.TRUE, TriState.FALSE, F.isNotEqual( TheInt, 5 ) ); // (IntCol <> 5) OR (IntCol IS NULL)
+        check( TriState.UNKNOWN, TriState.FALSE, F.isLessThan( TheInt, 5 ) );
+        check( TriState.UNKNOWN, TriState.TRUE, F.isNotLessThan( TheInt, 5 ) );
+        check( TriState.UNKNOWN, TriState.TRUE, F.isGreaterThanEqual( TheInt, 5 ) );
+        check( TriState.UNKNOWN, TriState.TRUE, F.isBetween( TheInt, 1, 5 ) );
+        check( TriState.UNKNOWN, TriState.FALSE, F.isNotBetween( TheInt, 1, 5 ) );
+        check( TriState.UNKNOWN, TriState.TRUE, F.isAnyOf( TheInt, 3, 5 ) );
+        check( TriState.UNKNOWN, TriState.FALSE, F.isNotAnyOf( TheInt, 3, 5 ) );
+        check( TriState.UNKNOWN, TriState.TRUE, F.contains( TheStr, "iv" ) );
+        check( TriState.UNKNOWN, TriState.FALSE, F.doesNotStartWith( TheStr, "Fi" ) );
+    }
+
+    public void test_logic() {
+        WhereClause zUnknownOrTrue = F.or( F.isEqual( TheInt, 5 ), F.isNull( TheStr ) );
+        check( TriState.TRUE, TriState.TRUE, zUnknownOrTrue );
+
+        WhereClause zUnknownAndTrue = F.and( F.isEqual( TheInt, 5 ), F.isNull( TheStr ) );
+        check( TriState.UNKNOWN, TriState.FALSE, zUnknownAndTrue );
+        check( TriState.UNKNOWN, TriState.TRUE, F.not( zUnknownAndTrue ) );
+
+        check( TriState.TRUE, TriState.TRUE, F.alwaysTrue() );
+        check( TriState.FALSE, TriState.FALSE, F.alwaysFalse() );
+    }
+
+    public void test_like() {
+        Map<SimpleColumnDefinition, Object> zRow = row( 1, "50%_off" );
+
+        assertEquals( TriState.TRUE, E.evaluate( F.contains( TheStr, "%_" ), zRow ) );
+        assertEquals( TriState.FALSE, E.evaluate( F.contains( TheStr, "0_" ), zRow ) ); // '_' is NOT a wildcard
+        assertEquals( TriState.TRUE, E.evaluate( F.like( TheStr, "5", "%", "off" ), zRow ) );
+        assertEquals( TriState.FALSE, E.evaluate( F.like( TheStr, "50%", "%_off" ), zRow ) ); // segments may NOT overlap
+        assertEquals( TriState.TRUE, E.evaluate( F.like( TheStr, "", "0", "_", "" ), zRow ) );
+        assertEquals( TriState.FALSE, E.evaluate( F.isNotLike( TheStr, "50", "off" ), zRow ) );
+        assertEquals( TriState.TRUE, E.evaluate( F.endsWith( TheStr, "" ), zRow ) );
+    }
+
+    public void test_likeMatcher() {
+        assertTrue( LikeMatcher.of( false, "", "ab", "", "cd" ).matches( "xabycd" ) );
+        assertFalse( LikeMatcher.of( false, "abc", "cd" ).matches( "abcd" ) ); // segments may NOT overlap
+        assertTrue( LikeMatcher.of( true, "", "MIDDLE SEGMENT LONGER", "" ).matches( "A Middle Segment Longer than 16" ) );
+        assertTrue( LikeMatcher.of( true, "\u00C9t", "" ).matches( "\u00C9T\u00C9" ) ); // NOT ASCII, so lower cased
+
+        LikeMatcher zNotContains = LikeMatcher.compile( F.doesNotContain( TheStr_SC, "IV" ) );
+        assertTrue( zNotContains.isNot() && zNotContains.isCaseFolding() );
+        assertEquals( TriState.FALSE, zNotContains.evaluate( "FIVE" ) );
+        assertEquals( TriState.TRUE, zNotContains.evaluate( "Four" ) );
+        assertEquals( TriState.UNKNOWN, zNotContains.evaluate( null ) );
+    }
+
+    public void test_multiLikeMatcher() {
+        MultiLikeMatcher zMatcher = MultiLikeMatcher.compile( Arrays.asList( F.startsWith( TheStr_SC, "ab" ), F.endsWith( TheStr_SC, "BA" ), //
+                                                                             F.contains( TheStr_SC, "xx" ), F.contains( TheStr_SC, "aab" ) ) );
+        assertTrue( zMatcher.matchesAny( "ABq" ) && zMatcher.matchesAny( "qba" ) && zMatcher.matchesAny( "qAaBq" ) );
+        assertFalse( zMatcher.matchesAny( "qab" ) || zMatcher.matchesAny( "bab" ) || zMatcher.matchesAny( "" ) );
+        assertTrue( zMatcher.matchesAny( "\u00C9t\u00C9 XX" ) ); // NOT ASCII, so lower cased
+        assertEquals( TriState.UNKNOWN, zMatcher.evaluate( null ) );
+
+        List<WhereClause> zTerms = new ArrayList<>();
+        for ( int i = 0; i < ConditionCompiler.MULTI_LIKE_MINIMUM_CASE_FOLDING; i++ ) {
+            zTerms.add( F.contains( TheStr_SC, "V" + i ) );
+        }
+        zTerms.add( F.isNull( TheStr_SC ) );
+        check( TriState.TRUE, TriState.FALSE, F.or( zTerms ) );
+        zTerms.set( 0, F.contains( TheStr_SC, "IV" ) );
+        check( TriState.TRUE, TriState.TRUE, F.or( zTerms ) );
+        zTerms.remove( zTerms.size() - 1 );
+        check( TriState.UNKNOWN, TriState.TRUE, F.or( zTerms ) );
+    }
+
+    public void test_anyOfMembership() {
+        long[] zIds = new long[1000];
+        for ( int i = 0; i < zIds.length; i++ ) {
+            zIds[i] = i * 7919L;
+        }
+        LongSet zHashed = LongSet.of( zIds );
+        assertTrue( zHashed.contains( 0 ) && zHashed.contains( 999 * 7919L ) );
+        assertFalse( zHashed.contains( 7918 ) || zHashed.contains( Long.MIN_VALUE ) );
+        assertTrue( LongSet.of( 5, 3, 5, 1 ).contains( 3 ) );
+        assertEquals( 3, LongSet.of( 5, 3, 5, 1 ).size() );
+        assertFalse( LongSet.of( Long.MIN_VALUE, Long.MAX_VALUE ).contains( 0 ) );
+
+        AnyOfMembership zMembership = new AnyOfMembership( 5L, 2.5, "six", -0.0 );
+        assertTrue( zMembership.contains( 5 ) && zMembership.contains( 5.0f ) && zMembership.contains( "5" ) );
+        assertTrue( zMembership.contains( 2.5 ) && zMembership.contains( 0 ) && zMembership.contains( "six" ) );
+        assertFalse( zMembership.contains( 6 ) || zMembership.contains( "Six" ) || zMembership.contains( 2 ) );
+
+        check( TriState.UNKNOWN, TriState.TRUE, F.isAnyOf( TheStr_SC, "four", "FIVE" ) );
+        check( TriState.UNKNOWN, TriState.FALSE, F.isNotAnyOf( TheInt, 3, 5L ) );
+    }
+
+    public void test_searchColumn() {
+        assertEquals( TriState.TRUE, E.evaluate( F.isEqual( TheStr_SC, "FIVE" ), FIVE ) );
+        assertEquals( TriState.FALSE, E.evaluate( F.isEqual( TheStr, "FIVE" ), FIVE ) );
+        assertEquals( TriState.TRUE, E.evaluate( F.startsWith( TheStr_SC, "fI" ), FIVE ) );
+        assertEquals( TriState.TRUE, E.evaluate( F.isAnyOf( TheStr_SC, "four", "FIVE" ), FIVE ) );
+    }
+
+    public void test_filter() {
+        List<Map<SimpleColumnDefinition, Object>> zRows = new ArrayList<>();
+        for ( int i = 0; i < 10; i++ ) {
+            zRows.add( row( (i == 3) ? null : i, "Row" + i ) );
+        }
+        WhereClause wc = F.or( F.isLessThan( TheInt, 2 ), F.isNotEqual( TheInt, 4 ) );
+
+        assertEquals( 9, E.filter( wc, zRows ).size() );
+        assertEquals( Arrays.asList( zRows.get( 0 ), zRows.get( 1 ) ), E.filter( F.not( F.isNotLessThan( TheInt, 2 ) ), zRows ) );
+
+        WhereClauseEvaluator<Map<SimpleColumnDefinition, Object>> zTransformed = //
+                new WhereClauseEvaluator<>( MapColumnAccessor.INSTANCE, WhereClauseCanonicalizer.INSTANCE );
+        assertEquals( E.filter( wc, zRows ), zTransformed.filter( wc, zRows ) );
+        assertTrue( zTransformed.compile( wc ).test( zRows.get( 3 ) ) );
+    }
+
+    public void test_typedAccessor() {
+        TypedColumnAccessor<Map<SimpleColumnDefinition, Object>> zTyped = new TypedColumnAccessor<>( MapColumnAccessor.INSTANCE );
+        zTyped.addInt( TheInt, new ToIntFunction<Map<SimpleColumnDefinition, Object>>() {
+            @Override
+            public int applyAsInt( Map<SimpleColumnDefinition, Object> pRow ) {
+                return (Integer) pRow.get( TheInt );
+            }
+        }, new Predicate<Map<SimpleColumnDefinition, Object>>() {
+            @Override
+            public boolean test( Map<SimpleColumnDefinition, Object> pRow ) {
+                return pRow.get( TheInt ) == null;
+            }
+        } );
+        List<RowFilterCompiler<Map<SimpleColumnDefinition, Object>>> zCompilers = Arrays.asList( //
+                new WhereClauseEvaluator<>( zTyped ), new BytecodeRowFilterCompiler<>( zTyped ), new MethodHandleRowFilterCompiler<>( zTyped ) );
+        WhereClause[] zWhereClauses = {F.isNull( TheInt ), F.isNotEqual( TheInt, 5 ), F.isLessThan( TheInt, 5.5 ), //
+                                       F.isNotBetween( TheInt, 1, 5 ), F.isAnyOf( TheInt, 3L, 5 ), F.isEqual( TheInt, "5" ), //
+                                       F.and( F.isGreaterThan( TheInt, Long.MAX_VALUE ), F.contains( TheStr, "iv" ) ), //
+                                       F.not( F.or( F.isBetween( TheInt, 1, 5 ), F.isAnyOf( TheInt, 6, 7 ), F.isEqual( TheStr, "Six" ) ) )};
+        for ( RowFilterCompiler<Map<SimpleColumnDefinition, Object>> zCompiler : zCompilers ) {
+            for ( WhereClause zWhereClause : zWhereClauses ) {
+                for ( Map<SimpleColumnDefinition, Object> zRow : Arrays.asList( NULLS, FIVE, row( 6, "Six" ) ) ) {
+                    checkTyped( zCompiler, zWhereClause, zRow );
+                }
+            }
+        }
+    }
+
+    /**
+     * Both the evaluate() and the (compiled) test() of the compiler's RowFilter agree with the interpreter.
+     */
+    private void checkTyped( RowFilterCompiler<Map<SimpleColumnDefinition, Object>> pCompiler, WhereClause pWhereClause, Map<SimpleColumnDefinition, Object> pRow ) {
+        String zWhat = pCompiler.getClass().getSimpleName() + ": " + pWhereClause.toSQL() + " " + pRow.get( TheInt );
+        TriState zExpected = E.evaluate( pWhereClause, pRow );
+        RowFilter<Map<SimpleColumnDefinition, Object>> zFilter = pCompiler.compile( pWhereClause );
+        assertEquals( zWhat, zExpected, zFilter.evaluate( pRow ) );
+        assertEquals( zWhat, zExpected == TriState.TRUE, zFilter.test( pRow ) );
+    }
+
+    public void test_NaN() { // equal only to a NaN, and greater than every number
+        Map<SimpleColumnDefinition, Object> zNaN = row( Double.NaN, null );
+        assertEquals( TriState.FALSE, E.evaluate( F.isEqual( TheInt, 1 ), zNaN ) );
+        assertEquals( TriState.TRUE, E.evaluate( F.isEqual( TheInt, Double.NaN ), zNaN ) );
+        assertEquals( TriState.TRUE, E.evaluate( F.isNotEqual( TheInt, 1 ), zNaN ) );
+        assertEquals( TriState.FALSE, E.evaluate( F.isLessThan( TheInt, 2 ), zNaN ) );
+        assertEquals( TriState.FALSE, E.evaluate( F.isLessThanEqual( TheInt, 2 ), zNaN ) );
+        assertEquals( TriState.TRUE, E.evaluate( F.isGreaterThan( TheInt, Long.MAX_VALUE ), zNaN ) );
+        assertEquals( TriState.FALSE, E.evaluate( F.isBetween( TheInt, 4, -0.0 ), zNaN ) );
+        assertEquals( TriState.TRUE, E.evaluate( F.isLessThan( TheInt, Double.NaN ), FIVE ) );
+        assertEquals( TriState.TRUE, E.evaluate( F.isEqual( TheInt, -0.0 ), row( 0, null ) ) );
+
+        AnyOfMembership zMembership = new AnyOfMembership( 5L, 2.5, Double.NaN );
+        assertTrue( zMembership.contains( Double.NaN ) && zMembership.contains( Float.NaN ) && zMembership.contains( 5 ) );
+        assertFalse( zMembership.contains( 6 ) || zMembership.contains( 2.0 ) || new AnyOfMembership( 5L, 2.5 ).contains( Double.NaN ) );
+
+        TypedColumnAccessor<Map<SimpleColumnDefinition, Object>> zTyped = new TypedColumnAccessor<>( MapColumnAccessor.INSTANCE );
+        zTyped.addDouble( TheInt, new ToDoubleFunction<Map<SimpleColumnDefinition, Object>>() {
+            @Override
+            public double applyAsDouble( Map<SimpleColumnDefinition, Object> pRow ) {
+                return ((Number) pRow.get( TheInt )).doubleValue();
+            }
+        }, new Predicate<Map<SimpleColumnDefinition, Object>>() {
+            @Override
+            public boolean test( Map<SimpleColumnDefinition, Object> pRow ) {
+                return pRow.get( TheInt ) == null;
+            }
+        } );
+        List<RowFilterCompiler<Map<SimpleColumnDefinition, Object>>> zCompilers = Arrays.asList( //
+                new WhereClauseEvaluator<>( zTyped ), new BytecodeRowFilterCompiler<>( zTyped ), new MethodHandleRowFilterCompiler<>( zTyped ) );
+        WhereClause[] zWhereClauses = {F.isEqual( TheInt, 5 ), F.isEqual( TheInt, Double.NaN ), F.isLessThan( TheInt, 5.5 ), //
+                                       F.isGreaterThan( TheInt, 5 ), F.isNotGreaterThan( TheInt, Double.NaN ), F.isBetween( TheInt, 1, 9.5 ), //
+                                       F.isNotBetween( TheInt, 1.5, Double.NaN ), F.isAnyOf( TheInt, 3L, Double.NaN ), F.isAnyOf( TheInt, 2.5, 5 ), //
+                                       F.not( F.or( F.isLessThan( TheInt, -0.0 ), F.isNotEqual( TheInt, 5 ) ) )};
+        for ( RowFilterCompiler<Map<SimpleColumnDefinition, Object>> zCompiler : zCompilers ) {
+            for ( WhereClause zWhereClause : zWhereClauses ) {
+                for ( Map<SimpleColumnDefinition, Object> zRow : Arrays.asList( NULLS, FIVE, zNaN, row( 2.5, null ), row( 0.0, null ) ) ) {
+                    checkTyped( zCompiler, zWhereClause, zRow );
+                }
+            }
+        }
+    }
+
+    public void test_isIn() {
+        WhereClause wc = F.isIn( TheInt, new SingleColumnSelect( TheInt, new WCtableID(), null ) );
+        try {
+            E.compile( wc );
+            fail( "Expected IllegalArgumentException" );
+        }
+        catch ( IllegalArgumentException expected ) {
+            // Expected
+        }
+    }
+
+    public void test_isInMemory() {
+        List<Map<SimpleColumnDefinition, Object>> zRows = new ArrayList<>( Arrays.asList( row( 5, "Five" ), row( 7, "Seven" ), row( 9, "Nine" ) ) );
+        InMemoryTables zTables = new InMemoryTables().add( new InMemoryTable<>( new WCtableID(), MapColumnAccessor.INSTANCE, zRows ) );
+        WhereClauseEvaluator<Map<SimpleColumnDefinition, Object>> zE = new WhereClauseEvaluator<>( MapColumnAccessor.INSTANCE, WhereClauseTransform.NONE, zTables );
+        SingleColumnSelect zNotNine = new SingleColumnSelect( TheInt, new WCtableID(), F.not( F.isEqual( TheStr, "Nine" ) ) );
+        WhereClause zIn = F.isIn( TheInt, zNotNine );
+        WhereClause zNotIn = F.isNotIn( TheInt, zNotNine );
+
+        assertEquals( TriState.TRUE, zE.evaluate( zIn, FIVE ) );
+        assertEquals( TriState.FALSE, zE.evaluate( zIn, row( 9, null ) ) );
+        assertEquals( TriState.UNKNOWN, zE.evaluate( zIn, NULLS ) );
+        assertEquals( TriState.FALSE, zE.evaluate( zNotIn, FIVE ) );
+        assertEquals( TriState.TRUE, zE.evaluate( zNotIn, row( 9, null ) ) );
+        assertEquals( TriState.UNKNOWN, zE.evaluate( zNotIn, NULLS ) );
+
+        RowFilter<Map<SimpleColumnDefinition, Object>> zFilter = zE.compile( zNotIn );
+        zRows.add( row( null, "Null" ) ); // a NULL selected: NOT IN is never TRUE
+        zTables.invalidate( new WCtableID() );
+        assertEquals( TriState.UNKNOWN, zFilter.evaluate( row( 9, null ) ) );
+        assertEquals( TriState.FALSE, zFilter.evaluate( FIVE ) );
+
+        zRows.clear(); // NO rows selected: even a NULL is NOT IN
+        zTables.invalidateAll();
+        assertEquals( TriState.TRUE, zFilter.evaluate( NULLS ) );
+        assertEquals( TriState.FALSE, zE.evaluate( zIn, NULLS ) );
+
+        assertEquals( TriState.TRUE, new MethodHandleRowFilterCompiler<>( MapColumnAccessor.INSTANCE, WhereClauseTransform.NONE, zTables ).compile( zNotIn ).evaluate( FIVE ) );
+        assertEquals( TriState.TRUE, new BytecodeRowFilterCompiler<>( MapColumnAccessor.INSTANCE, WhereClauseTransform.NONE, zTables ).compile( zNotIn ).evaluate( FIVE ) );
+    }
+
+    public void test_adaptiveReordering() {
+        WhereClause zAnd = F.and( F.isNotNull( TheStr ), F.isEqual( TheInt, 5 ) ); // the second rejects (nearly) every row
+        RowFilter<Map<SimpleColumnDefinition, Object>> zFilter = new AdaptiveRowFilterCompiler<>( MapColumnAccessor.INSTANCE ).compile( zAnd );
+        AdaptiveJunction<Map<SimpleColumnDefinition, Object>> zJunction = //
+                (AdaptiveJunction<Map<SimpleColumnDefinition, Object>>) ((CompiledRowFilter<Map<SimpleColumnDefinition, Object>>) zFilter).getCondition();
+        assertEquals( "[0, 1]", Arrays.toString( zJunction.getOrder() ) );
+
+        Map<SimpleColumnDefinition, Object> zSeven = row( 7, "Seven" );
+        int zSelected = 0;
+        for ( int i = 0; i < 100 * AdaptiveJunction.SAMPLE_INTERVAL * AdaptiveJunction.REORDER_SAMPLES; i++ ) {
+            if ( zFilter.test( ((i % 1000) == 0) ? FIVE : zSeven ) ) {
+                zSelected++;
+            }
+        }
+        assertEquals( 100 * AdaptiveJunction.SAMPLE_INTERVAL * AdaptiveJunction.REORDER_SAMPLES / 1000 + 1, zSelected );
+        assertEquals( "[1, 0]", Arrays.toString( zJunction.getOrder() ) );
+        assertEquals( TriState.UNKNOWN, zFilter.evaluate( row( null, "Null" ) ) );
+        assertEquals( TriState.FALSE, zFilter.evaluate( NULLS ) );
+    }
+}
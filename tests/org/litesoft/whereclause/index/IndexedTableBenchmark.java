@@ -0,0 +1,112 @@
+// This Source Code is in the Public Domain per: http://unlicense.org
+package org.litesoft.whereclause.index;
+
+import org.litesoft.whereclause.SimpleColumnDefinition;
+import org.litesoft.whereclause.WhereClause;
+import org.litesoft.whereclause.WhereClauseFactory;
+import org.litesoft.whereclause.evaluation.MapColumnAccessor;
+import org.litesoft.whereclause.nonpublic.AbstractColumnDefinition;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures the throughput (operations per second) of an <b>IndexedTable</b> of (by
+ * default) 200,000 rows under a mix of reads (indexed selects) and writes (row updates,
+ * with a compact whenever an eighth of the rows are updated), for several mixes.<p>
+ * <p/>
+ * Not a unit test (run main, optionally with the number of rows and of threads); each
+ * mix runs for 2 seconds, after a warm up.<p>
+ */
+public class IndexedTableBenchmark {
+    static class BenchmarkColumnDefinition extends AbstractColumnDefinition {
+        BenchmarkColumnDefinition( String pName, Class pColumnType ) {
+            super( pName + "Attr", pName + "Col", pColumnType );
+        }
+    }
+
+    static final BenchmarkColumnDefinition STATUS = new BenchmarkColumnDefinition( "Status", String.class );
+    static final BenchmarkColumnDefinition CUSTOMER = new BenchmarkColumnDefinition( "Customer", Integer.class );
+    static final BenchmarkColumnDefinition AMOUNT = new BenchmarkColumnDefinition( "Amount", Long.class );
+
+    private static final String[] STATUSES = {"open", "closed", "pending", "void"};
+    private static final int[] READ_PERCENTS = {100, 99, 90, 50, 10};
+
+    public static void main( String[] args )
+            throws InterruptedException {
+        int zRows = (args.length == 0) ? 200000 : Integer.parseInt( args[0] );
+        int zThreads = (args.length < 2) ? 4 : Integer.parseInt( args[1] );
+
+        IndexedTable<Map<SimpleColumnDefinition, Object>> zTable = new IndexedTable<>( MapColumnAccessor.INSTANCE ) //
+                .addBitmapIndex( STATUS ).addBitmapIndex( CUSTOMER ).addSortedIndex( AMOUNT );
+        Random zRandom = new Random( 1 );
+        for ( int i = 0; i < zRows; i++ ) {
+            zTable.add( row( zRandom ) );
+        }
+        WhereClauseFactory zFactory = WhereClauseFactory.INSTANCE;
+        WhereClause[] zWhereClauses = { //
+                zFactory.and( zFactory.isEqual( STATUS, "pending" ), zFactory.isEqual( CUSTOMER, 42 ) ), //
+                zFactory.and( zFactory.isBetween( AMOUNT, 1000L, 2000L ), zFactory.isNotEqual( STATUS, "void" ) ), //
+                zFactory.or( zFactory.isEqual( CUSTOMER, 7 ), zFactory.isGreaterThan( AMOUNT, 999900L ) ), //
+        };
+        run( zTable, zWhereClauses, zThreads, 50, 500 ); // Warm up
+        for ( int zReadPercent : READ_PERCENTS ) {
+            run( zTable, zWhereClauses, zThreads, zReadPercent, 2000 );
+        }
+    }
+
+    private static void run( final IndexedTable<Map<SimpleColumnDefinition, Object>> pTable, final WhereClause[] pWhereClauses, int pThreads, //
+                             final int pReadPercent, long pMillis )
+            throws InterruptedException {
+        final AtomicBoolean zDone = new AtomicBoolean();
+        final AtomicBoolean zCompacting = new AtomicBoolean();
+        final AtomicLong zReads = new AtomicLong();
+        final AtomicLong zWrites = new AtomicLong();
+        final AtomicLong zSelected = new AtomicLong();
+        Thread[] zThreads = new Thread[pThreads];
+        for ( int t = 0; t < pThreads; t++ ) {
+            final Random zRandom = new Random( t );
+            zThreads[t] = new Thread( new Runnable() {
+                @Override
+                public void run() {
+                    while ( !zDone.get() ) {
+                        if ( zRandom.nextInt( 100 ) < pReadPercent ) {
+                            zSelected.addAndGet( pTable.count( pWhereClauses[zRandom.nextInt( pWhereClauses.length )] ) );
+                            zReads.incrementAndGet();
+                        } else {
+                            pTable.set( zRandom.nextInt( pTable.size() ), row( zRandom ) );
+                            zWrites.incrementAndGet();
+                            if ( (pTable.snapshot().getUpdatedRows() > (pTable.size() / 8)) && zCompacting.compareAndSet( false, true ) ) {
+                                pTable.compact();
+                                zCompacting.set( false );
+                            }
+                        }
+                    }
+                }
+            } );
+        }
+        long zStart = System.nanoTime();
+        for ( Thread zThread : zThreads ) {
+            zThread.start();
+        }
+        Thread.sleep( pMillis );
+        zDone.set( true );
+        for ( Thread zThread : zThreads ) {
+            zThread.join();
+        }
+        long zNanos = System.nanoTime() - zStart;
+        System.out.printf( "%3d%% reads, %d threads: %10.0f reads/s %10.0f writes/s  (selected %d, version %d)%n", pReadPercent, pThreads, //
+                           zReads.get() * 1e9 / zNanos, zWrites.get() * 1e9 / zNanos, zSelected.get(), pTable.snapshot().getVersion() );
+    }
+
+    static Map<SimpleColumnDefinition, Object> row( Random pRandom ) {
+        Map<SimpleColumnDefinition, Object> zRow = new HashMap<>();
+        zRow.put( STATUS, STATUSES[pRandom.nextInt( STATUSES.length )] );
+        zRow.put( CUSTOMER, pRandom.nextInt( 50000 ) );
+        zRow.put( AMOUNT, (long) pRandom.nextInt( 1000000 ) );
+        return zRow;
+    }
+}
@@ -0,0 +1,381 @@
+// This Source Code is in the Public Domain per: http://unlicense.org
+package org.litesoft.whereclause.index;
+
+import org.litesoft.whereclause.SimpleColumnDefinition;
+import org.litesoft.whereclause.WhereClause;
+import org.litesoft.whereclause.WhereClauseFactory;
+import org.litesoft.whereclause.evaluation.MapColumnAccessor;
+import org.litesoft.whereclause.evaluation.TriState;
+import org.litesoft.whereclause.evaluation.WhereClauseEvaluator;
+import org.litesoft.whereclause.nonpublic.AbstractColumnDefinition;
+import org.litesoft.whereclause.statistics.CostModel;
+import org.litesoft.whereclause.statistics.SelectivitySource;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class IndexedTableTest extends TestCase {
+    public static Test suite() {
+        return new TestSuite( IndexedTableTest.class );
+    }
+
+    public IndexedTableTest( String name ) {
+        super( name );
+    }
+
+    public static void main( String[] args ) {
+        junit.textui.TestRunner.run( suite() );
+    }
+
+    static class TestingColumnDefinition extends AbstractColumnDefinition {
+        TestingColumnDefinition( String pName, Class pColumnType ) {
+            super( pName + "Attr", pName + "Col", pColumnType );
+        }
+    }
+
+    static class SearchColumnDefinition extends AbstractColumnDefinition {
+        SearchColumnDefinition( String pName ) {
+            super( pName + "Attr", pName + "Col", pName + "Col_SC", String.class );
+        }
+    }
+
+    private WhereClauseFactory F = WhereClauseFactory.INSTANCE;
+    private WhereClauseEvaluator<Map<SimpleColumnDefinition, Object>> E = new WhereClauseEvaluator<>( MapColumnAccessor.INSTANCE );
+
+    private TestingColumnDefinition TheInt = new TestingColumnDefinition( "Int", Integer.class );
+    private TestingColumnDefinition TheStr = new TestingColumnDefinition( "Str", String.class );
+    private TestingColumnDefinition TheOther = new TestingColumnDefinition( "Other", Integer.class );
+
+    private Map<SimpleColumnDefinition, Object> row( Object pInt, Object pStr, Object pOther ) {
+        Map<SimpleColumnDefinition, Object> zRow = new HashMap<>();
+        zRow.put( TheInt, pInt );
+        zRow.put( TheStr, pStr );
+        zRow.put( TheOther, pOther );
+        return zRow;
+    }
+
+    private IndexedTable<Map<SimpleColumnDefinition, Object>> table( int pRows ) {
+        IndexedTable<Map<SimpleColumnDefinition, Object>> zTable = new IndexedTable<>( MapColumnAccessor.INSTANCE ).addBitmapIndex( TheInt );
+        for ( int i = 0; i < pRows; i++ ) {
+            zTable.add( row( ((i % 7) == 0) ? null : (i % 5), ((i % 11) == 0) ? null : ("S" + (i % 3)), ((i % 13) == 0) ? null : (i % 4) ) );
+        }
+        return zTable.addBitmapIndex( TheStr ); // built after the rows were added
+    }
+
+    /**
+     * The selections must be exactly those of the WhereClauseEvaluator, row by row.
+     */
+    private void check( IndexedTable<Map<SimpleColumnDefinition, Object>> pTable, WhereClause pWhereClause ) {
+        RowSelection zSelection = pTable.select( pWhereClause );
+        for ( int i = 0; i < pTable.size(); i++ ) {
+            TriState zExpected = E.evaluate( pWhereClause, pTable.getRow( i ) );
+            TriState zActual = zSelection.getTrue().contains( i ) ? TriState.TRUE : //
+                               zSelection.getUnknown().contains( i ) ? TriState.UNKNOWN : TriState.FALSE;
+            assertEquals( pWhereClause.toSQL() + " @ " + i, zExpected, zActual );
+        }
+    }
+
+    public void test_bitmapAlgebra() {
+        RoaringBitmap zEvens = new RoaringBitmap();
+        for ( int i = 0; i < 200000; i += 2 ) {
+            zEvens.add( i );
+        }
+        RoaringBitmap zRange = RoaringBitmap.range( 65530, 131080 ); // spans three containers
+        RoaringBitmap zSome = RoaringBitmap.of( 1, 2, 3, 65536, 131079, 150000 );
+
+        assertEquals( 100000, zEvens.getCardinality() );
+        assertEquals( 65550, zRange.getCardinality() );
+        assertEquals( 65550 / 2, zEvens.and( zRange ).getCardinality() );
+        assertEquals( "[1, 3, 131079]", Arrays.toString( zSome.andNot( zEvens ).toArray() ) );
+        assertEquals( "[2, 65536]", Arrays.toString( zSome.and( zEvens ).and( zRange.or( RoaringBitmap.of( 2 ) ) ).toArray() ) );
+        assertEquals( zEvens.or( zSome ).or( zRange ), RoaringBitmap.or( Arrays.asList( zSome, zRange, zEvens ) ) );
+        assertEquals( zEvens, zEvens.or( zRange ).andNot( zRange.andNot( zEvens ) ) );
+        assertTrue( zRange.runOptimize().getSizeInBytes() < 100 );
+    }
+
+    public void test_select() {
+        IndexedTable<Map<SimpleColumnDefinition, Object>> zTable = table( 70000 );
+        WhereClause[] zWhereClauses = { //
+                F.isEqual( TheInt, 3 ), F.isNotEqual( TheInt, 3 ), F.isEqual( TheInt, 3.0 ), F.isEqual( TheInt, 3.5 ), //
+                F.isNull( TheStr ), F.isNotNull( TheInt ), F.isAnyOf( TheInt, 1, 2 ), F.isNotAnyOf( TheStr, "S0", "S2" ), //
+                F.and( F.isEqual( TheInt, 1 ), F.isEqual( TheStr, "S1" ) ), //
+                F.or( F.isEqual( TheInt, 1 ), F.isNotAnyOf( TheStr, "S1" ) ), //
+                F.not( F.and( F.isAnyOf( TheInt, 0, 4 ), F.isLessThan( TheOther, 2 ) ) ), // with a residual (NOT indexed) leaf
+                F.or( F.isGreaterThan( TheOther, 2 ), F.and( F.isEqual( TheStr, "S2" ), F.not( F.isEqual( TheInt, 2 ) ) ) ), //
+        };
+        for ( WhereClause zWhereClause : zWhereClauses ) {
+            check( zTable, zWhereClause );
+            assertEquals( zWhereClause.toSQL(), zTable.count( zWhereClause ), zTable.filter( zWhereClause ).size() );
+        }
+        assertEquals( 5, ((BitmapIndex) zTable.getIndexes( TheInt ).get( 0 )).getDistinctValues() );
+    }
+
+    public void test_sortedIndex() {
+        TestingColumnDefinition zWhen = new TestingColumnDefinition( "When", Date.class );
+        IndexedTable<Map<SimpleColumnDefinition, Object>> zTable = new IndexedTable<>( MapColumnAccessor.INSTANCE ).addSortedIndex( zWhen ).addSortedIndex( TheOther );
+        for ( int i = 0; i < 100000; i++ ) {
+            Map<SimpleColumnDefinition, Object> zRow = row( null, null, ((i % 9) == 0) ? null : ((i % 10) == 0) ? Double.NaN : (Object) ((i * 7919) % 1000) );
+            zRow.put( zWhen, ((i % 13) == 0) ? null : new Date( 1000L * i ) ); // in time order (except the NULLs)
+            zTable.add( zRow );
+        }
+        zTable.add( row( null, null, 2.5 ) ); // the Integers are now keyed as doubles
+        WhereClause[] zWhereClauses = { //
+                F.isBetween( zWhen, new Date( 5000000 ), new Date( 5060000 ) ), F.isNotBetween( zWhen, new Date( 7000 ), new Date( 99000000 ) ), //
+                F.isLessThan( zWhen, new Date( 3000 ) ), F.isNotGreaterThan( zWhen, new Date( 99999000 ) ), //
+                F.isGreaterThan( TheOther, 997 ), F.isNotLessThan( TheOther, 2.5 ), F.isBetween( TheOther, -0.0, 3L ), //
+                F.isNotBetween( TheOther, 10, 990 ), F.isBetween( TheOther, 5, 4 ), //
+                F.and( F.isGreaterThanEqual( zWhen, new Date( 50000000 ) ), F.isLessThan( TheOther, 100 ) ), //
+        };
+        for ( WhereClause zWhereClause : zWhereClauses ) {
+            check( zTable, zWhereClause );
+        }
+        assertEquals( 61 - 5, zTable.count( zWhereClauses[0] ) );
+    }
+
+    public void test_prefixIndex() {
+        TestingColumnDefinition zName = new TestingColumnDefinition( "Name", String.class );
+        SearchColumnDefinition zNameSC = new SearchColumnDefinition( "NameSC" );
+        IndexedTable<Map<SimpleColumnDefinition, Object>> zTable = new IndexedTable<>( MapColumnAccessor.INSTANCE ).addPrefixIndex( zName );
+        String[] zNames = {"Alpha", "alphabet", "Alps", "al", "Beta", "", null, "Alpha"};
+        for ( int i = 0; i < 40000; i++ ) {
+            Map<SimpleColumnDefinition, Object> zRow = row( i, null, null );
+            String zValue = zNames[i % zNames.length];
+            zRow.put( zName, (zValue == null) ? null : zValue + ((i < 100) ? "" : (i % 97)) );
+            zRow.put( zNameSC, zValue );
+            zTable.add( zRow );
+            if ( i == 20000 ) {
+                zTable.addPrefixIndex( zNameSC ).count( F.startsWith( zName, "A" ) ); // built, and merged, part way
+            }
+        }
+        WhereClause[] zWhereClauses = { //
+                F.startsWith( zName, "Alp" ), F.doesNotStartWith( zName, "Alpha1" ), F.startsWith( zName, "" ), F.startsWith( zName, "Alpha" ), //
+                F.startsWith( zNameSC, "ALP" ), F.doesNotStartWith( zNameSC, "al" ), F.isEqual( zNameSC, "ALPHA" ), F.isNotEqual( zName, "Alpha" ), //
+                F.isAnyOf( zName, "Beta", "Alps5", "Gamma" ), F.isNotAnyOf( zNameSC, "beta", "" ), //
+                F.and( F.startsWith( zNameSC, "alpha" ), F.isLessThan( TheInt, 30000 ) ), //
+        };
+        for ( WhereClause zWhereClause : zWhereClauses ) {
+            check( zTable, zWhereClause );
+        }
+        assertEquals( 5000, zTable.count( F.isEqual( zNameSC, "BETA" ) ) );
+        assertEquals( 6, ((PrefixIndex) zTable.getIndexes( zNameSC ).get( 0 )).getDistinctValues() ); // "Alpha" is "alpha"
+    }
+
+    public void test_trigramIndex() {
+        TestingColumnDefinition zMessage = new TestingColumnDefinition( "Message", String.class );
+        SearchColumnDefinition zMessageSC = new SearchColumnDefinition( "MessageSC" );
+        IndexedTable<Map<SimpleColumnDefinition, Object>> zTable = new IndexedTable<>( MapColumnAccessor.INSTANCE ).addTrigramIndex( zMessage );
+        String[] zWords = {"GET", "timeout", "Retry", "db", "50%", "cache_miss", null};
+        for ( int i = 0; i < 30000; i++ ) {
+            Map<SimpleColumnDefinition, Object> zRow = row( i, null, null );
+            String zWord = zWords[i % zWords.length];
+            String zValue = (zWord == null) ? null : (i % 11) + " " + zWord + " " + zWords[(i / 7) % 6] + " id=" + (i % 1009);
+            zRow.put( zMessage, zValue );
+            zRow.put( zMessageSC, zValue );
+            zTable.add( zRow );
+        }
+        zTable.addTrigramIndex( zMessageSC );
+        WhereClause[] zWhereClauses = { //
+                F.contains( zMessage, "timeout Retry" ), F.doesNotContain( zMessage, "id=100" ), F.contains( zMessage, "db" ), //
+                F.endsWith( zMessage, "id=1008" ), F.startsWith( zMessage, "10 Retry" ), F.contains( zMessage, "zzz" ), //
+                F.contains( zMessageSC, "RETRY" ), F.doesNotEndWith( zMessageSC, "ID=7" ), F.contains( zMessage, "50%" ), //
+                F.like( zMessage, "", "GET", "cache_miss", "" ), F.not( F.like( zMessageSC, "1", "timeout", "id=3" ) ), //
+                F.and( F.contains( zMessageSC, "miss" ), F.isLessThan( TheInt, 20000 ) ), //
+        };
+        for ( WhereClause zWhereClause : zWhereClauses ) {
+            check( zTable, zWhereClause );
+        }
+        assertTrue( ((TrigramIndex) zTable.getIndexes( zMessage ).get( 0 )).getTrigrams() > 50 );
+    }
+
+    public void test_planner() {
+        IndexedTable<Map<SimpleColumnDefinition, Object>> zTable = table( 20000 ).addPrefixIndex( TheStr ).addSortedIndex( TheOther );
+        WhereClause zEquals = F.isEqual( TheStr, "S1" );
+        assertTrue( zTable.explain( zEquals ), zTable.explain( zEquals ).startsWith( "Lookup BitmapIndex(StrCol" ) ); // the cheaper of the two
+        assertTrue( zTable.explain( F.startsWith( TheStr, "S" ) ).startsWith( "Lookup PrefixIndex(StrCol" ) );
+
+        WhereClause zAnd = F.and( F.like( TheStr, "", "1" ), F.isGreaterThan( TheOther, 2 ), F.isEqual( TheInt, 1 ) );
+        String[] zLines = zTable.explain( zAnd ).split( "\n" );
+        assertEquals( Arrays.toString( zLines ), 4, zLines.length );
+        assertTrue( zLines[0], zLines[0].startsWith( "AND (" ) );
+        assertTrue( zLines[1], zLines[1].startsWith( "    Lookup BitmapIndex(IntCol" ) ); // the most selective first
+        assertTrue( zLines[3], zLines[3].startsWith( "    Check: StrCol LIKE" ) ); // the residual last, against the fewest rows
+
+        QueryPlan zPlan = table( 10 ).plan( zAnd );
+        assertTrue( zPlan.explain(), zPlan instanceof QueryPlan.Check ); // checking 10 rows is cheaper than any lookup
+
+        WhereClause[] zWhereClauses = { //
+                zEquals, zAnd, F.not( zAnd ), //
+                F.or( F.isLessThan( TheOther, 1 ), F.startsWith( TheStr, "S2" ), F.isNull( TheInt ) ), //
+                F.and( F.not( F.isAnyOf( TheStr, "S0", "S2" ) ), F.or( F.isEqual( TheInt, 4 ), F.isNotNull( TheOther ) ) ), //
+        };
+        for ( WhereClause zWhereClause : zWhereClauses ) {
+            check( zTable, zWhereClause );
+            check( table( 10 ), zWhereClause );
+        }
+    }
+
+    /**
+     * @return a tree of ANDs (and ORs under them) of pWidth children each, whose leaves alternate indexed and residual.
+     */
+    private WhereClause tree( int pDepth, int pWidth, int[] pLeaves ) {
+        if ( pDepth == 0 ) {
+            int zLeaf = pLeaves[0]++;
+            return ((zLeaf & 1) == 0) ? F.isEqual( TheInt, zLeaf % 5 ) : F.isGreaterThan( TheOther, zLeaf % 4 );
+        }
+        WhereClause[] zChildren = new WhereClause[pWidth];
+        for ( int i = 0; i < pWidth; i++ ) {
+            zChildren[i] = tree( pDepth - 1, pWidth, pLeaves );
+        }
+        return ((pDepth & 1) == 0) ? F.and( Arrays.asList( zChildren ) ) : F.or( Arrays.asList( zChildren ) );
+    }
+
+    public void test_plannerPlansEachChildOnce() {
+        final int[] zEstimates = {0};
+        SelectivitySource zSelectivities = new SelectivitySource() {
+            @Override
+            public double selectivityOf( WhereClause pWhereClause ) {
+                zEstimates[0]++; // only ever asked about the residual leaves
+                return 0.3;
+            }
+        };
+        IndexedTable<Map<SimpleColumnDefinition, Object>> zTable = new IndexedTable<>( MapColumnAccessor.INSTANCE, zSelectivities, CostModel.DEFAULT );
+        for ( int i = 0; i < 2000; i++ ) {
+            zTable.add( row( ((i % 7) == 0) ? null : (i % 5), "S" + (i % 3), ((i % 13) == 0) ? null : (i % 4) ) );
+        }
+        zTable.addBitmapIndex( TheInt );
+        int[] zLeaves = {0};
+        WhereClause zWide = tree( 4, 8, zLeaves );
+        zEstimates[0] = 0;
+        zTable.plan( zWide );
+        int zResidualLeaves = zLeaves[0] / 2;
+        assertTrue( zEstimates[0] + " estimates", zEstimates[0] <= 4 * 5 * zResidualLeaves ); // a few per level (of 5), NOT per sibling
+
+        WhereClause zSmaller = tree( 3, 3, new int[]{0} );
+        check( zTable, zSmaller );
+        check( zTable, F.not( zSmaller ) );
+
+        zTable.set( 3, row( 1, "S9", 2 ) ).set( 4, row( null, "S9", null ) );
+        QueryPlan zUpdated = zTable.plan( zSmaller );
+        assertTrue( zUpdated.explain(), zUpdated instanceof QueryPlan.Updated );
+        QueryPlan zHalf = zUpdated.scaled( 0.5 );
+        assertEquals( zUpdated.getFixedCost(), zHalf.getFixedCost(), 1e-9 ); // checking the updated rows, and the lookups
+        assertEquals( zUpdated.getEstimatedRows() / 2, zHalf.getEstimatedRows(), 1e-9 );
+        assertEquals( zUpdated.getFixedCost() + ((zUpdated.getEstimatedCost() - zUpdated.getFixedCost()) / 2), zHalf.getEstimatedCost(), 1e-9 );
+        check( zTable, zSmaller );
+    }
+
+    /**
+     * A writer moves amounts between pairs of rows (each move one change, so the total of
+     * the amounts never changes), re-values the indexed columns, adds rows, and compacts;
+     * while the readers check that each snapshot's total is unchanged (no torn reads), and
+     * that its selections are exactly those of the WhereClauseEvaluator over its rows.
+     */
+    public void test_snapshots() throws Exception {
+        final IndexedTable<Map<SimpleColumnDefinition, Object>> zTable = table( 3000 ).addSortedIndex( TheOther );
+        final WhereClause zAmounts = F.isGreaterThan( TheOther, -1 ); // all NOT null
+        final WhereClause zMixed = F.or( F.and( F.isEqual( TheInt, 2 ), F.isGreaterThan( TheOther, 1 ) ), F.isNotAnyOf( TheStr, "S1" ) );
+        final long zTotal = total( zTable.filter( zAmounts ) );
+        final AtomicBoolean zDone = new AtomicBoolean();
+        final AtomicReference<Throwable> zFailure = new AtomicReference<>();
+        final AtomicInteger zReads = new AtomicInteger();
+        Thread zWriter = new Thread( new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    write();
+                }
+                catch ( Throwable e ) {
+                    zFailure.compareAndSet( null, e );
+                    zDone.set( true );
+                }
+            }
+
+            private void write() {
+                Random zRandom = new Random( 1 );
+                for ( int i = 1; !zDone.get(); i++ ) {
+                    int zFrom = zRandom.nextInt( zTable.size() );
+                    int zTo = zRandom.nextInt( zTable.size() );
+                    Map<SimpleColumnDefinition, Object> zFromRow = zTable.getRow( zFrom );
+                    Map<SimpleColumnDefinition, Object> zToRow = zTable.getRow( zTo );
+                    if ( (zFrom != zTo) && (zFromRow.get( TheOther ) != null) && (zToRow.get( TheOther ) != null) ) {
+                        Map<Integer, Map<SimpleColumnDefinition, Object>> zMove = new HashMap<>();
+                        zMove.put( zFrom, row( zRandom.nextInt( 5 ), zFromRow.get( TheStr ), 0 ) );
+                        zMove.put( zTo, row( zToRow.get( TheInt ), zToRow.get( TheStr ), (Integer) zToRow.get( TheOther ) + (Integer) zFromRow.get( TheOther ) ) );
+                        zTable.setAll( zMove );
+                    }
+                    if ( (i % 50) == 0 ) {
+                        zTable.add( row( zRandom.nextInt( 5 ), "S" + zRandom.nextInt( 3 ), 0 ) );
+                    }
+                    if ( (i % 2000) == 0 ) {
+                        zTable.compact();
+                    }
+                }
+            }
+        } );
+        Thread[] zReaders = new Thread[3];
+        for ( int r = 0; r < zReaders.length; r++ ) {
+            zReaders[r] = new Thread( new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        long zVersion = -1;
+                        while ( !zDone.get() ) {
+                            TableSnapshot<Map<SimpleColumnDefinition, Object>> zSnapshot = zTable.snapshot();
+                            assertTrue( zSnapshot.getVersion() >= zVersion );
+                            zVersion = zSnapshot.getVersion();
+                            assertEquals( zSnapshot.toString(), zTotal, total( zSnapshot.filter( zAmounts ) ) );
+                            RowSelection zSelection = zSnapshot.select( zMixed );
+                            for ( int i = 0; i < zSnapshot.size(); i++ ) {
+                                TriState zExpected = E.evaluate( zMixed, zSnapshot.getRow( i ) );
+                                TriState zActual = zSelection.getTrue().contains( i ) ? TriState.TRUE : //
+                                                   zSelection.getUnknown().contains( i ) ? TriState.UNKNOWN : TriState.FALSE;
+                                assertEquals( "@ " + i, zExpected, zActual );
+                            }
+                            zReads.incrementAndGet();
+                        }
+                    }
+                    catch ( Throwable e ) {
+                        zFailure.compareAndSet( null, e );
+                        zDone.set( true );
+                    }
+                }
+            } );
+        }
+        long zVersion = zTable.snapshot().getVersion();
+        zWriter.start();
+        for ( Thread zReader : zReaders ) {
+            zReader.start();
+        }
+        Thread.sleep( 1500 );
+        zDone.set( true );
+        zWriter.join();
+        for ( Thread zReader : zReaders ) {
+            zReader.join();
+        }
+        if ( zFailure.get() != null ) {
+            throw new AssertionError( zFailure.get() );
+        }
+        assertTrue( zReads.get() > 0 );
+        assertTrue( zTable.snapshot().getVersion() > zVersion + 100 );
+        assertEquals( zTotal, total( zTable.compact().filter( zAmounts ) ) );
+    }
+
+    private long total( List<Map<SimpleColumnDefinition, Object>> pRows ) {
+        long zTotal = 0;
+        for ( Map<SimpleColumnDefinition, Object> zRow : pRows ) {
+            zTotal += (Integer) zRow.get( TheOther );
+        }
+        return zTotal;
+    }
+}
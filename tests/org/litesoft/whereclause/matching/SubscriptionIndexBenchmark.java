@@ -0,0 +1,123 @@
+// This Source Code is in the Public Domain per: http://unlicense.org
+package org.litesoft.whereclause.matching;
+
+import org.litesoft.whereclause.SimpleColumnDefinition;
+import org.litesoft.whereclause.WhereClause;
+import org.litesoft.whereclause.WhereClauseFactory;
+import org.litesoft.whereclause.evaluation.MapColumnAccessor;
+import org.litesoft.whereclause.evaluation.RowFilter;
+import org.litesoft.whereclause.evaluation.TriState;
+import org.litesoft.whereclause.evaluation.WhereClauseEvaluator;
+import org.litesoft.whereclause.nonpublic.AbstractColumnDefinition;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Measures the events matched per second against (by default) 200,000 subscriptions by
+ * a <b>SubscriptionIndex</b>, and by checking each (compiled) subscription in turn.<p>
+ * <p/>
+ * Not a unit test (run main, optionally with the number of subscriptions); the
+ * subscriptions are a mix of equalities, IS_ANY_OFs, ranges, prefixes, and residuals
+ * (CONTAINS and NOT EQUALS).<p>
+ */
+public class SubscriptionIndexBenchmark {
+    static class BenchmarkColumnDefinition extends AbstractColumnDefinition {
+        BenchmarkColumnDefinition( String pName, Class pColumnType ) {
+            super( pName + "Attr", pName + "Col", pColumnType );
+        }
+    }
+
+    static final BenchmarkColumnDefinition STATUS = new BenchmarkColumnDefinition( "Status", String.class );
+    static final BenchmarkColumnDefinition CUSTOMER = new BenchmarkColumnDefinition( "Customer", Integer.class );
+    static final BenchmarkColumnDefinition AMOUNT = new BenchmarkColumnDefinition( "Amount", Long.class );
+    static final BenchmarkColumnDefinition SYMBOL = new BenchmarkColumnDefinition( "Symbol", String.class );
+
+    private static final String[] STATUSES = {"open", "closed", "pending", "void"};
+
+    public static void main( String[] args ) {
+        int zSubscriptions = (args.length == 0) ? 200000 : Integer.parseInt( args[0] );
+        WhereClauseFactory zFactory = WhereClauseFactory.INSTANCE;
+        Random zRandom = new Random( 1 );
+        SubscriptionIndex<Integer, Map<SimpleColumnDefinition, Object>> zIndex = new SubscriptionIndex<>( MapColumnAccessor.INSTANCE );
+        WhereClauseEvaluator<Map<SimpleColumnDefinition, Object>> zEvaluator = new WhereClauseEvaluator<>( MapColumnAccessor.INSTANCE );
+        List<RowFilter<Map<SimpleColumnDefinition, Object>>> zFilters = new ArrayList<>( zSubscriptions );
+        long zStart = System.nanoTime();
+        for ( int i = 0; i < zSubscriptions; i++ ) {
+            WhereClause zWhereClause;
+            long zLow = zRandom.nextInt( 1000000 );
+            switch ( i % 5 ) {
+                case 0:
+                    zWhereClause = zFactory.and( zFactory.isEqual( CUSTOMER, zRandom.nextInt( 50000 ) ), zFactory.isEqual( STATUS, STATUSES[i % 4] ) );
+                    break;
+                case 1:
+                    zWhereClause = zFactory.and( zFactory.isBetween( AMOUNT, zLow, zLow + zRandom.nextInt( 1000 ) ), //
+                                                 zFactory.isAnyOf( STATUS, STATUSES[i % 4], STATUSES[(i + 1) % 4] ) );
+                    break;
+                case 2:
+                    zWhereClause = zFactory.or( zFactory.startsWith( SYMBOL, symbol( zRandom ).substring( 0, 3 ) ), //
+                                                zFactory.isBetween( AMOUNT, zLow, zLow + 100 ) );
+                    break;
+                case 3:
+                    zWhereClause = zFactory.and( zFactory.isAnyOf( CUSTOMER, zRandom.nextInt( 50000 ), zRandom.nextInt( 50000 ), zRandom.nextInt( 50000 ) ), //
+                                                 zFactory.contains( SYMBOL, "Q" ) );
+                    break;
+                default:
+                    zWhereClause = zFactory.and( zFactory.isEqual( CUSTOMER, zRandom.nextInt( 50000 ) ), zFactory.isLessThan( AMOUNT, zLow ), //
+                                                 zFactory.isNotEqual( STATUS, "void" ) );
+                    break;
+            }
+            zIndex.register( i, zWhereClause );
+            zFilters.add( zEvaluator.compile( zWhereClause ) );
+        }
+        System.out.printf( "%d subscriptions registered in %.0f ms: %s%n", zSubscriptions, (System.nanoTime() - zStart) / 1e6, zIndex );
+        zStart = System.nanoTime();
+        zIndex.match( event( zRandom ) );
+        System.out.printf( "first match (building the interval trees) in %.0f ms%n", (System.nanoTime() - zStart) / 1e6 );
+        for ( int zPass = 0; zPass < 3; zPass++ ) { // the first is a warm up
+            long zMatched = 0;
+            int zEvents = 0;
+            zStart = System.nanoTime();
+            while ( (System.nanoTime() - zStart) < 1000000000L ) {
+                zMatched += zIndex.match( event( zRandom ) ).size();
+                zEvents++;
+            }
+            double zIndexed = zEvents * 1e9 / (System.nanoTime() - zStart);
+            long zChecked = 0;
+            int zScans = 0;
+            zStart = System.nanoTime();
+            while ( (System.nanoTime() - zStart) < 1000000000L ) {
+                Map<SimpleColumnDefinition, Object> zEvent = event( zRandom );
+                for ( RowFilter<Map<SimpleColumnDefinition, Object>> zFilter : zFilters ) {
+                    if ( zFilter.evaluate( zEvent ) == TriState.TRUE ) {
+                        zChecked++;
+                    }
+                }
+                zScans++;
+            }
+            double zScanned = zScans * 1e9 / (System.nanoTime() - zStart);
+            System.out.printf( "index: %10.0f events/s (%.1f matches each)   check each: %8.1f events/s (%.1f matches each)   %.0fx%n", //
+                               zIndexed, (double) zMatched / zEvents, zScanned, (double) zChecked / zScans, zIndexed / zScanned );
+        }
+    }
+
+    static Map<SimpleColumnDefinition, Object> event( Random pRandom ) {
+        Map<SimpleColumnDefinition, Object> zEvent = new HashMap<>();
+        zEvent.put( STATUS, STATUSES[pRandom.nextInt( STATUSES.length )] );
+        zEvent.put( CUSTOMER, pRandom.nextInt( 50000 ) );
+        zEvent.put( AMOUNT, (long) pRandom.nextInt( 1000000 ) );
+        zEvent.put( SYMBOL, symbol( pRandom ) );
+        return zEvent;
+    }
+
+    private static String symbol( Random pRandom ) {
+        StringBuilder sb = new StringBuilder();
+        for ( int i = 0; i < 5; i++ ) {
+            sb.append( (char) ('A' + pRandom.nextInt( 26 )) );
+        }
+        return sb.toString();
+    }
+}
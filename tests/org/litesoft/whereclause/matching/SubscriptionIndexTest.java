@@ -0,0 +1,204 @@
+// This Source Code is in the Public Domain per: http://unlicense.org
+package org.litesoft.whereclause.matching;
+
+import org.litesoft.whereclause.SimpleColumnDefinition;
+import org.litesoft.whereclause.WhereClause;
+import org.litesoft.whereclause.WhereClauseFactory;
+import org.litesoft.whereclause.evaluation.ColumnAccessor;
+import org.litesoft.whereclause.evaluation.MapColumnAccessor;
+import org.litesoft.whereclause.evaluation.TriState;
+import org.litesoft.whereclause.evaluation.WhereClauseEvaluator;
+import org.litesoft.whereclause.nonpublic.AbstractColumnDefinition;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+public class SubscriptionIndexTest extends TestCase {
+    public static Test suite() {
+        return new TestSuite( SubscriptionIndexTest.class );
+    }
+
+    public SubscriptionIndexTest( String name ) {
+        super( name );
+    }
+
+    public static void main( String[] args ) {
+        junit.textui.TestRunner.run( suite() );
+    }
+
+    static class TestingColumnDefinition extends AbstractColumnDefinition {
+        TestingColumnDefinition( String pName, Class pColumnType ) {
+            super( pName + "Attr", pName + "Col", pColumnType );
+        }
+    }
+
+    static class SearchColumnDefinition extends AbstractColumnDefinition {
+        SearchColumnDefinition( String pName ) {
+            super( pName + "Attr", pName + "Col", pName + "Col_SC", String.class );
+        }
+    }
+
+    private WhereClauseFactory F = WhereClauseFactory.INSTANCE;
+    private WhereClauseEvaluator<Map<SimpleColumnDefinition, Object>> E = new WhereClauseEvaluator<>( MapColumnAccessor.INSTANCE );
+
+    private TestingColumnDefinition TheInt = new TestingColumnDefinition( "Int", Integer.class );
+    private TestingColumnDefinition TheAmount = new TestingColumnDefinition( "Amount", Double.class );
+    private TestingColumnDefinition TheWhen = new TestingColumnDefinition( "When", Date.class );
+    private SearchColumnDefinition TheName = new SearchColumnDefinition( "Name" );
+
+    private Map<SimpleColumnDefinition, Object> event( Object pInt, Object pAmount, Object pWhen, Object pName ) {
+        Map<SimpleColumnDefinition, Object> zEvent = new HashMap<>();
+        zEvent.put( TheInt, pInt );
+        zEvent.put( TheAmount, pAmount );
+        zEvent.put( TheWhen, pWhen );
+        zEvent.put( TheName, pName );
+        return zEvent;
+    }
+
+    private List<String> match( SubscriptionIndex<String, Map<SimpleColumnDefinition, Object>> pIndex, Map<SimpleColumnDefinition, Object> pEvent ) {
+        List<String> zMatches = pIndex.match( pEvent );
+        Collections.sort( zMatches );
+        return zMatches;
+    }
+
+    public void test_match() {
+        SubscriptionIndex<String, Map<SimpleColumnDefinition, Object>> zIndex = new SubscriptionIndex<>( MapColumnAccessor.INSTANCE );
+        zIndex.register( "equals", F.isEqual( TheInt, 3 ) ) //
+                .register( "anyOf", F.isAnyOf( TheInt, 1, 3L, 5.0 ) ) //
+                .register( "range", F.and( F.isBetween( TheAmount, 10.0, 20 ), F.isGreaterThanEqual( TheWhen, new Date( 1000 ) ) ) ) //
+                .register( "prefix", F.or( F.startsWith( TheName, "ALP" ), F.isNull( TheInt ) ) ) //
+                .register( "residual", F.and( F.isEqual( TheInt, 3 ), F.contains( TheName, "ha" ) ) ) //
+                .register( "unindexed", F.isNotEqual( TheInt, 3 ) ) //
+                .register( "never", F.and( F.isLessThan( TheAmount, 1 ), F.isGreaterThan( TheAmount, 2 ) ) );
+        assertEquals( 7, zIndex.size() );
+        assertEquals( 1, zIndex.getUnindexedConjunctions() );
+        assertEquals( 8, zIndex.getPredicates() ); // "Int = 3" is shared
+
+        assertEquals( "[anyOf, equals, prefix, range, residual]", match( zIndex, event( 3, 15L, new Date( 1000 ), "alpha" ) ).toString() );
+        assertEquals( "[anyOf, equals]", match( zIndex, event( 3.0, 20.5, new Date( 5000 ), "Beta" ) ).toString() );
+        assertEquals( "[anyOf, prefix, unindexed]", match( zIndex, event( 5, null, null, "Alps" ) ).toString() );
+        assertEquals( "[prefix, unindexed]", match( zIndex, event( null, 10, new Date( 999 ), null ) ).toString() );
+
+        assertTrue( zIndex.unregister( "equals" ) );
+        assertFalse( zIndex.unregister( "equals" ) );
+        zIndex.register( "anyOf", F.isNotAnyOf( TheInt, 1, 3 ) ); // replaced
+        assertEquals( "[anyOf, prefix, range, unindexed]", match( zIndex, event( 4, 15L, new Date( 1000 ), "Alpha" ) ).toString() );
+        assertEquals( 6, zIndex.size() );
+    }
+
+    public void test_failedEventDoesNotLeak() {
+        final Map<SimpleColumnDefinition, Object> zUnreadable = event( 1, 5.0, null, null );
+        final int[] zReads = {0};
+        ColumnAccessor<Map<SimpleColumnDefinition, Object>> zAccessor = new ColumnAccessor<Map<SimpleColumnDefinition, Object>>() {
+            @Override
+            public Object getValue( Map<SimpleColumnDefinition, Object> pRow, SimpleColumnDefinition pColumnDefinition ) {
+                if ( (pRow == zUnreadable) && (++zReads[0] == 2) ) { // after the first column's predicates are found
+                    throw new IllegalStateException( "Unreadable: " + pColumnDefinition.getColumnName() );
+                }
+                return pRow.get( pColumnDefinition );
+            }
+        };
+        SubscriptionIndex<String, Map<SimpleColumnDefinition, Object>> zIndex = new SubscriptionIndex<>( zAccessor );
+        zIndex.register( "int", F.isEqual( TheInt, 1 ) ).register( "amount", F.isEqual( TheAmount, 5 ) );
+        try {
+            zIndex.match( zUnreadable );
+            fail( "Expected the accessor's exception" );
+        }
+        catch ( IllegalStateException expected ) {
+            // expected
+        }
+        assertEquals( "[]", match( zIndex, event( 7, 9.0, null, null ) ).toString() );
+        assertEquals( "[amount, int]", match( zIndex, event( 1, 5.0, null, null ) ).toString() );
+    }
+
+    public void test_againstEvaluator() {
+        Random zRandom = new Random( 48 );
+        SubscriptionIndex<Integer, Map<SimpleColumnDefinition, Object>> zIndex = new SubscriptionIndex<>( MapColumnAccessor.INSTANCE );
+        Map<Integer, WhereClause> zSubscriptions = new HashMap<>();
+        for ( int zRound = 0; zRound < 40; zRound++ ) {
+            for ( int i = 0; i < 50; i++ ) { // registers, replaces, and unregisters
+                Integer zSubscriber = zRandom.nextInt( 300 );
+                if ( zRandom.nextInt( 4 ) == 0 ) {
+                    assertEquals( zSubscriptions.remove( zSubscriber ) != null, zIndex.unregister( zSubscriber ) );
+                } else {
+                    WhereClause zWhereClause = whereClause( zRandom, 2 );
+                    zSubscriptions.put( zSubscriber, zWhereClause );
+                    zIndex.register( zSubscriber, zWhereClause );
+                }
+            }
+            for ( int i = 0; i < 20; i++ ) {
+                Map<SimpleColumnDefinition, Object> zEvent = event( value( zRandom, 3, 5L, 2.5, "3", Double.NaN, Long.MAX_VALUE ), //
+                                                                    value( zRandom, 10.0, 15, 20L, -0.0, Double.NaN, "12" ), //
+                                                                    value( zRandom, new Date( 999 ), new Date( 1000 ), new Date( 5000 ) ), //
+                                                                    value( zRandom, "Alpha", "alps", "Beta", "", 7 ) );
+                List<Integer> zExpected = new ArrayList<>();
+                for ( Map.Entry<Integer, WhereClause> zEntry : zSubscriptions.entrySet() ) {
+                    if ( E.evaluate( zEntry.getValue(), zEvent ) == TriState.TRUE ) {
+                        zExpected.add( zEntry.getKey() );
+                    }
+                }
+                List<Integer> zActual = zIndex.match( zEvent );
+                Collections.sort( zExpected );
+                Collections.sort( zActual );
+                assertEquals( zEvent.toString(), zExpected, zActual );
+            }
+        }
+        for ( Integer zSubscriber : zSubscriptions.keySet() ) {
+            zIndex.unregister( zSubscriber );
+        }
+        assertEquals( 0, zIndex.getPredicates() );
+    }
+
+    /**
+     * @return one of the values, or null.
+     */
+    private Object value( Random pRandom, Object... pValues ) {
+        int zAt = pRandom.nextInt( pValues.length + 1 );
+        return (zAt == pValues.length) ? null : pValues[zAt];
+    }
+
+    private Object pick( Random pRandom, Object... pValues ) {
+        return pValues[pRandom.nextInt( pValues.length )];
+    }
+
+    private WhereClause whereClause( Random pRandom, int pDepth ) {
+        switch ( pRandom.nextInt( (pDepth == 0) ? 10 : 13 ) ) {
+            case 0:
+                return F.isEqual( TheInt, pick( pRandom, 3, 5.0, "3", 2.5 ) );
+            case 1:
+                return F.isAnyOf( TheInt, 1, pick( pRandom, 3, 5L, Long.MAX_VALUE ), pick( pRandom, 2.5, "5" ) );
+            case 2:
+                return F.isBetween( TheAmount, pick( pRandom, 10, 12.5, "11" ), 20 );
+            case 3:
+                return pRandom.nextBoolean() ? F.isLessThan( TheAmount, pick( pRandom, 15, 0.0, Double.NaN ) ) : //
+                       F.isNotGreaterThan( TheInt, pick( pRandom, 3, 5L ) );
+            case 4:
+                return F.isGreaterThanEqual( TheWhen, new Date( 1000 ) );
+            case 5:
+                return pRandom.nextBoolean() ? F.startsWith( TheName, "Al" ) : F.startsWith( TheName, "" );
+            case 6:
+                return pRandom.nextBoolean() ? F.isNull( TheAmount ) : F.isNotNull( TheName );
+            case 7:
+                return F.contains( TheName, "ph" );
+            case 8:
+                return F.isNotEqual( TheInt, 3 );
+            case 9:
+                return F.isNotBetween( TheAmount, 12, 18 );
+            case 10:
+                return F.not( whereClause( pRandom, pDepth - 1 ) );
+            case 11:
+                return F.and( whereClause( pRandom, pDepth - 1 ), whereClause( pRandom, pDepth - 1 ) );
+            default:
+                return F.or( whereClause( pRandom, pDepth - 1 ), whereClause( pRandom, pDepth - 1 ) );
+        }
+    }
+}
@@ -0,0 +1,156 @@
+// This Source Code is in the Public Domain per: http://unlicense.org
+package org.litesoft.whereclause.statistics;
+
+import org.litesoft.whereclause.SimpleColumnDefinition;
+import org.litesoft.whereclause.WhereClause;
+import org.litesoft.whereclause.WhereClauseFactory;
+import org.litesoft.whereclause.nonpublic.AbstractColumnDefinition;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseColumnReference;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class CostBasedOrdererTest extends TestCase {
+    public static Test suite() {
+        return new TestSuite( CostBasedOrdererTest.class );
+    }
+
+    public CostBasedOrdererTest( String name ) {
+        super( name );
+    }
+
+    public static void main( String[] args ) {
+        junit.textui.TestRunner.run( suite() );
+    }
+
+    static class TestingColumnDefinition extends AbstractColumnDefinition {
+        TestingColumnDefinition( String pName, Class pColumnType ) {
+            super( pName + "Attr", pName + "Col", pColumnType );
+        }
+    }
+
+    private static final double DELTA = 1e-9;
+
+    private WhereClauseFactory F = WhereClauseFactory.INSTANCE;
+
+    private TestingColumnDefinition TheA = new TestingColumnDefinition( "A", Integer.class );
+    private TestingColumnDefinition TheB = new TestingColumnDefinition( "B", Integer.class );
+    private TestingColumnDefinition TheC = new TestingColumnDefinition( "C", Integer.class );
+    private TestingColumnDefinition TheD = new TestingColumnDefinition( "D", Integer.class );
+    private TestingColumnDefinition TheE = new TestingColumnDefinition( "E", Integer.class );
+    private TestingColumnDefinition TheF = new TestingColumnDefinition( "F", Integer.class );
+
+    private Map<SimpleColumnDefinition, Double> mSelectivities = new HashMap<>();
+    private Map<SimpleColumnDefinition, Double> mCosts = new HashMap<>();
+    private int mLeafEstimates;
+
+    @Override
+    protected void setUp()
+            throws Exception {
+        super.setUp();
+        column( TheA, 0.9, 1 ); // AND: (1 - s) / c = 0.1    OR: s / c = 0.9
+        column( TheB, 0.1, 1 ); //                    0.9                0.1
+        column( TheC, 0.1, 10 ); //                   0.09               0.01
+        column( TheD, 0.5, 1 ); //                    0.5                0.5
+        column( TheE, 0.3, 2 ); // E & F tie
+        column( TheF, 0.3, 2 );
+    }
+
+    private void column( SimpleColumnDefinition pColumn, double pSelectivity, double pCost ) {
+        mSelectivities.put( pColumn, pSelectivity );
+        mCosts.put( pColumn, pCost );
+    }
+
+    private CostBasedOrderer orderer() {
+        SelectivitySource zSelectivities = new SelectivitySource() {
+            @Override
+            public double selectivityOf( WhereClause pWhereClause ) {
+                mLeafEstimates++; // Only ever asked about the leaves
+                return mSelectivities.get( ((AbstractWhereClauseColumnReference) pWhereClause).getColumnDefinition() );
+            }
+        };
+        CostModel zCosts = new CostModel() {
+            @Override
+            public double costOf( AbstractWhereClauseColumnReference pLeaf ) {
+                return mCosts.get( pLeaf.getColumnDefinition() );
+            }
+        };
+        return new CostBasedOrderer( F, zSelectivities, zCosts );
+    }
+
+    private WhereClause eq( SimpleColumnDefinition pColumn ) {
+        return F.isEqual( pColumn, 1 );
+    }
+
+    private void check( String pExpectedSQL, WhereClause pWhereClause ) {
+        String zOriginalSQL = pWhereClause.toSQL();
+        assertEquals( zOriginalSQL, pExpectedSQL, orderer().transform( pWhereClause ).toSQL() );
+        assertEquals( zOriginalSQL, pWhereClause.toSQL() ); // Original untouched
+    }
+
+    public void test_AND() { // descending rejection rate per unit cost
+        check( "WHERE (BCol = 1) AND (DCol = 1) AND (ACol = 1) AND (CCol = 1)", F.and( eq( TheA ), eq( TheB ), eq( TheC ), eq( TheD ) ) );
+        check( "WHERE (BCol = 1) AND (DCol = 1) AND (ACol = 1) AND (CCol = 1)", F.and( eq( TheC ), eq( TheA ), eq( TheD ), eq( TheB ) ) );
+    }
+
+    public void test_OR() { // descending acceptance rate per unit cost
+        check( "WHERE (ACol = 1) OR (DCol = 1) OR (BCol = 1) OR (CCol = 1)", F.or( eq( TheA ), eq( TheB ), eq( TheC ), eq( TheD ) ) );
+        check( "WHERE (ACol = 1) OR (DCol = 1) OR (BCol = 1) OR (CCol = 1)", F.or( eq( TheC ), eq( TheB ), eq( TheD ), eq( TheA ) ) );
+    }
+
+    public void test_stableTies() {
+        check( "WHERE (ECol = 1) AND (FCol = 1)", F.and( eq( TheE ), eq( TheF ) ) );
+        check( "WHERE (FCol = 1) AND (ECol = 1)", F.and( eq( TheF ), eq( TheE ) ) );
+        check( "WHERE (BCol = 1) AND (FCol = 1) AND (ECol = 1) AND (CCol = 1)", F.and( eq( TheC ), eq( TheF ), eq( TheB ), eq( TheE ) ) );
+
+        WhereClause wc = F.or( eq( TheA ), eq( TheF ), eq( TheE ) ); // already in order
+        assertSame( wc, orderer().transform( wc ) );
+    }
+
+    public void test_nested() {
+        // OR( A, B ): s = 1 - (0.1 * 0.9) = 0.91, c = 1 + (0.1 * 1) = 1.1, so an AND rate of 0.09 / 1.1 (< C's 0.09)
+        check( "WHERE (DCol = 1) AND (CCol = 1) AND ((ACol = 1) OR (BCol = 1))", F.and( eq( TheC ), F.or( eq( TheB ), eq( TheA ) ), eq( TheD ) ) );
+        // AND( B, D ): s = 0.05, c = 1 + (0.1 * 1) = 1.1, so an OR rate of 0.05 / 1.1 (< B's 0.1, > C's 0.01)
+        check( "WHERE (ACol = 1) OR (BCol = 1) OR ((BCol = 1) AND (DCol = 1)) OR (CCol = 1)", F.or( eq( TheC ), F.and( eq( TheD ), eq( TheB ) ), eq( TheB ), eq( TheA ) ) );
+    }
+
+    public void test_NOT() {
+        // NOT OR( A, D ): s = 1 - (1 - (0.1 * 0.5)) = 0.05, c = 1.1, so an AND rate of 0.95 / 1.1 (< B's 0.9, > C's 0.09)
+        check( "WHERE (BCol = 1) AND (NOT ((ACol = 1) OR (DCol = 1))) AND (CCol = 1)", F.and( eq( TheC ), eq( TheB ), F.not( F.or( eq( TheD ), eq( TheA ) ) ) ) );
+        // a leaf in NOT mode is estimated by the source (this one ignores the mode: s = 0.9), so last in the AND
+        check( "WHERE (BCol = 1) AND ((ACol <> 1) OR (ACol IS NULL))", F.and( F.isNotEqual( TheA, 1 ), eq( TheB ) ) );
+    }
+
+    public void test_costOf() {
+        CostBasedOrderer zOrderer = orderer();
+        assertEquals( 0.0, zOrderer.costOf( F.alwaysTrue() ), DELTA );
+        assertEquals( 10.0, zOrderer.costOf( eq( TheC ) ), DELTA );
+        assertEquals( 1.0 + (0.1 * 1.0), zOrderer.costOf( F.and( eq( TheB ), eq( TheD ) ) ), DELTA ); // in its current order
+        assertEquals( 1.0 + (0.5 * 1.0), zOrderer.costOf( F.and( eq( TheD ), eq( TheB ) ) ), DELTA );
+        assertEquals( 1.0 + (0.1 * 10.0), zOrderer.costOf( F.or( eq( TheA ), eq( TheC ) ) ), DELTA );
+        assertEquals( 1.0 + (0.1 * 1.0), zOrderer.costOf( F.not( F.or( eq( TheA ), eq( TheD ) ) ) ), DELTA );
+        assertEquals( 1.0 + (0.5 * (1.0 + (0.1 * 10.0))), zOrderer.costOf( F.and( eq( TheD ), F.or( eq( TheA ), eq( TheC ) ) ) ), DELTA );
+    }
+
+    public void test_eachLeafEstimatedOncePerPass() {
+        SimpleColumnDefinition[] zColumns = {TheA, TheB, TheC, TheD, TheE, TheF};
+        WhereClause wc = eq( TheA );
+        int zLeaves = 1;
+        for ( int zDepth = 0; zDepth < 60; zDepth++ ) {
+            WhereClause zLeaf = eq( zColumns[zDepth % zColumns.length] );
+            wc = ((zDepth & 1) == 0) ? F.and( wc, zLeaf ) : F.or( zLeaf, wc );
+            zLeaves++;
+        }
+        CostBasedOrderer zOrderer = orderer();
+        mLeafEstimates = 0;
+        zOrderer.transform( wc );
+        assertEquals( zLeaves, mLeafEstimates );
+        mLeafEstimates = 0;
+        zOrderer.costOf( wc );
+        assertEquals( zLeaves, mLeafEstimates );
+    }
+}
@@ -0,0 +1,195 @@
+// This Source Code is in the Public Domain per: http://unlicense.org
+package org.litesoft.whereclause.statistics;
+
+import org.litesoft.whereclause.WhereClause;
+import org.litesoft.whereclause.WhereClauseFactory;
+import org.litesoft.whereclause.WhereClauseValueSupport;
+import org.litesoft.whereclause.nonpublic.AbstractColumnDefinition;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+public class SelectivityEstimatorTest extends TestCase {
+    public static Test suite() {
+        return new TestSuite( SelectivityEstimatorTest.class );
+    }
+
+    public SelectivityEstimatorTest( String name ) {
+        super( name );
+    }
+
+    public static void main( String[] args ) {
+        junit.textui.TestRunner.run( suite() );
+    }
+
+    static class TestingColumnDefinition extends AbstractColumnDefinition {
+        TestingColumnDefinition( String pName, Class pColumnType ) {
+            super( pName + "Attr", pName + "Col", pColumnType );
+        }
+    }
+
+    private static final double DELTA = 1e-9;
+
+    private WhereClauseFactory F = WhereClauseFactory.INSTANCE;
+
+    private TestingColumnDefinition TheInt = new TestingColumnDefinition( "Int", Integer.class );
+    private TestingColumnDefinition TheCode = new TestingColumnDefinition( "Code", Integer.class );
+    private TestingColumnDefinition TheOther = new TestingColumnDefinition( "Other", Integer.class );
+
+    /**
+     * 0 - 99 once, 7 another 25 times, and 24 nulls (so 149 rows).
+     */
+    private ColumnStatistics codes() {
+        List<Object> zValues = new ArrayList<>();
+        for ( int i = 0; i < 100; i++ ) {
+            zValues.add( i );
+        }
+        zValues.addAll( Collections.nCopies( 25, 7 ) );
+        zValues.addAll( Collections.nCopies( 24, null ) );
+        Collections.shuffle( zValues, new Random( 28 ) );
+        return ColumnStatistics.of( zValues, 1, 0 );
+    }
+
+    /**
+     * 0 - 100 (with no nulls), in 10 buckets.
+     */
+    private ColumnStatistics ints() {
+        List<Object> zValues = new ArrayList<>();
+        for ( int i = 100; i >= 0; i-- ) {
+            zValues.add( i );
+        }
+        return ColumnStatistics.of( zValues, 0, 10 );
+    }
+
+    public void test_statistics() {
+        ColumnStatistics zCodes = codes();
+        assertEquals( 149, zCodes.getRowCount() );
+        assertEquals( 100, zCodes.getDistinctCount() );
+        assertEquals( 24 / 149.0, zCodes.getNullFraction(), DELTA );
+        assertEquals( Arrays.<Object>asList( 7 ), Arrays.asList( zCodes.getMostCommonValues() ) );
+        assertEquals( 26 / 149.0, zCodes.getMostCommonFrequencies()[0], DELTA );
+        assertEquals( 26 / 149.0, zCodes.equalsFraction( 7 ), DELTA );
+        assertEquals( 26 / 149.0, zCodes.equalsFraction( 7L ), DELTA );
+        assertEquals( (149 - 24 - 26) / 149.0 / 99, zCodes.equalsFraction( 50 ), DELTA ); // the rest spread over the other distincts
+        assertFalse( zCodes.hasHistogram() );
+        assertTrue( Double.isNaN( zCodes.lessThanFraction( 50, false ) ) );
+
+        ColumnStatistics zInts = ints();
+        assertEquals( Arrays.<Object>asList( 0, 10, 20, 30, 40, 50, 60, 70, 80, 90, 100 ), Arrays.asList( zInts.getHistogramBounds() ) );
+        assertEquals( 0.0, zInts.getNullFraction(), DELTA );
+        assertEquals( 0.0, zInts.lessThanFraction( -5, true ), DELTA );
+        assertEquals( 0.0, zInts.lessThanFraction( 0, false ), DELTA );
+        assertEquals( 0.25, zInts.lessThanFraction( 25, false ), DELTA ); // half way through the 3rd bucket
+        assertEquals( 0.255, zInts.lessThanFraction( 25.5, false ), DELTA );
+        assertEquals( 0.6, zInts.lessThanFraction( 60, true ), DELTA );
+        assertEquals( 1.0, zInts.lessThanFraction( 100, true ), DELTA );
+        assertEquals( 1.0, zInts.lessThanFraction( 1000, false ), DELTA );
+
+        ColumnStatistics zEmpty = ColumnStatistics.of( Collections.emptyList(), 5, 5 );
+        assertEquals( 0, zEmpty.getRowCount() );
+        assertEquals( 0.0, zEmpty.getNullFraction(), DELTA );
+        assertFalse( zEmpty.hasHistogram() );
+    }
+
+    public void test_estimates() {
+        StatisticsRegistry zRegistry = new StatisticsRegistry();
+        zRegistry.register( TheInt, ints() );
+        zRegistry.register( TheCode, codes() );
+        SelectivityEstimator zEstimator = new SelectivityEstimator( zRegistry );
+        double zNulls = 24 / 149.0;
+
+        WhereClause zLess = F.isLessThan( TheInt, 25 );
+        WhereClause zSeven = F.isEqual( TheCode, 7 );
+        assertEquals( 0.25, zEstimator.selectivityOf( zLess ), DELTA );
+        assertEquals( 0.75, zEstimator.selectivityOf( F.isGreaterThanEqual( TheInt, 25 ) ), DELTA );
+        assertEquals( 0.75, zEstimator.selectivityOf( F.isGreaterThan( TheInt, 25 ) ), DELTA );
+        assertEquals( 0.4, zEstimator.selectivityOf( F.isBetween( TheInt, 20, 60 ) ), DELTA );
+        assertEquals( 0.6, zEstimator.selectivityOf( F.isNotBetween( TheInt, 20, 60 ) ), DELTA );
+
+        assertEquals( zNulls, zEstimator.selectivityOf( F.isNull( TheCode ) ), DELTA );
+        assertEquals( 1.0 - zNulls, zEstimator.selectivityOf( F.isNotNull( TheCode ) ), DELTA );
+        assertEquals( 26 / 149.0, zEstimator.selectivityOf( zSeven ), DELTA );
+        assertEquals( 1.0 - (26 / 149.0), zEstimator.selectivityOf( F.isNotEqual( TheCode, 7 ) ), DELTA ); // includes the NULLs
+        assertEquals( (1.0 - zNulls) * SelectivityEstimator.DEFAULT_RANGE, zEstimator.selectivityOf( F.isGreaterThan( TheCode, 7 ) ), DELTA ); // no histogram
+
+        assertEquals( 0.25 * (26 / 149.0), zEstimator.selectivityOf( F.and( zLess, zSeven ) ), DELTA ); // independence
+        assertEquals( 1.0 - (0.75 * (1.0 - (26 / 149.0))), zEstimator.selectivityOf( F.or( zLess, zSeven ) ), DELTA );
+        assertEquals( 0.75, zEstimator.selectivityOf( F.not( F.isLessThan( TheInt, 25 ) ) ), DELTA ); // (not() switches a leaf in place)
+        assertEquals( 1.0 - (0.25 * (26 / 149.0)), zEstimator.selectivityOf( F.not( F.and( zLess, zSeven ) ) ), DELTA );
+
+        assertEquals( SelectivityEstimator.DEFAULT_EQUALS, zEstimator.selectivityOf( F.isEqual( TheOther, 1 ) ), DELTA ); // no statistics
+        assertEquals( SelectivityEstimator.DEFAULT_RANGE, zEstimator.selectivityOf( F.isLessThan( TheOther, 1 ) ), DELTA );
+        assertEquals( 149, zEstimator.estimate( F.and( zSeven, F.isEqual( TheInt, 5 ) ) ).getTableRowCount() ); // the largest
+
+        SelectivityEstimate zEstimate = zEstimator.estimate( zLess, 1000 );
+        assertEquals( 250, zEstimate.getRowCount() );
+        assertTrue( zEstimator.isRunaway( F.isNotNull( TheCode ), 100 ) );
+        assertFalse( zEstimator.isRunaway( zSeven, 100 ) );
+        assertTrue( zEstimator.prefersIndexLookup( zSeven, 0.2 ) );
+    }
+
+    public void test_NaNs() { // sorted after all the numbers, without breaking the sort's contract
+        Random zRandom = new Random( 28 );
+        for ( int zRound = 0; zRound < 200; zRound++ ) {
+            List<Object> zValues = new ArrayList<>();
+            for ( int i = 0; i < 150; i++ ) {
+                zValues.add( (zRandom.nextInt( 30 ) == 0) ? Double.NaN : (Object) (zRandom.nextDouble() * 100) );
+            }
+            zValues.add( Double.NaN );
+            ColumnStatistics zStatistics = ColumnStatistics.of( zValues, 3, zValues.size() - 1 );
+            Object[] zBounds = zStatistics.getHistogramBounds();
+            assertSorted( zBounds );
+            assertTrue( Double.isNaN( (Double) zBounds[zBounds.length - 1] ) );
+            assertTrue( zStatistics.lessThanFraction( 1000.0, false ) < 1.0 );
+            assertEquals( 1.0, zStatistics.lessThanFraction( Double.NaN, true ), DELTA );
+        }
+        assertEquals( 0, WhereClauseValueSupport.compare( Double.NaN, Float.NaN ) );
+        assertTrue( WhereClauseValueSupport.compare( Double.NaN, Long.MAX_VALUE ) > 0 );
+        assertTrue( WhereClauseValueSupport.compare( Double.POSITIVE_INFINITY, Double.NaN ) < 0 );
+        assertEquals( 0, WhereClauseValueSupport.compare( -0.0, 0 ) );
+    }
+
+    public void test_mixedTypes() { // each family (Numbers, Dates, Strings, others) together, in a consistent order
+        long zBig = (1L << 53) + 1; // NOT exactly a double
+        List<Object> zValues = new ArrayList<>();
+        for ( int i = 0; i < 20; i++ ) {
+            zValues.addAll( Arrays.<Object>asList( i, (long) i * 3, i + 0.5, "" + i, new Date( i * 1000L ), zBig, (double) zBig, zBig - 1, //
+                                                   Double.NaN, 'c', Boolean.TRUE ) );
+        }
+        Random zRandom = new Random( 28 );
+        for ( int zRound = 0; zRound < 100; zRound++ ) {
+            Collections.shuffle( zValues, zRandom );
+            Object[] zBounds = ColumnStatistics.of( zValues, 0, zValues.size() - 1 ).getHistogramBounds();
+            int zFamily = 0;
+            for ( int i = 1; i < zBounds.length; i++ ) {
+                int zNext = family( zBounds[i] );
+                assertTrue( "" + Arrays.asList( zBounds ), zFamily <= zNext );
+                if ( (zFamily == zNext) && (zNext < 3) ) {
+                    assertTrue( "" + zBounds[i - 1] + " > " + zBounds[i], WhereClauseValueSupport.compare( zBounds[i - 1], zBounds[i] ) <= 0 );
+                }
+                zFamily = zNext;
+            }
+            List<Object> zSorted = Arrays.asList( zBounds ); // the integrals compared exactly with the doubles:
+            assertTrue( zSorted.lastIndexOf( (double) zBig ) < zSorted.indexOf( zBig ) );
+            assertTrue( zSorted.lastIndexOf( zBig ) < zSorted.indexOf( Double.NaN ) );
+        }
+    }
+
+    private static int family( Object pValue ) {
+        return (pValue instanceof Number) ? 0 : (pValue instanceof Date) ? 1 : (pValue instanceof String) ? 2 : 3;
+    }
+
+    private static void assertSorted( Object[] pValues ) {
+        for ( int i = 1; i < pValues.length; i++ ) {
+            assertTrue( pValues[i - 1] + " > " + pValues[i], WhereClauseValueSupport.compare( pValues[i - 1], pValues[i] ) <= 0 );
+        }
+    }
+}
@@ -0,0 +1,140 @@
+// This Source Code is in the Public Domain per: http://unlicense.org
+package org.litesoft.whereclause.transform;
+
+import org.litesoft.whereclause.SimpleColumnDefinition;
+import org.litesoft.whereclause.WhereClause;
+import org.litesoft.whereclause.WhereClauseFactory;
+import org.litesoft.whereclause.evaluation.MapColumnAccessor;
+import org.litesoft.whereclause.evaluation.TriState;
+import org.litesoft.whereclause.evaluation.WhereClauseEvaluator;
+import org.litesoft.whereclause.nonpublic.AbstractColumnDefinition;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class NormalFormConverterTest extends TestCase {
+    public static Test suite() {
+        return new TestSuite( NormalFormConverterTest.class );
+    }
+
+    public NormalFormConverterTest( String name ) {
+        super( name );
+    }
+
+    public static void main( String[] args ) {
+        junit.textui.TestRunner.run( suite() );
+    }
+
+    static class TestingColumnDefinition extends AbstractColumnDefinition {
+        TestingColumnDefinition( String pName, Class pColumnType ) {
+            super( pName + "Attr", pName + "Col", pColumnType );
+        }
+    }
+
+    private WhereClauseFactory F = WhereClauseFactory.INSTANCE;
+    private NormalFormConverter C = NormalFormConverter.INSTANCE;
+
+    private TestingColumnDefinition TheA = new TestingColumnDefinition( "A", Integer.class );
+    private TestingColumnDefinition TheB = new TestingColumnDefinition( "B", Integer.class );
+    private TestingColumnDefinition TheC = new TestingColumnDefinition( "C", Integer.class );
+    private TestingColumnDefinition TheD = new TestingColumnDefinition( "D", Integer.class );
+    private TestingColumnDefinition TheDbl = new TestingColumnDefinition( "Dbl", Double.class );
+    private TestingColumnDefinition TheStr = new TestingColumnDefinition( "Str", String.class );
+
+    public void test_DNF() {
+        WhereClause wc = F.and( F.or( F.isEqual( TheA, 1 ), F.isEqual( TheB, 2 ) ), F.or( F.isLessThan( TheC, 3 ), F.isNull( TheD ) ) );
+
+        NormalForm nf = C.toDNF( wc );
+        assertTrue( nf.isDisjunctive() );
+        assertTrue( nf.isAtomic() );
+        assertEquals( 4, nf.getClauseCount() );
+        assertEquals( 8, nf.getSize() );
+        assertEquals( "DNF: [ACol = 1 AND CCol < 3] OR [ACol = 1 AND DCol IS NULL] OR [BCol = 2 AND CCol < 3] OR [BCol = 2 AND DCol IS NULL]", nf.toString() );
+        assertEquals( "DNF: [ACol = 1 AND BCol = 2] OR [ACol = 1 AND CCol < 3] OR [DCol IS NULL AND BCol = 2] OR [DCol IS NULL AND CCol < 3]", //
+                      C.toDNF( F.and( F.or( F.isEqual( TheA, 1 ), F.isNull( TheD ) ), F.or( F.isEqual( TheB, 2 ), F.isLessThan( TheC, 3 ) ) ) ).toString() );
+    }
+
+    public void test_CNF() {
+        WhereClause wc = F.or( F.and( F.isEqual( TheA, 1 ), F.isEqual( TheB, 2 ) ), F.isNull( TheC ) );
+
+        NormalForm nf = C.toCNF( wc );
+        assertFalse( nf.isDisjunctive() );
+        assertEquals( "CNF: [ACol = 1 OR CCol IS NULL] AND [BCol = 2 OR CCol IS NULL]", nf.toString() );
+        assertEquals( "WHERE ((ACol = 1) OR (CCol IS NULL)) AND ((BCol = 2) OR (CCol IS NULL))", nf.toWhereClause( F ).toSQL() );
+        assertEquals( "CNF: [ACol = 1] AND [BCol = 2]", C.toCNF( F.and( F.isEqual( TheA, 1 ), F.isEqual( TheB, 2 ) ) ).toString() );
+    }
+
+    public void test_NNF() {
+        WhereClause wc = F.not( F.or( F.isEqual( TheA, 1 ), F.isLessThan( TheB, 2 ) ) );
+
+        assertEquals( "WHERE ((ACol <> 1) OR (ACol IS NULL)) AND (ACol IS NOT NULL) AND (BCol >= 2)", C.toNNF( wc ).toSQL() );
+        assertEquals( "WHERE NOT ((ACol = 1) OR (BCol < 2))", wc.toSQL() ); // Original untouched
+        assertEquals( "DNF: [((ACol <> 1) OR (ACol IS NULL)) AND ACol IS NOT NULL AND BCol >= 2]", C.toDNF( wc ).toString() );
+        assertEquals( "WHERE ACol = 1", C.toNNF( F.not( F.isNotEqual( TheA, 1 ) ) ).toSQL() );
+    }
+
+    public void test_NNF_selectsSameRows() { // but an UNKNOWN may become FALSE
+        WhereClauseEvaluator<Map<SimpleColumnDefinition, Object>> E = new WhereClauseEvaluator<>( MapColumnAccessor.INSTANCE );
+        WhereClause wc = F.not( F.or( F.isGreaterThan( TheDbl, 0 ), F.isEqual( TheStr, "ab" ) ) );
+        WhereClause[] zConverted = {C.toNNF( wc ), C.toDNF( wc ).toWhereClause( F ), C.toCNF( wc ).toWhereClause( F )};
+        assertEquals( "WHERE (DblCol <= 0) AND ((StrCol <> 'ab') OR (StrCol IS NULL)) AND (StrCol IS NOT NULL)", zConverted[0].toSQL() );
+
+        Map<SimpleColumnDefinition, Object> zRow = row( -2.5, null );
+        assertEquals( TriState.UNKNOWN, E.evaluate( wc, zRow ) );
+        for ( WhereClause zNF : zConverted ) {
+            assertEquals( zNF.toSQL(), TriState.FALSE, E.evaluate( zNF, zRow ) );
+        }
+
+        for ( Object zDbl : new Object[]{null, -2.5, 0.0, 3.0} ) {
+            for ( Object zStr : new Object[]{null, "ab", "cd"} ) {
+                zRow = row( zDbl, zStr );
+                boolean zSelected = E.evaluate( wc, zRow ).isTrue();
+                for ( WhereClause zNF : zConverted ) {
+                    TriState zResult = E.evaluate( zNF, zRow );
+                    assertEquals( zNF.toSQL() + " " + zRow, zSelected, zResult.isTrue() );
+                    if ( zResult == TriState.UNKNOWN ) {
+                        assertEquals( TriState.UNKNOWN, E.evaluate( wc, zRow ) ); // never the other way
+                    }
+                }
+            }
+        }
+    }
+
+    private Map<SimpleColumnDefinition, Object> row( Object pDbl, Object pStr ) {
+        Map<SimpleColumnDefinition, Object> zRow = new HashMap<>();
+        zRow.put( TheDbl, pDbl );
+        zRow.put( TheStr, pStr );
+        return zRow;
+    }
+
+    public void test_constants() {
+        assertEquals( "DNF: FALSE", C.toDNF( F.alwaysFalse() ).toString() );
+        assertEquals( "DNF: [TRUE]", C.toDNF( F.alwaysTrue() ).toString() );
+        assertEquals( "CNF: TRUE", C.toCNF( F.alwaysTrue() ).toString() );
+        assertEquals( "CNF: [FALSE]", C.toCNF( F.alwaysFalse() ).toString() );
+    }
+
+    public void test_budget() {
+        WhereClause wc = F.and( F.or( F.isEqual( TheA, 1 ), F.isEqual( TheA, 2 ) ), //
+                                F.or( F.isEqual( TheB, 1 ), F.isEqual( TheB, 2 ) ), //
+                                F.or( F.isEqual( TheC, 1 ), F.isEqual( TheC, 2 ) ) );
+
+        assertEquals( 24, C.toDNF( wc ).getSize() );
+
+        NormalForm nf = new NormalFormConverter( F, 10 ).toDNF( wc );
+        assertFalse( nf.isAtomic() );
+        assertEquals( 2, nf.getOpaqueLiterals().size() );
+        assertEquals( 6, nf.getSize() );
+        assertEquals( "DNF: [{(ACol = 1) OR (ACol = 2)} AND {(BCol = 1) OR (BCol = 2)} AND CCol = 1]" + //
+                      " OR [{(ACol = 1) OR (ACol = 2)} AND {(BCol = 1) OR (BCol = 2)} AND CCol = 2]", //
+                      nf.toString() );
+
+        nf = new NormalFormConverter( F, 1 ).toDNF( wc );
+        assertEquals( 1, nf.getSize() );
+        assertEquals( wc.toSQL(), nf.toWhereClause( F ).toSQL() );
+    }
+}
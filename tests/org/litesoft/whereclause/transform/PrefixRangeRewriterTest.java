@@ -0,0 +1,217 @@
+// This Source Code is in the Public Domain per: http://unlicense.org
+package org.litesoft.whereclause.transform;
+
+import org.litesoft.whereclause.SimpleColumnDefinition;
+import org.litesoft.whereclause.WhereClause;
+import org.litesoft.whereclause.WhereClauseFactory;
+import org.litesoft.whereclause.WhereClauseType;
+import org.litesoft.whereclause.nonpublic.AbstractColumnDefinition;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseAssociativeList;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseColumnAndLikeValue;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseColumnAndLikeValues;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseColumnAndValue;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseColumnReference;
+import org.litesoft.whereclause.nonpublic.AbstractWhereClauseWrapper;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+public class PrefixRangeRewriterTest extends TestCase {
+    public static Test suite() {
+        return new TestSuite( PrefixRangeRewriterTest.class );
+    }
+
+    public PrefixRangeRewriterTest( String name ) {
+        super( name );
+    }
+
+    public static void main( String[] args ) {
+        junit.textui.TestRunner.run( suite() );
+    }
+
+    static class TestingColumnDefinition extends AbstractColumnDefinition {
+        TestingColumnDefinition( String pName, boolean pAddSearchColumn, Class pColumnType ) {
+            super( pName + "Attr", pName + "Col", pAddSearchColumn ? pName + "Col_SC" : pName + "Col", pColumnType );
+        }
+    }
+
+    private static final char MAX = Character.MAX_VALUE;
+
+    private WhereClauseFactory F = WhereClauseFactory.INSTANCE;
+
+    private TestingColumnDefinition TheStr = new TestingColumnDefinition( "Str", false, String.class );
+    private TestingColumnDefinition TheSC = new TestingColumnDefinition( "SC", true, String.class );
+    private TestingColumnDefinition TheOther = new TestingColumnDefinition( "Other", false, String.class );
+
+    private PrefixRangeRewriter R = new PrefixRangeRewriter( PrefixRangeRewriter.Policy.ALL );
+
+    private static final String[] VALUES = {null, "", "a", "ab", "abc", "abd", "ab%", "ab%c", "ab_", "abxc", "ab&", "ac", "b", "ABC", "aB@", "ab@", "ab@c", //
+                                            "ab[", "a" + MAX, "a" + MAX + "b", "b" + MAX, "" + MAX, "" + MAX + MAX, "" + MAX + MAX + "z", "" + (char) (MAX - 1) + MAX};
+
+    /**
+     * A row for each value (the Search Column holding the lower cased value, as the database's would).
+     */
+    private List<Map<SimpleColumnDefinition, Object>> rows() {
+        List<Map<SimpleColumnDefinition, Object>> zRows = new ArrayList<>();
+        for ( String zValue : VALUES ) {
+            Map<SimpleColumnDefinition, Object> zRow = new HashMap<>();
+            zRow.put( TheStr, zValue );
+            zRow.put( TheOther, zValue );
+            zRow.put( TheSC, (zValue == null) ? null : zValue.toLowerCase() );
+            zRows.add( zRow );
+        }
+        return zRows;
+    }
+
+    /**
+     * Evaluate (as the SQL would, a null result being UNKNOWN) the node types the rewriter
+     * reads and builds, with the Strings compared by UTF-16 code unit (the collation the
+     * Policy vouches for), and a Search Column's values lower cased (as its SQL's are).
+     */
+    private Boolean evaluate( WhereClause pWhereClause, Map<SimpleColumnDefinition, Object> pRow ) {
+        switch ( pWhereClause.getType() ) {
+            case TRUE:
+                return true;
+            case FALSE:
+                return false;
+            case NOT:
+                Boolean zWrapped = evaluate( ((AbstractWhereClauseWrapper) pWhereClause).getWrappedWhereClause(), pRow );
+                return (zWrapped == null) ? null : !zWrapped;
+            case AND:
+            case OR:
+                boolean zDecisive = (pWhereClause.getType() == WhereClauseType.OR);
+                Boolean zResult = !zDecisive;
+                for ( WhereClause zChild : ((AbstractWhereClauseAssociativeList) pWhereClause).getWhereClauseList() ) {
+                    Boolean zChildResult = evaluate( zChild, pRow );
+                    if ( zChildResult == null ) {
+                        zResult = null;
+                    } else if ( zChildResult == zDecisive ) {
+                        return zDecisive;
+                    }
+                }
+                return zResult;
+            default:
+                break;
+        }
+        AbstractWhereClauseColumnReference zLeaf = (AbstractWhereClauseColumnReference) pWhereClause;
+        String zValue = (String) pRow.get( zLeaf.getColumnDefinition() );
+        if ( zValue == null ) {
+            return ((zLeaf.getType() == WhereClauseType.EQUALS) && zLeaf.isNot()) ? true : null; // "(col <> v) OR (col IS NULL)"
+        }
+        boolean zMatches;
+        switch ( zLeaf.getType() ) {
+            case EQUALS:
+                zMatches = zValue.equals( constant( zLeaf, ((AbstractWhereClauseColumnAndValue) zLeaf).getValue() ) );
+                break;
+            case LESSTHAN:
+                zMatches = zValue.compareTo( constant( zLeaf, ((AbstractWhereClauseColumnAndValue) zLeaf).getValue() ) ) < 0;
+                break;
+            case GREATERTHAN:
+                zMatches = zValue.compareTo( constant( zLeaf, ((AbstractWhereClauseColumnAndValue) zLeaf).getValue() ) ) > 0;
+                break;
+            case STARTS_WITH:
+                zMatches = zValue.startsWith( constant( zLeaf, ((AbstractWhereClauseColumnAndLikeValue) zLeaf).getValue() ) );
+                break;
+            case ENDS_WITH:
+                zMatches = zValue.endsWith( constant( zLeaf, ((AbstractWhereClauseColumnAndLikeValue) zLeaf).getValue() ) );
+                break;
+            case CONTAINS:
+                zMatches = zValue.contains( constant( zLeaf, ((AbstractWhereClauseColumnAndLikeValue) zLeaf).getValue() ) );
+                break;
+            case LIKE:
+                StringBuilder zRegex = new StringBuilder();
+                for ( String zSegment : ((AbstractWhereClauseColumnAndLikeValues) zLeaf).getValues() ) {
+                    zRegex.append( (zRegex.length() == 0) ? "" : ".*" ).append( Pattern.quote( constant( zLeaf, zSegment ) ) );
+                }
+                zMatches = Pattern.compile( zRegex.toString(), Pattern.DOTALL ).matcher( zValue ).matches();
+                break;
+            default:
+                throw new IllegalStateException( "Not expected: " + zLeaf.toSQL() );
+        }
+        return zMatches != zLeaf.isNot();
+    }
+
+    private String constant( AbstractWhereClauseColumnReference pLeaf, Object pValue ) {
+        String zValue = (String) pValue;
+        return pLeaf.getColumnDefinition().hasSearchColumn() ? zValue.toLowerCase() : zValue;
+    }
+
+    /**
+     * Check the rendered rewrite, and that it is (three valued) equivalent over all the rows.
+     */
+    private void check( String pExpectedSQL, WhereClause pWhereClause ) {
+        check( R, pExpectedSQL, pWhereClause );
+    }
+
+    private void check( PrefixRangeRewriter pRewriter, String pExpectedSQL, WhereClause pWhereClause ) {
+        String zOriginalSQL = pWhereClause.toSQL();
+        WhereClause zRewritten = pRewriter.transform( pWhereClause );
+        assertEquals( zOriginalSQL, pExpectedSQL, zRewritten.toSQL() );
+        assertEquals( zOriginalSQL, pWhereClause.toSQL() ); // Original untouched
+        for ( Map<SimpleColumnDefinition, Object> zRow : rows() ) {
+            assertEquals( zOriginalSQL + " -> " + pExpectedSQL + " for: " + zRow, evaluate( pWhereClause, zRow ), evaluate( zRewritten, zRow ) );
+        }
+    }
+
+    public void test_successor() {
+        assertEquals( "abd", PrefixRangeRewriter.successor( "abc", false ) );
+        assertEquals( "b", PrefixRangeRewriter.successor( "a" + MAX, false ) ); // trailing MAX_VALUE dropped
+        assertEquals( "b", PrefixRangeRewriter.successor( "a" + MAX + MAX, false ) );
+        assertNull( PrefixRangeRewriter.successor( "" + MAX + MAX, false ) );
+        assertNull( PrefixRangeRewriter.successor( "", false ) );
+        assertEquals( "aA", PrefixRangeRewriter.successor( "a@", false ) );
+        assertEquals( "a[", PrefixRangeRewriter.successor( "a@", true ) ); // 'A' - 'Z' are not lower case stable
+        assertEquals( "b", PrefixRangeRewriter.successor( "a" + MAX, true ) );
+    }
+
+    public void test_startsWith() {
+        check( "WHERE (StrCol >= 'ab') AND (StrCol < 'ac')", F.startsWith( TheStr, "ab" ) );
+        check( "WHERE (StrCol >= 'a" + MAX + "') AND (StrCol < 'b')", F.startsWith( TheStr, "a" + MAX ) );
+        check( "WHERE StrCol >= '" + MAX + MAX + "'", F.startsWith( TheStr, "" + MAX + MAX ) ); // nothing greater does not start with it
+        check( "WHERE (StrCol >= 'ab%') AND (StrCol < 'ab&')", F.startsWith( TheStr, "ab%" ) ); // the '%' is a literal (escaped in the LIKE)
+        check( "WHERE (StrCol >= 'ab_') AND (StrCol < 'ab`')", F.startsWith( TheStr, "ab_" ) );
+    }
+
+    public void test_searchColumn() {
+        check( "WHERE (SCCol_SC >= 'ab@') AND (SCCol_SC < 'ab[')", F.startsWith( TheSC, "aB@" ) );
+        check( "WHERE (SCCol_SC < 'ab@') OR (SCCol_SC >= 'ab[')", F.doesNotStartWith( TheSC, "AB@" ) );
+    }
+
+    public void test_notStartsWith() {
+        check( "WHERE (StrCol < 'ab') OR (StrCol >= 'ac')", F.doesNotStartWith( TheStr, "ab" ) );
+        check( "WHERE StrCol < '" + MAX + MAX + "'", F.doesNotStartWith( TheStr, "" + MAX + MAX ) );
+        check( "WHERE NOT ((StrCol >= 'ab') AND (StrCol < 'ac') AND (OtherCol = 'x'))", F.not( F.and( F.startsWith( TheStr, "ab" ), F.isEqual( TheOther, "x" ) ) ) );
+    }
+
+    public void test_like() {
+        check( "WHERE (StrCol >= 'ab') AND (StrCol < 'ac') AND (StrCol LIKE 'ab%c')", F.like( TheStr, "ab", "c" ) );
+        check( "WHERE (StrCol >= 'ab%') AND (StrCol < 'ab&') AND (StrCol LIKE 'ab|%%c' ESCAPE '|')", F.like( TheStr, "ab%", "c" ) );
+        check( "WHERE StrCol NOT LIKE 'ab%c'", F.isNotLike( TheStr, "ab", "c" ) ); // NOT LIKE left alone
+        check( "WHERE StrCol LIKE '%ab%c'", F.like( TheStr, "", "ab", "c" ) ); // no prefix
+    }
+
+    public void test_empty() {
+        check( "WHERE StrCol >= ''", F.startsWith( TheStr, "" ) );
+        check( "WHERE StrCol >= ''", F.contains( TheStr, "" ) );
+        check( "WHERE StrCol >= ''", F.endsWith( TheStr, "" ) );
+        check( "WHERE StrCol < ''", F.doesNotContain( TheStr, "" ) );
+        check( "WHERE (StrCol LIKE '%b') AND (StrCol LIKE '%b%')", F.and( F.endsWith( TheStr, "b" ), F.contains( TheStr, "b" ) ) ); // not empty
+    }
+
+    public void test_policy() {
+        PrefixRangeRewriter zRewriter = new PrefixRangeRewriter( PrefixRangeRewriter.forColumns( TheStr ) );
+        check( zRewriter, "WHERE ((StrCol >= 'ab') AND (StrCol < 'ac')) OR (OtherCol LIKE 'ab%')", F.or( F.startsWith( TheStr, "ab" ), F.startsWith( TheOther, "ab" ) ) );
+
+        WhereClause wc = F.startsWith( TheStr, "ab" );
+        assertSame( wc, new PrefixRangeRewriter( PrefixRangeRewriter.Policy.NONE ).transform( wc ) );
+        wc = F.startsWith( TheOther, "ab" );
+        assertSame( wc, zRewriter.transform( wc ) );
+    }
+}
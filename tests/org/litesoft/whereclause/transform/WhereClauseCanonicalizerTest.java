@@ -0,0 +1,86 @@
+// This Source Code is in the Public Domain per: http://unlicense.org
+package org.litesoft.whereclause.transform;
+
+import org.litesoft.whereclause.WhereClause;
+import org.litesoft.whereclause.WhereClauseFactory;
+import org.litesoft.whereclause.nonpublic.AbstractColumnDefinition;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.util.Arrays;
+
+public class WhereClauseCanonicalizerTest extends TestCase {
+    public static Test suite() {
+        return new TestSuite( WhereClauseCanonicalizerTest.class );
+    }
+
+    public WhereClauseCanonicalizerTest( String name ) {
+        super( name );
+    }
+
+    public static void main( String[] args ) {
+        junit.textui.TestRunner.run( suite() );
+    }
+
+    static class TestingColumnDefinition extends AbstractColumnDefinition {
+        TestingColumnDefinition( String pName, Class pColumnType ) {
+            super( pName + "Attr", pName + "Col", pColumnType );
+        }
+    }
+
+    private WhereClauseFactory F = WhereClauseFactory.INSTANCE;
+    private WhereClauseCanonicalizer C = WhereClauseCanonicalizer.INSTANCE;
+
+    private TestingColumnDefinition TheA = new TestingColumnDefinition( "A", Integer.class );
+    private TestingColumnDefinition TheB = new TestingColumnDefinition( "B", Integer.class );
+    private TestingColumnDefinition TheStr = new TestingColumnDefinition( "Str", String.class );
+
+    public void test_and() {
+        WhereClause wc1 = F.and( F.isEqual( TheA, 1 ), F.isEqual( TheB, 2 ) );
+        WhereClause wc2 = F.and( F.isEqual( TheB, 2 ), F.isEqual( TheA, 1 ) );
+
+        assertEquals( "WHERE (ACol = 1) AND (BCol = 2)", C.toSQL( wc1 ) );
+        assertEquals( "WHERE (ACol = 1) AND (BCol = 2)", C.toSQL( wc2 ) );
+        assertSame( wc1, C.transform( wc1 ) );
+        assertEquals( "WHERE (BCol = 2) AND (ACol = 1)", wc2.toSQL() ); // Original untouched
+    }
+
+    public void test_typeBeforeColumn() {
+        WhereClause wc = F.or( F.isGreaterThan( TheA, 7 ), F.contains( TheStr, "x" ), F.isEqual( TheB, 2 ) );
+
+        assertEquals( "WHERE (BCol = 2) OR (ACol > 7) OR (StrCol LIKE '%x%')", C.toSQL( wc ) );
+    }
+
+    public void test_nested() {
+        WhereClause wc = F.and( F.or( F.isEqual( TheB, 1 ), F.isEqual( TheA, 1 ) ), F.not( F.and( F.isNull( TheStr ), F.isNull( TheA ) ) ) );
+
+        assertEquals( "WHERE ((ACol = 1) OR (BCol = 1)) AND (NOT ((ACol IS NULL) AND (StrCol IS NULL)))", C.toSQL( wc ) );
+    }
+
+    public void test_anyOf() {
+        WhereClause wc = F.isNotAnyOf( TheA, 9, 3, 5 );
+
+        assertEquals( "WHERE ACol NOT IN (3,5,9)", C.toSQL( wc ) );
+        assertEquals( "WHERE ACol NOT IN (9,3,5)", wc.toSQL() );
+    }
+
+    public void test_shape() {
+        assertEquals( "WHERE (ACol IN (?,?)) AND ((BCol <> ?) OR (BCol IS NULL)) AND (StrCol NOT LIKE ?)", //
+                      WhereClauseShape.of( F.and( F.isAnyOf( TheA, 1, 2 ), F.isNotEqual( TheB, 3 ), F.doesNotStartWith( TheStr, "x" ) ) ) );
+    }
+
+    public void test_report() {
+        ShapeReductionReport zReport = ShapeReductionReport.of( Arrays.asList( //
+                F.and( F.isEqual( TheA, 1 ), F.isEqual( TheB, 2 ) ), //
+                F.and( F.isEqual( TheB, 5 ), F.isEqual( TheA, 6 ) ), //
+                F.and( F.isEqual( TheA, 3 ), F.isEqual( TheB, 4 ) ), //
+                F.isEqual( TheA, 1 ) ) );
+
+        assertEquals( 4, zReport.getRecorded() );
+        assertEquals( 3, zReport.getOriginalShapes() );
+        assertEquals( 2, zReport.getTransformedShapes() );
+        assertEquals( 1, zReport.getShapesRemoved() );
+    }
+}